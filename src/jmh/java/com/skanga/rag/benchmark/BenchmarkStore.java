@@ -0,0 +1,95 @@
+package com.skanga.rag.benchmark;
+
+import com.skanga.rag.Document;
+import com.skanga.rag.vectorstore.VectorStore;
+import com.skanga.rag.vectorstore.VectorStoreException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * A store of one {@link StoreKind} in its own temporary directory, which {@link #close()} deletes.
+ */
+final class BenchmarkStore implements Closeable {
+    /** Documents per {@link VectorStore#addDocuments(List)} call when loading a corpus. */
+    static final int LOAD_BATCH_SIZE = 1000;
+
+    private final StoreKind kind;
+    private final Path directory;
+    private final VectorStore store;
+    private boolean calibrated;
+
+    private BenchmarkStore(StoreKind kind) throws IOException {
+        this.kind = kind;
+        this.directory = Files.createTempDirectory("agentforge-benchmark-");
+        this.store = kind.create(directory);
+    }
+
+    /** @return An empty store of the given kind. */
+    static BenchmarkStore create(StoreKind kind) throws IOException {
+        return new BenchmarkStore(kind);
+    }
+
+    /**
+     * @return A store of the given kind holding documents 0 to {@code documents - 1} of the corpus, generated and
+     *         added {@link #LOAD_BATCH_SIZE} at a time.
+     */
+    static BenchmarkStore load(StoreKind kind, SyntheticCorpus corpus, int documents) throws IOException {
+        BenchmarkStore store = new BenchmarkStore(kind);
+        for (int from = 0; from < documents; from += LOAD_BATCH_SIZE) {
+            store.add(corpus.documents(from, Math.min(LOAD_BATCH_SIZE, documents - from)));
+        }
+        return store;
+    }
+
+    /**
+     * Adds documents, calibrating the store's quantizer on the first batch.
+     * @param documents The documents.
+     * @throws VectorStoreException if the store rejects them.
+     */
+    void add(List<Document> documents) throws VectorStoreException {
+        store.addDocuments(documents);
+        if (!calibrated) {
+            kind.calibrate(store, documents.get(0).getEmbeddingVector().length);
+            calibrated = true;
+        }
+    }
+
+    VectorStore store() {
+        return store;
+    }
+
+    /** @return The total size of the store's files; 0 for the memory stores. */
+    long diskBytes() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            return files.filter(Files::isRegularFile).mapToLong(file -> {
+                try {
+                    return Files.size(file);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }).sum();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (store instanceof Closeable closeable) {
+                closeable.close();
+            }
+        } finally {
+            try (Stream<Path> files = Files.walk(directory)) {
+                for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+}
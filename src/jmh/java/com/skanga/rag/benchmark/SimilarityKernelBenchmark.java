@@ -0,0 +1,75 @@
+package com.skanga.rag.benchmark;
+
+import com.skanga.rag.vectorstore.VectorStoreException;
+import com.skanga.rag.vectorstore.search.SimilaritySearchUtils;
+import com.skanga.rag.vectorstore.search.VectorKernels;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time per vector comparison of the scalar and SIMD {@link VectorKernels}, and of
+ * {@link SimilaritySearchUtils#cosineDistance(float[], float[])}, which adds argument checks to the default kernels.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+@State(Scope.Thread)
+public class SimilarityKernelBenchmark {
+
+    @Param({"384", "768", "1536"})
+    public int dimension;
+
+    /** {@code scalar} or {@code simd}; SIMD fails the trial if the Vector API is unavailable. */
+    @Param({"scalar", "simd"})
+    public String kernels;
+
+    private VectorKernels vectorKernels;
+    private float[] a;
+    private float[] b;
+    private byte[] codes;
+
+    @Setup
+    public void setUp() {
+        vectorKernels = "simd".equals(kernels) ? VectorKernels.simd() : VectorKernels.scalar();
+        SyntheticCorpus corpus = new SyntheticCorpus(dimension, 42);
+        a = corpus.vector(0);
+        b = corpus.vector(1);
+        codes = new byte[dimension];
+        for (int d = 0; d < dimension; d++) {
+            codes[d] = (byte) Math.max(-127, Math.min(127, Math.round(b[d] * 127 * Math.sqrt(dimension))));
+        }
+    }
+
+    @Benchmark
+    public float dot() {
+        return vectorKernels.dot(a, b);
+    }
+
+    @Benchmark
+    public double cosineDistance() {
+        return vectorKernels.cosineDistance(a, b);
+    }
+
+    @Benchmark
+    public float dotInt8() {
+        return vectorKernels.dotInt8(a, codes);
+    }
+
+    @Benchmark
+    public double similaritySearchUtilsCosineDistance() throws VectorStoreException {
+        return SimilaritySearchUtils.cosineDistance(a, b);
+    }
+}
@@ -0,0 +1,105 @@
+package com.skanga.rag.benchmark;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Memory per vector of each {@link StoreKind}. Every invocation streams the corpus into a new store and measures
+ * the heap the store retains and the bytes it wrote to disk, each divided by the number of documents. The heap
+ * figure is the difference in used heap after full collections before and after loading, so it covers documents,
+ * vectors and indexes; the documents are generated batch by batch and referenced only by the store.
+ *
+ * <p>The results are the {@code load:heapBytesPerVector} and {@code load:diskBytesPerVector} rows, in bytes. They
+ * are {@link AuxCounters.Type#EVENTS} counters holding the latest measurement, so they do not depend on how many
+ * loads fit in an iteration. The {@code load} row is the average load time including the collections; see
+ * {@link VectorAddBenchmark} for ingest throughput.</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1, time = 1)
+@Measurement(iterations = 3, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+@State(Scope.Benchmark)
+public class StoreFootprintBenchmark {
+
+    /** Number of documents stored. */
+    @Param("10000")
+    public int documents;
+
+    /** Embedding dimension. */
+    @Param("384")
+    public int dimension;
+
+    @Param
+    public StoreKind store;
+
+    private BenchmarkStore benchmarkStore;
+
+    /** Bytes per stored vector of the latest load, reported as measured rather than as a rate. */
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Footprint {
+        public long heapBytesPerVector;
+        public long diskBytesPerVector;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            heapBytesPerVector = 0;
+            diskBytesPerVector = 0;
+        }
+    }
+
+    @TearDown(Level.Invocation)
+    public void closeStore() throws IOException {
+        if (benchmarkStore != null) {
+            benchmarkStore.close();
+            benchmarkStore = null;
+        }
+    }
+
+    @Benchmark
+    public void load(Footprint footprint) throws IOException {
+        SyntheticCorpus corpus = new SyntheticCorpus(dimension, 42);
+        long before = usedHeapAfterGc();
+        benchmarkStore = BenchmarkStore.load(store, corpus, documents);
+        long after = usedHeapAfterGc();
+        footprint.heapBytesPerVector = Math.max(0, after - before) / documents;
+        footprint.diskBytesPerVector = benchmarkStore.diskBytes() / documents;
+    }
+
+    /** @return The used heap once repeated full collections no longer free anything. */
+    private static long usedHeapAfterGc() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        for (int attempt = 0; attempt < 10; attempt++) {
+            System.gc();
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            long now = runtime.totalMemory() - runtime.freeMemory();
+            if (now >= used) {
+                return now;
+            }
+            used = now;
+        }
+        return used;
+    }
+}
@@ -0,0 +1,92 @@
+package com.skanga.rag.benchmark;
+
+import com.skanga.rag.embeddings.EmbeddingEncoding;
+import com.skanga.rag.vectorstore.FileVectorStore;
+import com.skanga.rag.vectorstore.MemoryVectorStore;
+import com.skanga.rag.vectorstore.VectorStore;
+import com.skanga.rag.vectorstore.VectorStoreException;
+
+import java.nio.file.Path;
+
+/**
+ * The local vector stores and index modes the benchmarks compare. Used as a JMH {@code @Param}, so a run covers
+ * all of them unless narrowed with e.g. {@code -p store=MEMORY_EXACT,FILE_BINARY}.
+ */
+public enum StoreKind {
+    /** {@link MemoryVectorStore} scanning every vector. */
+    MEMORY_EXACT,
+    /** {@link MemoryVectorStore#withNormalizedVectors()}: the scan is a dot product divided by cached norms. */
+    MEMORY_NORMALIZED,
+    /** {@link MemoryVectorStore#withHnswIndex()} with default parameters. */
+    MEMORY_HNSW,
+    /** {@link MemoryVectorStore#withScalarQuantization(int)}: int8 first pass, exact re-scoring. */
+    MEMORY_INT8,
+    /** {@link MemoryVectorStore#withBinaryQuantization(int)}: Hamming first pass, exact re-scoring. */
+    MEMORY_BINARY,
+    /**
+     * {@link MemoryVectorStore#withMatryoshkaSearch(int, int)}: first pass over the leading quarter of each vector,
+     * exact re-scoring. The synthetic vectors are not trained to front-load their information, so recall is lower
+     * than with real Matryoshka embeddings; the speed is representative.
+     */
+    MEMORY_MATRYOSHKA,
+    /** {@link FileVectorStore} in {@link FileVectorStore.StorageFormat#JSONL} mode, embeddings as JSON arrays. */
+    FILE_JSONL,
+    /** JSONL mode with {@link EmbeddingEncoding#FLOAT16_BASE64} embeddings. */
+    FILE_JSONL_FLOAT16,
+    /** {@link FileVectorStore.StorageFormat#BINARY}: one memory-mapped segment. */
+    FILE_BINARY,
+    /** {@link FileVectorStore.StorageFormat#SEGMENTED}: memory-mapped segments searched in parallel. */
+    FILE_SEGMENTED;
+
+    /** File name, or base name for the binary formats, of the file stores. */
+    private static final String FILE_NAME = "benchmark.jsonl";
+    private static final int DEFAULT_TOP_K = 10;
+
+    /**
+     * Creates an empty store.
+     * @param directory Directory for the files of the file stores; unused by the memory stores.
+     * @return The store.
+     * @throws VectorStoreException if the store cannot be created.
+     */
+    VectorStore create(Path directory) throws VectorStoreException {
+        String dir = directory.toString();
+        switch (this) {
+            case MEMORY_NORMALIZED:
+                return new MemoryVectorStore(DEFAULT_TOP_K).withNormalizedVectors();
+            case MEMORY_HNSW:
+                return new MemoryVectorStore(DEFAULT_TOP_K).withHnswIndex();
+            case MEMORY_EXACT:
+            case MEMORY_INT8:
+            case MEMORY_BINARY:
+            case MEMORY_MATRYOSHKA:
+                return new MemoryVectorStore(DEFAULT_TOP_K); // Quantizers are calibrated once documents are stored
+            case FILE_JSONL:
+                return new FileVectorStore(dir, FILE_NAME, DEFAULT_TOP_K);
+            case FILE_JSONL_FLOAT16:
+                return new FileVectorStore(dir, FILE_NAME, DEFAULT_TOP_K).withEmbeddingEncoding(EmbeddingEncoding.FLOAT16_BASE64);
+            case FILE_BINARY:
+                return new FileVectorStore(dir, FILE_NAME, DEFAULT_TOP_K, FileVectorStore.StorageFormat.BINARY);
+            case FILE_SEGMENTED:
+                return new FileVectorStore(dir, FILE_NAME, DEFAULT_TOP_K, FileVectorStore.StorageFormat.SEGMENTED);
+            default:
+                throw new IllegalStateException("Unknown store kind: " + this);
+        }
+    }
+
+    /**
+     * Enables the modes that are fitted to stored documents. Called once, after the first batch is added; later
+     * documents are encoded with that calibration.
+     * @param store     A store created by {@link #create(Path)}.
+     * @param dimension The embedding dimension of the stored documents.
+     * @throws VectorStoreException if the calibration fails.
+     */
+    void calibrate(VectorStore store, int dimension) throws VectorStoreException {
+        if (this == MEMORY_INT8) {
+            ((MemoryVectorStore) store).withScalarQuantization(MemoryVectorStore.DEFAULT_OVERSAMPLING);
+        } else if (this == MEMORY_BINARY) {
+            ((MemoryVectorStore) store).withBinaryQuantization(MemoryVectorStore.DEFAULT_BINARY_OVERSAMPLING);
+        } else if (this == MEMORY_MATRYOSHKA) {
+            ((MemoryVectorStore) store).withMatryoshkaSearch(Math.max(1, dimension / 4), MemoryVectorStore.DEFAULT_MATRYOSHKA_OVERSAMPLING);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.skanga.rag.benchmark;
+
+import com.skanga.rag.Document;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Deterministic synthetic embeddings for the benchmarks. Vectors are scattered around a fixed set of random
+ * cluster centres, as embeddings of a mixed corpus are, so that the HNSW graph and the quantizers see some
+ * structure instead of uniform noise. Every document and query is derived from its index alone, so a corpus of
+ * any size can be streamed into a store without being held in memory, and every run sees the same data.
+ */
+final class SyntheticCorpus {
+    /** Number of cluster centres. */
+    static final int CLUSTERS = 32;
+    /** Standard deviation of a vector around its centre, per dimension, relative to the unit-length centre. */
+    private static final double SPREAD = 0.35;
+
+    private final int dimension;
+    private final long seed;
+    private final float[][] centres;
+
+    SyntheticCorpus(int dimension, long seed) {
+        if (dimension <= 0) {
+            throw new IllegalArgumentException("Dimension must be positive.");
+        }
+        this.dimension = dimension;
+        this.seed = seed;
+        Random random = new Random(seed);
+        this.centres = new float[CLUSTERS][];
+        for (int c = 0; c < CLUSTERS; c++) {
+            float[] centre = new float[dimension];
+            double norm = 0;
+            for (int d = 0; d < dimension; d++) {
+                centre[d] = (float) random.nextGaussian();
+                norm += centre[d] * centre[d];
+            }
+            float scale = (float) (1.0 / Math.sqrt(norm));
+            for (int d = 0; d < dimension; d++) {
+                centre[d] *= scale;
+            }
+            centres[c] = centre;
+        }
+    }
+
+    int dimension() {
+        return dimension;
+    }
+
+    /**
+     * @param index Any index; documents use non-negative ones and queries negative ones.
+     * @return The vector of that index.
+     */
+    float[] vector(long index) {
+        Random random = new Random(seed ^ (index * 0x9E3779B97F4A7C15L));
+        float[] centre = centres[(int) Math.floorMod(index, (long) CLUSTERS)];
+        float[] vector = new float[dimension];
+        double noise = SPREAD / Math.sqrt(dimension);
+        for (int d = 0; d < dimension; d++) {
+            vector[d] = centre[d] + (float) (random.nextGaussian() * noise);
+        }
+        return vector;
+    }
+
+    /** @return Document number {@code index}, with ID {@code doc-<index>} and its cluster as metadata. */
+    Document document(int index) {
+        Document doc = new Document("Synthetic document " + index + " of cluster " + (index % CLUSTERS));
+        doc.setId("doc-" + index);
+        doc.addMetadata("cluster", index % CLUSTERS);
+        doc.setEmbeddingVector(vector(index));
+        return doc;
+    }
+
+    /** @return Documents {@code from} to {@code from + count - 1}. */
+    List<Document> documents(int from, int count) {
+        List<Document> docs = new ArrayList<>(count);
+        for (int i = from; i < from + count; i++) {
+            docs.add(document(i));
+        }
+        return docs;
+    }
+
+    /** @return {@code count} query vectors, drawn from the same clusters as the documents but distinct from them. */
+    float[][] queries(int count) {
+        float[][] queries = new float[count][];
+        for (int q = 0; q < count; q++) {
+            queries[q] = vector(-1L - q);
+        }
+        return queries;
+    }
+}
@@ -0,0 +1,89 @@
+package com.skanga.rag.benchmark;
+
+import com.skanga.rag.Document;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ingest throughput of each {@link StoreKind}: every invocation adds the whole corpus to a new, empty store in
+ * batches, including index construction and quantizer calibration. The primary score is the time to load the
+ * corpus; the {@code documents} secondary score is the same run as documents per second. The documents are
+ * generated beforehand, so only the store's work is measured.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+@State(Scope.Benchmark)
+public class VectorAddBenchmark {
+
+    /** Number of documents added per invocation. */
+    @Param("10000")
+    public int documents;
+
+    /** Embedding dimension. */
+    @Param("384")
+    public int dimension;
+
+    /** Documents per {@code addDocuments} call. */
+    @Param("1000")
+    public int batchSize;
+
+    @Param
+    public StoreKind store;
+
+    private List<Document> corpus;
+    private BenchmarkStore benchmarkStore;
+
+    /** Counts added documents; JMH reports it as a rate, i.e. documents per second. */
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class AddCounters {
+        public long documents;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            documents = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void generate() {
+        corpus = new SyntheticCorpus(dimension, 42).documents(0, documents);
+    }
+
+    @Setup(Level.Invocation)
+    public void createStore() throws IOException {
+        benchmarkStore = BenchmarkStore.create(store);
+    }
+
+    @TearDown(Level.Invocation)
+    public void closeStore() throws IOException {
+        benchmarkStore.close();
+    }
+
+    @Benchmark
+    public void addDocuments(AddCounters counters) {
+        for (int from = 0; from < corpus.size(); from += batchSize) {
+            benchmarkStore.add(corpus.subList(from, Math.min(from + batchSize, corpus.size())));
+        }
+        counters.documents += corpus.size();
+    }
+}
@@ -0,0 +1,100 @@
+package com.skanga.rag.benchmark;
+
+import com.skanga.rag.Document;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Query latency of each {@link StoreKind} over a synthetic corpus. Sampled mode records the distribution of
+ * single-query times, so the results include p50, p90, p99 and p99.9 as well as the mean; with {@code -prof gc}
+ * they also include the bytes allocated per query. The batch benchmark reports the time per query when
+ * {@value #BATCH_SIZE} queries are searched together.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+@State(Scope.Benchmark)
+public class VectorSearchBenchmark {
+    static final int QUERY_COUNT = 256;
+    static final int BATCH_SIZE = 32;
+
+    /** Number of documents in the store. */
+    @Param("10000")
+    public int documents;
+
+    /** Embedding dimension. */
+    @Param("384")
+    public int dimension;
+
+    /** Results per query. */
+    @Param("10")
+    public int k;
+
+    @Param
+    public StoreKind store;
+
+    private BenchmarkStore benchmarkStore;
+    private float[][] queries;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        SyntheticCorpus corpus = new SyntheticCorpus(dimension, 42);
+        benchmarkStore = BenchmarkStore.load(store, corpus, documents);
+        queries = corpus.queries(QUERY_COUNT);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        benchmarkStore.close();
+    }
+
+    /** Cycles each thread through the queries, so that consecutive searches do not repeat one. */
+    @State(Scope.Thread)
+    public static class QueryCursor {
+        private int next;
+
+        int next() {
+            int query = next;
+            next = (next + 1) % QUERY_COUNT;
+            return query;
+        }
+
+        /** @return The first of the next {@value VectorSearchBenchmark#BATCH_SIZE} queries. */
+        int nextBatch() {
+            int from = next - next % BATCH_SIZE;
+            next = (from + BATCH_SIZE) % QUERY_COUNT;
+            return from;
+        }
+    }
+
+    @Benchmark
+    public List<Document> search(QueryCursor cursor) {
+        return benchmarkStore.store().similaritySearchVector(queries[cursor.next()], k);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public List<List<Document>> searchBatch(QueryCursor cursor) {
+        int from = cursor.nextBatch();
+        return benchmarkStore.store().similaritySearchBatchVector(Arrays.asList(queries).subList(from, from + BATCH_SIZE), k);
+    }
+}
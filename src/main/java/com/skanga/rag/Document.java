@@ -1,10 +1,15 @@
 package com.skanga.rag;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.skanga.rag.embeddings.EmbeddingEncoding;
+import com.skanga.rag.embeddings.EmbeddingUtils;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -21,7 +26,9 @@ import java.util.UUID;
  * <p>Key aspects:
  * <ul>
  *   <li>An {@code id} is automatically generated (UUID) upon creation.</li>
- *   <li>{@code embedding} stores the vector representation of the content.</li>
+ *   <li>{@code embedding} stores the vector representation of the content as a primitive
+ *       {@code float[]}. {@link #getEmbeddingVector()} exposes it without boxing for scoring;
+ *       {@link #getEmbedding()} remains available as a {@code List<Double>} compatibility view.</li>
  *   <li>{@code metadata} allows storing arbitrary additional information.</li>
  *   <li>{@code score} can be used by vector stores or post-processors to indicate relevance.</li>
  * </ul>
@@ -41,11 +48,20 @@ public class Document {
 
     /**
      * The vector embedding of the {@link #content}.
-     * This is a list of floats representing the document in a high-dimensional space.
-     * Initialized to an empty list; should be populated by an {@link com.skanga.rag.embeddings.EmbeddingProvider}.
+     * This is a primitive float array representing the document in a high-dimensional space.
+     * Initialized to an empty array; should be populated by an {@link com.skanga.rag.embeddings.EmbeddingProvider}.
+     * In JSON it is an array of numbers unless written with a compact {@link EmbeddingEncoding}.
      */
     @JsonProperty("embedding")
-    private List<Double> embedding;
+    @JsonSerialize(using = EmbeddingEncoding.Serializer.class)
+    @JsonDeserialize(using = EmbeddingEncoding.Deserializer.class)
+    private float[] embedding;
+
+    /**
+     * The {@code List<Double>} view handed out by {@link #getEmbedding()}, created on first use and dropped
+     * whenever the embedding is replaced, so that repeated calls share one view and its widened values.
+     */
+    private transient List<Double> embeddingView;
 
     /**
      * The type of the source from which this document originated (e.g., "file", "url", "manual").
@@ -88,7 +104,7 @@ public class Document {
         Objects.requireNonNull(content, "Document content cannot be null.");
         this.id = UUID.randomUUID().toString();
         this.content = content;
-        this.embedding = new ArrayList<>();
+        this.embedding = EmbeddingUtils.EMPTY_VECTOR;
         this.sourceType = "manual";
         this.sourceName = "manual";
         this.score = 0.0f;
@@ -103,7 +119,7 @@ public class Document {
      */
     public Document() {
         this.id = UUID.randomUUID().toString();
-        this.embedding = new ArrayList<>();
+        this.embedding = EmbeddingUtils.EMPTY_VECTOR;
         this.sourceType = "manual";
         this.sourceName = "manual";
         this.score = 0.0f;
@@ -116,8 +132,28 @@ public class Document {
     public String getId() { return id; }
     /** @return The textual content of this document. */
     public String getContent() { return content; }
-    /** @return The vector embedding of the content (list of floats). May be empty if not yet embedded. */
-    public List<Double> getEmbedding() { return Collections.unmodifiableList(embedding); }
+    /**
+     * Returns an unmodifiable {@code List<Double>} view of the embedding. The same view is returned until the
+     * embedding is replaced, so indexed reads in a loop widen the values only once.
+     * @return The view. May be empty if not yet embedded.
+     */
+    @JsonIgnore
+    public List<Double> getEmbedding() {
+        List<Double> view = embeddingView;
+        if (view == null) {
+            view = EmbeddingUtils.toDoubleList(embedding);
+            embeddingView = view;
+        }
+        return view;
+    }
+    /**
+     * Returns the embedding as a primitive array, without copying or boxing.
+     * This is the accessor vector stores use on their scoring paths. The returned array is the
+     * document's own storage and must not be modified; use {@link #setEmbeddingVector(float[])} instead.
+     * @return The embedding vector. Never null; empty if not yet embedded.
+     */
+    @JsonIgnore
+    public float[] getEmbeddingVector() { return embedding; }
     /** @return The type of the source (e.g., "file", "url"). */
     public String getSourceType() { return sourceType; }
     /** @return The name or identifier of the source (e.g., file path). */
@@ -132,8 +168,18 @@ public class Document {
     public void setId(String id) { this.id = Objects.requireNonNull(id, "ID cannot be null."); }
     /** Sets the textual content of this document. */
     public void setContent(String content) { this.content = Objects.requireNonNull(content, "Content cannot be null."); }
-    /** Sets the vector embedding for this document. A defensive copy is made. */
-    public void setEmbedding(List<Double> embedding) { this.embedding = (embedding == null) ? new ArrayList<>() : new ArrayList<>(embedding); }
+    /** Sets the vector embedding for this document. The values are copied into a primitive array. */
+    @JsonIgnore
+    public void setEmbedding(List<Double> embedding) {
+        this.embedding = EmbeddingUtils.toFloatArray(embedding);
+        this.embeddingView = null;
+    }
+    /** Sets the vector embedding for this document from a primitive array. A defensive copy is made. */
+    @JsonIgnore
+    public void setEmbeddingVector(float[] embedding) {
+        this.embedding = (embedding == null || embedding.length == 0) ? EmbeddingUtils.EMPTY_VECTOR : embedding.clone();
+        this.embeddingView = null;
+    }
     /** Sets the source type. */
     public void setSourceType(String sourceType) { this.sourceType = sourceType; }
     /** Sets the source name. */
@@ -170,7 +216,7 @@ public class Document {
         return "Document{" +
                 "id='" + id + '\'' +
                 ", content='" + contentPreview + '\'' +
-                ", embedding_size=" + (embedding != null ? embedding.size() : "0") +
+                ", embedding_size=" + (embedding != null ? embedding.length : "0") +
                 ", sourceType='" + sourceType + '\'' +
                 ", sourceName='" + sourceName + '\'' +
                 ", score=" + score +
@@ -186,7 +232,7 @@ public class Document {
         return Float.compare(document.score, score) == 0 &&
                Objects.equals(id, document.id) &&
                Objects.equals(content, document.content) &&
-               Objects.equals(embedding, document.embedding) &&
+               Arrays.equals(embedding, document.embedding) &&
                Objects.equals(sourceType, document.sourceType) &&
                Objects.equals(sourceName, document.sourceName) &&
                Objects.equals(metadata, document.metadata);
@@ -194,6 +240,6 @@ public class Document {
 
     @Override
     public int hashCode() {
-        return Objects.hash(id, content, embedding, sourceType, sourceName, score, metadata);
+        return 31 * Objects.hash(id, content, sourceType, sourceName, score, metadata) + Arrays.hashCode(embedding);
     }
 }
@@ -5,6 +5,7 @@ import com.skanga.chat.messages.Message;
 import com.skanga.core.messages.MessageRequest;
 import com.skanga.rag.embeddings.EmbeddingProvider;
 import com.skanga.rag.vectorstore.VectorStore;
+import com.skanga.rag.vectorstore.search.ReciprocalRankFusion;
 import com.skanga.rag.postprocessing.PostProcessor;
 import com.skanga.core.exceptions.AgentException;
 
@@ -12,6 +13,10 @@ import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 import java.util.stream.Stream;
 import java.math.BigInteger;
 
@@ -37,7 +42,9 @@ import java.math.BigInteger;
  *       <li>{@code retrieveDocuments(question)}:
  *         <ol>
  *           <li>Query text is embedded using {@code embeddingProvider.embedText()}.</li>
- *           <li>{@code vectorStore.similaritySearch()} is called with the query embedding.</li>
+ *           <li>{@code vectorStore.similaritySearch()} is called with the query embedding. With hybrid search
+ *               enabled ({@link #setHybridSearch(boolean)}), {@code vectorStore.lexicalSearch()} runs concurrently
+ *               on the query text and the two rankings are fused with {@link ReciprocalRankFusion}.</li>
  *           <li>Retrieved documents are deduplicated (based on content MD5).</li>
  *           <li>{@code applyPostProcessors()} refines the document list.</li>
  *         </ol>
@@ -59,6 +66,16 @@ public class RAG extends BaseAgent {
     protected List<PostProcessor> postProcessors = new ArrayList<>();
     /** Default number of documents to retrieve from the vector store. */
     protected int topK = 5;
+    /** Default number of candidates each retriever contributes to the fusion in hybrid search. */
+    public static final int DEFAULT_HYBRID_CANDIDATES = 20;
+    /** Whether retrieval fuses a lexical search with the similarity search. */
+    protected boolean hybridSearch;
+    /** Candidates requested from each retriever in hybrid search; at least {@link #topK} are requested. */
+    protected int hybridCandidates = DEFAULT_HYBRID_CANDIDATES;
+    /** Rank constant of the reciprocal rank fusion in hybrid search. */
+    protected int rrfRankConstant = ReciprocalRankFusion.DEFAULT_RANK_CONSTANT;
+    /** Runs the lexical search of a hybrid retrieval while the query is embedded and the vector search runs. */
+    protected Executor retrievalExecutor = ForkJoinPool.commonPool();
 
     /**
      * Default constructor. Initializes a RAG agent without specific providers.
@@ -137,6 +154,59 @@ public class RAG extends BaseAgent {
         return this;
     }
 
+    /**
+     * Enables or disables hybrid retrieval with the default parameters: each question is answered by both a
+     * similarity search and a lexical search ({@link VectorStore#lexicalSearch(String, int)}), and their
+     * rankings are fused with reciprocal rank fusion. Lexical matching finds exact identifiers (error codes,
+     * SKUs) that embeddings miss, so a smaller {@code topK} reaches the same recall.
+     * The vector store must support lexical search, e.g. {@code MemoryVectorStore.withLexicalIndex()}.
+     *
+     * @param enabled {@code true} to fuse both searches, {@code false} for similarity search only.
+     * @return This RAG agent instance for fluent chaining.
+     * @see #setHybridSearch(int, int)
+     */
+    public RAG setHybridSearch(boolean enabled) {
+        this.hybridSearch = enabled;
+        return this;
+    }
+
+    /**
+     * Enables hybrid retrieval (see {@link #setHybridSearch(boolean)}).
+     * @param candidatesPerRetriever The number of documents requested from each search before fusion; the
+     *                               larger of this and {@code topK} is used. Must be positive.
+     * @param rrfRankConstant        The reciprocal rank fusion constant (see
+     *                               {@link ReciprocalRankFusion#DEFAULT_RANK_CONSTANT}). Must be positive.
+     * @return This RAG agent instance for fluent chaining.
+     * @throws IllegalArgumentException if a parameter is not positive.
+     */
+    public RAG setHybridSearch(int candidatesPerRetriever, int rrfRankConstant) {
+        if (candidatesPerRetriever <= 0) {
+            throw new IllegalArgumentException("candidatesPerRetriever must be positive.");
+        }
+        if (rrfRankConstant <= 0) {
+            throw new IllegalArgumentException("rrfRankConstant must be positive.");
+        }
+        this.hybridSearch = true;
+        this.hybridCandidates = candidatesPerRetriever;
+        this.rrfRankConstant = rrfRankConstant;
+        return this;
+    }
+
+    /** @return {@code true} if retrieval fuses a lexical search with the similarity search. */
+    public boolean isHybridSearchEnabled() {
+        return hybridSearch;
+    }
+
+    /**
+     * Sets the executor that runs the lexical half of a hybrid retrieval. Defaults to the common pool.
+     * @param retrievalExecutor The executor.
+     * @return This RAG agent instance for fluent chaining.
+     */
+    public RAG setRetrievalExecutor(Executor retrievalExecutor) {
+        this.retrievalExecutor = Objects.requireNonNull(retrievalExecutor, "Retrieval executor cannot be null.");
+        return this;
+    }
+
     /**
      * Gets the currently configured {@link VectorStore}.
      * @return The vector store.
@@ -293,17 +363,143 @@ public class RAG extends BaseAgent {
      * Retrieves relevant documents for a given question.
      * This involves embedding the question, performing a similarity search in the vector store,
      * deduplicating results, and applying post-processors.
+     * With hybrid search enabled, a lexical search for the question text is started first, runs while the
+     * question is embedded and the similarity search executes, and is fused with it into {@code topK} documents.
      *
      * @param question The user's question as a {@link Message}.
      * @return A list of processed and relevant {@link Document} objects.
      * @throws AgentException if the question content is invalid or if embedding/search fails.
      */
     public List<Document> retrieveDocuments(Message question) {
+        String queryText = queryText(question);
+        VectorStore store = getVectorStore(); // Throws if not set
+        int searchK = hybridSearch ? Math.max(this.topK, this.hybridCandidates) : this.topK;
+        CompletableFuture<List<Document>> lexicalSearch = startLexicalSearch(store, queryText, searchK);
+
+        List<Document> retrievedDocs;
+        long searchDurationMs;
+        try {
+            List<Double> queryEmbedding = embedQuery(queryText);
+            long searchStartTime = System.currentTimeMillis();
+
+            try {
+                retrievedDocs = store.similaritySearch(queryEmbedding, searchK);
+            } catch (AgentException e) {
+                throw e;
+            } catch (RuntimeException e) {
+                throw new AgentException("Failed to retrieve documents from vector store: " + e.getMessage(), e);
+            }
+            if (lexicalSearch != null) {
+                retrievedDocs = ReciprocalRankFusion.fuse(Arrays.asList(retrievedDocs, awaitLexicalSearch(lexicalSearch)),
+                                                          rrfRankConstant, this.topK);
+            }
+            searchDurationMs = System.currentTimeMillis() - searchStartTime;
+        } finally {
+            if (lexicalSearch != null) {
+                lexicalSearch.cancel(false); // No-op once joined; otherwise the result is not needed
+            }
+        }
+
+        return finishRetrieval(question, retrievedDocs, searchDurationMs);
+    }
+
+    /**
+     * Retrieves relevant documents for a question without blocking the caller; the asynchronous form of
+     * {@link #retrieveDocuments(Message)}, with the same steps and events. The question is embedded on the
+     * retrieval executor (see {@link #setRetrievalExecutor(Executor)}), and the similarity search goes through
+     * {@link VectorStore#similaritySearchAsync(List, int)}, so a remote store holds no thread during its round trip.
+     *
+     * @param question The user's question as a {@link Message}.
+     * @return A future completing with the processed documents, or exceptionally with an {@link AgentException}
+     *         if embedding or search fails.
+     * @throws AgentException if the question content is invalid or the store is not set.
+     */
+    public CompletableFuture<List<Document>> retrieveDocumentsAsync(Message question) {
+        String queryText = queryText(question);
+        VectorStore store = getVectorStore(); // Throws if not set
+        int searchK = hybridSearch ? Math.max(this.topK, this.hybridCandidates) : this.topK;
+        CompletableFuture<List<Document>> lexicalSearch = startLexicalSearch(store, queryText, searchK);
+        long[] searchStartTime = new long[1];
+
+        CompletableFuture<List<Document>> retrieval = CompletableFuture
+                .supplyAsync(() -> embedQuery(queryText), retrievalExecutor)
+                .thenCompose(queryEmbedding -> {
+                    searchStartTime[0] = System.currentTimeMillis();
+                    CompletableFuture<List<Document>> search;
+                    try {
+                        search = store.similaritySearchAsync(queryEmbedding, searchK);
+                    } catch (RuntimeException e) {
+                        search = CompletableFuture.failedFuture(e);
+                    }
+                    return search.handle((retrievedDocs, error) -> {
+                        if (error == null) {
+                            return retrievedDocs;
+                        }
+                        Throwable cause = (error instanceof CompletionException && error.getCause() != null) ? error.getCause() : error;
+                        if (cause instanceof AgentException agentException) {
+                            throw agentException;
+                        }
+                        throw new AgentException("Failed to retrieve documents from vector store: " + cause.getMessage(), cause);
+                    });
+                })
+                .thenApply(retrievedDocs -> {
+                    if (lexicalSearch != null) {
+                        retrievedDocs = ReciprocalRankFusion.fuse(Arrays.asList(retrievedDocs, awaitLexicalSearch(lexicalSearch)),
+                                                                  rrfRankConstant, this.topK);
+                    }
+                    return finishRetrieval(question, retrievedDocs, System.currentTimeMillis() - searchStartTime[0]);
+                });
+        if (lexicalSearch != null) {
+            retrieval.whenComplete((documents, error) -> lexicalSearch.cancel(false));
+        }
+        return retrieval;
+    }
+
+    /**
+     * Answers a question without blocking the caller: retrieval runs through {@link #retrieveDocumentsAsync(Message)},
+     * the documents are added to the instructions, and the chat goes through {@link #chatAsync(MessageRequest)}.
+     *
+     * @param question The user's question as a {@link Message}.
+     * @return A future completing with the AI's response.
+     */
+    public CompletableFuture<Message> answerAsync(Message question) {
+        Objects.requireNonNull(question, "Question message cannot be null.");
+        notifyObservers("rag-answer-start", Map.of("question", question.getContent() != null ? question.getContent().toString() : ""));
+        notifyObservers("rag-retrieval-start", question);
+        return retrieveDocumentsAsync(question)
+                .thenCompose(retrievedDocs -> {
+                    withDocumentsContext(retrievedDocs);
+                    notifyObservers("rag-retrieval-stop", Map.of("retrieved_docs_count", retrievedDocs.size()));
+                    return chatAsync(new MessageRequest(question));
+                })
+                .thenApply(response -> {
+                    notifyObservers("rag-answer-stop", Map.of("response_content", response.getContent() != null ? response.getContent().toString() : ""));
+                    return response;
+                });
+    }
+
+    /**
+     * Extracts the retrieval query from a question.
+     * @throws AgentException if the question content is not a non-empty string.
+     */
+    private static String queryText(Message question) {
         if (question.getContent() == null || !(question.getContent() instanceof String) || ((String)question.getContent()).trim().isEmpty()) {
             throw new AgentException("Question content must be a non-empty string for RAG retrieval.");
         }
-        String queryText = ((String) question.getContent()).trim();
+        return ((String) question.getContent()).trim();
+    }
+
+    /** Starts the lexical half of a hybrid retrieval, or returns {@code null} if hybrid search is off. */
+    private CompletableFuture<List<Document>> startLexicalSearch(VectorStore store, String queryText, int searchK) {
+        if (!hybridSearch) {
+            return null;
+        }
+        notifyObservers("rag-lexical-searching", Map.of("query_text", queryText, "top_k", searchK));
+        return CompletableFuture.supplyAsync(() -> store.lexicalSearch(queryText, searchK), retrievalExecutor);
+    }
 
+    /** Embeds the query text and announces the search. */
+    private List<Double> embedQuery(String queryText) {
         notifyObservers("rag-vectorstore-embedding-query", Map.of("query", queryText));
         List<Double> queryEmbedding = getEmbeddingProvider().embedText(queryText); // Throws if provider not set
 
@@ -311,12 +507,13 @@ public class RAG extends BaseAgent {
         searchEventData.put("query_text", queryText);
         searchEventData.put("query_embedding_size", queryEmbedding != null ? queryEmbedding.size() : 0);
         searchEventData.put("top_k", this.topK);
+        searchEventData.put("hybrid_search", hybridSearch);
         notifyObservers("rag-vectorstore-searching", searchEventData);
-        long searchStartTime = System.currentTimeMillis();
-
-        List<Document> retrievedDocs = getVectorStore().similaritySearch(queryEmbedding, this.topK); // Throws if provider not set
-        long searchDurationMs = System.currentTimeMillis() - searchStartTime;
+        return queryEmbedding;
+    }
 
+    /** Deduplicates the retrieved documents, reports them and applies the post-processors. */
+    private List<Document> finishRetrieval(Message question, List<Document> retrievedDocs, long searchDurationMs) {
         // Deduplication: Using content hash to remove exact duplicates.
         // LinkedHashSet preserves insertion order of unique elements.
         Set<String> contentHashes = new LinkedHashSet<>();
@@ -342,6 +539,19 @@ public class RAG extends BaseAgent {
         return applyPostProcessors(question, uniqueDocs);
     }
 
+    /**
+     * Waits for the lexical half of a hybrid retrieval.
+     * @throws AgentException if the lexical search failed or the store does not support it.
+     */
+    private List<Document> awaitLexicalSearch(CompletableFuture<List<Document>> lexicalSearch) {
+        try {
+            return lexicalSearch.join();
+        } catch (CompletionException e) {
+            Throwable cause = (e.getCause() != null) ? e.getCause() : e;
+            throw new AgentException("Failed to retrieve documents by lexical search: " + cause.getMessage(), cause);
+        }
+    }
+
     /**
      * Applies registered post-processors to the list of documents.
      * @param question The original question message.
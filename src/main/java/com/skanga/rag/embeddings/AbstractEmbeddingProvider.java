@@ -26,7 +26,8 @@ public abstract class AbstractEmbeddingProvider implements EmbeddingProvider {
     /**
      * {@inheritDoc}
      * <p>This implementation retrieves the content from the document,
-     * calls the abstract {@link #embedText(String)} method to get the embedding vector,
+     * calls {@link #embedTextVector(String)} (which by default delegates to the abstract
+     * {@link #embedText(String)}) to get the embedding vector,
      * sets this vector on the document, and then returns the updated document.</p>
      *
      * @throws EmbeddingException if document or its content is null/empty, or if {@code embedText} fails.
@@ -39,8 +40,8 @@ public abstract class AbstractEmbeddingProvider implements EmbeddingProvider {
             // but typically content is required for meaningful embedding.
             throw new EmbeddingException("Document content cannot be null or empty for embedding. Doc ID: " + document.getId());
         }
-        List<Double> embeddingVector = this.embedText(document.getContent());
-        document.setEmbedding(embeddingVector);
+        float[] embeddingVector = this.embedTextVector(document.getContent());
+        document.setEmbeddingVector(embeddingVector);
         return document;
     }
 
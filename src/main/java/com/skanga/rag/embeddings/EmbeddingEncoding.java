@@ -0,0 +1,223 @@
+package com.skanga.rag.embeddings;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * How an embedding is written in the JSON of a {@link com.skanga.rag.Document}.
+ *
+ * <p>By default ({@link #JSON_ARRAY}) an embedding is an array of numbers. The compact encodings write it
+ * as one string instead: a prefix naming the element type, followed by the little-endian bytes of the
+ * vector in base64. For example, {@code [1.0, -2.0]} becomes {@code "f16:ADwAwA=="}.
+ * Reading accepts every encoding, so documents written in different encodings can share a file.</p>
+ *
+ * <p>For a 1536-dimension embedding, the array takes about 20 KB of text. {@link #FLOAT32_BASE64} takes
+ * 8 KB and keeps every bit. {@link #FLOAT16_BASE64} takes 4 KB and rounds each value to half precision:
+ * about three significant digits, with magnitudes above 65504 becoming infinite. That is usually
+ * negligible for cosine similarity of normalized embeddings. Decoding base64 is also much cheaper than
+ * parsing the numbers.</p>
+ *
+ * <p>The encoding is chosen per write by setting this class as an attribute on a Jackson writer, e.g.
+ * {@code mapper.writer().withAttribute(EmbeddingEncoding.class, EmbeddingEncoding.FLOAT16_BASE64)}
+ * (see {@link Serializer}). Without the attribute, the array is written.</p>
+ */
+public enum EmbeddingEncoding {
+    /** An array of JSON numbers; the original format. */
+    JSON_ARRAY(null),
+    /** {@code "f32:"} followed by the base64 of the little-endian float32 values; lossless. */
+    FLOAT32_BASE64("f32:"),
+    /** {@code "f16:"} followed by the base64 of the little-endian IEEE half-precision values; lossy. */
+    FLOAT16_BASE64("f16:");
+
+    private final String prefix;
+
+    EmbeddingEncoding(String prefix) {
+        this.prefix = prefix;
+    }
+
+    /**
+     * Encodes a vector as the string written in place of the array.
+     * @param vector The embedding.
+     * @return The prefixed base64 string.
+     * @throws UnsupportedOperationException for {@link #JSON_ARRAY}, which is not a string.
+     */
+    public String encode(float[] vector) {
+        if (this == JSON_ARRAY) {
+            throw new UnsupportedOperationException("JSON_ARRAY embeddings are written as arrays, not strings.");
+        }
+        ByteBuffer bytes = ByteBuffer.allocate(vector.length * (this == FLOAT16_BASE64 ? Short.BYTES : Float.BYTES))
+                .order(ByteOrder.LITTLE_ENDIAN);
+        if (this == FLOAT16_BASE64) {
+            for (float value : vector) {
+                bytes.putShort(floatToHalf(value));
+            }
+        } else {
+            bytes.asFloatBuffer().put(vector);
+        }
+        return prefix + Base64.getEncoder().encodeToString(bytes.array());
+    }
+
+    /**
+     * Decodes a string written by {@link #encode(float[])} in any of the compact encodings.
+     * @param encoded The prefixed base64 string.
+     * @return The embedding; {@link EmbeddingUtils#EMPTY_VECTOR} if it has no values.
+     * @throws IllegalArgumentException if the prefix is unknown, the base64 is invalid, or the byte count
+     *                                  does not fit the element type.
+     */
+    public static float[] decode(String encoded) {
+        EmbeddingEncoding encoding;
+        if (encoded.startsWith(FLOAT16_BASE64.prefix)) {
+            encoding = FLOAT16_BASE64;
+        } else if (encoded.startsWith(FLOAT32_BASE64.prefix)) {
+            encoding = FLOAT32_BASE64;
+        } else {
+            throw new IllegalArgumentException("Unknown embedding encoding: \"" +
+                                               encoded.substring(0, Math.min(8, encoded.length())) + "...\"");
+        }
+        byte[] decoded = Base64.getDecoder().decode(encoded.substring(encoding.prefix.length()));
+        int elementBytes = (encoding == FLOAT16_BASE64) ? Short.BYTES : Float.BYTES;
+        if (decoded.length % elementBytes != 0) {
+            throw new IllegalArgumentException("Embedding of " + decoded.length + " bytes is not a whole number of " +
+                                               elementBytes + "-byte values.");
+        }
+        if (decoded.length == 0) {
+            return EmbeddingUtils.EMPTY_VECTOR;
+        }
+        ByteBuffer bytes = ByteBuffer.wrap(decoded).order(ByteOrder.LITTLE_ENDIAN);
+        float[] vector = new float[decoded.length / elementBytes];
+        if (encoding == FLOAT16_BASE64) {
+            for (int i = 0; i < vector.length; i++) {
+                vector[i] = halfToFloat(bytes.getShort(i * Short.BYTES));
+            }
+        } else {
+            bytes.asFloatBuffer().get(vector);
+        }
+        return vector;
+    }
+
+    /**
+     * Rounds a float to the nearest IEEE 754 half-precision value, ties to even. Values too large for half
+     * precision become infinite; NaN stays NaN.
+     * @param value The value.
+     * @return The half-precision bits.
+     */
+    public static short floatToHalf(float value) {
+        int bits = Float.floatToRawIntBits(value);
+        int sign = (bits >>> 16) & 0x8000;
+        int exponent = (bits >>> 23) & 0xFF;
+        int mantissa = bits & 0x7FFFFF;
+        if (exponent == 0xFF) { // Infinity, or NaN with its payload's top bits kept quiet
+            return (short) (sign | 0x7C00 | (mantissa != 0 ? 0x200 | (mantissa >>> 13) : 0));
+        }
+        int halfExponent = exponent - 127 + 15;
+        if (halfExponent >= 0x1F) {
+            return (short) (sign | 0x7C00);
+        }
+        if (halfExponent <= 0) {
+            if (halfExponent < -10) {
+                return (short) sign; // Below half the smallest subnormal
+            }
+            int significand = mantissa | 0x800000;
+            int shift = 14 - halfExponent;
+            return (short) (sign | roundShift(significand, shift));
+        }
+        // Rounding may carry into the exponent, which is the correct result (up to infinity).
+        return (short) (sign | ((halfExponent << 10) + roundShift(mantissa, 13)));
+    }
+
+    /** Shifts right by {@code shift} bits, rounding to nearest with ties to even. */
+    private static int roundShift(int value, int shift) {
+        int shifted = value >>> shift;
+        int remainder = value & ((1 << shift) - 1);
+        int halfway = 1 << (shift - 1);
+        if (remainder > halfway || (remainder == halfway && (shifted & 1) != 0)) {
+            shifted++;
+        }
+        return shifted;
+    }
+
+    /**
+     * Widens an IEEE 754 half-precision value to a float; exact.
+     * @param half The half-precision bits.
+     * @return The value.
+     */
+    public static float halfToFloat(short half) {
+        int bits = half & 0xFFFF;
+        int sign = (bits & 0x8000) << 16;
+        int exponent = (bits >>> 10) & 0x1F;
+        int mantissa = bits & 0x3FF;
+        if (exponent == 0x1F) {
+            return Float.intBitsToFloat(sign | 0x7F800000 | (mantissa << 13));
+        }
+        if (exponent == 0) {
+            float subnormal = mantissa * 0x1p-24f;
+            return (sign != 0) ? -subnormal : subnormal;
+        }
+        return Float.intBitsToFloat(sign | ((exponent + 112) << 23) | (mantissa << 13));
+    }
+
+    /**
+     * Writes an embedding in the {@link EmbeddingEncoding} set as a writer attribute, or as an array of
+     * numbers (exactly as Jackson writes a {@code float[]}) if none is set.
+     */
+    public static final class Serializer extends JsonSerializer<float[]> {
+        @Override
+        public void serialize(float[] value, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            Object encoding = provider.getAttribute(EmbeddingEncoding.class);
+            if (encoding instanceof EmbeddingEncoding compact && compact != JSON_ARRAY && value.length > 0) {
+                gen.writeString(compact.encode(value));
+                return;
+            }
+            gen.writeStartArray(value, value.length);
+            for (float element : value) {
+                gen.writeNumber(element);
+            }
+            gen.writeEndArray();
+        }
+    }
+
+    /** Reads an embedding written as an array of numbers or in one of the compact encodings. */
+    public static final class Deserializer extends JsonDeserializer<float[]> {
+        @Override
+        public float[] deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+            if (parser.currentToken() == JsonToken.VALUE_STRING) {
+                try {
+                    return decode(parser.getText());
+                } catch (IllegalArgumentException e) {
+                    return (float[]) context.handleWeirdStringValue(float[].class, parser.getText(), e.getMessage());
+                }
+            }
+            if (parser.currentToken() != JsonToken.START_ARRAY) {
+                return (float[]) context.handleUnexpectedToken(float[].class, parser);
+            }
+            float[] vector = new float[64];
+            int length = 0;
+            for (JsonToken token = parser.nextToken(); token != JsonToken.END_ARRAY; token = parser.nextToken()) {
+                if (token != JsonToken.VALUE_NUMBER_FLOAT && token != JsonToken.VALUE_NUMBER_INT) {
+                    return (float[]) context.handleUnexpectedToken(float.class, parser);
+                }
+                if (length == vector.length) {
+                    vector = Arrays.copyOf(vector, length * 2);
+                }
+                vector[length++] = parser.getFloatValue();
+            }
+            return (length == 0) ? EmbeddingUtils.EMPTY_VECTOR : Arrays.copyOf(vector, length);
+        }
+
+        @Override
+        public float[] getNullValue(DeserializationContext context) {
+            return EmbeddingUtils.EMPTY_VECTOR;
+        }
+    }
+}
@@ -23,6 +23,20 @@ public interface EmbeddingProvider {
      */
     List<Double> embedText(String text) throws EmbeddingException;
 
+    /**
+     * Generates a vector embedding for a single piece of text as a primitive array.
+     * Providers that can deserialize their API response directly into a {@code float[]}
+     * override this to avoid boxing. The default implementation converts the result of
+     * {@link #embedText(String)}.
+     *
+     * @param text The text to embed. Must not be null or empty.
+     * @return A float array representing the embedding for the text.
+     * @throws EmbeddingException if an error occurs during the embedding process.
+     */
+    default float[] embedTextVector(String text) throws EmbeddingException {
+        return EmbeddingUtils.toFloatArray(embedText(text));
+    }
+
     /**
      * Generates an embedding for a single {@link Document} and updates its embedding field.
      * The content of the document ({@link Document#getContent()}) is used for embedding.
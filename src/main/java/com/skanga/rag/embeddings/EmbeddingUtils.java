@@ -0,0 +1,113 @@
+package com.skanga.rag.embeddings;
+
+import java.util.AbstractList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+/**
+ * Utility class for converting between the primitive {@code float[]} embedding representation
+ * used internally by {@link com.skanga.rag.Document} and the vector stores, and the boxed
+ * {@code List<Double>} representation exposed by the original (compatibility) API.
+ *
+ * <p>Embeddings are stored as {@code float[]} (4 bytes per dimension) instead of
+ * {@code List<Double>} (an object header plus a reference per dimension, typically 16-24 bytes).
+ * For 1536-dimension vectors this is roughly a 5x reduction in heap usage per document and
+ * removes unboxing from similarity scoring loops.</p>
+ */
+public final class EmbeddingUtils {
+
+    /** Shared empty vector, returned for null or empty inputs. */
+    public static final float[] EMPTY_VECTOR = new float[0];
+
+    /**
+     * Private constructor to prevent instantiation of this utility class.
+     * All methods are static.
+     */
+    private EmbeddingUtils() {}
+
+    /**
+     * Converts a boxed embedding list into a new primitive {@code float[]}.
+     *
+     * @param embedding The embedding as a list of doubles. May be null.
+     * @return A new float array holding the narrowed values, or {@link #EMPTY_VECTOR} if the input is null or empty.
+     * @throws NullPointerException if any element of the list is null.
+     */
+    public static float[] toFloatArray(List<Double> embedding) {
+        if (embedding == null || embedding.isEmpty()) {
+            return EMPTY_VECTOR;
+        }
+        if (embedding instanceof FloatArrayList) {
+            return ((FloatArrayList) embedding).values.clone();
+        }
+        float[] vector = new float[embedding.size()];
+        int i = 0;
+        for (Double value : embedding) {
+            vector[i++] = Objects.requireNonNull(value, "Embedding values cannot be null.").floatValue();
+        }
+        return vector;
+    }
+
+    /**
+     * Returns an unmodifiable {@code List<Double>} view over the given primitive vector.
+     * No copy of the array is made; the values are widened together on the first access, and later
+     * accesses read the widened copy, so widening costs once per view rather than once per {@code get}.
+     *
+     * <p>Widening uses the shortest decimal representation of each float (the same text Jackson
+     * writes for a {@code float}), so a value that was set as {@code 0.1} reads back as {@code 0.1}
+     * rather than {@code 0.10000000149011612}.</p>
+     *
+     * @param vector The primitive vector. May be null.
+     * @return An unmodifiable list view, or an empty list if the input is null or empty.
+     */
+    public static List<Double> toDoubleList(float[] vector) {
+        if (vector == null || vector.length == 0) {
+            return Collections.emptyList();
+        }
+        return new FloatArrayList(vector);
+    }
+
+    /**
+     * Widens a float to the double with the same shortest decimal representation.
+     * @param value The float value.
+     * @return The corresponding double value.
+     */
+    static double widen(float value) {
+        if (Float.isNaN(value) || Float.isInfinite(value)) {
+            return value;
+        }
+        return Double.parseDouble(Float.toString(value));
+    }
+
+    /**
+     * Read-only {@code List<Double>} adapter over a {@code float[]}.
+     */
+    private static final class FloatArrayList extends AbstractList<Double> implements RandomAccess {
+        private final float[] values;
+        /** The widened values, computed on the first {@link #get(int)}. */
+        private volatile double[] widened;
+
+        FloatArrayList(float[] values) {
+            this.values = values;
+        }
+
+        @Override
+        public Double get(int index) {
+            double[] cached = widened;
+            if (cached == null) {
+                cached = new double[values.length];
+                for (int i = 0; i < values.length; i++) {
+                    cached[i] = widen(values[i]);
+                }
+                widened = cached;
+            }
+            return cached[index];
+        }
+
+        @Override
+        public int size() {
+            return values.length;
+        }
+    }
+}
@@ -78,12 +78,25 @@ public class OllamaEmbeddingProvider extends AbstractEmbeddingProvider {
 
     /**
      * {@inheritDoc}
-     * <p>This implementation calls the Ollama `/api/embeddings` endpoint.</p>
+     * <p>This implementation calls the Ollama `/api/embeddings` endpoint and returns a
+     * list view over the vector produced by {@link #embedTextVector(String)}.</p>
      *
      * @throws EmbeddingException if text is null/empty, or if API call or JSON processing fails.
      */
     @Override
     public List<Double> embedText(String text) throws EmbeddingException {
+        return EmbeddingUtils.toDoubleList(embedTextVector(text));
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>This implementation calls the Ollama `/api/embeddings` endpoint. The response's
+     * embedding array is deserialized directly into a {@code float[]}.</p>
+     *
+     * @throws EmbeddingException if text is null/empty, or if API call or JSON processing fails.
+     */
+    @Override
+    public float[] embedTextVector(String text) throws EmbeddingException {
         Objects.requireNonNull(text, "Text to embed cannot be null.");
         if (text.trim().isEmpty()) {
             throw new EmbeddingException("Text to embed cannot be empty or whitespace only.");
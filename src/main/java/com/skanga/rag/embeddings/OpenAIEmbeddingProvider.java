@@ -1,11 +1,10 @@
 package com.skanga.rag.embeddings;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.skanga.providers.HttpClientManager;
 import com.skanga.providers.openai.dto.OpenAIEmbeddingRequest;
-import com.skanga.providers.openai.dto.OpenAIEmbeddingResponse;
-// OpenAIEmbeddingData is not directly used as we access embedding via response.data().get(0).embedding()
 
 import java.io.IOException;
 import java.net.URI;
@@ -14,6 +13,7 @@ import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.time.Duration;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 
 /**
@@ -94,12 +94,25 @@ public class OpenAIEmbeddingProvider extends AbstractEmbeddingProvider {
 
     /**
      * {@inheritDoc}
-     * <p>This implementation calls the OpenAI embeddings API.</p>
+     * <p>This implementation calls the OpenAI embeddings API and returns a list view over the
+     * vector produced by {@link #embedTextVector(String)}.</p>
      *
      * @throws EmbeddingException if text is null/empty, or if API call or JSON processing fails.
      */
     @Override
     public List<Double> embedText(String text) throws EmbeddingException {
+        return EmbeddingUtils.toDoubleList(embedTextVector(text));
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>This implementation calls the OpenAI embeddings API. The response's embedding array is
+     * deserialized directly into a {@code float[]}.</p>
+     *
+     * @throws EmbeddingException if text is null/empty, or if API call or JSON processing fails.
+     */
+    @Override
+    public float[] embedTextVector(String text) throws EmbeddingException {
         Objects.requireNonNull(text, "Text to embed cannot be null.");
         // OpenAI API v1/embeddings endpoint expects non-empty input.
         // While the API might support multiple inputs, this method processes one string.
@@ -134,7 +147,7 @@ public class OpenAIEmbeddingProvider extends AbstractEmbeddingProvider {
             }
 
             String responseBody = httpResponse.body();
-            OpenAIEmbeddingResponse embeddingResponse = objectMapper.readValue(responseBody, OpenAIEmbeddingResponse.class);
+            OpenAIVectorResponse embeddingResponse = objectMapper.readValue(responseBody, OpenAIVectorResponse.class);
 
             if (embeddingResponse == null || embeddingResponse.data() == null || embeddingResponse.data().isEmpty()) {
                 throw new EmbeddingException("OpenAI embedding response is empty or missing 'data'. Body: " + responseBody);
@@ -155,4 +168,18 @@ public class OpenAIEmbeddingProvider extends AbstractEmbeddingProvider {
             throw new EmbeddingException("Error during OpenAI API call for embedding: " + e.getMessage(), e);
         }
     }
+
+    // Response DTOs: as the public OpenAIEmbeddingResponse, but with the embedding read as float[]
+    private static record OpenAIVectorResponse(
+            @JsonProperty("object") String object,
+            @JsonProperty("data") List<OpenAIVectorData> data,
+            @JsonProperty("model") String model,
+            @JsonProperty("usage") Map<String, Integer> usage
+    ) {}
+
+    private static record OpenAIVectorData(
+            @JsonProperty("object") String object,
+            @JsonProperty("embedding") float[] embedding,
+            @JsonProperty("index") Integer index
+    ) {}
 }
@@ -82,6 +82,17 @@ public class VoyageEmbeddingProvider extends AbstractEmbeddingProvider {
      */
     @Override
     public List<Double> embedText(String text) throws EmbeddingException {
+        return EmbeddingUtils.toDoubleList(embedTextVector(text));
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>The response's embedding array is deserialized directly into a {@code float[]}.</p>
+     *
+     * @throws EmbeddingException if text is null/empty, or if the API call or JSON processing fails.
+     */
+    @Override
+    public float[] embedTextVector(String text) throws EmbeddingException {
         Objects.requireNonNull(text, "Text to embed cannot be null.");
         if (text.trim().isEmpty()) {
             throw new EmbeddingException("Text to embed cannot be empty or whitespace only.");
@@ -156,7 +167,7 @@ public class VoyageEmbeddingProvider extends AbstractEmbeddingProvider {
 
     private static record VoyageEmbeddingData(
             @JsonProperty("object") String object,
-            @JsonProperty("embedding") List<Double> embedding,
+            @JsonProperty("embedding") float[] embedding,
             @JsonProperty("index") int index
     ) {}
 
@@ -0,0 +1,95 @@
+package com.skanga.rag.vectorstore;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Schedules the compaction of a local store once enough of its records are tombstoned.
+ *
+ * <p>Compactions of all stores run one at a time on a single shared daemon thread, so an
+ * application with many stores never has more than one rebuild in flight. A store has at most
+ * one compaction pending; further requests while it is queued or running are coalesced.</p>
+ *
+ * <p>The compaction itself is supplied by the store and is responsible for not blocking searches
+ * (see {@link MemoryVectorStore#compact()} and {@link FileVectorStore#compact()}).</p>
+ */
+final class BackgroundCompactor {
+
+    /** Default fraction of deleted records that triggers a background compaction. */
+    static final double DEFAULT_DELETED_RATIO = 0.3;
+    /** Default minimum number of deleted records before a background compaction is worth running. */
+    static final int DEFAULT_MIN_DELETED = 1000;
+
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "agentforge-vectorstore-compactor");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final String storeName;
+    private final Runnable compaction;
+    private volatile double deletedRatio = DEFAULT_DELETED_RATIO;
+    private volatile int minDeleted = DEFAULT_MIN_DELETED;
+    private CompletableFuture<Void> pending = CompletableFuture.completedFuture(null);
+
+    /**
+     * @param storeName  Used in warnings.
+     * @param compaction Compacts the store; failures are logged, not propagated.
+     */
+    BackgroundCompactor(String storeName, Runnable compaction) {
+        this.storeName = storeName;
+        this.compaction = compaction;
+    }
+
+    /**
+     * @param deletedRatio Fraction of deleted records that triggers a compaction. Values above 1.0 disable it.
+     * @param minDeleted   Minimum number of deleted records before a compaction is scheduled.
+     * @throws IllegalArgumentException if deletedRatio or minDeleted is not positive.
+     */
+    void configure(double deletedRatio, int minDeleted) {
+        if (!(deletedRatio > 0.0)) {
+            throw new IllegalArgumentException("Deleted ratio must be positive.");
+        }
+        if (minDeleted <= 0) {
+            throw new IllegalArgumentException("Minimum deleted count must be positive.");
+        }
+        this.deletedRatio = deletedRatio;
+        this.minDeleted = minDeleted;
+    }
+
+    /**
+     * Schedules a compaction if the store has crossed the configured thresholds.
+     * @param deleted The number of tombstoned records.
+     * @param total   The total number of records, including tombstoned ones.
+     */
+    void onDelete(int deleted, int total) {
+        if (deleted >= minDeleted && deleted >= deletedRatio * total) {
+            schedule();
+        }
+    }
+
+    /**
+     * Schedules a compaction unless one is already pending.
+     * @return A future completing when the pending compaction has finished.
+     */
+    synchronized CompletableFuture<Void> schedule() {
+        if (pending.isDone()) {
+            pending = CompletableFuture.runAsync(this::runCompaction, EXECUTOR);
+        }
+        return pending;
+    }
+
+    /** @return A future completing when the pending compaction, if any, has finished. */
+    synchronized CompletableFuture<Void> pending() {
+        return pending;
+    }
+
+    private void runCompaction() {
+        try {
+            compaction.run();
+        } catch (RuntimeException e) {
+            System.err.println("Warning: Background compaction of " + storeName + " failed: " + e.getMessage());
+        }
+    }
+}
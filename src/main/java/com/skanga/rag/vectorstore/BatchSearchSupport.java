@@ -0,0 +1,79 @@
+package com.skanga.rag.vectorstore;
+
+import com.skanga.rag.Document;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Shared plumbing for the local stores' batched searches ({@link VectorStore#similaritySearchBatchVector(List, int)})
+ * and for stores that hand out copies of their documents.
+ */
+final class BatchSearchSupport {
+
+    private BatchSearchSupport() {}
+
+    /**
+     * Validates a batch of queries.
+     * @param queryVectors The query vectors.
+     * @param k            The number of results per query.
+     * @return The queries as an array.
+     * @throws IllegalArgumentException if k is not positive.
+     * @throws VectorStoreException if a query is empty or the queries differ in dimension.
+     */
+    static float[][] queries(List<float[]> queryVectors, int k) throws VectorStoreException {
+        Objects.requireNonNull(queryVectors, "Query vectors cannot be null for batch similarity search.");
+        if (k <= 0) {
+            throw new IllegalArgumentException("Number of results to return (k) must be positive.");
+        }
+        float[][] queries = new float[queryVectors.size()][];
+        for (int q = 0; q < queries.length; q++) {
+            queries[q] = Objects.requireNonNull(queryVectors.get(q), "Query vector cannot be null for similarity search.");
+            if (queries[q].length == 0 || queries[q].length != queries[0].length) {
+                throw new VectorStoreException("All query vectors in a batch must be non-empty and of the same dimension; query " + q +
+                                               " has dimension " + queries[q].length + ", query 0 has " + queries[0].length + ".");
+            }
+        }
+        return queries;
+    }
+
+    /**
+     * @return A set for {@link #scored(Document, double, Set)} that tracks documents by identity.
+     */
+    static Set<Document> identitySet() {
+        return Collections.newSetFromMap(new IdentityHashMap<>());
+    }
+
+    /**
+     * Sets a result's score. A document instance already returned for an earlier query of the batch is
+     * copied first, so that every result list carries its own scores.
+     * @param document The stored document.
+     * @param distance The cosine distance to the query.
+     * @param returned Documents already handed out in this batch; updated by this call.
+     * @return The document, or a copy of it, with its score set to {@code 1 - distance}.
+     */
+    static Document scored(Document document, double distance, Set<Document> returned) {
+        Document result = returned.add(document) ? document : copy(document, document.getEmbeddingVector());
+        result.setScore((float) (1.0 - distance));
+        return result;
+    }
+
+    /**
+     * Copies a document with a different embedding.
+     * @param document  The document.
+     * @param embedding The copy's embedding; {@code null} or empty for none.
+     * @return The copy, with the document's ID, content, source and metadata.
+     */
+    static Document copy(Document document, float[] embedding) {
+        Document copy = new Document(document.getContent());
+        copy.setId(document.getId());
+        copy.setEmbeddingVector(embedding);
+        copy.setSourceType(document.getSourceType());
+        copy.setSourceName(document.getSourceName());
+        copy.setMetadata(document.getMetadata());
+        return copy;
+    }
+}
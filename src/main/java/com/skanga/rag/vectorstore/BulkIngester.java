@@ -0,0 +1,385 @@
+package com.skanga.rag.vectorstore;
+
+import com.skanga.rag.Document;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+
+/**
+ * Splits a large write into bulk requests and sends them with bounded concurrency, retrying failed items.
+ * Used by the remote stores so that a 100k-document load never becomes one request that exhausts the heap
+ * or exceeds the server's request-size limit.
+ *
+ * <ul>
+ *   <li><b>Chunking:</b> {@link #chunk(List, ToLongFunction)} cuts the items, in order, into chunks of at most
+ *       {@code maxDocuments} items and {@code maxBytes} estimated payload bytes; an item larger than
+ *       {@code maxBytes} on its own is sent alone. Chunks are views of the input list, and each request is
+ *       built by the {@link ChunkSender} only when it is sent, so at most {@code maxInFlight} requests are
+ *       materialized at a time.</li>
+ *   <li><b>Back-pressure:</b> at most {@code maxInFlight} chunks are outstanding; the next chunk is sent when
+ *       one completes. A chunk holds its slot while it waits to be retried, so a struggling server sees fewer
+ *       requests rather than more.</li>
+ *   <li><b>Retries:</b> only the items the sender reports as retryable failures (e.g. HTTP 429 or 503) are
+ *       resent, as a smaller request, after an exponential backoff with jitter starting at
+ *       {@code initialBackoff} and capped at {@link #MAX_BACKOFF}. A request that fails as a whole is retried
+ *       if the store's predicate accepts the error (typically I/O errors). Other failures are final.</li>
+ * </ul>
+ *
+ * <p>The result is a {@link BulkIngestReport} with the failures and the throughput. Instances are immutable
+ * and thread-safe, and one instance can run many loads at once.</p>
+ */
+public final class BulkIngester {
+
+    /** Default maximum number of items per request. */
+    public static final int DEFAULT_MAX_DOCUMENTS = 1000;
+    /** Default maximum estimated payload bytes per request (Elasticsearch recommends 5-15 MB per bulk request). */
+    public static final long DEFAULT_MAX_BYTES = 10L << 20;
+    /** Default maximum number of requests in flight. */
+    public static final int DEFAULT_MAX_IN_FLIGHT = 4;
+    /** Default number of retries per item. */
+    public static final int DEFAULT_MAX_RETRIES = 3;
+    /** Default delay before the first retry; doubled for each further retry. */
+    public static final Duration DEFAULT_INITIAL_BACKOFF = Duration.ofMillis(200);
+    /** Upper bound of the delay between retries. */
+    public static final Duration MAX_BACKOFF = Duration.ofSeconds(10);
+    /** Failures listed individually in a report; further ones are only counted. */
+    private static final int MAX_REPORTED_FAILURES = 100;
+
+    private final int maxDocuments;
+    private final long maxBytes;
+    private final int maxInFlight;
+    private final int maxRetries;
+    private final Duration initialBackoff;
+
+    /** Creates an ingester with the default limits. */
+    public BulkIngester() {
+        this(DEFAULT_MAX_DOCUMENTS, DEFAULT_MAX_BYTES, DEFAULT_MAX_IN_FLIGHT, DEFAULT_MAX_RETRIES, DEFAULT_INITIAL_BACKOFF);
+    }
+
+    /**
+     * Creates an ingester.
+     * @param maxDocuments   Maximum items per request. Must be positive.
+     * @param maxBytes       Maximum estimated payload bytes per request. Must be positive.
+     * @param maxInFlight    Maximum requests outstanding at once. Must be positive.
+     * @param maxRetries     Retries per item after its first attempt. Must not be negative.
+     * @param initialBackoff Delay before the first retry. Must not be negative.
+     * @throws IllegalArgumentException if a limit is out of range.
+     */
+    public BulkIngester(int maxDocuments, long maxBytes, int maxInFlight, int maxRetries, Duration initialBackoff) {
+        Objects.requireNonNull(initialBackoff, "Initial backoff cannot be null.");
+        if (maxDocuments <= 0 || maxBytes <= 0 || maxInFlight <= 0) {
+            throw new IllegalArgumentException("Bulk request limits and concurrency must be positive.");
+        }
+        if (maxRetries < 0 || initialBackoff.isNegative()) {
+            throw new IllegalArgumentException("Retries and backoff cannot be negative.");
+        }
+        this.maxDocuments = maxDocuments;
+        this.maxBytes = maxBytes;
+        this.maxInFlight = maxInFlight;
+        this.maxRetries = maxRetries;
+        this.initialBackoff = initialBackoff;
+    }
+
+    /** @return A copy with other request size limits. */
+    public BulkIngester withChunkLimits(int maxDocuments, long maxBytes) {
+        return new BulkIngester(maxDocuments, maxBytes, maxInFlight, maxRetries, initialBackoff);
+    }
+
+    /** @return A copy with another number of requests in flight. */
+    public BulkIngester withMaxInFlight(int maxInFlight) {
+        return new BulkIngester(maxDocuments, maxBytes, maxInFlight, maxRetries, initialBackoff);
+    }
+
+    /** @return A copy with another retry policy. */
+    public BulkIngester withRetries(int maxRetries, Duration initialBackoff) {
+        return new BulkIngester(maxDocuments, maxBytes, maxInFlight, maxRetries, initialBackoff);
+    }
+
+    /** @return Maximum items per request. */
+    public int getMaxDocuments() {
+        return maxDocuments;
+    }
+
+    /** @return Maximum estimated payload bytes per request. */
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /** @return Maximum requests outstanding at once. */
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    /** @return Retries per item after its first attempt. */
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    /**
+     * Sends one bulk request for a chunk of items.
+     * @param <T> The item type.
+     */
+    @FunctionalInterface
+    public interface ChunkSender<T> {
+        /**
+         * @param chunk The items to write, in order.
+         * @return A future completing with the failed items (none if the whole request succeeded), or
+         *         exceptionally if the request failed as a whole.
+         */
+        CompletableFuture<List<ItemFailure>> send(List<T> chunk);
+    }
+
+    /**
+     * A failed item of a bulk request.
+     * @param index       The item's position in the chunk passed to {@link ChunkSender#send(List)}.
+     * @param retryable   Whether resending it may succeed, e.g. after a 429 or 503 status.
+     * @param description Identifies the item and the error, for the report.
+     */
+    public record ItemFailure(int index, boolean retryable, String description) {}
+
+    /**
+     * A chunk of consecutive items and their estimated payload bytes.
+     * @param <T> The item type.
+     */
+    public record Chunk<T>(List<T> items, long bytes) {}
+
+    /**
+     * Cuts items into chunks within this ingester's limits, preserving their order.
+     * @param items   The items.
+     * @param sizeOf  Estimates the payload bytes of an item.
+     * @return The chunks, as views of {@code items}.
+     */
+    public <T> List<Chunk<T>> chunk(List<T> items, ToLongFunction<? super T> sizeOf) {
+        Objects.requireNonNull(items, "Items cannot be null.");
+        Objects.requireNonNull(sizeOf, "Size estimate cannot be null.");
+        List<Chunk<T>> chunks = new ArrayList<>();
+        int start = 0;
+        long bytes = 0;
+        for (int i = 0; i < items.size(); i++) {
+            long size = sizeOf.applyAsLong(items.get(i));
+            if (i > start && (i - start == maxDocuments || bytes + size > maxBytes)) {
+                chunks.add(new Chunk<>(items.subList(start, i), bytes));
+                start = i;
+                bytes = 0;
+            }
+            bytes += size;
+        }
+        if (start < items.size()) {
+            chunks.add(new Chunk<>(items.subList(start, items.size()), bytes));
+        }
+        return chunks;
+    }
+
+    /**
+     * Chunks and sends items; see {@link #ingest(List, ChunkSender, Predicate)}.
+     */
+    public <T> CompletableFuture<BulkIngestReport> ingest(List<T> items, ToLongFunction<? super T> sizeOf,
+                                                          ChunkSender<T> sender, Predicate<Throwable> retryableRequestError) {
+        return ingest(chunk(items, sizeOf), sender, retryableRequestError);
+    }
+
+    /**
+     * Sends chunks with at most {@code maxInFlight} outstanding, retrying failed items.
+     * The sender may be called from the thread that completed a previous request.
+     *
+     * @param chunks                The chunks, e.g. from {@link #chunk(List, ToLongFunction)}.
+     * @param sender                Sends one request.
+     * @param retryableRequestError Decides whether a request that failed as a whole is retried.
+     * @return A future completing with the report once every item has succeeded or failed for good.
+     *         It does not complete exceptionally for write failures; they are in the report.
+     */
+    public <T> CompletableFuture<BulkIngestReport> ingest(List<Chunk<T>> chunks, ChunkSender<T> sender,
+                                                          Predicate<Throwable> retryableRequestError) {
+        Objects.requireNonNull(chunks, "Chunks cannot be null.");
+        Objects.requireNonNull(sender, "Chunk sender cannot be null.");
+        Objects.requireNonNull(retryableRequestError, "Retry predicate cannot be null.");
+        return new Load<>(chunks, sender, retryableRequestError).start();
+    }
+
+    /** Unwraps the wrappers {@link CompletableFuture} puts around an error. */
+    public static Throwable unwrap(Throwable error) {
+        Throwable cause = error;
+        while ((cause instanceof CompletionException || cause instanceof ExecutionException) && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause;
+    }
+
+    /**
+     * Estimates the JSON payload bytes of a document with its embedding: its ID, content and metadata text,
+     * plus about 12 bytes per embedding value. Cheap enough to run on every document of a load.
+     */
+    public static long estimatedJsonBytes(Document document) {
+        long bytes = 64 + document.getEmbeddingVector().length * 12L;
+        bytes += length(document.getId()) + length(document.getContent())
+                 + length(document.getSourceType()) + length(document.getSourceName());
+        Map<String, Object> metadata = document.getMetadata();
+        if (metadata != null && !metadata.isEmpty()) {
+            bytes += metadata.toString().length();
+        }
+        return bytes;
+    }
+
+    /**
+     * Returns the backoff before a retry, before jitter: {@code initialBackoff * 2^attempt}, capped at
+     * {@link #MAX_BACKOFF}. The cap is applied before doubling, so large backoffs or attempt counts
+     * cannot overflow.
+     * @param initialBackoff The delay before the first retry.
+     * @param attempt        The number of attempts made so far, from 0.
+     * @return The delay in nanoseconds, between 0 and {@link #MAX_BACKOFF}.
+     */
+    static long backoffNanos(Duration initialBackoff, int attempt) {
+        long max = MAX_BACKOFF.toNanos();
+        long initial = (initialBackoff.compareTo(MAX_BACKOFF) >= 0) ? max : initialBackoff.toNanos();
+        int shift = Math.min(attempt, Long.SIZE - 2);
+        return (initial > (max >> shift)) ? max : initial << shift;
+    }
+
+    private static int length(String value) {
+        return (value == null) ? 0 : value.length();
+    }
+
+    /** The state of one {@link #ingest} call. */
+    private final class Load<T> {
+        private final List<Chunk<T>> chunks;
+        private final ChunkSender<T> sender;
+        private final Predicate<Throwable> retryableRequestError;
+        private final CompletableFuture<BulkIngestReport> result = new CompletableFuture<>();
+        private final AtomicInteger nextChunk = new AtomicInteger();
+        /** Slots released but not yet used by {@link #releaseSlot()}. */
+        private final AtomicInteger freeSlots = new AtomicInteger();
+        private final AtomicInteger pendingChunks;
+        private final AtomicInteger requests = new AtomicInteger();
+        private final AtomicInteger retried = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+        private final List<String> failures = Collections.synchronizedList(new ArrayList<>());
+        private volatile Throwable requestFailure;
+        private final long startNanos = System.nanoTime();
+
+        Load(List<Chunk<T>> chunks, ChunkSender<T> sender, Predicate<Throwable> retryableRequestError) {
+            this.chunks = chunks;
+            this.sender = sender;
+            this.retryableRequestError = retryableRequestError;
+            this.pendingChunks = new AtomicInteger(chunks.size());
+        }
+
+        CompletableFuture<BulkIngestReport> start() {
+            if (chunks.isEmpty()) {
+                finish();
+                return result;
+            }
+            for (int i = 0; i < Math.min(maxInFlight, chunks.size()); i++) {
+                releaseSlot();
+            }
+            return result;
+        }
+
+        /**
+         * Uses a free slot to send the next chunk. Runs as a trampoline: a sender that completes synchronously
+         * re-enters here from within {@link #sendNextChunk()}, and that call is turned into another iteration of
+         * the outer loop instead of a deeper stack.
+         */
+        private void releaseSlot() {
+            if (freeSlots.getAndIncrement() != 0) {
+                return;
+            }
+            do {
+                sendNextChunk();
+            } while (freeSlots.decrementAndGet() != 0);
+        }
+
+        private void sendNextChunk() {
+            int index = nextChunk.getAndIncrement();
+            if (index >= chunks.size()) {
+                return;
+            }
+            send(chunks.get(index).items(), 0).whenComplete((ignored, error) -> {
+                if (error != null) { // Only a bug in this class gets here; record it rather than hang.
+                    recordFailure(chunks.get(index).items().size(), "Internal error: " + error, error);
+                }
+                if (pendingChunks.decrementAndGet() == 0) {
+                    finish();
+                } else {
+                    releaseSlot();
+                }
+            });
+        }
+
+        /** Sends items and, after a backoff, their retryable failures; completes when all are settled. */
+        private CompletableFuture<Void> send(List<T> items, int attempt) {
+            requests.incrementAndGet();
+            if (attempt > 0) {
+                retried.addAndGet(items.size());
+            }
+            CompletableFuture<List<ItemFailure>> response;
+            try {
+                response = Objects.requireNonNull(sender.send(items), "Chunk sender returned null.");
+            } catch (RuntimeException e) {
+                response = CompletableFuture.failedFuture(e);
+            }
+            return response.handle((itemFailures, error) -> {
+                if (error != null) {
+                    Throwable cause = unwrap(error);
+                    if (attempt < maxRetries && retryableRequestError.test(cause)) {
+                        return retryLater(items, attempt);
+                    }
+                    recordFailure(items.size(), "Request of " + items.size() + " items failed: " + cause.getMessage(), cause);
+                    return CompletableFuture.<Void>completedFuture(null);
+                }
+                List<T> retry = new ArrayList<>();
+                for (ItemFailure failure : (itemFailures != null) ? itemFailures : List.<ItemFailure>of()) {
+                    if (failure.retryable() && attempt < maxRetries) {
+                        retry.add(items.get(failure.index()));
+                    } else {
+                        recordFailure(1, failure.description(), null);
+                    }
+                }
+                return retry.isEmpty() ? CompletableFuture.<Void>completedFuture(null) : retryLater(retry, attempt);
+            }).thenCompose(next -> next);
+        }
+
+        private CompletableFuture<Void> retryLater(List<T> items, int attempt) {
+            long delayNanos = backoffNanos(initialBackoff, attempt);
+            long jittered = delayNanos / 2 + ThreadLocalRandom.current().nextLong(delayNanos / 2 + 1);
+            return CompletableFuture.runAsync(() -> {}, CompletableFuture.delayedExecutor(jittered, TimeUnit.NANOSECONDS))
+                    .thenCompose(ignored -> send(items, attempt + 1));
+        }
+
+        private void recordFailure(int count, String description, Throwable cause) {
+            failed.addAndGet(count);
+            if (failures.size() < MAX_REPORTED_FAILURES) {
+                failures.add(description);
+            }
+            if (cause != null && requestFailure == null) {
+                requestFailure = cause;
+            }
+        }
+
+        private void finish() {
+            int documents = 0;
+            long bytes = 0;
+            for (Chunk<T> chunk : chunks) {
+                documents += chunk.items().size();
+                bytes += chunk.bytes();
+            }
+            List<String> failureList;
+            synchronized (failures) {
+                failureList = List.copyOf(failures);
+            }
+            result.complete(new BulkIngestReport(documents, failed.get(), bytes, requests.get(), retried.get(),
+                                                 Duration.ofNanos(System.nanoTime() - startNanos), failureList, requestFailure));
+        }
+    }
+}
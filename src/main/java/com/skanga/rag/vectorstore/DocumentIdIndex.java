@@ -0,0 +1,104 @@
+package com.skanga.rag.vectorstore;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Maps document IDs to the ordinals of the live records holding them, for the ordinal-addressed
+ * local stores ({@link MemoryVectorStore} and the binary segment of {@link FileVectorStore}).
+ *
+ * <p>Adding a document whose ID is already present is allowed (the stores keep duplicates unless
+ * asked to upsert), so each ID maps to its newest ordinal and older ordinals with the same ID are
+ * chained through a primitive {@code previous} array. Lookups, removals and inserts are O(1) per
+ * ordinal and the chain costs four bytes per record.</p>
+ *
+ * <p>Only live ordinals are ever reachable: removed and superseded ordinals are unlinked, so after
+ * a compaction the index can be translated with {@link #remap(int[])}.</p>
+ *
+ * <p>This class is not thread-safe; the owning store guards it with its lock.</p>
+ */
+final class DocumentIdIndex {
+
+    private static final int[] NO_ORDINALS = new int[0];
+
+    private final Map<String, Integer> newest = new HashMap<>();
+    /** {@code previous[ordinal]} is the next older ordinal with the same ID, or -1. */
+    private int[] previous = new int[16];
+
+    /**
+     * Records that {@code ordinal} holds a document with the given ID.
+     * The ordinals of one ID must be added in increasing order.
+     */
+    void add(String id, int ordinal) {
+        if (ordinal >= previous.length) {
+            previous = Arrays.copyOf(previous, Math.max(ordinal + 1, previous.length + (previous.length >> 1)));
+        }
+        Integer older = newest.put(id, ordinal);
+        previous[ordinal] = (older == null) ? -1 : older;
+    }
+
+    /**
+     * Forgets an ID.
+     * @return Every ordinal that held the ID, newest first; empty if the ID was unknown.
+     */
+    int[] remove(String id) {
+        Integer head = newest.remove(id);
+        return (head == null) ? NO_ORDINALS : chain(head);
+    }
+
+    /**
+     * Keeps only the newest ordinal of an ID.
+     * @return The older ordinals that held the ID, newest first; empty if there were none.
+     */
+    int[] supersede(String id) {
+        Integer head = newest.get(id);
+        if (head == null || previous[head] == -1) {
+            return NO_ORDINALS;
+        }
+        int[] older = chain(previous[head]);
+        previous[head] = -1;
+        return older;
+    }
+
+    /** @return The number of distinct IDs. */
+    int size() {
+        return newest.size();
+    }
+
+    /**
+     * Translates the index to new ordinals after the store has been compacted.
+     * @param oldToNew The new ordinal of each old ordinal, or -1 for records that were dropped.
+     *                 Every ordinal reachable from this index must map to a live record.
+     * @return A new index over the compacted ordinals.
+     */
+    DocumentIdIndex remap(int[] oldToNew) {
+        DocumentIdIndex remapped = new DocumentIdIndex();
+        for (Map.Entry<String, Integer> entry : newest.entrySet()) {
+            int[] ordinals = chain(entry.getValue());
+            // Chains run newest first; re-add oldest first so the newest ordinal stays at the head.
+            for (int i = ordinals.length - 1; i >= 0; i--) {
+                remapped.add(entry.getKey(), oldToNew[ordinals[i]]);
+            }
+        }
+        return remapped;
+    }
+
+    void clear() {
+        newest.clear();
+        previous = new int[16];
+    }
+
+    private int[] chain(int head) {
+        int length = 0;
+        for (int ordinal = head; ordinal != -1; ordinal = previous[ordinal]) {
+            length++;
+        }
+        int[] ordinals = new int[length];
+        int i = 0;
+        for (int ordinal = head; ordinal != -1; ordinal = previous[ordinal]) {
+            ordinals[i++] = ordinal;
+        }
+        return ordinals;
+    }
+}
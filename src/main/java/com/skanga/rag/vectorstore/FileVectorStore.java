@@ -2,24 +2,46 @@ package com.skanga.rag.vectorstore;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.databind.SerializationFeature; // For enabling indent output
 import com.skanga.rag.Document;
-import com.skanga.rag.vectorstore.search.SimilaritySearchUtils;
+import com.skanga.rag.embeddings.EmbeddingEncoding;
+import com.skanga.rag.embeddings.EmbeddingUtils;
+import com.skanga.rag.vectorstore.filter.MetadataFilter;
+import com.skanga.rag.vectorstore.search.Bm25Index;
+import com.skanga.rag.vectorstore.search.VectorKernels;
 
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
+import java.io.Closeable;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets; // Specify charset
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.stream.Collectors;
 
 /**
@@ -36,32 +58,114 @@ import java.util.stream.Collectors;
  *       efficiently determine the top K most similar documents. This avoids loading all
  *       documents into memory at once if only their embeddings and scores are needed for sorting,
  *       though each document line is still read and deserialized.</li>
+ *   <li>{@code deleteDocuments} and {@code upsertDocuments} remove or replace documents by ID. In binary mode a
+ *       delete sets a bit in a persistent tombstone bitset (O(1) per document) and space is reclaimed by a
+ *       compaction that runs in the background (see {@link #withAutoCompaction(double, int)}); in JSONL mode
+ *       the file is rewritten without the deleted documents.</li>
+ *   <li>Optionally sends new documents of a JSONL store through a write-ahead log
+ *       ({@link #withWriteAheadLog(WriteAheadLog.Options)}): length-prefixed, checksummed records appended by a
+ *       single writer thread that group-commits concurrent adds and syncs them as configured, and checkpointed
+ *       into the JSONL file once the log reaches a configured size.</li>
+ *   <li>Optionally keeps a BM25 inverted index over the documents' content in memory (enabled with
+ *       {@link #withLexicalIndex(double, double)}), built from the file once and extended by every add,
+ *       for keyword search with {@link #lexicalSearch(String, int)}. Only the matching documents are read
+ *       back from disk.</li>
  * </ul>
  * </p>
  *
- * <p><b>Format:</b> Each line in the file is a JSON representation of a {@link Document} object.</p>
+ * <p><b>Format:</b> By default ({@link StorageFormat#JSONL}) each line in the file is a JSON representation
+ * of a {@link Document} object. With {@link StorageFormat#BINARY} the store instead keeps a memory-mapped
+ * segment: a fixed-width float32 vector block ({@code .vec}), an offsets/norms sidecar ({@code .idx}) and
+ * the documents' JSON without embeddings ({@code .meta}). A binary search only reads the mapped vector
+ * bytes and deserializes just the top-k documents. Opening a binary store whose file name ends in
+ * {@code .jsonl} migrates an existing JSONL file of that name once (see {@link #importFromJsonl(Path)}).
+ * {@link StorageFormat#SEGMENTED} splits the binary layout into segments of a bounded size: appends go to an
+ * active segment, full segments are sealed, searches scan the segments in parallel and merge their top-k, and
+ * small sealed segments are merged in the background (see {@link #withSegmentPolicy(int, int)}).</p>
  *
  * <p><b>Thread Safety:</b>
- * Methods that modify the file ({@code addDocument}, {@code addDocuments}, {@code clear}) are
- * marked as {@code synchronized} on the instance to prevent concurrent writes to the same file
- * from within the same JVM process. The {@code similaritySearch} method is not synchronized
+ * Methods that modify the file ({@code addDocument}, {@code addDocuments}, {@code deleteDocuments},
+ * {@code upsertDocuments}, {@code compact}, {@code clear}) are
+ * {@code synchronized} on the instance to prevent concurrent writes to the same file
+ * from within the same JVM process. With a write-ahead log, adds are not: they serialize their documents
+ * concurrently and the log's writer thread appends them in groups. The {@code similaritySearch} method is not synchronized
  * as it's read-only, but relies on the file content not changing during its execution for consistency.
+ * In binary mode the segment's own read/write lock provides that, so searches also run during a compaction
+ * or a merge of segments.
+ * With a write-ahead log, searches read the JSONL file and then the log, and wait only while a checkpoint moves
+ * the log's documents into the file.
  * This store is not designed for inter-process concurrency on the same file.
  * </p>
  *
+ * <p><b>Durability:</b> Without a write-ahead log, JSONL appends are left to the operating system to write
+ * back. A crash midway through an append can leave a partial last line; on open it is truncated (with a
+ * warning), so the next append starts on a line of its own. With a write-ahead log, an add returns once its
+ * documents are in the log and synced according to {@link WriteAheadLog.SyncMode}, and on open a log left by
+ * a crash is replayed into the JSONL file.</p>
+ *
  * <p><b>Performance:</b>
  * For very large datasets, this implementation's search performance will degrade as it needs
  * to scan and deserialize all documents. It's best suited for small to medium-sized collections
- * where simplicity of a file-based store is desired. For larger scale, dedicated vector databases
+ * where simplicity of a file-based store is desired. {@link StorageFormat#BINARY} removes the per-query
+ * parsing cost and scales to larger collections on one machine; {@link StorageFormat#SEGMENTED} also spreads
+ * each search over the cores and keeps deletes cheap as the collection grows. For larger scale, dedicated vector databases
  * (like Chroma, Elasticsearch, Pinecone) are recommended.
  * </p>
  */
-public class FileVectorStore implements VectorStore {
+public class FileVectorStore implements VectorStore, Closeable {
+
+    /**
+     * On-disk layout used by a {@link FileVectorStore}.
+     */
+    public enum StorageFormat {
+        /** One JSON document per line; every search parses the whole file. */
+        JSONL,
+        /** Memory-mapped binary vector segment with a metadata sidecar; searches touch only vector bytes. */
+        BINARY,
+        /**
+         * Binary segments of a bounded size, listed in {@code base.segments}: an active one taking appends and
+         * sealed ones that are scanned in parallel and merged in the background.
+         */
+        SEGMENTED
+    }
+
+    /** Suffix given to a JSONL file after it has been migrated into a binary segment. */
+    public static final String MIGRATED_SUFFIX = ".migrated";
+    /** Suffix of the write-ahead log kept next to a JSONL file; see {@link #withWriteAheadLog(WriteAheadLog.Options)}. */
+    public static final String WAL_SUFFIX = ".wal";
 
     private final Path filePath;
+    private final StorageFormat storageFormat;
+    /** Binary segment or segments; {@code null} in {@link StorageFormat#JSONL} mode. */
+    private final SegmentStorage segment;
     /** Default K value for similarity search if not specified by the caller (not directly used by search method). */
     private final int defaultTopK;
     private final ObjectMapper objectMapper;
+    /** Writes documents to the JSONL file and the log; see {@link #withEmbeddingEncoding(EmbeddingEncoding)}. */
+    private volatile ObjectWriter documentWriter;
+    /** Kernels used to score documents; see {@link #withVectorKernels(VectorKernels)}. */
+    private volatile VectorKernels vectorKernels = VectorKernels.defaultKernels();
+    /** Minimum segment size at which binary searches run in parallel partitions. */
+    private volatile int parallelThreshold = MemoryVectorStore.DEFAULT_PARALLEL_THRESHOLD;
+    /** Pool used for parallel binary searches. */
+    private volatile ForkJoinPool searchPool = ForkJoinPool.commonPool();
+    /** Executor for {@link #similaritySearchAsync(List, int)} and {@link #addDocumentsAsync(List)}. */
+    private volatile Executor asyncExecutor = ForkJoinPool.commonPool();
+    /** Compacts tombstoned documents away and, in segmented mode, merges small segments. */
+    private final BackgroundCompactor compactor = new BackgroundCompactor("FileVectorStore", this::compact);
+    /** Set by {@link #close()}; a background compaction scheduled before closing then does nothing. */
+    private boolean closed;
+    /**
+     * JSONL mode: BM25 index keyed by the position of each document among the non-empty lines of the file;
+     * {@code null} unless lexical search is enabled. Guarded by the instance monitor.
+     */
+    private Bm25Index jsonlLexicalIndex;
+    /** JSONL mode: number of non-empty lines covered by {@link #jsonlLexicalIndex}. */
+    private int jsonlLineCount;
+    /** JSONL mode: the log new documents are appended to, or {@code null} to append to the file directly. */
+    private volatile WriteAheadLog writeAheadLog;
+    /** JSONL mode: held by searches while they read the file and the log, and exclusively by checkpoints. */
+    private final ReentrantReadWriteLock checkpointLock = new ReentrantReadWriteLock();
 
     /** Default value for K (number of results) if not specified in constructor. */
     private static final int DEFAULT_K_FILE_STORE = 5;
@@ -80,20 +184,77 @@ public class FileVectorStore implements VectorStore {
      * @throws VectorStoreException if the directory cannot be created or the file cannot be initialized.
      */
     public FileVectorStore(String directoryPath, String fileName, int defaultTopK) throws VectorStoreException {
+        this(directoryPath, fileName, defaultTopK, StorageFormat.JSONL);
+    }
+
+    /**
+     * Constructs a FileVectorStore with the given storage format.
+     *
+     * <p>In {@link StorageFormat#BINARY} mode, {@code fileName} without a trailing {@code .jsonl} is the base
+     * name of the segment files ({@code base.vec}, {@code base.idx}, {@code base.meta}); in
+     * {@link StorageFormat#SEGMENTED} mode it names the list of segments ({@code base.segments}) and the segments
+     * ({@code base-000001.vec}, ...). If the segment does not
+     * exist yet but a JSONL file named {@code fileName} does, its documents are imported into the new segment
+     * and the JSONL file is renamed with the {@link #MIGRATED_SUFFIX}, so the migration runs only once.</p>
+     *
+     * @param directoryPath The path to the directory where the vector store files will be located.
+     *                      The directory will be created if it doesn't exist.
+     * @param fileName      The name of the JSONL file (e.g., "vector_store.jsonl").
+     * @param defaultTopK   A default value for 'k'. Must be positive.
+     * @param storageFormat The on-disk layout.
+     * @throws VectorStoreException if the directory cannot be created, the files cannot be initialized,
+     *                              or the migration fails.
+     */
+    public FileVectorStore(String directoryPath, String fileName, int defaultTopK, StorageFormat storageFormat) throws VectorStoreException {
         Objects.requireNonNull(directoryPath, "Directory path cannot be null.");
         Objects.requireNonNull(fileName, "File name cannot be null.");
+        Objects.requireNonNull(storageFormat, "Storage format cannot be null.");
         if (defaultTopK <= 0) {
             throw new IllegalArgumentException("defaultTopK must be positive.");
         }
 
-        this.filePath = Paths.get(directoryPath, fileName);
+        this.storageFormat = storageFormat;
         this.defaultTopK = defaultTopK;
         this.objectMapper = new ObjectMapper();
         // Configure for potentially pretty-printing in file, though not strictly necessary for JSON-L
         // this.objectMapper.enable(SerializationFeature.INDENT_OUTPUT);
         this.objectMapper.disable(SerializationFeature.FAIL_ON_EMPTY_BEANS);
+        this.documentWriter = objectMapper.writer();
 
+        Path jsonlPath = Paths.get(directoryPath, fileName);
+        if (storageFormat != StorageFormat.JSONL) {
+            String baseName = fileName.endsWith(".jsonl") ? fileName.substring(0, fileName.length() - ".jsonl".length()) : fileName;
+            Path directory = jsonlPath.toAbsolutePath().getParent();
+            try {
+                Files.createDirectories(directory);
+            } catch (IOException e) {
+                throw new VectorStoreException("Failed to initialize FileVectorStore at path: " + directory, e);
+            }
+            boolean exists = (storageFormat == StorageFormat.SEGMENTED)
+                    ? VectorSegmentSet.exists(directory, baseName) : VectorSegment.exists(directory, baseName);
+            boolean migrate = !exists && !baseName.equals(fileName) && Files.isRegularFile(jsonlPath);
+            if (storageFormat == StorageFormat.SEGMENTED) {
+                VectorSegmentSet segments = VectorSegmentSet.open(directory, baseName, this.objectMapper);
+                this.segment = segments;
+                this.filePath = segments.getManifestPath();
+            } else {
+                VectorSegment single = VectorSegment.open(directory, baseName, this.objectMapper);
+                this.segment = single;
+                this.filePath = single.getVectorsPath();
+            }
+            if (migrate) {
+                int imported = importFromJsonl(jsonlPath);
+                try {
+                    Files.move(jsonlPath, jsonlPath.resolveSibling(fileName + MIGRATED_SUFFIX));
+                } catch (IOException e) {
+                    throw new VectorStoreException("Migrated " + imported + " documents but failed to rename " + jsonlPath, e);
+                }
+            }
+            return;
+        }
 
+        this.segment = null;
+        this.filePath = jsonlPath;
         try {
             Path parentDir = this.filePath.getParent();
             if (parentDir != null && !Files.exists(parentDir)) {
@@ -106,6 +267,8 @@ public class FileVectorStore implements VectorStore {
         } catch (IOException e) {
             throw new VectorStoreException("Failed to initialize FileVectorStore at path: " + this.filePath, e);
         }
+        truncateTornJsonlTail();
+        replayWriteAheadLog();
     }
 
     /**
@@ -119,55 +282,765 @@ public class FileVectorStore implements VectorStore {
     }
 
     /**
-     * Gets the path to the file used by this vector store.
+     * Gets the path to the file used by this vector store: the JSONL file, the vector block
+     * ({@code .vec}) in binary mode, or the list of segments ({@code .segments}) in segmented mode.
      * @return The file path.
      */
     public Path getFilePath() {
         return filePath;
     }
 
+    /** @return The on-disk layout of this store. */
+    public StorageFormat getStorageFormat() {
+        return storageFormat;
+    }
+
+    /**
+     * Configures parallel search for {@link StorageFormat#BINARY} stores; see
+     * {@link MemoryVectorStore#withParallelSearch(int, ForkJoinPool)}. In {@link StorageFormat#SEGMENTED} mode
+     * the segments are always searched in parallel on the pool, and the threshold applies within each segment.
+     * JSONL searches are always sequential.
+     *
+     * @param parallelThreshold The minimum number of documents for a parallel scan. Must be positive.
+     * @param pool              The pool to run partitions on.
+     * @return This {@code FileVectorStore} instance for fluent chaining.
+     * @throws IllegalArgumentException if parallelThreshold is not positive.
+     */
+    public FileVectorStore withParallelSearch(int parallelThreshold, ForkJoinPool pool) {
+        if (parallelThreshold <= 0) {
+            throw new IllegalArgumentException("Parallel threshold must be positive.");
+        }
+        this.searchPool = Objects.requireNonNull(pool, "ForkJoinPool cannot be null.");
+        this.parallelThreshold = parallelThreshold;
+        return this;
+    }
+
+    /**
+     * Sets how {@link StorageFormat#JSONL} mode writes embeddings. By default ({@link EmbeddingEncoding#JSON_ARRAY})
+     * each is an array of numbers. {@link EmbeddingEncoding#FLOAT32_BASE64} writes the exact float32 values as a
+     * base64 string, about 2.5 times smaller than the array; {@link EmbeddingEncoding#FLOAT16_BASE64} rounds them
+     * to half precision for about 5 times smaller. Both are also much faster to parse on every search.
+     *
+     * <p>Only documents written from now on use the encoding; lines already in the file keep theirs, and every
+     * encoding is read regardless of this setting. To convert an existing file, import it with
+     * {@link #importFromJsonl(Path)} into a new store that has the encoding set. Binary formats store raw float32 vectors and ignore this setting.</p>
+     *
+     * @param encoding The embedding encoding.
+     * @return This {@code FileVectorStore} instance for fluent chaining.
+     */
+    public FileVectorStore withEmbeddingEncoding(EmbeddingEncoding encoding) {
+        Objects.requireNonNull(encoding, "Embedding encoding cannot be null.");
+        this.documentWriter = objectMapper.writer().withAttribute(EmbeddingEncoding.class, encoding);
+        return this;
+    }
+
+    /** @return How new documents' embeddings are written; see {@link #withEmbeddingEncoding(EmbeddingEncoding)}. */
+    public EmbeddingEncoding getEmbeddingEncoding() {
+        Object encoding = documentWriter.getConfig().getAttributes().getAttribute(EmbeddingEncoding.class);
+        return (encoding == null) ? EmbeddingEncoding.JSON_ARRAY : (EmbeddingEncoding) encoding;
+    }
+
+    /**
+     * Sets the executor on which {@link #similaritySearchAsync(List, int)} and {@link #addDocumentsAsync(List)}
+     * run. Defaults to {@link ForkJoinPool#commonPool()}. Adds and JSONL searches wait on file I/O, so a
+     * dedicated executor keeps them from occupying common-pool threads.
+     *
+     * @param asyncExecutor The executor.
+     * @return This {@code FileVectorStore} instance for fluent chaining.
+     */
+    public FileVectorStore withAsyncExecutor(Executor asyncExecutor) {
+        this.asyncExecutor = Objects.requireNonNull(asyncExecutor, "Executor cannot be null.");
+        return this;
+    }
+
+    /** @return The executor for asynchronous searches and adds; see {@link #withAsyncExecutor(Executor)}. */
+    @Override
+    public Executor asyncExecutor() {
+        return this.asyncExecutor;
+    }
+
+    /**
+     * Configures background compaction of a {@link StorageFormat#BINARY} or {@link StorageFormat#SEGMENTED}
+     * store; see {@link MemoryVectorStore#withAutoCompaction(double, int)}. Has no effect in JSONL mode, where
+     * deletes rewrite the file immediately.
+     *
+     * @param deletedRatio The fraction of deleted documents that triggers a compaction; above 1.0 disables it.
+     * @param minDeleted   The minimum number of deleted documents before compacting. Must be positive.
+     * @return This {@code FileVectorStore} instance for fluent chaining.
+     * @throws IllegalArgumentException if deletedRatio or minDeleted is not positive.
+     */
+    public FileVectorStore withAutoCompaction(double deletedRatio, int minDeleted) {
+        compactor.configure(deletedRatio, minDeleted);
+        return this;
+    }
+
+    /**
+     * Configures the segments of a {@link StorageFormat#SEGMENTED} store. The active segment is sealed once it
+     * holds {@code segmentDocuments} documents. When {@code mergeFactor} sealed segments have fewer than
+     * {@code segmentDocuments * mergeFactor} live documents each, the smallest of them are merged into one,
+     * without their deleted documents, on the background compaction thread. Adds and deletes wait while
+     * documents are copied; searches do not. Has no effect in other modes.
+     *
+     * @param segmentDocuments The number of documents per segment before sealing it. Must be positive.
+     * @param mergeFactor      The number of small segments merged at a time. Must be at least 2.
+     * @return This {@code FileVectorStore} instance for fluent chaining.
+     * @throws IllegalArgumentException if a parameter is out of range.
+     */
+    public FileVectorStore withSegmentPolicy(int segmentDocuments, int mergeFactor) {
+        if (segment instanceof VectorSegmentSet segments) {
+            segments.configure(segmentDocuments, mergeFactor);
+            scheduleMerge();
+        } else if (segmentDocuments <= 0 || mergeFactor < 2) {
+            throw new IllegalArgumentException("Segment document count must be positive and merge factor at least 2.");
+        }
+        return this;
+    }
+
+    /** @return The number of segments: 0 in JSONL mode, 1 in binary mode. */
+    public int getSegmentCount() {
+        if (segment instanceof VectorSegmentSet segments) {
+            return segments.segmentCount();
+        }
+        return (segment != null) ? 1 : 0;
+    }
+
+    /** Schedules a background merge if the segments call for one. */
+    private void scheduleMerge() {
+        if (segment.needsMerge()) {
+            compactor.schedule();
+        }
+    }
+
+    /**
+     * Sends new documents of a {@link StorageFormat#JSONL} store through a write-ahead log, {@code <file>.wal}.
+     *
+     * <p>Adds then serialize their documents without holding the store's lock and queue them on the log, whose
+     * single writer thread appends everything queued as one group commit, synced according to the
+     * {@link WriteAheadLog.SyncMode}, before the adds return. Concurrent ingesters share the writes and syncs
+     * instead of taking turns opening the file. Searches read the file and then the log.</p>
+     *
+     * <p>Once the log reaches {@link WriteAheadLog.Options#checkpointBytes()}, and before a delete, upsert,
+     * clear or lexical search, its documents are appended to the JSONL file, which is synced, and the log is
+     * emptied. {@link #close()} checkpoints and removes the log. A store opened after a crash replays a
+     * remaining log into the file, first truncating the lines of a checkpoint that the crash interrupted.
+     * The log lasts until {@link #close()}; call this again after reopening the store. Configure it before
+     * adding documents concurrently. This operation is synchronized.</p>
+     *
+     * @param options The log's sync and checkpoint configuration.
+     * @return This {@code FileVectorStore} instance for fluent chaining.
+     * @throws UnsupportedOperationException in binary mode, whose segment recovers torn appends itself.
+     * @throws VectorStoreException if the log cannot be opened, or a previous log cannot be checkpointed.
+     */
+    public synchronized FileVectorStore withWriteAheadLog(WriteAheadLog.Options options) throws VectorStoreException {
+        Objects.requireNonNull(options, "Write-ahead log options cannot be null.");
+        if (segment != null) {
+            throw new UnsupportedOperationException("The write-ahead log is for JSONL stores; binary segments recover torn appends themselves.");
+        }
+        closeWriteAheadLog();
+        try {
+            this.writeAheadLog = WriteAheadLog.open(walPath(), options, Files.size(filePath));
+        } catch (IOException e) {
+            throw new VectorStoreException("Failed to open write-ahead log: " + walPath(), e);
+        }
+        return this;
+    }
+
+    /**
+     * Sends new documents through a write-ahead log with {@link WriteAheadLog.Options#DEFAULT} options.
+     * @return This {@code FileVectorStore} instance for fluent chaining.
+     * @throws VectorStoreException if the log cannot be opened.
+     * @see #withWriteAheadLog(WriteAheadLog.Options)
+     */
+    public FileVectorStore withWriteAheadLog() throws VectorStoreException {
+        return withWriteAheadLog(WriteAheadLog.Options.DEFAULT);
+    }
+
+    /** @return The write-ahead log of this store, or {@code null} if it has none. */
+    public WriteAheadLog getWriteAheadLog() {
+        return writeAheadLog;
+    }
+
+    /**
+     * Moves the documents of the write-ahead log into the JSONL file and empties the log. Does nothing without
+     * a log. This operation is synchronized.
+     * @throws VectorStoreException if the documents cannot be written to the file.
+     */
+    public synchronized void checkpoint() throws VectorStoreException {
+        checkpointWriteAheadLog();
+    }
+
+    private Path walPath() {
+        return filePath.resolveSibling(filePath.getFileName() + WAL_SUFFIX);
+    }
+
+    /**
+     * Checkpoints the write-ahead log into the JSONL file and indexes the moved documents. Caller must hold the
+     * instance monitor.
+     */
+    private void checkpointWriteAheadLog() throws VectorStoreException {
+        WriteAheadLog log = this.writeAheadLog;
+        if (log == null || log.getRecordCount() == 0) {
+            return;
+        }
+        List<String> contents = (jsonlLexicalIndex != null) ? new ArrayList<>() : null;
+        try {
+            underCheckpoint(log, payloads -> appendLines(payloads, contents), null);
+        } catch (IOException e) {
+            throw new VectorStoreException("Failed to checkpoint write-ahead log " + log.getPath() + " into " + filePath, e);
+        }
+        if (contents != null) {
+            for (String content : contents) {
+                jsonlLexicalIndex.add(jsonlLineCount++, content);
+            }
+        }
+    }
+
+    /**
+     * Runs a checkpoint of the log while searches wait, so none sees a document twice or not at all.
+     * Waits uninterruptibly, since the checkpoint continues on the log's writer thread regardless.
+     */
+    private void underCheckpoint(WriteAheadLog log, WriteAheadLog.CheckpointAction action, WriteAheadLog.FileChange change) throws IOException {
+        checkpointLock.writeLock().lock();
+        try {
+            log.checkpoint(action, change).join();
+        } catch (CompletionException e) {
+            Throwable cause = BulkIngester.unwrap(e);
+            if (cause instanceof IOException io) {
+                throw io;
+            }
+            throw new IOException(cause.getMessage(), cause);
+        } finally {
+            checkpointLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Appends record payloads (documents' JSON) as lines of the JSONL file and syncs it.
+     * @param contents Receives each document's content, or {@code null}.
+     * @return The new length of the file.
+     */
+    private long appendLines(List<byte[]> payloads, List<String> contents) throws IOException {
+        try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16);
+            for (byte[] payload : payloads) {
+                out.write(payload);
+                out.write('\n');
+                if (contents != null) {
+                    contents.add(objectMapper.readValue(payload, Document.class).getContent());
+                }
+            }
+            out.flush();
+            channel.force(false);
+            return channel.size();
+        }
+    }
+
+    /**
+     * Checkpoints, closes and removes the write-ahead log, if there is one. Caller must hold the instance monitor.
+     */
+    private void closeWriteAheadLog() throws VectorStoreException {
+        WriteAheadLog log = this.writeAheadLog;
+        if (log == null) {
+            return;
+        }
+        checkpointLock.writeLock().lock(); // Searches must not read the log once it is closed
+        try {
+            checkpointWriteAheadLog();
+            this.writeAheadLog = null;
+            log.close();
+            Files.deleteIfExists(log.getPath());
+        } catch (IOException e) {
+            throw new VectorStoreException("Failed to close write-ahead log: " + log.getPath(), e);
+        } finally {
+            checkpointLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes a partial last line left by a crash midway through an append: a last line without a newline that
+     * is not a complete document. A complete document missing only its newline gets one, so that the next
+     * append starts on a line of its own.
+     */
+    private void truncateTornJsonlTail() throws VectorStoreException {
+        try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = channel.size();
+            if (size == 0) {
+                return;
+            }
+            ByteBuffer block = ByteBuffer.allocate(8192);
+            long lineStart = -1;
+            for (long end = size; end > 0 && lineStart < 0; end -= block.capacity()) {
+                int length = (int) Math.min(block.capacity(), end);
+                block.clear().limit(length);
+                readFully(channel, block, end - length);
+                if (end == size && block.get(length - 1) == '\n') {
+                    return; // Ends with a complete line
+                }
+                for (int i = length - 1; i >= 0; i--) {
+                    if (block.get(i) == '\n') {
+                        lineStart = end - length + i + 1;
+                        break;
+                    }
+                }
+            }
+            lineStart = Math.max(lineStart, 0);
+            ByteBuffer tail = ByteBuffer.allocate((int) (size - lineStart));
+            readFully(channel, tail, lineStart);
+            if (new String(tail.array(), StandardCharsets.UTF_8).trim().isEmpty()) {
+                return;
+            }
+            try {
+                objectMapper.readValue(tail.array(), Document.class);
+                channel.write(ByteBuffer.wrap(new byte[]{'\n'}), size);
+            } catch (JsonProcessingException e) {
+                System.err.println("Warning: Vector store file " + filePath + " ends with a partial line; truncating " +
+                                   (size - lineStart) + " bytes at offset " + lineStart + ".");
+                channel.truncate(lineStart);
+            }
+        } catch (IOException e) {
+            throw new VectorStoreException("Failed to check the end of vector store file: " + filePath, e);
+        }
+    }
+
+    /**
+     * Replays a write-ahead log left by a crash into the JSONL file and removes it. If the crash interrupted a
+     * checkpoint, the lines it had appended are truncated first, so that no document is applied twice.
+     */
+    private void replayWriteAheadLog() throws VectorStoreException {
+        Path walPath = walPath();
+        if (!Files.exists(walPath)) {
+            return;
+        }
+        try {
+            long size = Files.size(filePath);
+            WriteAheadLog log = WriteAheadLog.open(walPath, WriteAheadLog.Options.DEFAULT, size);
+            if (log.getRecordCount() > 0 && size > log.getBase()) {
+                System.err.println("Warning: Vector store file " + filePath + " has " + (size - log.getBase()) +
+                                   " bytes from an interrupted checkpoint; truncating them before replaying " + walPath + ".");
+                try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.WRITE)) {
+                    channel.truncate(log.getBase());
+                }
+            } else if (log.getRecordCount() > 0 && size < log.getBase()) {
+                System.err.println("Warning: Vector store file " + filePath + " is shorter than when " + walPath +
+                                   " was started; replaying it at the end.");
+            }
+            this.writeAheadLog = log;
+            closeWriteAheadLog();
+        } catch (IOException e) {
+            throw new VectorStoreException("Failed to replay write-ahead log: " + walPath, e);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        long offset = position;
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, offset);
+            if (read < 0) {
+                throw new IOException("Unexpected end of file at " + offset);
+            }
+            offset += read;
+        }
+    }
+
+    /**
+     * Imports every document of a JSONL vector store file (the {@link StorageFormat#JSONL} layout) into this store.
+     * Malformed lines and documents without embeddings are skipped with a warning, as they are in JSONL searches.
+     * Documents are appended in batches, so a large file is never held in memory at once.
+     *
+     * @param jsonlFile The JSONL file to read.
+     * @return The number of documents imported.
+     * @throws VectorStoreException if the file cannot be read or the documents cannot be written.
+     */
+    public synchronized int importFromJsonl(Path jsonlFile) throws VectorStoreException {
+        Objects.requireNonNull(jsonlFile, "JSONL file path cannot be null.");
+        final int batchSize = 1000;
+        List<Document> batch = new ArrayList<>(batchSize);
+        int imported = 0;
+        try (BufferedReader reader = Files.newBufferedReader(jsonlFile, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().isEmpty()) continue;
+                Document doc;
+                try {
+                    doc = objectMapper.readValue(line, Document.class);
+                } catch (JsonProcessingException e) {
+                    System.err.println("Warning: Skipping malformed line during JSONL import from " + jsonlFile + ": " + e.getMessage());
+                    continue;
+                }
+                if (doc.getEmbeddingVector().length == 0) {
+                    System.err.println("Warning: Document ID " + doc.getId() + " has no embedding and was not imported.");
+                    continue;
+                }
+                batch.add(doc);
+                if (batch.size() == batchSize) {
+                    addDocuments(batch);
+                    imported += batch.size();
+                    batch.clear();
+                }
+            }
+        } catch (IOException e) {
+            throw new VectorStoreException("Failed to read JSONL file for import: " + jsonlFile, e);
+        }
+        addDocuments(batch);
+        return imported + batch.size();
+    }
+
+    /**
+     * Selects the similarity kernels used for scoring. Defaults to {@link VectorKernels#defaultKernels()}.
+     * @param vectorKernels The kernels to use.
+     * @return This {@code FileVectorStore} instance for fluent chaining.
+     */
+    public FileVectorStore withVectorKernels(VectorKernels vectorKernels) {
+        this.vectorKernels = Objects.requireNonNull(vectorKernels, "Vector kernels cannot be null.");
+        return this;
+    }
+
+    /**
+     * Enables lexical search: a BM25 inverted index over the documents' content is built from the stored
+     * documents and extended on every add (see {@link MemoryVectorStore#withLexicalIndex(double, double)}).
+     * The index is held in memory only and rebuilt by reading the store each time this is called, e.g. after
+     * reopening the store. In JSONL mode a delete or upsert, which rewrites the file, also rebuilds it.
+     * This operation is synchronized.
+     *
+     * @param k1 BM25 term-frequency saturation (see {@link Bm25Index#DEFAULT_K1}). Must not be negative.
+     * @param b  BM25 length normalization between 0 and 1 (see {@link Bm25Index#DEFAULT_B}).
+     * @return This {@code FileVectorStore} instance for fluent chaining.
+     * @throws IllegalArgumentException if a parameter is out of range.
+     * @throws VectorStoreException if the stored documents cannot be read.
+     */
+    public synchronized FileVectorStore withLexicalIndex(double k1, double b) throws VectorStoreException {
+        Bm25Index index = new Bm25Index(k1, b);
+        if (segment != null) {
+            segment.enableLexicalIndex(index);
+        } else {
+            checkpointWriteAheadLog();
+            indexJsonl(index);
+        }
+        return this;
+    }
+
+    /**
+     * Enables lexical search with the default BM25 parameters.
+     * @return This {@code FileVectorStore} instance for fluent chaining.
+     * @throws VectorStoreException if the stored documents cannot be read.
+     * @see #withLexicalIndex(double, double)
+     */
+    public FileVectorStore withLexicalIndex() throws VectorStoreException {
+        return withLexicalIndex(Bm25Index.DEFAULT_K1, Bm25Index.DEFAULT_B);
+    }
+
+    /** @return {@code true} if a BM25 index is maintained for {@link #lexicalSearch(String, int)}. */
+    public boolean isLexicalIndexEnabled() {
+        if (segment != null) {
+            return segment.lexicalIndexEnabled();
+        }
+        synchronized (this) {
+            return jsonlLexicalIndex != null;
+        }
+    }
+
+    /**
+     * Fills an empty index from the JSONL file and installs it. Caller must hold the instance monitor.
+     * Malformed lines keep their position but index no terms.
+     */
+    private void indexJsonl(Bm25Index index) throws VectorStoreException {
+        int lines = 0;
+        try (BufferedReader reader = Files.newBufferedReader(filePath, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().isEmpty()) continue;
+                String content = null;
+                try {
+                    content = objectMapper.readValue(line, Document.class).getContent();
+                } catch (JsonProcessingException e) {
+                    System.err.println("Warning: Not indexing malformed line " + lines + " of " + filePath + ": " + e.getMessage());
+                }
+                index.add(lines++, content);
+            }
+        } catch (IOException e) {
+            throw new VectorStoreException("Failed to read documents for the lexical index from file: " + filePath, e);
+        }
+        this.jsonlLexicalIndex = index;
+        this.jsonlLineCount = lines;
+    }
+
+    /**
+     * Rebuilds the JSONL lexical index after the file changed in a way it cannot follow. Caller must hold the
+     * instance monitor. A failure is recorded on the given exception rather than thrown.
+     */
+    private void reindexJsonl(Exception failure) {
+        if (jsonlLexicalIndex == null) {
+            return;
+        }
+        try {
+            indexJsonl(jsonlLexicalIndex.emptyCopy());
+        } catch (VectorStoreException e) {
+            failure.addSuppressed(e);
+        }
+    }
+
     /**
      * {@inheritDoc}
-     * <p>This operation is synchronized.</p>
+     * <p>This operation is synchronized unless a write-ahead log is configured.</p>
      */
     @Override
-    public synchronized void addDocument(Document document) throws VectorStoreException {
+    public void addDocument(Document document) throws VectorStoreException {
         addDocuments(Collections.singletonList(document));
     }
 
     /**
      * {@inheritDoc}
      * <p>Appends documents as JSON lines to the configured file. Each document's embedding must be pre-populated.
-     * This operation is synchronized.</p>
+     * This operation is synchronized, unless a write-ahead log is configured
+     * (see {@link #withWriteAheadLog(WriteAheadLog.Options)}): the documents are then appended to the log,
+     * together with those of concurrent adds, and none is added if any is invalid.</p>
      * @throws VectorStoreException if documents list is null, any document is null, a document misses embedding,
      *                              or if JSON serialization or file I/O fails.
      */
     @Override
-    public synchronized void addDocuments(List<Document> documentsToAdd) throws VectorStoreException {
+    public void addDocuments(List<Document> documentsToAdd) throws VectorStoreException {
         Objects.requireNonNull(documentsToAdd, "Documents list to add cannot be null.");
         if (documentsToAdd.isEmpty()) {
             return;
         }
+        WriteAheadLog log = this.writeAheadLog;
+        if (log != null) {
+            appendToWriteAheadLog(log, documentsToAdd);
+            return;
+        }
+        synchronized (this) {
+            if (this.writeAheadLog != null) { // Configured while waiting for the monitor
+                appendToWriteAheadLog(this.writeAheadLog, documentsToAdd);
+            } else {
+                appendDocuments(documentsToAdd);
+            }
+        }
+    }
+
+    /** Appends documents to the segment or JSONL file. Caller must hold the instance monitor. */
+    private void appendDocuments(List<Document> documentsToAdd) throws VectorStoreException {
+        if (segment != null) {
+            segment.append(documentsToAdd);
+            scheduleMerge();
+            return;
+        }
 
         // Using try-with-resources for BufferedWriter ensures it's closed.
         // APPEND ensures we add to the file; CREATE ensures file exists.
         try (BufferedWriter writer = Files.newBufferedWriter(filePath, StandardCharsets.UTF_8, StandardOpenOption.APPEND, StandardOpenOption.CREATE)) {
             for (Document doc : documentsToAdd) {
                 Objects.requireNonNull(doc, "Document in list cannot be null.");
-                if (doc.getEmbedding() == null || doc.getEmbedding().isEmpty()) {
+                if (doc.getEmbeddingVector().length == 0) {
                     throw new VectorStoreException("Document embedding cannot be null or empty when adding to FileVectorStore. Doc ID: " + doc.getId());
                 }
-                String jsonDocument = objectMapper.writeValueAsString(doc);
+                String jsonDocument = documentWriter.writeValueAsString(doc);
                 writer.write(jsonDocument);
                 writer.newLine();
             }
+        } catch (JsonProcessingException e) {
+            VectorStoreException failure = new VectorStoreException("Failed to serialize document to JSON for file storage.", e);
+            reindexJsonl(failure);
+            throw failure;
+        } catch (IOException e) {
+            VectorStoreException failure = new VectorStoreException("Failed to write documents to file: " + filePath, e);
+            reindexJsonl(failure);
+            throw failure;
+        } catch (RuntimeException e) {
+            reindexJsonl(e); // Documents before the invalid one were written
+            throw e;
+        }
+        if (jsonlLexicalIndex != null) {
+            for (Document doc : documentsToAdd) {
+                jsonlLexicalIndex.add(jsonlLineCount++, doc.getContent());
+            }
+        }
+    }
+
+    /**
+     * Appends documents to the write-ahead log and waits for their group commit, then checkpoints the log if
+     * it has reached its configured size.
+     */
+    private void appendToWriteAheadLog(WriteAheadLog log, List<Document> documentsToAdd) throws VectorStoreException {
+        List<byte[]> payloads = new ArrayList<>(documentsToAdd.size());
+        try {
+            for (Document doc : documentsToAdd) {
+                Objects.requireNonNull(doc, "Document in list cannot be null.");
+                if (doc.getEmbeddingVector().length == 0) {
+                    throw new VectorStoreException("Document embedding cannot be null or empty when adding to FileVectorStore. Doc ID: " + doc.getId());
+                }
+                payloads.add(documentWriter.writeValueAsBytes(doc));
+            }
         } catch (JsonProcessingException e) {
             throw new VectorStoreException("Failed to serialize document to JSON for file storage.", e);
+        }
+        try {
+            log.append(payloads).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new VectorStoreException("Interrupted while appending documents to write-ahead log: " + log.getPath(), e);
+        } catch (ExecutionException e) {
+            throw new VectorStoreException("Failed to append documents to write-ahead log: " + log.getPath(), e.getCause());
+        }
+        if (log.getSizeBytes() >= log.getOptions().checkpointBytes()) {
+            synchronized (this) {
+                if (this.writeAheadLog == log && log.getSizeBytes() >= log.getOptions().checkpointBytes()) {
+                    checkpointWriteAheadLog();
+                }
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>In binary mode each deleted document is tombstoned; in JSONL mode the file is rewritten without
+     * them (lines that cannot be parsed are kept). This operation is synchronized.</p>
+     */
+    @Override
+    public synchronized void deleteDocuments(List<String> documentIds) throws VectorStoreException {
+        Objects.requireNonNull(documentIds, "Document IDs list cannot be null.");
+        if (documentIds.isEmpty()) {
+            return;
+        }
+        if (segment != null) {
+            segment.delete(documentIds);
+            compactor.onDelete(segment.deletedCount(), segment.size());
+            scheduleMerge(); // A sealed segment may have lost its last live document
+            return;
+        }
+        Set<String> ids = new HashSet<>();
+        for (String id : documentIds) {
+            ids.add(Objects.requireNonNull(id, "Document ID cannot be null."));
+        }
+        rewriteJsonl(ids, Collections.emptyList());
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>In binary mode the new versions are appended before the old ones are tombstoned, so a crash in
+     * between leaves both rather than neither. In JSONL mode the file is rewritten once with the old
+     * versions dropped and the new ones appended. This operation is synchronized.</p>
+     */
+    @Override
+    public synchronized void upsertDocuments(List<Document> documentsToUpsert) throws VectorStoreException {
+        Objects.requireNonNull(documentsToUpsert, "Documents list to upsert cannot be null.");
+        if (documentsToUpsert.isEmpty()) {
+            return;
+        }
+        if (segment != null) {
+            segment.upsert(documentsToUpsert);
+            compactor.onDelete(segment.deletedCount(), segment.size());
+            scheduleMerge();
+            return;
+        }
+        Set<String> ids = new HashSet<>();
+        for (Document doc : documentsToUpsert) {
+            Objects.requireNonNull(doc, "Document in list cannot be null.");
+            if (doc.getEmbeddingVector().length == 0) {
+                throw new VectorStoreException("Document embedding cannot be null or empty when adding to FileVectorStore. Doc ID: " + doc.getId());
+            }
+            ids.add(doc.getId());
+        }
+        // Within the list the last document for an ID wins, as in binary mode.
+        List<Document> latest = new ArrayList<>(documentsToUpsert.size());
+        Set<String> seen = new HashSet<>();
+        for (int i = documentsToUpsert.size() - 1; i >= 0; i--) {
+            if (seen.add(documentsToUpsert.get(i).getId())) {
+                latest.add(documentsToUpsert.get(i));
+            }
+        }
+        Collections.reverse(latest);
+        rewriteJsonl(ids, latest);
+    }
+
+    /**
+     * Rewrites the JSONL file without the documents whose ID is in {@code idsToDrop}, followed by
+     * {@code documentsToAppend}. The new content is written to a temporary file that then atomically
+     * replaces the original, so a failure leaves the file unchanged.
+     */
+    private void rewriteJsonl(Set<String> idsToDrop, List<Document> documentsToAppend) throws VectorStoreException {
+        WriteAheadLog log = this.writeAheadLog;
+        try {
+            if (log == null) {
+                rewriteJsonlFile(idsToDrop, documentsToAppend);
+            } else {
+                // Logged documents are moved into the file first, and adds wait until the rewrite is done.
+                underCheckpoint(log, payloads -> appendLines(payloads, null), () -> {
+                    rewriteJsonlFile(idsToDrop, documentsToAppend);
+                    return Files.size(filePath);
+                });
+            }
         } catch (IOException e) {
-            throw new VectorStoreException("Failed to write documents to file: " + filePath, e);
+            VectorStoreException failure = new VectorStoreException("Failed to rewrite vector store file: " + filePath, e);
+            reindexJsonl(failure);
+            throw failure;
+        }
+        if (jsonlLexicalIndex != null) {
+            indexJsonl(jsonlLexicalIndex.emptyCopy());
         }
     }
 
+    private void rewriteJsonlFile(Set<String> idsToDrop, List<Document> documentsToAppend) throws IOException {
+        Path tempFile = filePath.resolveSibling(filePath.getFileName() + ".tmp");
+        try {
+            try (BufferedReader reader = Files.newBufferedReader(filePath, StandardCharsets.UTF_8);
+                 BufferedWriter writer = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.trim().isEmpty()) continue;
+                    try {
+                        if (idsToDrop.contains(objectMapper.readValue(line, Document.class).getId())) {
+                            continue;
+                        }
+                    } catch (JsonProcessingException e) {
+                        System.err.println("Warning: Keeping malformed line while rewriting " + filePath + ": " + e.getMessage());
+                    }
+                    writer.write(line);
+                    writer.newLine();
+                }
+                for (Document doc : documentsToAppend) {
+                    writer.write(documentWriter.writeValueAsString(doc));
+                    writer.newLine();
+                }
+            }
+            Files.move(tempFile, filePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            try {
+                Files.deleteIfExists(tempFile);
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Reclaims the space of deleted documents in a {@link StorageFormat#BINARY} store by rewriting the segment
+     * without them. Searches keep running while the live records are copied; writers wait. This normally runs
+     * in the background (see {@link #withAutoCompaction(double, int)}). In {@link StorageFormat#SEGMENTED} mode
+     * it first merges small sealed segments (see {@link #withSegmentPolicy(int, int)}) and then compacts the
+     * segments still holding deleted documents. In JSONL mode there is nothing to reclaim. This operation is
+     * synchronized.
+     *
+     * @return The number of documents reclaimed.
+     * @throws VectorStoreException if the segment cannot be rewritten.
+     */
+    public synchronized int compact() throws VectorStoreException {
+        if (segment == null || closed) {
+            return 0;
+        }
+        return segment.compact();
+    }
+
+    /** @return The number of deleted documents awaiting compaction; always 0 in JSONL mode. */
+    public int getDeletedCount() {
+        return (segment != null) ? segment.deletedCount() : 0;
+    }
+
+    /** @return A future completing when the pending background compaction, if any, has finished. For tests. */
+    CompletableFuture<Void> pendingCompaction() {
+        return compactor.pending();
+    }
+
     /**
      * {@inheritDoc}
      * <p>Reads documents line by line from the file, calculates cosine distance, and uses a
@@ -179,17 +1052,170 @@ public class FileVectorStore implements VectorStore {
     @Override
     public List<Document> similaritySearch(List<Double> queryEmbedding, int k) throws VectorStoreException {
         Objects.requireNonNull(queryEmbedding, "Query embedding cannot be null for similarity search.");
+        return similaritySearchVector(EmbeddingUtils.toFloatArray(queryEmbedding), k);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>Embeddings are deserialized straight into primitive arrays, so scoring does not box.
+     * In binary mode the mapped vector block is scanned instead (in parallel partitions for large
+     * segments) and only the top-k documents are deserialized.</p>
+     * @throws IllegalArgumentException if k is not positive.
+     */
+    @Override
+    public List<Document> similaritySearchVector(float[] queryVector, int k) throws VectorStoreException {
+        return similaritySearchVector(queryVector, k, null);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>In JSONL mode the filter is tested against each parsed document before its embedding is scored.
+     * In binary mode the segment keeps a per-field metadata index (built on the first filtered search
+     * and maintained on append), so only the vectors of matching documents are read.</p>
+     * @throws IllegalArgumentException if k is not positive.
+     */
+    @Override
+    public List<Document> similaritySearchVector(float[] queryVector, int k, MetadataFilter filter) throws VectorStoreException {
+        Objects.requireNonNull(queryVector, "Query vector cannot be null for similarity search.");
         if (k <= 0) {
             throw new IllegalArgumentException("Number of results to return (k) must be positive.");
         }
 
-        // Max-heap for distances to keep the k smallest distances (closest documents)
-        // The comparator makes it behave as a max-heap for distances.
-        PriorityQueue<DocumentDistancePair> topKQueue = new PriorityQueue<>(k, Comparator.comparingDouble(DocumentDistancePair::getDistance).reversed());
+        if (segment != null) {
+            return segment.search(queryVector, k, filter, vectorKernels, parallelThreshold, searchPool);
+        }
 
+        // Convert the nearest pairs to documents and set scores
+        return scanJsonl(new float[][]{queryVector}, k, filter).get(0).stream()
+                .map(pair -> {
+                    double score = 1.0 - pair.getDistance(); // Score is cosine similarity
+                    pair.getDocument().setScore((float) score);
+                    return pair.getDocument();
+                })
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>Scores the documents holding any query term with BM25 (see {@link Bm25Index}) and reads only the
+     * top k back: in binary mode from the metadata sidecar, in JSONL mode by parsing just their lines.
+     * In JSONL mode this operation is synchronized.</p>
+     * @throws IllegalArgumentException if k is not positive.
+     * @throws UnsupportedOperationException if {@link #withLexicalIndex(double, double)} has not been called.
+     * @throws VectorStoreException if the matching documents cannot be read.
+     */
+    @Override
+    public List<Document> lexicalSearch(String queryText, int k) throws VectorStoreException {
+        Objects.requireNonNull(queryText, "Query text cannot be null for lexical search.");
+        if (k <= 0) {
+            throw new IllegalArgumentException("Number of results to return (k) must be positive.");
+        }
+        if (!isLexicalIndexEnabled()) {
+            throw new UnsupportedOperationException("Lexical search is not enabled for this FileVectorStore; call withLexicalIndex() first.");
+        }
+        if (segment != null) {
+            return segment.lexicalSearch(queryText, k);
+        }
+        return lexicalSearchJsonl(queryText, k);
+    }
+
+    /** Reads the JSONL lines of the BM25 top k, stopping once all of them are found. */
+    private synchronized List<Document> lexicalSearchJsonl(String queryText, int k) throws VectorStoreException {
+        checkpointWriteAheadLog(); // Logged documents are indexed once they have a line
+        List<Bm25Index.Hit> hits = jsonlLexicalIndex.search(queryText, k, null);
+        Map<Integer, Integer> rankByLine = new HashMap<>();
+        for (int rank = 0; rank < hits.size(); rank++) {
+            rankByLine.put(hits.get(rank).ordinal(), rank);
+        }
+        Document[] ranked = new Document[hits.size()];
+        int found = 0;
         try (BufferedReader reader = Files.newBufferedReader(filePath, StandardCharsets.UTF_8)) {
             String line;
-            while ((line = reader.readLine()) != null) {
+            int lineNumber = 0;
+            while (found < ranked.length && (line = reader.readLine()) != null) {
+                if (line.trim().isEmpty()) continue;
+                Integer rank = rankByLine.get(lineNumber++);
+                if (rank == null) continue;
+                Document doc = objectMapper.readValue(line, Document.class);
+                doc.setScore(hits.get(rank).score());
+                ranked[rank] = doc;
+                found++;
+            }
+        } catch (IOException e) {
+            throw new VectorStoreException("Failed to read documents from file: " + filePath, e);
+        }
+        List<Document> results = new ArrayList<>(found);
+        for (Document doc : ranked) {
+            if (doc != null) {
+                results.add(doc);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>Converts the queries to primitive arrays and delegates to {@link #similaritySearchBatchVector(List, int)}.</p>
+     */
+    @Override
+    public List<List<Document>> similaritySearchBatch(List<List<Double>> queryEmbeddings, int k) throws VectorStoreException {
+        Objects.requireNonNull(queryEmbeddings, "Query embeddings cannot be null for batch similarity search.");
+        List<float[]> queryVectors = new ArrayList<>(queryEmbeddings.size());
+        for (List<Double> queryEmbedding : queryEmbeddings) {
+            queryVectors.add(EmbeddingUtils.toFloatArray(Objects.requireNonNull(queryEmbedding, "Query embedding cannot be null.")));
+        }
+        return similaritySearchBatchVector(queryVectors, k);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>The whole batch is answered in one pass over the store. In JSONL mode each line is read and
+     * deserialized once and scored against every query, which removes the dominant parsing cost of
+     * issuing the queries separately. In binary mode the mapped vector block is scanned once in blocks
+     * of documents and queries (see {@link com.skanga.rag.vectorstore.search.PartitionedScan#scanBatch}).
+     * A document that appears in several result lists is returned as a separate copy after its first
+     * appearance, so each list has its own scores.</p>
+     * @throws IllegalArgumentException if k is not positive.
+     * @throws VectorStoreException if the queries differ in dimension, or reading the store fails.
+     */
+    @Override
+    public List<List<Document>> similaritySearchBatchVector(List<float[]> queryVectors, int k) throws VectorStoreException {
+        float[][] queries = BatchSearchSupport.queries(queryVectors, k);
+        if (segment != null) {
+            return segment.searchBatch(queries, k, vectorKernels, parallelThreshold, searchPool);
+        }
+        Set<Document> returned = BatchSearchSupport.identitySet();
+        List<List<Document>> results = new ArrayList<>(queries.length);
+        for (List<DocumentDistancePair> nearest : scanJsonl(queries, k, null)) {
+            List<Document> docs = new ArrayList<>(nearest.size());
+            for (DocumentDistancePair pair : nearest) {
+                docs.add(BatchSearchSupport.scored(pair.getDocument(), pair.getDistance(), returned));
+            }
+            results.add(docs);
+        }
+        return results;
+    }
+
+    /**
+     * Reads the JSONL file once, scoring every document that passes the filter against each query.
+     * @param queries Query vectors of equal dimension.
+     * @param k       The number of results per query.
+     * @param filter  The metadata filter, or {@code null}.
+     * @return For each query, up to k pairs sorted nearest first.
+     */
+    private List<List<DocumentDistancePair>> scanJsonl(float[][] queries, int k, MetadataFilter filter) throws VectorStoreException {
+        // Max-heaps for distances keep the k smallest distances (closest documents) per query.
+        // The comparator makes them behave as max-heaps for distances.
+        List<PriorityQueue<DocumentDistancePair>> topKQueues = new ArrayList<>(queries.length);
+        for (int q = 0; q < queries.length; q++) {
+            topKQueues.add(new PriorityQueue<>(k, Comparator.comparingDouble(DocumentDistancePair::getDistance).reversed()));
+        }
+        VectorKernels kernels = this.vectorKernels;
+
+        checkpointLock.readLock().lock(); // The file and log must not change between reading one and the other
+        try (BufferedReader reader = Files.newBufferedReader(filePath, StandardCharsets.UTF_8)) {
+            String line;
+            while (queries.length > 0 && (line = reader.readLine()) != null) {
                 if (line.trim().isEmpty()) continue; // Skip empty lines
 
                 Document doc;
@@ -199,39 +1225,55 @@ public class FileVectorStore implements VectorStore {
                     System.err.println("Warning: Failed to deserialize document from file line: \"" + line + "\". Error: " + e.getMessage());
                     continue; // Skip malformed lines
                 }
-
-                if (doc.getEmbedding() == null || doc.getEmbedding().isEmpty()) {
-                     System.err.println("Warning: Document ID " + doc.getId() + " in FileVectorStore has no embedding and will be skipped in search.");
-                    continue;
-                }
-
-                try {
-                    double distance = SimilaritySearchUtils.cosineDistance(queryEmbedding, doc.getEmbedding());
-                    if (topKQueue.size() < k) {
-                        topKQueue.add(new DocumentDistancePair(doc, distance));
-                    } else if (distance < topKQueue.peek().getDistance()) { // If new distance is smaller than the largest in queue
-                        topKQueue.poll(); // Remove the one with largest distance (smallest similarity)
-                        topKQueue.add(new DocumentDistancePair(doc, distance));
-                    }
-                } catch (VectorStoreException e) { // Catch errors from cosineDistance (e.g. dimension mismatch)
-                     System.err.println("Warning: Could not calculate distance for document ID " + doc.getId() + ": " + e.getMessage());
-                }
+                score(doc, queries, k, filter, kernels, topKQueues);
+            }
+            WriteAheadLog log = this.writeAheadLog;
+            if (log != null && queries.length > 0) {
+                log.forEach(payload -> score(objectMapper.readValue(payload, Document.class), queries, k, filter, kernels, topKQueues));
             }
         } catch (IOException e) {
             throw new VectorStoreException("Failed to read documents from file: " + filePath, e);
+        } finally {
+            checkpointLock.readLock().unlock();
         }
 
-        // Convert queue to a list, sort by distance (ascending), and set scores
-        List<DocumentDistancePair> resultPairs = new ArrayList<>(topKQueue);
-        resultPairs.sort(Comparator.comparingDouble(DocumentDistancePair::getDistance));
+        // Convert each queue to a list sorted by distance (ascending)
+        List<List<DocumentDistancePair>> results = new ArrayList<>(queries.length);
+        for (PriorityQueue<DocumentDistancePair> topKQueue : topKQueues) {
+            List<DocumentDistancePair> resultPairs = new ArrayList<>(topKQueue);
+            resultPairs.sort(Comparator.comparingDouble(DocumentDistancePair::getDistance));
+            results.add(resultPairs);
+        }
+        return results;
+    }
 
-        return resultPairs.stream()
-                .map(pair -> {
-                    double score = 1.0 - pair.getDistance(); // Score is cosine similarity
-                    pair.getDocument().setScore((float) score);
-                    return pair.getDocument();
-                })
-                .collect(Collectors.toList());
+    /** Offers a document that passes the filter to each query's top-k queue; there is at least one query. */
+    private static void score(Document doc, float[][] queries, int k, MetadataFilter filter, VectorKernels kernels,
+                              List<PriorityQueue<DocumentDistancePair>> topKQueues) {
+        if (filter != null && !filter.test(doc.getMetadata())) {
+            return;
+        }
+        if (doc.getEmbeddingVector().length == 0) {
+            System.err.println("Warning: Document ID " + doc.getId() + " in FileVectorStore has no embedding and will be skipped in search.");
+            return;
+        }
+        int queryDimension = queries[0].length;
+        if (doc.getEmbeddingVector().length != queryDimension) {
+            System.err.println("Warning: Could not calculate distance for document ID " + doc.getId() +
+                               ": Vectors must have the same dimension. Query dim: " + queryDimension +
+                               ", document dim: " + doc.getEmbeddingVector().length);
+            return;
+        }
+        for (int q = 0; q < queries.length; q++) {
+            PriorityQueue<DocumentDistancePair> topKQueue = topKQueues.get(q);
+            double distance = kernels.cosineDistance(queries[q], doc.getEmbeddingVector());
+            if (topKQueue.size() < k) {
+                topKQueue.add(new DocumentDistancePair(doc, distance));
+            } else if (distance < topKQueue.peek().getDistance()) { // If new distance is smaller than the largest in queue
+                topKQueue.poll(); // Remove the one with largest distance (smallest similarity)
+                topKQueue.add(new DocumentDistancePair(doc, distance));
+            }
+        }
     }
 
     /**
@@ -250,16 +1292,49 @@ public class FileVectorStore implements VectorStore {
     }
 
     /**
-     * Clears all documents from this file-based vector store by truncating the underlying file.
+     * Clears all documents from this file-based vector store by truncating the underlying file(s).
      * This operation is synchronized.
      * @throws VectorStoreException if an I/O error occurs.
      */
     public synchronized void clear() throws VectorStoreException {
+        if (segment != null) {
+            segment.clear();
+            return;
+        }
         try {
-            // Truncate existing file or create if it doesn't exist (though constructor should ensure creation)
-            Files.write(filePath, new byte[0], StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+            WriteAheadLog log = this.writeAheadLog;
+            if (log == null) {
+                // Truncate existing file or create if it doesn't exist (though constructor should ensure creation)
+                Files.write(filePath, new byte[0], StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+            } else {
+                // The logged documents are dropped along with the file's.
+                underCheckpoint(log, payloads -> Files.size(filePath), () -> {
+                    Files.write(filePath, new byte[0], StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+                    return 0L;
+                });
+            }
+            if (jsonlLexicalIndex != null) {
+                jsonlLexicalIndex.clear();
+                jsonlLineCount = 0;
+            }
         } catch (IOException e) {
             throw new VectorStoreException("Failed to clear vector store file: " + filePath, e);
         }
     }
+
+    /**
+     * Releases the file handles and mappings held by a {@link StorageFormat#BINARY} store, or checkpoints and
+     * removes the write-ahead log of a JSONL store. Otherwise has no effect in JSONL mode, which opens the file
+     * per operation.
+     * @throws IOException if closing the segment files fails.
+     * @throws VectorStoreException if the write-ahead log cannot be checkpointed.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        closed = true;
+        if (segment != null) {
+            segment.close();
+        }
+        closeWriteAheadLog();
+    }
 }
@@ -0,0 +1,128 @@
+package com.skanga.rag.vectorstore;
+
+import com.skanga.providers.HttpClientManager;
+
+import java.io.IOException;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * Request plumbing shared by the stores that talk to a vector database over HTTP (Chroma, Pinecone):
+ * non-blocking sends on the shared {@link java.net.http.HttpClient}, batched writes through a
+ * {@link BulkIngester}, the retry policy for failed batches, and the translation of failures into
+ * {@link VectorStoreException}s named after the service.
+ *
+ * <p>Instances are immutable and thread-safe.</p>
+ */
+public final class HttpStoreClient {
+
+    private final String serviceName;
+    private final Set<Integer> retryableStatuses;
+
+    /**
+     * @param serviceName       Names the service in error messages, e.g. "ChromaDB".
+     * @param retryableStatuses HTTP statuses for which a batch is retried, e.g. 429 and 503.
+     */
+    public HttpStoreClient(String serviceName, Set<Integer> retryableStatuses) {
+        this.serviceName = Objects.requireNonNull(serviceName, "Service name cannot be null.");
+        this.retryableStatuses = Set.copyOf(retryableStatuses);
+    }
+
+    /**
+     * Sends a request without blocking.
+     * @param action Names the API call in error messages, e.g. "query".
+     * @return A future completing with the response, or exceptionally with a {@link VectorStoreException}
+     *         if the request could not be sent.
+     */
+    public CompletableFuture<HttpResponse<String>> sendAsync(HttpRequest request, String action) {
+        return HttpClientManager.getSharedClient().sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                .handle((httpResponse, error) -> {
+                    if (error != null) {
+                        Throwable cause = (error instanceof CompletionException && error.getCause() != null) ? error.getCause() : error;
+                        throw new VectorStoreException("I/O error during " + serviceName + " " + action + " API call: " + cause.getMessage(), cause);
+                    }
+                    return httpResponse;
+                });
+    }
+
+    /**
+     * Checks that a response has a 2xx status.
+     * @throws VectorStoreException with the status and body otherwise.
+     */
+    public void checkResponse(HttpResponse<String> httpResponse, String action) throws VectorStoreException {
+        if (httpResponse.statusCode() / 100 != 2) {
+            throw new VectorStoreException(serviceName + " " + action + " request failed", httpResponse.statusCode(), httpResponse.body());
+        }
+    }
+
+    /**
+     * Sends a write in batches, each written entirely or not at all by the server. Batches that fail with a
+     * {@link #isRetryable retryable} error are retried as the ingester allows. The returned future does not
+     * complete exceptionally; failures are in the report.
+     *
+     * @param ingester The batching, concurrency and retry policy, already capped at the server's limits.
+     * @param sizeOf   Estimates the payload bytes of an item.
+     * @param request  Builds the request for one batch.
+     * @param action   Names the API call in error messages, e.g. "upsert".
+     */
+    public <T> CompletableFuture<BulkIngestReport> load(BulkIngester ingester, List<T> items, ToLongFunction<? super T> sizeOf,
+                                                        Function<List<T>, HttpRequest> request, String action) {
+        BulkIngester.ChunkSender<T> sender = chunk -> sendAsync(request.apply(chunk), action).thenApply(httpResponse -> {
+            checkResponse(httpResponse, action);
+            return List.<BulkIngester.ItemFailure>of();
+        });
+        return ingester.ingest(items, sizeOf, sender, this::isRetryable);
+    }
+
+    /** Request failures worth retrying: I/O errors, and responses with a retryable status. */
+    public boolean isRetryable(Throwable error) {
+        if (error instanceof VectorStoreException vse) {
+            return retryableStatuses.contains(vse.getStatusCode()) || vse.getCause() instanceof IOException;
+        }
+        return error instanceof IOException;
+    }
+
+    /**
+     * Turns the failures of a batched write into a {@link VectorStoreException}. A failure of the whole
+     * write is rethrown as it is, so a single batch fails exactly as an unbatched request would.
+     */
+    public void throwIfFailed(BulkIngestReport report, String action) throws VectorStoreException {
+        if (report.failedDocuments() == 0) {
+            return;
+        }
+        Throwable cause = report.requestFailure();
+        if (report.failedDocuments() == report.documents() && cause instanceof VectorStoreException vse) {
+            throw vse;
+        }
+        String message = (cause != null) ? cause.getMessage() : String.join("; ", report.failures());
+        throw new VectorStoreException(serviceName + " " + action + " failed for " + report.failedDocuments() + " of " + report.documents() +
+                                       " documents (" + report + "): " + message, cause);
+    }
+
+    /**
+     * Waits for a request or load, rethrowing its {@link VectorStoreException} and preserving the caller's
+     * interrupt status.
+     */
+    public <T> T await(CompletableFuture<T> future, String action) throws VectorStoreException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt(); // Preserve interrupt status
+            throw new VectorStoreException(serviceName + " " + action + " API call was interrupted", e);
+        } catch (ExecutionException e) {
+            Throwable cause = BulkIngester.unwrap(e);
+            if (cause instanceof VectorStoreException vse) {
+                throw vse;
+            }
+            throw new VectorStoreException(serviceName + " " + action + " failed: " + cause.getMessage(), cause);
+        }
+    }
+}
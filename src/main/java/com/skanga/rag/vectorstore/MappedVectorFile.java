@@ -0,0 +1,125 @@
+package com.skanga.rag.vectorstore;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * A scratch file of fixed-dimension float32 records addressed by ordinal, used by {@link MemoryVectorStore}
+ * to keep full-precision embeddings off the heap when it scores quantized vectors.
+ *
+ * <p>The file is created in a given directory and deleted when it is closed; on POSIX systems it is unlinked
+ * as soon as it is opened, so nothing is left behind by a crash. It is not a persistence format. Records
+ * are written and read through read-write mappings of fixed-size chunks, so the operating system pages
+ * them in on demand and evicts them under memory pressure. Only the records of the re-scored candidates
+ * are touched by a search.</p>
+ *
+ * <p><b>Thread Safety:</b> Not synchronized. Concurrent {@link #read} calls are safe; {@link #append}
+ * must not run concurrently with anything else. The owning store's lock provides this.</p>
+ */
+final class MappedVectorFile implements Closeable {
+
+    /** Bytes mapped per chunk; chunks are mapped as the file grows. */
+    private static final long CHUNK_BYTES = 64L << 20;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final int dimension;
+    private final int recordsPerChunk;
+    private FloatBuffer[] chunks = new FloatBuffer[0];
+    private int size;
+
+    private MappedVectorFile(Path path, FileChannel channel, int dimension) {
+        this.path = path;
+        this.channel = channel;
+        this.dimension = dimension;
+        this.recordsPerChunk = (int) Math.max(1, CHUNK_BYTES / ((long) dimension * Float.BYTES));
+    }
+
+    /**
+     * Creates an empty file in a directory.
+     * @param directory The directory, which must exist.
+     * @param dimension The number of floats per record.
+     * @return The open file.
+     * @throws VectorStoreException if the file cannot be created.
+     */
+    static MappedVectorFile create(Path directory, int dimension) throws VectorStoreException {
+        try {
+            Path path = Files.createTempFile(directory, "vectors-", ".f32");
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                                                   StandardOpenOption.DELETE_ON_CLOSE);
+            return new MappedVectorFile(path, channel, dimension);
+        } catch (IOException e) {
+            throw new VectorStoreException("Failed to create vector file in " + directory, e);
+        }
+    }
+
+    /** @return The directory holding the file. */
+    Path directory() {
+        return path.getParent();
+    }
+
+    /** @return The number of floats per record. */
+    int dimension() {
+        return dimension;
+    }
+
+    /** @return The number of records. */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Appends a record.
+     * @param vector The record, of {@link #dimension()} floats.
+     * @return The record's ordinal.
+     * @throws VectorStoreException if the file cannot be extended.
+     */
+    int append(float[] vector) throws VectorStoreException {
+        int chunk = size / recordsPerChunk;
+        if (chunk == chunks.length) {
+            try {
+                chunks = Arrays.copyOf(chunks, chunk + 1);
+                chunks[chunk] = channel.map(FileChannel.MapMode.READ_WRITE,
+                                (long) chunk * recordsPerChunk * dimension * Float.BYTES,
+                                (long) recordsPerChunk * dimension * Float.BYTES)
+                        .order(ByteOrder.LITTLE_ENDIAN)
+                        .asFloatBuffer();
+            } catch (IOException e) {
+                chunks = Arrays.copyOf(chunks, chunk);
+                throw new VectorStoreException("Failed to extend vector file " + path, e);
+            }
+        }
+        // Absolute bulk put: does not touch the buffer position, which concurrent readers do not use either.
+        chunks[chunk].put((size % recordsPerChunk) * dimension, vector);
+        return size++;
+    }
+
+    /**
+     * Copies a record into a new array.
+     * @param ordinal The record's ordinal.
+     * @return The record.
+     */
+    float[] read(int ordinal) {
+        float[] vector = new float[dimension];
+        chunks[ordinal / recordsPerChunk].get((ordinal % recordsPerChunk) * dimension, vector);
+        return vector;
+    }
+
+    /** Removes all records. The mapped chunks are kept and overwritten by later appends. */
+    void clear() {
+        size = 0;
+    }
+
+    /** Closes and deletes the file. Mapped chunks stay readable until they are garbage-collected. */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,287 @@
+package com.skanga.rag.vectorstore;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.skanga.rag.Document;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntFunction;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+import java.util.zip.Checksum;
+
+/**
+ * Reads and writes the snapshot file of {@link MemoryVectorStore#snapshot(Path)}.
+ *
+ * <p>A snapshot is a single file with three parts:
+ * <ul>
+ *   <li>a 64-byte little-endian header: magic, version, document count, the byte length and CRC-32C of
+ *       each of the two blocks below, and a CRC-32C of the header itself;</li>
+ *   <li>the vector block: every embedding as little-endian float32 values, concatenated in document order.
+ *       It is restored through read-only mappings of {@link #CHUNK_BYTES} at a time, copied in bulk into
+ *       the documents' arrays;</li>
+ *   <li>the document block: per document, its embedding dimension followed by its ID, content, source type,
+ *       source name and metadata JSON, each as a length-prefixed UTF-8 string in {@link java.io.DataOutput}
+ *       byte order.</li>
+ * </ul>
+ * Both checksums are verified before {@link #read(Path)} returns, so a truncated or corrupted file is
+ * rejected as a whole. {@link #write} writes to a temporary file, forces it to disk and renames it over
+ * the target, so an interrupted snapshot leaves the previous one intact.</p>
+ */
+final class MemoryStoreSnapshot {
+
+    static final int HEADER_BYTES = 64;
+    private static final int MAGIC = 0x41464D53; // "AFMS"
+    private static final int FORMAT_VERSION = 1;
+    /** Bytes of the vector block mapped at a time while restoring; a multiple of {@link Float#BYTES}. */
+    private static final long CHUNK_BYTES = 64L << 20;
+    /** Bytes of the vector block buffered at a time while writing. */
+    private static final int WRITE_BUFFER_BYTES = 1 << 20;
+    private static final int STREAM_BUFFER_BYTES = 1 << 16;
+
+    private static final ObjectMapper METADATA_MAPPER = new ObjectMapper();
+    private static final TypeReference<Map<String, Object>> METADATA_TYPE = new TypeReference<>() {};
+
+    private MemoryStoreSnapshot() {}
+
+    /**
+     * Writes a snapshot atomically.
+     *
+     * @param path       The snapshot file; replaced if it exists.
+     * @param count      The number of documents.
+     * @param documents  The documents by position; their embeddings are ignored.
+     * @param embeddings The embeddings by position.
+     * @throws VectorStoreException if the file cannot be written.
+     */
+    static void write(Path path, int count, IntFunction<Document> documents, IntFunction<float[]> embeddings) throws VectorStoreException {
+        Path tempFile = path.resolveSibling(path.getFileName() + ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                                        StandardOpenOption.TRUNCATE_EXISTING)) {
+                channel.position(HEADER_BYTES);
+                CRC32C vectorChecksum = new CRC32C();
+                ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+                for (int i = 0; i < count; i++) {
+                    for (float value : embeddings.apply(i)) {
+                        if (!buffer.hasRemaining()) {
+                            flush(channel, buffer, vectorChecksum);
+                        }
+                        buffer.putFloat(value);
+                    }
+                }
+                flush(channel, buffer, vectorChecksum);
+                long vectorBytes = channel.position() - HEADER_BYTES;
+
+                CRC32C documentChecksum = new CRC32C();
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                        new CheckedOutputStream(Channels.newOutputStream(channel), documentChecksum), STREAM_BUFFER_BYTES));
+                for (int i = 0; i < count; i++) {
+                    Document document = documents.apply(i);
+                    out.writeInt(embeddings.apply(i).length);
+                    writeString(out, document.getId());
+                    writeString(out, document.getContent());
+                    writeString(out, document.getSourceType());
+                    writeString(out, document.getSourceName());
+                    Map<String, Object> metadata = document.getMetadata();
+                    writeString(out, metadata.isEmpty() ? null : METADATA_MAPPER.writeValueAsString(metadata));
+                }
+                out.flush(); // Not closed: that would close the channel before the header is written.
+                long documentBytes = channel.position() - HEADER_BYTES - vectorBytes;
+
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+                header.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(count).putInt(0)
+                      .putLong(vectorBytes).putLong(documentBytes)
+                      .putLong(vectorChecksum.getValue()).putLong(documentChecksum.getValue());
+                header.putLong(headerChecksum(header)).putLong(0).flip();
+                while (header.hasRemaining()) {
+                    channel.write(header, header.position());
+                }
+                channel.force(true);
+            }
+            Files.move(tempFile, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            try {
+                Files.deleteIfExists(tempFile);
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw new VectorStoreException("Failed to write snapshot: " + path, e);
+        }
+    }
+
+    /**
+     * Reads and verifies a snapshot.
+     *
+     * @param path The snapshot file.
+     * @return The documents with their embeddings, in snapshot order.
+     * @throws VectorStoreException if the file cannot be read, is not a snapshot, or fails a checksum.
+     */
+    static List<Document> read(Path path) throws VectorStoreException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+                // Keep reading until the header is complete or the file ends.
+            }
+            if (header.hasRemaining() || header.getInt(0) != MAGIC) {
+                throw new VectorStoreException("Not a MemoryVectorStore snapshot: " + path);
+            }
+            if (header.getLong(48) != headerChecksum(header)) {
+                throw new VectorStoreException("Snapshot header checksum mismatch: " + path);
+            }
+            int version = header.getInt(4);
+            if (version != FORMAT_VERSION) {
+                throw new VectorStoreException("Unsupported snapshot version " + version + ": " + path);
+            }
+            int count = header.getInt(8);
+            long vectorBytes = header.getLong(16);
+            long documentBytes = header.getLong(24);
+            if (count < 0 || vectorBytes < 0 || documentBytes < 0 || vectorBytes % Float.BYTES != 0
+                    || channel.size() != HEADER_BYTES + vectorBytes + documentBytes) {
+                throw new VectorStoreException("Snapshot is truncated or has an inconsistent header: " + path);
+            }
+
+            VectorBlockReader vectors = new VectorBlockReader(channel, HEADER_BYTES, vectorBytes);
+            CRC32C documentChecksum = new CRC32C();
+            channel.position(HEADER_BYTES + vectorBytes);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(
+                    new CheckedInputStream(Channels.newInputStream(channel), documentChecksum), STREAM_BUFFER_BYTES));
+            List<Document> documents = new ArrayList<>(count);
+            float[] embedding = new float[0];
+            for (int i = 0; i < count; i++) {
+                int dimension = in.readInt();
+                if (dimension <= 0 || dimension > vectors.remaining()) {
+                    throw new VectorStoreException("Snapshot is corrupted at document " + i + ": " + path);
+                }
+                if (embedding.length != dimension) {
+                    embedding = new float[dimension];
+                }
+                vectors.read(embedding);
+                Document document = new Document();
+                document.setId(readString(in, documentBytes));
+                String content = readString(in, documentBytes);
+                if (content != null) {
+                    document.setContent(content);
+                }
+                document.setSourceType(readString(in, documentBytes));
+                document.setSourceName(readString(in, documentBytes));
+                String metadata = readString(in, documentBytes);
+                if (metadata != null) {
+                    document.setMetadata(METADATA_MAPPER.readValue(metadata, METADATA_TYPE));
+                }
+                document.setEmbeddingVector(embedding);
+                documents.add(document);
+            }
+            if (vectors.remaining() != 0 || in.read() != -1) {
+                throw new VectorStoreException("Snapshot has data after its last document: " + path);
+            }
+            if (vectors.checksum() != header.getLong(32) || documentChecksum.getValue() != header.getLong(40)) {
+                throw new VectorStoreException("Snapshot checksum mismatch: " + path);
+            }
+            return documents;
+        } catch (EOFException e) {
+            throw new VectorStoreException("Snapshot is truncated: " + path, e);
+        } catch (IOException | RuntimeException e) {
+            if (e instanceof VectorStoreException vse) {
+                throw vse;
+            }
+            throw new VectorStoreException("Failed to read snapshot: " + path, e);
+        }
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer buffer, Checksum checksum) throws IOException {
+        buffer.flip();
+        checksum.update(buffer.duplicate());
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private static long headerChecksum(ByteBuffer header) {
+        CRC32C checksum = new CRC32C();
+        checksum.update(header.array(), 0, 48);
+        return checksum.getValue();
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in, long blockBytes) throws IOException {
+        int length = in.readInt();
+        if (length == -1) {
+            return null;
+        }
+        if (length < 0 || length > blockBytes) {
+            throw new VectorStoreException("Snapshot is corrupted: invalid string length " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /** Copies the vector block out of read-only mappings, one chunk at a time, checksumming each chunk. */
+    private static final class VectorBlockReader {
+        private final FileChannel channel;
+        private final CRC32C checksum = new CRC32C();
+        private long position;
+        private final long end;
+        private FloatBuffer chunk = FloatBuffer.allocate(0);
+
+        VectorBlockReader(FileChannel channel, long start, long length) {
+            this.channel = channel;
+            this.position = start;
+            this.end = start + length;
+        }
+
+        /** @return The number of floats not read yet. */
+        long remaining() {
+            return (end - position) / Float.BYTES + chunk.remaining();
+        }
+
+        void read(float[] destination) throws IOException {
+            int offset = 0;
+            while (offset < destination.length) {
+                if (!chunk.hasRemaining()) {
+                    long length = Math.min(CHUNK_BYTES, end - position);
+                    ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                    checksum.update(mapped.duplicate());
+                    chunk = mapped.order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+                    position += length;
+                }
+                int n = Math.min(destination.length - offset, chunk.remaining());
+                chunk.get(destination, offset, n);
+                offset += n;
+            }
+        }
+
+        long checksum() {
+            return checksum.getValue();
+        }
+    }
+}
@@ -1,15 +1,39 @@
 package com.skanga.rag.vectorstore;
 
 import com.skanga.rag.Document;
+import com.skanga.rag.embeddings.EmbeddingUtils;
+import com.skanga.rag.vectorstore.filter.MetadataFilter;
+import com.skanga.rag.vectorstore.filter.MetadataIndex;
+import com.skanga.rag.vectorstore.search.BinaryQuantizer;
+import com.skanga.rag.vectorstore.search.Bm25Index;
+import com.skanga.rag.vectorstore.search.HnswIndex;
+import com.skanga.rag.vectorstore.search.MatryoshkaPrefix;
+import com.skanga.rag.vectorstore.search.PartitionedScan;
+import com.skanga.rag.vectorstore.search.ScalarQuantizer;
 import com.skanga.rag.vectorstore.search.SimilaritySearchUtils;
+import com.skanga.rag.vectorstore.search.TopKCollector;
+import com.skanga.rag.vectorstore.search.VectorKernels;
 
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
-import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Objects;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntPredicate;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 /**
  * An in-memory implementation of the {@link VectorStore} interface.
@@ -19,29 +43,116 @@ import java.util.stream.Collectors;
  * <ul>
  *   <li>Stores documents entirely in RAM.</li>
  *   <li>Similarity search is performed by iterating through all stored documents and
- *       calculating the cosine distance between the query embedding and each document's embedding.</li>
+ *       calculating the cosine distance between the query embedding and each document's embedding.
+ *       Only the best {@code k} candidates are kept (in a bounded heap), and stores with at least
+ *       {@link #DEFAULT_PARALLEL_THRESHOLD} documents are scanned in parallel partitions on a
+ *       {@link ForkJoinPool}; see {@link #withParallelSearch(int, ForkJoinPool)}.</li>
  *   <li>Suitable for small datasets, testing, or scenarios where persistence is not required.</li>
- *   <li>Not optimized for very large numbers of documents due to linear search time.</li>
+ *   <li>Optionally maintains an {@link HnswIndex} (enabled with {@link #withHnswIndex(int, int, int)})
+ *       so that searches run in roughly logarithmic time instead of scanning every document.
+ *       The graph is extended incrementally on every add. Use {@link #measureRecall(List, int)}
+ *       to compare its results with the exact scan.</li>
+ *   <li>Optionally caches the norm of each embedding (enabled with {@link #withNormalizedVectors()}),
+ *       so each comparison against the normalized query is a single dot product instead of a dot product plus two norms.</li>
+ *   <li>Scoring uses {@link VectorKernels}, which are SIMD-accelerated when the JVM runs with
+ *       {@code --add-modules jdk.incubator.vector}; see {@link #withVectorKernels(VectorKernels)}.</li>
+ *   <li>Documents can be deleted or replaced by ID ({@link #deleteDocuments(List)}, {@link #upsertDocuments(List)}).
+ *       A delete only sets a tombstone bit, so it is O(1) per document; tombstoned documents are skipped
+ *       by searches until a compaction drops them. Compaction runs in the background once enough of the
+ *       store is deleted (see {@link #withAutoCompaction(double, int)}) or on demand with {@link #compact()}.</li>
+ *   <li>Searches can be restricted by a {@link MetadataFilter} (see {@link #similaritySearchVector(float[], int, MetadataFilter)}).
+ *       Metadata is indexed per field when a document is added, so the filter is resolved to a candidate set
+ *       without touching the documents, and only candidates are scored.</li>
+ *   <li>Optionally scores int8 scalar-quantized copies of the embeddings (enabled with
+ *       {@link #withScalarQuantization(ScalarQuantizer, int, Path)}): the exact scan reads one byte per
+ *       dimension instead of four to shortlist {@code k * oversampling} candidates, which are then re-scored
+ *       with the full-precision vectors. The full-precision embeddings can be moved to a memory-mapped file,
+ *       so that the heap holds about a quarter of the vector bytes. Use {@link #measureRecall(List, int)}
+ *       to compare the results with the full-precision scan.</li>
+ *   <li>Alternatively scores binary codes, one bit per dimension (enabled with
+ *       {@link #withBinaryQuantization(BinaryQuantizer, int, Path)}): the first pass counts differing bits
+ *       with {@link Long#bitCount(long)}, which is the fastest scan for large corpora of high-dimensional
+ *       embeddings, at the cost of a larger re-scored shortlist.</li>
+ *   <li>Alternatively scores truncated, re-normalized prefixes of Matryoshka embeddings packed into one array
+ *       (enabled with {@link #withMatryoshkaSearch(MatryoshkaPrefix, int, Path)}), re-scoring the shortlist
+ *       with the full vectors in the same way.</li>
+ *   <li>Optionally keeps a BM25 inverted index over the documents' content (enabled with
+ *       {@link #withLexicalIndex(double, double)}), maintained on every add, for keyword search with
+ *       {@link #lexicalSearch(String, int)}; {@code RAG} fuses it with the similarity search.</li>
+ *   <li>The documents can be saved to a checksummed binary file with {@link #snapshot(Path)} and loaded back
+ *       with {@link #restore(Path)}, which reads the embeddings in bulk through memory mappings.</li>
  * </ul>
  * </p>
  *
  * <p><b>Thread Safety:</b>
- * Methods that modify the internal list of documents ({@code addDocument}, {@code addDocuments}, {@code clear})
- * are marked as {@code synchronized} to ensure basic thread safety if a single instance of
- * this store is shared across threads. The {@code similaritySearch} method is also synchronized
- * as it iterates over the shared list. For high-concurrency scenarios, more granular locking or
- * concurrent collections might be considered, but this provides a baseline.
+ * The store is guarded by a {@link ReadWriteLock}. Methods that modify the store ({@code addDocument},
+ * {@code addDocuments}, {@code deleteDocuments}, {@code upsertDocuments}, {@code clear}, {@code withHnswIndex},
+ * {@code withNormalizedVectors}, {@code withScalarQuantization}, {@code withBinaryQuantization}, {@code withMatryoshkaSearch},
+ * {@code withLexicalIndex},
+ * {@code restore})
+ * take the write lock;
+ * searches, {@code getAllDocuments} and {@code snapshot} take the read lock,
+ * so concurrent searches do not block each other. {@link #compact()} rebuilds the store under the read lock
+ * and only takes the write lock to swap in the result.
  * </p>
  */
-public class MemoryVectorStore implements VectorStore {
+public class MemoryVectorStore implements VectorStore, Closeable {
 
-    /** The in-memory list holding the documents. */
-    private final List<Document> documents;
+    /**
+     * The in-memory list holding the documents, including tombstoned ones.
+     * A document's position is its ordinal in the HNSW index.
+     * When {@link #embeddingFile} is set, these are copies without their embeddings.
+     */
+    private List<Document> documents;
+    /**
+     * Guards {@link #documents}, {@link #hnswIndex}, {@link #norms}, {@link #quantizedVectors},
+     * {@link #embeddingFile}, {@link #deleted}, {@link #documentIds}, {@link #metadataIndex} and {@link #lexicalIndex}.
+     */
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    /** Tombstones: ordinals of deleted documents that have not been compacted away yet. */
+    private BitSet deleted = new BitSet();
+    private int deletedCount;
+    /** Live ordinals by document ID. */
+    private DocumentIdIndex documentIds = new DocumentIdIndex();
+    /** Ordinals by metadata field and value, including tombstoned ones; used to pre-filter searches. */
+    private MetadataIndex metadataIndex = new MetadataIndex();
+    /** Incremented by every modification; lets {@link #compact()} detect writes made while it was rebuilding. */
+    private long modificationCount;
+    private final BackgroundCompactor compactor = new BackgroundCompactor("MemoryVectorStore", this::compact);
+    /** Ordinals by content term, including tombstoned ones; {@code null} unless lexical search is enabled. */
+    private Bm25Index lexicalIndex;
+    /** Optional approximate-nearest-neighbour index; {@code null} means exact linear search. */
+    private HnswIndex hnswIndex;
+    /** L2 norms of the embeddings by ordinal; {@code null} unless normalized scoring is enabled. */
+    private float[] norms;
+    /** Int8 codes, binary codes or prefixes of the scoring vectors by ordinal; {@code null} unless quantized scoring is enabled. */
+    private QuantizedVectors quantizedVectors;
+    /** Candidates re-scored with full precision per requested result when scoring quantized vectors. */
+    private int oversampling;
+    /** Full-precision embeddings by ordinal, moved off the heap; {@code null} while they stay on the documents. */
+    private MappedVectorFile embeddingFile;
+    /** Kernels used to score documents; see {@link #withVectorKernels(VectorKernels)}. */
+    private volatile VectorKernels vectorKernels = VectorKernels.defaultKernels();
     /** Default K value for similarity search if not specified by the caller (not directly used by search method). */
     private final int defaultTopK;
 
     /** Default value for K (number of results) if not specified in constructor. */
     private static final int DEFAULT_K_VALUE = 5;
+    /** Default number of candidates re-scored per requested result when scoring int8-quantized vectors. */
+    public static final int DEFAULT_OVERSAMPLING = 4;
+    /** Default number of candidates re-scored per requested result when scoring binary-quantized vectors. */
+    public static final int DEFAULT_BINARY_OVERSAMPLING = 20;
+    /** Default number of candidates re-scored per requested result when scoring Matryoshka prefixes. */
+    public static final int DEFAULT_MATRYOSHKA_OVERSAMPLING = 10;
+    /** Default minimum number of documents for which an exact search is split across the pool. */
+    public static final int DEFAULT_PARALLEL_THRESHOLD = 10_000;
+
+    /** Minimum store size at which exact searches run in parallel partitions. */
+    private volatile int parallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
+    /** Pool used for parallel exact searches. */
+    private volatile ForkJoinPool searchPool = ForkJoinPool.commonPool();
+    /** Executor for {@link #similaritySearchAsync(List, int)} and {@link #addDocumentsAsync(List)}. */
+    private volatile Executor asyncExecutor = ForkJoinPool.commonPool();
 
     /**
      * Constructs a MemoryVectorStore with a default top-K value.
@@ -63,35 +174,770 @@ public class MemoryVectorStore implements VectorStore {
         if (defaultTopK <= 0) {
             throw new IllegalArgumentException("Default topK must be positive.");
         }
-        // Use CopyOnWriteArrayList since reads vastly outnumber writes.
-        this.documents = new CopyOnWriteArrayList<>();
+        // A plain list guarded by the read/write lock; a copy-on-write list would make bulk loads quadratic.
+        this.documents = new ArrayList<>();
         this.defaultTopK = defaultTopK;
     }
 
+    /**
+     * Configures background compaction. After a delete or upsert, a compaction is scheduled on a shared
+     * background thread once at least {@code minDeleted} documents are tombstoned and they make up at
+     * least {@code deletedRatio} of the store. By default compaction starts at 30% deleted and 1000 documents.
+     *
+     * @param deletedRatio The fraction of deleted documents that triggers a compaction. Use a value above
+     *                     1.0 to disable background compaction (explicit {@link #compact()} still works).
+     * @param minDeleted   The minimum number of deleted documents before compacting. Must be positive.
+     * @return This {@code MemoryVectorStore} instance for fluent chaining.
+     * @throws IllegalArgumentException if deletedRatio or minDeleted is not positive.
+     */
+    public MemoryVectorStore withAutoCompaction(double deletedRatio, int minDeleted) {
+        compactor.configure(deletedRatio, minDeleted);
+        return this;
+    }
+
+    /**
+     * Enables the HNSW approximate-nearest-neighbour index for this store.
+     * Documents already in the store are indexed immediately; subsequent adds extend the graph
+     * incrementally. Once enabled, all documents must share the same embedding dimension.
+     *
+     * @param m              Maximum links per node on upper layers (see {@link HnswIndex}).
+     * @param efConstruction Candidate list size used while inserting.
+     * @param efSearch       Candidate list size used while searching; higher values improve recall.
+     * @return This {@code MemoryVectorStore} instance for fluent chaining.
+     * @throws IllegalArgumentException if any parameter is out of range.
+     * @throws IllegalStateException if quantization is enabled.
+     * @throws VectorStoreException if existing documents have inconsistent embedding dimensions.
+     */
+    public MemoryVectorStore withHnswIndex(int m, int efConstruction, int efSearch) throws VectorStoreException {
+        lock.writeLock().lock();
+        try {
+            if (this.quantizedVectors != null) {
+                throw new IllegalStateException("The HNSW index cannot be combined with quantization in MemoryVectorStore.");
+            }
+            this.hnswIndex = buildHnswIndex(m, efConstruction, efSearch);
+            this.modificationCount++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return this;
+    }
+
+    /**
+     * Creates an HNSW index over the current scoring vectors, tombstoned ones included so that ordinals
+     * stay aligned with {@link #documents}. Caller must hold the write lock.
+     */
+    private HnswIndex buildHnswIndex(int m, int efConstruction, int efSearch) {
+        HnswIndex index = new HnswIndex(m, efConstruction, efSearch, this.norms != null);
+        index.setVectorKernels(this.vectorKernels);
+        for (int ordinal = 0; ordinal < this.documents.size(); ordinal++) {
+            index.add(embedding(ordinal));
+        }
+        return index;
+    }
+
+    /**
+     * Enables the HNSW index with default parameters.
+     * @return This {@code MemoryVectorStore} instance for fluent chaining.
+     * @see #withHnswIndex(int, int, int)
+     */
+    public MemoryVectorStore withHnswIndex() throws VectorStoreException {
+        return withHnswIndex(HnswIndex.DEFAULT_M, HnswIndex.DEFAULT_EF_CONSTRUCTION, HnswIndex.DEFAULT_EF_SEARCH);
+    }
+
+    /**
+     * Changes the HNSW search candidate list size used by subsequent searches.
+     * @param efSearch The new value. Must be positive.
+     * @throws IllegalStateException if the HNSW index is not enabled.
+     */
+    public void setEfSearch(int efSearch) {
+        HnswIndex index = this.hnswIndex;
+        if (index == null) {
+            throw new IllegalStateException("HNSW index is not enabled for this MemoryVectorStore.");
+        }
+        index.setEfSearch(efSearch);
+    }
+
+    /**
+     * Selects the similarity kernels used for scoring, e.g. {@link VectorKernels#scalar()} or
+     * {@link VectorKernels#simd()}. Defaults to {@link VectorKernels#defaultKernels()}, which is
+     * chosen by the {@value VectorKernels#KERNELS_PROPERTY} system property.
+     *
+     * @param vectorKernels The kernels to use for exact scans and the HNSW index.
+     * @return This {@code MemoryVectorStore} instance for fluent chaining.
+     */
+    public MemoryVectorStore withVectorKernels(VectorKernels vectorKernels) {
+        Objects.requireNonNull(vectorKernels, "Vector kernels cannot be null.");
+        lock.writeLock().lock();
+        try {
+            this.vectorKernels = vectorKernels;
+            if (this.hnswIndex != null) {
+                this.hnswIndex.setVectorKernels(vectorKernels);
+            }
+            this.modificationCount++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return this;
+    }
+
+    /**
+     * Configures parallel exact search. Stores holding at least {@code parallelThreshold} documents
+     * are split into partitions that are scanned concurrently on {@code pool}, each keeping its own
+     * bounded top-k heap; the partial results are then merged. Smaller stores are scanned on the
+     * calling thread. Use {@link Integer#MAX_VALUE} as the threshold to disable parallel search.
+     *
+     * @param parallelThreshold The minimum number of documents for a parallel scan. Must be positive.
+     * @param pool              The pool to run partitions on, e.g. a dedicated pool to isolate search from
+     *                          other work on {@link ForkJoinPool#commonPool()}.
+     * @return This {@code MemoryVectorStore} instance for fluent chaining.
+     * @throws IllegalArgumentException if parallelThreshold is not positive.
+     */
+    public MemoryVectorStore withParallelSearch(int parallelThreshold, ForkJoinPool pool) {
+        if (parallelThreshold <= 0) {
+            throw new IllegalArgumentException("Parallel threshold must be positive.");
+        }
+        this.searchPool = Objects.requireNonNull(pool, "ForkJoinPool cannot be null.");
+        this.parallelThreshold = parallelThreshold;
+        return this;
+    }
+
+    /**
+     * Configures the parallel exact search threshold, using {@link ForkJoinPool#commonPool()}.
+     * @param parallelThreshold The minimum number of documents for a parallel scan. Must be positive.
+     * @return This {@code MemoryVectorStore} instance for fluent chaining.
+     * @see #withParallelSearch(int, ForkJoinPool)
+     */
+    public MemoryVectorStore withParallelSearch(int parallelThreshold) {
+        return withParallelSearch(parallelThreshold, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Sets the executor on which {@link #similaritySearchAsync(List, int)} and {@link #addDocumentsAsync(List)}
+     * run. Defaults to {@link ForkJoinPool#commonPool()}; searches are CPU-bound, so a pool sized to the cores
+     * is appropriate.
+     *
+     * @param asyncExecutor The executor.
+     * @return This {@code MemoryVectorStore} instance for fluent chaining.
+     */
+    public MemoryVectorStore withAsyncExecutor(Executor asyncExecutor) {
+        this.asyncExecutor = Objects.requireNonNull(asyncExecutor, "Executor cannot be null.");
+        return this;
+    }
+
+    /** @return The executor for asynchronous searches and adds; see {@link #withAsyncExecutor(Executor)}. */
+    @Override
+    public Executor asyncExecutor() {
+        return this.asyncExecutor;
+    }
+
+    /** @return The similarity kernels used for scoring. */
+    public VectorKernels getVectorKernels() {
+        return this.vectorKernels;
+    }
+
+    /**
+     * Enables normalized scoring: the L2 norm of each embedding is computed once when it is added and
+     * cached by ordinal, and each query is normalized once per search. Cosine distance is then a single
+     * dot product divided by the cached norm, which roughly halves the arithmetic per comparison.
+     * Norms of documents already in the store are computed immediately, and an existing HNSW index is rebuilt.
+     *
+     * <p>Scores keep the cosine semantics, including a distance of 1.0 for zero vectors, but are rounded
+     * differently: they agree with the non-normalized scores to about 1e-6, not bit for bit. Document
+     * embeddings are not modified, and the cache costs one float per document.</p>
+     *
+     * @return This {@code MemoryVectorStore} instance for fluent chaining.
+     * @throws IllegalStateException if quantization is enabled; normalize first, then quantize.
+     */
+    public MemoryVectorStore withNormalizedVectors() {
+        lock.writeLock().lock();
+        try {
+            if (this.norms != null) {
+                return this;
+            }
+            if (this.quantizedVectors != null) {
+                throw new IllegalStateException("Normalized vectors must be enabled before quantization in MemoryVectorStore.");
+            }
+            float[] computed = new float[Math.max(16, this.documents.size())];
+            for (int ordinal = 0; ordinal < this.documents.size(); ordinal++) {
+                computed[ordinal] = (float) SimilaritySearchUtils.l2Norm(embedding(ordinal));
+            }
+            this.norms = computed;
+            if (this.hnswIndex != null) {
+                this.hnswIndex = buildHnswIndex(hnswIndex.getM(), hnswIndex.getEfConstruction(), hnswIndex.getEfSearch());
+            }
+            this.modificationCount++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return this;
+    }
+
+    /** @return {@code true} if embeddings are normalized at insert time and scored with a dot product. */
+    public boolean isNormalizedVectorsEnabled() {
+        return this.norms != null;
+    }
+
+    /** @return {@code true} if searches use the HNSW index rather than an exact scan. */
+    public boolean isHnswIndexEnabled() {
+        return this.hnswIndex != null;
+    }
+
+    /**
+     * Enables lexical search: a BM25 inverted index over the documents' content is built from the documents
+     * already in the store and extended on every add, so {@link #lexicalSearch(String, int)} only reads the
+     * posting lists of the query terms. The index costs roughly one int pair per distinct term per document.
+     * Calling this again rebuilds the index with the new parameters.
+     *
+     * @param k1 BM25 term-frequency saturation (see {@link Bm25Index#DEFAULT_K1}). Must not be negative.
+     * @param b  BM25 length normalization between 0 and 1 (see {@link Bm25Index#DEFAULT_B}).
+     * @return This {@code MemoryVectorStore} instance for fluent chaining.
+     * @throws IllegalArgumentException if a parameter is out of range.
+     */
+    public MemoryVectorStore withLexicalIndex(double k1, double b) {
+        Bm25Index index = new Bm25Index(k1, b);
+        lock.writeLock().lock();
+        try {
+            for (int ordinal = 0; ordinal < this.documents.size(); ordinal++) {
+                index.add(ordinal, this.documents.get(ordinal).getContent());
+            }
+            this.lexicalIndex = index;
+            this.modificationCount++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return this;
+    }
+
+    /**
+     * Enables lexical search with the default BM25 parameters.
+     * @return This {@code MemoryVectorStore} instance for fluent chaining.
+     * @see #withLexicalIndex(double, double)
+     */
+    public MemoryVectorStore withLexicalIndex() {
+        return withLexicalIndex(Bm25Index.DEFAULT_K1, Bm25Index.DEFAULT_B);
+    }
+
+    /** @return {@code true} if a BM25 index is maintained for {@link #lexicalSearch(String, int)}. */
+    public boolean isLexicalIndexEnabled() {
+        return this.lexicalIndex != null;
+    }
+
+    /**
+     * Enables int8 scalar quantization, calibrated on the documents currently in the store.
+     * @param oversampling Candidates re-scored with full precision per requested result. Must be positive.
+     * @return This {@code MemoryVectorStore} instance for fluent chaining.
+     * @throws IllegalStateException if the store is empty or the HNSW index is enabled.
+     * @see #withScalarQuantization(ScalarQuantizer, int, Path)
+     */
+    public MemoryVectorStore withScalarQuantization(int oversampling) throws VectorStoreException {
+        return withScalarQuantization(null, oversampling, null);
+    }
+
+    /**
+     * Enables int8 scalar quantization with the given calibration, keeping the full-precision embeddings on the heap.
+     * @param quantizer    The calibration.
+     * @param oversampling Candidates re-scored with full precision per requested result. Must be positive.
+     * @return This {@code MemoryVectorStore} instance for fluent chaining.
+     * @see #withScalarQuantization(ScalarQuantizer, int, Path)
+     */
+    public MemoryVectorStore withScalarQuantization(ScalarQuantizer quantizer, int oversampling) throws VectorStoreException {
+        return withScalarQuantization(Objects.requireNonNull(quantizer, "Quantizer cannot be null."), oversampling, null);
+    }
+
+    /**
+     * Enables int8 scalar quantization. Every scoring vector is stored as one byte per dimension (see
+     * {@link ScalarQuantizer}), and an exact search becomes two passes: the quantized vectors of all
+     * documents are scored to shortlist the best {@code k * oversampling}, and only the shortlist is
+     * re-scored with the full-precision vectors to pick the final {@code k}. The first pass reads a quarter
+     * of the memory of a float scan; the second keeps the scores exact and repairs most ranking errors of
+     * the first. Raise {@code oversampling} if {@link #measureRecall(List, int)} reports too low a recall.
+     *
+     * <p>With an {@code embeddingDirectory}, the full-precision embeddings are moved into a scratch file in
+     * that directory (see {@link MappedVectorFile}) and the store keeps copies of the documents without them:
+     * the heap then holds one byte per dimension instead of four, and the re-scoring pass reads its few
+     * vectors through a memory mapping. Documents returned by searches and {@link #getAllDocuments()} are
+     * new copies with their embeddings read back from the file. Once moved, embeddings stay in the file
+     * until {@link #close()}, which deletes it. If normalized vectors are enabled, only their norms stay on
+     * the heap.</p>
+     *
+     * <p>Once enabled, all documents must share the quantizer's dimension. Calling this again replaces the
+     * calibration and oversampling factor, and it replaces {@link #withBinaryQuantization binary quantization}.
+     * Quantization replaces rather than complements the HNSW index.</p>
+     *
+     * @param quantizer          The calibration, fitted to vectors in the form they are scored (unit-length if
+     *                           {@link #withNormalizedVectors()} is enabled), or {@code null} to calibrate on the
+     *                           documents currently in the store.
+     * @param oversampling       Candidates re-scored with full precision per requested result, e.g.
+     *                           {@link #DEFAULT_OVERSAMPLING}. Must be positive.
+     * @param embeddingDirectory Directory for the full-precision embedding file, or {@code null} to keep the
+     *                           embeddings on the documents.
+     * @return This {@code MemoryVectorStore} instance for fluent chaining.
+     * @throws IllegalArgumentException if oversampling is not positive.
+     * @throws IllegalStateException if the HNSW index is enabled, or no quantizer is given and the store is empty.
+     * @throws VectorStoreException if a document's dimension differs from the quantizer's, or the embedding
+     *                              file cannot be written.
+     */
+    public MemoryVectorStore withScalarQuantization(ScalarQuantizer quantizer, int oversampling, Path embeddingDirectory) throws VectorStoreException {
+        return withQuantization(() -> new ScalarQuantizedVectors(
+                (quantizer != null) ? quantizer : ScalarQuantizer.calibrate(liveScoringVectors()), this.documents.size()),
+                oversampling, embeddingDirectory);
+    }
+
+    /**
+     * Enables binary quantization, calibrated on the documents currently in the store.
+     * @param oversampling Candidates re-scored with full precision per requested result. Must be positive.
+     * @return This {@code MemoryVectorStore} instance for fluent chaining.
+     * @throws IllegalStateException if the store is empty or the HNSW index is enabled.
+     * @see #withBinaryQuantization(BinaryQuantizer, int, Path)
+     */
+    public MemoryVectorStore withBinaryQuantization(int oversampling) throws VectorStoreException {
+        return withBinaryQuantization(null, oversampling, null);
+    }
+
+    /**
+     * Enables binary (1-bit) quantization as a Hamming-distance prefilter. Every scoring vector is stored as
+     * one bit per dimension packed into {@code long}s (see {@link BinaryQuantizer}); an exact search counts
+     * differing bits against the query's code to shortlist the best {@code k * oversampling} documents and
+     * re-scores only those with the full-precision vectors, so the returned scores are exact cosine scores.
+     * It works like {@link #withScalarQuantization(ScalarQuantizer, int, Path)}, and the two replace each other.
+     *
+     * <p>Compared with int8 codes, bit codes are 8x smaller again (for 1536 dimensions, 192 bytes instead of
+     * 1536 per document, and 6 KB as floats) and a comparison is a few XOR/POPCNT instructions, but the
+     * ranking is much coarser: use an oversampling of about {@link #DEFAULT_BINARY_OVERSAMPLING} and check
+     * {@link #measureRecall(List, int)}. Binary codes suit high-dimensional embeddings (several hundred
+     * dimensions or more); for low dimensions, prefer int8 quantization.</p>
+     *
+     * <p>For reference, on 50,000 clustered 1536-dimension vectors scanned on one core, a query took 27 ms
+     * with the float scan, 10.6 ms with int8 codes (oversampling 4, recall@10 1.0) and 1.3 ms with binary
+     * codes (oversampling 20, recall@10 0.97; oversampling 10 gave 0.83).</p>
+     *
+     * @param quantizer          The thresholds, fitted to vectors in the form they are scored, or {@code null}
+     *                           to calibrate them on the documents currently in the store.
+     * @param oversampling       Candidates re-scored with full precision per requested result. Must be positive.
+     * @param embeddingDirectory Directory for the full-precision embedding file, or {@code null} to keep the
+     *                           embeddings on the documents.
+     * @return This {@code MemoryVectorStore} instance for fluent chaining.
+     * @throws IllegalArgumentException if oversampling is not positive.
+     * @throws IllegalStateException if the HNSW index is enabled, or no quantizer is given and the store is empty.
+     * @throws VectorStoreException if a document's dimension differs from the quantizer's, or the embedding
+     *                              file cannot be written.
+     */
+    public MemoryVectorStore withBinaryQuantization(BinaryQuantizer quantizer, int oversampling, Path embeddingDirectory) throws VectorStoreException {
+        return withQuantization(() -> new BinaryQuantizedVectors(
+                (quantizer != null) ? quantizer : BinaryQuantizer.calibrate(liveScoringVectors()), this.documents.size()),
+                oversampling, embeddingDirectory);
+    }
+
+    /**
+     * Enables the Matryoshka prefix first pass, taking the full dimension from the documents currently in the store.
+     * @param prefixDimension The number of leading dimensions scanned in the first pass, e.g. 256.
+     * @param oversampling    Candidates re-scored with the full vectors per requested result. Must be positive.
+     * @return This {@code MemoryVectorStore} instance for fluent chaining.
+     * @throws IllegalArgumentException if oversampling is not positive, or the prefix is not shorter than the embeddings.
+     * @throws IllegalStateException if the store is empty or the HNSW index is enabled.
+     * @see #withMatryoshkaSearch(MatryoshkaPrefix, int, Path)
+     */
+    public MemoryVectorStore withMatryoshkaSearch(int prefixDimension, int oversampling) throws VectorStoreException {
+        return withQuantization(() -> new PrefixVectors(
+                MatryoshkaPrefix.of(liveScoringVectors().get(0).length, prefixDimension), this.documents.size()),
+                oversampling, null);
+    }
+
+    /**
+     * Enables a two-pass search over Matryoshka embeddings (see {@link MatryoshkaPrefix}). The first
+     * {@code prefixDimension} entries of every scoring vector are re-normalized and packed into a single
+     * contiguous array; an exact search scans these prefixes to shortlist the best {@code k * oversampling}
+     * documents and re-scores only those with the full vectors, so the returned scores are exact cosine scores.
+     * It works like {@link #withScalarQuantization(ScalarQuantizer, int, Path)}, and replaces int8 or binary
+     * quantization if either is enabled.
+     *
+     * <p>The first pass reads {@code prefixDimension / dimension} of the vector bytes, in one sequential sweep
+     * of a single array rather than one array per document. For reference, on 50,000 clustered 1536-dimension
+     * vectors whose variance decays over the dimensions as in Matryoshka embeddings, scanned on one core, a
+     * query took 27 ms with the float scan and 4 ms with 256-dimension prefixes (oversampling 10, recall@10 1.0;
+     * oversampling 5 gave 0.99). Embeddings that were not trained this way
+     * rank poorly by their prefixes; check {@link #measureRecall(List, int)} before relying on it.</p>
+     *
+     * @param prefix             The full and prefix dimensions.
+     * @param oversampling       Candidates re-scored with the full vectors per requested result, e.g.
+     *                           {@link #DEFAULT_MATRYOSHKA_OVERSAMPLING}. Must be positive.
+     * @param embeddingDirectory Directory for the full-precision embedding file, or {@code null} to keep the
+     *                           embeddings on the documents.
+     * @return This {@code MemoryVectorStore} instance for fluent chaining.
+     * @throws IllegalArgumentException if oversampling is not positive.
+     * @throws IllegalStateException if the HNSW index is enabled.
+     * @throws VectorStoreException if a document's dimension differs from the prefix's full dimension, or the
+     *                              embedding file cannot be written.
+     */
+    public MemoryVectorStore withMatryoshkaSearch(MatryoshkaPrefix prefix, int oversampling, Path embeddingDirectory) throws VectorStoreException {
+        Objects.requireNonNull(prefix, "Matryoshka prefix cannot be null.");
+        return withQuantization(() -> new PrefixVectors(prefix, this.documents.size()), oversampling, embeddingDirectory);
+    }
+
+    /**
+     * Installs quantized vectors for all documents.
+     * @param calibration Creates the empty quantized vectors; called under the write lock.
+     */
+    private MemoryVectorStore withQuantization(Supplier<QuantizedVectors> calibration, int oversampling, Path embeddingDirectory) throws VectorStoreException {
+        if (oversampling <= 0) {
+            throw new IllegalArgumentException("Oversampling factor must be positive.");
+        }
+        lock.writeLock().lock();
+        try {
+            if (this.hnswIndex != null) {
+                throw new IllegalStateException("Quantization cannot be combined with the HNSW index in MemoryVectorStore.");
+            }
+            QuantizedVectors quantized = calibration.get();
+            for (int ordinal = 0; ordinal < this.documents.size(); ordinal++) {
+                checkQuantizedDimension(embeddingDimension(ordinal), quantized, this.documents.get(ordinal));
+            }
+            if (embeddingDirectory != null && this.embeddingFile == null) {
+                moveEmbeddingsToFile(embeddingDirectory, quantized.dimension());
+            }
+            this.quantizedVectors = quantizeAll(quantized);
+            this.oversampling = oversampling;
+            this.modificationCount++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return this;
+    }
+
+    /**
+     * Refits the quantization (int8 ranges or binary thresholds) to the documents currently in the store and
+     * re-encodes them, e.g. after many documents outside the original calibration sample have been added.
+     * @throws IllegalStateException if quantization is not enabled or the store is empty.
+     */
+    public void recalibrateQuantization() {
+        lock.writeLock().lock();
+        try {
+            if (this.quantizedVectors == null) {
+                throw new IllegalStateException("Quantization is not enabled for this MemoryVectorStore.");
+            }
+            this.quantizedVectors = quantizeAll(this.quantizedVectors.recalibrated(liveScoringVectors()));
+            this.modificationCount++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** @return {@code true} if exact searches shortlist candidates by their int8-quantized vectors. */
+    public boolean isScalarQuantizationEnabled() {
+        return this.quantizedVectors instanceof ScalarQuantizedVectors;
+    }
+
+    /** @return {@code true} if exact searches shortlist candidates by the Hamming distance of binary codes. */
+    public boolean isBinaryQuantizationEnabled() {
+        return this.quantizedVectors instanceof BinaryQuantizedVectors;
+    }
+
+    /** @return {@code true} if exact searches shortlist candidates by truncated Matryoshka prefixes. */
+    public boolean isMatryoshkaSearchEnabled() {
+        return this.quantizedVectors instanceof PrefixVectors;
+    }
+
+    /** Returns the scoring vectors of the live documents, for calibration. Caller must hold the write lock. */
+    private List<float[]> liveScoringVectors() {
+        List<float[]> sample = new ArrayList<>(this.documents.size() - this.deletedCount);
+        for (int ordinal = this.deleted.nextClearBit(0); ordinal < this.documents.size(); ordinal = this.deleted.nextClearBit(ordinal + 1)) {
+            sample.add(quantizationVector(ordinal));
+        }
+        if (sample.isEmpty()) {
+            throw new IllegalStateException("Cannot calibrate quantization on an empty MemoryVectorStore; pass a quantizer instead.");
+        }
+        return sample;
+    }
+
+    /** Encodes the scoring vectors of all documents, tombstoned ones included, into an empty instance. Caller must hold the write lock. */
+    private QuantizedVectors quantizeAll(QuantizedVectors quantized) {
+        for (int ordinal = 0; ordinal < this.documents.size(); ordinal++) {
+            quantized.add(quantizationVector(ordinal));
+        }
+        return quantized;
+    }
+
+    /**
+     * Writes all embeddings to a new {@link MappedVectorFile} and replaces the documents with copies
+     * without them. Caller must hold the write lock.
+     */
+    private void moveEmbeddingsToFile(Path directory, int dimension) throws VectorStoreException {
+        MappedVectorFile file = MappedVectorFile.create(directory, dimension);
+        try {
+            for (Document document : this.documents) {
+                file.append(document.getEmbeddingVector());
+            }
+        } catch (VectorStoreException e) {
+            closeQuietly(file);
+            throw e;
+        }
+        this.documents.replaceAll(document -> BatchSearchSupport.copy(document, null));
+        this.embeddingFile = file;
+    }
+
+    private static void checkQuantizedDimension(int dimension, QuantizedVectors quantized, Document document) throws VectorStoreException {
+        if (dimension != quantized.dimension()) {
+            throw new VectorStoreException("Document embedding dimension " + dimension + " does not match the quantized dimension " +
+                                           quantized.dimension() + " in MemoryVectorStore. Doc ID: " + document.getId());
+        }
+    }
+
     /**
      * {@inheritDoc}
-     * <p>The document's embedding must not be null or empty.</p>
-     * <p>This operation is synchronized.</p>
+     * <p>The document's embedding must not be null or empty. If the HNSW index is enabled,
+     * the document is also linked into the graph and its dimension must match the indexed vectors.</p>
+     * <p>This operation takes the write lock.</p>
      * @throws VectorStoreException if document is null, or its embedding is null/empty.
      */
     @Override
     public void addDocument(Document document) throws VectorStoreException {
         Objects.requireNonNull(document, "Document to add cannot be null.");
-        if (document.getEmbedding() == null || document.getEmbedding().isEmpty()) {
+        float[] vector = document.getEmbeddingVector();
+        if (vector.length == 0) {
             throw new VectorStoreException("Document embedding cannot be null or empty when adding to MemoryVectorStore. Doc ID: " + document.getId());
         }
-        // Optional: Check for duplicate document ID to prevent issues,
-        // though the interface doesn't strictly forbid it.
-        // if (this.documents.stream().anyMatch(d -> d.getId().equals(document.getId()))) {
-        //     throw new VectorStoreException("Document with ID " + document.getId() + " already exists in MemoryVectorStore.");
-        // }
-        this.documents.add(document);
+        lock.writeLock().lock();
+        try {
+            appendLocked(document);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Appends a validated document. Caller must hold the write lock. */
+    private void appendLocked(Document document) throws VectorStoreException {
+        float[] vector = document.getEmbeddingVector();
+        if (this.hnswIndex != null) {
+            // Index first: a dimension mismatch is rejected before the document list and graph diverge.
+            this.hnswIndex.add(vector);
+        }
+        Document stored = document;
+        if (this.quantizedVectors != null) {
+            checkQuantizedDimension(vector.length, this.quantizedVectors, document);
+            if (this.embeddingFile != null) {
+                this.embeddingFile.append(vector);
+                stored = BatchSearchSupport.copy(document, null);
+            }
+            this.quantizedVectors.add((this.norms != null) ? SimilaritySearchUtils.normalize(vector) : vector);
+        }
+        this.documentIds.add(document.getId(), this.documents.size());
+        this.metadataIndex.add(this.documents.size(), document.getMetadata());
+        if (this.lexicalIndex != null) {
+            this.lexicalIndex.add(this.documents.size(), document.getContent());
+        }
+        if (this.norms != null) {
+            this.norms = appendNorm(this.norms, this.documents.size(), vector);
+        }
+        this.documents.add(stored);
+        this.modificationCount++;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>Each deleted document is marked in a tombstone bitset, which searches consult; the memory is
+     * reclaimed by the next compaction. This operation takes the write lock.</p>
+     */
+    @Override
+    public void deleteDocuments(List<String> documentIds) throws VectorStoreException {
+        Objects.requireNonNull(documentIds, "Document IDs list cannot be null.");
+        int deletedNow;
+        int total;
+        lock.writeLock().lock();
+        try {
+            for (String id : documentIds) {
+                tombstone(this.documentIds.remove(Objects.requireNonNull(id, "Document ID cannot be null.")));
+            }
+            deletedNow = this.deletedCount;
+            total = this.documents.size();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        compactor.onDelete(deletedNow, total);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>New versions are appended first and the documents they replace are tombstoned afterwards, all
+     * under one write lock, so searches see either the old or the new version of each document.
+     * Embeddings are validated before anything changes; if the HNSW index rejects a document
+     * (dimension mismatch), documents before it in the list have already replaced their old versions.</p>
+     */
+    @Override
+    public void upsertDocuments(List<Document> documentsToUpsert) throws VectorStoreException {
+        Objects.requireNonNull(documentsToUpsert, "Documents list to upsert cannot be null.");
+        for (Document doc : documentsToUpsert) {
+            Objects.requireNonNull(doc, "Document to upsert cannot be null.");
+            if (doc.getEmbeddingVector().length == 0) {
+                throw new VectorStoreException("Document embedding cannot be null or empty when adding to MemoryVectorStore. Doc ID: " + doc.getId());
+            }
+        }
+        int deletedNow;
+        int total;
+        lock.writeLock().lock();
+        try {
+            try {
+                for (Document doc : documentsToUpsert) {
+                    appendLocked(doc);
+                }
+            } finally {
+                for (Document doc : documentsToUpsert) {
+                    tombstone(this.documentIds.supersede(doc.getId()));
+                }
+            }
+            deletedNow = this.deletedCount;
+            total = this.documents.size();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        compactor.onDelete(deletedNow, total);
+    }
+
+    /** Marks ordinals as deleted. Caller must hold the write lock. */
+    private void tombstone(int[] ordinals) {
+        for (int ordinal : ordinals) {
+            if (!this.deleted.get(ordinal)) {
+                this.deleted.set(ordinal);
+                this.deletedCount++;
+            }
+        }
+        if (ordinals.length > 0) {
+            this.modificationCount++;
+        }
+    }
+
+    /**
+     * Drops tombstoned documents, rebuilding the ordinal-addressed state (document list, norms,
+     * quantized vectors, embedding file, HNSW graph, ID, metadata and lexical indexes) without them.
+     *
+     * <p>The new state is built under the read lock, so searches keep running against the old state
+     * while writers wait; the write lock is then held only to swap it in. If a write lands between
+     * releasing the read lock and taking the write lock, the rebuild is repeated under the write lock.</p>
+     *
+     * @return The number of documents reclaimed.
+     * @throws VectorStoreException if embeddings are kept on disk and the compacted file cannot be written.
+     */
+    public int compact() {
+        Compacted compacted;
+        lock.readLock().lock();
+        try {
+            if (this.deletedCount == 0) {
+                return 0;
+            }
+            compacted = buildCompacted();
+        } finally {
+            lock.readLock().unlock();
+        }
+        lock.writeLock().lock();
+        try {
+            if (compacted.modificationCount != this.modificationCount) {
+                closeQuietly(compacted.embeddingFile);
+                if (this.deletedCount == 0) {
+                    return 0;
+                }
+                compacted = buildCompacted();
+            }
+            int reclaimed = this.deletedCount;
+            if (this.embeddingFile != null) {
+                closeQuietly(this.embeddingFile);
+            }
+            this.documents = compacted.documents;
+            this.norms = compacted.norms;
+            this.quantizedVectors = compacted.quantizedVectors;
+            this.embeddingFile = compacted.embeddingFile;
+            this.hnswIndex = compacted.hnswIndex;
+            this.documentIds = compacted.documentIds;
+            this.metadataIndex = compacted.metadataIndex;
+            this.lexicalIndex = compacted.lexicalIndex;
+            this.deleted = new BitSet();
+            this.deletedCount = 0;
+            this.modificationCount++;
+            return reclaimed;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Copies the live documents into fresh state, including a new embedding file if embeddings are kept on
+     * disk. Caller must hold the read or write lock.
+     */
+    private Compacted buildCompacted() {
+        int size = this.documents.size();
+        int live = size - this.deletedCount;
+        int[] oldToNew = new int[size];
+        List<Document> liveDocuments = new ArrayList<>(live);
+        float[] liveNorms = (this.norms != null) ? new float[Math.max(16, live)] : null;
+        QuantizedVectors liveQuantized = (this.quantizedVectors != null) ? this.quantizedVectors.emptyCopy(live) : null;
+        MappedVectorFile liveEmbeddings = (this.embeddingFile != null)
+                ? MappedVectorFile.create(this.embeddingFile.directory(), this.embeddingFile.dimension())
+                : null;
+        HnswIndex index = (this.hnswIndex != null)
+                ? new HnswIndex(hnswIndex.getM(), hnswIndex.getEfConstruction(), hnswIndex.getEfSearch(), this.norms != null)
+                : null;
+        if (index != null) {
+            index.setVectorKernels(this.vectorKernels);
+        }
+        MetadataIndex liveMetadata = new MetadataIndex();
+        for (int ordinal = 0; ordinal < size; ordinal++) {
+            if (this.deleted.get(ordinal)) {
+                oldToNew[ordinal] = -1;
+                continue;
+            }
+            oldToNew[ordinal] = liveDocuments.size();
+            liveMetadata.add(liveDocuments.size(), this.documents.get(ordinal).getMetadata());
+            if (liveNorms != null) {
+                liveNorms[liveDocuments.size()] = this.norms[ordinal];
+            }
+            liveDocuments.add(this.documents.get(ordinal));
+            if (liveQuantized != null) {
+                liveQuantized.copy(this.quantizedVectors, ordinal);
+            }
+            if (liveEmbeddings != null) {
+                try {
+                    liveEmbeddings.append(this.embeddingFile.read(ordinal));
+                } catch (VectorStoreException e) {
+                    closeQuietly(liveEmbeddings);
+                    throw e;
+                }
+            }
+            if (index != null) {
+                try {
+                    index.add(embedding(ordinal));
+                } catch (VectorStoreException e) {
+                    // Cannot happen: these vectors were accepted by the current index.
+                    throw new IllegalStateException("Failed to re-index document " + this.documents.get(ordinal).getId(), e);
+                }
+            }
+        }
+        return new Compacted(this.modificationCount, liveDocuments, liveNorms, liveQuantized, liveEmbeddings,
+                             index, this.documentIds.remap(oldToNew), liveMetadata,
+                             (this.lexicalIndex != null) ? this.lexicalIndex.remap(oldToNew) : null);
+    }
+
+    /** State rebuilt by {@link #compact()}, tagged with the modification count it was built from. */
+    private record Compacted(long modificationCount, List<Document> documents, float[] norms,
+                             QuantizedVectors quantizedVectors, MappedVectorFile embeddingFile,
+                             HnswIndex hnswIndex, DocumentIdIndex documentIds, MetadataIndex metadataIndex,
+                             Bm25Index lexicalIndex) {}
+
+    /** @return The number of deleted documents still held until the next compaction. */
+    public int getDeletedCount() {
+        lock.readLock().lock();
+        try {
+            return this.deletedCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** @return A future completing when the pending background compaction, if any, has finished. For tests. */
+    CompletableFuture<Void> pendingCompaction() {
+        return compactor.pending();
     }
 
     /**
      * {@inheritDoc}
-     * <p>Each document's embedding must not be null or empty.</p>
-     * <p>This operation is synchronized.</p>
+     * <p>Each document's embedding must not be null or empty.
+     * Documents are added one at a time, so documents preceding an invalid one remain in the store.</p>
      * @throws VectorStoreException if documentsToAdd list is null, or any document therein is null
      *                              or has a null/empty embedding.
      */
@@ -106,62 +952,661 @@ public class MemoryVectorStore implements VectorStore {
 
     /**
      * {@inheritDoc}
-     * <p>Performs a linear search through all stored documents, calculating cosine distance.
+     * <p>Performs a linear search through all stored documents, calculating cosine distance,
+     * or an approximate search if the HNSW index is enabled.
      * Results are sorted by similarity (higher score is better).
      * Documents without embeddings are skipped and a warning is logged.</p>
-     * <p>This operation is synchronized.</p>
      * @throws IllegalArgumentException if k is not positive.
      * @throws VectorStoreException if queryEmbedding is null.
      */
     @Override
     public List<Document> similaritySearch(List<Double> queryEmbedding, int k) throws VectorStoreException {
         Objects.requireNonNull(queryEmbedding, "Query embedding cannot be null for similarity search.");
+        return similaritySearchVector(EmbeddingUtils.toFloatArray(queryEmbedding), k);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>This is the primary search path: both the query and the stored embeddings are
+     * primitive arrays, so no boxing occurs while scoring. This operation takes the read lock.</p>
+     * @throws IllegalArgumentException if k is not positive.
+     * @throws VectorStoreException if the HNSW index or quantization is enabled and the query dimension
+     *                              does not match the stored vectors.
+     */
+    @Override
+    public List<Document> similaritySearchVector(float[] queryVector, int k) throws VectorStoreException {
+        return similaritySearchVector(queryVector, k, null);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>The filter is evaluated against the metadata index into a bitset of candidate ordinals. Without
+     * the HNSW index, only the candidates are scanned. With it, the graph search returns only candidates;
+     * but when the filter is so selective that scanning the candidates is cheaper than walking the graph
+     * past all rejected nodes (about {@code candidates² <= efSearch * 2M * size}), the candidates are
+     * scanned exactly instead, which is also what keeps recall up for very selective filters.
+     * With int8 or binary quantization, the candidates' quantized vectors are scanned and the shortlist re-scored.
+     * This operation takes the read lock.</p>
+     * @throws IllegalArgumentException if k is not positive.
+     * @throws VectorStoreException if the HNSW index or quantization is enabled and the query dimension
+     *                              does not match the stored vectors.
+     */
+    @Override
+    public List<Document> similaritySearchVector(float[] queryVector, int k, MetadataFilter filter) throws VectorStoreException {
+        Objects.requireNonNull(queryVector, "Query vector cannot be null for similarity search.");
         if (k <= 0) {
             throw new IllegalArgumentException("Number of results to return (k) must be positive.");
         }
 
-        if (this.documents.isEmpty()) {
-            return Collections.emptyList();
+        lock.readLock().lock();
+        try {
+            if (this.documents.size() == this.deletedCount) {
+                return Collections.emptyList();
+            }
+            BitSet candidates = null;
+            if (filter != null) {
+                candidates = this.metadataIndex.matches(filter);
+                if (this.deletedCount > 0) {
+                    candidates.andNot(this.deleted);
+                }
+                if (candidates.isEmpty()) {
+                    return Collections.emptyList();
+                }
+            }
+            float[] scoringQuery = scoringQuery(queryVector);
+            List<DocumentDistancePair> nearest = (this.hnswIndex != null && (candidates == null || !preferExactScan(candidates)))
+                    ? approximateSearch(scoringQuery, k, candidates)
+                    : exactSearch(scoringQuery, k, candidates);
+
+            // Score is calculated as 1.0 - distance (cosine similarity).
+            return nearest.stream()
+                    .map(pair -> {
+                        // Cosine distance is in [0, 2]. Score = 1.0 - distance maps to [-1, 1].
+                        // A score of 1.0 is most similar, -1.0 is most dissimilar.
+                        double score = 1.0 - pair.getDistance();
+                        pair.getDocument().setScore((float) score);
+                        return pair.getDocument();
+                    })
+                    .collect(Collectors.toList());
+        } finally {
+            lock.readLock().unlock();
         }
+    }
 
-        List<DocumentDistancePair> documentDistances = new ArrayList<>();
+    /**
+     * {@inheritDoc}
+     * <p>Converts the queries to primitive arrays and delegates to {@link #similaritySearchBatchVector(List, int)}.</p>
+     */
+    @Override
+    public List<List<Document>> similaritySearchBatch(List<List<Double>> queryEmbeddings, int k) throws VectorStoreException {
+        Objects.requireNonNull(queryEmbeddings, "Query embeddings cannot be null for batch similarity search.");
+        List<float[]> queryVectors = new ArrayList<>(queryEmbeddings.size());
+        for (List<Double> queryEmbedding : queryEmbeddings) {
+            queryVectors.add(EmbeddingUtils.toFloatArray(Objects.requireNonNull(queryEmbedding, "Query embedding cannot be null.")));
+        }
+        return similaritySearchBatchVector(queryVectors, k);
+    }
 
-        for (Document doc : this.documents) {
-            if (doc.getEmbedding() == null || doc.getEmbedding().isEmpty()) {
-                System.err.println("Warning: Document ID " + doc.getId() + " in MemoryVectorStore has no embedding and will be skipped in search.");
-                continue;
+    /**
+     * {@inheritDoc}
+     * <p>Without the HNSW index, all queries are scored in a single blocked pass over the stored vectors
+     * (see {@link PartitionedScan#scanBatch}), so each vector is read from memory once per batch rather
+     * than once per query, and the dot products of each vector with a block of queries share its loads
+     * ({@link VectorKernels#dotBatch}). With the HNSW index or quantization, each query is searched in turn.
+     * Documents whose dimension differs from the queries are skipped. A document that appears in several
+     * result lists is returned as a separate copy after its first appearance, so each list has its own scores.
+     * This operation takes the read lock.</p>
+     * @throws IllegalArgumentException if k is not positive.
+     * @throws VectorStoreException if the queries differ in dimension, or the HNSW index or quantization
+     *                              is enabled and their dimension does not match the stored vectors.
+     */
+    @Override
+    public List<List<Document>> similaritySearchBatchVector(List<float[]> queryVectors, int k) throws VectorStoreException {
+        float[][] queries = BatchSearchSupport.queries(queryVectors, k);
+        List<List<Document>> results = new ArrayList<>(queries.length);
+        lock.readLock().lock();
+        try {
+            if (queries.length == 0 || this.documents.size() == this.deletedCount) {
+                for (int q = 0; q < queries.length; q++) {
+                    results.add(new ArrayList<>());
+                }
+                return results;
             }
-            try {
-                double distance = SimilaritySearchUtils.cosineDistance(queryEmbedding, doc.getEmbedding());
-                documentDistances.add(new DocumentDistancePair(doc, distance));
-            } catch (VectorStoreException e) {
+            float[][] scoringQueries = new float[queries.length][];
+            for (int q = 0; q < queries.length; q++) {
+                scoringQueries[q] = scoringQuery(queries[q]);
+            }
+            Set<Document> returned = BatchSearchSupport.identitySet();
+            if (this.hnswIndex != null || this.quantizedVectors != null) {
+                for (float[] query : scoringQueries) {
+                    List<Document> docs = new ArrayList<>();
+                    List<DocumentDistancePair> nearest = (this.hnswIndex != null)
+                            ? approximateSearch(query, k, null)
+                            : exactSearch(query, k, null);
+                    for (DocumentDistancePair pair : nearest) {
+                        docs.add(BatchSearchSupport.scored(pair.getDocument(), pair.getDistance(), returned));
+                    }
+                    results.add(docs);
+                }
+                return results;
+            }
+            for (TopKCollector nearest : exactSearchBatch(scoringQueries, k)) {
+                List<Document> docs = new ArrayList<>(nearest.size());
+                for (int i = 0; i < nearest.size(); i++) {
+                    docs.add(BatchSearchSupport.scored(this.documents.get(nearest.ordinal(i)), nearest.distance(i), returned));
+                }
+                results.add(docs);
+            }
+            return results;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>Scores the documents holding any query term with BM25 (see {@link Bm25Index}); tombstoned documents
+     * are skipped. The results are copies of the stored documents, so their BM25 scores never overwrite the
+     * scores that a concurrent similarity search sets. This operation takes the read lock.</p>
+     * @throws IllegalArgumentException if k is not positive.
+     * @throws UnsupportedOperationException if {@link #withLexicalIndex(double, double)} has not been called.
+     */
+    @Override
+    public List<Document> lexicalSearch(String queryText, int k) throws VectorStoreException {
+        Objects.requireNonNull(queryText, "Query text cannot be null for lexical search.");
+        if (k <= 0) {
+            throw new IllegalArgumentException("Number of results to return (k) must be positive.");
+        }
+        lock.readLock().lock();
+        try {
+            if (this.lexicalIndex == null) {
+                throw new UnsupportedOperationException("Lexical search is not enabled for this MemoryVectorStore; call withLexicalIndex() first.");
+            }
+            List<Bm25Index.Hit> hits = this.lexicalIndex.search(queryText, k, this.deletedCount > 0 ? this.deleted : null);
+            List<Document> results = new ArrayList<>(hits.size());
+            for (Bm25Index.Hit hit : hits) {
+                Document doc = BatchSearchSupport.copy(this.documents.get(hit.ordinal()), embedding(hit.ordinal()));
+                doc.setScore(hit.score());
+                results.add(doc);
+            }
+            return results;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Measures the recall@k of the approximate search against the exact full-precision scan. The approximate
+     * search is the HNSW index, or with quantization the quantized scan including its re-scoring pass.
+     * For each sample query, recall is the fraction of the exact top-k document IDs that the
+     * approximate search also returned; the result is the mean over all queries.
+     * Document scores are not modified.
+     *
+     * @param sampleQueries Query vectors to evaluate, e.g. a sample of stored embeddings or real user queries.
+     * @param k             The number of results per query.
+     * @return The mean recall@k in [0, 1]. Returns 1.0 if neither the HNSW index nor quantization is
+     *         enabled (searches are exact).
+     * @throws IllegalArgumentException if k is not positive.
+     */
+    public double measureRecall(List<float[]> sampleQueries, int k) throws VectorStoreException {
+        Objects.requireNonNull(sampleQueries, "Sample queries cannot be null.");
+        if (k <= 0) {
+            throw new IllegalArgumentException("Number of results to return (k) must be positive.");
+        }
+        lock.readLock().lock();
+        try {
+            if ((this.hnswIndex == null && this.quantizedVectors == null) || sampleQueries.isEmpty() || this.documents.size() == this.deletedCount) {
+                return 1.0;
+            }
+            double recallSum = 0.0;
+            for (float[] sampleQuery : sampleQueries) {
+                float[] query = scoringQuery(sampleQuery);
+                List<DocumentDistancePair> exact = exactSearch(query, k, null, false);
+                if (exact.isEmpty()) {
+                    recallSum += 1.0;
+                    continue;
+                }
+                List<DocumentDistancePair> approximate = (this.hnswIndex != null)
+                        ? approximateSearch(query, k, null)
+                        : exactSearch(query, k, null, true);
+                Set<String> approximateIds = new HashSet<>();
+                for (DocumentDistancePair pair : approximate) {
+                    approximateIds.add(pair.getDocument().getId());
+                }
+                int hits = 0;
+                for (DocumentDistancePair pair : exact) {
+                    if (approximateIds.contains(pair.getDocument().getId())) {
+                        hits++;
+                    }
+                }
+                recallSum += (double) hits / exact.size();
+            }
+            return recallSum / sampleQueries.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the vector quantized for the document at the given ordinal: a unit-length copy of its
+     * embedding when normalized scoring is enabled, otherwise the embedding. Caller must hold the lock.
+     */
+    private float[] quantizationVector(int ordinal) {
+        return (this.norms != null) ? SimilaritySearchUtils.normalize(embedding(ordinal)) : embedding(ordinal);
+    }
+
+    /**
+     * Stores the norm of a vector at the given ordinal, growing the array if needed.
+     * @return The array holding the norm, which replaces {@code norms}.
+     */
+    private static float[] appendNorm(float[] norms, int ordinal, float[] vector) {
+        if (ordinal >= norms.length) {
+            norms = Arrays.copyOf(norms, Math.max(ordinal + 1, norms.length + (norms.length >> 1)));
+        }
+        norms[ordinal] = (float) SimilaritySearchUtils.l2Norm(vector);
+        return norms;
+    }
+
+    /**
+     * Returns the full-precision embedding of the document at the given ordinal, read from the embedding
+     * file if embeddings are kept on disk. Caller must hold the lock.
+     */
+    private float[] embedding(int ordinal) {
+        return (this.embeddingFile != null) ? this.embeddingFile.read(ordinal) : this.documents.get(ordinal).getEmbeddingVector();
+    }
+
+    /** Returns the dimension of the embedding at the given ordinal without reading it. Caller must hold the lock. */
+    private int embeddingDimension(int ordinal) {
+        return (this.embeddingFile != null) ? this.embeddingFile.dimension() : this.documents.get(ordinal).getEmbeddingVector().length;
+    }
+
+    /**
+     * Returns the document at the given ordinal as handed out to callers: the stored instance, or a copy
+     * with its embedding read back if embeddings are kept on disk. Caller must hold the lock.
+     */
+    private Document resultDocument(int ordinal) {
+        Document document = this.documents.get(ordinal);
+        return (this.embeddingFile != null) ? BatchSearchSupport.copy(document, this.embeddingFile.read(ordinal)) : document;
+    }
+
+    /**
+     * Returns the query as it is scored: normalized when normalized scoring is enabled, so that only the
+     * document norms remain to be divided out. Caller must hold the lock.
+     */
+    private float[] scoringQuery(float[] queryVector) {
+        return (this.norms != null) ? SimilaritySearchUtils.normalize(queryVector) : queryVector;
+    }
+
+    /**
+     * Decides whether a filtered search should scan its candidates rather than walk the HNSW graph.
+     * A filtered graph search visits roughly {@code efSearch * size / candidates} nodes, each expanding up
+     * to {@code 2M} neighbours, while the scan scores each candidate once. Caller must hold the read lock.
+     */
+    private boolean preferExactScan(BitSet candidates) {
+        long cardinality = candidates.cardinality();
+        long graphCost = (long) this.hnswIndex.getEfSearch() * 2L * this.hnswIndex.getM() * this.documents.size();
+        return cardinality * cardinality <= graphCost;
+    }
+
+    /**
+     * Exact scan over all documents, or over the candidates if given, keeping only the nearest k in
+     * bounded heaps and splitting large scans into partitions scanned in parallel. With quantization,
+     * the scan shortlists by quantized vectors and re-scores the shortlist. Caller must hold the read lock,
+     * which also covers the pool threads for the duration of the scan.
+     * @param queryVector The query, already passed through {@link #scoringQuery(float[])}.
+     * @param candidates  Live ordinals to restrict the scan to, or {@code null} to scan all live documents.
+     * @return Up to k pairs, nearest first.
+     */
+    private List<DocumentDistancePair> exactSearch(float[] queryVector, int k, BitSet candidates) throws VectorStoreException {
+        return exactSearch(queryVector, k, candidates, this.quantizedVectors != null);
+    }
+
+    /**
+     * As {@link #exactSearch(float[], int, BitSet)}, choosing whether to shortlist by quantized vectors.
+     * @param quantized {@code true} to scan the quantized vectors and re-score the best {@code k * oversampling};
+     *                  {@code false} to scan the full-precision vectors (the baseline of {@link #measureRecall}).
+     */
+    private List<DocumentDistancePair> exactSearch(float[] queryVector, int k, BitSet candidates, boolean quantized) throws VectorStoreException {
+        VectorKernels kernels = this.vectorKernels;
+        float[] docNorms = this.norms;
+        BitSet tombstones = (this.deletedCount > 0 && candidates == null) ? this.deleted : null;
+
+        PartitionedScan.DistanceFunction distanceFunction = ordinal -> {
+            if (tombstones != null && tombstones.get(ordinal)) {
+                return Double.NaN;
+            }
+            float[] docVector = embedding(ordinal);
+            if (docVector.length != queryVector.length) {
                 // This could happen if, despite earlier checks, an embedding has a mismatched dimension.
-                System.err.println("Warning: Could not calculate distance for document ID " + doc.getId() +
-                                   " (embedding dim: " + doc.getEmbedding().size() +
-                                   ", query dim: " + queryEmbedding.size() + "): " + e.getMessage());
+                System.err.println("Warning: Could not calculate distance for document ID " + this.documents.get(ordinal).getId() +
+                                   " (embedding dim: " + docVector.length +
+                                   ", query dim: " + queryVector.length + "): Vectors must have the same dimension.");
+                return Double.NaN;
+            }
+            if (docNorms == null) {
+                return kernels.cosineDistance(queryVector, docVector);
+            }
+            float norm = docNorms[ordinal];
+            if (norm == 0.0f) {
+                return 1.0; // Zero vector: same convention as cosineDistance
+            }
+            double similarity = kernels.dot(queryVector, docVector) / norm;
+            return 1.0 - Math.max(-1.0, Math.min(1.0, similarity));
+        };
+        int[] ordinals = (candidates == null) ? null : candidates.stream().toArray();
+        if (quantized) {
+            ordinals = quantizedShortlist(queryVector, (int) Math.min(Integer.MAX_VALUE, (long) k * this.oversampling), ordinals, tombstones);
+        }
+        TopKCollector nearest = (ordinals == null)
+                ? PartitionedScan.scan(this.documents.size(), k, distanceFunction, this.parallelThreshold, this.searchPool)
+                : PartitionedScan.scan(ordinals, k, distanceFunction, this.parallelThreshold, this.searchPool);
+
+        List<DocumentDistancePair> pairs = new ArrayList<>(nearest.size());
+        for (int i = 0; i < nearest.size(); i++) {
+            pairs.add(new DocumentDistancePair(resultDocument(nearest.ordinal(i)), nearest.distance(i)));
+        }
+        return pairs;
+    }
+
+    /**
+     * First pass of a quantized search: scores the quantized vectors of all documents, or of the candidates
+     * if given, and returns the ordinals of the nearest {@code count}. Caller must hold the read lock.
+     * @param queryVector The query, already passed through {@link #scoringQuery(float[])}.
+     * @param candidates  Live ordinals to restrict the scan to, or {@code null} for all documents.
+     * @param tombstones  Ordinals to skip when scanning all documents, or {@code null}.
+     * @return The shortlisted ordinals.
+     * @throws VectorStoreException if the query dimension does not match the quantized vectors.
+     */
+    private int[] quantizedShortlist(float[] queryVector, int count, int[] candidates, BitSet tombstones) throws VectorStoreException {
+        QuantizedVectors quantized = this.quantizedVectors;
+        if (queryVector.length != quantized.dimension()) {
+            throw new VectorStoreException("Query dimension " + queryVector.length + " does not match the quantized dimension " +
+                                           quantized.dimension() + " in MemoryVectorStore.");
+        }
+        PartitionedScan.DistanceFunction distances = quantized.distances(queryVector, this.vectorKernels);
+        PartitionedScan.DistanceFunction distanceFunction = ordinal -> (tombstones != null && tombstones.get(ordinal))
+                ? Double.NaN
+                : distances.distance(ordinal);
+        TopKCollector shortlist = (candidates == null)
+                ? PartitionedScan.scan(this.documents.size(), count, distanceFunction, this.parallelThreshold, this.searchPool)
+                : PartitionedScan.scan(candidates, count, distanceFunction, this.parallelThreshold, this.searchPool);
+        int[] ordinals = new int[shortlist.size()];
+        for (int i = 0; i < ordinals.length; i++) {
+            ordinals[i] = shortlist.ordinal(i);
+        }
+        return ordinals;
+    }
+
+    /**
+     * Exact blocked scan of all live documents for a batch of queries of equal dimension.
+     * Caller must hold the read lock, which also covers the pool threads for the duration of the scan.
+     * @param queries The queries, already passed through {@link #scoringQuery(float[])}.
+     * @return One sorted collector per query.
+     */
+    private TopKCollector[] exactSearchBatch(float[][] queries, int k) {
+        VectorKernels kernels = this.vectorKernels;
+        float[] docNorms = this.norms;
+        boolean normalized = docNorms != null;
+        BitSet tombstones = (this.deletedCount > 0) ? this.deleted : null;
+        int dimension = queries[0].length;
+        double[] squaredQueryNorms = new double[queries.length];
+        if (!normalized) {
+            for (int q = 0; q < queries.length; q++) {
+                squaredQueryNorms[q] = kernels.dot(queries[q], queries[q]);
+            }
+        }
+
+        return PartitionedScan.scanBatch(this.documents.size(), queries.length, k, (ordinal, fromQuery, toQuery, distances) -> {
+            float[] docVector = embedding(ordinal);
+            if ((tombstones != null && tombstones.get(ordinal)) || docVector.length != dimension) {
+                Arrays.fill(distances, 0, toQuery - fromQuery, Double.NaN);
+                return;
+            }
+            if (normalized && docNorms[ordinal] == 0.0f) {
+                Arrays.fill(distances, 0, toQuery - fromQuery, 1.0); // Zero vector, as in exactSearch
+                return;
             }
+            kernels.dotBatch(queries, fromQuery, toQuery, docVector, distances);
+            if (normalized) {
+                float norm = docNorms[ordinal];
+                for (int i = 0; i < toQuery - fromQuery; i++) {
+                    double similarity = (float) distances[i] / norm; // Same float arithmetic as exactSearch
+                    distances[i] = 1.0 - Math.max(-1.0, Math.min(1.0, similarity));
+                }
+            } else {
+                double squaredDocNorm = kernels.dot(docVector, docVector);
+                for (int i = 0; i < toQuery - fromQuery; i++) {
+                    distances[i] = VectorKernels.cosineDistanceFromSums(distances[i], squaredQueryNorms[fromQuery + i], squaredDocNorm);
+                }
+            }
+        }, this.parallelThreshold, this.searchPool);
+    }
+
+    /**
+     * Approximate search through the HNSW graph. Tombstoned nodes and nodes outside the candidates
+     * are traversed but not returned. Caller must hold the read lock.
+     * @param candidates Live ordinals that may be returned, or {@code null} to allow all live documents.
+     * @return Up to k pairs, nearest first.
+     */
+    private List<DocumentDistancePair> approximateSearch(float[] queryVector, int k, BitSet candidates) {
+        BitSet tombstones = this.deleted;
+        IntPredicate accept = (candidates != null) ? candidates::get
+                : (this.deletedCount > 0) ? ordinal -> !tombstones.get(ordinal)
+                : null;
+        List<HnswIndex.Neighbor> neighbors = this.hnswIndex.search(queryVector, k, this.hnswIndex.getEfSearch(), accept);
+        List<DocumentDistancePair> pairs = new ArrayList<>(neighbors.size());
+        for (HnswIndex.Neighbor neighbor : neighbors) {
+            pairs.add(new DocumentDistancePair(this.documents.get(neighbor.ordinal()), neighbor.distance()));
+        }
+        return pairs;
+    }
+
+    /**
+     * Quantized copies of the scoring vectors by ordinal (tombstoned ones included), scanned in the first pass
+     * of a quantized search. Guarded by the store's lock.
+     */
+    private abstract static class QuantizedVectors {
+        /** @return The dimension of the encoded vectors. */
+        abstract int dimension();
+
+        /** Quantizes and appends a scoring vector of {@link #dimension()} entries. */
+        abstract void add(float[] vector);
+
+        /** Appends the entry at an ordinal of an instance created by {@link #emptyCopy(int)}. */
+        abstract void copy(QuantizedVectors source, int ordinal);
+
+        /** @return An empty instance with the same calibration. */
+        abstract QuantizedVectors emptyCopy(int capacity);
+
+        /** @return An empty instance calibrated on the given vectors. */
+        abstract QuantizedVectors recalibrated(List<float[]> sample);
+
+        /**
+         * @param query The query, already passed through {@link #scoringQuery(float[])}.
+         * @return The approximate distance from each ordinal to the query; only its order matters.
+         */
+        abstract PartitionedScan.DistanceFunction distances(float[] query, VectorKernels kernels);
+
+        abstract void clear();
+    }
+
+    /** Int8 codes with the squared norms of their reconstructions for the cosine denominator. */
+    private static final class ScalarQuantizedVectors extends QuantizedVectors {
+        private final ScalarQuantizer quantizer;
+        private final List<byte[]> codes;
+        private float[] squaredNorms;
+
+        ScalarQuantizedVectors(ScalarQuantizer quantizer, int capacity) {
+            this.quantizer = quantizer;
+            this.codes = new ArrayList<>(capacity);
+            this.squaredNorms = new float[Math.max(16, capacity)];
+        }
+
+        @Override
+        int dimension() {
+            return quantizer.dimension();
+        }
+
+        @Override
+        void add(float[] vector) {
+            byte[] code = quantizer.quantize(vector);
+            append(code, quantizer.squaredNorm(code));
+        }
+
+        @Override
+        void copy(QuantizedVectors source, int ordinal) {
+            ScalarQuantizedVectors scalar = (ScalarQuantizedVectors) source;
+            append(scalar.codes.get(ordinal), scalar.squaredNorms[ordinal]);
+        }
+
+        private void append(byte[] code, float squaredNorm) {
+            if (codes.size() == squaredNorms.length) {
+                squaredNorms = Arrays.copyOf(squaredNorms, squaredNorms.length + (squaredNorms.length >> 1));
+            }
+            squaredNorms[codes.size()] = squaredNorm;
+            codes.add(code);
+        }
+
+        @Override
+        QuantizedVectors emptyCopy(int capacity) {
+            return new ScalarQuantizedVectors(quantizer, capacity);
+        }
+
+        @Override
+        QuantizedVectors recalibrated(List<float[]> sample) {
+            return new ScalarQuantizedVectors(ScalarQuantizer.calibrate(sample), codes.size());
+        }
+
+        @Override
+        PartitionedScan.DistanceFunction distances(float[] query, VectorKernels kernels) {
+            ScalarQuantizer.PreparedQuery prepared = quantizer.prepare(query);
+            return ordinal -> quantizer.cosineDistance(prepared, codes.get(ordinal), squaredNorms[ordinal], kernels);
+        }
+
+        @Override
+        void clear() {
+            codes.clear();
+        }
+    }
+
+    /** Packed sign bits, compared by Hamming distance. */
+    private static final class BinaryQuantizedVectors extends QuantizedVectors {
+        private final BinaryQuantizer quantizer;
+        private final List<long[]> codes;
+
+        BinaryQuantizedVectors(BinaryQuantizer quantizer, int capacity) {
+            this.quantizer = quantizer;
+            this.codes = new ArrayList<>(capacity);
+        }
+
+        @Override
+        int dimension() {
+            return quantizer.dimension();
+        }
+
+        @Override
+        void add(float[] vector) {
+            codes.add(quantizer.quantize(vector));
+        }
+
+        @Override
+        void copy(QuantizedVectors source, int ordinal) {
+            codes.add(((BinaryQuantizedVectors) source).codes.get(ordinal));
+        }
+
+        @Override
+        QuantizedVectors emptyCopy(int capacity) {
+            return new BinaryQuantizedVectors(quantizer, capacity);
+        }
+
+        @Override
+        QuantizedVectors recalibrated(List<float[]> sample) {
+            return new BinaryQuantizedVectors(BinaryQuantizer.calibrate(sample), codes.size());
+        }
+
+        @Override
+        PartitionedScan.DistanceFunction distances(float[] query, VectorKernels kernels) {
+            long[] queryCode = quantizer.quantize(query);
+            return ordinal -> BinaryQuantizer.hammingDistance(queryCode, codes.get(ordinal));
+        }
+
+        @Override
+        void clear() {
+            codes.clear();
+        }
+    }
+
+    /**
+     * Re-normalized prefixes packed back to back in one array, {@code prefixDimension} floats per ordinal,
+     * so the first pass is a single sequential sweep.
+     */
+    private static final class PrefixVectors extends QuantizedVectors {
+        private final MatryoshkaPrefix prefix;
+        private float[] prefixes;
+        private int count;
+
+        PrefixVectors(MatryoshkaPrefix prefix, int capacity) {
+            this.prefix = prefix;
+            this.prefixes = new float[Math.max(16, capacity) * prefix.prefixDimension()];
+        }
+
+        @Override
+        int dimension() {
+            return prefix.dimension();
+        }
+
+        @Override
+        void add(float[] vector) {
+            prefix.truncate(vector, reserve(), count * prefix.prefixDimension());
+            count++;
+        }
+
+        @Override
+        void copy(QuantizedVectors source, int ordinal) {
+            int width = prefix.prefixDimension();
+            System.arraycopy(((PrefixVectors) source).prefixes, ordinal * width, reserve(), count * width, width);
+            count++;
+        }
+
+        /** Grows the array to hold one more prefix if needed. */
+        private float[] reserve() {
+            int width = prefix.prefixDimension();
+            if ((long) (count + 1) * width > prefixes.length) {
+                long grown = Math.max((long) (count + 1) * width, prefixes.length + ((long) prefixes.length >> 1));
+                if ((long) (count + 1) * width > Integer.MAX_VALUE - 8) {
+                    throw new VectorStoreException("Too many documents for " + width + "-dimension prefixes in one MemoryVectorStore.");
+                }
+                prefixes = Arrays.copyOf(prefixes, (int) Math.min(grown, Integer.MAX_VALUE - 8));
+            }
+            return prefixes;
+        }
+
+        @Override
+        QuantizedVectors emptyCopy(int capacity) {
+            return new PrefixVectors(prefix, capacity);
+        }
+
+        @Override
+        QuantizedVectors recalibrated(List<float[]> sample) {
+            return new PrefixVectors(prefix, count); // Truncation needs no calibration.
         }
 
-        // Sort by distance (ascending, so smaller distance is better)
-        documentDistances.sort(Comparator.comparingDouble(DocumentDistancePair::getDistance));
+        @Override
+        PartitionedScan.DistanceFunction distances(float[] query, VectorKernels kernels) {
+            float[] queryPrefix = prefix.truncate(query);
+            float[] packed = prefixes;
+            int width = prefix.prefixDimension();
+            return ordinal -> 1.0 - kernels.dotAt(queryPrefix, packed, ordinal * width);
+        }
 
-        // Get top k documents and set their scores.
-        // Score is calculated as 1.0 - distance (cosine similarity).
-        return documentDistances.stream()
-                .limit(k)
-                .map(pair -> {
-                    // Cosine distance is in [0, 2]. Score = 1.0 - distance maps to [-1, 1].
-                    // A score of 1.0 is most similar, -1.0 is most dissimilar.
-                    double score = 1.0 - pair.getDistance();
-                    pair.getDocument().setScore((float) score);
-                    return pair.getDocument();
-                })
-                .collect(Collectors.toList());
+        @Override
+        void clear() {
+            count = 0;
+        }
     }
 
     /**
-     * Helper inner class to temporarily store a document and its calculated distance
-     * to the query vector, primarily for sorting.
+     * Helper inner class to hold a result document and its calculated distance to the query vector.
      */
     private static class DocumentDistancePair {
         private final Document document;
@@ -177,20 +1622,159 @@ public class MemoryVectorStore implements VectorStore {
     }
 
     /**
-     * Returns a copy of all documents currently in the store.
+     * Returns a copy of all documents currently in the store, excluding deleted ones.
      * For inspection or testing purposes.
-     * This operation is synchronized.
+     * This operation takes the read lock.
      * @return A new list containing all documents.
      */
     public List<Document> getAllDocuments() {
-        return new ArrayList<>(this.documents);
+        lock.readLock().lock();
+        try {
+            if (this.deletedCount == 0 && this.embeddingFile == null) {
+                return new ArrayList<>(this.documents);
+            }
+            List<Document> live = new ArrayList<>(this.documents.size() - this.deletedCount);
+            for (int ordinal = this.deleted.nextClearBit(0); ordinal < this.documents.size(); ordinal = this.deleted.nextClearBit(ordinal + 1)) {
+                live.add(resultDocument(ordinal));
+            }
+            return live;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Writes the live documents (embeddings, IDs, content, source and metadata) to a binary snapshot file,
+     * so that a restarted process can {@link #restore(Path)} them without re-reading or re-embedding its
+     * sources. The embeddings are written as one contiguous float32 block, and each block is protected by a
+     * CRC-32C checksum. The file is written next to its target and renamed over it once complete, so an
+     * interrupted snapshot leaves the previous one intact.
+     *
+     * <p>Only the documents are written; indexes and quantized codes are rebuilt by {@link #restore(Path)}
+     * according to the restoring store's configuration. This operation takes the read lock, so searches keep
+     * running while it writes and writers wait.</p>
+     *
+     * @param path The snapshot file; replaced if it exists.
+     * @throws VectorStoreException if the file cannot be written.
+     */
+    public void snapshot(Path path) throws VectorStoreException {
+        Objects.requireNonNull(path, "Snapshot path cannot be null.");
+        lock.readLock().lock();
+        try {
+            int[] live = this.deleted.isEmpty()
+                    ? null
+                    : IntStream.range(0, this.documents.size()).filter(o -> !this.deleted.get(o)).toArray();
+            int count = (live != null) ? live.length : this.documents.size();
+            MemoryStoreSnapshot.write(path, count,
+                    i -> this.documents.get(live != null ? live[i] : i),
+                    i -> embedding(live != null ? live[i] : i));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Replaces the contents of this store with the documents of a snapshot written by {@link #snapshot(Path)}.
+     *
+     * <p>The file is read through read-only memory mappings: the embedding block is copied in bulk into the
+     * documents' arrays, and both checksums are verified before the store is touched, so a truncated or
+     * corrupted snapshot leaves the store unchanged. The restored documents are then indexed as if they had
+     * been added, according to this store's configuration (HNSW graph, normalized vectors, quantization,
+     * lexical index); quantization keeps its calibration. Without an HNSW index, restoring is dominated by
+     * reading the file. This operation takes the write lock while it swaps the documents in.</p>
+     *
+     * @param path The snapshot file.
+     * @throws VectorStoreException if the file cannot be read, is not a snapshot, fails a checksum, or its
+     *                              embedding dimensions do not fit the HNSW index or quantization of this store.
+     */
+    public void restore(Path path) throws VectorStoreException {
+        Objects.requireNonNull(path, "Snapshot path cannot be null.");
+        List<Document> restored = MemoryStoreSnapshot.read(path);
+        lock.writeLock().lock();
+        try {
+            if (this.quantizedVectors != null) {
+                for (Document document : restored) {
+                    checkQuantizedDimension(document.getEmbeddingVector().length, this.quantizedVectors, document);
+                }
+            } else if (this.hnswIndex != null && !restored.isEmpty()) {
+                int dimension = restored.get(0).getEmbeddingVector().length;
+                for (Document document : restored) {
+                    if (document.getEmbeddingVector().length != dimension) {
+                        throw new VectorStoreException("Snapshot embeddings have different dimensions, which the HNSW index " +
+                                                       "does not support. Doc ID: " + document.getId());
+                    }
+                }
+            }
+            clearLocked();
+            for (Document document : restored) {
+                appendLocked(document);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
     }
 
     /**
      * Clears all documents from this in-memory vector store.
-     * This operation is synchronized.
+     * If the HNSW index is enabled, it is reset with the same parameters; quantization keeps its calibration.
+     * This operation takes the write lock.
      */
     public void clear() {
+        lock.writeLock().lock();
+        try {
+            clearLocked();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Removes all documents, keeping the configuration. Caller must hold the write lock. */
+    private void clearLocked() {
         this.documents.clear();
+        if (this.quantizedVectors != null) {
+            this.quantizedVectors.clear();
+        }
+        if (this.embeddingFile != null) {
+            this.embeddingFile.clear();
+        }
+        this.documentIds.clear();
+        this.metadataIndex.clear();
+        if (this.lexicalIndex != null) {
+            this.lexicalIndex.clear();
+        }
+        this.deleted.clear();
+        this.deletedCount = 0;
+        this.modificationCount++;
+        if (this.hnswIndex != null) {
+            this.hnswIndex = buildHnswIndex(hnswIndex.getM(), hnswIndex.getEfConstruction(), hnswIndex.getEfSearch());
+        }
+    }
+
+    /**
+     * Closes and deletes the embedding file if embeddings were moved to disk with
+     * {@link #withScalarQuantization(ScalarQuantizer, int, Path)}; the store must not be used afterwards.
+     * Otherwise this does nothing.
+     */
+    @Override
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            if (this.embeddingFile != null) {
+                this.embeddingFile.close();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static void closeQuietly(MappedVectorFile file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            file.close();
+        } catch (IOException e) {
+            System.err.println("Warning: Failed to close vector file in " + file.directory() + ": " + e.getMessage());
+        }
     }
 }
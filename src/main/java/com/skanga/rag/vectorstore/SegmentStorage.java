@@ -0,0 +1,60 @@
+package com.skanga.rag.vectorstore;
+
+import com.skanga.rag.Document;
+import com.skanga.rag.vectorstore.filter.MetadataFilter;
+import com.skanga.rag.vectorstore.search.Bm25Index;
+import com.skanga.rag.vectorstore.search.VectorKernels;
+
+import java.io.Closeable;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * The binary storage behind a {@link FileVectorStore}: a single {@link VectorSegment}
+ * ({@link FileVectorStore.StorageFormat#BINARY}) or a {@link VectorSegmentSet} of several
+ * ({@link FileVectorStore.StorageFormat#SEGMENTED}). See {@link VectorSegment} for the contract of each method.
+ */
+interface SegmentStorage extends Closeable {
+
+    /** @return The number of documents, tombstoned ones included. */
+    int size();
+
+    /** @return The embedding dimension, or 0 if nothing has been stored. */
+    int dimension();
+
+    void append(List<Document> documents) throws VectorStoreException;
+
+    int delete(List<String> ids) throws VectorStoreException;
+
+    void upsert(List<Document> documents) throws VectorStoreException;
+
+    /** @return The number of deleted documents not yet reclaimed. */
+    int deletedCount();
+
+    void enableLexicalIndex(Bm25Index index) throws VectorStoreException;
+
+    boolean lexicalIndexEnabled();
+
+    List<Document> lexicalSearch(String queryText, int k) throws VectorStoreException;
+
+    List<Document> search(float[] queryVector, int k, MetadataFilter filter, VectorKernels kernels,
+                          int parallelThreshold, ForkJoinPool pool) throws VectorStoreException;
+
+    List<List<Document>> searchBatch(float[][] queries, int k, VectorKernels kernels, int parallelThreshold,
+                                     ForkJoinPool pool) throws VectorStoreException;
+
+    List<Document> readAll() throws VectorStoreException;
+
+    /**
+     * Reclaims the space of deleted documents, and for a segment set also merges small segments.
+     * @return The number of documents reclaimed.
+     */
+    int compact() throws VectorStoreException;
+
+    /** @return {@code true} if {@link #compact()} has work to do beyond reclaiming tombstones, e.g. merges. */
+    default boolean needsMerge() {
+        return false;
+    }
+
+    void clear() throws VectorStoreException;
+}
@@ -0,0 +1,581 @@
+package com.skanga.rag.vectorstore;
+
+import com.skanga.rag.Document;
+import com.skanga.rag.vectorstore.filter.MetadataFilter;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * A {@link VectorStore} that hash-partitions documents across several child stores ("shards") and
+ * answers searches by scatter-gather.
+ *
+ * <p><b>Partitioning:</b> A document lives on shard {@link #shardIndex(String) shardIndex(id)}, a hash of its
+ * ID modulo the number of shards. Every version of a document therefore lands on the same shard, so deletes
+ * and upserts are routed to one shard per ID and keep their per-store semantics. The shards can be any
+ * mix of stores, e.g. several {@link MemoryVectorStore}s to split one scan across cores, or several
+ * Elasticsearch indices or Chroma collections to stay under one index's size limits. The number and order
+ * of shards must stay the same for the lifetime of the data.</p>
+ *
+ * <p><b>Search:</b> A query is sent to every shard in parallel, each asked for its own top {@code k}.
+ * The per-shard lists are already sorted, so they are merged with a k-way heap in {@code O(k log shards)}.
+ * Because each shard returns its best {@code k}, the merged list equals that of a single store holding all
+ * documents. Scores are compared as returned, which is exact for similarity scores; lexical (BM25) scores
+ * depend on each shard's own term statistics and are only approximately comparable.
+ * {@link #similaritySearchAsync(List, int)} and {@link #addDocumentsAsync(List)} call the shards' own
+ * asynchronous methods, so remote shards are not waited on by a blocked thread.</p>
+ *
+ * <p><b>Timeouts and failures:</b> Each search waits at most the shard timeout (see
+ * {@link #withShardTimeout(Duration)}) for all shards together; the call of a shard that is still running then is
+ * interrupted, so a hung shard does not hold a pool thread. Shards that are slower, or that fail, are left
+ * out of the result with a warning and counted in {@link #getSkippedShardCount()}, so a slow shard degrades
+ * recall instead of latency. With {@link #withRequireAllShards(boolean) requireAllShards} a search fails instead.
+ * A search fails in any case when no shard answers. Writes are also fanned out in parallel but are never
+ * timed out, and any shard failure fails the write; shards written before the failure keep their documents.</p>
+ *
+ * <p><b>Thread Safety:</b> This class holds no mutable state besides its configuration and counter; it is as
+ * thread-safe as its shards.</p>
+ */
+public class ShardedVectorStore implements VectorStore, Closeable {
+
+    /** Default time a search waits for the shards before returning what it has. */
+    public static final Duration DEFAULT_SHARD_TIMEOUT = Duration.ofSeconds(10);
+
+    /** How long an idle thread of the default pool is kept. */
+    private static final long IDLE_THREAD_SECONDS = 60;
+
+    private final List<VectorStore> shards;
+    /** The default pool for shard calls, owned by this store and shut down by {@link #close()}. */
+    private final ExecutorService ownExecutor;
+    private volatile Executor executor;
+    private volatile long shardTimeoutNanos = DEFAULT_SHARD_TIMEOUT.toNanos();
+    private volatile boolean requireAllShards;
+    private final AtomicLong skippedShards = new AtomicLong();
+
+    /**
+     * Creates a sharded store over the given child stores.
+     * @param shards The shards, in a fixed order. Must not be empty.
+     * @throws IllegalArgumentException if shards is empty.
+     */
+    public ShardedVectorStore(List<? extends VectorStore> shards) {
+        Objects.requireNonNull(shards, "Shards cannot be null.");
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("ShardedVectorStore needs at least one shard.");
+        }
+        List<VectorStore> copy = new ArrayList<>(shards.size());
+        for (VectorStore shard : shards) {
+            copy.add(Objects.requireNonNull(shard, "Shard cannot be null."));
+        }
+        this.shards = Collections.unmodifiableList(copy);
+        this.ownExecutor = newDefaultExecutor(Math.max(copy.size(), Runtime.getRuntime().availableProcessors()));
+        this.executor = this.ownExecutor;
+    }
+
+    /**
+     * Creates the default pool: a bounded number of daemon threads, started on demand and stopped when idle.
+     * Shards are often remote, so the calls block on I/O; with at least one thread per shard a search's calls
+     * all run at once, and calls beyond the bound queue instead of starting more threads.
+     */
+    private static ExecutorService newDefaultExecutor(int threads) {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, IDLE_THREAD_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "agentforge-shard-search");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    /**
+     * Sets how long a search waits for all shards together. Defaults to {@link #DEFAULT_SHARD_TIMEOUT}.
+     * @param timeout The timeout. Must be positive.
+     * @return This {@code ShardedVectorStore} instance for fluent chaining.
+     * @throws IllegalArgumentException if the timeout is not positive.
+     */
+    public ShardedVectorStore withShardTimeout(Duration timeout) {
+        Objects.requireNonNull(timeout, "Shard timeout cannot be null.");
+        if (timeout.isNegative() || timeout.isZero()) {
+            throw new IllegalArgumentException("Shard timeout must be positive.");
+        }
+        this.shardTimeoutNanos = timeout.toNanos();
+        return this;
+    }
+
+    /**
+     * Sets the executor that runs the shard calls. Defaults to a pool of this store's own with as many daemon
+     * threads as there are shards or processors, whichever is more, which {@link #close()} shuts down.
+     * A given executor needs as many threads as there are shards for the calls to run fully in parallel, and is
+     * not shut down by this store.
+     * @param executor The executor.
+     * @return This {@code ShardedVectorStore} instance for fluent chaining.
+     */
+    public ShardedVectorStore withExecutor(Executor executor) {
+        this.executor = Objects.requireNonNull(executor, "Executor cannot be null.");
+        return this;
+    }
+
+    /**
+     * Chooses between partial and strict searches. By default a search leaves out shards that time out or fail.
+     * @param requireAllShards {@code true} to fail a search unless every shard answers in time.
+     * @return This {@code ShardedVectorStore} instance for fluent chaining.
+     */
+    public ShardedVectorStore withRequireAllShards(boolean requireAllShards) {
+        this.requireAllShards = requireAllShards;
+        return this;
+    }
+
+    /** @return The shards, in partition order. */
+    public List<VectorStore> getShards() {
+        return shards;
+    }
+
+    /** @return The number of shard results left out of searches so far because the shard timed out or failed. */
+    public long getSkippedShardCount() {
+        return skippedShards.get();
+    }
+
+    /**
+     * Returns the shard a document ID belongs to. The hash is {@link String#hashCode()}, whose value is fixed by
+     * the Java specification, with its bits mixed so that sequential IDs spread evenly.
+     * @param documentId The document ID.
+     * @return The shard index, between 0 and the number of shards (exclusive).
+     */
+    public int shardIndex(String documentId) {
+        Objects.requireNonNull(documentId, "Document ID cannot be null.");
+        int hash = documentId.hashCode() * 0x9E3779B9; // Fibonacci hashing
+        return Math.floorMod(hash ^ (hash >>> 16), shards.size());
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>Stores the document on its shard.</p>
+     */
+    @Override
+    public void addDocument(Document document) throws VectorStoreException {
+        Objects.requireNonNull(document, "Document to add cannot be null.");
+        shards.get(shardIndex(document.getId())).addDocument(document);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>Groups the documents by shard and writes the groups in parallel, one {@code addDocuments} call per shard.</p>
+     */
+    @Override
+    public void addDocuments(List<Document> documents) throws VectorStoreException {
+        List<List<Document>> byShard = partition(documents, Document::getId, "Document in list cannot be null.");
+        write(byShard, VectorStore::addDocuments);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>Groups the documents by shard and calls {@code addDocumentsAsync} of each shard with its group,
+     * so remote shards are written without blocking a thread.</p>
+     */
+    @Override
+    public CompletableFuture<Void> addDocumentsAsync(List<Document> documents) {
+        List<List<Document>> byShard = partition(documents, Document::getId, "Document in list cannot be null.");
+        List<CompletableFuture<Void>> futures = new ArrayList<>(shards.size());
+        for (int i = 0; i < shards.size(); i++) {
+            List<Document> part = byShard.get(i);
+            VectorStore shard = shards.get(i);
+            futures.add(part.isEmpty() ? null : startAsync(() -> shard.addDocumentsAsync(part)));
+        }
+        return CompletableFuture.allOf(futures.stream().filter(Objects::nonNull).toArray(CompletableFuture<?>[]::new))
+                                .handle((ignored, e) -> {
+                                    checkWrites(futures);
+                                    return null;
+                                });
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>Routes each ID to its shard; the shards are called in parallel.</p>
+     */
+    @Override
+    public void deleteDocuments(List<String> documentIds) throws VectorStoreException {
+        List<List<String>> byShard = partition(documentIds, id -> id, "Document ID cannot be null.");
+        write(byShard, VectorStore::deleteDocuments);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>Routes each document to the shard of its ID, which also holds any older version; the shards are
+     * called in parallel.</p>
+     */
+    @Override
+    public void upsertDocuments(List<Document> documents) throws VectorStoreException {
+        List<List<Document>> byShard = partition(documents, Document::getId, "Document in list cannot be null.");
+        write(byShard, VectorStore::upsertDocuments);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>Asks every shard for its top k in parallel and merges the answers.</p>
+     * @throws VectorStoreException if no shard answers in time, or any shard does not while all are required.
+     */
+    @Override
+    public List<Document> similaritySearch(List<Double> queryEmbedding, int k) throws VectorStoreException {
+        Objects.requireNonNull(queryEmbedding, "Query embedding cannot be null for similarity search.");
+        checkK(k);
+        return merge(scatter(shard -> shard.similaritySearch(queryEmbedding, k)), k);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>Calls {@code similaritySearchAsync} of every shard, so remote shards are queried without blocking a
+     * thread, and merges the answers. Shards are timed out and left out as in {@link #similaritySearch(List, int)}.</p>
+     */
+    @Override
+    public CompletableFuture<List<Document>> similaritySearchAsync(List<Double> queryEmbedding, int k) {
+        Objects.requireNonNull(queryEmbedding, "Query embedding cannot be null for similarity search.");
+        checkK(k);
+        return scatterAsync(shard -> shard.similaritySearchAsync(queryEmbedding, k)).thenApply(answers -> merge(answers, k));
+    }
+
+    /** @return The executor that runs the shard calls; see {@link #withExecutor(Executor)}. */
+    @Override
+    public Executor asyncExecutor() {
+        return executor;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>Asks every shard for its top k in parallel and merges the answers.</p>
+     */
+    @Override
+    public List<Document> similaritySearchVector(float[] queryVector, int k) throws VectorStoreException {
+        Objects.requireNonNull(queryVector, "Query vector cannot be null for similarity search.");
+        checkK(k);
+        return merge(scatter(shard -> shard.similaritySearchVector(queryVector, k)), k);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>The filter is passed to every shard, so all shards must support it.</p>
+     */
+    @Override
+    public List<Document> similaritySearchVector(float[] queryVector, int k, MetadataFilter filter) throws VectorStoreException {
+        Objects.requireNonNull(queryVector, "Query vector cannot be null for similarity search.");
+        checkK(k);
+        return merge(scatter(shard -> shard.similaritySearchVector(queryVector, k, filter)), k);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>Sends the whole batch to every shard in parallel, so a shard that batches natively makes one pass,
+     * and merges the answers query by query.</p>
+     */
+    @Override
+    public List<List<Document>> similaritySearchBatch(List<List<Double>> queryEmbeddings, int k) throws VectorStoreException {
+        Objects.requireNonNull(queryEmbeddings, "Query embeddings cannot be null for batch similarity search.");
+        checkK(k);
+        return mergeBatch(scatter(shard -> shard.similaritySearchBatch(queryEmbeddings, k)), queryEmbeddings.size(), k);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>Sends the whole batch to every shard in parallel and merges the answers query by query.</p>
+     */
+    @Override
+    public List<List<Document>> similaritySearchBatchVector(List<float[]> queryVectors, int k) throws VectorStoreException {
+        Objects.requireNonNull(queryVectors, "Query vectors cannot be null for batch similarity search.");
+        checkK(k);
+        return mergeBatch(scatter(shard -> shard.similaritySearchBatchVector(queryVectors, k)), queryVectors.size(), k);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>Asks every shard for its top k in parallel and merges by score. Each shard scores with its own term
+     * statistics, so the merged order approximates that of a single index.</p>
+     */
+    @Override
+    public List<Document> lexicalSearch(String queryText, int k) throws VectorStoreException {
+        Objects.requireNonNull(queryText, "Query text cannot be null for lexical search.");
+        checkK(k);
+        return merge(scatter(shard -> shard.lexicalSearch(queryText, k)), k);
+    }
+
+    /**
+     * Shuts down the default pool, interrupting shard calls still running, and closes every shard that is
+     * {@link AutoCloseable}. All shards are closed even if one fails. Searches fail once the store is closed.
+     * @throws IOException if closing a shard fails; further failures are suppressed into it.
+     */
+    @Override
+    public void close() throws IOException {
+        ownExecutor.shutdownNow();
+        IOException failure = null;
+        for (VectorStore shard : shards) {
+            if (!(shard instanceof AutoCloseable closeable)) {
+                continue;
+            }
+            try {
+                closeable.close();
+            } catch (Exception e) {
+                IOException wrapped = (e instanceof IOException io) ? io : new IOException("Failed to close shard " + shard, e);
+                if (failure == null) {
+                    failure = wrapped;
+                } else {
+                    failure.addSuppressed(wrapped);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private static void checkK(int k) {
+        if (k <= 0) {
+            throw new IllegalArgumentException("Number of results to return (k) must be positive.");
+        }
+    }
+
+    /** A call against one shard. */
+    @FunctionalInterface
+    private interface ShardCall<T> {
+        T call(VectorStore shard) throws VectorStoreException;
+    }
+
+    /** A write of one shard's part of a batch. */
+    @FunctionalInterface
+    private interface ShardWrite<T> {
+        void write(VectorStore shard, List<T> items) throws VectorStoreException;
+    }
+
+    /** Splits items into one list per shard by the shard of their ID, keeping their relative order. */
+    private <T> List<List<T>> partition(List<T> items, Function<T, String> id, String nullMessage) {
+        Objects.requireNonNull(items, "List cannot be null.");
+        List<List<T>> byShard = new ArrayList<>(shards.size());
+        for (int i = 0; i < shards.size(); i++) {
+            byShard.add(new ArrayList<>());
+        }
+        for (T item : items) {
+            byShard.get(shardIndex(id.apply(Objects.requireNonNull(item, nullMessage)))).add(item);
+        }
+        return byShard;
+    }
+
+    /** Writes each non-empty part to its shard in parallel and waits for all of them. */
+    private <T> void write(List<List<T>> byShard, ShardWrite<T> write) throws VectorStoreException {
+        List<CompletableFuture<Void>> futures = new ArrayList<>(shards.size());
+        for (int i = 0; i < shards.size(); i++) {
+            List<T> part = byShard.get(i);
+            VectorStore shard = shards.get(i);
+            futures.add(part.isEmpty() ? null : CompletableFuture.runAsync(() -> write.write(shard, part), executor));
+        }
+        checkWrites(futures);
+    }
+
+    /**
+     * Waits for the shard writes and combines their failures.
+     * @param futures One write per shard, {@code null} for shards without a part.
+     * @throws VectorStoreException for the first failed write, with later failures suppressed into it.
+     */
+    private static void checkWrites(List<CompletableFuture<Void>> futures) throws VectorStoreException {
+        VectorStoreException failure = null;
+        for (int i = 0; i < futures.size(); i++) {
+            if (futures.get(i) == null) {
+                continue;
+            }
+            try {
+                futures.get(i).join();
+            } catch (RuntimeException e) {
+                Throwable cause = (e.getCause() != null) ? e.getCause() : e;
+                VectorStoreException shardFailure = new VectorStoreException("Write to shard " + i + " failed: " + cause.getMessage(), cause);
+                if (failure == null) {
+                    failure = shardFailure;
+                } else {
+                    failure.addSuppressed(shardFailure);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Runs a call on every shard in parallel and waits until all have answered or the shard timeout has passed.
+     * @return One answer per shard, {@code null} for shards that timed out or failed.
+     * @throws VectorStoreException if no shard answered, or one did not while all are required.
+     */
+    private <T> List<T> scatter(ShardCall<T> call) throws VectorStoreException {
+        List<CompletableFuture<T>> futures = new ArrayList<>(shards.size());
+        for (VectorStore shard : shards) {
+            futures.add(submit(() -> call.call(shard)));
+        }
+        try {
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).get();
+        } catch (ExecutionException e) {
+            // Shards that failed or timed out are reported by gather.
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            futures.forEach(f -> f.cancel(true));
+            throw new VectorStoreException("Interrupted while waiting for shards.", e);
+        }
+        return gather(futures);
+    }
+
+    /**
+     * Runs a blocking shard call on the executor, bounded by the shard timeout. Unlike
+     * {@link CompletableFuture#supplyAsync}, the call is interrupted when its future times out or is cancelled.
+     * @return A future completing with the call's answer, or exceptionally with its failure, a
+     *         {@link TimeoutException}, or the executor's rejection.
+     */
+    private <T> CompletableFuture<T> submit(Callable<T> call) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        FutureTask<Void> task = new FutureTask<>(() -> {
+            try {
+                future.complete(call.call());
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            }
+            return null;
+        });
+        future.whenComplete((answer, e) -> {
+            if (e instanceof TimeoutException || e instanceof CancellationException) {
+                task.cancel(true);
+            }
+        });
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(e);
+        }
+        return future.orTimeout(shardTimeoutNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Starts an asynchronous call on every shard, each bounded by the shard timeout.
+     * @return A future completing with one answer per shard as in {@link #scatter(ShardCall)}, or exceptionally
+     *         if no shard answered, or one did not while all are required.
+     */
+    private <T> CompletableFuture<List<T>> scatterAsync(Function<VectorStore, CompletableFuture<T>> call) {
+        List<CompletableFuture<T>> futures = new ArrayList<>(shards.size());
+        for (VectorStore shard : shards) {
+            futures.add(startAsync(() -> call.apply(shard)).orTimeout(shardTimeoutNanos, TimeUnit.NANOSECONDS));
+        }
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).handle((ignored, e) -> gather(futures));
+    }
+
+    /** Returns the future of a call, or a failed future if the call throws instead. */
+    private static <T> CompletableFuture<T> startAsync(Supplier<CompletableFuture<T>> call) {
+        try {
+            return call.get();
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Collects the answers of completed shard calls, leaving out shards that timed out or failed.
+     * @return One answer per shard, {@code null} for shards that timed out or failed.
+     * @throws VectorStoreException if no shard answered, or one did not while all are required.
+     */
+    private <T> List<T> gather(List<CompletableFuture<T>> futures) throws VectorStoreException {
+        List<T> answers = new ArrayList<>(futures.size());
+        VectorStoreException failure = null;
+        int answered = 0;
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                answers.add(futures.get(i).join());
+                answered++;
+                continue;
+            } catch (CompletionException | CancellationException e) {
+                Throwable cause = (e instanceof CompletionException && e.getCause() != null) ? e.getCause() : e;
+                failure = addFailure(failure, (cause instanceof TimeoutException)
+                        ? new VectorStoreException("Shard " + i + " did not answer within " + Duration.ofNanos(shardTimeoutNanos) + ".")
+                        : new VectorStoreException("Shard " + i + " failed: " + cause.getMessage(), cause));
+            }
+            answers.add(null);
+        }
+        if (failure != null) {
+            if (requireAllShards || answered == 0) {
+                throw failure;
+            }
+            skippedShards.addAndGet(futures.size() - answered);
+            System.err.println("Warning: ShardedVectorStore returned results from " + answered + " of " + futures.size() +
+                               " shards: " + failure.getMessage());
+        }
+        return answers;
+    }
+
+    private static VectorStoreException addFailure(VectorStoreException first, VectorStoreException next) {
+        if (first == null) {
+            return next;
+        }
+        first.addSuppressed(next);
+        return first;
+    }
+
+    /** Merges each query's per-shard lists. */
+    private static List<List<Document>> mergeBatch(List<List<List<Document>>> answers, int queryCount, int k) {
+        List<List<Document>> results = new ArrayList<>(queryCount);
+        for (int q = 0; q < queryCount; q++) {
+            List<List<Document>> perShard = new ArrayList<>(answers.size());
+            for (List<List<Document>> answer : answers) {
+                perShard.add((answer != null && q < answer.size()) ? answer.get(q) : null);
+            }
+            results.add(merge(perShard, k));
+        }
+        return results;
+    }
+
+    /**
+     * Merges per-shard lists sorted by descending score into the top k with a heap holding the head of each
+     * list. Equal scores are taken from the lower shard first.
+     * @param perShard The lists, {@code null} for shards without an answer.
+     * @param k        The number of results.
+     * @return Up to k documents, highest score first.
+     */
+    static List<Document> merge(List<List<Document>> perShard, int k) {
+        PriorityQueue<int[]> heads = new PriorityQueue<>((a, b) -> {
+            int byScore = Float.compare(perShard.get(b[0]).get(b[1]).getScore(), perShard.get(a[0]).get(a[1]).getScore());
+            return (byScore != 0) ? byScore : Integer.compare(a[0], b[0]);
+        });
+        for (int shard = 0; shard < perShard.size(); shard++) {
+            List<Document> list = perShard.get(shard);
+            if (list != null && !list.isEmpty()) {
+                heads.add(new int[]{shard, 0});
+            }
+        }
+        List<Document> merged = new ArrayList<>(k);
+        while (merged.size() < k && !heads.isEmpty()) {
+            int[] head = heads.poll();
+            List<Document> list = perShard.get(head[0]);
+            merged.add(list.get(head[1]));
+            if (++head[1] < list.size()) {
+                heads.add(head);
+            }
+        }
+        return merged;
+    }
+
+    @Override
+    public String toString() {
+        return "ShardedVectorStore" + shards;
+    }
+}
@@ -0,0 +1,1114 @@
+package com.skanga.rag.vectorstore;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.skanga.rag.Document;
+import com.skanga.rag.vectorstore.filter.MetadataFilter;
+import com.skanga.rag.vectorstore.filter.MetadataIndex;
+import com.skanga.rag.vectorstore.search.Bm25Index;
+import com.skanga.rag.vectorstore.search.PartitionedScan;
+import com.skanga.rag.vectorstore.search.SimilaritySearchUtils;
+import com.skanga.rag.vectorstore.search.TopKCollector;
+import com.skanga.rag.vectorstore.search.VectorKernels;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A binary, memory-mapped store of documents and their embeddings, used by {@link FileVectorStore}
+ * in {@link FileVectorStore.StorageFormat#BINARY} mode, and as one segment of a {@link VectorSegmentSet}
+ * in {@link FileVectorStore.StorageFormat#SEGMENTED} mode.
+ *
+ * <p>A segment named {@code base} consists of three files:
+ * <ul>
+ *   <li>{@code base.vec} - a 16-byte header (magic, version, dimension, reserved) followed by one
+ *       fixed-width record of {@code dimension} little-endian float32 values per document.
+ *       This block is mapped with {@link FileChannel#map} and is the only data touched while scoring.</li>
+ *   <li>{@code base.idx} - a 16-byte header followed by one 16-byte entry per document: the offset
+ *       (long) and length (int) of its metadata in {@code base.meta}, and the L2 norm (float) of its
+ *       embedding. Entries are loaded into memory on open.</li>
+ *   <li>{@code base.meta} - the JSON of each document without its embedding, concatenated.
+ *       It is only read for the final top-k results.</li>
+ *   <li>{@code base.del} - the tombstone bitset of deleted ordinals, as little-endian longs. A delete
+ *       rewrites only the 8-byte words it changes.</li>
+ * </ul>
+ * Documents are identified by their ordinal (record number). With the cached norm, scoring a record
+ * is a single dot product against the normalized query.</p>
+ *
+ * <p>On open, the three files are truncated to the longest prefix of complete records, so a write
+ * interrupted by a crash loses at most the documents of that write.</p>
+ *
+ * <p><b>Compaction</b> ({@link #compact()}) copies the live records into {@code base.compact.*} files, marks them
+ * complete by creating {@code base.compact}, and then renames them over the segment and removes the tombstones.
+ * An interrupted compaction is finished on open if the marker exists and discarded otherwise.</p>
+ *
+ * <p><b>Thread Safety:</b> Appends, deletes and {@link #clear()} take a write lock; searches take a read lock.
+ * Compaction copies under the read lock and only takes the write lock for the final renames.</p>
+ */
+final class VectorSegment implements SegmentStorage {
+
+    static final String VECTORS_SUFFIX = ".vec";
+    static final String INDEX_SUFFIX = ".idx";
+    static final String METADATA_SUFFIX = ".meta";
+    static final String DELETED_SUFFIX = ".del";
+    static final String COMPACT_SUFFIX = ".compact";
+
+    static final int HEADER_BYTES = 16;
+    static final int INDEX_ENTRY_BYTES = 16;
+    private static final int VECTORS_MAGIC = 0x41465653; // "AFVS"
+    private static final int INDEX_MAGIC = 0x41465649;   // "AFVI"
+    private static final int FORMAT_VERSION = 1;
+    /** A single mapping is limited to 2 GB, so larger vector blocks are mapped in chunks. */
+    private static final long MAX_CHUNK_BYTES = Integer.MAX_VALUE;
+
+    private final Path directory;
+    private final String baseName;
+    private final Path vectorsPath;
+    private FileChannel vectorsChannel;
+    private FileChannel indexChannel;
+    private FileChannel metadataChannel;
+    private FileChannel deletedChannel;
+    /** Serializes documents without their embedding, which lives in the vector block. */
+    private final ObjectMapper metadataMapper;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private int dimension;
+    private int size;
+    private long[] metadataOffsets = new long[16];
+    private int[] metadataLengths = new int[16];
+    private float[] norms = new float[16];
+    private long metadataEnd;
+    /** Tombstones: ordinals of deleted records. */
+    private BitSet deleted = new BitSet();
+    private int deletedCount;
+    /** Live ordinals by document ID; built on the first delete or upsert, as it needs every record's metadata. */
+    private DocumentIdIndex documentIds;
+    /**
+     * Ordinals by metadata field and value, tombstoned records included; built on the first filtered search.
+     * Written under the write lock, or under {@link #metadataIndexMonitor} while a search holds the read lock.
+     */
+    private volatile MetadataIndex metadataIndex;
+    private final Object metadataIndexMonitor = new Object();
+    /** Ordinals by content term, tombstoned records included; {@code null} unless lexical search is enabled. */
+    private Bm25Index lexicalIndex;
+    /** Incremented by every modification; lets {@link #compact()} detect writes made while it was copying. */
+    private long modificationCount;
+
+    private int recordsPerChunk;
+    private FloatBuffer[] vectorChunks = new FloatBuffer[0];
+    /** Per-thread scratch buffer a record is copied into before scoring. */
+    private final ThreadLocal<float[]> scratch = ThreadLocal.withInitial(() -> new float[0]);
+
+    @JsonIgnoreProperties({"embedding"})
+    private abstract static class DocumentWithoutEmbedding {}
+
+    private VectorSegment(Path directory, String baseName, ObjectMapper objectMapper) {
+        this.directory = directory;
+        this.baseName = baseName;
+        this.vectorsPath = directory.resolve(baseName + VECTORS_SUFFIX);
+        this.metadataMapper = objectMapper.copy().addMixIn(Document.class, DocumentWithoutEmbedding.class);
+    }
+
+    /**
+     * Opens the segment with the given base name, creating empty files if they do not exist.
+     *
+     * @param directory    The directory holding the segment files.
+     * @param baseName     The file name without suffix.
+     * @param objectMapper The mapper used for document metadata.
+     * @return The opened segment.
+     * @throws VectorStoreException if the files cannot be opened or are not segment files.
+     */
+    static VectorSegment open(Path directory, String baseName, ObjectMapper objectMapper) throws VectorStoreException {
+        VectorSegment segment = new VectorSegment(directory, baseName, objectMapper);
+        try {
+            segment.recoverCompaction();
+            segment.openChannels();
+            segment.load();
+            return segment;
+        } catch (IOException | RuntimeException e) {
+            segment.closeChannels();
+            if (e instanceof VectorStoreException) {
+                throw (VectorStoreException) e;
+            }
+            throw new VectorStoreException("Failed to open vector segment: " + segment.vectorsPath, e);
+        }
+    }
+
+    private void openChannels() throws IOException {
+        vectorsChannel = openChannel(vectorsPath);
+        indexChannel = openChannel(file(INDEX_SUFFIX));
+        metadataChannel = openChannel(file(METADATA_SUFFIX));
+        deletedChannel = openChannel(file(DELETED_SUFFIX));
+    }
+
+    private void closeChannels() {
+        closeQuietly(vectorsChannel);
+        closeQuietly(indexChannel);
+        closeQuietly(metadataChannel);
+        closeQuietly(deletedChannel);
+    }
+
+    private Path file(String suffix) {
+        return directory.resolve(baseName + suffix);
+    }
+
+    private Path compactFile(String suffix) {
+        return directory.resolve(baseName + COMPACT_SUFFIX + suffix);
+    }
+
+    /**
+     * @param directory The directory holding the segment files.
+     * @param baseName  The file name without suffix.
+     * @return {@code true} if a vector block for this segment exists.
+     */
+    static boolean exists(Path directory, String baseName) {
+        return Files.exists(directory.resolve(baseName + VECTORS_SUFFIX));
+    }
+
+    private static FileChannel openChannel(Path path) throws IOException {
+        return FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * Deletes the files of a segment that is not open, including any partial compaction.
+     * @param directory The directory holding the segment files.
+     * @param baseName  The file name without suffix.
+     * @throws IOException if a file cannot be deleted.
+     */
+    static void deleteFiles(Path directory, String baseName) throws IOException {
+        for (String suffix : new String[] {VECTORS_SUFFIX, INDEX_SUFFIX, METADATA_SUFFIX, DELETED_SUFFIX, COMPACT_SUFFIX}) {
+            Files.deleteIfExists(directory.resolve(baseName + suffix));
+        }
+        for (String suffix : new String[] {VECTORS_SUFFIX, INDEX_SUFFIX, METADATA_SUFFIX}) {
+            Files.deleteIfExists(directory.resolve(baseName + COMPACT_SUFFIX + suffix));
+        }
+    }
+
+    /** @return The path of the vector block file. */
+    Path getVectorsPath() {
+        return vectorsPath;
+    }
+
+    /** @return The file name of the segment without suffix. */
+    String getBaseName() {
+        return baseName;
+    }
+
+    /** @return The number of documents in the segment. */
+    @Override
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** @return The embedding dimension, or 0 if the segment is empty. */
+    @Override
+    public int dimension() {
+        lock.readLock().lock();
+        try {
+            return dimension;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Reads headers and index entries, recovers from a torn tail and maps the vector block. */
+    private void load() throws IOException {
+        long vectorsBytes = vectorsChannel.size();
+        if (vectorsBytes >= HEADER_BYTES) {
+            ByteBuffer header = readFully(vectorsChannel, 0, HEADER_BYTES);
+            checkHeader(header, VECTORS_MAGIC, "vector block");
+            this.dimension = header.getInt(8);
+            if (this.dimension <= 0) {
+                throw new VectorStoreException("Corrupt vector segment header in " + vectorsPath + ": dimension " + dimension);
+            }
+        }
+        long indexBytes = indexChannel.size();
+        if (indexBytes >= HEADER_BYTES) {
+            checkHeader(readFully(indexChannel, 0, HEADER_BYTES), INDEX_MAGIC, "index");
+        } else {
+            writeFully(indexChannel, 0, header(INDEX_MAGIC, 0));
+            indexBytes = HEADER_BYTES;
+        }
+
+        long vectorRecords = dimension > 0 ? (vectorsBytes - HEADER_BYTES) / recordBytes() : 0;
+        long indexRecords = (indexBytes - HEADER_BYTES) / INDEX_ENTRY_BYTES;
+        int candidates = (int) Math.min(Math.min(vectorRecords, indexRecords), Integer.MAX_VALUE);
+
+        long metadataBytes = metadataChannel.size();
+        ensureCapacity(candidates);
+        ByteBuffer entries = candidates > 0
+                ? readFully(indexChannel, HEADER_BYTES, candidates * INDEX_ENTRY_BYTES)
+                : ByteBuffer.allocate(0);
+        int complete = 0;
+        long end = 0;
+        for (int i = 0; i < candidates; i++) {
+            long offset = entries.getLong(i * INDEX_ENTRY_BYTES);
+            int length = entries.getInt(i * INDEX_ENTRY_BYTES + 8);
+            if (offset != end || length < 0 || offset + length > metadataBytes) {
+                break;
+            }
+            metadataOffsets[i] = offset;
+            metadataLengths[i] = length;
+            norms[i] = entries.getFloat(i * INDEX_ENTRY_BYTES + 12);
+            end = offset + length;
+            complete++;
+        }
+        this.size = complete;
+        this.metadataEnd = end;
+
+        long expectedVectors = dimension > 0 ? HEADER_BYTES + (long) complete * recordBytes() : vectorsBytes;
+        long expectedIndex = HEADER_BYTES + (long) complete * INDEX_ENTRY_BYTES;
+        if (vectorsBytes > expectedVectors || indexBytes > expectedIndex || metadataBytes > end) {
+            System.err.println("Warning: Vector segment " + vectorsPath + " has an incomplete tail; truncating to " +
+                               complete + " complete documents.");
+            vectorsChannel.truncate(expectedVectors);
+            indexChannel.truncate(expectedIndex);
+            metadataChannel.truncate(end);
+        }
+        loadTombstones();
+        remap(0);
+    }
+
+    /** Reads the tombstone bitset, ignoring bits beyond the last complete record. */
+    private void loadTombstones() throws IOException {
+        int words = (int) (deletedChannel.size() / Long.BYTES);
+        ByteBuffer bytes = words > 0 ? readFully(deletedChannel, 0, words * Long.BYTES) : ByteBuffer.allocate(0);
+        BitSet tombstones = BitSet.valueOf(bytes.order(ByteOrder.LITTLE_ENDIAN));
+        if (tombstones.length() > size) {
+            tombstones.clear(size, tombstones.length());
+        }
+        this.deleted = tombstones;
+        this.deletedCount = tombstones.cardinality();
+    }
+
+    private void checkHeader(ByteBuffer header, int magic, String description) throws VectorStoreException {
+        if (header.getInt(0) != magic) {
+            throw new VectorStoreException("Not a vector segment " + description + " (bad magic) next to " + vectorsPath);
+        }
+        if (header.getInt(4) != FORMAT_VERSION) {
+            throw new VectorStoreException("Unsupported vector segment version " + header.getInt(4) + " next to " + vectorsPath);
+        }
+    }
+
+    private static ByteBuffer header(int magic, int dimension) {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(magic).putInt(FORMAT_VERSION).putInt(dimension).putInt(0).flip();
+        return header;
+    }
+
+    private long recordBytes() {
+        return (long) dimension * Float.BYTES;
+    }
+
+    /**
+     * Appends documents. All documents are validated before anything is written; if writing fails,
+     * the files are truncated back to their previous length.
+     *
+     * @param documents The documents to append; each must have an embedding of the segment's dimension.
+     * @throws VectorStoreException if a document is invalid or the write fails.
+     */
+    @Override
+    public void append(List<Document> documents) throws VectorStoreException {
+        if (documents.isEmpty()) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            appendLocked(documents);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Validates and appends documents. Caller must hold the write lock. */
+    private void appendLocked(List<Document> documents) throws VectorStoreException {
+        try {
+            int newDimension = dimension;
+            for (Document doc : documents) {
+                Objects.requireNonNull(doc, "Document in list cannot be null.");
+                int length = doc.getEmbeddingVector().length;
+                if (length == 0) {
+                    throw new VectorStoreException("Document embedding cannot be null or empty when adding to FileVectorStore. Doc ID: " + doc.getId());
+                }
+                if (newDimension == 0) {
+                    newDimension = length;
+                } else if (length != newDimension) {
+                    throw new VectorStoreException("Document embedding dimension " + length + " does not match segment dimension " +
+                                                   newDimension + ". Doc ID: " + doc.getId());
+                }
+            }
+
+            int count = documents.size();
+            long recordBytes = (long) newDimension * Float.BYTES;
+            List<byte[]> metadata = new ArrayList<>(count);
+            for (Document doc : documents) {
+                metadata.add(metadataMapper.writeValueAsBytes(doc));
+            }
+            ByteBuffer vectors = ByteBuffer.allocate(Math.toIntExact(count * recordBytes)).order(ByteOrder.LITTLE_ENDIAN);
+            ByteBuffer entries = ByteBuffer.allocate(count * INDEX_ENTRY_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            ByteBuffer metadataBytes = ByteBuffer.allocate(metadata.stream().mapToInt(b -> b.length).sum());
+            float[] newNorms = new float[count];
+            long offset = metadataEnd;
+            for (int i = 0; i < count; i++) {
+                float[] vector = documents.get(i).getEmbeddingVector();
+                vectors.asFloatBuffer().put(i * newDimension, vector);
+                newNorms[i] = (float) SimilaritySearchUtils.l2Norm(vector);
+                entries.putLong(offset).putInt(metadata.get(i).length).putFloat(newNorms[i]);
+                metadataBytes.put(metadata.get(i));
+                offset += metadata.get(i).length;
+            }
+            entries.flip();
+            metadataBytes.flip();
+
+            long vectorsStart = HEADER_BYTES + (long) size * recordBytes;
+            long indexStart = HEADER_BYTES + (long) size * INDEX_ENTRY_BYTES;
+            try {
+                if (dimension == 0) {
+                    writeFully(vectorsChannel, 0, header(VECTORS_MAGIC, newDimension));
+                }
+                writeFully(metadataChannel, metadataEnd, metadataBytes);
+                writeFully(vectorsChannel, vectorsStart, vectors);
+                // The index entry is written last: a record only counts once all three parts exist.
+                writeFully(indexChannel, indexStart, entries);
+            } catch (IOException e) {
+                rollback(vectorsStart, indexStart);
+                throw new VectorStoreException("Failed to append documents to vector segment: " + vectorsPath, e);
+            }
+
+            ensureCapacity(size + count);
+            long metadataOffset = metadataEnd;
+            for (int i = 0; i < count; i++) {
+                metadataOffsets[size + i] = metadataOffset;
+                metadataLengths[size + i] = metadata.get(i).length;
+                norms[size + i] = newNorms[i];
+                metadataOffset += metadata.get(i).length;
+            }
+            int firstChanged = size;
+            this.dimension = newDimension;
+            this.metadataEnd = metadataOffset;
+            this.size += count;
+            this.modificationCount++;
+            if (documentIds != null) {
+                for (int i = 0; i < count; i++) {
+                    documentIds.add(documents.get(i).getId(), firstChanged + i);
+                }
+            }
+            if (metadataIndex != null) {
+                for (int i = 0; i < count; i++) {
+                    metadataIndex.add(firstChanged + i, documents.get(i).getMetadata());
+                }
+            }
+            if (lexicalIndex != null) {
+                for (int i = 0; i < count; i++) {
+                    lexicalIndex.add(firstChanged + i, documents.get(i).getContent());
+                }
+            }
+            remap(firstChanged);
+        } catch (IOException e) {
+            throw new VectorStoreException("Failed to append documents to vector segment: " + vectorsPath, e);
+        }
+    }
+
+    /**
+     * Deletes every record holding one of the given IDs by setting its tombstone bit.
+     * @param ids The document IDs to delete; unknown IDs are ignored.
+     * @return The number of records deleted.
+     * @throws VectorStoreException if the tombstones cannot be written.
+     */
+    @Override
+    public int delete(List<String> ids) throws VectorStoreException {
+        lock.writeLock().lock();
+        try {
+            DocumentIdIndex index = documentIds();
+            int before = deletedCount;
+            for (String id : ids) {
+                tombstone(index.remove(Objects.requireNonNull(id, "Document ID cannot be null.")));
+            }
+            return deletedCount - before;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Appends documents and then tombstones the records they replace (older records with the same IDs,
+     * including earlier entries of the same list). A crash in between leaves both versions rather than neither.
+     * @param documents The documents to insert or replace.
+     * @throws VectorStoreException if a document is invalid or a write fails.
+     */
+    @Override
+    public void upsert(List<Document> documents) throws VectorStoreException {
+        if (documents.isEmpty()) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            DocumentIdIndex index = documentIds();
+            appendLocked(documents);
+            for (Document doc : documents) {
+                tombstone(index.supersede(doc.getId()));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** @return The number of deleted records not yet compacted away. */
+    @Override
+    public int deletedCount() {
+        lock.readLock().lock();
+        try {
+            return deletedCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the ID index, building it from the metadata file on first use. Caller must hold the write lock.
+     */
+    private DocumentIdIndex documentIds() throws VectorStoreException {
+        if (documentIds == null) {
+            DocumentIdIndex index = new DocumentIdIndex();
+            for (int ordinal = 0; ordinal < size; ordinal++) {
+                if (!deleted.get(ordinal)) {
+                    index.add(readId(ordinal), ordinal);
+                }
+            }
+            documentIds = index;
+        }
+        return documentIds;
+    }
+
+    /**
+     * Returns the metadata index, building it from the metadata file on first use. Caller must hold the lock;
+     * concurrent searches holding the read lock build it only once.
+     */
+    private MetadataIndex metadataIndex() throws VectorStoreException {
+        MetadataIndex index = metadataIndex;
+        if (index == null) {
+            synchronized (metadataIndexMonitor) {
+                index = metadataIndex;
+                if (index == null) {
+                    index = new MetadataIndex();
+                    for (int ordinal = 0; ordinal < size; ordinal++) {
+                        index.add(ordinal, readMetadata(ordinal));
+                    }
+                    metadataIndex = index;
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Builds a BM25 index over the content of every record and keeps it up to date on append. The index lives
+     * in memory only, so it is rebuilt from the metadata file each time the segment is opened and enabled.
+     * @param index An empty index with the BM25 parameters to use.
+     * @throws VectorStoreException if the metadata file cannot be read.
+     */
+    @Override
+    public void enableLexicalIndex(Bm25Index index) throws VectorStoreException {
+        lock.writeLock().lock();
+        try {
+            for (int ordinal = 0; ordinal < size; ordinal++) {
+                index.add(ordinal, readField(ordinal, "content", String.class));
+            }
+            lexicalIndex = index;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** @return {@code true} if {@link #enableLexicalIndex(Bm25Index)} has been called. */
+    @Override
+    public boolean lexicalIndexEnabled() {
+        lock.readLock().lock();
+        try {
+            return lexicalIndex != null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Finds the {@code k} live records scoring highest for a query under BM25 and materializes them.
+     * @param queryText The query text.
+     * @param k         The number of results.
+     * @return Up to k documents, highest score first, with their BM25 scores set.
+     * @throws IllegalStateException if the lexical index is not enabled.
+     * @throws VectorStoreException if metadata cannot be read.
+     */
+    @Override
+    public List<Document> lexicalSearch(String queryText, int k) throws VectorStoreException {
+        lock.readLock().lock();
+        try {
+            if (lexicalIndex == null) {
+                throw new IllegalStateException("Lexical index is not enabled for vector segment " + vectorsPath);
+            }
+            List<Bm25Index.Hit> hits = lexicalIndex.search(queryText, k, deletedCount > 0 ? deleted : null);
+            List<Document> results = new ArrayList<>(hits.size());
+            for (Bm25Index.Hit hit : hits) {
+                Document doc = materialize(hit.ordinal());
+                doc.setScore(hit.score());
+                results.add(doc);
+            }
+            return results;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Reads just the {@code id} field of a record's metadata, without binding the rest of the document. */
+    private String readId(int ordinal) throws VectorStoreException {
+        String id = readField(ordinal, "id", String.class);
+        if (id == null) {
+            throw new VectorStoreException("Document " + ordinal + " in vector segment " + vectorsPath + " has no id.");
+        }
+        return id;
+    }
+
+    /** Reads just the {@code metadata} map of a record. */
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> readMetadata(int ordinal) throws VectorStoreException {
+        return readField(ordinal, "metadata", Map.class);
+    }
+
+    /** Streams a record's JSON up to one top-level field and binds only that field; {@code null} if absent. */
+    private <T> T readField(int ordinal, String name, Class<T> type) throws VectorStoreException {
+        try {
+            ByteBuffer json = readFully(metadataChannel, metadataOffsets[ordinal], metadataLengths[ordinal]);
+            try (JsonParser parser = metadataMapper.getFactory().createParser(json.array())) {
+                if (parser.nextToken() == JsonToken.START_OBJECT) {
+                    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                        String field = parser.currentName();
+                        parser.nextToken();
+                        if (name.equals(field)) {
+                            return metadataMapper.readValue(parser, type);
+                        }
+                        parser.skipChildren();
+                    }
+                }
+            }
+            return null;
+        } catch (IOException e) {
+            throw new VectorStoreException("Failed to read document " + ordinal + " from vector segment: " + vectorsPath, e);
+        }
+    }
+
+    /**
+     * Sets tombstone bits and persists the 8-byte words that changed. Caller must hold the write lock.
+     */
+    private void tombstone(int[] ordinals) throws VectorStoreException {
+        if (ordinals.length == 0) {
+            return;
+        }
+        ByteBuffer word = ByteBuffer.allocate(Long.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        try {
+            for (int ordinal : ordinals) {
+                if (deleted.get(ordinal)) {
+                    continue;
+                }
+                deleted.set(ordinal);
+                deletedCount++;
+                int wordStart = ordinal - ordinal % Long.SIZE;
+                long[] bits = deleted.get(wordStart, wordStart + Long.SIZE).toLongArray();
+                word.clear();
+                word.putLong(0, bits.length > 0 ? bits[0] : 0L);
+                writeFully(deletedChannel, (long) (wordStart / Long.SIZE) * Long.BYTES, word);
+            }
+            modificationCount++;
+        } catch (IOException e) {
+            throw new VectorStoreException("Failed to write tombstones for vector segment: " + vectorsPath, e);
+        }
+    }
+
+    private void rollback(long vectorsLength, long indexLength) {
+        try {
+            vectorsChannel.truncate(dimension == 0 ? 0 : vectorsLength);
+            indexChannel.truncate(indexLength);
+            metadataChannel.truncate(metadataEnd);
+        } catch (IOException e) {
+            System.err.println("Warning: Failed to roll back partial write to vector segment " + vectorsPath + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Finds the {@code k} documents nearest to the query by cosine distance and materializes them.
+     * The scan only reads the mapped vector block; metadata is read for the results alone.
+     *
+     * @param queryVector       The query vector.
+     * @param k                 The number of results.
+     * @param filter            Restricts the scan to records whose metadata passes it, or {@code null}.
+     * @param kernels           The kernels used for the dot products.
+     * @param parallelThreshold Minimum segment size for a parallel scan (see {@link PartitionedScan}).
+     * @param pool              The pool for parallel scans.
+     * @return Up to k documents, most similar first, with their scores set.
+     * @throws VectorStoreException if the query dimension does not match or metadata cannot be read.
+     */
+    @Override
+    public List<Document> search(float[] queryVector, int k, MetadataFilter filter, VectorKernels kernels,
+                                 int parallelThreshold, ForkJoinPool pool) throws VectorStoreException {
+        lock.readLock().lock();
+        try {
+            if (size == deletedCount) {
+                return new ArrayList<>();
+            }
+            if (queryVector.length != dimension) {
+                throw new VectorStoreException("Query dimension " + queryVector.length + " does not match segment dimension " + dimension + ".");
+            }
+            BitSet candidates = null;
+            if (filter != null) {
+                candidates = metadataIndex().matches(filter);
+                candidates.andNot(deleted);
+                if (candidates.isEmpty()) {
+                    return new ArrayList<>();
+                }
+            }
+            float[] unitQuery = SimilaritySearchUtils.normalize(queryVector);
+            BitSet tombstones = (deletedCount > 0 && candidates == null) ? deleted : null;
+            PartitionedScan.DistanceFunction distanceFunction = ordinal -> {
+                if (tombstones != null && tombstones.get(ordinal)) {
+                    return Double.NaN;
+                }
+                float norm = norms[ordinal];
+                if (norm == 0.0f) {
+                    return 1.0; // Zero vector: same convention as SimilaritySearchUtils.cosineDistance
+                }
+                double similarity = kernels.dot(unitQuery, readVector(ordinal, scratchBuffer())) / norm;
+                return 1.0 - Math.max(-1.0, Math.min(1.0, similarity));
+            };
+            TopKCollector nearest = (candidates == null)
+                    ? PartitionedScan.scan(size, k, distanceFunction, parallelThreshold, pool)
+                    : PartitionedScan.scan(candidates.stream().toArray(), k, distanceFunction, parallelThreshold, pool);
+
+            List<Document> results = new ArrayList<>(nearest.size());
+            for (int i = 0; i < nearest.size(); i++) {
+                Document doc = materialize(nearest.ordinal(i));
+                doc.setScore((float) (1.0 - nearest.distance(i)));
+                results.add(doc);
+            }
+            return results;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Finds the {@code k} documents nearest to each of several queries in one blocked pass over the
+     * mapped vector block (see {@link PartitionedScan#scanBatch}). Each record is copied out of the
+     * mapping once per query block and its dot products with the block share the loads.
+     *
+     * @param queries           Query vectors of equal dimension.
+     * @param k                 The number of results per query.
+     * @param kernels           The kernels used for the dot products.
+     * @param parallelThreshold Minimum segment size for a parallel scan.
+     * @param pool              The pool for parallel scans.
+     * @return One list per query of up to k documents, most similar first, with their scores set.
+     * @throws VectorStoreException if the query dimension does not match or metadata cannot be read.
+     */
+    @Override
+    public List<List<Document>> searchBatch(float[][] queries, int k, VectorKernels kernels, int parallelThreshold,
+                                            ForkJoinPool pool) throws VectorStoreException {
+        lock.readLock().lock();
+        try {
+            List<List<Document>> results = new ArrayList<>(queries.length);
+            if (queries.length == 0 || size == deletedCount) {
+                for (int q = 0; q < queries.length; q++) {
+                    results.add(new ArrayList<>());
+                }
+                return results;
+            }
+            if (queries[0].length != dimension) {
+                throw new VectorStoreException("Query dimension " + queries[0].length + " does not match segment dimension " + dimension + ".");
+            }
+            float[][] unitQueries = new float[queries.length][];
+            for (int q = 0; q < queries.length; q++) {
+                unitQueries[q] = SimilaritySearchUtils.normalize(queries[q]);
+            }
+            BitSet tombstones = (deletedCount > 0) ? deleted : null;
+            TopKCollector[] nearest = PartitionedScan.scanBatch(size, queries.length, k, (ordinal, fromQuery, toQuery, distances) -> {
+                float norm = norms[ordinal];
+                if (tombstones != null && tombstones.get(ordinal)) {
+                    Arrays.fill(distances, 0, toQuery - fromQuery, Double.NaN);
+                    return;
+                }
+                if (norm == 0.0f) {
+                    Arrays.fill(distances, 0, toQuery - fromQuery, 1.0); // Zero vector, as in search()
+                    return;
+                }
+                kernels.dotBatch(unitQueries, fromQuery, toQuery, readVector(ordinal, scratchBuffer()), distances);
+                for (int i = 0; i < toQuery - fromQuery; i++) {
+                    double similarity = (float) distances[i] / norm; // Same float arithmetic as search()
+                    distances[i] = 1.0 - Math.max(-1.0, Math.min(1.0, similarity));
+                }
+            }, parallelThreshold, pool);
+
+            for (TopKCollector collector : nearest) {
+                List<Document> docs = new ArrayList<>(collector.size());
+                for (int i = 0; i < collector.size(); i++) {
+                    Document doc = materialize(collector.ordinal(i));
+                    doc.setScore((float) (1.0 - collector.distance(i)));
+                    docs.add(doc);
+                }
+                results.add(docs);
+            }
+            return results;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Reads every live document in ordinal order. Intended for migrations and tests, not for search.
+     * @return All documents that are not deleted, with their embeddings.
+     */
+    @Override
+    public List<Document> readAll() throws VectorStoreException {
+        lock.readLock().lock();
+        try {
+            List<Document> documents = new ArrayList<>(size - deletedCount);
+            for (int ordinal = deleted.nextClearBit(0); ordinal < size; ordinal = deleted.nextClearBit(ordinal + 1)) {
+                documents.add(materialize(ordinal));
+            }
+            return documents;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Builds the full document for an ordinal. Caller must hold the lock. */
+    private Document materialize(int ordinal) throws VectorStoreException {
+        try {
+            ByteBuffer json = readFully(metadataChannel, metadataOffsets[ordinal], metadataLengths[ordinal]);
+            Document doc = metadataMapper.readValue(json.array(), Document.class);
+            doc.setEmbeddingVector(readVector(ordinal, new float[dimension]));
+            return doc;
+        } catch (IOException e) {
+            throw new VectorStoreException("Failed to read document " + ordinal + " from vector segment: " + vectorsPath, e);
+        }
+    }
+
+    private float[] scratchBuffer() {
+        float[] buffer = scratch.get();
+        if (buffer.length != dimension) {
+            buffer = new float[dimension];
+            scratch.set(buffer);
+        }
+        return buffer;
+    }
+
+    /** Copies the record at an ordinal out of the mapped block. Caller must hold the lock. */
+    private float[] readVector(int ordinal, float[] destination) {
+        FloatBuffer chunk = vectorChunks[ordinal / recordsPerChunk];
+        // Absolute bulk get: does not touch the buffer position, so concurrent readers are safe.
+        chunk.get((ordinal % recordsPerChunk) * dimension, destination);
+        return destination;
+    }
+
+    /**
+     * (Re)maps the vector block from the chunk containing {@code fromOrdinal}. Full chunks before it are kept.
+     * Caller must hold the write lock (or be loading).
+     */
+    private void remap(int fromOrdinal) throws IOException {
+        if (dimension == 0 || size == 0) {
+            vectorChunks = new FloatBuffer[0];
+            return;
+        }
+        recordsPerChunk = (int) Math.max(1, MAX_CHUNK_BYTES / recordBytes());
+        int chunkCount = (size + recordsPerChunk - 1) / recordsPerChunk;
+        int firstChunk = Math.min(fromOrdinal / recordsPerChunk, vectorChunks.length);
+        FloatBuffer[] chunks = Arrays.copyOf(vectorChunks, chunkCount);
+        for (int c = firstChunk; c < chunkCount; c++) {
+            int firstRecord = c * recordsPerChunk;
+            int records = Math.min(recordsPerChunk, size - firstRecord);
+            chunks[c] = vectorsChannel.map(FileChannel.MapMode.READ_ONLY,
+                            HEADER_BYTES + firstRecord * recordBytes(), records * recordBytes())
+                    .order(ByteOrder.LITTLE_ENDIAN)
+                    .asFloatBuffer();
+        }
+        vectorChunks = chunks;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > norms.length) {
+            int newCapacity = Math.max(capacity, norms.length + (norms.length >> 1));
+            metadataOffsets = Arrays.copyOf(metadataOffsets, newCapacity);
+            metadataLengths = Arrays.copyOf(metadataLengths, newCapacity);
+            norms = Arrays.copyOf(norms, newCapacity);
+        }
+    }
+
+    /**
+     * Rewrites the segment without its deleted records. The live records are copied to
+     * {@code base.compact.*} files under the read lock, so searches continue meanwhile; the write lock is
+     * only held to rename the copies over the segment and reload it. Ordinals change, so callers must not
+     * hold on to them across a compaction. If the segment is modified while copying, the copies are
+     * discarded and nothing is reclaimed; callers that serialize their writes (as {@link FileVectorStore}
+     * does) never hit this case.
+     *
+     * @return The number of records reclaimed.
+     * @throws VectorStoreException if the copies cannot be written or the segment cannot be reopened.
+     */
+    @Override
+    public int compact() throws VectorStoreException {
+        long observedModifications;
+        int[] oldToNew;
+        Bm25Index remappedLexical;
+        lock.readLock().lock();
+        try {
+            if (deletedCount == 0) {
+                return 0;
+            }
+            observedModifications = modificationCount;
+            oldToNew = writeCompactedCopy();
+            remappedLexical = (lexicalIndex != null) ? lexicalIndex.remap(oldToNew) : null;
+        } catch (IOException e) {
+            discardCompaction();
+            throw new VectorStoreException("Failed to compact vector segment: " + vectorsPath, e);
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        lock.writeLock().lock();
+        try {
+            if (observedModifications != modificationCount) {
+                discardCompaction();
+                return 0;
+            }
+            int reclaimed = deletedCount;
+            DocumentIdIndex remappedIds = (documentIds != null) ? documentIds.remap(oldToNew) : null;
+            vectorChunks = new FloatBuffer[0];
+            closeChannels();
+            try {
+                recoverCompaction();
+                openChannels();
+                load();
+            } catch (IOException e) {
+                throw new VectorStoreException("Failed to reopen vector segment after compaction: " + vectorsPath, e);
+            }
+            documentIds = remappedIds;
+            metadataIndex = null; // Rebuilt on the next filtered search
+            lexicalIndex = remappedLexical;
+            modificationCount++;
+            return reclaimed;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Copies the live records into the {@code base.compact.*} files, forces them to disk and creates the
+     * completion marker. Caller must hold the lock.
+     * @return The new ordinal of each old ordinal, or -1 for deleted records.
+     */
+    private int[] writeCompactedCopy() throws IOException {
+        int[] oldToNew = new int[size];
+        try (FileChannel vectors = FileChannel.open(compactFile(VECTORS_SUFFIX), StandardOpenOption.CREATE,
+                     StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+             FileChannel index = FileChannel.open(compactFile(INDEX_SUFFIX), StandardOpenOption.CREATE,
+                     StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+             FileChannel metadata = FileChannel.open(compactFile(METADATA_SUFFIX), StandardOpenOption.CREATE,
+                     StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeFully(vectors, 0, header(VECTORS_MAGIC, dimension));
+            writeFully(index, 0, header(INDEX_MAGIC, 0));
+            float[] vector = new float[dimension];
+            ByteBuffer record = ByteBuffer.allocate(Math.toIntExact(recordBytes())).order(ByteOrder.LITTLE_ENDIAN);
+            ByteBuffer entry = ByteBuffer.allocate(INDEX_ENTRY_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            int live = 0;
+            long metadataOffset = 0;
+            for (int ordinal = 0; ordinal < size; ordinal++) {
+                if (deleted.get(ordinal)) {
+                    oldToNew[ordinal] = -1;
+                    continue;
+                }
+                oldToNew[ordinal] = live;
+                ByteBuffer json = readFully(metadataChannel, metadataOffsets[ordinal], metadataLengths[ordinal]);
+                writeFully(metadata, metadataOffset, json);
+                record.clear();
+                record.asFloatBuffer().put(readVector(ordinal, vector));
+                writeFully(vectors, HEADER_BYTES + live * recordBytes(), record);
+                entry.clear();
+                entry.putLong(metadataOffset).putInt(metadataLengths[ordinal]).putFloat(norms[ordinal]).flip();
+                writeFully(index, HEADER_BYTES + (long) live * INDEX_ENTRY_BYTES, entry);
+                metadataOffset += metadataLengths[ordinal];
+                live++;
+            }
+            vectors.force(true);
+            index.force(true);
+            metadata.force(true);
+        }
+        Files.write(file(COMPACT_SUFFIX), new byte[0]);
+        return oldToNew;
+    }
+
+    /**
+     * Completes or discards a compaction interrupted by a crash (or just written by {@link #compact()}).
+     * With the completion marker present, the remaining copies are renamed over the segment and the
+     * tombstones removed; without it, the partial copies are deleted. Channels must be closed.
+     */
+    private void recoverCompaction() throws IOException {
+        Path marker = file(COMPACT_SUFFIX);
+        if (!Files.exists(marker)) {
+            discardCompaction();
+            return;
+        }
+        for (String suffix : new String[] {METADATA_SUFFIX, VECTORS_SUFFIX, INDEX_SUFFIX}) {
+            Path copy = compactFile(suffix);
+            if (Files.exists(copy)) {
+                Files.move(copy, file(suffix), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+        }
+        Files.deleteIfExists(file(DELETED_SUFFIX));
+        Files.delete(marker);
+    }
+
+    /** Deletes partial compaction copies, if any. */
+    private void discardCompaction() {
+        try {
+            Files.deleteIfExists(file(COMPACT_SUFFIX));
+            for (String suffix : new String[] {VECTORS_SUFFIX, INDEX_SUFFIX, METADATA_SUFFIX}) {
+                Files.deleteIfExists(compactFile(suffix));
+            }
+        } catch (IOException e) {
+            System.err.println("Warning: Failed to delete partial compaction of vector segment " + vectorsPath + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Removes all documents, truncating the segment files.
+     * @throws VectorStoreException if an I/O error occurs.
+     */
+    @Override
+    public void clear() throws VectorStoreException {
+        lock.writeLock().lock();
+        try {
+            vectorChunks = new FloatBuffer[0];
+            vectorsChannel.truncate(0);
+            metadataChannel.truncate(0);
+            indexChannel.truncate(HEADER_BYTES);
+            deletedChannel.truncate(0);
+            size = 0;
+            dimension = 0;
+            metadataEnd = 0;
+            deleted = new BitSet();
+            deletedCount = 0;
+            documentIds = (documentIds != null) ? new DocumentIdIndex() : null;
+            metadataIndex = (metadataIndex != null) ? new MetadataIndex() : null;
+            if (lexicalIndex != null) {
+                lexicalIndex.clear();
+            }
+            modificationCount++;
+        } catch (IOException e) {
+            throw new VectorStoreException("Failed to clear vector segment: " + vectorsPath, e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Appends every live document to another segment, in ordinal order and in batches. Deletes wait until the
+     * copy is done; searches continue.
+     * @param target    The segment to append to.
+     * @param batchSize The number of documents per append.
+     * @throws VectorStoreException if a document cannot be read or appended.
+     */
+    void copyLiveTo(VectorSegment target, int batchSize) throws VectorStoreException {
+        lock.readLock().lock();
+        try {
+            List<Document> batch = new ArrayList<>(batchSize);
+            for (int ordinal = deleted.nextClearBit(0); ordinal < size; ordinal = deleted.nextClearBit(ordinal + 1)) {
+                batch.add(materialize(ordinal));
+                if (batch.size() == batchSize) {
+                    target.append(batch);
+                    batch.clear();
+                }
+            }
+            target.append(batch);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Forces the segment files to disk, e.g. before a newly written segment replaces others.
+     * @throws VectorStoreException if syncing fails.
+     */
+    void force() throws VectorStoreException {
+        lock.readLock().lock();
+        try {
+            vectorsChannel.force(true);
+            indexChannel.force(true);
+            metadataChannel.force(true);
+            deletedChannel.force(true);
+        } catch (IOException e) {
+            throw new VectorStoreException("Failed to sync vector segment: " + vectorsPath, e);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            vectorChunks = new FloatBuffer[0];
+            vectorsChannel.close();
+            indexChannel.close();
+            metadataChannel.close();
+            deletedChannel.close();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of file at position " + (position + buffer.position()));
+            }
+        }
+        return buffer.flip();
+    }
+
+    private static void writeFully(FileChannel channel, long position, ByteBuffer buffer) throws IOException {
+        long written = 0;
+        while (buffer.hasRemaining()) {
+            written += channel.write(buffer, position + written);
+        }
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // Already failing; the original exception is more useful.
+            }
+        }
+    }
+}
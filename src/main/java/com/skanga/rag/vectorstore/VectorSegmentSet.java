@@ -0,0 +1,771 @@
+package com.skanga.rag.vectorstore;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.skanga.rag.Document;
+import com.skanga.rag.vectorstore.filter.MetadataFilter;
+import com.skanga.rag.vectorstore.search.Bm25Index;
+import com.skanga.rag.vectorstore.search.VectorKernels;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A log-structured set of {@link VectorSegment}s, used by {@link FileVectorStore} in
+ * {@link FileVectorStore.StorageFormat#SEGMENTED} mode.
+ *
+ * <p>New documents are appended to the <em>active</em> segment. Once it holds
+ * {@link #getSegmentDocuments()} documents it is sealed: it receives no more appends, only tombstones,
+ * and a new active segment is started. Searches scan all segments in parallel, each with the
+ * partitioned scan of a single segment, and merge their top-k lists by score. A delete tombstones the
+ * document in whichever segment holds it; an upsert appends the new version to the active segment
+ * before tombstoning the old ones.</p>
+ *
+ * <p><b>Merging:</b> {@link #compact()} merges sealed segments whose live documents number fewer than
+ * {@code segmentDocuments * mergeFactor}, {@code mergeFactor} at a time and smallest first, into a new
+ * segment without their tombstoned documents. Segments left with tombstones are then compacted in place.</p>
+ *
+ * <p><b>Files:</b> a segment set named {@code base} lists its segments, oldest first and the active one
+ * last, in {@code base.segments}. Segment {@code n} has the files of a {@link VectorSegment} named
+ * {@code base-00000n}. The list is replaced atomically, after a merged segment has been written and
+ * synced and before the merged inputs are deleted, so a crash leaves either the inputs or the merged
+ * segment listed. Segment files not listed are left over from such a crash and are deleted on open.</p>
+ *
+ * <p><b>Thread Safety:</b> Searches hold a read lock while they scan, so the list of segments does not
+ * change under them; sealing, the end of a merge and {@link #clear()} take the write lock. Each segment
+ * also has its own lock. Merges assume writes are serialized by the caller, as {@link FileVectorStore} does.</p>
+ */
+final class VectorSegmentSet implements SegmentStorage {
+
+    static final String MANIFEST_SUFFIX = ".segments";
+    /** Default number of documents at which the active segment is sealed. */
+    static final int DEFAULT_SEGMENT_DOCUMENTS = 100_000;
+    /** Default number of small segments merged at a time. */
+    static final int DEFAULT_MERGE_FACTOR = 4;
+
+    private static final String MANIFEST_HEADER = "agentforge-vector-segments 1";
+    /** Documents per append while copying segments into a merged one. */
+    private static final int MERGE_BATCH_SIZE = 1024;
+
+    private final Path directory;
+    private final String baseName;
+    private final Path manifestPath;
+    private final ObjectMapper objectMapper;
+    private final Pattern segmentFilePattern;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /** Sealed segments, oldest first. Guarded by {@link #lock}. */
+    private final List<VectorSegment> sealed = new ArrayList<>();
+    /** The segment receiving appends. Guarded by {@link #lock}. */
+    private VectorSegment active;
+    /** Number of the next segment created. Guarded by the write lock. */
+    private int nextSegment;
+    /** Template for the BM25 index of each segment; {@code null} unless lexical search is enabled. */
+    private volatile Bm25Index lexicalTemplate;
+    private volatile int segmentDocuments = DEFAULT_SEGMENT_DOCUMENTS;
+    private volatile int mergeFactor = DEFAULT_MERGE_FACTOR;
+
+    private VectorSegmentSet(Path directory, String baseName, ObjectMapper objectMapper) {
+        this.directory = directory;
+        this.baseName = baseName;
+        this.manifestPath = directory.resolve(baseName + MANIFEST_SUFFIX);
+        this.objectMapper = objectMapper;
+        this.segmentFilePattern = Pattern.compile(Pattern.quote(baseName) + "-(\\d+)\\..*");
+    }
+
+    /**
+     * Opens the segment set with the given base name, creating it if it does not exist.
+     *
+     * @param directory    The directory holding the segment files.
+     * @param baseName     The name of the set; segment files are named after it.
+     * @param objectMapper The mapper used for document metadata.
+     * @return The opened set.
+     * @throws VectorStoreException if the list of segments or a segment cannot be read.
+     */
+    static VectorSegmentSet open(Path directory, String baseName, ObjectMapper objectMapper) throws VectorStoreException {
+        VectorSegmentSet set = new VectorSegmentSet(directory, baseName, objectMapper);
+        try {
+            set.load();
+            return set;
+        } catch (IOException | RuntimeException e) {
+            set.closeQuietly();
+            if (e instanceof VectorStoreException) {
+                throw (VectorStoreException) e;
+            }
+            throw new VectorStoreException("Failed to open vector segment set: " + set.manifestPath, e);
+        }
+    }
+
+    /**
+     * @param directory The directory holding the segment files.
+     * @param baseName  The name of the set.
+     * @return {@code true} if the list of segments exists.
+     */
+    static boolean exists(Path directory, String baseName) {
+        return Files.exists(directory.resolve(baseName + MANIFEST_SUFFIX));
+    }
+
+    private void load() throws IOException {
+        List<String> names = new ArrayList<>();
+        boolean created = !Files.exists(manifestPath);
+        if (!created) {
+            List<String> lines = Files.readAllLines(manifestPath, StandardCharsets.UTF_8);
+            if (lines.isEmpty() || !MANIFEST_HEADER.equals(lines.get(0))) {
+                throw new VectorStoreException("Not a vector segment list, or an unsupported version: " + manifestPath);
+            }
+            for (String line : lines.subList(1, lines.size())) {
+                if (!line.isBlank()) {
+                    names.add(line.trim());
+                }
+            }
+        }
+        for (String name : names) {
+            nextSegment = Math.max(nextSegment, segmentNumber(name) + 1);
+        }
+        deleteUnlistedSegments(new HashSet<>(names));
+        if (names.isEmpty()) {
+            nextSegment = Math.max(nextSegment, 1);
+            names.add(segmentName(nextSegment++));
+        }
+        for (int i = 0; i < names.size() - 1; i++) {
+            sealed.add(VectorSegment.open(directory, names.get(i), objectMapper));
+        }
+        active = VectorSegment.open(directory, names.get(names.size() - 1), objectMapper);
+        if (created) {
+            writeManifest();
+        }
+    }
+
+    private String segmentName(int number) {
+        return String.format("%s-%06d", baseName, number);
+    }
+
+    private int segmentNumber(String name) throws VectorStoreException {
+        Matcher matcher = segmentFilePattern.matcher(name + ".");
+        if (!matcher.matches()) {
+            throw new VectorStoreException("Unexpected segment name \"" + name + "\" in " + manifestPath);
+        }
+        return Integer.parseInt(matcher.group(1));
+    }
+
+    /** Deletes the files of segments a crash left behind: a merged segment not yet listed, or merged inputs. */
+    private void deleteUnlistedSegments(Set<String> listed) throws IOException {
+        Set<String> unlisted = new HashSet<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                Matcher matcher = segmentFilePattern.matcher(file.getFileName().toString());
+                if (matcher.matches()) {
+                    String name = segmentName(Integer.parseInt(matcher.group(1)));
+                    if (!listed.contains(name)) {
+                        unlisted.add(name);
+                        nextSegment = Math.max(nextSegment, Integer.parseInt(matcher.group(1)) + 1);
+                    }
+                }
+            }
+        }
+        for (String name : unlisted) {
+            System.err.println("Warning: Deleting vector segment " + name + " in " + directory + ", which " + manifestPath +
+                               " does not list (left over from an interrupted merge).");
+            VectorSegment.deleteFiles(directory, name);
+        }
+    }
+
+    /** Replaces the list of segments atomically. Caller must hold the write lock (or be loading). */
+    private void writeManifest() throws IOException {
+        StringBuilder manifest = new StringBuilder(MANIFEST_HEADER).append('\n');
+        for (VectorSegment segment : sealed) {
+            manifest.append(segment.getBaseName()).append('\n');
+        }
+        manifest.append(active.getBaseName()).append('\n');
+        Path tempFile = manifestPath.resolveSibling(manifestPath.getFileName() + ".tmp");
+        Files.write(tempFile, manifest.toString().getBytes(StandardCharsets.UTF_8));
+        Files.move(tempFile, manifestPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /** @return The path of the list of segments. */
+    Path getManifestPath() {
+        return manifestPath;
+    }
+
+    /**
+     * @param segmentDocuments The number of documents at which the active segment is sealed. Must be positive.
+     * @param mergeFactor      The number of small segments merged at a time. Must be at least 2.
+     * @throws IllegalArgumentException if a parameter is out of range.
+     */
+    void configure(int segmentDocuments, int mergeFactor) {
+        if (segmentDocuments <= 0) {
+            throw new IllegalArgumentException("Segment document count must be positive.");
+        }
+        if (mergeFactor < 2) {
+            throw new IllegalArgumentException("Merge factor must be at least 2.");
+        }
+        this.segmentDocuments = segmentDocuments;
+        this.mergeFactor = mergeFactor;
+    }
+
+    /** @return The number of documents at which the active segment is sealed. */
+    int getSegmentDocuments() {
+        return segmentDocuments;
+    }
+
+    /** @return The number of segments, the active one included. */
+    int segmentCount() {
+        lock.readLock().lock();
+        try {
+            return sealed.size() + 1;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** @return All segments, oldest first. Caller must hold the lock. */
+    private List<VectorSegment> segments() {
+        List<VectorSegment> segments = new ArrayList<>(sealed.size() + 1);
+        segments.addAll(sealed);
+        segments.add(active);
+        return segments;
+    }
+
+    @Override
+    public int size() {
+        lock.readLock().lock();
+        try {
+            int size = 0;
+            for (VectorSegment segment : segments()) {
+                size += segment.size();
+            }
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int dimension() {
+        lock.readLock().lock();
+        try {
+            for (VectorSegment segment : segments()) {
+                int dimension = segment.dimension();
+                if (dimension > 0) {
+                    return dimension;
+                }
+            }
+            return 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int deletedCount() {
+        lock.readLock().lock();
+        try {
+            int deleted = 0;
+            for (VectorSegment segment : segments()) {
+                deleted += segment.deletedCount();
+            }
+            return deleted;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Appends documents to the active segment, then seals it if it is full. All documents must have the
+     * dimension of the documents already stored, in any segment.
+     */
+    @Override
+    public void append(List<Document> documents) throws VectorStoreException {
+        if (documents.isEmpty()) {
+            return;
+        }
+        checkDimension(documents);
+        lock.readLock().lock();
+        try {
+            active.append(documents);
+        } finally {
+            lock.readLock().unlock();
+        }
+        sealIfFull();
+    }
+
+    /**
+     * Deletes the given IDs from every segment.
+     * @return The number of documents deleted.
+     */
+    @Override
+    public int delete(List<String> ids) throws VectorStoreException {
+        lock.readLock().lock();
+        try {
+            int deleted = 0;
+            for (VectorSegment segment : segments()) {
+                deleted += segment.delete(ids);
+            }
+            return deleted;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Upserts documents into the active segment and then deletes their IDs from the sealed segments, so a
+     * crash in between leaves both versions rather than neither.
+     */
+    @Override
+    public void upsert(List<Document> documents) throws VectorStoreException {
+        if (documents.isEmpty()) {
+            return;
+        }
+        checkDimension(documents);
+        List<String> ids = new ArrayList<>(documents.size());
+        for (Document doc : documents) {
+            ids.add(doc.getId());
+        }
+        lock.readLock().lock();
+        try {
+            active.upsert(documents);
+            for (VectorSegment segment : sealed) {
+                segment.delete(ids);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        sealIfFull();
+    }
+
+    /** Rejects documents whose dimension differs from the stored ones, which the active segment alone cannot check. */
+    private void checkDimension(List<Document> documents) throws VectorStoreException {
+        int dimension = dimension();
+        for (Document doc : documents) {
+            int length = Objects.requireNonNull(doc, "Document in list cannot be null.").getEmbeddingVector().length;
+            if (dimension > 0 && length > 0 && length != dimension) {
+                throw new VectorStoreException("Document embedding dimension " + length + " does not match segment dimension " +
+                                               dimension + ". Doc ID: " + doc.getId());
+            }
+        }
+    }
+
+    /** Seals the active segment once it holds {@link #getSegmentDocuments()} documents and starts a new one. */
+    private void sealIfFull() throws VectorStoreException {
+        lock.writeLock().lock();
+        try {
+            if (active.size() < segmentDocuments) {
+                return;
+            }
+            VectorSegment next = newSegment();
+            sealed.add(active);
+            active = next;
+            try {
+                writeManifest();
+            } catch (IOException e) {
+                active = sealed.remove(sealed.size() - 1);
+                discard(next);
+                throw new VectorStoreException("Failed to seal vector segment " + active.getBaseName() + " in " + manifestPath, e);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Opens a new, empty segment with the lexical index enabled if the set has one. Caller must hold the write lock. */
+    private VectorSegment newSegment() throws VectorStoreException {
+        VectorSegment segment = VectorSegment.open(directory, segmentName(nextSegment++), objectMapper);
+        Bm25Index template = lexicalTemplate;
+        if (template != null) {
+            segment.enableLexicalIndex(template.emptyCopy());
+        }
+        return segment;
+    }
+
+    /** Closes and deletes a segment that is not listed. */
+    private void discard(VectorSegment segment) {
+        try {
+            segment.close();
+            VectorSegment.deleteFiles(directory, segment.getBaseName());
+        } catch (IOException e) {
+            System.err.println("Warning: Failed to delete vector segment " + segment.getBaseName() + " in " + directory + ": " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void enableLexicalIndex(Bm25Index index) throws VectorStoreException {
+        lock.writeLock().lock();
+        try {
+            lexicalTemplate = index.emptyCopy();
+            for (VectorSegment segment : segments()) {
+                segment.enableLexicalIndex(index.emptyCopy());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean lexicalIndexEnabled() {
+        return lexicalTemplate != null;
+    }
+
+    /**
+     * Runs the lexical search on each segment and merges the results by score. Each segment scores with its
+     * own BM25 statistics, so scores from segments of very different content are only roughly comparable.
+     */
+    @Override
+    public List<Document> lexicalSearch(String queryText, int k) throws VectorStoreException {
+        lock.readLock().lock();
+        try {
+            if (lexicalTemplate == null) {
+                throw new IllegalStateException("Lexical index is not enabled for vector segment set " + manifestPath);
+            }
+            List<List<Document>> perSegment = new ArrayList<>();
+            for (VectorSegment segment : segments()) {
+                perSegment.add(segment.lexicalSearch(queryText, k));
+            }
+            return mergeByScore(perSegment, k);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Searches the segments in parallel on the pool and merges their top-k lists by score. A segment large
+     * enough for a partitioned scan is itself split further.
+     */
+    @Override
+    public List<Document> search(float[] queryVector, int k, MetadataFilter filter, VectorKernels kernels,
+                                 int parallelThreshold, ForkJoinPool pool) throws VectorStoreException {
+        lock.readLock().lock();
+        try {
+            List<VectorSegment> segments = liveSegments();
+            if (segments.size() <= 1) {
+                return segments.isEmpty() ? new ArrayList<>()
+                        : segments.get(0).search(queryVector, k, filter, kernels, parallelThreshold, pool);
+            }
+            List<ForkJoinTask<List<Document>>> tasks = new ArrayList<>(segments.size());
+            for (VectorSegment segment : segments) {
+                tasks.add(pool.submit(() -> segment.search(queryVector, k, filter, kernels, parallelThreshold, pool)));
+            }
+            List<List<Document>> perSegment = new ArrayList<>(tasks.size());
+            for (ForkJoinTask<List<Document>> task : tasks) {
+                perSegment.add(join(task));
+            }
+            return mergeByScore(perSegment, k);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Searches the segments in parallel, each with one blocked pass for the whole batch, and merges per query. */
+    @Override
+    public List<List<Document>> searchBatch(float[][] queries, int k, VectorKernels kernels, int parallelThreshold,
+                                            ForkJoinPool pool) throws VectorStoreException {
+        lock.readLock().lock();
+        try {
+            List<VectorSegment> segments = liveSegments();
+            if (segments.size() <= 1) {
+                return segments.isEmpty() ? emptyResults(queries.length)
+                        : segments.get(0).searchBatch(queries, k, kernels, parallelThreshold, pool);
+            }
+            List<ForkJoinTask<List<List<Document>>>> tasks = new ArrayList<>(segments.size());
+            for (VectorSegment segment : segments) {
+                tasks.add(pool.submit(() -> segment.searchBatch(queries, k, kernels, parallelThreshold, pool)));
+            }
+            List<List<List<Document>>> perSegment = new ArrayList<>(tasks.size());
+            for (ForkJoinTask<List<List<Document>>> task : tasks) {
+                perSegment.add(join(task));
+            }
+            List<List<Document>> results = new ArrayList<>(queries.length);
+            for (int q = 0; q < queries.length; q++) {
+                List<List<Document>> perQuery = new ArrayList<>(perSegment.size());
+                for (List<List<Document>> segmentResults : perSegment) {
+                    perQuery.add(segmentResults.get(q));
+                }
+                results.add(mergeByScore(perQuery, k));
+            }
+            return results;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static List<List<Document>> emptyResults(int queries) {
+        List<List<Document>> results = new ArrayList<>(queries);
+        for (int q = 0; q < queries; q++) {
+            results.add(new ArrayList<>());
+        }
+        return results;
+    }
+
+    /** @return The segments holding live documents. Caller must hold the lock. */
+    private List<VectorSegment> liveSegments() {
+        List<VectorSegment> live = new ArrayList<>();
+        for (VectorSegment segment : segments()) {
+            if (segment.size() > segment.deletedCount()) {
+                live.add(segment);
+            }
+        }
+        return live;
+    }
+
+    private static <T> T join(ForkJoinTask<T> task) throws VectorStoreException {
+        try {
+            return task.join();
+        } catch (RuntimeException e) {
+            Throwable cause = BulkIngester.unwrap(e);
+            if (cause instanceof VectorStoreException vse) {
+                throw vse;
+            }
+            throw e;
+        }
+    }
+
+    /** Merges per-segment result lists, each sorted by descending score, into the overall top k. */
+    private static List<Document> mergeByScore(List<List<Document>> perSegment, int k) {
+        List<Document> merged = new ArrayList<>();
+        for (List<Document> results : perSegment) {
+            merged.addAll(results);
+        }
+        merged.sort(Comparator.comparingDouble((Document doc) -> doc.getScore()).reversed());
+        return new ArrayList<>(merged.subList(0, Math.min(k, merged.size())));
+    }
+
+    @Override
+    public List<Document> readAll() throws VectorStoreException {
+        lock.readLock().lock();
+        try {
+            List<Document> documents = new ArrayList<>();
+            for (VectorSegment segment : segments()) {
+                documents.addAll(segment.readAll());
+            }
+            return documents;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return {@code true} if a sealed segment has no live documents left, or enough small sealed segments
+     *         have accumulated to merge.
+     */
+    @Override
+    public boolean needsMerge() {
+        lock.readLock().lock();
+        try {
+            return !emptySealedSegments().isEmpty() || !mergeCandidates().isEmpty();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** @return Sealed segments whose documents are all deleted. Caller must hold the lock. */
+    private List<VectorSegment> emptySealedSegments() {
+        List<VectorSegment> empty = new ArrayList<>();
+        for (VectorSegment segment : sealed) {
+            if (segment.size() == segment.deletedCount()) {
+                empty.add(segment);
+            }
+        }
+        return empty;
+    }
+
+    /**
+     * Picks the {@code mergeFactor} smallest sealed segments with fewer than {@code segmentDocuments * mergeFactor}
+     * live documents, if there are that many. Caller must hold the lock.
+     * @return The segments to merge, or an empty list.
+     */
+    private List<VectorSegment> mergeCandidates() {
+        long smallLimit = (long) segmentDocuments * mergeFactor;
+        List<VectorSegment> small = new ArrayList<>();
+        for (VectorSegment segment : sealed) {
+            int live = segment.size() - segment.deletedCount();
+            if (live > 0 && live < smallLimit) {
+                small.add(segment);
+            }
+        }
+        if (small.size() < mergeFactor) {
+            return new ArrayList<>();
+        }
+        small.sort(Comparator.comparingInt(segment -> segment.size() - segment.deletedCount()));
+        return new ArrayList<>(small.subList(0, mergeFactor));
+    }
+
+    /**
+     * Drops sealed segments without live documents, merges small sealed segments until too few remain
+     * (see the class documentation), and compacts the remaining segments that have tombstones. Searches keep
+     * running while documents are copied; writes must not run concurrently.
+     *
+     * @return The number of deleted documents reclaimed.
+     * @throws VectorStoreException if a segment cannot be written or the list of segments cannot be updated.
+     */
+    @Override
+    public int compact() throws VectorStoreException {
+        int reclaimed = 0;
+        List<VectorSegment> empty;
+        lock.readLock().lock();
+        try {
+            empty = emptySealedSegments();
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (!empty.isEmpty()) {
+            reclaimed += replace(empty, null);
+        }
+        while (true) {
+            List<VectorSegment> inputs;
+            lock.readLock().lock();
+            try {
+                inputs = mergeCandidates();
+            } finally {
+                lock.readLock().unlock();
+            }
+            if (inputs.isEmpty()) {
+                break;
+            }
+            reclaimed += merge(inputs);
+        }
+        lock.readLock().lock();
+        try {
+            for (VectorSegment segment : segments()) {
+                if (segment.deletedCount() > 0) {
+                    reclaimed += segment.compact();
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return reclaimed;
+    }
+
+    /** Copies the live documents of the inputs into a new segment and swaps it in for them. */
+    private int merge(List<VectorSegment> inputs) throws VectorStoreException {
+        VectorSegment merged;
+        lock.writeLock().lock();
+        try {
+            merged = newSegment();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        try {
+            for (VectorSegment input : inputs) {
+                input.copyLiveTo(merged, MERGE_BATCH_SIZE);
+            }
+            merged.force();
+        } catch (RuntimeException e) {
+            discard(merged);
+            throw e;
+        }
+        return replace(inputs, merged);
+    }
+
+    /**
+     * Replaces sealed segments with a merged one (or with nothing), lists the result, then closes and deletes
+     * the replaced segments.
+     * @return The number of deleted documents the replaced segments held.
+     */
+    private int replace(List<VectorSegment> replaced, VectorSegment merged) throws VectorStoreException {
+        lock.writeLock().lock();
+        try {
+            List<VectorSegment> previous = new ArrayList<>(sealed);
+            sealed.clear();
+            for (VectorSegment segment : previous) {
+                if (!replaced.contains(segment)) {
+                    sealed.add(segment);
+                } else if (merged != null && !sealed.contains(merged)) {
+                    sealed.add(merged); // Takes the place of the oldest input
+                }
+            }
+            try {
+                writeManifest();
+            } catch (IOException e) {
+                sealed.clear();
+                sealed.addAll(previous);
+                if (merged != null) {
+                    discard(merged);
+                }
+                throw new VectorStoreException("Failed to update the list of vector segments: " + manifestPath, e);
+            }
+            int reclaimed = 0;
+            for (VectorSegment segment : replaced) {
+                reclaimed += segment.deletedCount();
+                discard(segment);
+            }
+            return reclaimed;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Removes all documents: deletes the sealed segments and clears the active one. */
+    @Override
+    public void clear() throws VectorStoreException {
+        lock.writeLock().lock();
+        try {
+            List<VectorSegment> removed = new ArrayList<>(sealed);
+            sealed.clear();
+            active.clear();
+            try {
+                writeManifest();
+            } catch (IOException e) {
+                sealed.addAll(removed);
+                throw new VectorStoreException("Failed to update the list of vector segments: " + manifestPath, e);
+            }
+            for (VectorSegment segment : removed) {
+                discard(segment);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            IOException failure = null;
+            for (VectorSegment segment : segments()) {
+                try {
+                    segment.close();
+                } catch (IOException e) {
+                    if (failure == null) {
+                        failure = e;
+                    } else {
+                        failure.addSuppressed(e);
+                    }
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void closeQuietly() {
+        List<VectorSegment> opened = new ArrayList<>(sealed);
+        if (active != null) {
+            opened.add(active);
+        }
+        for (VectorSegment segment : opened) {
+            try {
+                segment.close();
+            } catch (IOException ignored) {
+                // Already failing; the original exception is more useful.
+            }
+        }
+    }
+}
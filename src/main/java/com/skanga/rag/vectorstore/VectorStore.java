@@ -1,7 +1,16 @@
 package com.skanga.rag.vectorstore;
 
 import com.skanga.rag.Document;
+import com.skanga.rag.embeddings.EmbeddingUtils;
+import com.skanga.rag.vectorstore.filter.MetadataFilter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Interface for vector stores used in Retrieval Augmented Generation (RAG).
@@ -51,22 +60,229 @@ public interface VectorStore {
      */
     List<Document> similaritySearch(List<Double> queryEmbedding, int k) throws VectorStoreException;
 
-    // --- Potential future enhancements for the interface ---
-    // /**
-    //  * Deletes documents from the vector store based on their IDs.
-    //  * @param documentIds A list of IDs of documents to delete.
-    //  * @throws VectorStoreException if an error occurs.
-    //  */
-    // void deleteDocuments(List<String> documentIds) throws VectorStoreException;
+    /**
+     * Adds documents without blocking the caller; the asynchronous form of {@link #addDocuments(List)}.
+     *
+     * <p>Remote stores send the request with their client's non-blocking API, so no thread waits for the
+     * network round trip. The default implementation runs {@link #addDocuments(List)} on {@link #asyncExecutor()},
+     * which suits stores that work locally.</p>
+     *
+     * @param documents A list of {@link Document} objects to add.
+     * @return A future completing when the documents are stored, or exceptionally with the
+     *         {@link VectorStoreException} (or other exception) that {@link #addDocuments(List)} would throw.
+     */
+    default CompletableFuture<Void> addDocumentsAsync(List<Document> documents) {
+        return CompletableFuture.runAsync(() -> addDocuments(documents), asyncExecutor());
+    }
 
-    // /**
-    //  * Updates existing documents in the vector store.
-    //  * Documents are typically identified by their ID.
-    //  * @param documents A list of documents to update.
-    //  * @throws VectorStoreException if an error occurs.
-    //  */
-    // void updateDocuments(List<Document> documents) throws VectorStoreException;
+    /**
+     * Performs a similarity search without blocking the caller; the asynchronous form of
+     * {@link #similaritySearch(List, int)}, for composing retrieval into future-based pipelines.
+     *
+     * <p>Remote stores send the query with their client's non-blocking API. The default implementation runs
+     * {@link #similaritySearch(List, int)} on {@link #asyncExecutor()}.</p>
+     *
+     * @param queryEmbedding The vector embedding of the query text.
+     * @param k              The number of top similar documents to retrieve.
+     * @return A future completing with the documents {@link #similaritySearch(List, int)} would return, or
+     *         exceptionally with the exception it would throw.
+     */
+    default CompletableFuture<List<Document>> similaritySearchAsync(List<Double> queryEmbedding, int k) {
+        return CompletableFuture.supplyAsync(() -> similaritySearch(queryEmbedding, k), asyncExecutor());
+    }
 
+    /**
+     * Returns the executor on which the default {@link #addDocumentsAsync(List)} and
+     * {@link #similaritySearchAsync(List, int)} run the blocking operations. Defaults to
+     * {@link ForkJoinPool#commonPool()}; local stores let it be configured.
+     *
+     * @return The executor for asynchronous operations.
+     */
+    default Executor asyncExecutor() {
+        return ForkJoinPool.commonPool();
+    }
+
+    /**
+     * Performs a similarity search using a primitive query vector.
+     * Semantically identical to {@link #similaritySearch(List, int)}, but avoids boxing the query.
+     * Stores that score locally (e.g., {@link MemoryVectorStore}, {@link FileVectorStore}) override
+     * this method as their primary search path. The default implementation adapts the vector
+     * to a {@code List<Double>} and delegates to {@link #similaritySearch(List, int)}.
+     *
+     * @param queryVector The vector embedding of the query text.
+     * @param k           The number of top similar documents to retrieve.
+     * @return A list of {@link Document} objects most similar to the query, highest score first.
+     * @throws VectorStoreException if an error occurs during the search operation.
+     */
+    default List<Document> similaritySearchVector(float[] queryVector, int k) throws VectorStoreException {
+        Objects.requireNonNull(queryVector, "Query vector cannot be null for similarity search.");
+        return similaritySearch(EmbeddingUtils.toDoubleList(queryVector), k);
+    }
+
+    /**
+     * Performs a similarity search for several queries at once, e.g. an evaluation run or the
+     * sub-queries of a multi-query retrieval. Each result list is what {@link #similaritySearch(List, int)}
+     * would return for the corresponding query; stores that score locally make one pass over their vectors
+     * for the whole batch, and remote stores send the batch in one request where their API allows it.
+     *
+     * <p>The default implementation calls {@link #similaritySearch(List, int)} for each query in turn.</p>
+     *
+     * @param queryEmbeddings The query embeddings.
+     * @param k               The number of top similar documents to retrieve per query.
+     * @return One result list per query, in query order, each sorted highest score first.
+     * @throws VectorStoreException if an error occurs during the search operation.
+     */
+    default List<List<Document>> similaritySearchBatch(List<List<Double>> queryEmbeddings, int k) throws VectorStoreException {
+        Objects.requireNonNull(queryEmbeddings, "Query embeddings cannot be null for batch similarity search.");
+        List<List<Document>> results = new ArrayList<>(queryEmbeddings.size());
+        for (List<Double> queryEmbedding : queryEmbeddings) {
+            results.add(similaritySearch(queryEmbedding, k));
+        }
+        return results;
+    }
+
+    /**
+     * Performs a similarity search for several primitive query vectors at once.
+     * Semantically identical to {@link #similaritySearchBatch(List, int)}, but avoids boxing the queries.
+     * The default implementation adapts the vectors and delegates to {@link #similaritySearchBatch(List, int)}.
+     *
+     * @param queryVectors The query vectors.
+     * @param k            The number of top similar documents to retrieve per query.
+     * @return One result list per query, in query order, each sorted highest score first.
+     * @throws VectorStoreException if an error occurs during the search operation.
+     */
+    default List<List<Document>> similaritySearchBatchVector(List<float[]> queryVectors, int k) throws VectorStoreException {
+        Objects.requireNonNull(queryVectors, "Query vectors cannot be null for batch similarity search.");
+        List<List<Double>> queryEmbeddings = new ArrayList<>(queryVectors.size());
+        for (float[] queryVector : queryVectors) {
+            queryEmbeddings.add(EmbeddingUtils.toDoubleList(Objects.requireNonNull(queryVector, "Query vector cannot be null.")));
+        }
+        return similaritySearchBatch(queryEmbeddings, k);
+    }
+
+    /**
+     * Performs a similarity search restricted to documents whose metadata passes a filter.
+     * Equivalent to {@link #similaritySearchVector(float[], int, MetadataFilter)} with a boxed query.
+     *
+     * @param queryEmbedding The vector embedding of the query text.
+     * @param k              The number of top similar documents to retrieve.
+     * @param filter         The metadata filter, or {@code null} for an unfiltered search.
+     * @return Up to {@code k} matching documents, highest score first.
+     * @throws VectorStoreException if an error occurs during the search operation.
+     * @throws UnsupportedOperationException if the filter is not null and the store does not support filtering.
+     */
+    default List<Document> similaritySearch(List<Double> queryEmbedding, int k, MetadataFilter filter) throws VectorStoreException {
+        Objects.requireNonNull(queryEmbedding, "Query embedding cannot be null for similarity search.");
+        return similaritySearchVector(EmbeddingUtils.toFloatArray(queryEmbedding), k, filter);
+    }
+
+    /**
+     * Performs a similarity search restricted to documents whose metadata passes a filter.
+     * The filter is applied before ranking, so the result holds the {@code k} nearest matching
+     * documents rather than the matching subset of the {@code k} nearest overall.
+     *
+     * <p>The default implementation delegates to {@link #similaritySearchVector(float[], int)} when the filter
+     * is null and throws {@link UnsupportedOperationException} otherwise; stores that support filtering
+     * override it.</p>
+     *
+     * @param queryVector The vector embedding of the query text.
+     * @param k           The number of top similar documents to retrieve.
+     * @param filter      The metadata filter, or {@code null} for an unfiltered search.
+     * @return Up to {@code k} matching documents, highest score first.
+     * @throws VectorStoreException if an error occurs during the search operation.
+     * @throws UnsupportedOperationException if the filter is not null and the store does not support filtering.
+     */
+    default List<Document> similaritySearchVector(float[] queryVector, int k, MetadataFilter filter) throws VectorStoreException {
+        if (filter == null) {
+            return similaritySearchVector(queryVector, k);
+        }
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " does not support metadata filters.");
+    }
+
+    /**
+     * Performs a lexical (keyword) search over the documents' content, typically scored with BM25.
+     * Unlike a similarity search it matches the query's terms literally, so it finds exact identifiers such
+     * as error codes or product numbers that embeddings tend to blur; combining both rankings (see
+     * {@link com.skanga.rag.vectorstore.search.ReciprocalRankFusion}) is usually better than either alone.
+     *
+     * <p>The default implementation throws {@link UnsupportedOperationException}; stores that keep a
+     * lexical index override it.</p>
+     *
+     * @param queryText The query text.
+     * @param k         The number of top matching documents to retrieve.
+     * @return Up to {@code k} documents containing query terms, highest score first, with the lexical
+     *         score set (see {@link Document#setScore(float)}). Scores are not comparable with similarity scores.
+     * @throws VectorStoreException if an error occurs during the search operation.
+     * @throws UnsupportedOperationException if the store has no lexical index.
+     */
+    default List<Document> lexicalSearch(String queryText, int k) throws VectorStoreException {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " does not support lexical search.");
+    }
+
+    /**
+     * Deletes documents from the vector store by their IDs.
+     * IDs that are not present in the store are ignored. If several stored documents share an ID,
+     * all of them are deleted.
+     *
+     * <p>The default implementation throws {@link UnsupportedOperationException}; stores that support
+     * deletion override it.</p>
+     *
+     * @param documentIds A list of IDs of documents to delete.
+     * @throws VectorStoreException if an error occurs during the operation.
+     * @throws UnsupportedOperationException if the store does not support deletion.
+     */
+    default void deleteDocuments(List<String> documentIds) throws VectorStoreException {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " does not support deleting documents.");
+    }
+
+    /**
+     * Inserts or replaces documents by ID: afterwards, the store holds exactly one document for each ID
+     * in the list (the last one given for that ID), and documents with other IDs are untouched.
+     *
+     * <p>The default implementation calls {@link #deleteDocuments(List)} and then {@link #addDocuments(List)},
+     * so it is not atomic: a failure in between leaves the old documents deleted. Stores override it
+     * with a native upsert where one exists.</p>
+     *
+     * @param documents A list of documents to insert or replace. Embeddings should be populated.
+     * @throws VectorStoreException if an error occurs during the operation.
+     * @throws UnsupportedOperationException if the store does not support deletion.
+     */
+    default void upsertDocuments(List<Document> documents) throws VectorStoreException {
+        Objects.requireNonNull(documents, "Documents list cannot be null.");
+        List<String> ids = new ArrayList<>(documents.size());
+        for (Document document : documents) {
+            ids.add(Objects.requireNonNull(document, "Document in list cannot be null.").getId());
+        }
+        deleteDocuments(ids);
+        addDocuments(lastPerId(documents));
+    }
+
+    /**
+     * Updates existing documents in the vector store, identified by their ID.
+     * Equivalent to {@link #upsertDocuments(List)}: documents whose ID is not yet stored are added.
+     *
+     * @param documents A list of documents to update.
+     * @throws VectorStoreException if an error occurs.
+     */
+    default void updateDocuments(List<Document> documents) throws VectorStoreException {
+        upsertDocuments(documents);
+    }
+
+    /**
+     * Keeps the last document for each ID, in the order of those last occurrences.
+     * @param documents Documents that may repeat an ID.
+     * @return The documents to store when upserting the list.
+     */
+    private static List<Document> lastPerId(List<Document> documents) {
+        Map<String, Document> lastById = new LinkedHashMap<>();
+        for (Document document : documents) {
+            lastById.remove(document.getId());
+            lastById.put(document.getId(), document);
+        }
+        return lastById.size() == documents.size() ? documents : new ArrayList<>(lastById.values());
+    }
+
+    // --- Potential future enhancements for the interface ---
     // /**
     //  * Performs a similarity search using raw query text, implying the vector store
     //  * might handle embedding the query text itself using a configured EmbeddingProvider.
@@ -0,0 +1,654 @@
+package com.skanga.rag.vectorstore;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32C;
+
+/**
+ * An append-only log of opaque records, written by a single thread that group-commits concurrent appends.
+ *
+ * <p><b>Format:</b> a 16-byte header (magic, version and a caller-defined {@code base}, e.g. the length of the
+ * file the log is checkpointed into), followed by records of a 4-byte payload length, the payload's 4-byte
+ * CRC32C and the payload. On open, the log is truncated to the longest prefix of complete records whose
+ * checksums match, so a crash midway through an append leaves no partial record behind. A crash may keep a
+ * prefix of the records of an append that had not been acknowledged.</p>
+ *
+ * <p><b>Group commit:</b> {@link #append(List)} only queues the records. The writer thread takes every append
+ * queued by the time it is free (optionally waiting {@link Options#groupCommitDelay()} for more), writes them
+ * with one gathering write and, depending on the {@link SyncMode}, one {@code fsync}, and then acknowledges
+ * all of them. Concurrent writers therefore share the cost of the write and the sync.</p>
+ *
+ * <p><b>Thread Safety:</b> all methods may be called from any thread. Reads ({@link #forEach(RecordVisitor)})
+ * see the records acknowledged when they start. {@link #checkpoint(CheckpointAction)} and
+ * {@link #reset(long)} truncate the log, so callers must keep readers out while they run.</p>
+ */
+public final class WriteAheadLog implements Closeable {
+
+    /** When appended records are forced to disk. */
+    public enum SyncMode {
+        /** Each group commit is synced before its appends are acknowledged; acknowledged records survive power loss. */
+        COMMIT,
+        /**
+         * Appends are acknowledged once written, and the log is synced at most every {@link Options#syncInterval()}.
+         * Acknowledged records survive a crash of the process; power loss may lose the last interval.
+         */
+        INTERVAL,
+        /** The log is only synced on checkpoints and on close; the operating system decides the rest. */
+        NONE
+    }
+
+    /**
+     * Configuration of a {@link WriteAheadLog}.
+     *
+     * @param syncMode         When records are forced to disk.
+     * @param syncInterval     The longest time between syncs in {@link SyncMode#INTERVAL} mode.
+     * @param groupCommitDelay How long the writer waits for more appends before committing a group; zero commits
+     *                         whatever is queued at once. A short delay trades latency for fewer syncs.
+     * @param checkpointBytes  The log size at which its owner checkpoints it.
+     */
+    public record Options(SyncMode syncMode, Duration syncInterval, Duration groupCommitDelay, long checkpointBytes) {
+
+        /** Sync every group commit, no added delay, checkpoint at 64 MB. */
+        public static final Options DEFAULT = new Options(SyncMode.COMMIT, Duration.ofSeconds(1), Duration.ZERO, 64L * 1024 * 1024);
+
+        public Options {
+            Objects.requireNonNull(syncMode, "Sync mode cannot be null.");
+            Objects.requireNonNull(syncInterval, "Sync interval cannot be null.");
+            Objects.requireNonNull(groupCommitDelay, "Group commit delay cannot be null.");
+            if (syncInterval.isNegative() || syncInterval.isZero()) {
+                throw new IllegalArgumentException("Sync interval must be positive.");
+            }
+            if (groupCommitDelay.isNegative()) {
+                throw new IllegalArgumentException("Group commit delay cannot be negative.");
+            }
+            if (checkpointBytes <= 0) {
+                throw new IllegalArgumentException("Checkpoint size must be positive.");
+            }
+        }
+
+        /** @return These options with another sync mode. */
+        public Options withSyncMode(SyncMode syncMode) {
+            return new Options(syncMode, syncInterval, groupCommitDelay, checkpointBytes);
+        }
+
+        /** @return These options in {@link SyncMode#INTERVAL} mode, syncing at most every {@code syncInterval}. */
+        public Options withSyncInterval(Duration syncInterval) {
+            return new Options(SyncMode.INTERVAL, syncInterval, groupCommitDelay, checkpointBytes);
+        }
+
+        /** @return These options with another group commit delay. */
+        public Options withGroupCommitDelay(Duration groupCommitDelay) {
+            return new Options(syncMode, syncInterval, groupCommitDelay, checkpointBytes);
+        }
+
+        /** @return These options with another checkpoint size. */
+        public Options withCheckpointBytes(long checkpointBytes) {
+            return new Options(syncMode, syncInterval, groupCommitDelay, checkpointBytes);
+        }
+    }
+
+    /** Receives the payload of each record, in order. */
+    @FunctionalInterface
+    public interface RecordVisitor {
+        void accept(byte[] payload) throws IOException;
+    }
+
+    /** Applies the records of a log elsewhere before the log is emptied; see {@link #checkpoint(CheckpointAction)}. */
+    @FunctionalInterface
+    public interface CheckpointAction {
+        /**
+         * @param payloads The payloads of all records, in order.
+         * @return The base to record in the emptied log.
+         * @throws IOException if the records could not be applied; the log is then left unchanged.
+         */
+        long apply(List<byte[]> payloads) throws IOException;
+    }
+
+    /** Changes the file a log is checkpointed into; see {@link #checkpoint(CheckpointAction, FileChange)}. */
+    @FunctionalInterface
+    public interface FileChange {
+        /**
+         * @return The base to record in the log afterwards.
+         * @throws IOException if the change failed; the log has been checkpointed regardless.
+         */
+        long apply() throws IOException;
+    }
+
+    static final int HEADER_BYTES = 16;
+    static final int RECORD_HEADER_BYTES = 8;
+    private static final int MAGIC = 0x4146574C; // "AFWL"
+    private static final int VERSION = 1;
+    /** Largest payload accepted; a larger length in the file means a torn or corrupt record. */
+    private static final int MAX_PAYLOAD_BYTES = 1 << 30;
+    private static final int READ_BUFFER_BYTES = 1 << 20;
+
+    private final Path path;
+    private final Options options;
+    private final FileChannel channel;
+    private final BlockingQueue<Task> queue = new LinkedBlockingQueue<>();
+    private final Thread writer;
+
+    /** End of the acknowledged records; written by the writer thread only. */
+    private volatile long committedLength;
+    private volatile int recordCount;
+    private volatile long base;
+    private volatile long groupCommits;
+    private volatile long syncs;
+    private volatile boolean closed;
+    /** Writer thread only: the length last forced to disk, and when. */
+    private long syncedLength;
+    private long lastSyncNanos = System.nanoTime();
+
+    private WriteAheadLog(Path path, Options options, FileChannel channel, long base, long committedLength, int recordCount) {
+        this.path = path;
+        this.options = options;
+        this.channel = channel;
+        this.base = base;
+        this.committedLength = committedLength;
+        this.syncedLength = committedLength;
+        this.recordCount = recordCount;
+        this.writer = new Thread(this::run, "agentforge-wal-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Opens or creates a log, truncating a torn tail.
+     *
+     * @param path        The log file.
+     * @param options     The configuration.
+     * @param initialBase The base recorded if the log is created.
+     * @return The open log, with its writer thread started.
+     * @throws IOException if the file cannot be opened, or is not a write-ahead log.
+     */
+    public static WriteAheadLog open(Path path, Options options, long initialBase) throws IOException {
+        Objects.requireNonNull(path, "Log path cannot be null.");
+        Objects.requireNonNull(options, "Options cannot be null.");
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            long size = channel.size();
+            if (size < HEADER_BYTES) {
+                // New, or a crash while creating it: no record can have been acknowledged.
+                channel.truncate(0);
+                writeHeader(channel, initialBase);
+                channel.force(true);
+                return new WriteAheadLog(path, options, channel, initialBase, HEADER_BYTES, 0);
+            }
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            readFully(channel, header, 0);
+            header.flip();
+            if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+                throw new IOException("Not a write-ahead log, or an unsupported version: " + path);
+            }
+            long base = header.getLong();
+
+            long end = HEADER_BYTES;
+            int records = 0;
+            ByteBuffer recordHeader = ByteBuffer.allocate(RECORD_HEADER_BYTES);
+            CRC32C crc = new CRC32C();
+            while (end + RECORD_HEADER_BYTES <= size) {
+                recordHeader.clear();
+                readFully(channel, recordHeader, end);
+                recordHeader.flip();
+                int length = recordHeader.getInt();
+                int checksum = recordHeader.getInt();
+                if (length < 0 || length > MAX_PAYLOAD_BYTES || end + RECORD_HEADER_BYTES + length > size) {
+                    break;
+                }
+                ByteBuffer payload = ByteBuffer.allocate(length);
+                readFully(channel, payload, end + RECORD_HEADER_BYTES);
+                crc.reset();
+                crc.update(payload.array());
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+                end += RECORD_HEADER_BYTES + length;
+                records++;
+            }
+            if (end < size) {
+                System.err.println("Warning: Write-ahead log " + path + " has a torn tail; truncating to " + end +
+                                   " bytes (" + records + " records kept, " + (size - end) + " bytes dropped).");
+                channel.truncate(end);
+                channel.force(true);
+            }
+            return new WriteAheadLog(path, options, channel, base, end, records);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /** @return The log file. */
+    public Path getPath() {
+        return path;
+    }
+
+    /** @return The configuration. */
+    public Options getOptions() {
+        return options;
+    }
+
+    /** @return The base recorded by the last {@link #reset(long)}, checkpoint, or creation. */
+    public long getBase() {
+        return base;
+    }
+
+    /** @return The number of acknowledged records. */
+    public int getRecordCount() {
+        return recordCount;
+    }
+
+    /** @return The bytes of the acknowledged records, including their headers. */
+    public long getSizeBytes() {
+        return committedLength - HEADER_BYTES;
+    }
+
+    /** @return The number of group commits so far; fewer than the appends when concurrent appends were grouped. */
+    public long getGroupCommits() {
+        return groupCommits;
+    }
+
+    /** @return The number of times the log was forced to disk. */
+    public long getSyncs() {
+        return syncs;
+    }
+
+    /**
+     * Queues records to be appended in one group commit with any other queued appends.
+     *
+     * @param payloads The records' payloads.
+     * @return A future completing when the records are written (and synced, in {@link SyncMode#COMMIT} mode),
+     *         or exceptionally if the write fails or the log is closed.
+     */
+    public CompletableFuture<Void> append(List<byte[]> payloads) {
+        Objects.requireNonNull(payloads, "Payloads cannot be null.");
+        Append append = new Append(new ArrayList<>(payloads));
+        if (payloads.isEmpty()) {
+            append.future.complete(null);
+            return append.future;
+        }
+        for (byte[] payload : append.payloads) {
+            if (Objects.requireNonNull(payload, "Payload cannot be null.").length > MAX_PAYLOAD_BYTES) {
+                append.future.completeExceptionally(new IOException("Record of " + payload.length + " bytes exceeds the write-ahead log's limit."));
+                return append.future;
+            }
+        }
+        return submit(append);
+    }
+
+    /**
+     * Reads the records acknowledged so far.
+     * @param visitor Receives each payload.
+     * @return The number of records read.
+     * @throws IOException if the log cannot be read, or the visitor fails.
+     */
+    public int forEach(RecordVisitor visitor) throws IOException {
+        Objects.requireNonNull(visitor, "Visitor cannot be null.");
+        long end = committedLength;
+        int records = 0;
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.max(RECORD_HEADER_BYTES, Math.min(READ_BUFFER_BYTES, end - HEADER_BYTES)));
+        buffer.limit(0);
+        long position = HEADER_BYTES; // Next file position to buffer
+        long next = HEADER_BYTES;     // Start of the next record
+        while (next < end) {
+            if (buffer.remaining() < RECORD_HEADER_BYTES) {
+                position = refill(buffer, position, end);
+            }
+            int length = buffer.getInt();
+            buffer.getInt(); // Checksum, verified when the log was opened or written
+            byte[] payload = new byte[length];
+            int copied = Math.min(length, buffer.remaining());
+            buffer.get(payload, 0, copied);
+            if (copied < length) {
+                // The rest of a record larger than what is buffered is read straight into the payload.
+                readFully(channel, ByteBuffer.wrap(payload, copied, length - copied), position);
+                position += length - copied;
+            }
+            visitor.accept(payload);
+            records++;
+            next += RECORD_HEADER_BYTES + length;
+        }
+        return records;
+    }
+
+    /** Moves unread bytes to the front of the buffer and fills the rest from {@code position}, up to {@code end}. */
+    private long refill(ByteBuffer buffer, long position, long end) throws IOException {
+        buffer.compact();
+        int wanted = (int) Math.min(buffer.remaining(), end - position);
+        ByteBuffer target = buffer.slice();
+        target.limit(wanted);
+        readFully(channel, target, position);
+        buffer.position(buffer.position() + wanted);
+        buffer.flip();
+        return position + wanted;
+    }
+
+    /**
+     * Applies all acknowledged records elsewhere, then empties the log and records a new base, as one step of
+     * the writer thread: appends queued meanwhile are committed after it. If the action fails, the log is left
+     * unchanged. If a crash interrupts the checkpoint after the action, the records are still in the log.
+     *
+     * @param action Applies the records and returns the new base; runs on the writer thread.
+     * @return A future completing with the number of records applied.
+     */
+    public CompletableFuture<Integer> checkpoint(CheckpointAction action) {
+        return checkpoint(action, null);
+    }
+
+    /**
+     * Checkpoints the log like {@link #checkpoint(CheckpointAction)} and then, before any further append is
+     * written, lets the caller change the file the log is checkpointed into, e.g. rewrite it. The log is empty
+     * while the change runs, so a crash during it cannot replay records against the changed file.
+     *
+     * @param action Applies the records and returns the new base; runs on the writer thread.
+     * @param change Changes the file and returns the base to record afterwards, or {@code null} for none.
+     * @return A future completing with the number of records applied.
+     */
+    public CompletableFuture<Integer> checkpoint(CheckpointAction action, FileChange change) {
+        Objects.requireNonNull(action, "Checkpoint action cannot be null.");
+        return submit(new Control<>(() -> {
+            List<byte[]> payloads = new ArrayList<>(recordCount);
+            forEach(payloads::add);
+            truncate(action.apply(payloads));
+            if (change != null) {
+                truncate(change.apply());
+            }
+            return payloads.size();
+        }, false));
+    }
+
+    /**
+     * Empties the log and records a new base, e.g. after the file it is checkpointed into was rewritten.
+     * The records are removed before the new base is written, so a crash in between leaves an empty log
+     * with the old base rather than old records with the new base.
+     * @return A future completing when the log is empty and synced.
+     */
+    public CompletableFuture<Void> reset(long newBase) {
+        return submit(new Control<>(() -> {
+            truncate(newBase);
+            return null;
+        }, false));
+    }
+
+    /** @return A future completing once every record acknowledged before the call is forced to disk. */
+    public CompletableFuture<Void> sync() {
+        return submit(new Control<>(() -> {
+            force();
+            return null;
+        }, false));
+    }
+
+    /**
+     * Commits queued appends, syncs the log and closes it. Appends made afterwards fail.
+     * @throws IOException if the final sync or closing the file fails.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        CompletableFuture<Void> stopped = submit(new Control<>(() -> {
+            force();
+            return null;
+        }, true));
+        try {
+            stopped.join();
+        } catch (RuntimeException e) {
+            Throwable cause = BulkIngester.unwrap(e);
+            throw (cause instanceof IOException io) ? io : new IOException("Failed to close write-ahead log " + path, cause);
+        } finally {
+            channel.close();
+        }
+    }
+
+    private <T> CompletableFuture<T> submit(Task task) {
+        @SuppressWarnings("unchecked")
+        CompletableFuture<T> future = (CompletableFuture<T>) task.future();
+        synchronized (queue) {
+            if (closed) {
+                future.completeExceptionally(new IOException("Write-ahead log is closed: " + path));
+                return future;
+            }
+            if (task instanceof Control<?> control && control.stop) {
+                closed = true;
+            }
+            queue.add(task);
+        }
+        return future;
+    }
+
+    /** The writer thread: commits appends in groups and runs control tasks in queue order. */
+    private void run() {
+        ArrayDeque<Task> backlog = new ArrayDeque<>();
+        while (true) {
+            Task task = backlog.pollFirst();
+            if (task == null) {
+                task = nextTask();
+            }
+            if (task == null) {
+                syncIfDue();
+                continue;
+            }
+            if (task instanceof Control<?> control) {
+                control.run();
+                if (control.stop) {
+                    return;
+                }
+                continue;
+            }
+            List<Append> group = new ArrayList<>();
+            group.add((Append) task);
+            gather(group, backlog);
+            commit(group);
+        }
+    }
+
+    /** Waits for the next task; in {@link SyncMode#INTERVAL} mode with unsynced records, only until a sync is due. */
+    private Task nextTask() {
+        try {
+            if (options.syncMode() == SyncMode.INTERVAL && syncedLength < committedLength) {
+                long waitNanos = options.syncInterval().toNanos() - (System.nanoTime() - lastSyncNanos);
+                return queue.poll(Math.max(0, waitNanos), TimeUnit.NANOSECONDS);
+            }
+            return queue.take();
+        } catch (InterruptedException e) {
+            return null; // The writer only stops on close
+        }
+    }
+
+    /**
+     * Adds the appends queued behind the first one to its group, stopping at a control task. With a group
+     * commit delay, first waits that long for more appends to arrive.
+     */
+    private void gather(List<Append> group, ArrayDeque<Task> backlog) {
+        long delayNanos = options.groupCommitDelay().toNanos();
+        if (delayNanos > 0 && backlog.isEmpty()) {
+            long deadline = System.nanoTime() + delayNanos;
+            try {
+                for (long remaining = delayNanos; remaining > 0; remaining = deadline - System.nanoTime()) {
+                    Task next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    backlog.add(next);
+                    if (next instanceof Control) {
+                        break;
+                    }
+                }
+            } catch (InterruptedException e) {
+                // Commit what has been gathered
+            }
+        }
+        queue.drainTo(backlog);
+        while (backlog.peekFirst() instanceof Append) {
+            group.add((Append) backlog.pollFirst());
+        }
+    }
+
+    /** Writes a group with one gathering write, syncs it if the mode asks for it, and acknowledges it. */
+    private void commit(List<Append> group) {
+        long start = committedLength;
+        int records = 0;
+        for (Append append : group) {
+            records += append.payloads.size();
+        }
+        ByteBuffer[] buffers = new ByteBuffer[records * 2];
+        long bytes = 0;
+        int i = 0;
+        CRC32C crc = new CRC32C();
+        for (Append append : group) {
+            for (byte[] payload : append.payloads) {
+                crc.reset();
+                crc.update(payload);
+                buffers[i++] = ByteBuffer.allocate(RECORD_HEADER_BYTES).putInt(payload.length).putInt((int) crc.getValue()).flip();
+                buffers[i++] = ByteBuffer.wrap(payload);
+                bytes += RECORD_HEADER_BYTES + payload.length;
+            }
+        }
+        try {
+            channel.position(start);
+            long written = 0;
+            while (written < bytes) {
+                written += channel.write(buffers);
+            }
+            if (options.syncMode() == SyncMode.COMMIT) {
+                channel.force(false);
+                syncs++;
+                syncedLength = start + bytes;
+                lastSyncNanos = System.nanoTime();
+            }
+        } catch (IOException | RuntimeException e) {
+            try {
+                channel.truncate(start); // Drop the partial group, so later appends follow the last good record
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            for (Append append : group) {
+                append.future.completeExceptionally(e);
+            }
+            return;
+        }
+        committedLength = start + bytes;
+        recordCount += records;
+        groupCommits++;
+        for (Append append : group) {
+            append.future.complete(null);
+        }
+        syncIfDue();
+    }
+
+    /** In {@link SyncMode#INTERVAL} mode, syncs unsynced records once the interval has passed. */
+    private void syncIfDue() {
+        if (options.syncMode() != SyncMode.INTERVAL || syncedLength >= committedLength
+            || System.nanoTime() - lastSyncNanos < options.syncInterval().toNanos()) {
+            return;
+        }
+        try {
+            force();
+        } catch (IOException e) {
+            System.err.println("Warning: Failed to sync write-ahead log " + path + ": " + e.getMessage());
+        }
+    }
+
+    private void force() throws IOException {
+        if (syncedLength < committedLength) {
+            channel.force(false);
+            syncs++;
+        }
+        syncedLength = committedLength;
+        lastSyncNanos = System.nanoTime();
+    }
+
+    /** Writer thread: removes all records, syncs, then records the new base and syncs again. */
+    private void truncate(long newBase) throws IOException {
+        channel.truncate(HEADER_BYTES);
+        channel.force(true);
+        writeHeader(channel, newBase);
+        channel.force(true);
+        syncs += 2;
+        committedLength = HEADER_BYTES;
+        syncedLength = HEADER_BYTES;
+        recordCount = 0;
+        base = newBase;
+    }
+
+    private static void writeHeader(FileChannel channel, long base) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).putInt(MAGIC).putInt(VERSION).putLong(base).flip();
+        while (header.hasRemaining()) {
+            channel.write(header, HEADER_BYTES - header.remaining());
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        long offset = position;
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, offset);
+            if (read < 0) {
+                throw new IOException("Unexpected end of write-ahead log at " + offset);
+            }
+            offset += read;
+        }
+    }
+
+    /** A queued unit of work for the writer thread. */
+    private interface Task {
+        CompletableFuture<?> future();
+    }
+
+    private static final class Append implements Task {
+        final List<byte[]> payloads;
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        Append(List<byte[]> payloads) {
+            this.payloads = payloads;
+        }
+
+        @Override
+        public CompletableFuture<?> future() {
+            return future;
+        }
+    }
+
+    /** Work that needs the log to itself, run between group commits. */
+    private static final class Control<T> implements Task {
+        final IoCallable<T> work;
+        final boolean stop;
+        final CompletableFuture<T> future = new CompletableFuture<>();
+
+        Control(IoCallable<T> work, boolean stop) {
+            this.work = work;
+            this.stop = stop;
+        }
+
+        void run() {
+            try {
+                future.complete(work.call());
+            } catch (IOException | RuntimeException e) {
+                future.completeExceptionally(e);
+            }
+        }
+
+        @Override
+        public CompletableFuture<?> future() {
+            return future;
+        }
+    }
+
+    @FunctionalInterface
+    private interface IoCallable<T> {
+        T call() throws IOException;
+    }
+}
@@ -0,0 +1,92 @@
+package com.skanga.rag.vectorstore.chroma;
+
+import com.skanga.rag.vectorstore.filter.MetadataFilter;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Translates {@link MetadataFilter}s into Chroma {@code where} clauses, so that {@link ChromaVectorStore}
+ * restricts a query to matching documents on the server before ranking.
+ *
+ * <p>Equality and IN become {@code $eq} and {@code $in}, ranges {@code $gte}/{@code $lte} on the bound values,
+ * and AND/OR {@code $and}/{@code $or}. Chroma compares ranges numerically only, so timestamp bounds are sent
+ * as epoch milliseconds and match metadata stored that way; timestamps stored as ISO strings cannot be
+ * range-filtered by Chroma. Equality on a timestamp compares its epoch milliseconds likewise.</p>
+ */
+final class ChromaFilters {
+
+    private ChromaFilters() {}
+
+    /**
+     * Translates a filter.
+     * @param filter The filter.
+     * @return The {@code where} clause, ready to be serialized as JSON.
+     */
+    static Map<String, Object> toWhere(MetadataFilter filter) {
+        if (filter instanceof MetadataFilter.Equals equals) {
+            return Map.of(equals.field(), Map.of("$eq", value(equals.value())));
+        }
+        if (filter instanceof MetadataFilter.In in) {
+            List<Object> values = new ArrayList<>(in.values().size());
+            for (Object value : in.values()) {
+                values.add(value(value));
+            }
+            return Map.of(in.field(), Map.of("$in", values));
+        }
+        if (filter instanceof MetadataFilter.Range range) {
+            Map<String, Object> lower = (range.min() == null) ? null : Map.of(range.field(), Map.of("$gte", bound(range.lowerBound())));
+            Map<String, Object> upper = (range.max() == null) ? null : Map.of(range.field(), Map.of("$lte", bound(range.upperBound())));
+            if (lower == null || upper == null) {
+                return (lower != null) ? lower : upper;
+            }
+            return Map.of("$and", List.of(lower, upper)); // Chroma allows one operator per field clause
+        }
+        if (filter instanceof MetadataFilter.And and) {
+            return combine("$and", and.filters());
+        }
+        return combine("$or", ((MetadataFilter.Or) filter).filters());
+    }
+
+    /** Chroma requires at least two operands for {@code $and} and {@code $or}, so a single one is sent alone. */
+    private static Map<String, Object> combine(String operator, List<MetadataFilter> filters) {
+        if (filters.size() == 1) {
+            return toWhere(filters.get(0));
+        }
+        List<Map<String, Object>> operands = new ArrayList<>(filters.size());
+        for (MetadataFilter filter : filters) {
+            operands.add(toWhere(filter));
+        }
+        return Map.of(operator, operands);
+    }
+
+    /** Converts a filter value to one Chroma can compare: strings, numbers and booleans as they are. */
+    private static Object value(Object value) {
+        if (value instanceof String || value instanceof Number || value instanceof Boolean) {
+            return value;
+        }
+        if (value instanceof Instant instant) {
+            return instant.toEpochMilli();
+        }
+        if (value instanceof Date date) {
+            return date.getTime();
+        }
+        if (value instanceof OffsetDateTime dateTime) {
+            return dateTime.toInstant().toEpochMilli();
+        }
+        if (value instanceof ZonedDateTime dateTime) {
+            return dateTime.toInstant().toEpochMilli();
+        }
+        return value.toString();
+    }
+
+    /** @return A whole-number bound as a long, so that integer metadata compares without a fraction. */
+    private static Object bound(double value) {
+        return (value == Math.rint(value) && Math.abs(value) < 0x1p53) ? (Object) (long) value : (Object) value;
+    }
+}
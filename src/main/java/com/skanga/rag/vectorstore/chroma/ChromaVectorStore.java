@@ -1,14 +1,21 @@
 package com.skanga.rag.vectorstore.chroma;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.skanga.providers.HttpClientManager;
 import com.skanga.rag.Document;
+import com.skanga.rag.vectorstore.BulkIngestReport;
+import com.skanga.rag.vectorstore.BulkIngester;
+import com.skanga.rag.vectorstore.HttpStoreClient;
 import com.skanga.rag.vectorstore.VectorStore;
 import com.skanga.rag.vectorstore.VectorStoreException;
+import com.skanga.rag.vectorstore.chroma.dto.ChromaDeleteRequest;
 import com.skanga.rag.vectorstore.chroma.dto.ChromaQueryRequest;
 import com.skanga.rag.vectorstore.chroma.dto.ChromaQueryResponse;
-import com.skanga.rag.vectorstore.chroma.dto.ChromaUpsertRequest;
+import com.skanga.rag.vectorstore.filter.MetadataFilter;
 
 import java.io.IOException;
 import java.net.URI;
@@ -17,6 +24,9 @@ import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
 
 /**
  * A {@link VectorStore} implementation for interacting with a ChromaDB instance.
@@ -24,8 +34,16 @@ import java.util.*;
  *
  * <p><b>Features:</b>
  * <ul>
- *   <li>Adds documents (with pre-computed embeddings) to a specified ChromaDB collection using the `/upsert` endpoint.</li>
- *   <li>Performs similarity searches using the `/query` endpoint.</li>
+ *   <li>Adds documents (with pre-computed embeddings) to a specified ChromaDB collection using the `/upsert` endpoint.
+ *       Large calls are split into batches no larger than the server's {@code max_batch_size}, several of them
+ *       in flight at once, and batches rejected with a retryable status are resent
+ *       ({@link #withBulkIngester(BulkIngester)}, {@link #bulkIngest(List)}).</li>
+ *   <li>Deletes documents by ID using the `/delete` endpoint; {@link #upsertDocuments(List)} maps to `/upsert`.</li>
+ *   <li>Performs similarity searches using the `/query` endpoint. Results do not include embeddings unless
+ *       {@link #withEmbeddingsInResults(boolean)} asks for them, and {@link MetadataFilter}s are sent as the
+ *       {@code where} clause ({@link #similaritySearchVector(float[], int, MetadataFilter)}).</li>
+ *   <li>{@link #similaritySearchAsync(List, int)} and {@link #addDocumentsAsync(List)} use
+ *       {@link HttpClient#sendAsync}, so no thread is blocked for the round trip.</li>
  *   <li>Maps results from ChromaDB back to {@link com.skanga.rag.Document} objects.</li>
  * </ul>
  * </p>
@@ -53,8 +71,19 @@ public class ChromaVectorStore implements VectorStore {
 
     /** Default value for K (top results) if not specified in constructor. */
     private static final int DEFAULT_K_CHROMA = 5;
-    /** Default fields to include in ChromaDB query responses. */
-    private static final List<String> DEFAULT_QUERY_INCLUDE = List.of("documents", "distances", "metadatas", "embeddings");
+    /** Default fields to include in ChromaDB query responses; embeddings would multiply the response size. */
+    private static final List<String> DEFAULT_QUERY_INCLUDE = List.of("documents", "distances", "metadatas");
+    /** Query response fields when results should carry their embeddings. */
+    private static final List<String> QUERY_INCLUDE_WITH_EMBEDDINGS = List.of("documents", "distances", "metadatas", "embeddings");
+    /** Sends requests and batched writes; batches are retried on 429 and while the server is temporarily unavailable. */
+    private static final HttpStoreClient HTTP = new HttpStoreClient("ChromaDB", Set.of(429, 502, 503, 504));
+
+    /** Batching, concurrency and retry policy of writes; batches are further capped at the server's limit. */
+    private volatile BulkIngester bulkIngester = new BulkIngester();
+    /** The lookup of the server's {@code max_batch_size}; {@code null} until the first write and after a failed lookup. */
+    private volatile CompletableFuture<Integer> serverMaxBatchSize;
+    private volatile boolean includeEmbeddings = false;
+    private volatile BulkIngestReport lastBulkReport;
 
 
     /**
@@ -109,10 +138,11 @@ public class ChromaVectorStore implements VectorStore {
 
     /**
      * {@inheritDoc}
-     * <p>Upserts documents to the configured ChromaDB collection.
+     * <p>Upserts documents to the configured ChromaDB collection with {@link #bulkIngest(List)}.
      * All documents must have their embeddings pre-populated.</p>
      * @throws VectorStoreException if documents list is null, any document is null, a document
-     *                              lacks an embedding, or if the API call fails.
+     *                              lacks an embedding, or if the API call fails. If a load of several
+     *                              batches fails, the batches that succeeded have been written.
      */
     @Override
     public void addDocuments(List<Document> documents) throws VectorStoreException {
@@ -120,30 +150,110 @@ public class ChromaVectorStore implements VectorStore {
         if (documents.isEmpty()) {
             return;
         }
+        HTTP.throwIfFailed(bulkIngest(documents), "upsert");
+    }
+
+    /**
+     * Upserts documents in batches and reports the outcome instead of throwing for batches that fail.
+     *
+     * <p>All documents are validated first. They are then split into batches of at most the server's
+     * {@code max_batch_size} (read once from {@code /pre-flight-checks}) and the limits of the
+     * {@link #withBulkIngester(BulkIngester) bulk ingester}, each serialized only when it is sent, with up to
+     * {@link BulkIngester#getMaxInFlight()} requests outstanding on the shared {@link HttpClient}. Batches
+     * rejected with status 429, 502, 503 or 504 or failing with an I/O error are retried with backoff.</p>
+     *
+     * @param documents The documents, each with an embedding.
+     * @return The report, also available from {@link #getLastBulkReport()}.
+     * @throws VectorStoreException if a document lacks an embedding, or the call is interrupted.
+     */
+    public BulkIngestReport bulkIngest(List<Document> documents) throws VectorStoreException {
+        Objects.requireNonNull(documents, "Documents list cannot be null for ChromaDB upsert.");
+        validateUpsert(documents);
+        return HTTP.await(load(documents, BulkIngester::estimatedJsonBytes, this::upsertRequest, "upsert"), "upsert");
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>Sends the same batches as {@link #addDocuments(List)} with {@link HttpClient#sendAsync}, so no
+     * thread waits for ChromaDB. If a document has no embedding, the returned future fails without a request.</p>
+     */
+    @Override
+    public CompletableFuture<Void> addDocumentsAsync(List<Document> documents) {
+        Objects.requireNonNull(documents, "Documents list cannot be null for ChromaDB upsert.");
+        if (documents.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        try {
+            validateUpsert(documents);
+        } catch (VectorStoreException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return load(documents, BulkIngester::estimatedJsonBytes, this::upsertRequest, "upsert").thenAccept(report -> HTTP.throwIfFailed(report, "upsert"));
+    }
 
-        // Validate documents first
+    /**
+     * Sets the batching, concurrency and retry policy of writes. Batches are additionally capped at the
+     * server's {@code max_batch_size}. Defaults to {@code new BulkIngester()}: 1000 documents or 10 MB per
+     * request, 4 requests in flight, 3 retries starting at 200 ms.
+     *
+     * @param bulkIngester The policy.
+     * @return This {@code ChromaVectorStore} instance.
+     */
+    public ChromaVectorStore withBulkIngester(BulkIngester bulkIngester) {
+        this.bulkIngester = Objects.requireNonNull(bulkIngester, "BulkIngester cannot be null.");
+        return this;
+    }
+
+    /**
+     * Sets whether search results carry their embeddings. They are left out by default, since a
+     * 1536-dimension embedding is about 30 KB of JSON per result and few callers use it.
+     *
+     * @param includeEmbeddings {@code true} to request embeddings with query results.
+     * @return This {@code ChromaVectorStore} instance.
+     */
+    public ChromaVectorStore withEmbeddingsInResults(boolean includeEmbeddings) {
+        this.includeEmbeddings = includeEmbeddings;
+        return this;
+    }
+
+    /** @return The report of the most recent batched write of this store, or {@code null} if none has finished. */
+    public BulkIngestReport getLastBulkReport() {
+        return this.lastBulkReport;
+    }
+
+    /**
+     * Validates documents before any batch is sent.
+     * @throws VectorStoreException if a document lacks an embedding.
+     */
+    private void validateUpsert(List<Document> documents) throws VectorStoreException {
         for (int i = 0; i < documents.size(); i++) {
             Document doc = documents.get(i);
             Objects.requireNonNull(doc, "Document at index " + i + " cannot be null for ChromaDB upsert.");
-            if (doc.getEmbedding() == null || doc.getEmbedding().isEmpty()) {
+            if (doc.getEmbeddingVector().length == 0) {
                 throw new VectorStoreException("Document at index " + i + " (ID: " + doc.getId() + ") has null or empty embedding");
             }
         }
+    }
 
+    /**
+     * Builds the request upserting validated documents into the collection.
+     * @throws VectorStoreException if the request cannot be serialized.
+     */
+    private HttpRequest upsertRequest(List<Document> documents) throws VectorStoreException {
         List<String> ids = new ArrayList<>(documents.size());
-        List<List<Double>> embeddings = new ArrayList<>(documents.size());
+        List<float[]> embeddings = new ArrayList<>(documents.size());
         List<Map<String, Object>> metadatas = new ArrayList<>(documents.size());
         List<String> contents = new ArrayList<>(documents.size());
 
         for (Document doc : documents) {
             ids.add(doc.getId());
-            embeddings.add(doc.getEmbedding());
+            embeddings.add(doc.getEmbeddingVector());
             // Ensure metadata is not null for ChromaDB, use empty map if original is null
             metadatas.add(doc.getMetadata() != null ? new HashMap<>(doc.getMetadata()) : Collections.emptyMap());
             contents.add(doc.getContent());
         }
 
-        ChromaUpsertRequest upsertRequest = new ChromaUpsertRequest(ids, embeddings, metadatas, contents);
+        UpsertBody upsertRequest = new UpsertBody(ids, embeddings, metadatas, contents);
         String requestBodyJson;
         try {
             requestBodyJson = objectMapper.writeValueAsString(upsertRequest);
@@ -151,33 +261,126 @@ public class ChromaVectorStore implements VectorStore {
             throw new VectorStoreException("Failed to serialize Chroma upsert request to JSON", e);
         }
 
-        HttpRequest request = HttpRequest.newBuilder()
+        return HttpRequest.newBuilder()
                 .uri(buildUri("/collections/" + this.collectionName + "/upsert"))
                 .header("Content-Type", "application/json")
                 .POST(HttpRequest.BodyPublishers.ofString(requestBodyJson))
                 .build();
+    }
 
-        try {
-            HttpResponse<String> httpResponse = HttpClientManager.getSharedClient().send(request, HttpResponse.BodyHandlers.ofString());
-            // ChromaDB's /upsert usually returns 201 Created on success with new items,
-            // or 200 OK if items were updated or already existed (behavior can vary slightly).
-            // For simplicity, checking for 200 or 201.
-            if (httpResponse.statusCode() != 200 && httpResponse.statusCode() != 201) {
-                throw new VectorStoreException("ChromaDB upsert request failed", httpResponse.statusCode(), httpResponse.body());
+    /**
+     * Sends a write in batches. The returned future does not complete exceptionally; failures are in the report.
+     * @param request Builds the request for one batch.
+     * @param action  Names the API call in error messages, e.g. "upsert".
+     */
+    private <T> CompletableFuture<BulkIngestReport> load(List<T> items, ToLongFunction<? super T> sizeOf,
+                                                         Function<List<T>, HttpRequest> request, String action) {
+        BulkIngester configured = this.bulkIngester;
+        return serverMaxBatchSize().thenCompose(maxBatchSize -> {
+            BulkIngester ingester = (maxBatchSize > 0 && maxBatchSize < configured.getMaxDocuments())
+                    ? configured.withChunkLimits(maxBatchSize, configured.getMaxBytes())
+                    : configured;
+            return HTTP.load(ingester, items, sizeOf, request, action); // Chroma writes a batch entirely or not at all
+        }).thenApply(report -> {
+            this.lastBulkReport = report;
+            return report;
+        });
+    }
+
+    /**
+     * Returns the server's {@code max_batch_size}, fetching it from {@code /pre-flight-checks} on the first write.
+     * Completes with 0, meaning no server limit is known, if the server does not report one. Only an answer is
+     * kept: if the lookup fails, this write goes unlimited and the next write asks again.
+     */
+    private CompletableFuture<Integer> serverMaxBatchSize() {
+        CompletableFuture<Integer> lookup = this.serverMaxBatchSize;
+        if (lookup == null) {
+            HttpRequest request = HttpRequest.newBuilder().uri(buildUri("/pre-flight-checks")).GET().build();
+            lookup = HttpClientManager.getSharedClient().sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                    .handle((httpResponse, error) -> {
+                        if (error != null || httpResponse.statusCode() != 200) {
+                            return -1;
+                        }
+                        try {
+                            JsonNode limit = objectMapper.readTree(httpResponse.body()).get("max_batch_size");
+                            return (limit != null && limit.canConvertToInt()) ? Math.max(0, limit.asInt()) : 0;
+                        } catch (JsonProcessingException e) {
+                            return -1;
+                        }
+                    });
+            this.serverMaxBatchSize = lookup; // A race fetches twice at worst
+        }
+        CompletableFuture<Integer> current = lookup;
+        return lookup.thenApply(limit -> {
+            if (limit < 0) { // The lookup failed
+                if (this.serverMaxBatchSize == current) {
+                    this.serverMaxBatchSize = null; // Not kept, so the next write asks again
+                }
+                return 0;
             }
-            // Success response body from /upsert is often minimal or just status, not typically parsed here.
-        } catch (IOException e) {
-            throw new VectorStoreException("I/O error during ChromaDB upsert API call: " + e.getMessage(), e);
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt(); // Preserve interrupt status
-            throw new VectorStoreException("ChromaDB upsert API call was interrupted", e);
+            return limit;
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>ChromaDB's `/upsert` endpoint replaces documents by ID natively, so this sends a single upsert request.
+     * Chroma rejects duplicate IDs within one request, so if the list repeats an ID only the last document
+     * for it is sent.</p>
+     */
+    @Override
+    public void upsertDocuments(List<Document> documents) throws VectorStoreException {
+        Objects.requireNonNull(documents, "Documents list cannot be null for ChromaDB upsert.");
+        Map<String, Document> lastById = new LinkedHashMap<>();
+        for (int i = 0; i < documents.size(); i++) {
+            Document doc = Objects.requireNonNull(documents.get(i), "Document at index " + i + " cannot be null for ChromaDB upsert.");
+            lastById.remove(doc.getId());
+            lastById.put(doc.getId(), doc);
         }
+        addDocuments(lastById.size() == documents.size() ? documents : new ArrayList<>(lastById.values()));
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>Sends the IDs to the collection's `/delete` endpoint, in batches like {@link #bulkIngest(List)}.</p>
+     * @throws VectorStoreException if the API call fails.
+     */
+    @Override
+    public void deleteDocuments(List<String> documentIds) throws VectorStoreException {
+        Objects.requireNonNull(documentIds, "Document IDs list cannot be null for ChromaDB delete.");
+        if (documentIds.isEmpty()) {
+            return;
+        }
+        for (String id : documentIds) {
+            Objects.requireNonNull(id, "Document ID cannot be null for ChromaDB delete.");
+        }
+        HTTP.throwIfFailed(HTTP.await(load(documentIds, id -> 4 + id.length(), this::deleteRequest, "delete"), "delete"), "delete");
+    }
+
+    /**
+     * Builds the request deleting documents by ID.
+     * @throws VectorStoreException if the request cannot be serialized.
+     */
+    private HttpRequest deleteRequest(List<String> documentIds) throws VectorStoreException {
+        String requestBodyJson;
+        try {
+            requestBodyJson = objectMapper.writeValueAsString(new ChromaDeleteRequest(new ArrayList<>(documentIds)));
+        } catch (JsonProcessingException e) {
+            throw new VectorStoreException("Failed to serialize Chroma delete request to JSON", e);
+        }
+
+        return HttpRequest.newBuilder()
+                .uri(buildUri("/collections/" + this.collectionName + "/delete"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(requestBodyJson))
+                .build();
     }
 
     /**
      * {@inheritDoc}
      * <p>Queries the ChromaDB collection for documents similar to the given embedding.
-     * It requests documents, distances, metadatas, and embeddings to be included in the results.</p>
+     * It requests documents, distances and metadatas, and embeddings only if
+     * {@link #withEmbeddingsInResults(boolean)} is set.</p>
      * @throws IllegalArgumentException if k is not positive.
      * @throws VectorStoreException if queryEmbedding is null, or if the API call or response parsing fails.
      */
@@ -191,12 +394,117 @@ public class ChromaVectorStore implements VectorStore {
             throw new VectorStoreException("Query embedding cannot be empty for ChromaDB search.");
         }
 
-        ChromaQueryRequest queryRequest = new ChromaQueryRequest(
-                Collections.singletonList(queryEmbedding), // Chroma API expects a list of query embeddings
+        return processChromaQueryResponse(query(queryRequest(Collections.singletonList(queryEmbedding), k, null)), 0);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>The filter is sent as the query's {@code where} clause, so Chroma ranks only matching documents.
+     * See {@link ChromaFilters} for how values are compared.</p>
+     */
+    @Override
+    public List<Document> similaritySearchVector(float[] queryVector, int k, MetadataFilter filter) throws VectorStoreException {
+        Objects.requireNonNull(queryVector, "Query vector cannot be null for ChromaDB search.");
+        if (k <= 0) {
+            throw new IllegalArgumentException("Number of results to return (k) must be positive.");
+        }
+        if (queryVector.length == 0) {
+            throw new VectorStoreException("Query embedding cannot be empty for ChromaDB search.");
+        }
+        Map<String, Object> where = (filter == null) ? null : ChromaFilters.toWhere(filter);
+        return processChromaQueryResponse(query(queryRequest(queryVector, k, where)), 0);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>Sends the same {@code /query} request as {@link #similaritySearch(List, int)} with
+     * {@link HttpClient#sendAsync}, so no thread waits for ChromaDB.</p>
+     * @throws IllegalArgumentException if k is not positive.
+     */
+    @Override
+    public CompletableFuture<List<Document>> similaritySearchAsync(List<Double> queryEmbedding, int k) {
+        Objects.requireNonNull(queryEmbedding, "Query embedding cannot be null for ChromaDB search.");
+        if (k <= 0) {
+            throw new IllegalArgumentException("Number of results to return (k) must be positive.");
+        }
+        if (queryEmbedding.isEmpty()) {
+            return CompletableFuture.failedFuture(new VectorStoreException("Query embedding cannot be empty for ChromaDB search."));
+        }
+        HttpRequest request;
+        try {
+            request = queryRequest(Collections.singletonList(queryEmbedding), k, null);
+        } catch (VectorStoreException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return HTTP.sendAsync(request, "query").thenApply(httpResponse -> processChromaQueryResponse(parseQueryResponse(httpResponse), 0));
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>Sends all query embeddings in a single {@code /query} request (Chroma accepts a list of
+     * {@code query_embeddings} and answers each in turn), so a batch costs one round trip.</p>
+     * @throws IllegalArgumentException if k is not positive.
+     * @throws VectorStoreException if a query embedding is null or empty, or if the API call or response parsing fails.
+     */
+    @Override
+    public List<List<Document>> similaritySearchBatch(List<List<Double>> queryEmbeddings, int k) throws VectorStoreException {
+        Objects.requireNonNull(queryEmbeddings, "Query embeddings cannot be null for ChromaDB batch search.");
+        if (k <= 0) {
+            throw new IllegalArgumentException("Number of results to return (k) must be positive.");
+        }
+        for (List<Double> queryEmbedding : queryEmbeddings) {
+            Objects.requireNonNull(queryEmbedding, "Query embedding cannot be null for ChromaDB search.");
+            if (queryEmbedding.isEmpty()) {
+                throw new VectorStoreException("Query embedding cannot be empty for ChromaDB search.");
+            }
+        }
+        if (queryEmbeddings.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        ChromaQueryResponse chromaResponse = query(queryRequest(queryEmbeddings, k, null));
+        List<List<Document>> results = new ArrayList<>(queryEmbeddings.size());
+        for (int i = 0; i < queryEmbeddings.size(); i++) {
+            results.add(processChromaQueryResponse(chromaResponse, i));
+        }
+        return results;
+    }
+
+    /**
+     * Sends a request built by {@code queryRequest} to the collection's {@code /query} endpoint.
+     * @return The parsed response, with the results of each query embedding in order.
+     * @throws VectorStoreException if the API call or response parsing fails.
+     */
+    private ChromaQueryResponse query(HttpRequest request) throws VectorStoreException {
+        try {
+            return parseQueryResponse(HttpClientManager.getSharedClient().send(request, HttpResponse.BodyHandlers.ofString()));
+        } catch (IOException | InterruptedException e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt(); // Preserve interrupt status
+            }
+            throw new VectorStoreException("Error during ChromaDB query API call: " + e.getMessage(), e);
+        }
+    }
+
+    /** Builds the {@code /query} request for one or more embeddings, with an optional {@code where} filter. */
+    private HttpRequest queryRequest(List<List<Double>> queryEmbeddings, int k, Map<String, Object> where) throws VectorStoreException {
+        return postQuery(new ChromaQueryRequest(
+                queryEmbeddings, // Chroma API expects a list of query embeddings
                 k,
-                DEFAULT_QUERY_INCLUDE // Request documents, distances, metadatas, embeddings
-        );
+                includeEmbeddings ? QUERY_INCLUDE_WITH_EMBEDDINGS : DEFAULT_QUERY_INCLUDE,
+                where,
+                null
+        ));
+    }
 
+    /** Builds the {@code /query} request for one primitive query vector, with an optional {@code where} filter. */
+    private HttpRequest queryRequest(float[] queryVector, int k, Map<String, Object> where) throws VectorStoreException {
+        return postQuery(new VectorQueryBody(Collections.singletonList(queryVector), k,
+                includeEmbeddings ? QUERY_INCLUDE_WITH_EMBEDDINGS : DEFAULT_QUERY_INCLUDE, where));
+    }
+
+    /** Serializes a {@code /query} body into a POST request to the collection. */
+    private HttpRequest postQuery(Object queryRequest) throws VectorStoreException {
         String requestBodyJson;
         try {
             requestBodyJson = objectMapper.writeValueAsString(queryRequest);
@@ -204,59 +512,51 @@ public class ChromaVectorStore implements VectorStore {
             throw new VectorStoreException("Failed to serialize Chroma query request to JSON", e);
         }
 
-        HttpRequest request = HttpRequest.newBuilder()
+        return HttpRequest.newBuilder()
                 .uri(buildUri("/collections/" + this.collectionName + "/query"))
                 .header("Content-Type", "application/json")
                 .POST(HttpRequest.BodyPublishers.ofString(requestBodyJson))
                 .build();
+    }
 
-        try {
-            HttpResponse<String> httpResponse = HttpClientManager.getSharedClient().send(request, HttpResponse.BodyHandlers.ofString());
-
-            if (httpResponse.statusCode() != 200) {
-                throw new VectorStoreException("ChromaDB query request failed", httpResponse.statusCode(), httpResponse.body());
-            }
-
-            String responseBody = httpResponse.body();
-            if (responseBody == null || responseBody.trim().isEmpty()) {
-                throw new VectorStoreException("ChromaDB returned empty response body");
-            }
-
-            ChromaQueryResponse chromaResponse;
-            try {
-                chromaResponse = objectMapper.readValue(responseBody, ChromaQueryResponse.class);
-            } catch (JsonProcessingException e) {
-                throw new VectorStoreException("Failed to deserialize Chroma query response from JSON", e);
-            }
+    /**
+     * Checks the status of a {@code /query} response and parses its body.
+     * @throws VectorStoreException if the request failed or the body cannot be parsed.
+     */
+    private ChromaQueryResponse parseQueryResponse(HttpResponse<String> httpResponse) throws VectorStoreException {
+        if (httpResponse.statusCode() != 200) {
+            throw new VectorStoreException("ChromaDB query request failed", httpResponse.statusCode(), httpResponse.body());
+        }
 
-            return processChromaQueryResponse(chromaResponse);
+        String responseBody = httpResponse.body();
+        if (responseBody == null || responseBody.trim().isEmpty()) {
+            throw new VectorStoreException("ChromaDB returned empty response body");
+        }
 
-        } catch (JsonProcessingException e) { // Error deserializing Chroma's response
-            throw new VectorStoreException("Failed to deserialize Chroma query response from JSON: " + e.getMessage(), e);
-        } catch (IOException | InterruptedException e) {
-            if (e instanceof InterruptedException) {
-                Thread.currentThread().interrupt(); // Preserve interrupt status
-            }
-            throw new VectorStoreException("Error during ChromaDB query API call: " + e.getMessage(), e);
+        try {
+            return objectMapper.readValue(responseBody, ChromaQueryResponse.class);
+        } catch (JsonProcessingException e) {
+            throw new VectorStoreException("Failed to deserialize Chroma query response from JSON", e);
         }
     }
 
     /**
-     * Processes the raw response from ChromaDB's query endpoint and converts it
-     * into a list of {@link Document} objects.
+     * Processes the raw response from ChromaDB's query endpoint and converts the results
+     * of one query embedding into a list of {@link Document} objects.
      *
      * @param chromaResponse The parsed response from ChromaDB.
+     * @param queryIndex     The position of the query embedding in the request.
      * @return A list of {@link Document} objects.
      */
-    private List<Document> processChromaQueryResponse(ChromaQueryResponse chromaResponse) {
+    private List<Document> processChromaQueryResponse(ChromaQueryResponse chromaResponse, int queryIndex) {
         if (chromaResponse == null) return Collections.emptyList();
 
-        // Assuming a single query was made, so we take the first list from each response field.
-        List<String> ids = chromaResponse.getIdsForFirstQuery();
-        List<String> contents = chromaResponse.getDocumentsForFirstQuery();
-        List<Map<String, Object>> metadatas = chromaResponse.getMetadatasForFirstQuery();
-        List<Double> distances = chromaResponse.getDistancesForFirstQuery();
-        List<List<Double>> embeddings = chromaResponse.getEmbeddingsForFirstQuery();
+        // Take this query's list from each response field.
+        List<String> ids = chromaResponse.getIdsForQuery(queryIndex);
+        List<String> contents = chromaResponse.getDocumentsForQuery(queryIndex);
+        List<Map<String, Object>> metadatas = chromaResponse.getMetadatasForQuery(queryIndex);
+        List<Double> distances = chromaResponse.getDistancesForQuery(queryIndex);
+        List<List<Double>> embeddings = chromaResponse.getEmbeddingsForQuery(queryIndex);
 
         // Basic check: if ids list is null or empty, there are no results.
         if (ids == null || ids.isEmpty()) {
@@ -296,6 +596,31 @@ public class ChromaVectorStore implements VectorStore {
         return resultDocuments;
     }
 
+    /**
+     * The body of an {@code /upsert} request. It has the shape of
+     * {@link com.skanga.rag.vectorstore.chroma.dto.ChromaUpsertRequest}, but writes the documents' primitive
+     * embeddings directly, so a batch is serialized without boxing every value into a {@code Double}.
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private static record UpsertBody(
+            @JsonProperty("ids") List<String> ids,
+            @JsonProperty("embeddings") List<float[]> embeddings,
+            @JsonProperty("metadatas") List<Map<String, Object>> metadatas,
+            @JsonProperty("documents") List<String> documents
+    ) {}
+
+    /**
+     * The body of a {@code /query} request for primitive query vectors. It has the shape of
+     * {@link ChromaQueryRequest}, but writes the vectors directly instead of boxing them into doubles.
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private static record VectorQueryBody(
+            @JsonProperty("query_embeddings") List<float[]> queryEmbeddings,
+            @JsonProperty("n_results") int nResults,
+            @JsonProperty("include") List<String> include,
+            @JsonProperty("where") Map<String, Object> where
+    ) {}
+
     // Note: Methods for managing ChromaDB collections (create, delete, list, get)
     // could be added here if needed, interacting with endpoints like:
     // - POST /api/v1/collections
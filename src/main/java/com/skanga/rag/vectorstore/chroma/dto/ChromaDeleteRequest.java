@@ -0,0 +1,25 @@
+package com.skanga.rag.vectorstore.chroma.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Data Transfer Object (DTO) for ChromaDB delete requests.
+ * Represents the payload sent to the `/api/v1/collections/{collectionName}/delete` endpoint.
+ *
+ * @param ids List of identifiers of the documents to delete.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL) // Exclude null fields from JSON
+public record ChromaDeleteRequest(
+    List<String> ids
+) {
+    /**
+     * Canonical constructor for ChromaDeleteRequest.
+     * Ensures the ids list is non-null.
+     */
+    public ChromaDeleteRequest {
+        Objects.requireNonNull(ids, "ids list cannot be null for ChromaDeleteRequest.");
+    }
+}
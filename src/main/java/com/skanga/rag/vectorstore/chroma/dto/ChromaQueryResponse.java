@@ -53,7 +53,7 @@ public record ChromaQueryResponse(
      * @return List of document IDs for the first query, or null if no ID data.
      */
     public List<String> getIdsForFirstQuery() {
-        return (ids != null && !ids.isEmpty()) ? ids.get(0) : Collections.emptyList();
+        return getIdsForQuery(0);
     }
 
     /**
@@ -61,7 +61,7 @@ public record ChromaQueryResponse(
      * @return List of embedding vectors for the first query, or null if no embedding data.
      */
     public List<List<Double>> getEmbeddingsForFirstQuery() {
-        return (embeddings != null && !embeddings.isEmpty()) ? embeddings.get(0) : Collections.emptyList();
+        return getEmbeddingsForQuery(0);
     }
 
     /**
@@ -69,7 +69,7 @@ public record ChromaQueryResponse(
      * @return List of document content strings for the first query, or null if no document data.
      */
     public List<String> getDocumentsForFirstQuery() {
-        return (documents != null && !documents.isEmpty()) ? documents.get(0) : Collections.emptyList();
+        return getDocumentsForQuery(0);
     }
 
     /**
@@ -77,7 +77,7 @@ public record ChromaQueryResponse(
      * @return List of metadata maps for the first query, or null if no metadata.
      */
     public List<Map<String, Object>> getMetadatasForFirstQuery() {
-        return (metadatas != null && !metadatas.isEmpty()) ? metadatas.get(0) : Collections.emptyList();
+        return getMetadatasForQuery(0);
     }
 
     /**
@@ -85,6 +85,56 @@ public record ChromaQueryResponse(
      * @return List of distances for the first query, or null if no distance data.
      */
     public List<Double> getDistancesForFirstQuery() {
-        return (distances != null && !distances.isEmpty()) ? distances.get(0) : Collections.emptyList();
+        return getDistancesForQuery(0);
+    }
+
+    /**
+     * Helper to get the IDs for the results of one query embedding of a multi-query request.
+     * @param queryIndex The position of the query embedding in the request.
+     * @return List of document IDs for that query, or an empty list if no ID data.
+     */
+    public List<String> getIdsForQuery(int queryIndex) {
+        return forQuery(ids, queryIndex);
+    }
+
+    /**
+     * Helper to get the embeddings for the results of one query embedding of a multi-query request.
+     * @param queryIndex The position of the query embedding in the request.
+     * @return List of embedding vectors for that query, or an empty list if no embedding data.
+     */
+    public List<List<Double>> getEmbeddingsForQuery(int queryIndex) {
+        return forQuery(embeddings, queryIndex);
+    }
+
+    /**
+     * Helper to get the document contents for the results of one query embedding of a multi-query request.
+     * @param queryIndex The position of the query embedding in the request.
+     * @return List of document content strings for that query, or an empty list if no document data.
+     */
+    public List<String> getDocumentsForQuery(int queryIndex) {
+        return forQuery(documents, queryIndex);
+    }
+
+    /**
+     * Helper to get the metadata maps for the results of one query embedding of a multi-query request.
+     * @param queryIndex The position of the query embedding in the request.
+     * @return List of metadata maps for that query, or an empty list if no metadata.
+     */
+    public List<Map<String, Object>> getMetadatasForQuery(int queryIndex) {
+        return forQuery(metadatas, queryIndex);
+    }
+
+    /**
+     * Helper to get the distances for the results of one query embedding of a multi-query request.
+     * @param queryIndex The position of the query embedding in the request.
+     * @return List of distances for that query, or an empty list if no distance data.
+     */
+    public List<Double> getDistancesForQuery(int queryIndex) {
+        return forQuery(distances, queryIndex);
+    }
+
+    private static <T> List<T> forQuery(List<List<T>> perQuery, int queryIndex) {
+        return (perQuery != null && perQuery.size() > queryIndex && perQuery.get(queryIndex) != null)
+                ? perQuery.get(queryIndex) : Collections.emptyList();
     }
 }
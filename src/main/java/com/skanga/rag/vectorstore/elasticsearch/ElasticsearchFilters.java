@@ -0,0 +1,135 @@
+package com.skanga.rag.vectorstore.elasticsearch;
+
+import co.elastic.clients.elasticsearch._types.FieldValue;
+import co.elastic.clients.elasticsearch._types.query_dsl.Query;
+import co.elastic.clients.json.JsonData;
+import com.skanga.rag.vectorstore.filter.MetadataFilter;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Translates {@link MetadataFilter}s into Elasticsearch query DSL, so that {@link ElasticsearchVectorStore}
+ * can pass them as the {@code filter} of a kNN search and the cluster restricts the candidates before ranking.
+ *
+ * <p>Metadata is indexed as top-level fields of the document source. Equality and IN become {@code term} and
+ * {@code terms} queries, ranges a {@code range} query on the bound values (timestamps as epoch milliseconds,
+ * which date fields accept), and AND/OR a {@code bool} query. An array-valued field matches if any element
+ * matches and a missing field never matches, as in the local stores. String values must be indexed as
+ * {@code keyword}: indices created by the store map metadata strings that way, and for indices relying on
+ * Elasticsearch's default dynamic mapping the {@code .keyword} sub-field can be targeted instead.</p>
+ */
+final class ElasticsearchFilters {
+
+    private ElasticsearchFilters() {}
+
+    /**
+     * Translates a filter.
+     * @param filter        The filter.
+     * @param keywordSuffix Appended to the field name of string comparisons, e.g. {@code ".keyword"}; may be empty.
+     * @return The equivalent query, for use in a filter context.
+     */
+    static Query toQuery(MetadataFilter filter, String keywordSuffix) {
+        if (filter instanceof MetadataFilter.Equals equals) {
+            Object value = equals.value();
+            return Query.of(q -> q.term(t -> t
+                    .field(fieldName(equals.field(), value, keywordSuffix))
+                    .value(fieldValue(value))));
+        }
+        if (filter instanceof MetadataFilter.In in) {
+            List<FieldValue> values = new ArrayList<>(in.values().size());
+            for (Object value : in.values()) {
+                values.add(fieldValue(value));
+            }
+            return Query.of(q -> q.terms(t -> t
+                    .field(fieldName(in.field(), in.values().get(0), keywordSuffix))
+                    .terms(terms -> terms.value(values))));
+        }
+        if (filter instanceof MetadataFilter.Range range) {
+            return Query.of(q -> q.range(r -> r.untyped(u -> {
+                u.field(range.field());
+                if (range.min() != null) {
+                    u.gte(JsonData.of(bound(range.lowerBound())));
+                }
+                if (range.max() != null) {
+                    u.lte(JsonData.of(bound(range.upperBound())));
+                }
+                return u;
+            })));
+        }
+        if (filter instanceof MetadataFilter.And and) {
+            List<Query> operands = toQueries(and.filters(), keywordSuffix);
+            return Query.of(q -> q.bool(b -> b.filter(operands)));
+        }
+        MetadataFilter.Or or = (MetadataFilter.Or) filter;
+        List<Query> operands = toQueries(or.filters(), keywordSuffix);
+        return Query.of(q -> q.bool(b -> b.should(operands).minimumShouldMatch("1")));
+    }
+
+    /**
+     * Translates the legacy {@code withFilters} map: each entry requires the field to equal the value, or one of
+     * the values if it is a collection.
+     * @return The filter, or {@code null} if the map is empty.
+     */
+    static MetadataFilter fromMap(Map<String, Object> filters) {
+        if (filters == null || filters.isEmpty()) {
+            return null;
+        }
+        List<MetadataFilter> conditions = new ArrayList<>(filters.size());
+        for (Map.Entry<String, Object> entry : filters.entrySet()) {
+            conditions.add(entry.getValue() instanceof Collection<?> values
+                    ? MetadataFilter.in(entry.getKey(), values)
+                    : MetadataFilter.eq(entry.getKey(), entry.getValue()));
+        }
+        return (conditions.size() == 1) ? conditions.get(0) : MetadataFilter.and(conditions.toArray(new MetadataFilter[0]));
+    }
+
+    private static List<Query> toQueries(List<MetadataFilter> filters, String keywordSuffix) {
+        List<Query> queries = new ArrayList<>(filters.size());
+        for (MetadataFilter filter : filters) {
+            queries.add(toQuery(filter, keywordSuffix));
+        }
+        return queries;
+    }
+
+    private static String fieldName(String field, Object value, String keywordSuffix) {
+        return (value instanceof CharSequence) ? field + keywordSuffix : field;
+    }
+
+    /** Converts a filter value; timestamps become epoch milliseconds and other objects their string form. */
+    private static FieldValue fieldValue(Object value) {
+        if (value instanceof Boolean bool) {
+            return FieldValue.of(bool);
+        }
+        if (value instanceof Byte || value instanceof Short || value instanceof Integer || value instanceof Long) {
+            return FieldValue.of(((Number) value).longValue());
+        }
+        if (value instanceof Number number) {
+            return FieldValue.of(number.doubleValue());
+        }
+        if (value instanceof Instant instant) {
+            return FieldValue.of(instant.toEpochMilli());
+        }
+        if (value instanceof Date date) {
+            return FieldValue.of(date.getTime());
+        }
+        if (value instanceof OffsetDateTime dateTime) {
+            return FieldValue.of(dateTime.toInstant().toEpochMilli());
+        }
+        if (value instanceof ZonedDateTime dateTime) {
+            return FieldValue.of(dateTime.toInstant().toEpochMilli());
+        }
+        return FieldValue.of(value.toString()); // Strings, and LocalDate in ISO form, which date fields parse
+    }
+
+    /** @return A whole-number bound as a long, so that epoch milliseconds are sent without a fraction. */
+    private static Object bound(double value) {
+        return (value == Math.rint(value) && Math.abs(value) < 0x1p53) ? (Object) (long) value : (Object) value;
+    }
+}
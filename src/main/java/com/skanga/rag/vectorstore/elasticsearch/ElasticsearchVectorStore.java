@@ -1,25 +1,45 @@
 package com.skanga.rag.vectorstore.elasticsearch;
 
+import co.elastic.clients.elasticsearch.ElasticsearchAsyncClient;
 import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.ElasticsearchException;
+import co.elastic.clients.elasticsearch._types.KnnSearch;
+import co.elastic.clients.elasticsearch._types.Time;
+import co.elastic.clients.elasticsearch._types.mapping.DenseVectorProperty;
 import co.elastic.clients.elasticsearch._types.mapping.DenseVectorSimilarity;
+import co.elastic.clients.elasticsearch._types.mapping.DynamicTemplate;
+import co.elastic.clients.elasticsearch._types.mapping.Property;
+import co.elastic.clients.elasticsearch._types.query_dsl.Query;
 import co.elastic.clients.elasticsearch.core.BulkRequest;
 import co.elastic.clients.elasticsearch.core.BulkResponse;
+import co.elastic.clients.elasticsearch.core.MsearchRequest;
+import co.elastic.clients.elasticsearch.core.MsearchResponse;
+import co.elastic.clients.elasticsearch.core.ReindexResponse;
 import co.elastic.clients.elasticsearch.core.SearchRequest;
 import co.elastic.clients.elasticsearch.core.SearchResponse;
 import co.elastic.clients.elasticsearch.core.bulk.BulkResponseItem;
+import co.elastic.clients.elasticsearch.core.msearch.MultiSearchResponseItem;
 import co.elastic.clients.elasticsearch.core.search.Hit;
 import co.elastic.clients.elasticsearch.indices.CreateIndexRequest;
 import co.elastic.clients.elasticsearch.indices.ExistsRequest;
+import co.elastic.clients.elasticsearch.indices.GetIndicesSettingsResponse;
+import co.elastic.clients.elasticsearch.indices.GetMappingResponse;
+import co.elastic.clients.elasticsearch.indices.IndexState;
+import co.elastic.clients.elasticsearch.indices.get_mapping.IndexMappingRecord;
 // import co.elastic.clients.elasticsearch.indices.PutMappingRequest; // For updating mapping if needed
 // import co.elastic.clients.elasticsearch.indices.GetMappingRequest; // For getting mapping if needed
 // import co.elastic.clients.elasticsearch.indices.GetMappingResponse; // For getting mapping if needed
 // import co.elastic.clients.json.JsonData; // Not directly used if passing Map for document
 import co.elastic.clients.json.jackson.JacksonJsonpMapper; // To get ObjectMapper from ES client
 import co.elastic.clients.transport.endpoints.BooleanResponse;
+import co.elastic.clients.util.NamedValue;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.skanga.rag.Document;
+import com.skanga.rag.vectorstore.BulkIngestReport;
+import com.skanga.rag.vectorstore.BulkIngester;
 import com.skanga.rag.vectorstore.VectorStore;
 import com.skanga.rag.vectorstore.VectorStoreException;
+import com.skanga.rag.vectorstore.filter.MetadataFilter;
 
 import java.io.IOException;
 import java.util.ArrayList;
@@ -28,6 +48,13 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
 import java.util.stream.Collectors;
 // import java.util.stream.Collectors; // Not strictly needed in current version
 
@@ -41,8 +68,21 @@ import java.util.stream.Collectors;
  *   <li>Automatically creates the index with a suitable mapping for vector search
  *       (using `dense_vector` field for embeddings with cosine similarity) if it doesn't exist,
  *       based on the first document added.</li>
- *   <li>Adds documents in bulk using Elasticsearch's Bulk API.</li>
- *   <li>Performs similarity searches using Elasticsearch's k-Nearest Neighbor (kNN) search API.</li>
+ *   <li>Adds documents in bulk using Elasticsearch's Bulk API. Documents are indexed under their own ID,
+ *       so adding a document with an existing ID replaces it ({@link #upsertDocuments(List)}).</li>
+ *   <li>Large writes are split into bulk requests by document count and payload size, sent with a bounded
+ *       number in flight, and items rejected with a retryable status are resent with backoff; see
+ *       {@link #withBulkIngester(BulkIngester)} and {@link #bulkIngest(List)}. The index refresh can be
+ *       relaxed for the duration of large loads ({@link #withBulkRefreshInterval(String)}).</li>
+ *   <li>Deletes documents by ID with bulk {@code delete} operations ({@link #deleteDocuments(List)}).</li>
+ *   <li>Performs similarity searches using Elasticsearch's k-Nearest Neighbor (kNN) search API. Results
+ *       leave the embedding out of {@code _source}, and {@code num_candidates} and the similarity threshold
+ *       can be set per store or per query ({@link KnnOptions}).</li>
+ *   <li>{@link MetadataFilter}s are sent as the kNN {@code filter}, so the cluster restricts the candidates
+ *       before ranking and a filtered search still returns {@code k} matches
+ *       ({@link #similaritySearchVector(float[], int, MetadataFilter)}).</li>
+ *   <li>{@link #similaritySearchAsync(List, int)} and {@link #addDocumentsAsync(List)} go through an
+ *       {@link ElasticsearchAsyncClient} sharing the blocking client's transport.</li>
  * </ul>
  * </p>
  *
@@ -56,19 +96,26 @@ import java.util.stream.Collectors;
  * <p><b>Mapping and Dimensions:</b>
  * The dimension of the `dense_vector` field for embeddings is determined from the
  * first document added to the store. Subsequent documents must have embeddings of the
- * same dimension. Changing dimensions typically requires reindexing in Elasticsearch.
+ * same dimension. The HNSW variant (float, int8, int4 or bbq quantized) and graph parameters of a new
+ * index are set with {@link #withIndexOptions(VectorIndexOptions)}. For an existing index, the first write
+ * checks the mapping: a different dimension is an error, different index options a warning. Changing either
+ * requires reindexing ({@link #reindexTo(String, VectorIndexOptions)}); {@link #estimateIndexMemory()} shows
+ * what the options cost in RAM.
  * </p>
  *
  * <p><b>Metadata Filtering:</b>
- * Basic support for filtering is provided via the `withFilters(Map)` method. The actual
- * conversion of this filter map into Elasticsearch Query DSL needs to be implemented
- * within the `similaritySearch` method if complex filtering is required. For now,
- * it's a placeholder for future enhancement.
+ * Metadata entries are stored as top-level source fields. Filters passed to a search, and the equality
+ * filters set with {@link #withFilters(Map)} (which apply to every search), are translated into query DSL
+ * and pushed into the kNN {@code filter} clause. Indices created by this store map metadata strings as
+ * {@code keyword} so they can be matched exactly; for an existing index with Elasticsearch's default dynamic
+ * mapping, set {@link #withKeywordSuffix(String)} to {@code ".keyword"}.
  * </p>
  */
 public class ElasticsearchVectorStore implements VectorStore {
 
     private final ElasticsearchClient elasticsearchClient;
+    /** Client for the asynchronous methods; created on first use, see {@link #asyncClient()}. */
+    private volatile ElasticsearchAsyncClient asyncClient;
     private final String indexName;
     private final int defaultTopK; // Currently not used as k is always passed to search
     private Map<String, Object> filters; // For Elasticsearch filter DSL (structure TBD)
@@ -88,6 +135,77 @@ public class ElasticsearchVectorStore implements VectorStore {
     /** Default value for K if constructor doesn't specify. */
     private static final int DEFAULT_K_ELASTIC = 5;
 
+    /** Item and request statuses worth retrying: too many requests, and the cluster being temporarily unavailable. */
+    private static final Set<Integer> RETRYABLE_STATUSES = Set.of(429, 502, 503, 504);
+    /** Elasticsearch's default refresh interval, restored after a load if the index had no explicit one. */
+    private static final String DEFAULT_REFRESH_INTERVAL = "1s";
+    /** Runs blocking bulk requests so that several can be in flight; shared by all instances. */
+    private static final ExecutorService BULK_EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "agentforge-es-bulk");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /** Chunking, concurrency and retry policy of bulk writes. */
+    private volatile BulkIngester bulkIngester = new BulkIngester();
+    /** The refresh interval set during multi-request loads, or {@code null} to leave the index setting alone. */
+    private volatile String bulkRefreshInterval;
+    /** Guards {@link #activeBulkLoads} and {@link #savedRefreshInterval}. */
+    private final Object refreshLock = new Object();
+    private int activeBulkLoads;
+    private String savedRefreshInterval;
+    private volatile BulkIngestReport lastBulkReport;
+
+    /** {@code num_candidates} and similarity threshold of searches that do not pass their own. */
+    private volatile KnnOptions knnOptions = KnnOptions.DEFAULT;
+    /** Appended to field names when filtering on string values, e.g. ".keyword". */
+    private volatile String keywordSuffix = "";
+    /** The {@code index_options} of the embedding field of an index this store creates, or {@code null} for the cluster default. */
+    private volatile VectorIndexOptions indexOptions;
+
+    /**
+     * Per-query tuning of the kNN search.
+     *
+     * <p>{@code num_candidates} is the number of nearest neighbours each shard gathers from its HNSW graph
+     * before the top {@code k} are chosen: more candidates raise recall and cost latency. The similarity
+     * threshold drops hits below a minimum vector similarity, computed like the field's similarity function
+     * (for the {@code cosine} mapping this store creates, the cosine in {@code [-1, 1]}, not the
+     * {@code _score} of {@code (1 + cosine) / 2}), so a search can return fewer than {@code k} documents.</p>
+     *
+     * @param numCandidates The candidates per shard, from 1 to 10000, or {@code null} for
+     *                      {@code max(50, 5 * k)}. Raised to {@code k} if smaller.
+     * @param similarity    The minimum similarity of a hit, or {@code null} for none.
+     */
+    public record KnnOptions(Integer numCandidates, Float similarity) {
+
+        /** Default candidates, no similarity threshold. */
+        public static final KnnOptions DEFAULT = new KnnOptions(null, null);
+        /** The largest {@code num_candidates} Elasticsearch accepts. */
+        public static final int MAX_NUM_CANDIDATES = 10_000;
+
+        public KnnOptions {
+            if (numCandidates != null && (numCandidates <= 0 || numCandidates > MAX_NUM_CANDIDATES)) {
+                throw new IllegalArgumentException("num_candidates must be between 1 and " + MAX_NUM_CANDIDATES + "; got " + numCandidates + ".");
+            }
+        }
+
+        /** @return These options with the given {@code num_candidates}. */
+        public KnnOptions withNumCandidates(int numCandidates) {
+            return new KnnOptions(numCandidates, similarity);
+        }
+
+        /** @return These options with the given similarity threshold, or none if {@code null}. */
+        public KnnOptions withSimilarity(Float similarity) {
+            return new KnnOptions(numCandidates, similarity);
+        }
+
+        /** @return The {@code num_candidates} sent for a search of {@code k} results. */
+        int numCandidatesFor(int k) {
+            int candidates = (numCandidates != null) ? numCandidates : Math.min(Math.max(50, k * 5), MAX_NUM_CANDIDATES);
+            return Math.max(candidates, k);
+        }
+    }
+
 
     /**
      * Constructs an ElasticsearchVectorStore.
@@ -140,48 +258,39 @@ public class ElasticsearchVectorStore implements VectorStore {
             return;
         }
         Objects.requireNonNull(firstDocument, "First document cannot be null for mapping check.");
-        if (firstDocument.getEmbedding() == null || firstDocument.getEmbedding().isEmpty()) {
+        if (firstDocument.getEmbeddingVector().length == 0) {
             throw new VectorStoreException("First document for mapping check must have a valid (non-empty) embedding to determine dimension. Doc ID: " + firstDocument.getId());
         }
-        this.vectorDimension = firstDocument.getEmbedding().size();
+        this.vectorDimension = firstDocument.getEmbeddingVector().length;
         if (this.vectorDimension == 0) { // Should be caught by isEmpty, but defensive
              throw new VectorStoreException("Embedding dimension for first document is 0. Cannot create mapping. Doc ID: " + firstDocument.getId());
         }
 
 
+        VectorIndexOptions options = this.indexOptions;
+        if (options != null) {
+            try {
+                options.validateFor(this.vectorDimension);
+            } catch (IllegalArgumentException e) {
+                throw new VectorStoreException("Cannot create Elasticsearch index '" + this.indexName + "': " + e.getMessage(), e);
+            }
+        }
+
         try {
             BooleanResponse existsResponse = elasticsearchClient.indices().exists(new ExistsRequest.Builder().index(this.indexName).build());
 
             if (!existsResponse.value()) {
                 // Index does not exist, create it with mapping
-                CreateIndexRequest.Builder createIndexBuilder = new CreateIndexRequest.Builder().index(this.indexName);
-                createIndexBuilder.mappings(m -> m
-                    .properties(MAPPING_FIELD_EMBEDDING, p -> p
-                        .denseVector(dv -> dv
-                            .dims(this.vectorDimension)
-                            .index(true) // Enable indexing for kNN search
-                            .similarity(DenseVectorSimilarity.Cosine) // Common choice for semantic similarity
-                        )
-                    )
-                    .properties(MAPPING_FIELD_CONTENT, p -> p.text(t -> t)) // Standard text field
-                    .properties(MAPPING_FIELD_SOURCE_TYPE, p -> p.keyword(k -> k)) // Keyword for exact matches/aggregations
-                    .properties(MAPPING_FIELD_SOURCE_NAME, p -> p.keyword(k -> k))
-                    // Other metadata fields from Document.metadata will be dynamically mapped by Elasticsearch by default.
-                    // If specific mapping is needed for metadata fields (e.g., date, number), it should be added here.
-                );
-                elasticsearchClient.indices().create(createIndexBuilder.build());
-                System.out.println("Elasticsearch index '" + this.indexName + "' created with mapping for 'embedding' (dims: " + this.vectorDimension + ", similarity: cosine).");
+                createIndex(this.indexName, this.vectorDimension, options);
+                System.out.println("Elasticsearch index '" + this.indexName + "' created with mapping for 'embedding' (dims: " + this.vectorDimension +
+                                   ", similarity: cosine, index_options: " + ((options != null) ? options.type().jsonValue() : "cluster default") + ").");
             } else {
-                // Index exists. Optionally, verify existing mapping here.
-                // GetFieldMappingRequest or GetMappingRequest could be used.
-                // Note: Modifying 'dims' of an existing 'dense_vector' field is not allowed.
-                // For simplicity, we assume if index exists, its mapping is compatible or managed externally.
-                System.out.println("Elasticsearch index '" + this.indexName + "' already exists. Assuming compatible mapping.");
-                // TODO: Consider fetching existing mapping to confirm vectorDimension if not set yet.
-                // This is important if the class instance is new but the index pre-exists.
-                // For now, vectorDimension is set from the first doc added to *this instance*.
+                // Index exists: its dense_vector mapping cannot be changed in place, so check it against this store.
+                verifyExistingMapping(options);
             }
             mappingCheckedAndSet = true;
+        } catch (VectorStoreException e) {
+            throw e;
         } catch (IOException e) { // Covers ES client communication errors
             throw new VectorStoreException("Failed to check or create Elasticsearch index/mapping for '" + this.indexName + "': " + e.getMessage(), e);
         } catch (Exception e) { // Catch other potential ES client exceptions
@@ -189,48 +298,279 @@ public class ElasticsearchVectorStore implements VectorStore {
         }
     }
 
+    /** Creates an index with the store's mapping: a cosine {@code dense_vector} field and keyword metadata strings. */
+    private void createIndex(String name, int dimension, VectorIndexOptions options) throws IOException {
+        CreateIndexRequest.Builder createIndexBuilder = new CreateIndexRequest.Builder().index(name);
+        createIndexBuilder.mappings(m -> m
+            .properties(MAPPING_FIELD_EMBEDDING, p -> p
+                .denseVector(dv -> {
+                    dv.dims(dimension)
+                      .index(true) // Enable indexing for kNN search
+                      .similarity(DenseVectorSimilarity.Cosine); // Common choice for semantic similarity
+                    if (options != null) {
+                        dv.indexOptions(options.toMapping()); // Otherwise the cluster default (int8_hnsw since 8.14)
+                    }
+                    return dv;
+                })
+            )
+            .properties(MAPPING_FIELD_CONTENT, p -> p.text(t -> t)) // Standard text field
+            .properties(MAPPING_FIELD_SOURCE_TYPE, p -> p.keyword(k -> k)) // Keyword for exact matches/aggregations
+            .properties(MAPPING_FIELD_SOURCE_NAME, p -> p.keyword(k -> k))
+            // Other metadata fields from Document.metadata are mapped dynamically. Strings become keywords
+            // rather than analyzed text, so that metadata filters (term queries) match them exactly.
+            .dynamicTemplates(NamedValue.of("metadata_strings", DynamicTemplate.of(d -> d
+                .matchMappingType("string")
+                .mapping(p -> p.keyword(k -> k)))))
+        );
+        elasticsearchClient.indices().create(createIndexBuilder.build());
+    }
+
+    /**
+     * Checks the embedding mapping of an existing index against the first document's dimension and the
+     * configured index options.
+     * @throws VectorStoreException if the dimensions differ; differing index options only produce a warning,
+     *                              since the index still works, just with other memory and recall.
+     */
+    private void verifyExistingMapping(VectorIndexOptions configured) throws IOException, VectorStoreException {
+        DenseVectorProperty existing = embeddingMapping(this.indexName);
+        if (existing == null) {
+            System.err.println("Warning: Elasticsearch index '" + this.indexName + "' has no dense_vector field '" + MAPPING_FIELD_EMBEDDING +
+                               "'; documents will be indexed, but kNN searches fail until it is mapped.");
+            return;
+        }
+        if (existing.dims() != null && existing.dims() != this.vectorDimension) {
+            throw new VectorStoreException("Existing Elasticsearch index '" + this.indexName + "' maps '" + MAPPING_FIELD_EMBEDDING + "' with " +
+                                           existing.dims() + " dimensions, but the documents have " + this.vectorDimension + ".");
+        }
+        VectorIndexOptions actual = VectorIndexOptions.fromMapping(existing.indexOptions());
+        if (configured != null && !configured.equals(actual)) {
+            System.err.println("Warning: Elasticsearch index '" + this.indexName + "' uses index_options " +
+                               ((actual != null) ? actual : "(cluster default)") + ", not the configured " + configured +
+                               ". Existing vectors keep their format; use reindexTo to migrate.");
+        }
+    }
+
+    /** @return The mapping of the embedding field of an index, or {@code null} if it has none. */
+    private DenseVectorProperty embeddingMapping(String index) throws IOException {
+        GetMappingResponse response = elasticsearchClient.indices().getMapping(g -> g.index(index));
+        // Keyed by concrete index name, which differs from the requested name for an alias
+        for (IndexMappingRecord record : response.mappings().values()) {
+            Property property = (record.mappings() != null) ? record.mappings().properties().get(MAPPING_FIELD_EMBEDDING) : null;
+            if (property != null && property.isDenseVector()) {
+                return property.denseVector();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Sets the {@code index_options} of the embedding field when this store creates its index. An existing
+     * index is not changed; if its options differ, a warning is printed on the first write (see
+     * {@link #reindexTo(String, VectorIndexOptions)}).
+     *
+     * @param indexOptions The options, or {@code null} for the cluster default (the initial setting).
+     * @return This {@code ElasticsearchVectorStore} instance.
+     */
+    public ElasticsearchVectorStore withIndexOptions(VectorIndexOptions indexOptions) {
+        this.indexOptions = indexOptions;
+        return this;
+    }
+
+    /**
+     * Reads the index options of the existing index.
+     * @return The options, or {@code null} if the mapping sets none (the cluster default applies) or the index
+     *         has no embedding field.
+     * @throws VectorStoreException if the mapping cannot be read.
+     */
+    public VectorIndexOptions readIndexOptions() throws VectorStoreException {
+        try {
+            DenseVectorProperty existing = embeddingMapping(this.indexName);
+            return (existing == null) ? null : VectorIndexOptions.fromMapping(existing.indexOptions());
+        } catch (IOException | RuntimeException e) {
+            throw new VectorStoreException("Failed to read the mapping of Elasticsearch index '" + this.indexName + "': " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Estimates the memory the cluster needs to search this index quickly, from its document count and
+     * embedding mapping, so that index options can be chosen for the available RAM. An index without explicit
+     * options is estimated as {@code int8_hnsw}, the default for float vectors since Elasticsearch 8.14.
+     *
+     * @return The estimate.
+     * @throws VectorStoreException if the index cannot be read or has no embedding field.
+     */
+    public IndexMemoryEstimate estimateIndexMemory() throws VectorStoreException {
+        try {
+            DenseVectorProperty existing = embeddingMapping(this.indexName);
+            if (existing == null || existing.dims() == null) {
+                throw new VectorStoreException("Elasticsearch index '" + this.indexName + "' has no dense_vector mapping for '" + MAPPING_FIELD_EMBEDDING + "'.");
+            }
+            VectorIndexOptions options = VectorIndexOptions.fromMapping(existing.indexOptions());
+            if (options == null) {
+                options = VectorIndexOptions.of(VectorIndexOptions.Type.INT8_HNSW);
+            }
+            long documents = elasticsearchClient.count(c -> c.index(this.indexName)).count();
+            return options.estimateMemory(documents, existing.dims());
+        } catch (VectorStoreException e) {
+            throw e;
+        } catch (IOException | RuntimeException e) {
+            throw new VectorStoreException("Failed to estimate the memory of Elasticsearch index '" + this.indexName + "': " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Copies this index into a new index with other index options, since the options of an existing
+     * {@code dense_vector} field cannot be changed. The new index gets this store's mapping and is filled with
+     * a server-side {@code _reindex}, which re-quantizes and re-links every vector; the source index is left
+     * untouched. Switch readers over by pointing an alias at the new index, or use the returned store.
+     *
+     * @param targetIndex The name of the new index, which must not exist.
+     * @param options     Its index options.
+     * @return A store for the new index, with this store's settings and the new options.
+     * @throws VectorStoreException if the source mapping cannot be read, the target exists or the reindex fails.
+     */
+    public ElasticsearchVectorStore reindexTo(String targetIndex, VectorIndexOptions options) throws VectorStoreException {
+        Objects.requireNonNull(targetIndex, "Target index name cannot be null.");
+        Objects.requireNonNull(options, "Index options cannot be null.");
+        try {
+            DenseVectorProperty existing = embeddingMapping(this.indexName);
+            if (existing == null || existing.dims() == null) {
+                throw new VectorStoreException("Elasticsearch index '" + this.indexName + "' has no dense_vector mapping for '" + MAPPING_FIELD_EMBEDDING + "' to reindex.");
+            }
+            int dimension = existing.dims();
+            options.validateFor(dimension);
+            if (elasticsearchClient.indices().exists(e -> e.index(targetIndex)).value()) {
+                throw new VectorStoreException("Elasticsearch index '" + targetIndex + "' already exists; reindexTo needs a new index.");
+            }
+            createIndex(targetIndex, dimension, options);
+            ReindexResponse response = elasticsearchClient.reindex(r -> r
+                    .source(source -> source.index(this.indexName))
+                    .dest(dest -> dest.index(targetIndex))
+                    .refresh(true)
+                    .waitForCompletion(true));
+            if (response.failures() != null && !response.failures().isEmpty()) {
+                throw new VectorStoreException("Reindexing Elasticsearch index '" + this.indexName + "' into '" + targetIndex + "' failed for " +
+                                               response.failures().size() + " documents, e.g.: " + response.failures().get(0).cause().reason());
+            }
+        } catch (VectorStoreException e) {
+            throw e;
+        } catch (IllegalArgumentException e) {
+            throw new VectorStoreException("Cannot reindex Elasticsearch index '" + this.indexName + "': " + e.getMessage(), e);
+        } catch (IOException | RuntimeException e) {
+            throw new VectorStoreException("Failed to reindex Elasticsearch index '" + this.indexName + "' into '" + targetIndex + "': " + e.getMessage(), e);
+        }
+
+        ElasticsearchVectorStore target = new ElasticsearchVectorStore(this.elasticsearchClient, targetIndex, this.defaultTopK)
+                .withIndexOptions(options)
+                .withKnnOptions(this.knnOptions)
+                .withKeywordSuffix(this.keywordSuffix)
+                .withBulkIngester(this.bulkIngester)
+                .withBulkRefreshInterval(this.bulkRefreshInterval)
+                .withFilters(this.filters);
+        if (this.asyncClient != null) {
+            target.withAsyncClient(this.asyncClient);
+        }
+        return target;
+    }
 
     @Override
     public void addDocument(Document document) throws VectorStoreException {
         addDocuments(Collections.singletonList(document));
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>Runs {@link #bulkIngest(List)}: the documents are sent in chunks with a bounded number of requests in
+     * flight, and items rejected with a retryable status are resent.</p>
+     * @throws VectorStoreException if a document is invalid, or documents still fail after the retries; then the
+     *                              other documents have been written.
+     */
     @Override
     public void addDocuments(List<Document> documents) throws VectorStoreException {
         Objects.requireNonNull(documents, "Documents list cannot be null.");
         if (documents.isEmpty()) {
             return;
         }
-        // Ensure mapping is checked and vectorDimension is set based on the first valid document.
-        // This handles the case where the store is new or vectorDimension hasn't been initialized.
-        if (!mappingCheckedAndSet) {
-            Document firstValidDocForMapping = null;
-            for (Document doc : documents) {
-                if (doc != null && doc.getEmbedding() != null && !doc.getEmbedding().isEmpty()) {
-                    firstValidDocForMapping = doc;
-                    break;
-                }
-            }
-            if (firstValidDocForMapping == null) {
-                throw new VectorStoreException("No document with valid embedding found in the batch to establish mapping.");
-            }
-            checkAndEnsureIndexMapping(firstValidDocForMapping);
+        throwIfFailed(bulkIngest(documents), "upsert");
+    }
+
+    /**
+     * Writes documents in bulk and reports the outcome instead of throwing for documents that fail.
+     *
+     * <p>All documents are validated first, so an invalid one fails the call before anything is sent. They are
+     * then split into bulk requests of at most {@link BulkIngester#getMaxDocuments()} documents and
+     * {@link BulkIngester#getMaxBytes()} estimated bytes, each built only when it is sent, with at most
+     * {@link BulkIngester#getMaxInFlight()} requests outstanding. Items rejected with status 429, 502, 503 or
+     * 504, and requests that fail with an I/O error, are retried with exponential backoff. If the load takes
+     * more than one request and {@link #withBulkRefreshInterval(String)} is set, the index refresh interval is
+     * changed for its duration.</p>
+     *
+     * @param documents The documents, each with an embedding of the index dimension.
+     * @return The report, also available from {@link #getLastBulkReport()}.
+     * @throws VectorStoreException if a document is invalid or the index mapping cannot be established.
+     */
+    public BulkIngestReport bulkIngest(List<Document> documents) throws VectorStoreException {
+        Objects.requireNonNull(documents, "Documents list cannot be null.");
+        if (!documents.isEmpty()) {
+            validateUpsert(documents);
         }
+        return awaitLoad(load(documents, BulkIngester::estimatedJsonBytes, blockingSender(this::upsertBulkRequest)));
+    }
 
-        BulkRequest.Builder br = new BulkRequest.Builder();
+    /**
+     * {@inheritDoc}
+     * <p>Sends the same bulk requests as {@link #addDocuments(List)} through the asynchronous client, so no
+     * thread waits for the cluster. The first write of a store instance still checks or creates the index
+     * mapping synchronously before the first request is sent.</p>
+     */
+    @Override
+    public CompletableFuture<Void> addDocumentsAsync(List<Document> documents) {
+        Objects.requireNonNull(documents, "Documents list cannot be null.");
+        if (documents.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        try {
+            validateUpsert(documents);
+        } catch (VectorStoreException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        BulkIngester.ChunkSender<Document> sender = chunk -> asyncClient().bulk(upsertBulkRequest(chunk))
+                .thenApply(response -> itemFailures(response, chunk.size()));
+        return load(documents, BulkIngester::estimatedJsonBytes, sender).thenAccept(report -> throwIfFailed(report, "upsert"));
+    }
+
+    /**
+     * Validates documents against the index mapping, creating the index on the first write.
+     * @throws VectorStoreException if a document has no embedding or the wrong dimension, or the mapping check fails.
+     */
+    private void validateUpsert(List<Document> documents) throws VectorStoreException {
         for (Document doc : documents) {
             Objects.requireNonNull(doc, "Document in list cannot be null.");
-            if (doc.getEmbedding() == null || doc.getEmbedding().isEmpty()) {
+            if (doc.getEmbeddingVector().length == 0) {
                 throw new VectorStoreException("Document embedding cannot be null or empty for Elasticsearch. Doc ID: " + doc.getId());
             }
+        }
+        // Ensure mapping is checked and vectorDimension is set based on the first document.
+        // This handles the case where the store is new or vectorDimension hasn't been initialized.
+        if (!mappingCheckedAndSet) {
+            checkAndEnsureIndexMapping(documents.get(0));
+        }
+
+        for (Document doc : documents) {
             // Validate dimension consistency after mapping is set and vectorDimension is known
-            if (this.vectorDimension > 0 && doc.getEmbedding().size() != this.vectorDimension) {
-                 throw new VectorStoreException("Document embedding dimension " + doc.getEmbedding().size() +
+            if (this.vectorDimension > 0 && doc.getEmbeddingVector().length != this.vectorDimension) {
+                 throw new VectorStoreException("Document embedding dimension " + doc.getEmbeddingVector().length +
                                                 " does not match established index dimension " + this.vectorDimension + ". Doc ID: " + doc.getId());
             }
+        }
+    }
 
+    /** Builds the bulk request indexing validated documents under their IDs. */
+    private BulkRequest upsertBulkRequest(List<Document> documents) {
+        BulkRequest.Builder br = new BulkRequest.Builder();
+        for (Document doc : documents) {
             Map<String, Object> sourceMap = new HashMap<>();
-            sourceMap.put(MAPPING_FIELD_EMBEDDING, doc.getEmbedding());
+            sourceMap.put(MAPPING_FIELD_EMBEDDING, doc.getEmbeddingVector()); // float[] serializes without boxing
             sourceMap.put(MAPPING_FIELD_CONTENT, doc.getContent());
             if(doc.getSourceType() != null) sourceMap.put(MAPPING_FIELD_SOURCE_TYPE, doc.getSourceType());
             if(doc.getSourceName() != null) sourceMap.put(MAPPING_FIELD_SOURCE_NAME, doc.getSourceName());
@@ -258,30 +598,422 @@ public class ElasticsearchVectorStore implements VectorStore {
             );
         }
 
+        // Optional: Refresh index if immediate searchability after add is critical
+        // This has performance implications for frequent writes.
+        // elasticsearchClient.indices().refresh(r -> r.index(this.indexName));
+        return br.build();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>Documents are indexed under their ID, which replaces any existing document with that ID,
+     * so this is the same bulk request as {@link #addDocuments(List)}. If the list repeats an ID,
+     * the last document for it wins.</p>
+     */
+    @Override
+    public void upsertDocuments(List<Document> documents) throws VectorStoreException {
+        addDocuments(documents);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>Sends bulk requests with a {@code delete} operation per ID, chunked like {@link #bulkIngest(List)}.
+     * IDs that do not exist in the index are reported by Elasticsearch as {@code not_found}, which is not
+     * treated as an error.</p>
+     */
+    @Override
+    public void deleteDocuments(List<String> documentIds) throws VectorStoreException {
+        Objects.requireNonNull(documentIds, "Document IDs list cannot be null.");
+        if (documentIds.isEmpty()) {
+            return;
+        }
+        for (String id : documentIds) {
+            Objects.requireNonNull(id, "Document ID cannot be null.");
+        }
+        BulkIngester.ChunkSender<String> sender = blockingSender(ids -> {
+            BulkRequest.Builder br = new BulkRequest.Builder();
+            for (String id : ids) {
+                br.operations(op -> op
+                    .delete(del -> del
+                        .index(this.indexName)
+                        .id(id)
+                    )
+                );
+            }
+            return br.build();
+        });
+        throwIfFailed(awaitLoad(load(documentIds, id -> 64 + id.length(), sender)), "delete");
+    }
+
+    /**
+     * Sets the chunking, concurrency and retry policy of bulk writes. Defaults to {@code new BulkIngester()}:
+     * 1000 documents or 10 MB per request, 4 requests in flight, 3 retries starting at 200 ms.
+     *
+     * @param bulkIngester The policy.
+     * @return This {@code ElasticsearchVectorStore} instance.
+     */
+    public ElasticsearchVectorStore withBulkIngester(BulkIngester bulkIngester) {
+        this.bulkIngester = Objects.requireNonNull(bulkIngester, "BulkIngester cannot be null.");
+        return this;
+    }
+
+    /**
+     * Sets the index's {@code refresh_interval} for the duration of writes that take more than one bulk
+     * request, e.g. {@code "-1"} to disable refreshes or {@code "30s"}. Refreshing less often makes large loads
+     * considerably faster, at the cost of new documents becoming searchable only at the end. Afterwards the
+     * interval is restored to the index's previous explicit value (or Elasticsearch's default of 1s) and the
+     * index is refreshed. Concurrent loads of one store share a single change.
+     *
+     * @param refreshInterval The interval during loads, or {@code null} to leave the setting alone (the default).
+     * @return This {@code ElasticsearchVectorStore} instance.
+     */
+    public ElasticsearchVectorStore withBulkRefreshInterval(String refreshInterval) {
+        this.bulkRefreshInterval = refreshInterval;
+        return this;
+    }
+
+    /** @return The report of the most recent bulk write of this store, or {@code null} if none has finished. */
+    public BulkIngestReport getLastBulkReport() {
+        return this.lastBulkReport;
+    }
+
+    /**
+     * Chunks and sends a write, relaxing the refresh interval around it if configured.
+     * The returned future does not complete exceptionally; failures are in the report.
+     */
+    private <T> CompletableFuture<BulkIngestReport> load(List<T> items, ToLongFunction<? super T> sizeOf, BulkIngester.ChunkSender<T> sender) {
+        BulkIngester ingester = this.bulkIngester;
+        List<BulkIngester.Chunk<T>> chunks = ingester.chunk(items, sizeOf);
+        String refreshInterval = this.bulkRefreshInterval;
+        CompletableFuture<BulkIngestReport> load;
+        if (refreshInterval == null || chunks.size() < 2) {
+            load = ingester.ingest(chunks, sender, ElasticsearchVectorStore::isRetryable);
+        } else {
+            // The settings calls use the blocking client, so they run on the bulk executor rather than the caller.
+            load = CompletableFuture.runAsync(() -> suspendRefresh(refreshInterval), BULK_EXECUTOR)
+                    .thenCompose(ignored -> ingester.ingest(chunks, sender, ElasticsearchVectorStore::isRetryable))
+                    .thenApplyAsync(report -> {
+                        resumeRefresh();
+                        return report;
+                    }, BULK_EXECUTOR);
+        }
+        return load.thenApply(report -> {
+            this.lastBulkReport = report;
+            return report;
+        });
+    }
+
+    /** Waits for a load started by {@link #load}. */
+    private BulkIngestReport awaitLoad(CompletableFuture<BulkIngestReport> load) throws VectorStoreException {
         try {
-            BulkResponse result = elasticsearchClient.bulk(br.build());
-            if (result.errors()) {
-                StringBuilder errorMessages = new StringBuilder("Bulk upsert to Elasticsearch encountered errors: ");
-                for (BulkResponseItem item : result.items()) {
-                    if (item.error() != null) {
-                        errorMessages.append("\nID ").append(item.id()).append(" (Index: ").append(item.index()).append("): Type: ").append(item.error().type()).append(" Reason: ").append(item.error().reason());
-                    }
-                }
-                throw new VectorStoreException(errorMessages.toString());
+            return load.join();
+        } catch (CompletionException e) {
+            throw asyncFailure(e, "Bulk write to Elasticsearch index '" + this.indexName + "' failed");
+        }
+    }
+
+    /** Sends each chunk with the blocking client on the bulk executor, so several can be in flight. */
+    private <T> BulkIngester.ChunkSender<T> blockingSender(Function<List<T>, BulkRequest> request) {
+        return chunk -> CompletableFuture.supplyAsync(() -> {
+            try {
+                return itemFailures(elasticsearchClient.bulk(request.apply(chunk)), chunk.size());
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, BULK_EXECUTOR);
+    }
+
+    /** Extracts the failed items of a bulk response; items rejected with a retryable status may be resent. */
+    private static List<BulkIngester.ItemFailure> itemFailures(BulkResponse result, int chunkSize) {
+        if (!result.errors()) {
+            return List.of();
+        }
+        List<BulkIngester.ItemFailure> failures = new ArrayList<>();
+        List<BulkResponseItem> items = result.items();
+        for (int i = 0; i < items.size(); i++) {
+            BulkResponseItem item = items.get(i);
+            if (item.error() != null) {
+                failures.add(new BulkIngester.ItemFailure(i, RETRYABLE_STATUSES.contains(item.status()),
+                        "ID " + item.id() + " (Index: " + item.index() + "): Status: " + item.status() +
+                        " Type: " + item.error().type() + " Reason: " + item.error().reason()));
+            }
+        }
+        if (failures.isEmpty()) {
+            // Errors were flagged without per-item details; nothing identifies what to retry.
+            for (int i = 0; i < chunkSize; i++) {
+                String item = (i < items.size())
+                        ? "ID " + items.get(i).id() + " (Index: " + items.get(i).index() + ")"
+                        : "Item " + i;
+                failures.add(new BulkIngester.ItemFailure(i, false, item + ": the bulk response reported errors without details"));
+            }
+        }
+        return failures;
+    }
+
+    /** Request-level errors worth retrying: I/O failures, and error responses with a retryable status. */
+    private static boolean isRetryable(Throwable error) {
+        if (error instanceof ElasticsearchException esException) {
+            return RETRYABLE_STATUSES.contains(esException.status());
+        }
+        return error instanceof IOException;
+    }
+
+    /** Turns the failures of a bulk write into a {@link VectorStoreException}. */
+    private void throwIfFailed(BulkIngestReport report, String action) throws VectorStoreException {
+        if (report.failedDocuments() == 0) {
+            return;
+        }
+        Throwable cause = report.requestFailure();
+        if (cause instanceof IOException) {
+            throw new VectorStoreException("Failed to bulk " + action + " documents in Elasticsearch index '" + this.indexName + "': " +
+                                           cause.getMessage() + " (" + report + ")", cause);
+        }
+        if (cause != null) {
+            throw new VectorStoreException("Unexpected error during Elasticsearch bulk " + action + " for '" + this.indexName + "': " +
+                                           cause.getMessage() + " (" + report + ")", cause);
+        }
+        StringBuilder errorMessages = new StringBuilder("Bulk " + action + " to Elasticsearch encountered errors: " +
+                                                        report.failedDocuments() + " of " + report.documents() + " documents failed:");
+        for (String failure : report.failures()) {
+            errorMessages.append("\n").append(failure);
+        }
+        throw new VectorStoreException(errorMessages.toString());
+    }
+
+    /** Applies the bulk refresh interval, remembering the index's own, unless another load already did. */
+    private void suspendRefresh(String refreshInterval) {
+        synchronized (refreshLock) {
+            if (activeBulkLoads++ > 0) {
+                return;
+            }
+            try {
+                GetIndicesSettingsResponse response = elasticsearchClient.indices().getSettings(g -> g
+                        .index(this.indexName)
+                        .name("index.refresh_interval"));
+                IndexState state = response.get(this.indexName);
+                Time current = (state != null && state.settings() != null && state.settings().index() != null)
+                        ? state.settings().index().refreshInterval()
+                        : null;
+                this.savedRefreshInterval = (current != null && current.isTime()) ? current.time() : null;
+                putRefreshInterval(refreshInterval);
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Warning: Could not set refresh_interval of Elasticsearch index '" + this.indexName +
+                                   "' for a bulk load: " + e.getMessage());
             }
-            // Optional: Refresh index if immediate searchability after add is critical
-            // This has performance implications for frequent writes.
-            // elasticsearchClient.indices().refresh(r -> r.index(this.indexName));
+        }
+    }
+
+    /** Restores the refresh interval and refreshes the index once the last concurrent load has finished. */
+    private void resumeRefresh() {
+        synchronized (refreshLock) {
+            if (--activeBulkLoads > 0) {
+                return;
+            }
+            try {
+                putRefreshInterval(this.savedRefreshInterval != null ? this.savedRefreshInterval : DEFAULT_REFRESH_INTERVAL);
+                elasticsearchClient.indices().refresh(r -> r.index(this.indexName));
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Warning: Could not restore refresh_interval of Elasticsearch index '" + this.indexName +
+                                   "' after a bulk load: " + e.getMessage());
+            }
+        }
+    }
+
+    private void putRefreshInterval(String refreshInterval) throws IOException {
+        elasticsearchClient.indices().putSettings(p -> p
+                .index(this.indexName)
+                .settings(settings -> settings.refreshInterval(t -> t.time(refreshInterval))));
+    }
+
+    @Override
+    public List<Document> similaritySearch(List<Double> queryEmbedding, int k) throws VectorStoreException {
+        return similaritySearch(queryEmbedding, k, null, this.knnOptions);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>The filter, combined with any set by {@link #withFilters(Map)}, is sent as the kNN {@code filter}.</p>
+     */
+    @Override
+    public List<Document> similaritySearchVector(float[] queryVector, int k, MetadataFilter filter) throws VectorStoreException {
+        return search(toQueryVector(queryVector, k), k, filter, this.knnOptions);
+    }
+
+    /**
+     * Performs a kNN search with its own filter and tuning.
+     *
+     * @param queryEmbedding The vector embedding of the query text.
+     * @param k              The number of top similar documents to retrieve.
+     * @param filter         The metadata filter, or {@code null}; combined with any set by {@link #withFilters(Map)}.
+     * @param options        The {@code num_candidates} and similarity threshold of this query.
+     * @return Up to {@code k} matching documents, highest score first, without their embeddings.
+     * @throws VectorStoreException if the query has the wrong dimension or the search fails.
+     */
+    public List<Document> similaritySearch(List<Double> queryEmbedding, int k, MetadataFilter filter, KnnOptions options) throws VectorStoreException {
+        Objects.requireNonNull(options, "KnnOptions cannot be null.");
+        return search(toQueryVector(queryEmbedding, k), k, filter, options);
+    }
+
+    /** Runs a kNN search for a validated query vector. */
+    private List<Document> search(List<Float> floatEmbedding, int k, MetadataFilter filter, KnnOptions options) throws VectorStoreException {
+        try {
+            // Use Map.class for _source for flexibility. A specific DTO could be created.
+            SearchResponse<Map> response = elasticsearchClient.search(searchRequest(floatEmbedding, k, filter, options), Map.class);
+            return toDocuments(response.hits().hits());
+
         } catch (IOException e) { // Covers ES client communication errors
-            throw new VectorStoreException("Failed to bulk upsert documents to Elasticsearch index '" + this.indexName + "': " + e.getMessage(), e);
+            throw new VectorStoreException("Failed to perform similarity search on Elasticsearch index '" + this.indexName + "': " + e.getMessage(), e);
         } catch (Exception e) { // Catch other potential ES client exceptions
-             throw new VectorStoreException("Unexpected error during Elasticsearch bulk upsert for '" + this.indexName + "': " + e.getMessage(), e);
+             throw new VectorStoreException("Unexpected error during Elasticsearch similarity search for '" + this.indexName + "': " + e.getMessage(), e);
         }
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>Sends the same kNN search as {@link #similaritySearch(List, int)} through the asynchronous client,
+     * so no thread waits for the cluster.</p>
+     * @throws IllegalArgumentException if k is not positive.
+     */
     @Override
-    public List<Document> similaritySearch(List<Double> queryEmbedding, int k) throws VectorStoreException {
+    public CompletableFuture<List<Document>> similaritySearchAsync(List<Double> queryEmbedding, int k) {
+        List<Float> floatEmbedding;
+        try {
+            floatEmbedding = toQueryVector(queryEmbedding, k);
+        } catch (VectorStoreException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return asyncClient().search(searchRequest(floatEmbedding, k, null, this.knnOptions), Map.class).handle((response, error) -> {
+            if (error != null) {
+                throw asyncFailure(error, "Failed to perform similarity search on Elasticsearch index '" + this.indexName + "'");
+            }
+            return toDocuments(response.hits().hits());
+        });
+    }
+
+    /** Builds the kNN search request for one query vector. The embedding is left out of the returned sources. */
+    private SearchRequest searchRequest(List<Float> floatEmbedding, int k, MetadataFilter filter, KnnOptions options) {
+        Query filterQuery = filterQuery(filter);
+        return new SearchRequest.Builder()
+            .index(this.indexName)
+            .knn(knn -> knnQuery(knn, floatEmbedding, k, filterQuery, options))
+            .source(source -> source.filter(f -> f.excludes(MAPPING_FIELD_EMBEDDING)))
+            .build();
+    }
+
+    /**
+     * Returns the client used by the asynchronous methods, created on first use over the transport of the
+     * blocking client unless one was set with {@link #withAsyncClient(ElasticsearchAsyncClient)}.
+     */
+    private ElasticsearchAsyncClient asyncClient() {
+        ElasticsearchAsyncClient client = this.asyncClient;
+        if (client == null) {
+            client = new ElasticsearchAsyncClient(elasticsearchClient._transport(), elasticsearchClient._transportOptions());
+            this.asyncClient = client;
+        }
+        return client;
+    }
+
+    /**
+     * Sets the client used by {@link #similaritySearchAsync(List, int)} and {@link #addDocumentsAsync(List)}.
+     * By default one is created over the transport of the blocking client, so both share connections.
+     *
+     * @param asyncClient The asynchronous client for the same cluster.
+     * @return This {@code ElasticsearchVectorStore} instance.
+     */
+    public ElasticsearchVectorStore withAsyncClient(ElasticsearchAsyncClient asyncClient) {
+        this.asyncClient = Objects.requireNonNull(asyncClient, "ElasticsearchAsyncClient cannot be null.");
+        return this;
+    }
+
+    /** Wraps the failure of an asynchronous client call, passing {@link VectorStoreException}s through. */
+    private static VectorStoreException asyncFailure(Throwable error, String message) {
+        Throwable cause = (error instanceof CompletionException && error.getCause() != null) ? error.getCause() : error;
+        if (cause instanceof VectorStoreException vse) {
+            return vse;
+        }
+        return new VectorStoreException(message + ": " + cause.getMessage(), cause);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>Sends all queries in a single multi-search ({@code _msearch}) request, one kNN search per query,
+     * so a batch costs one round trip and the cluster can run the searches concurrently.</p>
+     * @throws VectorStoreException if a query has the wrong dimension, or any of the searches fails.
+     */
+    @Override
+    public List<List<Document>> similaritySearchBatch(List<List<Double>> queryEmbeddings, int k) throws VectorStoreException {
+        Objects.requireNonNull(queryEmbeddings, "Query embeddings cannot be null for batch similarity search.");
+        List<List<Float>> floatEmbeddings = new ArrayList<>(queryEmbeddings.size());
+        for (List<Double> queryEmbedding : queryEmbeddings) {
+            floatEmbeddings.add(toQueryVector(queryEmbedding, k));
+        }
+        if (floatEmbeddings.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        MsearchRequest.Builder msearchRequestBuilder = new MsearchRequest.Builder().index(this.indexName);
+        Query filterQuery = filterQuery(null);
+        KnnOptions options = this.knnOptions;
+        for (List<Float> floatEmbedding : floatEmbeddings) {
+            msearchRequestBuilder.searches(search -> search
+                    .header(header -> header)
+                    .body(body -> body
+                            .knn(knn -> knnQuery(knn, floatEmbedding, k, filterQuery, options))
+                            .source(source -> source.filter(f -> f.excludes(MAPPING_FIELD_EMBEDDING)))));
+        }
+
+        try {
+            MsearchResponse<Map> response = elasticsearchClient.msearch(msearchRequestBuilder.build(), Map.class);
+            List<List<Document>> results = new ArrayList<>(floatEmbeddings.size());
+            for (MultiSearchResponseItem<Map> item : response.responses()) {
+                if (item.isFailure()) {
+                    throw new VectorStoreException("Elasticsearch multi-search query " + results.size() + " on index '" + this.indexName +
+                                                   "' failed: " + item.failure().error().reason());
+                }
+                results.add(toDocuments(item.result().hits().hits()));
+            }
+            return results;
+
+        } catch (VectorStoreException e) {
+            throw e;
+        } catch (IOException e) { // Covers ES client communication errors
+            throw new VectorStoreException("Failed to perform batch similarity search on Elasticsearch index '" + this.indexName + "': " + e.getMessage(), e);
+        } catch (Exception e) { // Catch other potential ES client exceptions
+             throw new VectorStoreException("Unexpected error during Elasticsearch batch similarity search for '" + this.indexName + "': " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Validates a query against the index mapping and converts it for the Elasticsearch client.
+     * @return The query as floats.
+     */
+    private List<Float> toQueryVector(List<Double> queryEmbedding, int k) throws VectorStoreException {
         Objects.requireNonNull(queryEmbedding, "Query embedding cannot be null for similarity search.");
+        checkQuery(queryEmbedding.size(), k);
+
+        // Convert Double to Float for Elasticsearch client
+        return queryEmbedding.stream()
+                .map(Double::floatValue)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Validates a primitive query against the index mapping and converts it for the Elasticsearch client,
+     * boxing each value once as the {@code Float} the client sends.
+     * @return The query as floats.
+     */
+    private List<Float> toQueryVector(float[] queryVector, int k) throws VectorStoreException {
+        Objects.requireNonNull(queryVector, "Query vector cannot be null for similarity search.");
+        checkQuery(queryVector.length, k);
+        List<Float> floatEmbedding = new ArrayList<>(queryVector.length);
+        for (float value : queryVector) {
+            floatEmbedding.add(value);
+        }
+        return floatEmbedding;
+    }
+
+    /** Checks k and a query's dimension against the index mapping. */
+    private void checkQuery(int dimension, int k) throws VectorStoreException {
         if (k <= 0) {
             throw new IllegalArgumentException("Number of results to return (k) must be positive.");
         }
@@ -292,95 +1024,88 @@ public class ElasticsearchVectorStore implements VectorStore {
             throw new VectorStoreException("Index mapping not yet established or vector dimension unknown. " +
                                            "Ensure at least one document has been added before searching.");
         }
-         if (queryEmbedding.size() != this.vectorDimension) {
-            throw new VectorStoreException("Query embedding dimension " + queryEmbedding.size() +
+         if (dimension != this.vectorDimension) {
+            throw new VectorStoreException("Query embedding dimension " + dimension +
                                            " does not match index dimension " + this.vectorDimension + ".");
         }
+    }
 
-        // Convert Double to Float for Elasticsearch client
-        List<Float> floatEmbedding = queryEmbedding.stream()
-                .map(Double::floatValue)
-                .collect(Collectors.toList());
+    /** Fills in the kNN section of a search for one query vector. */
+    private KnnSearch.Builder knnQuery(KnnSearch.Builder knn, List<Float> floatEmbedding, int k, Query filterQuery, KnnOptions options) {
+        knn.field(MAPPING_FIELD_EMBEDDING)
+           .queryVector(floatEmbedding)
+           .k(k)
+           .numCandidates(options.numCandidatesFor(k)); // num_candidates must be >= k, often larger for HNSW recall
+        if (options.similarity() != null) {
+            knn.similarity(options.similarity());
+        }
+        if (filterQuery != null) {
+            knn.filter(filterQuery); // Applied during the graph search, not to its results
+        }
+        return knn;
+    }
 
-        SearchRequest.Builder searchRequestBuilder = new SearchRequest.Builder()
-            .index(this.indexName)
-            .knn(knn -> {
-                knn.field(MAPPING_FIELD_EMBEDDING)
-                   .queryVector(floatEmbedding)
-                   .k(k)
-                   .numCandidates(Math.max(50, k * 5)); // num_candidates should be >= k, often larger for HNSW
-
-                // Placeholder for filter conversion from this.filters
-                // if (this.filters != null && !this.filters.isEmpty()) {
-                //    // Convert this.filters map to Elasticsearch Query DSL object
-                //    // Example: Query esQueryFilter = convertMapToEsQuery(this.filters);
-                //    // knn.filter(esQueryFilter);
-                //    System.err.println("Warning: ElasticsearchVectorStore filters are set but not yet implemented for kNN query.");
-                // }
-                return knn;
-            }
-            );
+    /** Combines a query's filter with the store-wide {@link #withFilters(Map)} filters into one query, or {@code null}. */
+    private Query filterQuery(MetadataFilter filter) {
+        MetadataFilter storeFilter = ElasticsearchFilters.fromMap(this.filters);
+        MetadataFilter combined = (storeFilter == null) ? filter
+                : (filter == null) ? storeFilter
+                : MetadataFilter.and(storeFilter, filter);
+        return (combined == null) ? null : ElasticsearchFilters.toQuery(combined, this.keywordSuffix);
+    }
 
-        try {
-            // Use Map.class for _source for flexibility. A specific DTO could be created.
-            SearchResponse<Map> response = elasticsearchClient.search(searchRequestBuilder.build(), Map.class);
-
-            List<Document> resultDocuments = new ArrayList<>();
-            for (Hit<Map> hit : response.hits().hits()) {
-                Map<String, Object> sourceMap = hit.source();
-                if (sourceMap == null) continue;
-
-                String content = (String) sourceMap.get(MAPPING_FIELD_CONTENT);
-                // If content is vital, decide how to handle if it's missing. For now, default to empty.
-                content = (content == null) ? "" : content;
-
-                Document doc = new Document(content);
-                doc.setId(hit.id()); // Elasticsearch document ID
-                if (hit.score() != null) {
-                    // Elasticsearch kNN search score is a similarity score (higher is better).
-                    // For cosine similarity, it's typically 0.5 to 1.0 (or 1.0 to 2.0 if not normalized, but usually it's (1+cos_sim)/2 or similar).
-                    // If 'cosine' similarity is used in mapping, score is (1 + cos_sim) / 2. To get raw cos_sim: (score * 2) - 1
-                    // Or, if it's already a direct similarity measure like dot_product, it can be used as is.
-                    // For "cosine" in ES, score = (1 + cosineSimilarity) / 2. So, higher is better, max 1.0.
-                    // We can directly use this score or convert it back if needed.
-                    // Let's assume hit.score() is directly usable as a relevance score [0,1] for cosine.
-                    doc.setScore(hit.score().floatValue());
-                }
+    /** Converts search hits into documents, in hit order. */
+    private List<Document> toDocuments(List<Hit<Map>> hits) {
+        List<Document> resultDocuments = new ArrayList<>();
+        for (Hit<Map> hit : hits) {
+            Map<String, Object> sourceMap = hit.source();
+            if (sourceMap == null) continue;
 
-                doc.setSourceType((String) sourceMap.get(MAPPING_FIELD_SOURCE_TYPE));
-                doc.setSourceName((String) sourceMap.get(MAPPING_FIELD_SOURCE_NAME));
+            String content = (String) sourceMap.get(MAPPING_FIELD_CONTENT);
+            // If content is vital, decide how to handle if it's missing. For now, default to empty.
+            content = (content == null) ? "" : content;
 
-                Map<String, Object> originalMetadata = new HashMap<>();
-                for (Map.Entry<String, Object> entry : sourceMap.entrySet()) {
-                    // Exclude known, top-level mapped fields from being duplicated in metadata map
-                    if (!List.of(MAPPING_FIELD_EMBEDDING, MAPPING_FIELD_CONTENT, MAPPING_FIELD_SOURCE_TYPE, MAPPING_FIELD_SOURCE_NAME).contains(entry.getKey())) {
-                        originalMetadata.put(entry.getKey(), entry.getValue());
-                    }
-                }
-                doc.setMetadata(originalMetadata);
+            Document doc = new Document(content);
+            doc.setId(hit.id()); // Elasticsearch document ID
+            if (hit.score() != null) {
+                // Elasticsearch kNN search score is a similarity score (higher is better).
+                // For cosine similarity, it's typically 0.5 to 1.0 (or 1.0 to 2.0 if not normalized, but usually it's (1+cos_sim)/2 or similar).
+                // If 'cosine' similarity is used in mapping, score is (1 + cos_sim) / 2. To get raw cos_sim: (score * 2) - 1
+                // Or, if it's already a direct similarity measure like dot_product, it can be used as is.
+                // For "cosine" in ES, score = (1 + cosineSimilarity) / 2. So, higher is better, max 1.0.
+                // We can directly use this score or convert it back if needed.
+                // Let's assume hit.score() is directly usable as a relevance score [0,1] for cosine.
+                doc.setScore(hit.score().floatValue());
+            }
 
-                // Embedding itself is usually not returned in _source unless explicitly configured in mapping.
-                // If needed, it could be fetched or mapping adjusted. For RAG, often not needed in search result objects.
+            doc.setSourceType((String) sourceMap.get(MAPPING_FIELD_SOURCE_TYPE));
+            doc.setSourceName((String) sourceMap.get(MAPPING_FIELD_SOURCE_NAME));
 
-                resultDocuments.add(doc);
+            Map<String, Object> originalMetadata = new HashMap<>();
+            for (Map.Entry<String, Object> entry : sourceMap.entrySet()) {
+                // Exclude known, top-level mapped fields from being duplicated in metadata map
+                if (!List.of(MAPPING_FIELD_EMBEDDING, MAPPING_FIELD_CONTENT, MAPPING_FIELD_SOURCE_TYPE, MAPPING_FIELD_SOURCE_NAME).contains(entry.getKey())) {
+                    originalMetadata.put(entry.getKey(), entry.getValue());
+                }
             }
-            return resultDocuments;
+            doc.setMetadata(originalMetadata);
 
-        } catch (IOException e) { // Covers ES client communication errors
-            throw new VectorStoreException("Failed to perform similarity search on Elasticsearch index '" + this.indexName + "': " + e.getMessage(), e);
-        } catch (Exception e) { // Catch other potential ES client exceptions
-             throw new VectorStoreException("Unexpected error during Elasticsearch similarity search for '" + this.indexName + "': " + e.getMessage(), e);
+            // The embedding is excluded from _source by the search request; it is seldom needed in results and
+            // would dominate the response size.
+
+            resultDocuments.add(doc);
         }
+        return resultDocuments;
     }
 
     /**
-     * Fluent setter for metadata filters to be applied during similarity search.
-     * The structure of the filterMap should conform to a simplified structure that
-     * can be translated into Elasticsearch Query DSL, or be the Query DSL itself as a Map.
-     * Note: The actual conversion and application of these filters in `similaritySearch`
-     * is currently a placeholder and needs full implementation.
+     * Fluent setter for metadata filters applied to every similarity search.
+     * Each entry requires the metadata field to equal the value, or any of the values if it is a collection;
+     * they are combined with AND, and with the filter passed to a search, and sent as the kNN {@code filter}.
+     * For anything beyond equality, pass a {@link MetadataFilter} to
+     * {@link #similaritySearchVector(float[], int, MetadataFilter)}.
      *
-     * @param filters A map representing the filter criteria.
+     * @param filters A map from metadata field to required value(s).
      * @return This {@code ElasticsearchVectorStore} instance.
      */
     public ElasticsearchVectorStore withFilters(Map<String, Object> filters) {
@@ -388,6 +1113,31 @@ public class ElasticsearchVectorStore implements VectorStore {
         return this;
     }
 
+    /**
+     * Sets the {@code num_candidates} and similarity threshold of searches that do not pass their own
+     * (see {@link #similaritySearch(List, int, MetadataFilter, KnnOptions)}).
+     *
+     * @param knnOptions The default options; {@link KnnOptions#DEFAULT} initially.
+     * @return This {@code ElasticsearchVectorStore} instance.
+     */
+    public ElasticsearchVectorStore withKnnOptions(KnnOptions knnOptions) {
+        this.knnOptions = Objects.requireNonNull(knnOptions, "KnnOptions cannot be null.");
+        return this;
+    }
+
+    /**
+     * Sets a suffix appended to the field name when filtering on a string value. Use {@code ".keyword"} for
+     * indices not created by this store whose metadata strings were mapped by Elasticsearch's default dynamic
+     * mapping, as {@code text} with a {@code keyword} sub-field.
+     *
+     * @param keywordSuffix The suffix; empty (the default) to filter on the field itself.
+     * @return This {@code ElasticsearchVectorStore} instance.
+     */
+    public ElasticsearchVectorStore withKeywordSuffix(String keywordSuffix) {
+        this.keywordSuffix = Objects.requireNonNull(keywordSuffix, "Keyword suffix cannot be null.");
+        return this;
+    }
+
     /**
      * Clears any previously set filters.
      */
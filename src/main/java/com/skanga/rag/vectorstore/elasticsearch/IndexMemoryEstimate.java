@@ -0,0 +1,32 @@
+package com.skanga.rag.vectorstore.elasticsearch;
+
+import java.util.Locale;
+
+/**
+ * Memory needed for fast kNN search over an Elasticsearch vector index, estimated from its size and
+ * {@link VectorIndexOptions}. kNN search is fast only while the searched vectors and the HNSW graph fit in
+ * the operating system's page cache (off-heap, outside the Elasticsearch JVM heap).
+ *
+ * @param vectors        The number of vectors.
+ * @param dimension      Their dimension.
+ * @param options        The index options the estimate is for.
+ * @param vectorBytes    The searched vectors: quantized codes, or the float vectors for {@code hnsw}.
+ * @param graphBytes     The HNSW graph.
+ * @param rawVectorBytes The float vectors, which quantized indices keep on disk for re-scoring and reindexing.
+ */
+public record IndexMemoryEstimate(long vectors, int dimension, VectorIndexOptions options,
+                                  long vectorBytes, long graphBytes, long rawVectorBytes) {
+
+    /** @return The page-cache memory needed: searched vectors plus graph. */
+    public long totalBytes() {
+        return vectorBytes + graphBytes;
+    }
+
+    /** @return A one-line summary, e.g. {@code 1000000 x 768-dim int8_hnsw (m=16): 780.0 MB RAM (...)}. */
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "%d x %d-dim %s (m=%d): %.1f MB RAM (vectors %.1f MB, graph %.1f MB); %.1f MB float vectors on disk",
+                             vectors, dimension, options.type().jsonValue(), options.m(), totalBytes() / 1e6,
+                             vectorBytes / 1e6, graphBytes / 1e6, rawVectorBytes / 1e6);
+    }
+}
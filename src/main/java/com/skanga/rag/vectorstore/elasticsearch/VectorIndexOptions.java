@@ -0,0 +1,142 @@
+package com.skanga.rag.vectorstore.elasticsearch;
+
+import co.elastic.clients.elasticsearch._types.mapping.DenseVectorIndexOptions;
+import co.elastic.clients.elasticsearch._types.mapping.DenseVectorIndexOptionsType;
+
+import java.util.Objects;
+
+/**
+ * The {@code index_options} of the {@code dense_vector} field that {@link ElasticsearchVectorStore} creates:
+ * the HNSW variant and its graph parameters.
+ *
+ * <p>The quantized variants keep a compressed copy of every vector next to the graph and search that copy,
+ * re-scoring with the float vectors, which stay on disk. They trade a little recall for memory:
+ * <ul>
+ *   <li>{@link Type#HNSW}: float32 vectors, 4 bytes per dimension.</li>
+ *   <li>{@link Type#INT8_HNSW}: one byte per dimension (Elasticsearch's default for float vectors).</li>
+ *   <li>{@link Type#INT4_HNSW}: half a byte per dimension; the dimension must be even.</li>
+ *   <li>{@link Type#BBQ_HNSW}: one bit per dimension (better binary quantization); at least 64 dimensions.</li>
+ * </ul>
+ * {@code m} is the number of neighbours per graph node and {@code efConstruction} the candidate list size
+ * while building it; larger values improve recall at the cost of memory and indexing time.
+ * {@link #estimateMemory(long, int)} gives the off-heap memory the cluster needs to search the vectors quickly.</p>
+ *
+ * @param type           The HNSW variant.
+ * @param m              The neighbours per node; Elasticsearch's default is 16.
+ * @param efConstruction The candidates considered per insertion; Elasticsearch's default is 100.
+ */
+public record VectorIndexOptions(Type type, int m, int efConstruction) {
+
+    /** Elasticsearch's default {@code m}. */
+    public static final int DEFAULT_M = 16;
+    /** Elasticsearch's default {@code ef_construction}. */
+    public static final int DEFAULT_EF_CONSTRUCTION = 100;
+
+    /** HNSW variants of a {@code dense_vector} field. */
+    public enum Type {
+        HNSW(DenseVectorIndexOptionsType.Hnsw),
+        INT8_HNSW(DenseVectorIndexOptionsType.Int8Hnsw),
+        INT4_HNSW(DenseVectorIndexOptionsType.Int4Hnsw),
+        BBQ_HNSW(DenseVectorIndexOptionsType.BbqHnsw);
+
+        private final DenseVectorIndexOptionsType esType;
+
+        Type(DenseVectorIndexOptionsType esType) {
+            this.esType = esType;
+        }
+
+        /** @return The name used in the mapping, e.g. {@code int8_hnsw}. */
+        public String jsonValue() {
+            return esType.jsonValue();
+        }
+
+        /**
+         * @return The bytes per vector of the representation that is searched, following Elasticsearch's
+         *         sizing guidance: the quantized codes plus their per-vector corrections.
+         */
+        public long vectorBytes(int dimension) {
+            return switch (this) {
+                case HNSW -> 4L * dimension;
+                case INT8_HNSW -> dimension + 4L;
+                case INT4_HNSW -> dimension / 2 + 4L;
+                case BBQ_HNSW -> (dimension + 7) / 8 + 14L;
+            };
+        }
+
+        static Type of(DenseVectorIndexOptionsType esType) {
+            for (Type type : values()) {
+                if (type.esType == esType) {
+                    return type;
+                }
+            }
+            return null; // A flat or future variant
+        }
+    }
+
+    public VectorIndexOptions {
+        Objects.requireNonNull(type, "Index options type cannot be null.");
+        if (m <= 0 || efConstruction <= 0) {
+            throw new IllegalArgumentException("HNSW m and ef_construction must be positive.");
+        }
+    }
+
+    /** @return Options of the given type with Elasticsearch's default graph parameters. */
+    public static VectorIndexOptions of(Type type) {
+        return new VectorIndexOptions(type, DEFAULT_M, DEFAULT_EF_CONSTRUCTION);
+    }
+
+    /** @return These options with another {@code m}. */
+    public VectorIndexOptions withM(int m) {
+        return new VectorIndexOptions(type, m, efConstruction);
+    }
+
+    /** @return These options with another {@code ef_construction}. */
+    public VectorIndexOptions withEfConstruction(int efConstruction) {
+        return new VectorIndexOptions(type, m, efConstruction);
+    }
+
+    /**
+     * Checks that the type can index vectors of a dimension.
+     * @throws IllegalArgumentException if it cannot.
+     */
+    public void validateFor(int dimension) {
+        if (type == Type.INT4_HNSW && dimension % 2 != 0) {
+            throw new IllegalArgumentException("int4_hnsw needs an even vector dimension; got " + dimension + ".");
+        }
+        if (type == Type.BBQ_HNSW && dimension < 64) {
+            throw new IllegalArgumentException("bbq_hnsw needs at least 64 dimensions; got " + dimension + ".");
+        }
+    }
+
+    /**
+     * Estimates the memory needed to keep an index's vectors and graph in the page cache.
+     * @param vectors   The number of vectors.
+     * @param dimension Their dimension.
+     * @return The estimate.
+     */
+    public IndexMemoryEstimate estimateMemory(long vectors, int dimension) {
+        return new IndexMemoryEstimate(vectors, dimension, this,
+                                       vectors * type.vectorBytes(dimension),
+                                       vectors * 4L * m,
+                                       vectors * 4L * dimension);
+    }
+
+    /** @return The mapping form of these options. */
+    DenseVectorIndexOptions toMapping() {
+        return DenseVectorIndexOptions.of(o -> o.type(type.esType).m(m).efConstruction(efConstruction));
+    }
+
+    /**
+     * Reads options from a mapping.
+     * @return The options, with defaults for unset graph parameters, or {@code null} for none or a non-HNSW type.
+     */
+    static VectorIndexOptions fromMapping(DenseVectorIndexOptions mapping) {
+        Type type = (mapping == null) ? null : Type.of(mapping.type());
+        if (type == null) {
+            return null;
+        }
+        return new VectorIndexOptions(type,
+                                      (mapping.m() != null) ? mapping.m() : DEFAULT_M,
+                                      (mapping.efConstruction() != null) ? mapping.efConstruction() : DEFAULT_EF_CONSTRUCTION);
+    }
+}
@@ -0,0 +1,208 @@
+package com.skanga.rag.vectorstore.filter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * A filter expression over {@link com.skanga.rag.Document} metadata, applied by a vector store before
+ * scoring so that only matching documents are ranked (see
+ * {@link com.skanga.rag.vectorstore.VectorStore#similaritySearchVector(float[], int, MetadataFilter)}).
+ *
+ * <p>Filters are built with the static factories and combined with {@link #and(MetadataFilter...)} and
+ * {@link #or(MetadataFilter...)}:
+ * <pre>{@code
+ * MetadataFilter filter = MetadataFilter.and(
+ *         MetadataFilter.in("file_name", "guide.md", "faq.md"),
+ *         MetadataFilter.range("modified", Instant.parse("2024-01-01T00:00:00Z"), null));
+ * }</pre>
+ * </p>
+ *
+ * <p><b>Value semantics:</b>
+ * <ul>
+ *   <li>Numbers compare by value regardless of type, so {@code 1}, {@code 1L} and {@code 1.0} are equal.</li>
+ *   <li>Timestamps ({@link java.time.Instant}, {@link java.util.Date}, {@link java.time.OffsetDateTime},
+ *       {@link java.time.ZonedDateTime}, {@link java.time.LocalDate} as UTC midnight, and ISO-8601 strings of
+ *       those forms) compare as epoch milliseconds, so a metadata value stored as an {@code Instant} and read
+ *       back from JSON as a string still matches.</li>
+ *   <li>Other values compare with {@link Object#equals(Object)}.</li>
+ *   <li>A metadata value that is a collection matches if any of its elements matches.</li>
+ *   <li>A document without the field never matches.</li>
+ * </ul>
+ * </p>
+ */
+public sealed interface MetadataFilter
+        permits MetadataFilter.Equals, MetadataFilter.In, MetadataFilter.Range, MetadataFilter.And, MetadataFilter.Or {
+
+    /**
+     * Tests the filter against a document's metadata directly, for stores without a {@link MetadataIndex}.
+     * @param metadata The document metadata; {@code null} is treated as empty.
+     * @return {@code true} if the document passes the filter.
+     */
+    boolean test(Map<String, Object> metadata);
+
+    /**
+     * Matches documents whose field equals the value.
+     * @param field The metadata key.
+     * @param value The value to match. Must not be null.
+     * @return The filter.
+     */
+    static MetadataFilter eq(String field, Object value) {
+        return new Equals(field, value);
+    }
+
+    /**
+     * Matches documents whose field equals any of the values.
+     * @param field  The metadata key.
+     * @param values The accepted values. Must not be empty.
+     * @return The filter.
+     */
+    static MetadataFilter in(String field, Collection<?> values) {
+        return new In(field, new ArrayList<>(values));
+    }
+
+    /**
+     * Matches documents whose field equals any of the values.
+     * @param field  The metadata key.
+     * @param values The accepted values. Must not be empty.
+     * @return The filter.
+     */
+    static MetadataFilter in(String field, Object... values) {
+        return in(field, Arrays.asList(values));
+    }
+
+    /**
+     * Matches documents whose numeric or timestamp field lies in {@code [min, max]}.
+     * @param field The metadata key.
+     * @param min   The inclusive lower bound (a number or timestamp), or {@code null} for none.
+     * @param max   The inclusive upper bound (a number or timestamp), or {@code null} for none.
+     * @return The filter.
+     * @throws IllegalArgumentException if both bounds are null or a bound is neither a number nor a timestamp.
+     */
+    static MetadataFilter range(String field, Object min, Object max) {
+        return new Range(field, min, max);
+    }
+
+    /**
+     * Matches documents passing every given filter.
+     * @param filters The filters to intersect. Must not be empty.
+     * @return The filter.
+     */
+    static MetadataFilter and(MetadataFilter... filters) {
+        return new And(List.of(filters));
+    }
+
+    /**
+     * Matches documents passing at least one of the given filters.
+     * @param filters The filters to unite. Must not be empty.
+     * @return The filter.
+     */
+    static MetadataFilter or(MetadataFilter... filters) {
+        return new Or(List.of(filters));
+    }
+
+    /** Field equals a value. */
+    record Equals(String field, Object value) implements MetadataFilter {
+        public Equals {
+            Objects.requireNonNull(field, "Filter field cannot be null.");
+            Objects.requireNonNull(value, "Filter value cannot be null.");
+        }
+
+        @Override
+        public boolean test(Map<String, Object> metadata) {
+            Object key = MetadataValues.key(value);
+            return MetadataValues.anyMatch(metadata, field, candidate -> key.equals(MetadataValues.key(candidate)));
+        }
+    }
+
+    /** Field equals one of several values. */
+    record In(String field, List<Object> values) implements MetadataFilter {
+        public In {
+            Objects.requireNonNull(field, "Filter field cannot be null.");
+            Objects.requireNonNull(values, "Filter values cannot be null.");
+            if (values.isEmpty()) {
+                throw new IllegalArgumentException("IN filter on '" + field + "' needs at least one value.");
+            }
+            for (Object value : values) {
+                Objects.requireNonNull(value, "Filter value cannot be null.");
+            }
+            values = List.copyOf(values);
+        }
+
+        @Override
+        public boolean test(Map<String, Object> metadata) {
+            List<Object> keys = values.stream().map(MetadataValues::key).toList();
+            return MetadataValues.anyMatch(metadata, field, candidate -> keys.contains(MetadataValues.key(candidate)));
+        }
+    }
+
+    /** Numeric or timestamp field within inclusive bounds; a null bound is open. */
+    record Range(String field, Object min, Object max) implements MetadataFilter {
+        public Range {
+            Objects.requireNonNull(field, "Filter field cannot be null.");
+            if (min == null && max == null) {
+                throw new IllegalArgumentException("Range filter on '" + field + "' needs at least one bound.");
+            }
+            if ((min != null && Double.isNaN(MetadataValues.numeric(min))) || (max != null && Double.isNaN(MetadataValues.numeric(max)))) {
+                throw new IllegalArgumentException("Range filter bounds on '" + field + "' must be numbers or timestamps.");
+            }
+        }
+
+        /** @return The lower bound as a number (epoch milliseconds for timestamps), or negative infinity. */
+        public double lowerBound() {
+            return (min == null) ? Double.NEGATIVE_INFINITY : MetadataValues.numeric(min);
+        }
+
+        /** @return The upper bound as a number (epoch milliseconds for timestamps), or positive infinity. */
+        public double upperBound() {
+            return (max == null) ? Double.POSITIVE_INFINITY : MetadataValues.numeric(max);
+        }
+
+        @Override
+        public boolean test(Map<String, Object> metadata) {
+            double lower = lowerBound();
+            double upper = upperBound();
+            return MetadataValues.anyMatch(metadata, field, candidate -> {
+                double value = MetadataValues.numeric(candidate);
+                return value >= lower && value <= upper; // false for NaN (not a number or timestamp)
+            });
+        }
+    }
+
+    /** All of several filters. */
+    record And(List<MetadataFilter> filters) implements MetadataFilter {
+        public And {
+            filters = MetadataValues.operands(filters, "AND");
+        }
+
+        @Override
+        public boolean test(Map<String, Object> metadata) {
+            for (MetadataFilter filter : filters) {
+                if (!filter.test(metadata)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /** Any of several filters. */
+    record Or(List<MetadataFilter> filters) implements MetadataFilter {
+        public Or {
+            filters = MetadataValues.operands(filters, "OR");
+        }
+
+        @Override
+        public boolean test(Map<String, Object> metadata) {
+            for (MetadataFilter filter : filters) {
+                if (filter.test(metadata)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.skanga.rag.vectorstore.filter;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Per-field inverted index over document metadata, used by the local vector stores to turn a
+ * {@link MetadataFilter} into the set of candidate ordinals before any vector is scored.
+ *
+ * <p>For every field, each distinct value maps to the ordinals holding it (equality and IN look up
+ * and unite those lists). Numeric and timestamp values are additionally kept in a sorted map, so a
+ * range filter unites the lists of the values inside the range. Posting lists switch from sorted
+ * ordinal arrays to bitmaps as they become dense, which keeps unique values such as file paths cheap.</p>
+ *
+ * <p>Documents are indexed once, at insert time ({@link #add(int, Map)}); later changes to a document's
+ * metadata map are not seen. Ordinals must be added in increasing order.</p>
+ *
+ * <p><b>Thread Safety:</b> This class is not synchronized. Concurrent {@link #matches(MetadataFilter)}
+ * calls are safe, but {@link #add(int, Map)} must not run concurrently with anything else; the owning
+ * store's lock provides this.</p>
+ */
+public final class MetadataIndex {
+
+    /** Ordinals by field, then by {@link MetadataValues#key(Object) equality key}. */
+    private final Map<String, Map<Object, PostingList>> postings = new HashMap<>();
+    /** Ordinals by field, then by numeric value, for range filters. */
+    private final Map<String, NavigableMap<Double, PostingList>> numericPostings = new HashMap<>();
+
+    /**
+     * Indexes a document's metadata.
+     * @param ordinal  The document's ordinal; larger than any ordinal added before.
+     * @param metadata The metadata; {@code null} indexes nothing.
+     */
+    public void add(int ordinal, Map<String, Object> metadata) {
+        if (metadata == null) {
+            return;
+        }
+        for (Map.Entry<String, Object> entry : metadata.entrySet()) {
+            Object value = entry.getValue();
+            if (value instanceof Collection<?> values) {
+                for (Object element : values) {
+                    addValue(entry.getKey(), element, ordinal);
+                }
+            } else {
+                addValue(entry.getKey(), value, ordinal);
+            }
+        }
+    }
+
+    private void addValue(String field, Object value, int ordinal) {
+        if (value == null || value instanceof Map || value instanceof Collection) {
+            return; // Nested structures are not filterable
+        }
+        Object key = MetadataValues.key(value);
+        postings.computeIfAbsent(field, f -> new HashMap<>())
+                .computeIfAbsent(key, k -> new PostingList())
+                .add(ordinal);
+        if (key instanceof Double number) {
+            numericPostings.computeIfAbsent(field, f -> new TreeMap<>())
+                    .computeIfAbsent(number, k -> new PostingList())
+                    .add(ordinal);
+        }
+    }
+
+    /**
+     * Evaluates a filter against the index.
+     * @param filter The filter.
+     * @return A new bitset of the ordinals whose metadata passes the filter.
+     */
+    public BitSet matches(MetadataFilter filter) {
+        if (filter instanceof MetadataFilter.Equals equals) {
+            BitSet result = new BitSet();
+            orPostings(equals.field(), equals.value(), result);
+            return result;
+        }
+        if (filter instanceof MetadataFilter.In in) {
+            BitSet result = new BitSet();
+            for (Object value : in.values()) {
+                orPostings(in.field(), value, result);
+            }
+            return result;
+        }
+        if (filter instanceof MetadataFilter.Range range) {
+            BitSet result = new BitSet();
+            NavigableMap<Double, PostingList> values = numericPostings.get(range.field());
+            if (values != null && range.lowerBound() <= range.upperBound()) {
+                for (PostingList list : values.subMap(range.lowerBound(), true, range.upperBound(), true).values()) {
+                    list.orInto(result);
+                }
+            }
+            return result;
+        }
+        if (filter instanceof MetadataFilter.And and) {
+            BitSet result = null;
+            for (MetadataFilter operand : and.filters()) {
+                BitSet operandMatches = matches(operand);
+                if (result == null) {
+                    result = operandMatches;
+                } else {
+                    result.and(operandMatches);
+                }
+                if (result.isEmpty()) {
+                    break;
+                }
+            }
+            return result;
+        }
+        MetadataFilter.Or or = (MetadataFilter.Or) filter;
+        BitSet result = new BitSet();
+        for (MetadataFilter operand : or.filters()) {
+            result.or(matches(operand));
+        }
+        return result;
+    }
+
+    private void orPostings(String field, Object value, BitSet result) {
+        Map<Object, PostingList> values = postings.get(field);
+        PostingList list = (values == null) ? null : values.get(MetadataValues.key(value));
+        if (list != null) {
+            list.orInto(result);
+        }
+    }
+
+    /** Removes all entries. */
+    public void clear() {
+        postings.clear();
+        numericPostings.clear();
+    }
+}
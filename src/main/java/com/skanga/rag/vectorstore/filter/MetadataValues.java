@@ -0,0 +1,106 @@
+package com.skanga.rag.vectorstore.filter;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Predicate;
+
+/**
+ * Normalizes metadata values so that filters and the {@link MetadataIndex} agree on equality and ordering.
+ * See {@link MetadataFilter} for the rules.
+ */
+final class MetadataValues {
+
+    private MetadataValues() {}
+
+    /**
+     * @return The equality key of a value: a {@code Double} for numbers and timestamps, the value itself otherwise.
+     */
+    static Object key(Object value) {
+        double numeric = numeric(value);
+        return Double.isNaN(numeric) ? value : (Object) numeric;
+    }
+
+    /**
+     * @return The value as a double (epoch milliseconds for timestamps), or NaN if it is neither.
+     */
+    static double numeric(Object value) {
+        if (value instanceof Number number) {
+            return number.doubleValue();
+        }
+        if (value instanceof Instant instant) {
+            return instant.toEpochMilli();
+        }
+        if (value instanceof Date date) {
+            return date.getTime();
+        }
+        if (value instanceof OffsetDateTime dateTime) {
+            return dateTime.toInstant().toEpochMilli();
+        }
+        if (value instanceof ZonedDateTime dateTime) {
+            return dateTime.toInstant().toEpochMilli();
+        }
+        if (value instanceof LocalDate date) {
+            return date.atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+        }
+        if (value instanceof String text && looksLikeDate(text)) {
+            return parseTimestamp(text);
+        }
+        return Double.NaN;
+    }
+
+    /** Cheap pre-check so that ordinary strings are not run through the date parsers. */
+    private static boolean looksLikeDate(String text) {
+        return text.length() >= 10 && text.charAt(4) == '-' && text.charAt(7) == '-' && Character.isDigit(text.charAt(0));
+    }
+
+    private static double parseTimestamp(String text) {
+        try {
+            return text.length() == 10
+                    ? LocalDate.parse(text).atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli()
+                    : OffsetDateTime.parse(text).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            return Double.NaN;
+        }
+    }
+
+    /**
+     * Applies a predicate to a field's value, or to each element if the value is a collection.
+     * @return {@code true} if the field is present and the predicate accepts its value or one of its elements.
+     */
+    static boolean anyMatch(Map<String, Object> metadata, String field, Predicate<Object> predicate) {
+        Object value = (metadata == null) ? null : metadata.get(field);
+        if (value == null) {
+            return false;
+        }
+        if (value instanceof Collection<?> values) {
+            for (Object element : values) {
+                if (element != null && predicate.test(element)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        return predicate.test(value);
+    }
+
+    /** Validates and copies the operands of a boolean filter. */
+    static List<MetadataFilter> operands(List<MetadataFilter> filters, String operator) {
+        Objects.requireNonNull(filters, operator + " filter operands cannot be null.");
+        if (filters.isEmpty()) {
+            throw new IllegalArgumentException(operator + " filter needs at least one operand.");
+        }
+        for (MetadataFilter filter : filters) {
+            Objects.requireNonNull(filter, operator + " filter operand cannot be null.");
+        }
+        return List.copyOf(filters);
+    }
+}
@@ -0,0 +1,57 @@
+package com.skanga.rag.vectorstore.filter;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * The ordinals holding one metadata value. Sparse lists are kept as a sorted {@code int[]}; once the
+ * array would take more memory than a bitmap up to the largest ordinal, the list switches to a
+ * {@link BitSet}. Unique values (file paths, timestamps) thus cost a few bytes each, while common
+ * values (a source type shared by half the corpus) cost one bit per document.
+ */
+final class PostingList {
+
+    private int[] ordinals = new int[2];
+    /** Number of entries used in {@link #ordinals}. */
+    private int size;
+    /** Non-null once the list has switched to a bitmap. */
+    private BitSet bitmap;
+
+    /**
+     * Adds an ordinal. Ordinals must be added in increasing order.
+     */
+    void add(int ordinal) {
+        if (bitmap != null) {
+            bitmap.set(ordinal);
+            return;
+        }
+        if (size > 0 && ordinals[size - 1] == ordinal) {
+            return; // The same value appearing twice in one document's collection
+        }
+        if (size == ordinals.length) {
+            // An int costs 32 bits, a bitmap one bit per ordinal up to the largest.
+            if ((long) (size + 1) * Integer.SIZE > ordinal + 1L) {
+                bitmap = new BitSet(ordinal + 1);
+                for (int i = 0; i < size; i++) {
+                    bitmap.set(ordinals[i]);
+                }
+                bitmap.set(ordinal);
+                ordinals = null;
+                return;
+            }
+            ordinals = Arrays.copyOf(ordinals, size + (size >> 1) + 1);
+        }
+        ordinals[size++] = ordinal;
+    }
+
+    /** Sets the bits of all ordinals in this list. */
+    void orInto(BitSet target) {
+        if (bitmap != null) {
+            target.or(bitmap);
+            return;
+        }
+        for (int i = 0; i < size; i++) {
+            target.set(ordinals[i]);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.skanga.rag.vectorstore.pinecone;
+
+import com.skanga.rag.vectorstore.filter.MetadataFilter;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Translates {@link MetadataFilter}s into Pinecone metadata filters, and document metadata into the flat
+ * values Pinecone stores, so that {@link PineconeVectorStore} restricts a query on the server.
+ *
+ * <p>Pinecone metadata values are strings, numbers, booleans or lists of strings. Equality and IN become
+ * {@code $eq} and {@code $in}, ranges {@code $gte}/{@code $lte} in one field clause, and AND/OR
+ * {@code $and}/{@code $or}. Pinecone compares ranges numerically only, so timestamps are stored and compared
+ * as epoch milliseconds.</p>
+ */
+final class PineconeFilters {
+
+    private PineconeFilters() {}
+
+    /**
+     * Translates a filter.
+     * @param filter The filter.
+     * @return The Pinecone filter, ready to be serialized as JSON.
+     */
+    static Map<String, Object> toFilter(MetadataFilter filter) {
+        if (filter instanceof MetadataFilter.Equals equals) {
+            return Map.of(equals.field(), Map.of("$eq", value(equals.value())));
+        }
+        if (filter instanceof MetadataFilter.In in) {
+            List<Object> values = new ArrayList<>(in.values().size());
+            for (Object value : in.values()) {
+                values.add(value(value));
+            }
+            return Map.of(in.field(), Map.of("$in", values));
+        }
+        if (filter instanceof MetadataFilter.Range range) {
+            Map<String, Object> bounds = new LinkedHashMap<>();
+            if (range.min() != null) {
+                bounds.put("$gte", bound(range.lowerBound()));
+            }
+            if (range.max() != null) {
+                bounds.put("$lte", bound(range.upperBound()));
+            }
+            return Map.of(range.field(), bounds);
+        }
+        if (filter instanceof MetadataFilter.And and) {
+            return combine("$and", and.filters());
+        }
+        return combine("$or", ((MetadataFilter.Or) filter).filters());
+    }
+
+    private static Map<String, Object> combine(String operator, List<MetadataFilter> filters) {
+        if (filters.size() == 1) {
+            return toFilter(filters.get(0));
+        }
+        List<Map<String, Object>> operands = new ArrayList<>(filters.size());
+        for (MetadataFilter filter : filters) {
+            operands.add(toFilter(filter));
+        }
+        return Map.of(operator, operands);
+    }
+
+    /**
+     * Converts a metadata value to one Pinecone can store: collections become lists of strings, and values
+     * other than strings, numbers, booleans and timestamps their string form.
+     * @return The value, or {@code null} for a null value, which Pinecone does not accept.
+     */
+    static Object metadataValue(Object value) {
+        if (value instanceof Collection<?> collection) {
+            List<String> strings = new ArrayList<>(collection.size());
+            for (Object element : collection) {
+                if (element != null) {
+                    strings.add(element.toString());
+                }
+            }
+            return strings;
+        }
+        return (value == null) ? null : value(value);
+    }
+
+    /** Converts a filter value to one Pinecone can compare: strings, numbers and booleans as they are. */
+    private static Object value(Object value) {
+        if (value instanceof String || value instanceof Number || value instanceof Boolean) {
+            return value;
+        }
+        if (value instanceof Instant instant) {
+            return instant.toEpochMilli();
+        }
+        if (value instanceof Date date) {
+            return date.getTime();
+        }
+        if (value instanceof OffsetDateTime dateTime) {
+            return dateTime.toInstant().toEpochMilli();
+        }
+        if (value instanceof ZonedDateTime dateTime) {
+            return dateTime.toInstant().toEpochMilli();
+        }
+        return value.toString();
+    }
+
+    /** @return A whole-number bound as a long, so that integer metadata compares without a fraction. */
+    private static Object bound(double value) {
+        return (value == Math.rint(value) && Math.abs(value) < 0x1p53) ? (Object) (long) value : (Object) value;
+    }
+}
@@ -1,282 +1,590 @@
 package com.skanga.rag.vectorstore.pinecone;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.skanga.providers.HttpClientManager;
 import com.skanga.rag.Document;
+import com.skanga.rag.embeddings.EmbeddingUtils;
+import com.skanga.rag.vectorstore.BulkIngestReport;
+import com.skanga.rag.vectorstore.BulkIngester;
+import com.skanga.rag.vectorstore.HttpStoreClient;
 import com.skanga.rag.vectorstore.VectorStore;
 import com.skanga.rag.vectorstore.VectorStoreException;
+import com.skanga.rag.vectorstore.filter.MetadataFilter;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-import java.util.Objects;
-
-// --- Hypothetical Pinecone Client Classes (Placeholders) ---
-// These would be replaced by actual classes from an official Pinecone Java client if one is used.
-// This section is for conceptual illustration of how one might interact with a Pinecone client.
-
-/** Placeholder for a Pinecone client index object or connection. */
-class HypotheticalPineconeClient { // In a real SDK, this might be an 'Index' or 'BlockingStub' object
-    public HypotheticalPineconeClient(String apiKey, String environment, String projectId, String indexName) {
-        System.out.println("HypotheticalPineconeClient: Initialized for index '" + indexName +
-                           "'. APIKey/Env/ProjectID would be used here. (Placeholder - Not making real calls)");
-    }
-    public void upsert(HypotheticalUpsertRequest request) throws VectorStoreException { // Real client would throw its own exceptions
-        System.out.println("HypotheticalPineconeClient: upsert called with namespace: '" + request.namespace() +
-                           "', " + request.vectors().size() + " vectors. (Placeholder - No actual API call)");
-        // Example: if (request.vectors().isEmpty()) throw new VectorStoreException("Cannot upsert empty list of vectors.");
-        // Simulate success. In a real client, this would be a network call.
-    }
-    public HypotheticalQueryResponse query(HypotheticalQueryRequest request) throws VectorStoreException {
-        System.out.println("HypotheticalPineconeClient: query called for namespace: '" + request.namespace() +
-                           "', topK: " + request.topK() +
-                           (request.filter() != null ? ", with filter." : ", no filter.") +
-                           " (Placeholder - No actual API call)");
-        // Simulate an empty response or throw specific exceptions based on request.
-        return new HypotheticalQueryResponse(Collections.emptyList());
-    }
-}
-
-/** Placeholder for a Pinecone vector. */
-record HypotheticalVector(String id, List<Double> values, Map<String, Object> metadata) {}
-/** Placeholder for a Pinecone upsert request DTO. */
-record HypotheticalUpsertRequest(List<HypotheticalVector> vectors, String namespace) {}
-/** Placeholder for a Pinecone query request DTO. */
-record HypotheticalQueryRequest(List<Double> vector, int topK, String namespace, boolean includeMetadata, boolean includeValues, Map<String, Object> filter) {}
-/** Placeholder for a single search result (scored vector) from Pinecone. */
-record HypotheticalScoredVector(String id, float score, List<Double> values, Map<String, Object> metadata) {}
-/** Placeholder for the overall query response from Pinecone. */
-record HypotheticalQueryResponse(List<HypotheticalScoredVector> matches) {}
-// --- End of Hypothetical Pinecone Client Classes ---
-
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
 
 /**
- * A {@link VectorStore} implementation for interacting with Pinecone.
- * <b>Note: This is a scaffold implementation.</b> It uses hypothetical placeholder classes
- * for the Pinecone Java client (e.g., {@code HypotheticalPineconeClient}).
- * To make this functional, these placeholders need to be replaced with actual classes
- * and method calls from an official Pinecone Java SDK.
+ * A {@link VectorStore} implementation for a Pinecone index, using Pinecone's REST data-plane API over the
+ * shared {@link HttpClientManager} client.
  *
- * <p><b>Assumed Pinecone Workflow:</b>
- * <ol>
- *   <li>Initialize connection to a specific Pinecone index (via hypothetical client).</li>
- *   <li><b>Adding Documents:</b> Converts {@link com.skanga.rag.Document} objects into Pinecone's
- *       vector format (ID, embedding values, metadata). Metadata includes original content and source info.
- *       Uses an "upsert" operation.</li>
- *   <li><b>Similarity Search:</b> Sends a query embedding and parameters (topK, namespace, filters)
- *       to Pinecone. Results (scored vectors with metadata) are mapped back to
- *       {@link com.skanga.rag.Document} objects.</li>
- * </ol>
+ * <p><b>Features:</b>
+ * <ul>
+ *   <li>Adds documents (with pre-computed embeddings) with {@code /vectors/upsert}. Large calls are split into
+ *       requests of at most 100 vectors (Pinecone's recommended batch size) and 2 MB, several of them in flight
+ *       at once, and requests rejected with a retryable status are resent
+ *       ({@link #withBulkIngester(BulkIngester)}, {@link #bulkIngest(List)}).</li>
+ *   <li>Deletes documents by ID with {@code /vectors/delete}; {@link #upsertDocuments(List)} maps to upsert,
+ *       which replaces vectors by ID.</li>
+ *   <li>Performs similarity searches with {@code /query}, in the store's namespace or across several namespaces
+ *       at once ({@link #queryNamespaces(List, int, List, MetadataFilter)}). Results do not include embeddings
+ *       unless {@link #withEmbeddingsInResults(boolean)} asks for them. {@link MetadataFilter}s and
+ *       {@link #withFilters(Map)} are sent as the query's {@code filter}.</li>
+ *   <li>{@link #similaritySearchAsync(List, int)} and {@link #addDocumentsAsync(List)} use
+ *       {@link HttpClient#sendAsync}, so no thread is blocked for the round trip.</li>
+ * </ul>
  * </p>
  *
  * <p><b>Metadata Handling:</b>
- * To store the original document content and our standard source information alongside other metadata
- * in Pinecone, this implementation nests them:
+ * Pinecone metadata is flat: strings, numbers, booleans and lists of strings. Each vector's metadata holds
+ * the document's own metadata, so that it can be filtered on, plus these reserved keys:
  * <ul>
  *   <li>{@code document_content}: The original text content.</li>
  *   <li>{@code source_type}: The document's source type.</li>
  *   <li>{@code source_name}: The document's source name.</li>
- *   <li>{@code original_metadata}: The document's original metadata map.</li>
  * </ul>
- * This allows retrieval of all necessary information from the Pinecone record's metadata.
+ * Other values are stored as described in {@link PineconeFilters}; null values are left out.
  * </p>
  *
- * <p><b>To Do for Full Implementation:</b>
- * <ol>
- *   <li>Replace all `Hypothetical...` classes and calls with the actual Pinecone Java SDK equivalents.</li>
- *   <li>Implement proper exception handling based on the Pinecone client's exceptions.</li>
- *   <li>Add the Pinecone Java client dependency to the project's `pom.xml`.</li>
- *   <li>Thoroughly test against a Pinecone instance.</li>
- * </ol>
- * </p>
+ * <p><b>Error Handling:</b>
+ * HTTP errors or issues with JSON processing will result in a {@link VectorStoreException}.</p>
  */
 public class PineconeVectorStore implements VectorStore {
 
-    private final HypotheticalPineconeClient pineconeClient; // Represents the connection to a specific index
-    private final int defaultTopK;
-    private final String namespace; // Pinecone namespace
-    private Map<String, Object> filters;
-    private final ObjectMapper objectMapper; // Not used in placeholder, but real client might need it or provide its own.
+    /** How Pinecone scores a match, which decides how results from several namespaces are merged. */
+    public enum Metric {
+        /** Cosine similarity; higher is better. */
+        COSINE,
+        /** Dot product; higher is better. */
+        DOTPRODUCT,
+        /** Euclidean distance; lower is better. */
+        EUCLIDEAN
+    }
+
+    /** Most vectors per upsert request, as Pinecone recommends. */
+    public static final int MAX_UPSERT_BATCH = 100;
+    /** Most IDs per delete request that Pinecone accepts. */
+    public static final int MAX_DELETE_BATCH = 1000;
+    /** Largest upsert request that Pinecone accepts. */
+    private static final long MAX_REQUEST_BYTES = 2L * 1024 * 1024;
+    private static final String API_VERSION = "2025-01";
 
     // Constants for structured metadata keys to ensure consistency
     private static final String METADATA_CONTENT_KEY = "document_content";
     private static final String METADATA_SOURCE_TYPE_KEY = "source_type";
     private static final String METADATA_SOURCE_NAME_KEY = "source_name";
-    private static final String METADATA_ORIGINAL_METADATA_KEY = "original_metadata"; // Nests user's original metadata
+    /** Where earlier versions of this store nested the user's metadata; still read if present. */
+    private static final String METADATA_ORIGINAL_METADATA_KEY = "original_metadata";
+    private static final Set<String> RESERVED_METADATA_KEYS =
+            Set.of(METADATA_CONTENT_KEY, METADATA_SOURCE_TYPE_KEY, METADATA_SOURCE_NAME_KEY, METADATA_ORIGINAL_METADATA_KEY);
 
     /** Default value for K if constructor doesn't specify. */
     private static final int DEFAULT_K_PINECONE = 5;
+    /** Sends requests and batched writes; requests are retried on 429 and while the server is temporarily unavailable. */
+    private static final HttpStoreClient HTTP = new HttpStoreClient("Pinecone", Set.of(429, 500, 502, 503, 504));
+    private static final TypeReference<Map<String, Object>> METADATA_TYPE = new TypeReference<>() {};
+
+    private final String apiKey;
+    /** Base URL of the index, e.g. "https://my-index-abc123.svc.aped-4627-b74a.pinecone.io". */
+    private final String indexUrl;
+    /** Pinecone namespace; empty for the default namespace. */
+    private final String namespace;
+    private final int defaultTopK;
+    private final ObjectMapper objectMapper;
+    private Map<String, Object> filters;
+
+    /** Batching, concurrency and retry policy of writes; batches are further capped at Pinecone's limits. */
+    private volatile BulkIngester bulkIngester = new BulkIngester();
+    private volatile Metric metric = Metric.COSINE;
+    private volatile boolean includeEmbeddings = false;
+    private volatile BulkIngestReport lastBulkReport;
 
 
     /**
-     * Constructs a PineconeVectorStore.
-     * This constructor is a placeholder and requires an actual Pinecone client setup.
+     * Constructs a PineconeVectorStore for an index of a pod-based project, addressed as
+     * {@code https://<indexName>-<projectId>.svc.<environment>.pinecone.io}.
      *
      * @param apiKey      Your Pinecone API key.
      * @param environment The Pinecone environment (e.g., "us-west1-gcp").
-     * @param projectId   Your Pinecone project ID (may be handled by client initialization).
+     * @param projectId   Your Pinecone project ID.
      * @param indexName   The name of your Pinecone index.
      * @param namespace   The namespace within the index to use (can be null or empty for default).
      * @param defaultTopK Default number of results for similarity search.
-     * @throws VectorStoreException If client initialization fails (in a real implementation).
      */
-    public PineconeVectorStore(String apiKey, String environment, String projectId, String indexName, String namespace, int defaultTopK) throws VectorStoreException {
-        Objects.requireNonNull(apiKey, "Pinecone API key cannot be null.");
-        Objects.requireNonNull(environment, "Pinecone environment cannot be null.");
-        Objects.requireNonNull(indexName, "Pinecone index name cannot be null.");
-        // ProjectId might be implicitly handled by some client versions based on API key or environment.
-
-        // --- !!! IMPORTANT: Replace with actual Pinecone Java client initialization !!! ---
-        try {
-            this.pineconeClient = new HypotheticalPineconeClient(apiKey, environment, projectId, indexName);
-            System.out.println("PineconeVectorStore: Placeholder - Initialized HypotheticalPineconeClient for index: " + indexName +
-                               ", namespace: " + (namespace == null || namespace.isEmpty() ? "[default]" : namespace));
-        } catch (Exception e) {
-            throw new VectorStoreException("Placeholder: Failed to initialize Pinecone client for index " + indexName + ": " + e.getMessage(), e);
-        }
-        // --- !!! END OF PLACEHOLDER CLIENT INIT !!! ---
-
-
-        this.namespace = namespace;
-        this.defaultTopK = defaultTopK > 0 ? defaultTopK : DEFAULT_K_PINECONE;
-        this.filters = new HashMap<>();
-        this.objectMapper = new ObjectMapper(); // May not be needed if client handles all object mapping
+    public PineconeVectorStore(String apiKey, String environment, String projectId, String indexName, String namespace, int defaultTopK) {
+        this(apiKey,
+             "https://" + Objects.requireNonNull(indexName, "Pinecone index name cannot be null.")
+             + "-" + Objects.requireNonNull(projectId, "Pinecone project ID cannot be null.")
+             + ".svc." + Objects.requireNonNull(environment, "Pinecone environment cannot be null.") + ".pinecone.io",
+             namespace, defaultTopK);
     }
 
     /**
-     * Alternate constructor for use when a pre-configured Pinecone client/index object is available.
-     * This is useful if the client/index connection is managed externally.
+     * Constructs a PineconeVectorStore for an index host, as shown in the Pinecone console or returned by
+     * {@code describe_index}.
      *
-     * @param preconfiguredPineconeClient A pre-configured instance of the (hypothetical) Pinecone client/index object.
-     * @param namespace The namespace to use.
-     * @param defaultTopK Default K value.
+     * @param apiKey      Your Pinecone API key.
+     * @param indexHost   The index host (e.g., "my-index-abc123.svc.aped-4627-b74a.pinecone.io"), with or
+     *                    without a scheme; {@code https} is assumed if none is given.
+     * @param namespace   The namespace within the index to use (can be null or empty for default).
+     * @param defaultTopK Default number of results for similarity search.
      */
-    public PineconeVectorStore(HypotheticalPineconeClient preconfiguredPineconeClient, String namespace, int defaultTopK) {
-        this.pineconeClient = Objects.requireNonNull(preconfiguredPineconeClient, "Preconfigured Pinecone client cannot be null.");
-        this.namespace = namespace;
+    public PineconeVectorStore(String apiKey, String indexHost, String namespace, int defaultTopK) {
+        this.apiKey = Objects.requireNonNull(apiKey, "Pinecone API key cannot be null.");
+        Objects.requireNonNull(indexHost, "Pinecone index host cannot be null.");
+        String url = indexHost.contains("://") ? indexHost : "https://" + indexHost;
+        // Normalize the URL to ensure no trailing slash, as API paths start with slash.
+        this.indexUrl = url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+        this.namespace = (namespace == null) ? "" : namespace;
         this.defaultTopK = defaultTopK > 0 ? defaultTopK : DEFAULT_K_PINECONE;
         this.filters = new HashMap<>();
         this.objectMapper = new ObjectMapper();
     }
 
+    /** @return The default number of results, as given to the constructor. */
+    public int getDefaultTopK() {
+        return defaultTopK;
+    }
+
+    /** @return The namespace this store reads and writes; empty for the default namespace. */
+    public String getNamespace() {
+        return namespace;
+    }
 
     @Override
     public void addDocument(Document document) throws VectorStoreException {
         addDocuments(Collections.singletonList(document));
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>Upserts documents into the store's namespace with {@link #bulkIngest(List)}.
+     * All documents must have their embeddings pre-populated.</p>
+     * @throws VectorStoreException if a document lacks an embedding, or if the API call fails. If a load of
+     *                              several requests fails, the requests that succeeded have been written.
+     */
     @Override
     public void addDocuments(List<Document> documents) throws VectorStoreException {
         Objects.requireNonNull(documents, "Documents list cannot be null.");
         if (documents.isEmpty()) {
             return;
         }
+        HTTP.throwIfFailed(bulkIngest(documents), "upsert");
+    }
 
-        List<HypotheticalVector> pineconeVectors = new ArrayList<>(documents.size());
-        for (Document doc : documents) {
+    /**
+     * Upserts documents in batches and reports the outcome instead of throwing for batches that fail.
+     *
+     * <p>All documents are validated first. They are then split into requests of at most
+     * {@link #MAX_UPSERT_BATCH} vectors and 2 MB, and the limits of the
+     * {@link #withBulkIngester(BulkIngester) bulk ingester}, each serialized only when it is sent, with up to
+     * {@link BulkIngester#getMaxInFlight()} requests outstanding on the shared {@link HttpClient}. Requests
+     * rejected with status 429 or 5xx or failing with an I/O error are retried with backoff.</p>
+     *
+     * @param documents The documents, each with an embedding.
+     * @return The report, also available from {@link #getLastBulkReport()}.
+     * @throws VectorStoreException if a document lacks an embedding, or the call is interrupted.
+     */
+    public BulkIngestReport bulkIngest(List<Document> documents) throws VectorStoreException {
+        Objects.requireNonNull(documents, "Documents list cannot be null.");
+        validateUpsert(documents);
+        return HTTP.await(load(documents, BulkIngester::estimatedJsonBytes, MAX_UPSERT_BATCH, this::upsertRequest, "upsert"), "upsert");
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>Sends the same requests as {@link #addDocuments(List)} with {@link HttpClient#sendAsync}, so no
+     * thread waits for Pinecone. If a document has no embedding, the returned future fails without a request.</p>
+     */
+    @Override
+    public CompletableFuture<Void> addDocumentsAsync(List<Document> documents) {
+        Objects.requireNonNull(documents, "Documents list cannot be null.");
+        if (documents.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        try {
+            validateUpsert(documents);
+        } catch (VectorStoreException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return load(documents, BulkIngester::estimatedJsonBytes, MAX_UPSERT_BATCH, this::upsertRequest, "upsert")
+                .thenAccept(report -> HTTP.throwIfFailed(report, "upsert"));
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>Pinecone's upsert replaces vectors by ID, so this sends upserts only. Since batches are sent
+     * concurrently, if the list repeats an ID only the last document for it is sent.</p>
+     */
+    @Override
+    public void upsertDocuments(List<Document> documents) throws VectorStoreException {
+        Objects.requireNonNull(documents, "Documents list cannot be null.");
+        Map<String, Document> lastById = new LinkedHashMap<>();
+        for (int i = 0; i < documents.size(); i++) {
+            Document doc = Objects.requireNonNull(documents.get(i), "Document at index " + i + " cannot be null.");
+            lastById.remove(doc.getId());
+            lastById.put(doc.getId(), doc);
+        }
+        addDocuments(lastById.size() == documents.size() ? documents : new ArrayList<>(lastById.values()));
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>Sends the IDs to {@code /vectors/delete} in the store's namespace, in batches of at most
+     * {@link #MAX_DELETE_BATCH} IDs sent like {@link #bulkIngest(List)}.</p>
+     * @throws VectorStoreException if the API call fails.
+     */
+    @Override
+    public void deleteDocuments(List<String> documentIds) throws VectorStoreException {
+        Objects.requireNonNull(documentIds, "Document IDs list cannot be null.");
+        if (documentIds.isEmpty()) {
+            return;
+        }
+        for (String id : documentIds) {
+            Objects.requireNonNull(id, "Document ID cannot be null for Pinecone delete.");
+        }
+        HTTP.throwIfFailed(HTTP.await(load(documentIds, id -> 4 + id.length(), MAX_DELETE_BATCH, this::deleteRequest, "delete"), "delete"), "delete");
+    }
+
+    /**
+     * Sets the batching, concurrency and retry policy of writes. Upserts are additionally capped at
+     * {@link #MAX_UPSERT_BATCH} vectors and 2 MB per request, deletes at {@link #MAX_DELETE_BATCH} IDs.
+     * Defaults to {@code new BulkIngester()}: 4 requests in flight, 3 retries starting at 200 ms.
+     *
+     * @param bulkIngester The policy.
+     * @return This {@code PineconeVectorStore} instance.
+     */
+    public PineconeVectorStore withBulkIngester(BulkIngester bulkIngester) {
+        this.bulkIngester = Objects.requireNonNull(bulkIngester, "BulkIngester cannot be null.");
+        return this;
+    }
+
+    /**
+     * Sets the index's metric, so that {@link #queryNamespaces} ranks merged results the way Pinecone does.
+     * Defaults to {@link Metric#COSINE}.
+     *
+     * @param metric The metric the index was created with.
+     * @return This {@code PineconeVectorStore} instance.
+     */
+    public PineconeVectorStore withMetric(Metric metric) {
+        this.metric = Objects.requireNonNull(metric, "Metric cannot be null.");
+        return this;
+    }
+
+    /**
+     * Sets whether search results carry their embeddings. They are left out by default, since few callers
+     * use them and they dominate the response size.
+     *
+     * @param includeEmbeddings {@code true} to request values with query results.
+     * @return This {@code PineconeVectorStore} instance.
+     */
+    public PineconeVectorStore withEmbeddingsInResults(boolean includeEmbeddings) {
+        this.includeEmbeddings = includeEmbeddings;
+        return this;
+    }
+
+    /** @return The report of the most recent batched write of this store, or {@code null} if none has finished. */
+    public BulkIngestReport getLastBulkReport() {
+        return this.lastBulkReport;
+    }
+
+    /**
+     * Validates documents before any batch is sent.
+     * @throws VectorStoreException if a document lacks an embedding.
+     */
+    private void validateUpsert(List<Document> documents) throws VectorStoreException {
+        for (int i = 0; i < documents.size(); i++) {
+            Document doc = documents.get(i);
             Objects.requireNonNull(doc, "Document in list cannot be null.");
-            if (doc.getEmbedding() == null || doc.getEmbedding().isEmpty()) {
+            if (doc.getEmbeddingVector().length == 0) {
                 throw new VectorStoreException("Document embedding cannot be null or empty for Pinecone. Doc ID: " + doc.getId());
             }
+        }
+    }
 
-            Map<String, Object> metadataForPinecone = new HashMap<>();
-            // Store essential Document fields within Pinecone metadata
-            metadataForPinecone.put(METADATA_CONTENT_KEY, doc.getContent());
-            if (doc.getSourceType() != null) {
-                metadataForPinecone.put(METADATA_SOURCE_TYPE_KEY, doc.getSourceType());
-            }
-            if (doc.getSourceName() != null) {
-                metadataForPinecone.put(METADATA_SOURCE_NAME_KEY, doc.getSourceName());
-            }
-            // Nest the original metadata map to avoid key collisions and keep it organized
-            if (doc.getMetadata() != null && !doc.getMetadata().isEmpty()) {
-                metadataForPinecone.put(METADATA_ORIGINAL_METADATA_KEY, new HashMap<>(doc.getMetadata()));
-            }
+    /**
+     * Builds the request upserting validated documents into the namespace.
+     * @throws VectorStoreException if the request cannot be serialized.
+     */
+    private HttpRequest upsertRequest(List<Document> documents) throws VectorStoreException {
+        List<Map<String, Object>> vectors = new ArrayList<>(documents.size());
+        for (Document doc : documents) {
+            Map<String, Object> vector = new LinkedHashMap<>();
+            vector.put("id", doc.getId());
+            vector.put("values", doc.getEmbeddingVector());
+            vector.put("metadata", toPineconeMetadata(doc));
+            vectors.add(vector);
+        }
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("vectors", vectors);
+        body.put("namespace", namespace);
+        return post("/vectors/upsert", body, "upsert");
+    }
 
-            pineconeVectors.add(new HypotheticalVector(doc.getId(), doc.getEmbedding(), metadataForPinecone));
+    /** The metadata stored with a document's vector: its own metadata, flattened, and the reserved keys. */
+    private static Map<String, Object> toPineconeMetadata(Document doc) {
+        Map<String, Object> metadata = new LinkedHashMap<>();
+        for (Map.Entry<String, Object> entry : doc.getMetadata().entrySet()) {
+            Object value = PineconeFilters.metadataValue(entry.getValue());
+            if (value != null && !RESERVED_METADATA_KEYS.contains(entry.getKey())) {
+                metadata.put(entry.getKey(), value);
+            }
+        }
+        metadata.put(METADATA_CONTENT_KEY, doc.getContent());
+        if (doc.getSourceType() != null) {
+            metadata.put(METADATA_SOURCE_TYPE_KEY, doc.getSourceType());
+        }
+        if (doc.getSourceName() != null) {
+            metadata.put(METADATA_SOURCE_NAME_KEY, doc.getSourceName());
         }
+        return metadata;
+    }
 
-        HypotheticalUpsertRequest upsertRequest = new HypotheticalUpsertRequest(pineconeVectors, this.namespace);
+    /**
+     * Builds the request deleting vectors of the namespace by ID.
+     * @throws VectorStoreException if the request cannot be serialized.
+     */
+    private HttpRequest deleteRequest(List<String> documentIds) throws VectorStoreException {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("ids", documentIds);
+        body.put("namespace", namespace);
+        return post("/vectors/delete", body, "delete");
+    }
 
-        try {
-            // --- !!! Replace with actual Pinecone client upsert call !!! ---
-            // Example: this.pineconeIndexObject.upsert(pineconeVectors, this.namespace);
-            this.pineconeClient.upsert(upsertRequest);
-            System.out.println("PineconeVectorStore: Placeholder - Upserted " + pineconeVectors.size() + " vectors to namespace '" + this.namespace + "'.");
-        } catch (Exception e) { // Catch specific Pinecone client exceptions in a real implementation
-            throw new VectorStoreException("Placeholder: Failed to upsert documents to Pinecone: " + e.getMessage(), e);
-        }
+    /**
+     * Sends a write in batches. The returned future does not complete exceptionally; failures are in the report.
+     * @param maxBatchSize Pinecone's limit of items per request for this write.
+     * @param request      Builds the request for one batch.
+     * @param action       Names the API call in error messages, e.g. "upsert".
+     */
+    private <T> CompletableFuture<BulkIngestReport> load(List<T> items, ToLongFunction<? super T> sizeOf, int maxBatchSize,
+                                                         Function<List<T>, HttpRequest> request, String action) {
+        BulkIngester configured = this.bulkIngester;
+        BulkIngester ingester = configured.withChunkLimits(Math.min(maxBatchSize, configured.getMaxDocuments()),
+                                                           Math.min(MAX_REQUEST_BYTES, configured.getMaxBytes()));
+        return HTTP.load(ingester, items, sizeOf, request, action).thenApply(report -> { // Pinecone writes a request entirely or not at all
+            this.lastBulkReport = report;
+            return report;
+        });
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>Queries the store's namespace, applying the filters set with {@link #withFilters(Map)}.</p>
+     * @throws IllegalArgumentException if k is not positive.
+     * @throws VectorStoreException if the API call or response parsing fails.
+     */
     @Override
     public List<Document> similaritySearch(List<Double> queryEmbedding, int k) throws VectorStoreException {
+        return HTTP.await(similaritySearchAsync(queryEmbedding, k), "query");
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>Sends the same {@code /query} request as {@link #similaritySearch(List, int)} with
+     * {@link HttpClient#sendAsync}, so no thread waits for Pinecone.</p>
+     * @throws IllegalArgumentException if k is not positive.
+     */
+    @Override
+    public CompletableFuture<List<Document>> similaritySearchAsync(List<Double> queryEmbedding, int k) {
         Objects.requireNonNull(queryEmbedding, "Query embedding cannot be null.");
+        return queryAsync(EmbeddingUtils.toFloatArray(queryEmbedding), k, namespace, queryFilter(null));
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>The filter is sent as the query's {@code filter}, together with any set with {@link #withFilters(Map)},
+     * so Pinecone ranks only matching vectors. See {@link PineconeFilters} for how values are compared.</p>
+     */
+    @Override
+    public List<Document> similaritySearchVector(float[] queryVector, int k, MetadataFilter filter) throws VectorStoreException {
+        Objects.requireNonNull(queryVector, "Query vector cannot be null.");
+        return HTTP.await(queryAsync(queryVector, k, namespace, queryFilter(filter)), "query");
+    }
+
+    /**
+     * Queries several namespaces of the index at once and merges their results.
+     * See {@link #queryNamespacesAsync(List, int, List, MetadataFilter)}.
+     *
+     * @throws VectorStoreException if a query or response parsing fails.
+     */
+    public List<Document> queryNamespaces(List<Double> queryEmbedding, int k, List<String> namespaces, MetadataFilter filter)
+            throws VectorStoreException {
+        return HTTP.await(queryNamespacesAsync(queryEmbedding, k, namespaces, filter), "query");
+    }
+
+    /**
+     * Queries several namespaces of the index at once and merges their results. One {@code /query} request
+     * per namespace is sent with {@link HttpClient#sendAsync}, all of them concurrently, so the latency is that
+     * of the slowest namespace rather than their sum. The merged results are ranked by score according to the
+     * {@link #withMetric(Metric) metric}, and each carries the namespace it came from in its metadata under
+     * {@code namespace}, unless the document has such a key itself.
+     *
+     * @param queryEmbedding The query embedding.
+     * @param k              The number of results to return in total.
+     * @param namespaces     The namespaces to query; an empty string is the default namespace.
+     * @param filter         The metadata filter, or {@code null}; combined with any set with {@link #withFilters(Map)}.
+     * @return A future completing with the best {@code k} results across all namespaces, or exceptionally if
+     *         any query fails.
+     * @throws IllegalArgumentException if k is not positive or no namespace is given.
+     */
+    public CompletableFuture<List<Document>> queryNamespacesAsync(List<Double> queryEmbedding, int k, List<String> namespaces,
+                                                                  MetadataFilter filter) {
+        Objects.requireNonNull(queryEmbedding, "Query embedding cannot be null.");
+        Objects.requireNonNull(namespaces, "Namespaces cannot be null.");
+        if (namespaces.isEmpty()) {
+            throw new IllegalArgumentException("At least one namespace must be given.");
+        }
+        float[] queryVector = EmbeddingUtils.toFloatArray(queryEmbedding);
+        Map<String, Object> queryFilter = queryFilter(filter);
+        List<CompletableFuture<List<Document>>> queries = new ArrayList<>(namespaces.size());
+        for (String queryNamespace : new LinkedHashSet<>(namespaces)) {
+            String ns = Objects.requireNonNull(queryNamespace, "Namespace cannot be null.");
+            queries.add(queryAsync(queryVector, k, ns, queryFilter).thenApply(results -> {
+                for (Document doc : results) {
+                    if (!doc.getMetadata().containsKey("namespace")) {
+                        doc.addMetadata("namespace", ns);
+                    }
+                }
+                return results;
+            }));
+        }
+        Comparator<Document> byScore = Comparator.comparingDouble(Document::getScore);
+        Comparator<Document> ranking = (metric == Metric.EUCLIDEAN) ? byScore : byScore.reversed();
+        return CompletableFuture.allOf(queries.toArray(new CompletableFuture<?>[0])).thenApply(ignored -> {
+            List<Document> merged = new ArrayList<>();
+            for (CompletableFuture<List<Document>> query : queries) {
+                merged.addAll(query.join());
+            }
+            merged.sort(ranking);
+            return merged.size() > k ? new ArrayList<>(merged.subList(0, k)) : merged;
+        });
+    }
+
+    /**
+     * Sends a {@code /query} request for one namespace.
+     * @return A future completing with the matches as documents, in Pinecone's order.
+     * @throws IllegalArgumentException if k is not positive.
+     */
+    private CompletableFuture<List<Document>> queryAsync(float[] queryVector, int k, String queryNamespace, Map<String, Object> filter) {
         if (k <= 0) {
             throw new IllegalArgumentException("Number of results to return (k) must be positive.");
         }
+        if (queryVector.length == 0) {
+            return CompletableFuture.failedFuture(new VectorStoreException("Query embedding cannot be empty for Pinecone search."));
+        }
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("vector", queryVector);
+        body.put("topK", k);
+        body.put("namespace", queryNamespace);
+        body.put("includeMetadata", true);
+        body.put("includeValues", includeEmbeddings);
+        if (filter != null) {
+            body.put("filter", filter);
+        }
+        HttpRequest request;
+        try {
+            request = post("/query", body, "query");
+        } catch (VectorStoreException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return HTTP.sendAsync(request, "query").thenApply(httpResponse -> {
+            HTTP.checkResponse(httpResponse, "query");
+            return parseMatches(httpResponse.body());
+        });
+    }
 
-        HypotheticalQueryRequest queryRequest = new HypotheticalQueryRequest(
-                queryEmbedding,
-                k,
-                this.namespace,
-                true, // includeMetadata
-                true, // includeValues (to get embeddings back if needed, though often not required by RAG post-search)
-                this.filters.isEmpty() ? null : new HashMap<>(this.filters) // Pass a copy of filters
-        );
+    /** Combines a filter with the ones set by {@link #withFilters(Map)}; {@code null} if there are none. */
+    private Map<String, Object> queryFilter(MetadataFilter filter) {
+        Map<String, Object> fixed = this.filters.isEmpty() ? null : new HashMap<>(this.filters);
+        Map<String, Object> translated = (filter == null) ? null : PineconeFilters.toFilter(filter);
+        if (fixed == null || translated == null) {
+            return (fixed != null) ? fixed : translated;
+        }
+        return Map.of("$and", List.of(fixed, translated));
+    }
 
+    /**
+     * Converts the matches of a {@code /query} response into documents.
+     * @throws VectorStoreException if the body cannot be parsed.
+     */
+    private List<Document> parseMatches(String responseBody) throws VectorStoreException {
+        JsonNode matches;
         try {
-            // --- !!! Replace with actual Pinecone client query call !!! ---
-            // Example: QueryResponse pineconeResponse = this.pineconeIndexObject.query(
-            //      queryEmbedding, k, this.namespace, this.filters, true, true);
-            HypotheticalQueryResponse pineconeResponse = this.pineconeClient.query(queryRequest);
-            System.out.println("PineconeVectorStore: Placeholder - Query executed. Found " +
-                               (pineconeResponse.matches() != null ? pineconeResponse.matches().size() : 0) + " matches.");
-
+            matches = objectMapper.readTree(responseBody).path("matches");
+        } catch (JsonProcessingException e) {
+            throw new VectorStoreException("Failed to deserialize Pinecone query response from JSON", e);
+        }
 
-            if (pineconeResponse == null || pineconeResponse.matches() == null) {
-                return Collections.emptyList();
+        List<Document> resultDocuments = new ArrayList<>(matches.size());
+        for (JsonNode match : matches) {
+            Map<String, Object> metadataFromPinecone = match.hasNonNull("metadata")
+                    ? objectMapper.convertValue(match.get("metadata"), METADATA_TYPE)
+                    : Collections.emptyMap();
+
+            Object content = metadataFromPinecone.get(METADATA_CONTENT_KEY);
+            Document doc = new Document(content != null ? content.toString() : "Content not found in metadata");
+            doc.setId(match.path("id").asText());
+            doc.setScore((float) match.path("score").asDouble()); // Similarity for cosine and dot product, distance for euclidean
+
+            JsonNode values = match.get("values");
+            if (values != null && values.isArray() && !values.isEmpty()) {
+                float[] embedding = new float[values.size()];
+                for (int i = 0; i < embedding.length; i++) {
+                    embedding[i] = (float) values.get(i).asDouble();
+                }
+                doc.setEmbeddingVector(embedding);
+            }
+            if (metadataFromPinecone.get(METADATA_SOURCE_TYPE_KEY) instanceof String sourceType) {
+                doc.setSourceType(sourceType);
+            }
+            if (metadataFromPinecone.get(METADATA_SOURCE_NAME_KEY) instanceof String sourceName) {
+                doc.setSourceName(sourceName);
             }
 
-            List<Document> resultDocuments = new ArrayList<>();
-            for (HypotheticalScoredVector scoredVector : pineconeResponse.matches()) {
-                Map<String, Object> metadataFromPinecone = scoredVector.metadata();
-                String content = "Content not found in metadata"; // Default
-                String sourceType = null;
-                String sourceName = null;
-                Map<String, Object> originalMetadata = Collections.emptyMap();
-
-                if (metadataFromPinecone != null) {
-                    content = (String) metadataFromPinecone.getOrDefault(METADATA_CONTENT_KEY, content);
-                    sourceType = (String) metadataFromPinecone.get(METADATA_SOURCE_TYPE_KEY);
-                    sourceName = (String) metadataFromPinecone.get(METADATA_SOURCE_NAME_KEY);
-
-                    Object originalMetaObj = metadataFromPinecone.get(METADATA_ORIGINAL_METADATA_KEY);
-                    if (originalMetaObj instanceof Map) {
-                        @SuppressWarnings("unchecked")
-                        Map<String, Object> castedMetadata = (Map<String, Object>) originalMetaObj;
-                        originalMetadata = castedMetadata;
-                    }
+            Map<String, Object> originalMetadata = new HashMap<>();
+            for (Map.Entry<String, Object> entry : metadataFromPinecone.entrySet()) {
+                if (!RESERVED_METADATA_KEYS.contains(entry.getKey())) {
+                    originalMetadata.put(entry.getKey(), entry.getValue());
                 }
-
-                Document doc = new Document(content);
-                doc.setId(scoredVector.id());
-                doc.setScore(scoredVector.score()); // Pinecone score is typically similarity (higher is better)
-
-                if (scoredVector.values() != null) {
-                    doc.setEmbedding(scoredVector.values());
+            }
+            if (metadataFromPinecone.get(METADATA_ORIGINAL_METADATA_KEY) instanceof Map<?, ?> nested) {
+                for (Map.Entry<?, ?> entry : nested.entrySet()) {
+                    originalMetadata.put(String.valueOf(entry.getKey()), entry.getValue());
                 }
-                if (sourceType != null) doc.setSourceType(sourceType);
-                if (sourceName != null) doc.setSourceName(sourceName);
-                doc.setMetadata(originalMetadata); // Set the extracted original metadata
-
-                resultDocuments.add(doc);
             }
-            return resultDocuments;
+            doc.setMetadata(originalMetadata);
+            resultDocuments.add(doc);
+        }
+        return resultDocuments;
+    }
 
-        } catch (Exception e) { // Catch specific Pinecone client exceptions in a real implementation
-            throw new VectorStoreException("Placeholder: Failed to query documents from Pinecone: " + e.getMessage(), e);
+    /**
+     * Builds a JSON POST request to the index.
+     * @throws VectorStoreException if the body cannot be serialized.
+     */
+    private HttpRequest post(String path, Map<String, Object> body, String action) throws VectorStoreException {
+        String requestBodyJson;
+        try {
+            requestBodyJson = objectMapper.writeValueAsString(body);
+        } catch (JsonProcessingException e) {
+            throw new VectorStoreException("Failed to serialize Pinecone " + action + " request to JSON", e);
         }
+        return HttpRequest.newBuilder()
+                .uri(URI.create(indexUrl + path))
+                .header("Api-Key", apiKey)
+                .header("X-Pinecone-API-Version", API_VERSION)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(requestBodyJson))
+                .build();
     }
 
     /**
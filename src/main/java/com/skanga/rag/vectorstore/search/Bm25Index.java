@@ -0,0 +1,295 @@
+package com.skanga.rag.vectorstore.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * An in-memory inverted index over document text, scored with Okapi BM25. The local vector stores keep one
+ * next to their vectors so that a query can also be answered lexically, which finds exact identifiers
+ * (error codes, SKUs, function names) that embedding similarity tends to miss.
+ *
+ * <p>For each term the index keeps a posting list of the ordinals containing it and the term's frequency
+ * in each, and for each ordinal the document length in terms. A query term {@code t} contributes
+ * {@code idf(t) * tf * (k1 + 1) / (tf + k1 * (1 - b + b * length / averageLength))} to the score of every
+ * document holding it, with {@code idf(t) = ln(1 + (N - df + 0.5) / (df + 0.5))}. Only the posting lists of
+ * the query terms are read.</p>
+ *
+ * <p>Text is split by {@link #tokenize(String)}: lower-cased runs of letters and digits, plus, for runs joined
+ * by {@code - _ . / :}, the joined token itself, so that {@code "ERR-4021"} is indexed as {@code err-4021},
+ * {@code err} and {@code 4021} and an exact identifier outranks documents that only share its parts.
+ * There is no stemming and no stop-word list; the IDF weight already discounts common words.</p>
+ *
+ * <p>Documents are indexed once, at insert time, and ordinals must be added in increasing order. Deleted
+ * ordinals are excluded at search time and dropped by {@link #remap(int[])}; until then they still count
+ * towards the corpus statistics, which shifts scores slightly but not which documents match.</p>
+ *
+ * <p><b>Thread Safety:</b> This class is not synchronized. Concurrent {@link #search} calls are safe, but
+ * {@link #add(int, String)} must not run concurrently with anything else; the owning store's lock provides this.</p>
+ */
+public final class Bm25Index {
+
+    /** Default term-frequency saturation parameter. */
+    public static final double DEFAULT_K1 = 1.2;
+    /** Default document-length normalization parameter. */
+    public static final double DEFAULT_B = 0.75;
+
+    private final double k1;
+    private final double b;
+    private final Map<String, Postings> postings = new HashMap<>();
+    /** Length in terms by ordinal. */
+    private int[] lengths = new int[16];
+    /** One past the largest ordinal added. */
+    private int ordinalLimit;
+    /** Number of documents added. */
+    private int documentCount;
+    private long totalLength;
+
+    /** Creates an empty index with the default parameters {@link #DEFAULT_K1} and {@link #DEFAULT_B}. */
+    public Bm25Index() {
+        this(DEFAULT_K1, DEFAULT_B);
+    }
+
+    /**
+     * Creates an empty index.
+     * @param k1 Term-frequency saturation; higher values let repeated terms count for longer. Must not be negative.
+     * @param b  Length normalization between 0 (none) and 1 (full).
+     * @throws IllegalArgumentException if a parameter is out of range.
+     */
+    public Bm25Index(double k1, double b) {
+        if (!(k1 >= 0.0) || Double.isInfinite(k1)) {
+            throw new IllegalArgumentException("BM25 k1 must be a non-negative number.");
+        }
+        if (!(b >= 0.0 && b <= 1.0)) {
+            throw new IllegalArgumentException("BM25 b must be between 0 and 1.");
+        }
+        this.k1 = k1;
+        this.b = b;
+    }
+
+    /** @return The term-frequency saturation parameter. */
+    public double getK1() {
+        return k1;
+    }
+
+    /** @return The length normalization parameter. */
+    public double getB() {
+        return b;
+    }
+
+    /** @return A new empty index with the same parameters. */
+    public Bm25Index emptyCopy() {
+        return new Bm25Index(k1, b);
+    }
+
+    /** @return The number of documents indexed, deleted ones included until {@link #remap(int[])}. */
+    public int size() {
+        return documentCount;
+    }
+
+    /**
+     * Indexes a document's text.
+     * @param ordinal The document's ordinal; larger than any ordinal added before.
+     * @param text    The text; {@code null} indexes an empty document.
+     * @throws IllegalArgumentException if the ordinal is not larger than the previous one.
+     */
+    public void add(int ordinal, String text) {
+        if (ordinal < ordinalLimit) {
+            throw new IllegalArgumentException("Ordinals must be added in increasing order; got " + ordinal +
+                                               " after " + (ordinalLimit - 1) + ".");
+        }
+        List<String> tokens = tokenize(text);
+        Map<String, Integer> frequencies = new HashMap<>();
+        for (String token : tokens) {
+            frequencies.merge(token, 1, Integer::sum);
+        }
+        for (Map.Entry<String, Integer> entry : frequencies.entrySet()) {
+            postings.computeIfAbsent(entry.getKey(), t -> new Postings()).add(ordinal, entry.getValue());
+        }
+        if (ordinal >= lengths.length) {
+            lengths = Arrays.copyOf(lengths, Math.max(ordinal + 1, lengths.length + (lengths.length >> 1)));
+        }
+        lengths[ordinal] = tokens.size();
+        ordinalLimit = ordinal + 1;
+        documentCount++;
+        totalLength += tokens.size();
+    }
+
+    /**
+     * Finds the documents scoring highest for a query.
+     * @param query    The query text.
+     * @param k        The number of results.
+     * @param excluded Ordinals to skip, e.g. tombstones; {@code null} for none.
+     * @return Up to k matches with a positive score, highest first; ties go to the lower ordinal.
+     * @throws IllegalArgumentException if k is not positive.
+     */
+    public List<Hit> search(String query, int k, BitSet excluded) {
+        TopKCollector best = new TopKCollector(k);
+        if (documentCount == 0) {
+            return new ArrayList<>();
+        }
+        float[] scores = null;
+        BitSet matched = null;
+        double averageLength = Math.max(1.0, (double) totalLength / documentCount);
+        for (String term : new LinkedHashSet<>(tokenize(query))) {
+            Postings list = postings.get(term);
+            if (list == null) {
+                continue;
+            }
+            if (scores == null) {
+                scores = new float[ordinalLimit];
+                matched = new BitSet(ordinalLimit);
+            }
+            double idf = Math.log(1.0 + (documentCount - list.size + 0.5) / (list.size + 0.5));
+            for (int i = 0; i < list.size; i++) {
+                int ordinal = list.ordinals[i];
+                int tf = list.frequencies[i];
+                double norm = k1 * (1.0 - b + b * lengths[ordinal] / averageLength);
+                scores[ordinal] += (float) (idf * tf * (k1 + 1.0) / (tf + norm));
+                matched.set(ordinal);
+            }
+        }
+        if (matched == null) {
+            return new ArrayList<>();
+        }
+        if (excluded != null) {
+            matched.andNot(excluded);
+        }
+        for (int ordinal = matched.nextSetBit(0); ordinal >= 0; ordinal = matched.nextSetBit(ordinal + 1)) {
+            if (scores[ordinal] > 0.0f) {
+                best.offer(ordinal, -scores[ordinal]);
+            }
+        }
+        best.sort();
+        List<Hit> hits = new ArrayList<>(best.size());
+        for (int i = 0; i < best.size(); i++) {
+            hits.add(new Hit(best.ordinal(i), (float) -best.distance(i)));
+        }
+        return hits;
+    }
+
+    /**
+     * Builds a copy with renumbered ordinals, e.g. after a compaction.
+     * @param oldToNew The new ordinal of each old ordinal, increasing, or -1 to drop the document.
+     * @return The remapped index, with corpus statistics of the kept documents only.
+     */
+    public Bm25Index remap(int[] oldToNew) {
+        Bm25Index remapped = new Bm25Index(k1, b);
+        for (Map.Entry<String, Postings> entry : postings.entrySet()) {
+            Postings list = entry.getValue();
+            Postings kept = new Postings();
+            for (int i = 0; i < list.size; i++) {
+                int ordinal = list.ordinals[i];
+                if (ordinal < oldToNew.length && oldToNew[ordinal] >= 0) {
+                    kept.add(oldToNew[ordinal], list.frequencies[i]);
+                }
+            }
+            if (kept.size > 0) {
+                remapped.postings.put(entry.getKey(), kept);
+            }
+        }
+        int limit = Math.min(ordinalLimit, oldToNew.length);
+        for (int ordinal = 0; ordinal < limit; ordinal++) {
+            int target = oldToNew[ordinal];
+            if (target < 0) {
+                continue;
+            }
+            if (target >= remapped.lengths.length) {
+                remapped.lengths = Arrays.copyOf(remapped.lengths, Math.max(target + 1, remapped.lengths.length * 2));
+            }
+            remapped.lengths[target] = lengths[ordinal];
+            remapped.ordinalLimit = target + 1;
+            remapped.documentCount++;
+            remapped.totalLength += lengths[ordinal];
+        }
+        return remapped;
+    }
+
+    /** Removes all documents. */
+    public void clear() {
+        postings.clear();
+        lengths = new int[16];
+        ordinalLimit = 0;
+        documentCount = 0;
+        totalLength = 0;
+    }
+
+    /**
+     * Splits text into index terms: lower-cased maximal runs of letters and digits, and additionally each
+     * run of two or more of them joined by single {@code - _ . / :} characters, e.g. {@code "See ERR-4021."}
+     * gives {@code see}, {@code err-4021}, {@code err}, {@code 4021}.
+     * @param text The text; {@code null} gives no terms.
+     * @return The terms in order of appearance, with repetitions.
+     */
+    public static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        String lower = text.toLowerCase(Locale.ROOT);
+        int length = lower.length();
+        int i = 0;
+        while (i < length) {
+            if (!Character.isLetterOrDigit(lower.charAt(i))) {
+                i++;
+                continue;
+            }
+            // A compound: word (connector word)*
+            int compoundStart = i;
+            int words = 0;
+            int firstPart = tokens.size();
+            while (true) {
+                int wordStart = i;
+                while (i < length && Character.isLetterOrDigit(lower.charAt(i))) {
+                    i++;
+                }
+                tokens.add(lower.substring(wordStart, i));
+                words++;
+                if (i + 1 < length && isConnector(lower.charAt(i)) && Character.isLetterOrDigit(lower.charAt(i + 1))) {
+                    i++;
+                } else {
+                    break;
+                }
+            }
+            if (words > 1) {
+                tokens.add(firstPart, lower.substring(compoundStart, i));
+            }
+        }
+        return tokens;
+    }
+
+    private static boolean isConnector(char c) {
+        return c == '-' || c == '_' || c == '.' || c == '/' || c == ':';
+    }
+
+    /**
+     * A scored match.
+     * @param ordinal The document's ordinal.
+     * @param score   The BM25 score, higher is better.
+     */
+    public record Hit(int ordinal, float score) {}
+
+    /** Ordinals holding one term, in increasing order, with the term's frequency in each. */
+    private static final class Postings {
+        private int[] ordinals = new int[2];
+        private int[] frequencies = new int[2];
+        private int size;
+
+        void add(int ordinal, int frequency) {
+            if (size == ordinals.length) {
+                int capacity = size + (size >> 1) + 1;
+                ordinals = Arrays.copyOf(ordinals, capacity);
+                frequencies = Arrays.copyOf(frequencies, capacity);
+            }
+            ordinals[size] = ordinal;
+            frequencies[size] = frequency;
+            size++;
+        }
+    }
+}
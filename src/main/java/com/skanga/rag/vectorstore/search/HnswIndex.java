@@ -0,0 +1,477 @@
+package com.skanga.rag.vectorstore.search;
+
+import com.skanga.rag.vectorstore.VectorStoreException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.SplittableRandom;
+import java.util.function.IntPredicate;
+
+/**
+ * An in-memory Hierarchical Navigable Small World (HNSW) graph for approximate nearest-neighbour
+ * search using cosine distance.
+ *
+ * <p>Vectors are identified by their <em>ordinal</em>, the zero-based position in which they were
+ * added. Callers such as {@link com.skanga.rag.vectorstore.MemoryVectorStore} keep their own
+ * ordinal-indexed storage and translate ordinals back to documents.</p>
+ *
+ * <p><b>Parameters:</b>
+ * <ul>
+ *   <li>{@code m} - the maximum number of links per node on the upper layers (layer 0 allows {@code 2 * m}).
+ *       Higher values improve recall at the cost of memory and insert time.</li>
+ *   <li>{@code efConstruction} - the size of the dynamic candidate list used while inserting.</li>
+ *   <li>{@code efSearch} - the size of the dynamic candidate list used while searching.
+ *       It is raised to {@code k} when a search asks for more results than {@code efSearch}.</li>
+ * </ul>
+ * </p>
+ *
+ * <p>The graph is built incrementally: each {@link #add(float[])} links the new node into the
+ * existing layers, so searches stay logarithmic in the number of vectors.</p>
+ *
+ * <p><b>Thread Safety:</b> This class is not synchronized. Concurrent searches are safe, but
+ * {@link #add(float[])} must not run concurrently with other adds or with searches. The owning
+ * vector store is responsible for this (e.g., with a read/write lock).</p>
+ */
+public class HnswIndex {
+
+    /** Default maximum number of links per node on the upper layers. */
+    public static final int DEFAULT_M = 16;
+    /** Default size of the candidate list while building the graph. */
+    public static final int DEFAULT_EF_CONSTRUCTION = 200;
+    /** Default size of the candidate list while searching. */
+    public static final int DEFAULT_EF_SEARCH = 64;
+
+    private final int m;
+    private final int maxLinksLayer0;
+    private final int efConstruction;
+    private volatile int efSearch;
+    private volatile VectorKernels kernels = VectorKernels.defaultKernels();
+    private final boolean normalizedVectors;
+    private final double levelMultiplier;
+    private final SplittableRandom random;
+
+    /** Vectors by ordinal. The arrays are referenced, not copied. */
+    private final List<float[]> vectors = new ArrayList<>();
+    /** L2 norms by ordinal, computed once on add; only maintained for normalized scoring. */
+    private float[] norms = new float[0];
+    /**
+     * Adjacency lists by ordinal, then by layer. {@code links.get(node)[layer][0]} holds the number
+     * of neighbours, followed by the neighbour ordinals.
+     */
+    private final List<int[][]> links = new ArrayList<>();
+
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+    private int dimension = -1;
+
+    /**
+     * A search result: a vector ordinal and its cosine distance to the query.
+     *
+     * @param ordinal  The ordinal of the vector.
+     * @param distance The cosine distance to the query (lower is better).
+     */
+    public record Neighbor(int ordinal, double distance) {}
+
+    private static final Comparator<Neighbor> NEAREST_FIRST = Comparator.comparingDouble(Neighbor::distance);
+    private static final Comparator<Neighbor> FURTHEST_FIRST = NEAREST_FIRST.reversed();
+
+    /**
+     * Constructs an HNSW index with default parameters.
+     * @see #DEFAULT_M
+     * @see #DEFAULT_EF_CONSTRUCTION
+     * @see #DEFAULT_EF_SEARCH
+     */
+    public HnswIndex() {
+        this(DEFAULT_M, DEFAULT_EF_CONSTRUCTION, DEFAULT_EF_SEARCH);
+    }
+
+    /**
+     * Constructs an HNSW index.
+     *
+     * @param m              Maximum links per node on upper layers. Must be at least 2.
+     * @param efConstruction Candidate list size used while inserting. Must be at least {@code m}.
+     * @param efSearch       Candidate list size used while searching. Must be positive.
+     * @throws IllegalArgumentException if any parameter is out of range.
+     */
+    public HnswIndex(int m, int efConstruction, int efSearch) {
+        this(m, efConstruction, efSearch, false);
+    }
+
+    /**
+     * Constructs an HNSW index, optionally with normalized scoring.
+     * When {@code normalizedVectors} is true, the L2 norm of every vector is computed once in
+     * {@link #add(float[])} and the query norm once per search, so each distance is a single dot product
+     * divided by the cached norms instead of a full cosine computation. The vectors are still referenced,
+     * not copied, and need not be unit-length.
+     *
+     * @param m                 Maximum links per node on upper layers. Must be at least 2.
+     * @param efConstruction    Candidate list size used while inserting. Must be at least {@code m}.
+     * @param efSearch          Candidate list size used while searching. Must be positive.
+     * @param normalizedVectors Whether to cache vector norms and score with a dot product.
+     * @throws IllegalArgumentException if any parameter is out of range.
+     */
+    public HnswIndex(int m, int efConstruction, int efSearch, boolean normalizedVectors) {
+        if (m < 2) {
+            throw new IllegalArgumentException("HNSW parameter M must be at least 2.");
+        }
+        if (efConstruction < m) {
+            throw new IllegalArgumentException("HNSW efConstruction must be at least M.");
+        }
+        if (efSearch <= 0) {
+            throw new IllegalArgumentException("HNSW efSearch must be positive.");
+        }
+        this.m = m;
+        this.maxLinksLayer0 = 2 * m;
+        this.efConstruction = efConstruction;
+        this.efSearch = efSearch;
+        this.levelMultiplier = 1.0 / Math.log(m);
+        this.random = new SplittableRandom(42); // Fixed seed keeps graph construction reproducible
+        this.normalizedVectors = normalizedVectors;
+    }
+
+    /** @return The number of vectors in the index. */
+    public int size() { return vectors.size(); }
+    /** @return The vector dimension, or -1 if the index is empty. */
+    public int dimension() { return dimension; }
+    /** @return {@code true} if the index caches vector norms and scores with a dot product. */
+    public boolean isNormalizedVectors() { return normalizedVectors; }
+    /** @return The configured M parameter. */
+    public int getM() { return m; }
+    /** @return The configured efConstruction parameter. */
+    public int getEfConstruction() { return efConstruction; }
+    /** @return The current efSearch parameter. */
+    public int getEfSearch() { return efSearch; }
+
+    /**
+     * Changes the candidate list size used by subsequent searches.
+     * Larger values trade latency for recall.
+     * @param efSearch The new value. Must be positive.
+     */
+    public void setEfSearch(int efSearch) {
+        if (efSearch <= 0) {
+            throw new IllegalArgumentException("HNSW efSearch must be positive.");
+        }
+        this.efSearch = efSearch;
+    }
+
+    /** @return The kernels used to compute distances. */
+    public VectorKernels getVectorKernels() { return kernels; }
+
+    /**
+     * Selects the kernels used to compute distances for subsequent adds and searches.
+     * Defaults to {@link VectorKernels#defaultKernels()}.
+     * @param kernels The kernels to use.
+     */
+    public void setVectorKernels(VectorKernels kernels) {
+        this.kernels = Objects.requireNonNull(kernels, "Vector kernels cannot be null.");
+    }
+
+    /**
+     * Adds a vector to the graph and returns its ordinal.
+     *
+     * @param vector The vector to add. It is referenced, not copied, and must not be modified afterwards.
+     * @return The ordinal assigned to the vector (equal to the previous {@link #size()}).
+     * @throws VectorStoreException if the vector is empty or its dimension differs from previously added vectors.
+     */
+    public int add(float[] vector) throws VectorStoreException {
+        Objects.requireNonNull(vector, "Vector to index cannot be null.");
+        if (vector.length == 0) {
+            throw new VectorStoreException("Cannot index an empty vector.");
+        }
+        if (dimension == -1) {
+            dimension = vector.length;
+        } else if (vector.length != dimension) {
+            throw new VectorStoreException("Vector dimension " + vector.length + " does not match index dimension " + dimension + ".");
+        }
+
+        int node = vectors.size();
+        int level = randomLevel();
+        int[][] nodeLinks = new int[level + 1][];
+        for (int layer = 0; layer <= level; layer++) {
+            nodeLinks[layer] = new int[maxLinks(layer) + 1];
+        }
+        vectors.add(vector);
+        links.add(nodeLinks);
+        float norm = 0.0f;
+        if (normalizedVectors) {
+            if (node == norms.length) {
+                norms = Arrays.copyOf(norms, Math.max(16, node + (node >> 1)));
+            }
+            norm = (float) SimilaritySearchUtils.l2Norm(vector);
+            norms[node] = norm;
+        }
+
+        if (entryPoint == -1) {
+            entryPoint = node;
+            maxLevel = level;
+            return node;
+        }
+
+        int current = entryPoint;
+        double currentDistance = distance(vector, norm, current);
+        for (int layer = maxLevel; layer > level; layer--) {
+            current = greedyClosest(vector, norm, current, currentDistance, layer);
+            currentDistance = distance(vector, norm, current);
+        }
+
+        List<Neighbor> entryPoints = new ArrayList<>();
+        entryPoints.add(new Neighbor(current, currentDistance));
+        for (int layer = Math.min(level, maxLevel); layer >= 0; layer--) {
+            List<Neighbor> candidates = searchLayer(vector, norm, entryPoints, efConstruction, layer, null);
+            List<Neighbor> selected = selectNeighbors(candidates, m);
+            for (Neighbor neighbor : selected) {
+                appendLink(nodeLinks[layer], neighbor.ordinal());
+                connect(neighbor.ordinal(), node, layer);
+            }
+            entryPoints = candidates;
+        }
+
+        if (level > maxLevel) {
+            maxLevel = level;
+            entryPoint = node;
+        }
+        return node;
+    }
+
+    /**
+     * Searches for the approximate {@code k} nearest neighbours of the query using the configured efSearch.
+     *
+     * @param query The query vector.
+     * @param k     The number of neighbours to return. Must be positive.
+     * @return Up to {@code k} neighbours, nearest first.
+     * @throws VectorStoreException if the query dimension differs from the indexed vectors.
+     */
+    public List<Neighbor> search(float[] query, int k) throws VectorStoreException {
+        return search(query, k, efSearch);
+    }
+
+    /**
+     * Searches for the approximate {@code k} nearest neighbours of the query.
+     *
+     * @param query The query vector.
+     * @param k     The number of neighbours to return. Must be positive.
+     * @param ef    The candidate list size for this search; raised to {@code k} if smaller.
+     * @return Up to {@code k} neighbours, nearest first.
+     * @throws VectorStoreException if the query dimension differs from the indexed vectors.
+     */
+    public List<Neighbor> search(float[] query, int k, int ef) throws VectorStoreException {
+        return search(query, k, ef, null);
+    }
+
+    /**
+     * Searches for the approximate {@code k} nearest neighbours among the ordinals accepted by a filter.
+     * Rejected nodes are still traversed, so they keep the graph connected (e.g. documents deleted from
+     * the owning store but not yet compacted away), but they never appear in the results.
+     *
+     * @param query  The query vector.
+     * @param k      The number of neighbours to return. Must be positive.
+     * @param ef     The candidate list size for this search; raised to {@code k} if smaller.
+     * @param accept Decides which ordinals may be returned, or {@code null} to accept all.
+     * @return Up to {@code k} accepted neighbours, nearest first.
+     * @throws VectorStoreException if the query dimension differs from the indexed vectors.
+     */
+    public List<Neighbor> search(float[] query, int k, int ef, IntPredicate accept) throws VectorStoreException {
+        Objects.requireNonNull(query, "Query vector cannot be null.");
+        if (k <= 0) {
+            throw new IllegalArgumentException("Number of results to return (k) must be positive.");
+        }
+        if (entryPoint == -1) {
+            return new ArrayList<>();
+        }
+        if (query.length != dimension) {
+            throw new VectorStoreException("Query dimension " + query.length + " does not match index dimension " + dimension + ".");
+        }
+
+        float queryNorm = normalizedVectors ? (float) SimilaritySearchUtils.l2Norm(query) : 0.0f;
+        int current = entryPoint;
+        double currentDistance = distance(query, queryNorm, current);
+        for (int layer = maxLevel; layer > 0; layer--) {
+            current = greedyClosest(query, queryNorm, current, currentDistance, layer);
+            currentDistance = distance(query, queryNorm, current);
+        }
+
+        List<Neighbor> entryPoints = new ArrayList<>();
+        entryPoints.add(new Neighbor(current, currentDistance));
+        List<Neighbor> candidates = searchLayer(query, queryNorm, entryPoints, Math.max(ef, k), 0, accept);
+        return candidates.size() > k ? new ArrayList<>(candidates.subList(0, k)) : candidates;
+    }
+
+    /** Draws a random layer for a new node using the standard exponential distribution. */
+    private int randomLevel() {
+        double u = 1.0 - random.nextDouble(); // (0, 1], avoids log(0)
+        return (int) Math.floor(-Math.log(u) * levelMultiplier);
+    }
+
+    private int maxLinks(int layer) {
+        return layer == 0 ? maxLinksLayer0 : m;
+    }
+
+    /**
+     * Cosine distance between a vector and an indexed node.
+     * @param norm The L2 norm of {@code vector}; only read for normalized scoring.
+     */
+    private double distance(float[] vector, float norm, int node) {
+        if (!normalizedVectors) {
+            return kernels.cosineDistance(vector, vectors.get(node));
+        }
+        float nodeNorm = norms[node];
+        if (norm == 0.0f || nodeNorm == 0.0f) {
+            return 1.0; // Zero vector: same convention as cosineDistance
+        }
+        double similarity = kernels.dot(vector, vectors.get(node)) / ((double) norm * nodeNorm);
+        return 1.0 - Math.max(-1.0, Math.min(1.0, similarity));
+    }
+
+    /** Cosine distance between two indexed nodes. */
+    private double distance(int a, int b) {
+        return distance(vectors.get(a), normalizedVectors ? norms[a] : 0.0f, b);
+    }
+
+    /** Greedy walk on a single layer, used above the target layer where ef = 1 suffices. */
+    private int greedyClosest(float[] query, float queryNorm, int start, double startDistance, int layer) {
+        int current = start;
+        double currentDistance = startDistance;
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            int[] neighbours = links.get(current)[layer];
+            for (int i = 1; i <= neighbours[0]; i++) {
+                int candidate = neighbours[i];
+                double d = distance(query, queryNorm, candidate);
+                if (d < currentDistance) {
+                    currentDistance = d;
+                    current = candidate;
+                    changed = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Best-first search on one layer (Algorithm 2 of the HNSW paper).
+     * @param queryNorm The L2 norm of the query; only read for normalized scoring.
+     * @param accept    Ordinals allowed in the results ({@code null} for all); others are only traversed.
+     * @return Up to {@code ef} closest accepted nodes found, nearest first.
+     */
+    private List<Neighbor> searchLayer(float[] query, float queryNorm, List<Neighbor> entryPoints, int ef, int layer, IntPredicate accept) {
+        BitSet visited = new BitSet(vectors.size());
+        PriorityQueue<Neighbor> candidates = new PriorityQueue<>(NEAREST_FIRST);
+        PriorityQueue<Neighbor> results = new PriorityQueue<>(FURTHEST_FIRST);
+        for (Neighbor entry : entryPoints) {
+            if (!visited.get(entry.ordinal())) {
+                visited.set(entry.ordinal());
+                candidates.add(entry);
+                if (accept == null || accept.test(entry.ordinal())) {
+                    results.add(entry);
+                }
+            }
+        }
+        while (results.size() > ef) {
+            results.poll();
+        }
+
+        while (!candidates.isEmpty()) {
+            Neighbor closest = candidates.poll();
+            if (results.size() >= ef && closest.distance() > results.peek().distance()) {
+                break; // All remaining candidates are further than the worst result
+            }
+            int[][] nodeLinks = links.get(closest.ordinal());
+            if (layer >= nodeLinks.length) {
+                continue;
+            }
+            int[] neighbours = nodeLinks[layer];
+            for (int i = 1; i <= neighbours[0]; i++) {
+                int candidate = neighbours[i];
+                if (visited.get(candidate)) {
+                    continue;
+                }
+                visited.set(candidate);
+                double d = distance(query, queryNorm, candidate);
+                if (results.size() < ef || d < results.peek().distance()) {
+                    Neighbor neighbor = new Neighbor(candidate, d);
+                    candidates.add(neighbor);
+                    if (accept == null || accept.test(candidate)) {
+                        results.add(neighbor);
+                        if (results.size() > ef) {
+                            results.poll();
+                        }
+                    }
+                }
+            }
+        }
+
+        List<Neighbor> sorted = new ArrayList<>(results);
+        sorted.sort(NEAREST_FIRST);
+        return sorted;
+    }
+
+    /**
+     * Neighbour selection heuristic (Algorithm 4 of the HNSW paper): a candidate is kept only if it
+     * is closer to the base node than to any already selected neighbour, which favours links in
+     * diverse directions. Pruned candidates back-fill remaining slots.
+     *
+     * @param candidates Candidates sorted nearest first, with distances relative to the base node.
+     * @param maxCount   Maximum number of neighbours to select.
+     */
+    private List<Neighbor> selectNeighbors(List<Neighbor> candidates, int maxCount) {
+        if (candidates.size() <= maxCount) {
+            return candidates;
+        }
+        List<Neighbor> selected = new ArrayList<>(maxCount);
+        List<Neighbor> pruned = new ArrayList<>();
+        for (Neighbor candidate : candidates) {
+            if (selected.size() >= maxCount) {
+                break;
+            }
+            boolean diverse = true;
+            for (Neighbor chosen : selected) {
+                if (distance(candidate.ordinal(), chosen.ordinal()) < candidate.distance()) {
+                    diverse = false;
+                    break;
+                }
+            }
+            if (diverse) {
+                selected.add(candidate);
+            } else {
+                pruned.add(candidate);
+            }
+        }
+        for (int i = 0; i < pruned.size() && selected.size() < maxCount; i++) {
+            selected.add(pruned.get(i));
+        }
+        return selected;
+    }
+
+    /** Adds a back-link from {@code node} to {@code newNeighbor}, shrinking the list if it overflows. */
+    private void connect(int node, int newNeighbor, int layer) {
+        int[] nodeLinks = links.get(node)[layer];
+        int maxCount = maxLinks(layer);
+        if (nodeLinks[0] < maxCount) {
+            appendLink(nodeLinks, newNeighbor);
+            return;
+        }
+
+        List<Neighbor> candidates = new ArrayList<>(maxCount + 1);
+        for (int i = 1; i <= nodeLinks[0]; i++) {
+            candidates.add(new Neighbor(nodeLinks[i], distance(node, nodeLinks[i])));
+        }
+        candidates.add(new Neighbor(newNeighbor, distance(node, newNeighbor)));
+        candidates.sort(NEAREST_FIRST);
+
+        List<Neighbor> kept = selectNeighbors(candidates, maxCount);
+        nodeLinks[0] = 0;
+        for (Neighbor neighbor : kept) {
+            appendLink(nodeLinks, neighbor.ordinal());
+        }
+    }
+
+    private static void appendLink(int[] nodeLinks, int neighbor) {
+        nodeLinks[++nodeLinks[0]] = neighbor;
+    }
+}
@@ -0,0 +1,94 @@
+package com.skanga.rag.vectorstore.search;
+
+import java.util.Objects;
+
+/**
+ * Truncation of Matryoshka embeddings to a re-normalized prefix, for a cheap first search pass.
+ *
+ * <p>Matryoshka-trained models (such as OpenAI's {@code text-embedding-3-*}, see the {@code dimensions}
+ * option of {@code OpenAIEmbeddingProvider}) concentrate the most important information in the leading
+ * dimensions, so the first {@code prefixDimension} entries of an embedding, scaled back to unit length, are
+ * a usable embedding on their own. Their cosine order approximates the order of the full vectors: a scan
+ * over 256-dimension prefixes of 1536-dimension embeddings reads a sixth of the memory, and re-scoring a
+ * shortlist of its best candidates with the full vectors recovers most of the exact ranking.</p>
+ *
+ * <p>The prefix carries no guarantee for embeddings that were not trained this way; for those, truncation
+ * discards information evenly and the shortlist needs far more oversampling. Check the recall on real
+ * queries (e.g. {@code MemoryVectorStore.measureRecall}).</p>
+ *
+ * <p>Instances are immutable and thread-safe.</p>
+ */
+public final class MatryoshkaPrefix {
+
+    private final int dimension;
+    private final int prefixDimension;
+
+    private MatryoshkaPrefix(int dimension, int prefixDimension) {
+        this.dimension = dimension;
+        this.prefixDimension = prefixDimension;
+    }
+
+    /**
+     * Creates a truncation of {@code dimension}-entry embeddings to their first {@code prefixDimension} entries.
+     * @param dimension       The dimension of the full embeddings. Must be positive.
+     * @param prefixDimension The dimension of the prefix. Must be positive and less than {@code dimension}.
+     * @return The truncation.
+     * @throws IllegalArgumentException if a dimension is out of range.
+     */
+    public static MatryoshkaPrefix of(int dimension, int prefixDimension) {
+        if (dimension <= 0) {
+            throw new IllegalArgumentException("Embedding dimension must be positive.");
+        }
+        if (prefixDimension <= 0 || prefixDimension >= dimension) {
+            throw new IllegalArgumentException("Prefix dimension must be between 1 and " + (dimension - 1) +
+                                               "; got " + prefixDimension + ".");
+        }
+        return new MatryoshkaPrefix(dimension, prefixDimension);
+    }
+
+    /** @return The dimension of the full embeddings. */
+    public int dimension() {
+        return dimension;
+    }
+
+    /** @return The dimension of the prefix. */
+    public int prefixDimension() {
+        return prefixDimension;
+    }
+
+    /**
+     * Returns the unit-length prefix of a vector.
+     * @param vector The full vector, of {@link #dimension()} entries.
+     * @return A new array of {@link #prefixDimension()} entries.
+     * @throws IllegalArgumentException if the dimension does not match.
+     */
+    public float[] truncate(float[] vector) {
+        float[] prefix = new float[prefixDimension];
+        truncate(vector, prefix, 0);
+        return prefix;
+    }
+
+    /**
+     * Writes the unit-length prefix of a vector into an array, for packing many prefixes into one block.
+     * A vector whose prefix is all zeros yields zeros, whose dot product with any vector is 0.
+     * @param vector      The full vector, of {@link #dimension()} entries.
+     * @param destination The array receiving the prefix.
+     * @param offset      The index in {@code destination} of the first entry.
+     * @throws IllegalArgumentException if the dimension does not match.
+     */
+    public void truncate(float[] vector, float[] destination, int offset) {
+        Objects.requireNonNull(vector, "Vector cannot be null.");
+        if (vector.length != dimension) {
+            throw new IllegalArgumentException("Vector dimension " + vector.length +
+                                               " does not match the embedding dimension " + dimension + ".");
+        }
+        double squaredNorm = 0.0;
+        for (int i = 0; i < prefixDimension; i++) {
+            squaredNorm += (double) vector[i] * vector[i];
+        }
+        double scale = (squaredNorm == 0.0) ? 0.0 : 1.0 / Math.sqrt(squaredNorm);
+        for (int i = 0; i < prefixDimension; i++) {
+            destination[offset + i] = (float) (vector[i] * scale);
+        }
+    }
+}
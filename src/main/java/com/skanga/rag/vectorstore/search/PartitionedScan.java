@@ -0,0 +1,247 @@
+package com.skanga.rag.vectorstore.search;
+
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Exact top-k scan over a range of ordinals, optionally split into partitions that are scored in
+ * parallel on a {@link ForkJoinPool}.
+ *
+ * <p>Each partition fills its own {@link TopKCollector}; partial results are merged pairwise as the
+ * fork/join tasks complete, so the only allocations per search are one small collector per
+ * partition. Below {@code parallelThreshold} ordinals the scan runs on the calling thread.</p>
+ *
+ * <p>The {@link DistanceFunction} is called concurrently from pool threads. It must only read
+ * state that is not modified during the scan (e.g. the caller holds a read lock).</p>
+ */
+public final class PartitionedScan {
+
+    /** Partitions are never smaller than this, so task overhead stays negligible next to scoring. */
+    static final int MIN_PARTITION_SIZE = 1024;
+    /** Partitions per pool thread, so that uneven threads can steal work. */
+    private static final int PARTITIONS_PER_THREAD = 4;
+
+    /**
+     * Computes the distance from the query to the vector at an ordinal.
+     */
+    @FunctionalInterface
+    public interface DistanceFunction {
+        /**
+         * @param ordinal The ordinal to score.
+         * @return The distance (lower is better), or {@code Double.NaN} to skip the ordinal.
+         */
+        double distance(int ordinal);
+    }
+
+    /**
+     * Computes the distances from a block of queries to the vector at an ordinal.
+     */
+    @FunctionalInterface
+    public interface BatchDistanceFunction {
+        /**
+         * @param ordinal   The ordinal to score.
+         * @param fromQuery The first query of the block, inclusive.
+         * @param toQuery   The last query of the block, exclusive.
+         * @param distances Receives the distance from query {@code q} at index {@code q - fromQuery}
+         *                  (lower is better), or {@code Double.NaN} to skip the ordinal for that query.
+         */
+        void distances(int ordinal, int fromQuery, int toQuery, double[] distances);
+    }
+
+    /** Documents scored against every query block before moving on, so that they stay in cache. */
+    static final int DOCUMENT_TILE_SIZE = 64;
+    /** Queries scored together against each document. */
+    static final int QUERY_BLOCK_SIZE = 32;
+
+    private PartitionedScan() {}
+
+    /**
+     * Scans ordinals {@code [0, size)} and returns the {@code k} nearest, sorted nearest first.
+     *
+     * @param size              The number of ordinals to scan.
+     * @param k                 The number of results to keep. Must be positive.
+     * @param distanceFunction  Scores an ordinal.
+     * @param parallelThreshold The minimum {@code size} at which the scan is split across the pool.
+     * @param pool              The pool to run partitions on.
+     * @return A sorted collector holding up to {@code k} entries.
+     */
+    public static TopKCollector scan(int size, int k, DistanceFunction distanceFunction,
+                                     int parallelThreshold, ForkJoinPool pool) {
+        return scan(null, size, k, distanceFunction, parallelThreshold, pool);
+    }
+
+    /**
+     * Scans an explicit set of ordinals, e.g. the documents passing a metadata filter, and returns the
+     * {@code k} nearest, sorted nearest first.
+     *
+     * @param ordinals          The ordinals to scan.
+     * @param k                 The number of results to keep. Must be positive.
+     * @param distanceFunction  Scores an ordinal.
+     * @param parallelThreshold The minimum number of ordinals at which the scan is split across the pool.
+     * @param pool              The pool to run partitions on.
+     * @return A sorted collector holding up to {@code k} entries.
+     */
+    public static TopKCollector scan(int[] ordinals, int k, DistanceFunction distanceFunction,
+                                     int parallelThreshold, ForkJoinPool pool) {
+        Objects.requireNonNull(ordinals, "Ordinals cannot be null.");
+        return scan(ordinals, ordinals.length, k, distanceFunction, parallelThreshold, pool);
+    }
+
+    /** Scans positions {@code [0, size)}, which are ordinals themselves if {@code ordinals} is null. */
+    private static TopKCollector scan(int[] ordinals, int size, int k, DistanceFunction distanceFunction,
+                                      int parallelThreshold, ForkJoinPool pool) {
+        Objects.requireNonNull(distanceFunction, "Distance function cannot be null.");
+        Objects.requireNonNull(pool, "ForkJoinPool cannot be null.");
+        if (size < parallelThreshold || size < 2 * MIN_PARTITION_SIZE || pool.getParallelism() <= 1) {
+            return scanRange(ordinals, 0, size, k, distanceFunction).sort();
+        }
+        int partitions = pool.getParallelism() * PARTITIONS_PER_THREAD;
+        int partitionSize = Math.max(MIN_PARTITION_SIZE, (size + partitions - 1) / partitions);
+        return pool.invoke(new ScanTask(ordinals, 0, size, partitionSize, k, distanceFunction)).sort();
+    }
+
+    /** Sequential scan of positions {@code [from, to)} into a fresh collector. */
+    private static TopKCollector scanRange(int[] ordinals, int from, int to, int k, DistanceFunction distanceFunction) {
+        TopKCollector collector = new TopKCollector(k);
+        for (int position = from; position < to; position++) {
+            int ordinal = (ordinals == null) ? position : ordinals[position];
+            double distance = distanceFunction.distance(ordinal);
+            // Cheap pre-check avoids the call for the common case of a candidate that cannot make the cut.
+            if (distance <= collector.threshold()) {
+                collector.offer(ordinal, distance);
+            }
+        }
+        return collector;
+    }
+
+    /**
+     * Scans ordinals {@code [0, size)} once for a whole batch of queries and returns the {@code k} nearest
+     * for each, sorted nearest first.
+     *
+     * <p>The scan is blocked like a matrix-matrix product: ordinals are visited in tiles of
+     * {@value #DOCUMENT_TILE_SIZE}, and each tile is scored against the queries in blocks of
+     * {@value #QUERY_BLOCK_SIZE}. A tile's vectors are therefore read from memory once per batch instead
+     * of once per query, and a query block stays in cache while a tile is scored against it.</p>
+     *
+     * @param size              The number of ordinals to scan.
+     * @param queryCount        The number of queries.
+     * @param k                 The number of results to keep per query. Must be positive.
+     * @param distanceFunction  Scores an ordinal against a block of queries.
+     * @param parallelThreshold The minimum {@code size} at which the scan is split across the pool.
+     * @param pool              The pool to run partitions on.
+     * @return One sorted collector per query, each holding up to {@code k} entries.
+     */
+    public static TopKCollector[] scanBatch(int size, int queryCount, int k, BatchDistanceFunction distanceFunction,
+                                            int parallelThreshold, ForkJoinPool pool) {
+        Objects.requireNonNull(distanceFunction, "Distance function cannot be null.");
+        Objects.requireNonNull(pool, "ForkJoinPool cannot be null.");
+        TopKCollector[] collectors;
+        if (size < parallelThreshold || size < 2 * MIN_PARTITION_SIZE || pool.getParallelism() <= 1) {
+            collectors = scanRangeBatch(0, size, queryCount, k, distanceFunction);
+        } else {
+            int partitions = pool.getParallelism() * PARTITIONS_PER_THREAD;
+            int partitionSize = Math.max(MIN_PARTITION_SIZE, (size + partitions - 1) / partitions);
+            collectors = pool.invoke(new BatchScanTask(0, size, partitionSize, queryCount, k, distanceFunction));
+        }
+        for (TopKCollector collector : collectors) {
+            collector.sort();
+        }
+        return collectors;
+    }
+
+    /** Sequential blocked scan of {@code [from, to)} into fresh collectors, one per query. */
+    private static TopKCollector[] scanRangeBatch(int from, int to, int queryCount, int k,
+                                                  BatchDistanceFunction distanceFunction) {
+        TopKCollector[] collectors = new TopKCollector[queryCount];
+        for (int q = 0; q < queryCount; q++) {
+            collectors[q] = new TopKCollector(k);
+        }
+        double[] distances = new double[Math.min(QUERY_BLOCK_SIZE, queryCount)];
+        for (int tileStart = from; tileStart < to; tileStart += DOCUMENT_TILE_SIZE) {
+            int tileEnd = Math.min(to, tileStart + DOCUMENT_TILE_SIZE);
+            for (int blockStart = 0; blockStart < queryCount; blockStart += QUERY_BLOCK_SIZE) {
+                int blockEnd = Math.min(queryCount, blockStart + QUERY_BLOCK_SIZE);
+                for (int ordinal = tileStart; ordinal < tileEnd; ordinal++) {
+                    distanceFunction.distances(ordinal, blockStart, blockEnd, distances);
+                    for (int q = blockStart; q < blockEnd; q++) {
+                        double distance = distances[q - blockStart];
+                        TopKCollector collector = collectors[q];
+                        if (distance <= collector.threshold()) {
+                            collector.offer(ordinal, distance);
+                        }
+                    }
+                }
+            }
+        }
+        return collectors;
+    }
+
+    /** Splits the range in halves until it fits in one partition. */
+    private static final class ScanTask extends RecursiveTask<TopKCollector> {
+        private final int[] ordinals;
+        private final int from;
+        private final int to;
+        private final int partitionSize;
+        private final int k;
+        private final DistanceFunction distanceFunction;
+
+        ScanTask(int[] ordinals, int from, int to, int partitionSize, int k, DistanceFunction distanceFunction) {
+            this.ordinals = ordinals;
+            this.from = from;
+            this.to = to;
+            this.partitionSize = partitionSize;
+            this.k = k;
+            this.distanceFunction = distanceFunction;
+        }
+
+        @Override
+        protected TopKCollector compute() {
+            if (to - from <= partitionSize) {
+                return scanRange(ordinals, from, to, k, distanceFunction);
+            }
+            int mid = (from + to) >>> 1;
+            ScanTask left = new ScanTask(ordinals, from, mid, partitionSize, k, distanceFunction);
+            left.fork();
+            TopKCollector right = new ScanTask(ordinals, mid, to, partitionSize, k, distanceFunction).compute();
+            TopKCollector merged = left.join();
+            merged.addAll(right);
+            return merged;
+        }
+    }
+
+    /** Splits the range in halves until it fits in one partition, merging the per-query collectors. */
+    private static final class BatchScanTask extends RecursiveTask<TopKCollector[]> {
+        private final int from;
+        private final int to;
+        private final int partitionSize;
+        private final int queryCount;
+        private final int k;
+        private final BatchDistanceFunction distanceFunction;
+
+        BatchScanTask(int from, int to, int partitionSize, int queryCount, int k, BatchDistanceFunction distanceFunction) {
+            this.from = from;
+            this.to = to;
+            this.partitionSize = partitionSize;
+            this.queryCount = queryCount;
+            this.k = k;
+            this.distanceFunction = distanceFunction;
+        }
+
+        @Override
+        protected TopKCollector[] compute() {
+            if (to - from <= partitionSize) {
+                return scanRangeBatch(from, to, queryCount, k, distanceFunction);
+            }
+            int mid = (from + to) >>> 1;
+            BatchScanTask left = new BatchScanTask(from, mid, partitionSize, queryCount, k, distanceFunction);
+            left.fork();
+            TopKCollector[] right = new BatchScanTask(mid, to, partitionSize, queryCount, k, distanceFunction).compute();
+            TopKCollector[] merged = left.join();
+            for (int q = 0; q < queryCount; q++) {
+                merged[q].addAll(right[q]);
+            }
+            return merged;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.skanga.rag.vectorstore.search;
+
+import com.skanga.rag.Document;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Reciprocal rank fusion (RRF) of several ranked result lists, e.g. a vector search and a BM25 search
+ * for the same query.
+ *
+ * <p>A document at 1-based rank {@code r} of a list contributes {@code 1 / (rankConstant + r)}, and the
+ * fused score is the sum over the lists it appears in. Only ranks are used, so lists whose scores are
+ * on unrelated scales (cosine similarity and BM25) combine without normalization, and a document ranked
+ * well by both retrievers beats one ranked first by only one of them. The customary rank constant is
+ * {@value #DEFAULT_RANK_CONSTANT}; smaller values favour the top ranks of each list more strongly.</p>
+ *
+ * <p>Documents are matched across lists by ID, or by identity if they have none. The input documents are
+ * never modified; the fused scores are set on copies, since the inputs are often a store's own instances.</p>
+ */
+public final class ReciprocalRankFusion {
+
+    /** Rank constant from the original RRF evaluation, which works well across retrievers. */
+    public static final int DEFAULT_RANK_CONSTANT = 60;
+
+    private ReciprocalRankFusion() {}
+
+    /**
+     * Fuses ranked lists with the {@link #DEFAULT_RANK_CONSTANT}.
+     * @see #fuse(List, int, int)
+     */
+    public static List<Document> fuse(List<List<Document>> rankings, int k) {
+        return fuse(rankings, DEFAULT_RANK_CONSTANT, k);
+    }
+
+    /**
+     * Fuses ranked lists into one.
+     *
+     * @param rankings     The lists, each sorted best first; {@code null} lists are skipped.
+     * @param rankConstant The constant added to each rank. Must be positive.
+     * @param k            The number of documents to return. Must be positive.
+     * @return Up to k documents, highest fused score first, each a copy of the document's instance in the
+     *         first list it appears in with its score set to the fused score. Ties keep the order of first
+     *         appearance.
+     * @throws IllegalArgumentException if rankConstant or k is not positive.
+     */
+    public static List<Document> fuse(List<List<Document>> rankings, int rankConstant, int k) {
+        Objects.requireNonNull(rankings, "Rankings cannot be null.");
+        if (rankConstant <= 0) {
+            throw new IllegalArgumentException("RRF rank constant must be positive.");
+        }
+        if (k <= 0) {
+            throw new IllegalArgumentException("Number of results to return (k) must be positive.");
+        }
+        Map<Object, Fused> fused = new LinkedHashMap<>();
+        Map<Document, Object> anonymous = new IdentityHashMap<>();
+        for (List<Document> ranking : rankings) {
+            if (ranking == null) {
+                continue;
+            }
+            for (int rank = 0; rank < ranking.size(); rank++) {
+                Document document = ranking.get(rank);
+                Object key = (document.getId() != null) ? document.getId() : anonymous.computeIfAbsent(document, d -> new Object());
+                Fused entry = fused.computeIfAbsent(key, x -> new Fused(document));
+                entry.score += 1.0 / (rankConstant + rank + 1);
+            }
+        }
+        List<Fused> ordered = new ArrayList<>(fused.values());
+        ordered.sort(Comparator.comparingDouble((Fused entry) -> entry.score).reversed()); // Stable: ties keep first appearance
+        List<Document> results = new ArrayList<>(Math.min(k, ordered.size()));
+        for (Fused entry : ordered.subList(0, Math.min(k, ordered.size()))) {
+            results.add(scoredCopy(entry.document, entry.score));
+        }
+        return results;
+    }
+
+    /** Copies a document with its score set to the fused score. */
+    private static Document scoredCopy(Document document, double score) {
+        Document copy = new Document(document.getContent());
+        if (document.getId() != null) {
+            copy.setId(document.getId());
+        }
+        copy.setEmbeddingVector(document.getEmbeddingVector());
+        copy.setSourceType(document.getSourceType());
+        copy.setSourceName(document.getSourceName());
+        copy.setMetadata(document.getMetadata());
+        copy.setScore((float) score);
+        return copy;
+    }
+
+    private static final class Fused {
+        private final Document document;
+        private double score;
+
+        Fused(Document document) {
+            this.document = document;
+        }
+    }
+}
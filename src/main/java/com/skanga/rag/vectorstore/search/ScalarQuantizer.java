@@ -0,0 +1,184 @@
+package com.skanga.rag.vectorstore.search;
+
+import java.util.Collection;
+import java.util.Objects;
+
+/**
+ * Int8 scalar quantization of float vectors with per-dimension calibration.
+ *
+ * <p>{@link #calibrate(Collection)} records the minimum and maximum of every dimension over a sample of
+ * vectors. Each dimension's range is then split into 256 levels, and a vector is stored as one signed byte
+ * per dimension: value {@code x} in dimension {@code i} becomes
+ * {@code round((x - min[i]) / scale[i]) - 128} with {@code scale[i] = (max[i] - min[i]) / 255}. Values
+ * outside the calibrated range are clamped to its ends, so the sample should be representative; see
+ * {@code MemoryVectorStore.recalibrateQuantization()} for refitting to a store's current contents.</p>
+ *
+ * <p>Queries are not quantized. For a query {@code q}, the dot product with the reconstructed vector is
+ * {@code sum(q[i] * (min[i] + scale[i] * (code[i] + 128)))}, which {@link #prepare(float[])} splits into a
+ * constant and the weights {@code q[i] * scale[i]}. Scoring a record is then one
+ * {@link VectorKernels#dotInt8(float[], byte[])} over its codes, reading a quarter of the bytes of a float
+ * record. The result approximates the exact dot product, so the quantized scan is used to shortlist
+ * candidates that are re-scored with the full-precision vectors.</p>
+ *
+ * <p>Instances are immutable and thread-safe.</p>
+ */
+public final class ScalarQuantizer {
+
+    /** Number of quantization levels per dimension. */
+    private static final int LEVELS = 256;
+    /** Code offset: codes are stored as {@code level - 128} to fit a signed byte. */
+    private static final int CODE_OFFSET = 128;
+
+    private final float[] minimums;
+    private final float[] scales;
+
+    private ScalarQuantizer(float[] minimums, float[] scales) {
+        this.minimums = minimums;
+        this.scales = scales;
+    }
+
+    /**
+     * Fits a quantizer to a sample of vectors by recording the minimum and maximum of every dimension.
+     *
+     * @param vectors The sample, e.g. all vectors of a store or a random subset of them.
+     * @return The quantizer.
+     * @throws IllegalArgumentException if the sample is empty, a vector is empty, or the vectors differ in dimension.
+     */
+    public static ScalarQuantizer calibrate(Collection<float[]> vectors) {
+        Objects.requireNonNull(vectors, "Calibration vectors cannot be null.");
+        if (vectors.isEmpty()) {
+            throw new IllegalArgumentException("Scalar quantization needs at least one calibration vector.");
+        }
+        float[] minimums = null;
+        float[] maximums = null;
+        for (float[] vector : vectors) {
+            Objects.requireNonNull(vector, "Calibration vector cannot be null.");
+            if (minimums == null) {
+                if (vector.length == 0) {
+                    throw new IllegalArgumentException("Calibration vectors cannot be empty.");
+                }
+                minimums = vector.clone();
+                maximums = vector.clone();
+                continue;
+            }
+            if (vector.length != minimums.length) {
+                throw new IllegalArgumentException("Calibration vectors must share one dimension; found " +
+                                                   vector.length + " and " + minimums.length + ".");
+            }
+            for (int i = 0; i < vector.length; i++) {
+                minimums[i] = Math.min(minimums[i], vector[i]);
+                maximums[i] = Math.max(maximums[i], vector[i]);
+            }
+        }
+        float[] scales = new float[minimums.length];
+        for (int i = 0; i < scales.length; i++) {
+            scales[i] = (maximums[i] - minimums[i]) / (LEVELS - 1);
+        }
+        return new ScalarQuantizer(minimums, scales);
+    }
+
+    /** @return The dimension of the vectors this quantizer encodes. */
+    public int dimension() {
+        return minimums.length;
+    }
+
+    /**
+     * Encodes a vector as one signed byte per dimension, clamping values outside the calibrated range.
+     * @param vector The vector, of {@link #dimension()} entries.
+     * @return The codes.
+     * @throws IllegalArgumentException if the dimension does not match.
+     */
+    public byte[] quantize(float[] vector) {
+        checkDimension(vector);
+        byte[] codes = new byte[vector.length];
+        for (int i = 0; i < vector.length; i++) {
+            int level = (scales[i] == 0f) ? 0 : Math.round((vector[i] - minimums[i]) / scales[i]);
+            codes[i] = (byte) (Math.max(0, Math.min(LEVELS - 1, level)) - CODE_OFFSET);
+        }
+        return codes;
+    }
+
+    /**
+     * Reconstructs the approximate vector from its codes.
+     * @param codes Codes produced by {@link #quantize(float[])}.
+     * @return The reconstructed vector.
+     */
+    public float[] dequantize(byte[] codes) {
+        float[] vector = new float[codes.length];
+        for (int i = 0; i < codes.length; i++) {
+            vector[i] = minimums[i] + scales[i] * (codes[i] + CODE_OFFSET);
+        }
+        return vector;
+    }
+
+    /**
+     * Prepares a query for scoring against quantized vectors.
+     * @param query The query, of {@link #dimension()} entries.
+     * @return The query's weights and constant term.
+     * @throws IllegalArgumentException if the dimension does not match.
+     */
+    public PreparedQuery prepare(float[] query) {
+        checkDimension(query);
+        float[] weights = new float[query.length];
+        double constant = 0.0;
+        double squaredNorm = 0.0;
+        for (int i = 0; i < query.length; i++) {
+            weights[i] = query[i] * scales[i];
+            constant += (double) query[i] * (minimums[i] + scales[i] * CODE_OFFSET);
+            squaredNorm += (double) query[i] * query[i];
+        }
+        return new PreparedQuery(weights, constant, squaredNorm);
+    }
+
+    /**
+     * Approximates the dot product of a prepared query with a quantized vector.
+     * @param query   The prepared query.
+     * @param codes   The quantized vector.
+     * @param kernels The kernels to use.
+     * @return The dot product of the query with the reconstructed vector.
+     */
+    public double dot(PreparedQuery query, byte[] codes, VectorKernels kernels) {
+        return query.constant() + kernels.dotInt8(query.weights(), codes);
+    }
+
+    /**
+     * Approximates the cosine distance of a prepared query to a quantized vector.
+     * @param query              The prepared query.
+     * @param codes              The quantized vector.
+     * @param squaredVectorNorm  The squared L2 norm of the vector, e.g. from {@link #squaredNorm(byte[])}.
+     * @param kernels            The kernels to use.
+     * @return The cosine distance in [0, 2], with the usual 1.0 for zero vectors.
+     */
+    public double cosineDistance(PreparedQuery query, byte[] codes, double squaredVectorNorm, VectorKernels kernels) {
+        return VectorKernels.cosineDistanceFromSums(dot(query, codes, kernels), query.squaredNorm(), squaredVectorNorm);
+    }
+
+    /**
+     * @param codes Codes produced by {@link #quantize(float[])}.
+     * @return The squared L2 norm of the reconstructed vector.
+     */
+    public float squaredNorm(byte[] codes) {
+        double sum = 0.0;
+        for (int i = 0; i < codes.length; i++) {
+            double value = minimums[i] + scales[i] * (codes[i] + CODE_OFFSET);
+            sum += value * value;
+        }
+        return (float) sum;
+    }
+
+    private void checkDimension(float[] vector) {
+        Objects.requireNonNull(vector, "Vector cannot be null.");
+        if (vector.length != minimums.length) {
+            throw new IllegalArgumentException("Vector dimension " + vector.length +
+                                               " does not match the quantizer dimension " + minimums.length + ".");
+        }
+    }
+
+    /**
+     * A query prepared for {@link #dot(PreparedQuery, byte[], VectorKernels)}.
+     * @param weights     The query scaled per dimension, {@code q[i] * scale[i]}.
+     * @param constant    The part of the dot product that does not depend on the codes.
+     * @param squaredNorm The squared L2 norm of the query.
+     */
+    public record PreparedQuery(float[] weights, double constant, double squaredNorm) {}
+}
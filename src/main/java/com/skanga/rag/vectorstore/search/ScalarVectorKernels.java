@@ -0,0 +1,114 @@
+package com.skanga.rag.vectorstore.search;
+
+/**
+ * Portable {@link VectorKernels} implemented with plain loops.
+ * The loops are unrolled over four independent accumulators so that the additions do not form a
+ * single dependency chain; the JIT does not vectorize floating-point reductions by itself.
+ */
+final class ScalarVectorKernels implements VectorKernels {
+
+    static final ScalarVectorKernels INSTANCE = new ScalarVectorKernels();
+
+    private ScalarVectorKernels() {}
+
+    @Override
+    public String name() {
+        return "scalar";
+    }
+
+    @Override
+    public float dot(float[] a, float[] b) {
+        float s0 = 0f, s1 = 0f, s2 = 0f, s3 = 0f;
+        int i = 0;
+        int bound = a.length & ~3;
+        for (; i < bound; i += 4) {
+            s0 += a[i] * b[i];
+            s1 += a[i + 1] * b[i + 1];
+            s2 += a[i + 2] * b[i + 2];
+            s3 += a[i + 3] * b[i + 3];
+        }
+        for (; i < a.length; i++) {
+            s0 += a[i] * b[i];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    @Override
+    public float dotAt(float[] a, float[] b, int offset) {
+        float s0 = 0f, s1 = 0f, s2 = 0f, s3 = 0f;
+        int i = 0;
+        int bound = a.length & ~3;
+        for (; i < bound; i += 4) {
+            s0 += a[i] * b[offset + i];
+            s1 += a[i + 1] * b[offset + i + 1];
+            s2 += a[i + 2] * b[offset + i + 2];
+            s3 += a[i + 3] * b[offset + i + 3];
+        }
+        for (; i < a.length; i++) {
+            s0 += a[i] * b[offset + i];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    @Override
+    public float dotInt8(float[] a, byte[] codes) {
+        float s0 = 0f, s1 = 0f, s2 = 0f, s3 = 0f;
+        int i = 0;
+        int bound = a.length & ~3;
+        for (; i < bound; i += 4) {
+            s0 += a[i] * codes[i];
+            s1 += a[i + 1] * codes[i + 1];
+            s2 += a[i + 2] * codes[i + 2];
+            s3 += a[i + 3] * codes[i + 3];
+        }
+        for (; i < a.length; i++) {
+            s0 += a[i] * codes[i];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    @Override
+    public float squaredL2(float[] a, float[] b) {
+        float s0 = 0f, s1 = 0f, s2 = 0f, s3 = 0f;
+        int i = 0;
+        int bound = a.length & ~3;
+        for (; i < bound; i += 4) {
+            float d0 = a[i] - b[i];
+            float d1 = a[i + 1] - b[i + 1];
+            float d2 = a[i + 2] - b[i + 2];
+            float d3 = a[i + 3] - b[i + 3];
+            s0 += d0 * d0;
+            s1 += d1 * d1;
+            s2 += d2 * d2;
+            s3 += d3 * d3;
+        }
+        for (; i < a.length; i++) {
+            float d = a[i] - b[i];
+            s0 += d * d;
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    @Override
+    public double cosineDistance(float[] a, float[] b) {
+        float dot0 = 0f, dot1 = 0f, normA0 = 0f, normA1 = 0f, normB0 = 0f, normB1 = 0f;
+        int i = 0;
+        int bound = a.length & ~1;
+        for (; i < bound; i += 2) {
+            float a0 = a[i], a1 = a[i + 1];
+            float b0 = b[i], b1 = b[i + 1];
+            dot0 += a0 * b0;
+            dot1 += a1 * b1;
+            normA0 += a0 * a0;
+            normA1 += a1 * a1;
+            normB0 += b0 * b0;
+            normB1 += b1 * b1;
+        }
+        for (; i < a.length; i++) {
+            dot0 += a[i] * b[i];
+            normA0 += a[i] * a[i];
+            normB0 += b[i] * b[i];
+        }
+        return VectorKernels.cosineDistanceFromSums(dot0 + dot1, normA0 + normA1, normB0 + normB1);
+    }
+}
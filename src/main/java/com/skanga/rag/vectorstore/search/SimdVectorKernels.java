@@ -0,0 +1,184 @@
+package com.skanga.rag.vectorstore.search;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * {@link VectorKernels} built on the incubating Vector API ({@code jdk.incubator.vector}).
+ * Each loop processes {@code SPECIES.length()} lanes per iteration using fused multiply-add into
+ * lane-wise accumulators, reduces the accumulators once at the end and finishes the tail scalar.
+ *
+ * <p>This class must only be referenced from {@link VectorKernelSelector}, which checks that the
+ * {@code jdk.incubator.vector} module is resolved before loading it and falls back to the scalar
+ * kernels otherwise.</p>
+ */
+final class SimdVectorKernels implements VectorKernels {
+
+    private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+    /**
+     * Byte species with as many lanes as {@link #SPECIES}, used to widen int8 codes into float lanes; {@code null}
+     * when that would be narrower than the smallest byte vector (64 bits), in which case {@link #dotInt8} runs scalar.
+     */
+    private static final VectorSpecies<Byte> BYTE_SPECIES = (SPECIES.length() * Byte.SIZE >= 64)
+            ? VectorSpecies.of(byte.class, VectorShape.forBitSize(SPECIES.length() * Byte.SIZE))
+            : null;
+
+    SimdVectorKernels() {}
+
+    /** @return The number of float lanes in the preferred species on this platform. */
+    static int laneCount() {
+        return SPECIES.length();
+    }
+
+    @Override
+    public String name() {
+        return "simd-" + SPECIES.vectorBitSize();
+    }
+
+    @Override
+    public float dot(float[] a, float[] b) {
+        FloatVector acc = FloatVector.zero(SPECIES);
+        int i = 0;
+        int bound = SPECIES.loopBound(a.length);
+        for (; i < bound; i += SPECIES.length()) {
+            FloatVector va = FloatVector.fromArray(SPECIES, a, i);
+            FloatVector vb = FloatVector.fromArray(SPECIES, b, i);
+            acc = va.fma(vb, acc);
+        }
+        float sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    @Override
+    public float dotAt(float[] a, float[] b, int offset) {
+        FloatVector acc = FloatVector.zero(SPECIES);
+        int i = 0;
+        int bound = SPECIES.loopBound(a.length);
+        for (; i < bound; i += SPECIES.length()) {
+            FloatVector va = FloatVector.fromArray(SPECIES, a, i);
+            FloatVector vb = FloatVector.fromArray(SPECIES, b, offset + i);
+            acc = va.fma(vb, acc);
+        }
+        float sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < a.length; i++) {
+            sum += a[i] * b[offset + i];
+        }
+        return sum;
+    }
+
+    /**
+     * Scores four queries per pass over {@code vector}, so each lane of the vector is loaded once for four
+     * fused multiply-adds. Each query keeps its own accumulator in the same order as {@link #dot(float[], float[])},
+     * so the results are identical to scoring the queries one by one.
+     */
+    @Override
+    public void dotBatch(float[][] queries, int fromQuery, int toQuery, float[] vector, double[] results) {
+        int bound = SPECIES.loopBound(vector.length);
+        int q = fromQuery;
+        for (; q + 4 <= toQuery; q += 4) {
+            float[] q0 = queries[q], q1 = queries[q + 1], q2 = queries[q + 2], q3 = queries[q + 3];
+            FloatVector acc0 = FloatVector.zero(SPECIES);
+            FloatVector acc1 = FloatVector.zero(SPECIES);
+            FloatVector acc2 = FloatVector.zero(SPECIES);
+            FloatVector acc3 = FloatVector.zero(SPECIES);
+            int i = 0;
+            for (; i < bound; i += SPECIES.length()) {
+                FloatVector v = FloatVector.fromArray(SPECIES, vector, i);
+                acc0 = FloatVector.fromArray(SPECIES, q0, i).fma(v, acc0);
+                acc1 = FloatVector.fromArray(SPECIES, q1, i).fma(v, acc1);
+                acc2 = FloatVector.fromArray(SPECIES, q2, i).fma(v, acc2);
+                acc3 = FloatVector.fromArray(SPECIES, q3, i).fma(v, acc3);
+            }
+            float sum0 = acc0.reduceLanes(VectorOperators.ADD);
+            float sum1 = acc1.reduceLanes(VectorOperators.ADD);
+            float sum2 = acc2.reduceLanes(VectorOperators.ADD);
+            float sum3 = acc3.reduceLanes(VectorOperators.ADD);
+            for (; i < vector.length; i++) {
+                sum0 += q0[i] * vector[i];
+                sum1 += q1[i] * vector[i];
+                sum2 += q2[i] * vector[i];
+                sum3 += q3[i] * vector[i];
+            }
+            int offset = q - fromQuery;
+            results[offset] = sum0;
+            results[offset + 1] = sum1;
+            results[offset + 2] = sum2;
+            results[offset + 3] = sum3;
+        }
+        for (; q < toQuery; q++) {
+            results[q - fromQuery] = dot(queries[q], vector);
+        }
+    }
+
+    /**
+     * Loads {@code SPECIES.length()} codes per iteration and widens them to float lanes ({@code B2F}), so
+     * a quantized record is read at a quarter of the memory traffic of a float record.
+     */
+    @Override
+    public float dotInt8(float[] a, byte[] codes) {
+        if (BYTE_SPECIES == null) {
+            return ScalarVectorKernels.INSTANCE.dotInt8(a, codes);
+        }
+        FloatVector acc = FloatVector.zero(SPECIES);
+        int i = 0;
+        int bound = SPECIES.loopBound(a.length);
+        for (; i < bound; i += SPECIES.length()) {
+            FloatVector vb = (FloatVector) ByteVector.fromArray(BYTE_SPECIES, codes, i)
+                    .convertShape(VectorOperators.B2F, SPECIES, 0);
+            acc = FloatVector.fromArray(SPECIES, a, i).fma(vb, acc);
+        }
+        float sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < a.length; i++) {
+            sum += a[i] * codes[i];
+        }
+        return sum;
+    }
+
+    @Override
+    public float squaredL2(float[] a, float[] b) {
+        FloatVector acc = FloatVector.zero(SPECIES);
+        int i = 0;
+        int bound = SPECIES.loopBound(a.length);
+        for (; i < bound; i += SPECIES.length()) {
+            FloatVector diff = FloatVector.fromArray(SPECIES, a, i).sub(FloatVector.fromArray(SPECIES, b, i));
+            acc = diff.fma(diff, acc);
+        }
+        float sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < a.length; i++) {
+            float d = a[i] - b[i];
+            sum += d * d;
+        }
+        return sum;
+    }
+
+    @Override
+    public double cosineDistance(float[] a, float[] b) {
+        FloatVector dotAcc = FloatVector.zero(SPECIES);
+        FloatVector normAAcc = FloatVector.zero(SPECIES);
+        FloatVector normBAcc = FloatVector.zero(SPECIES);
+        int i = 0;
+        int bound = SPECIES.loopBound(a.length);
+        for (; i < bound; i += SPECIES.length()) {
+            FloatVector va = FloatVector.fromArray(SPECIES, a, i);
+            FloatVector vb = FloatVector.fromArray(SPECIES, b, i);
+            dotAcc = va.fma(vb, dotAcc);
+            normAAcc = va.fma(va, normAAcc);
+            normBAcc = vb.fma(vb, normBAcc);
+        }
+        float dot = dotAcc.reduceLanes(VectorOperators.ADD);
+        float normA = normAAcc.reduceLanes(VectorOperators.ADD);
+        float normB = normBAcc.reduceLanes(VectorOperators.ADD);
+        for (; i < a.length; i++) {
+            dot += a[i] * b[i];
+            normA += a[i] * a[i];
+            normB += b[i] * b[i];
+        }
+        return VectorKernels.cosineDistanceFromSums(dot, normA, normB);
+    }
+}
@@ -87,4 +87,68 @@ public class SimilaritySearchUtils {
 
         return 1.0 - similarity;
     }
+
+    /**
+     * Calculates the cosine distance between two primitive vectors.
+     * This is the allocation-free counterpart of {@link #cosineDistance(List, List)} and is what
+     * the local vector stores use on their scoring paths. Semantics are identical: the result
+     * ranges from 0.0 (same direction) to 2.0 (opposite direction), and 1.0 is returned if either
+     * vector has zero magnitude. The arithmetic is delegated to {@link VectorKernels#defaultKernels()},
+     * so it is SIMD-accelerated when the Vector API is available.
+     *
+     * @param vector1 The first vector.
+     * @param vector2 The second vector.
+     * @return The cosine distance as a {@code double}.
+     * @throws VectorStoreException if vectors are empty or have different lengths.
+     */
+    public static double cosineDistance(float[] vector1, float[] vector2) throws VectorStoreException {
+        Objects.requireNonNull(vector1, "Vector1 cannot be null for cosine distance calculation.");
+        Objects.requireNonNull(vector2, "Vector2 cannot be null for cosine distance calculation.");
+
+        if (vector1.length != vector2.length) {
+            throw new VectorStoreException("Vectors must have the same dimension for cosine distance. " +
+                                           "Vector1 dim: " + vector1.length + ", Vector2 dim: " + vector2.length);
+        }
+        if (vector1.length == 0) {
+             throw new VectorStoreException("Vectors cannot be empty for cosine distance calculation.");
+        }
+
+        return VectorKernels.defaultKernels().cosineDistance(vector1, vector2);
+    }
+
+    /**
+     * Calculates the L2 norm (magnitude) of a vector, accumulating in double precision.
+     *
+     * @param vector The vector.
+     * @return The L2 norm; 0.0 for an all-zero vector.
+     */
+    public static double l2Norm(float[] vector) {
+        Objects.requireNonNull(vector, "Vector cannot be null for norm calculation.");
+        double sumOfSquares = 0.0;
+        for (float value : vector) {
+            sumOfSquares += (double) value * value;
+        }
+        return Math.sqrt(sumOfSquares);
+    }
+
+    /**
+     * Returns a unit-length copy of the vector, so that cosine similarity between two normalized
+     * vectors is simply their dot product. The input is not modified.
+     * A zero vector normalizes to an all-zero copy, whose dot product with any vector is 0;
+     * this keeps the cosine distance of 1.0 that {@link #cosineDistance(float[], float[])} returns for zero vectors.
+     *
+     * @param vector The vector to normalize.
+     * @return A new array holding {@code vector / ||vector||}, or zeros if the vector has zero magnitude.
+     */
+    public static float[] normalize(float[] vector) {
+        double norm = l2Norm(vector);
+        float[] unit = new float[vector.length];
+        if (norm == 0.0) {
+            return unit;
+        }
+        for (int i = 0; i < vector.length; i++) {
+            unit[i] = (float) (vector[i] / norm);
+        }
+        return unit;
+    }
 }
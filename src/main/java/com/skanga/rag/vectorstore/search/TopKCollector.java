@@ -0,0 +1,180 @@
+package com.skanga.rag.vectorstore.search;
+
+/**
+ * A fixed-capacity collector of the {@code k} nearest ordinals seen so far.
+ *
+ * <p>Internally this is a binary max-heap over two parallel primitive arrays (ordinals and
+ * distances), so offering a candidate allocates nothing and costs {@code O(log k)} only when the
+ * candidate beats the current worst entry. Ties on distance are broken by ordinal (lower wins),
+ * which gives the same order as a stable sort of the candidates in ordinal order.</p>
+ *
+ * <p>Typical use: offer every candidate, optionally {@link #addAll(TopKCollector) merge} partial
+ * collectors from other partitions, then call {@link #sort()} and read the results with
+ * {@link #ordinal(int)} and {@link #distance(int)}.</p>
+ *
+ * <p>This class is not thread-safe; use one collector per thread and merge them afterwards.</p>
+ */
+public final class TopKCollector {
+
+    private final int k;
+    private final int[] ordinals;
+    private final double[] distances;
+    private int size;
+    private boolean sorted;
+
+    /**
+     * Creates a collector keeping at most {@code k} entries.
+     * @param k The number of nearest entries to keep. Must be positive.
+     * @throws IllegalArgumentException if k is not positive.
+     */
+    public TopKCollector(int k) {
+        if (k <= 0) {
+            throw new IllegalArgumentException("Number of results to return (k) must be positive.");
+        }
+        this.k = k;
+        this.ordinals = new int[k];
+        this.distances = new double[k];
+    }
+
+    /** @return The capacity of this collector. */
+    public int k() { return k; }
+
+    /** @return The number of entries currently held (at most {@link #k()}). */
+    public int size() { return size; }
+
+    /**
+     * @return The distance a new candidate has to beat to be accepted: the worst distance held
+     *         when the collector is full, otherwise positive infinity.
+     */
+    public double threshold() {
+        return size < k ? Double.POSITIVE_INFINITY : distances[0];
+    }
+
+    /**
+     * Offers a candidate. NaN distances are ignored.
+     * @param ordinal  The candidate's ordinal.
+     * @param distance The candidate's distance to the query (lower is better).
+     * @return {@code true} if the candidate is now among the nearest {@code k}.
+     * @throws IllegalStateException if {@link #sort()} has already been called.
+     */
+    public boolean offer(int ordinal, double distance) {
+        if (sorted) {
+            throw new IllegalStateException("Cannot offer to a TopKCollector after it has been sorted.");
+        }
+        if (Double.isNaN(distance)) {
+            return false;
+        }
+        if (size < k) {
+            ordinals[size] = ordinal;
+            distances[size] = distance;
+            siftUp(size++);
+            return true;
+        }
+        if (!isWorse(ordinals[0], distances[0], ordinal, distance)) {
+            return false;
+        }
+        ordinals[0] = ordinal;
+        distances[0] = distance;
+        siftDown(0, size);
+        return true;
+    }
+
+    /**
+     * Offers every entry held by another (unsorted or sorted) collector.
+     * @param other The collector to merge into this one.
+     */
+    public void addAll(TopKCollector other) {
+        for (int i = 0; i < other.size; i++) {
+            offer(other.ordinals[i], other.distances[i]);
+        }
+    }
+
+    /**
+     * Sorts the entries nearest first, in place. After this call the collector only supports reads.
+     * @return This collector.
+     */
+    public TopKCollector sort() {
+        if (!sorted) {
+            // Heap sort: repeatedly move the worst remaining entry to the end.
+            for (int end = size - 1; end > 0; end--) {
+                swap(0, end);
+                siftDown(0, end);
+            }
+            sorted = true;
+        }
+        return this;
+    }
+
+    /**
+     * @param index The result position, 0 being the nearest.
+     * @return The ordinal at the given position.
+     * @throws IllegalStateException if {@link #sort()} has not been called.
+     */
+    public int ordinal(int index) {
+        checkReadable(index);
+        return ordinals[index];
+    }
+
+    /**
+     * @param index The result position, 0 being the nearest.
+     * @return The distance at the given position.
+     * @throws IllegalStateException if {@link #sort()} has not been called.
+     */
+    public double distance(int index) {
+        checkReadable(index);
+        return distances[index];
+    }
+
+    private void checkReadable(int index) {
+        if (!sorted) {
+            throw new IllegalStateException("TopKCollector must be sorted before reading results.");
+        }
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+        }
+    }
+
+    /** {@code true} if entry (o1, d1) ranks after entry (o2, d2). */
+    private static boolean isWorse(int o1, double d1, int o2, double d2) {
+        return d1 > d2 || (d1 == d2 && o1 > o2);
+    }
+
+    private void siftUp(int index) {
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (!isWorse(ordinals[index], distances[index], ordinals[parent], distances[parent])) {
+                return;
+            }
+            swap(index, parent);
+            index = parent;
+        }
+    }
+
+    private void siftDown(int index, int limit) {
+        while (true) {
+            int left = 2 * index + 1;
+            if (left >= limit) {
+                return;
+            }
+            int worst = left;
+            int right = left + 1;
+            if (right < limit && isWorse(ordinals[right], distances[right], ordinals[left], distances[left])) {
+                worst = right;
+            }
+            if (!isWorse(ordinals[worst], distances[worst], ordinals[index], distances[index])) {
+                return;
+            }
+            swap(index, worst);
+            index = worst;
+        }
+    }
+
+    private void swap(int i, int j) {
+        int ordinal = ordinals[i];
+        ordinals[i] = ordinals[j];
+        ordinals[j] = ordinal;
+        double distance = distances[i];
+        distances[i] = distances[j];
+        distances[j] = distance;
+    }
+}
@@ -0,0 +1,57 @@
+package com.skanga.rag.vectorstore.search;
+
+import java.util.Locale;
+
+/**
+ * Resolves the {@link VectorKernels} implementations once per JVM.
+ * Kept separate from the interface so that the Vector API is only probed on first use.
+ */
+final class VectorKernelSelector {
+
+    private static final String VECTOR_MODULE = "jdk.incubator.vector";
+    /** Below four float lanes the SIMD loops are not faster than the unrolled scalar ones. */
+    private static final int MIN_LANES = 4;
+
+    /** The SIMD kernels, or {@code null} if the Vector API cannot be used. */
+    static final VectorKernels SIMD = loadSimd();
+    /** The kernels selected by {@link VectorKernels#KERNELS_PROPERTY}. */
+    static final VectorKernels DEFAULT = selectDefault();
+
+    private VectorKernelSelector() {}
+
+    private static VectorKernels loadSimd() {
+        if (ModuleLayer.boot().findModule(VECTOR_MODULE).isEmpty()) {
+            return null;
+        }
+        try {
+            if (SimdVectorKernels.laneCount() < MIN_LANES) {
+                return null;
+            }
+            return new SimdVectorKernels();
+        } catch (LinkageError | RuntimeException e) {
+            System.err.println("Warning: SIMD vector kernels could not be loaded, using scalar kernels: " + e);
+            return null;
+        }
+    }
+
+    private static VectorKernels selectDefault() {
+        String mode = System.getProperty(VectorKernels.KERNELS_PROPERTY, "auto").trim().toLowerCase(Locale.ROOT);
+        switch (mode) {
+            case "scalar":
+                return ScalarVectorKernels.INSTANCE;
+            case "simd":
+                if (SIMD == null) {
+                    System.err.println("Warning: " + VectorKernels.KERNELS_PROPERTY + "=simd requested but the " +
+                            VECTOR_MODULE + " module is not available; using scalar kernels.");
+                    return ScalarVectorKernels.INSTANCE;
+                }
+                return SIMD;
+            case "auto":
+                return SIMD != null ? SIMD : ScalarVectorKernels.INSTANCE;
+            default:
+                System.err.println("Warning: Unknown value '" + mode + "' for " + VectorKernels.KERNELS_PROPERTY +
+                        "; expected auto, simd or scalar. Using auto.");
+                return SIMD != null ? SIMD : ScalarVectorKernels.INSTANCE;
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.skanga.rag.vectorstore.search;
+
+/**
+ * A family of similarity kernels (dot product, cosine distance, squared Euclidean distance)
+ * over primitive {@code float[]} vectors, used on the scoring paths of the local vector stores.
+ *
+ * <p>Two implementations are provided:
+ * <ul>
+ *   <li>{@link #scalar()} - plain Java loops; always available.</li>
+ *   <li>{@link #simd()} - data-parallel loops built on the {@code jdk.incubator.vector} API.
+ *       Only available when the JVM is started with {@code --add-modules jdk.incubator.vector}
+ *       and the platform offers vectors of at least 128 bits.</li>
+ * </ul>
+ * </p>
+ *
+ * <p>{@link #defaultKernels()} picks the implementation once per JVM from the
+ * {@value #KERNELS_PROPERTY} system property: {@code auto} (the default) uses SIMD when available
+ * and falls back to scalar otherwise, {@code simd} requires SIMD (falling back with a warning if
+ * it cannot be loaded), and {@code scalar} always uses the scalar loops. Stores also accept an
+ * explicit instance (e.g. {@code MemoryVectorStore.withVectorKernels}) for per-store selection.</p>
+ *
+ * <p>Kernels do not validate their arguments: both vectors must be non-null and of equal length.
+ * Use {@link SimilaritySearchUtils#cosineDistance(float[], float[])} where validation is needed.
+ * Accumulation is done in single precision, so results may differ from the double-precision
+ * {@code List<Double>} utilities in the last few decimal places.</p>
+ */
+public interface VectorKernels {
+
+    /** System property used by {@link #defaultKernels()}: {@code auto}, {@code simd} or {@code scalar}. */
+    String KERNELS_PROPERTY = "agentforge.vector.kernels";
+
+    /**
+     * @return A short name for this implementation, e.g. {@code "scalar"} or {@code "simd-256"}.
+     */
+    String name();
+
+    /**
+     * Computes the dot product of two vectors of equal length.
+     * @param a The first vector.
+     * @param b The second vector.
+     * @return The dot product.
+     */
+    float dot(float[] a, float[] b);
+
+    /**
+     * Computes the dot product of a vector with {@code a.length} consecutive entries of an array, for
+     * vectors packed one after another into a single array (as the prefixes of
+     * {@link MatryoshkaPrefix}).
+     * @param a      The vector.
+     * @param b      The packed array.
+     * @param offset The index in {@code b} of the first entry; {@code b} must hold {@code a.length} entries from there.
+     * @return The sum of {@code a[i] * b[offset + i]}.
+     */
+    float dotAt(float[] a, float[] b, int offset);
+
+    /**
+     * Computes the squared Euclidean (L2) distance between two vectors of equal length.
+     * @param a The first vector.
+     * @param b The second vector.
+     * @return The sum of squared differences.
+     */
+    float squaredL2(float[] a, float[] b);
+
+    /**
+     * Computes the cosine distance ({@code 1 - cosine similarity}) between two vectors of equal length
+     * in a single pass. Semantics match {@link SimilaritySearchUtils#cosineDistance(float[], float[])}:
+     * the result is in [0, 2] and is 1.0 if either vector has zero magnitude.
+     * @param a The first vector.
+     * @param b The second vector.
+     * @return The cosine distance.
+     */
+    double cosineDistance(float[] a, float[] b);
+
+    /**
+     * Computes the dot product of a float vector with a vector of signed 8-bit integers, the inner loop
+     * of scanning {@link ScalarQuantizer int8-quantized} vectors.
+     * @param a     The float vector, e.g. a query prepared by {@link ScalarQuantizer#prepare(float[])}.
+     * @param codes The integer vector, of the same length.
+     * @return The sum of {@code a[i] * codes[i]}.
+     */
+    float dotInt8(float[] a, byte[] codes);
+
+    /**
+     * Computes the dot products of one vector with a block of query vectors, the inner step of a batched
+     * scan: {@code results[q - fromQuery] = dot(queries[q], vector)} for {@code q} in {@code [fromQuery, toQuery)}.
+     * Implementations may share each load of {@code vector} across several queries.
+     * @param queries   The query vectors, each as long as {@code vector}.
+     * @param fromQuery The first query, inclusive.
+     * @param toQuery   The last query, exclusive.
+     * @param vector    The vector to score against every query in the block.
+     * @param results   Receives the dot products; must hold at least {@code toQuery - fromQuery} entries.
+     */
+    default void dotBatch(float[][] queries, int fromQuery, int toQuery, float[] vector, double[] results) {
+        for (int q = fromQuery; q < toQuery; q++) {
+            results[q - fromQuery] = dot(queries[q], vector);
+        }
+    }
+
+    /**
+     * @return The process-wide kernels selected by the {@value #KERNELS_PROPERTY} system property.
+     */
+    static VectorKernels defaultKernels() {
+        return VectorKernelSelector.DEFAULT;
+    }
+
+    /**
+     * @return The portable scalar kernels.
+     */
+    static VectorKernels scalar() {
+        return ScalarVectorKernels.INSTANCE;
+    }
+
+    /**
+     * @return The SIMD kernels.
+     * @throws UnsupportedOperationException if the Vector API is not available in this JVM.
+     */
+    static VectorKernels simd() {
+        VectorKernels simd = VectorKernelSelector.SIMD;
+        if (simd == null) {
+            throw new UnsupportedOperationException("SIMD vector kernels are not available. " +
+                    "Start the JVM with --add-modules jdk.incubator.vector on a platform with 128-bit or wider vectors.");
+        }
+        return simd;
+    }
+
+    /**
+     * @return {@code true} if {@link #simd()} can be used in this JVM.
+     */
+    static boolean isSimdAvailable() {
+        return VectorKernelSelector.SIMD != null;
+    }
+
+    /**
+     * Finishes a cosine distance computation from the three accumulated sums.
+     * Shared by the implementations so that zero-vector handling and clamping are identical.
+     * @param dot   The dot product of the two vectors.
+     * @param normA The squared L2 norm of the first vector.
+     * @param normB The squared L2 norm of the second vector.
+     * @return The cosine distance in [0, 2], or 1.0 if either norm is zero.
+     */
+    static double cosineDistanceFromSums(double dot, double normA, double normB) {
+        if (normA == 0.0 || normB == 0.0) {
+            return 1.0;
+        }
+        // sqrt(normA * normB) rather than sqrt(normA) * sqrt(normB): identical vectors give exactly 1.0.
+        double similarity = dot / Math.sqrt(normA * normB);
+        similarity = Math.max(-1.0, Math.min(1.0, similarity));
+        return 1.0 - similarity;
+    }
+}
@@ -225,6 +225,43 @@ class DocumentTests {
         assertThat(document.getMetadata()).containsEntry("nullableKey", null);
     }
 
+    @Test
+    void setEmbeddingVector_ShouldStoreDefensiveCopy() {
+        // Arrange
+        float[] vector = {0.1f, 0.2f, 0.3f};
+
+        // Act
+        document.setEmbeddingVector(vector);
+        vector[0] = 9.0f;
+
+        // Assert
+        assertThat(document.getEmbeddingVector()).containsExactly(0.1f, 0.2f, 0.3f);
+    }
+
+    @Test
+    void getEmbedding_ShouldExposeVectorAsDoubleList() {
+        // Arrange
+        document.setEmbeddingVector(new float[]{0.1f, -0.5f});
+
+        // Act & Assert
+        assertThat(document.getEmbedding()).containsExactly(0.1, -0.5);
+        assertThat(document.getEmbeddingVector()).hasSize(2);
+    }
+
+    @Test
+    void getEmbedding_ShouldReuseViewUntilEmbeddingIsReplaced() {
+        // Arrange
+        document.setEmbeddingVector(new float[]{0.1f, 0.2f});
+        List<Double> view = document.getEmbedding();
+
+        // Act & Assert
+        assertThat(document.getEmbedding()).isSameAs(view);
+        document.setEmbedding(Arrays.asList(0.3, 0.4));
+        assertThat(document.getEmbedding()).isNotSameAs(view).containsExactly(0.3, 0.4);
+        document.setEmbeddingVector(new float[]{0.5f});
+        assertThat(document.getEmbedding()).containsExactly(0.5);
+    }
+
     // --- Behavior and Contract Tests ---
 
     @Test
@@ -23,6 +23,7 @@ import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -272,6 +273,71 @@ class RAGTests {
             assertThat(e.getCause()).isInstanceOf(RuntimeException.class);
         }
 
+        @Test
+        void retrieveDocuments_withHybridSearch_shouldFuseVectorAndLexicalRankings() {
+            // Arrange
+            Document vectorOnly = createTestDocument("a", "Retrieval augmented generation overview.");
+            Document both = createTestDocument("b", "RAG combines retrieval and generation.");
+            Document lexicalOnly = createTestDocument("c", "What is RAG? See the FAQ.");
+            rag.setHybridSearch(10, 60).setTopK(2).setRetrievalExecutor(Runnable::run);
+            when(vectorStore.similaritySearch(queryEmbedding, 10)).thenReturn(List.of(vectorOnly, both));
+            when(vectorStore.lexicalSearch("What is RAG?", 10)).thenReturn(List.of(lexicalOnly, both));
+
+            // Act
+            List<Document> result = rag.retrieveDocuments(question);
+
+            // Assert: "b" is ranked by both searches; "a" and "c" tie and the vector ranking comes first.
+            assertThat(rag.isHybridSearchEnabled()).isTrue();
+            assertThat(result).extracting(Document::getId).containsExactly("b", "a");
+            assertThat(result.get(0).getScore()).isEqualTo((float) (2.0 / 62));
+            verify(observer).update(eq("rag-lexical-searching"), any());
+        }
+
+        @Test
+        void retrieveDocuments_withHybridSearchOnStoreWithoutLexicalIndex_shouldThrowAgentException() {
+            // Arrange
+            rag.setHybridSearch(true).setRetrievalExecutor(Runnable::run);
+            when(vectorStore.lexicalSearch(anyString(), anyInt())).thenThrow(new UnsupportedOperationException("no lexical index"));
+
+            // Act & Assert
+            AgentException e = assertThrows(AgentException.class, () -> rag.retrieveDocuments(question));
+            assertThat(e.getMessage()).contains("lexical search");
+            assertThat(e.getCause()).isInstanceOf(UnsupportedOperationException.class);
+            assertThrows(IllegalArgumentException.class, () -> rag.setHybridSearch(0, 60));
+        }
+
+        @Test
+        void retrieveDocumentsAsync_shouldUseAsyncStoreSearchAndPostProcessors() throws Exception {
+            // Arrange
+            Document doc1 = createTestDocument("doc1", "RAG is cool.");
+            Document doc2 = createTestDocument("doc2", "RAG is cool."); // Duplicate content
+            rag.addPostProcessor(postProcessor1).setTopK(2).setRetrievalExecutor(Runnable::run);
+            when(vectorStore.similaritySearchAsync(queryEmbedding, 2)).thenReturn(CompletableFuture.completedFuture(List.of(doc1, doc2)));
+            when(postProcessor1.process(question, List.of(doc1))).thenReturn(List.of(doc1));
+
+            // Act
+            List<Document> result = rag.retrieveDocumentsAsync(question).get();
+
+            // Assert
+            assertThat(result).containsExactly(doc1);
+            verify(vectorStore, never()).similaritySearch(anyList(), anyInt());
+            verify(observer).update(eq("rag-vectorstore-result"), any(VectorStoreResult.class));
+        }
+
+        @Test
+        void retrieveDocumentsAsync_whenVectorStoreFails_shouldCompleteWithAgentException() {
+            // Arrange
+            rag.setRetrievalExecutor(Runnable::run);
+            when(vectorStore.similaritySearchAsync(anyList(), anyInt()))
+                    .thenReturn(CompletableFuture.failedFuture(new RuntimeException("DB connection failed")));
+
+            // Act & Assert
+            ExecutionException e = assertThrows(ExecutionException.class,
+                    () -> rag.retrieveDocumentsAsync(question).get());
+            assertThat(e.getCause()).isInstanceOf(AgentException.class)
+                    .hasMessageContaining("Failed to retrieve documents from vector store");
+        }
+
         @Test
         void retrieveDocuments_withInvalidQuestion_shouldThrowAgentException() {
             assertThrows(NullPointerException.class, () -> rag.retrieveDocuments(null));
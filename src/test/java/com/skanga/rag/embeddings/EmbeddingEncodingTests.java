@@ -0,0 +1,108 @@
+package com.skanga.rag.embeddings;
+
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.skanga.rag.Document;
+import com.skanga.rag.vectorstore.search.SimilaritySearchUtils;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EmbeddingEncodingTests {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private static float[] randomVector(int dimension, long seed) {
+        Random random = new Random(seed);
+        float[] vector = new float[dimension];
+        for (int i = 0; i < dimension; i++) {
+            vector[i] = (float) random.nextGaussian() * 0.05f;
+        }
+        return vector;
+    }
+
+    private ObjectWriter writer(EmbeddingEncoding encoding) {
+        return objectMapper.writer().withAttribute(EmbeddingEncoding.class, encoding);
+    }
+
+    @Test
+    void float32_roundTripsExactly() {
+        float[] vector = {1.0f, -2.5f, 0.1f, Float.MIN_VALUE, Float.MAX_VALUE, -0.0f};
+        String encoded = EmbeddingEncoding.FLOAT32_BASE64.encode(vector);
+        assertTrue(encoded.startsWith("f32:"));
+        assertArrayEquals(vector, EmbeddingEncoding.decode(encoded));
+        assertSame(EmbeddingUtils.EMPTY_VECTOR, EmbeddingEncoding.decode(EmbeddingEncoding.FLOAT32_BASE64.encode(new float[0])));
+    }
+
+    @Test
+    void float16_matchesIeeeHalfPrecision() {
+        assertEquals("f16:ADwAwA==", EmbeddingEncoding.FLOAT16_BASE64.encode(new float[]{1.0f, -2.0f}));
+        assertEquals((short) 0x7BFF, EmbeddingEncoding.floatToHalf(65504f)); // Largest finite half
+        assertEquals((short) 0x7C00, EmbeddingEncoding.floatToHalf(65520f)); // Rounds up past it to infinity
+        assertEquals((short) 0x0001, EmbeddingEncoding.floatToHalf(0x1p-24f)); // Smallest subnormal
+        assertEquals((short) 0x0000, EmbeddingEncoding.floatToHalf(0x1p-25f)); // Tie rounds to even zero
+        assertEquals((short) 0x0400, EmbeddingEncoding.floatToHalf(0x1p-14f)); // Smallest normal
+        assertEquals((short) 0x3C00, EmbeddingEncoding.floatToHalf(1.0f + 0x1p-11f)); // Tie rounds down to even
+        assertEquals((short) 0x3C02, EmbeddingEncoding.floatToHalf(1.0f + 3 * 0x1p-11f)); // Tie rounds up to even
+        assertEquals((short) 0x8000, EmbeddingEncoding.floatToHalf(-0.0f));
+        assertTrue(Float.isNaN(EmbeddingEncoding.halfToFloat(EmbeddingEncoding.floatToHalf(Float.NaN))));
+        assertEquals(Float.NEGATIVE_INFINITY, EmbeddingEncoding.halfToFloat(EmbeddingEncoding.floatToHalf(Float.NEGATIVE_INFINITY)));
+
+        // Every finite half value survives widening and narrowing again
+        for (int bits = 0; bits <= 0xFFFF; bits++) {
+            short half = (short) bits;
+            float widened = EmbeddingEncoding.halfToFloat(half);
+            if (!Float.isNaN(widened)) {
+                assertEquals(half, EmbeddingEncoding.floatToHalf(widened), "half 0x" + Integer.toHexString(bits));
+            }
+        }
+
+        float[] vector = randomVector(256, 3);
+        float[] decoded = EmbeddingEncoding.decode(EmbeddingEncoding.FLOAT16_BASE64.encode(vector));
+        for (int i = 0; i < vector.length; i++) {
+            assertEquals(vector[i], decoded[i], Math.abs(vector[i]) * 0x1p-11f + 0x1p-25f);
+        }
+    }
+
+    @Test
+    void decode_rejectsUnknownOrMalformedStrings() {
+        assertThrows(IllegalArgumentException.class, () -> EmbeddingEncoding.decode("f64:AAAAAAAAAAA="));
+        assertThrows(IllegalArgumentException.class, () -> EmbeddingEncoding.decode("f32:AAA=")); // 2 bytes
+        assertThrows(IllegalArgumentException.class, () -> EmbeddingEncoding.decode("f16:not base64!"));
+        assertThrows(UnsupportedOperationException.class, () -> EmbeddingEncoding.JSON_ARRAY.encode(new float[]{1f}));
+    }
+
+    @Test
+    void document_writesArrayByDefault_andReadsEveryEncoding() throws Exception {
+        Document doc = new Document("Encoded content");
+        doc.setId("encoded");
+        doc.setEmbeddingVector(randomVector(1536, 5));
+
+        String legacy = objectMapper.writeValueAsString(doc);
+        assertTrue(legacy.contains("\"embedding\":[")); // Unchanged without the attribute
+        assertEquals(legacy, writer(EmbeddingEncoding.JSON_ARRAY).writeValueAsString(doc));
+        String float32 = writer(EmbeddingEncoding.FLOAT32_BASE64).writeValueAsString(doc);
+        String float16 = writer(EmbeddingEncoding.FLOAT16_BASE64).writeValueAsString(doc);
+        assertTrue(float16.contains("\"embedding\":\"f16:"));
+
+        assertArrayEquals(doc.getEmbeddingVector(), objectMapper.readValue(legacy, Document.class).getEmbeddingVector());
+        assertArrayEquals(doc.getEmbeddingVector(), objectMapper.readValue(float32, Document.class).getEmbeddingVector());
+        Document fromHalf = objectMapper.readValue(float16, Document.class);
+        assertEquals("encoded", fromHalf.getId());
+        assertEquals(0.0, SimilaritySearchUtils.cosineDistance(doc.getEmbeddingVector(), fromHalf.getEmbeddingVector()), 1e-5);
+
+        assertTrue(float32.length() * 2 < legacy.length());
+        assertTrue(float16.length() * 4 < legacy.length());
+
+        // Missing, null and empty embeddings read as before
+        assertEquals(0, objectMapper.readValue("{\"content\":\"x\"}", Document.class).getEmbeddingVector().length);
+        assertEquals(0, objectMapper.readValue("{\"content\":\"x\",\"embedding\":null}", Document.class).getEmbeddingVector().length);
+        assertEquals(0, objectMapper.readValue("{\"content\":\"x\",\"embedding\":[]}", Document.class).getEmbeddingVector().length);
+        assertArrayEquals(new float[]{1f, 2f}, objectMapper.readValue("{\"content\":\"x\",\"embedding\":[1,2.0]}", Document.class).getEmbeddingVector());
+        assertThrows(JsonMappingException.class,
+                     () -> objectMapper.readValue("{\"content\":\"x\",\"embedding\":\"bogus\"}", Document.class));
+    }
+}
@@ -0,0 +1,156 @@
+package com.skanga.rag.vectorstore;
+
+import com.skanga.rag.Document;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BulkIngesterTests {
+
+    private static List<Integer> items(int count) {
+        return IntStream.range(0, count).boxed().collect(Collectors.toList());
+    }
+
+    @Test
+    void chunk_splitsByCountAndBytesInOrder() {
+        BulkIngester ingester = new BulkIngester(3, 100, 1, 0, Duration.ZERO);
+
+        List<BulkIngester.Chunk<Integer>> byCount = ingester.chunk(items(7), item -> 1);
+        assertEquals(List.of(List.of(0, 1, 2), List.of(3, 4, 5), List.of(6)),
+                     byCount.stream().map(BulkIngester.Chunk::items).collect(Collectors.toList()));
+        assertEquals(3, byCount.get(0).bytes());
+
+        // 60 + 60 would exceed 100 bytes; the 150-byte item is sent on its own.
+        List<BulkIngester.Chunk<Integer>> byBytes = ingester.chunk(List.of(60, 60, 150, 10, 20), item -> item);
+        assertEquals(List.of(List.of(60), List.of(60), List.of(150), List.of(10, 20)),
+                     byBytes.stream().map(BulkIngester.Chunk::items).collect(Collectors.toList()));
+        assertTrue(ingester.chunk(List.<Integer>of(), item -> 1).isEmpty());
+    }
+
+    @Test
+    void ingest_keepsAtMostMaxInFlightRequestsOutstanding() throws Exception {
+        BulkIngester ingester = new BulkIngester(10, Long.MAX_VALUE, 3, 0, Duration.ZERO);
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxSeen = new AtomicInteger();
+        List<Integer> written = Collections.synchronizedList(new ArrayList<>());
+
+        BulkIngestReport report = ingester.ingest(items(200), item -> 8, chunk -> {
+            maxSeen.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            return CompletableFuture.supplyAsync(() -> {
+                StandInServer.sleep(5);
+                written.addAll(chunk);
+                inFlight.decrementAndGet();
+                return List.<BulkIngester.ItemFailure>of();
+            }, runnable -> new Thread(runnable).start());
+        }, error -> false).get(30, TimeUnit.SECONDS);
+
+        assertEquals(3, maxSeen.get());
+        assertEquals(200, written.size());
+        assertEquals(200, report.succeededDocuments());
+        assertEquals(20, report.requests());
+        assertEquals(1600, report.bytes());
+        assertTrue(report.documentsPerSecond() > 0);
+        assertTrue(report.toString().contains("200 documents"));
+    }
+
+    @Test
+    void ingest_retriesOnlyRetryableItemsWithBackoff() throws Exception {
+        BulkIngester ingester = new BulkIngester(5, Long.MAX_VALUE, 2, 2, Duration.ofMillis(1));
+        Map<Integer, AtomicInteger> attempts = new ConcurrentHashMap<>();
+
+        BulkIngestReport report = ingester.ingest(items(10), item -> 1, chunk -> {
+            List<BulkIngester.ItemFailure> failures = new ArrayList<>();
+            for (int i = 0; i < chunk.size(); i++) {
+                int item = chunk.get(i);
+                int attempt = attempts.computeIfAbsent(item, key -> new AtomicInteger()).incrementAndGet();
+                if (item == 3 && attempt == 1) {
+                    failures.add(new BulkIngester.ItemFailure(i, true, "item 3 rejected"));
+                } else if (item == 7) {
+                    failures.add(new BulkIngester.ItemFailure(i, false, "item 7 malformed"));
+                } else if (item == 8) {
+                    failures.add(new BulkIngester.ItemFailure(i, true, "item 8 rejected"));
+                }
+            }
+            return CompletableFuture.completedFuture(failures);
+        }, error -> false).get(30, TimeUnit.SECONDS);
+
+        assertEquals(2, attempts.get(3).get());
+        assertEquals(1, attempts.get(7).get());
+        assertEquals(3, attempts.get(8).get()); // The first attempt plus two retries.
+        assertEquals(1, attempts.get(0).get());
+        assertEquals(2, report.failedDocuments());
+        assertEquals(3, report.retriedDocuments());
+        assertEquals(5, report.requests());
+        assertTrue(report.failures().containsAll(List.of("item 7 malformed", "item 8 rejected")));
+        assertNull(report.requestFailure());
+    }
+
+    @Test
+    void ingest_retriesFailedRequestsOnlyWhenThePredicateAllows() throws Exception {
+        BulkIngester ingester = new BulkIngester(4, Long.MAX_VALUE, 1, 3, Duration.ofMillis(1));
+        AtomicInteger calls = new AtomicInteger();
+
+        BulkIngestReport recovered = ingester.ingest(items(4), item -> 1, chunk -> calls.incrementAndGet() < 3
+                ? CompletableFuture.failedFuture(new IOException("connection reset"))
+                : CompletableFuture.completedFuture(List.of()), error -> error instanceof IOException).get(30, TimeUnit.SECONDS);
+        assertEquals(0, recovered.failedDocuments());
+        assertEquals(3, recovered.requests());
+
+        BulkIngestReport failed = ingester.ingest(items(6), item -> 1, chunk -> {
+            throw new IllegalStateException("bad request");
+        }, error -> error instanceof IOException).get(30, TimeUnit.SECONDS);
+        assertEquals(6, failed.failedDocuments());
+        assertEquals(2, failed.requests());
+        assertTrue(failed.requestFailure() instanceof IllegalStateException);
+    }
+
+    @Test
+    void ingest_synchronousSenderOverManyChunksDoesNotGrowTheStack() throws Exception {
+        BulkIngester ingester = new BulkIngester(1, Long.MAX_VALUE, 2, 0, Duration.ZERO);
+        BulkIngestReport report = ingester.ingest(items(50_000), item -> 1,
+                chunk -> CompletableFuture.completedFuture(List.of()), error -> false).get(30, TimeUnit.SECONDS);
+        assertEquals(50_000, report.requests());
+        assertEquals(0, ingester.ingest(List.<Integer>of(), item -> 1, chunk -> null, error -> false).get().documents());
+    }
+
+    @Test
+    void estimatedJsonBytes_growsWithEmbeddingAndContent() {
+        Document small = new Document("a");
+        small.setEmbeddingVector(new float[4]);
+        Document large = new Document("a much longer piece of content");
+        large.setEmbeddingVector(new float[1536]);
+        large.addMetadata("source", "manual.pdf");
+        assertTrue(BulkIngester.estimatedJsonBytes(large) > BulkIngester.estimatedJsonBytes(small) + 1536 * 10);
+    }
+
+    @Test
+    void backoffNanos_doublesPerAttemptAndCapsWithoutOverflow() {
+        assertEquals(Duration.ofMillis(200).toNanos(), BulkIngester.backoffNanos(Duration.ofMillis(200), 0));
+        assertEquals(Duration.ofMillis(800).toNanos(), BulkIngester.backoffNanos(Duration.ofMillis(200), 2));
+        long max = BulkIngester.MAX_BACKOFF.toNanos();
+        assertEquals(max, BulkIngester.backoffNanos(Duration.ofMillis(200), 40));
+        assertEquals(max, BulkIngester.backoffNanos(Duration.ofHours(1), 30));
+        assertEquals(max, BulkIngester.backoffNanos(Duration.ofSeconds(Long.MAX_VALUE), 0));
+        assertEquals(0, BulkIngester.backoffNanos(Duration.ZERO, Integer.MAX_VALUE));
+    }
+
+    @Test
+    void invalidLimits_throw() {
+        assertThrows(IllegalArgumentException.class, () -> new BulkIngester(0, 1, 1, 0, Duration.ZERO));
+        assertThrows(IllegalArgumentException.class, () -> new BulkIngester().withMaxInFlight(0));
+        assertThrows(IllegalArgumentException.class, () -> new BulkIngester().withRetries(-1, Duration.ZERO));
+    }
+}
@@ -2,6 +2,9 @@ package com.skanga.rag.vectorstore;
 
 import com.fasterxml.jackson.databind.ObjectMapper; // For manually creating corrupt data
 import com.skanga.rag.Document;
+import com.skanga.rag.embeddings.EmbeddingEncoding;
+import com.skanga.rag.vectorstore.filter.MetadataFilter;
+import com.skanga.rag.vectorstore.search.SimilaritySearchUtils;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
@@ -10,12 +13,17 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
+import java.time.Instant;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 
 class FileVectorStoreTests {
@@ -178,4 +186,557 @@ class FileVectorStoreTests {
         List<Document> results = fileVectorStore.similaritySearch(Arrays.asList(0.1, 0.2), 3);
         assertTrue(results.isEmpty());
     }
+
+    @Test
+    void binaryFormat_addAndSearch_returnsNearestWithEmbeddingsAndScores() throws IOException {
+        try (FileVectorStore store = new FileVectorStore(tempDir.toString(), "binary", 3, FileVectorStore.StorageFormat.BINARY)) {
+            store.addDocuments(Arrays.asList(doc1, doc2, doc3));
+
+            List<Document> results = store.similaritySearch(Arrays.asList(0.7, 0.2, 0.2), 2);
+
+            assertEquals(2, results.size());
+            assertEquals(doc2.getId(), results.get(0).getId());
+            assertEquals(doc2.getContent(), results.get(0).getContent());
+            assertArrayEquals(doc2.getEmbeddingVector(), results.get(0).getEmbeddingVector(), 0.0f);
+            assertEquals(1.0 - SimilaritySearchUtils.cosineDistance(new float[]{0.7f, 0.2f, 0.2f}, doc2.getEmbeddingVector()),
+                    results.get(0).getScore(), 1e-6);
+            assertTrue(Files.exists(tempDir.resolve("binary.vec")));
+            assertTrue(Files.exists(tempDir.resolve("binary.idx")));
+            assertTrue(Files.exists(tempDir.resolve("binary.meta")));
+        }
+    }
+
+    @Test
+    void binaryFormat_reopen_loadsExistingSegment() throws IOException {
+        try (FileVectorStore store = new FileVectorStore(tempDir.toString(), "binary", 3, FileVectorStore.StorageFormat.BINARY)) {
+            store.addDocuments(Arrays.asList(doc1, doc2));
+        }
+        try (FileVectorStore reopened = new FileVectorStore(tempDir.toString(), "binary", 3, FileVectorStore.StorageFormat.BINARY)) {
+            reopened.addDocument(doc3);
+            List<Document> results = reopened.similaritySearch(doc3.getEmbedding(), 3);
+            assertEquals(List.of(doc3.getId(), doc1.getId(), doc2.getId()),
+                    results.stream().map(Document::getId).collect(Collectors.toList()));
+        }
+    }
+
+    @Test
+    void binaryFormat_existingJsonl_isMigratedOnce() throws IOException {
+        fileVectorStore.addDocuments(Arrays.asList(doc1, doc2, doc3));
+        Files.writeString(testStoreFile, "this is not json\n", StandardOpenOption.APPEND);
+
+        try (FileVectorStore binaryStore = new FileVectorStore(tempDir.toString(), testFileName, 3, FileVectorStore.StorageFormat.BINARY)) {
+            assertFalse(Files.exists(testStoreFile));
+            assertTrue(Files.exists(tempDir.resolve(testFileName + FileVectorStore.MIGRATED_SUFFIX)));
+            assertEquals(tempDir.resolve("test_file_store.vec"), binaryStore.getFilePath());
+            assertEquals(3, binaryStore.similaritySearch(doc1.getEmbedding(), 5).size());
+        }
+        // Reopening does not import again
+        try (FileVectorStore binaryStore = new FileVectorStore(tempDir.toString(), testFileName, 3, FileVectorStore.StorageFormat.BINARY)) {
+            assertEquals(3, binaryStore.similaritySearch(doc1.getEmbedding(), 5).size());
+        }
+    }
+
+    @Test
+    void binaryFormat_tornTail_isTruncatedOnOpen() throws IOException {
+        try (FileVectorStore store = new FileVectorStore(tempDir.toString(), "binary", 3, FileVectorStore.StorageFormat.BINARY)) {
+            store.addDocuments(Arrays.asList(doc1, doc2));
+        }
+        // Simulate a crash midway through the next append: vector bytes written, index entry not.
+        Files.write(tempDir.resolve("binary.vec"), new byte[7], StandardOpenOption.APPEND);
+        Files.write(tempDir.resolve("binary.meta"), "{\"id\":\"partial".getBytes(), StandardOpenOption.APPEND);
+
+        try (FileVectorStore reopened = new FileVectorStore(tempDir.toString(), "binary", 3, FileVectorStore.StorageFormat.BINARY)) {
+            assertEquals(2, reopened.similaritySearch(doc1.getEmbedding(), 5).size());
+            reopened.addDocument(doc3);
+            assertEquals(doc3.getId(), reopened.similaritySearch(doc3.getEmbedding(), 1).get(0).getId());
+        }
+    }
+
+    @Test
+    void binaryFormat_mismatchedDimension_isRejected() throws IOException {
+        try (FileVectorStore store = new FileVectorStore(tempDir.toString(), "binary", 3, FileVectorStore.StorageFormat.BINARY)) {
+            store.addDocument(doc1);
+            Document twoDims = new Document("short");
+            twoDims.setEmbedding(List.of(0.1, 0.2));
+            assertThrows(VectorStoreException.class, () -> store.addDocument(twoDims));
+            assertThrows(VectorStoreException.class, () -> store.similaritySearch(List.of(0.1, 0.2), 1));
+        }
+    }
+
+    @Test
+    void binaryFormat_clear_removesAllDocuments() throws IOException {
+        try (FileVectorStore store = new FileVectorStore(tempDir.toString(), "binary", 3, FileVectorStore.StorageFormat.BINARY)) {
+            store.addDocuments(Arrays.asList(doc1, doc2));
+            store.clear();
+            assertTrue(store.similaritySearch(doc1.getEmbedding(), 5).isEmpty());
+
+            Document twoDims = new Document("new dimension after clear");
+            twoDims.setEmbedding(List.of(0.1, 0.2));
+            store.addDocument(twoDims);
+            assertEquals(1, store.similaritySearch(List.of(0.1, 0.2), 5).size());
+        }
+    }
+
+    @Test
+    void deleteDocuments_jsonl_rewritesFileWithoutDeletedDocuments() throws IOException {
+        fileVectorStore.addDocuments(Arrays.asList(doc1, doc2, doc3));
+
+        fileVectorStore.deleteDocuments(List.of(doc2.getId(), "unknown"));
+
+        List<String> lines = Files.readAllLines(testStoreFile);
+        assertEquals(2, lines.size());
+        List<String> ids = fileVectorStore.similaritySearch(doc2.getEmbedding(), 5).stream().map(Document::getId).collect(Collectors.toList());
+        assertEquals(2, ids.size());
+        assertFalse(ids.contains(doc2.getId()));
+    }
+
+    @Test
+    void upsertDocuments_jsonl_replacesExistingDocument() throws IOException {
+        fileVectorStore.addDocuments(Arrays.asList(doc1, doc2));
+        Document newDoc1 = new Document("Alpha, revised.");
+        newDoc1.setId(doc1.getId());
+        newDoc1.setEmbedding(Arrays.asList(0.1, 0.1, 0.8));
+
+        fileVectorStore.upsertDocuments(Arrays.asList(newDoc1, doc3));
+
+        assertEquals(3, Files.readAllLines(testStoreFile).size());
+        List<Document> results = fileVectorStore.similaritySearch(Arrays.asList(0.1, 0.1, 0.8), 3);
+        assertEquals(2, results.stream().filter(d -> d.getEmbedding().equals(Arrays.asList(0.1, 0.1, 0.8))).count());
+        assertEquals("Alpha, revised.", results.stream().filter(d -> d.getId().equals(doc1.getId())).findFirst().orElseThrow().getContent());
+    }
+
+    @Test
+    void binaryFormat_deleteAndUpsert_areVisibleToSearchAndSurviveReopen() throws IOException {
+        Document newDoc2 = new Document("Beta, revised.");
+        newDoc2.setId(doc2.getId());
+        newDoc2.setEmbedding(Arrays.asList(0.1, 0.1, 0.8));
+        try (FileVectorStore store = new FileVectorStore(tempDir.toString(), "binary", 3, FileVectorStore.StorageFormat.BINARY)) {
+            store.withAutoCompaction(2.0, 1); // Keep the tombstones for this test
+            store.addDocuments(Arrays.asList(doc1, doc2, doc3));
+
+            store.deleteDocuments(List.of(doc1.getId()));
+            store.upsertDocuments(List.of(newDoc2));
+
+            assertEquals(2, store.getDeletedCount());
+            List<Document> results = store.similaritySearch(Arrays.asList(0.1, 0.1, 0.8), 5);
+            assertEquals(List.of(doc3.getId(), doc2.getId()), results.stream().map(Document::getId).collect(Collectors.toList()));
+            assertEquals("Beta, revised.", results.get(1).getContent());
+        }
+        try (FileVectorStore reopened = new FileVectorStore(tempDir.toString(), "binary", 3, FileVectorStore.StorageFormat.BINARY)) {
+            assertEquals(2, reopened.getDeletedCount());
+            List<Document> results = reopened.similaritySearch(Arrays.asList(0.1, 0.1, 0.8), 5);
+            assertEquals(List.of(doc3.getId(), doc2.getId()), results.stream().map(Document::getId).collect(Collectors.toList()));
+            // The ID index is rebuilt from the metadata on the first delete after reopening.
+            reopened.deleteDocuments(List.of(doc2.getId()));
+            assertEquals(1, reopened.similaritySearch(Arrays.asList(0.1, 0.1, 0.8), 5).size());
+        }
+    }
+
+    @Test
+    void binaryFormat_compact_reclaimsSpaceAndKeepsLiveDocuments() throws IOException {
+        try (FileVectorStore store = new FileVectorStore(tempDir.toString(), "binary", 3, FileVectorStore.StorageFormat.BINARY)) {
+            store.withAutoCompaction(2.0, 1);
+            store.addDocuments(Arrays.asList(doc1, doc2, doc3));
+            long sizeBefore = Files.size(tempDir.resolve("binary.vec"));
+            store.deleteDocuments(List.of(doc1.getId(), doc2.getId()));
+
+            assertEquals(2, store.compact());
+
+            assertEquals(0, store.getDeletedCount());
+            assertTrue(Files.size(tempDir.resolve("binary.vec")) < sizeBefore);
+            assertFalse(Files.exists(tempDir.resolve("binary.compact")));
+            List<Document> results = store.similaritySearch(doc1.getEmbedding(), 5);
+            assertEquals(List.of(doc3.getId()), results.stream().map(Document::getId).collect(Collectors.toList()));
+            assertArrayEquals(doc3.getEmbeddingVector(), results.get(0).getEmbeddingVector(), 0.0f);
+            // Ordinals moved; the ID index follows them.
+            store.upsertDocuments(List.of(doc1));
+            store.deleteDocuments(List.of(doc3.getId()));
+            assertEquals(List.of(doc1.getId()), store.similaritySearch(doc1.getEmbedding(), 5).stream().map(Document::getId).collect(Collectors.toList()));
+        }
+        try (FileVectorStore reopened = new FileVectorStore(tempDir.toString(), "binary", 3, FileVectorStore.StorageFormat.BINARY)) {
+            assertEquals(1, reopened.similaritySearch(doc1.getEmbedding(), 5).size());
+        }
+    }
+
+    @Test
+    void binaryFormat_interruptedCompaction_isFinishedOrDiscardedOnOpen() throws IOException {
+        try (FileVectorStore store = new FileVectorStore(tempDir.toString(), "binary", 3, FileVectorStore.StorageFormat.BINARY)) {
+            store.addDocuments(Arrays.asList(doc1, doc2));
+        }
+        // Partial copies without the completion marker are discarded.
+        Files.write(tempDir.resolve("binary.compact.vec"), new byte[5]);
+        try (FileVectorStore reopened = new FileVectorStore(tempDir.toString(), "binary", 3, FileVectorStore.StorageFormat.BINARY)) {
+            assertEquals(2, reopened.similaritySearch(doc1.getEmbedding(), 5).size());
+        }
+        assertFalse(Files.exists(tempDir.resolve("binary.compact.vec")));
+    }
+
+    @Test
+    void binaryFormat_autoCompaction_runsInBackground() throws IOException {
+        try (FileVectorStore store = new FileVectorStore(tempDir.toString(), "binary", 3, FileVectorStore.StorageFormat.BINARY)) {
+            store.withAutoCompaction(0.5, 2);
+            store.addDocuments(Arrays.asList(doc1, doc2, doc3));
+
+            store.deleteDocuments(List.of(doc1.getId(), doc2.getId()));
+            store.pendingCompaction().join();
+
+            assertEquals(0, store.getDeletedCount());
+            assertEquals(1, store.similaritySearch(doc1.getEmbedding(), 5).size());
+        }
+    }
+
+    @Test
+    void similaritySearch_jsonlWithFilter_ranksOnlyMatchingDocuments() {
+        doc1.addMetadata("lang", "en");
+        doc2.addMetadata("lang", "de");
+        doc3.addMetadata("lang", "en");
+        fileVectorStore.addDocuments(Arrays.asList(doc1, doc2, doc3));
+
+        List<Document> results = fileVectorStore.similaritySearch(Arrays.asList(0.8, 0.1, 0.1), 3, MetadataFilter.eq("lang", "en"));
+
+        assertEquals(List.of(doc1.getId(), doc3.getId()), results.stream().map(Document::getId).collect(Collectors.toList()));
+    }
+
+    @Test
+    void binaryFormat_filteredSearch_usesMetadataIndexAcrossAppendsReopenAndCompaction() throws IOException {
+        doc1.addMetadata("published", "2024-03-01T00:00:00Z");
+        doc2.addMetadata("published", "2024-06-01T00:00:00Z");
+        doc3.addMetadata("published", "2023-12-31");
+        MetadataFilter in2024 = MetadataFilter.range("published", Instant.parse("2024-01-01T00:00:00Z"), null);
+        List<Double> query = Arrays.asList(0.1, 0.1, 0.8);
+        try (FileVectorStore store = new FileVectorStore(tempDir.toString(), "binary", 3, FileVectorStore.StorageFormat.BINARY)) {
+            store.withAutoCompaction(2.0, 1);
+            store.addDocuments(Arrays.asList(doc1, doc3));
+            assertEquals(List.of(doc1.getId()), store.similaritySearch(query, 3, in2024).stream().map(Document::getId).collect(Collectors.toList()));
+
+            store.addDocument(doc2); // Indexed on append now that the index exists
+            assertEquals(2, store.similaritySearch(query, 3, in2024).size());
+
+            store.deleteDocuments(List.of(doc1.getId()));
+            store.compact();
+            assertEquals(List.of(doc2.getId()), store.similaritySearch(query, 3, in2024).stream().map(Document::getId).collect(Collectors.toList()));
+        }
+        try (FileVectorStore reopened = new FileVectorStore(tempDir.toString(), "binary", 3, FileVectorStore.StorageFormat.BINARY)) {
+            assertEquals(List.of(doc2.getId()), reopened.similaritySearch(query, 3, in2024).stream().map(Document::getId).collect(Collectors.toList()));
+            assertEquals(List.of(doc3.getId()), reopened.similaritySearch(query, 3, MetadataFilter.range("published", null, "2023-12-31"))
+                    .stream().map(Document::getId).collect(Collectors.toList()));
+        }
+    }
+
+    @Test
+    void lexicalSearch_jsonl_readsOnlyMatchingLinesAndFollowsRewrites() throws IOException {
+        fileVectorStore.addDocument(doc1);
+        Files.writeString(testStoreFile, "not json\n", StandardOpenOption.APPEND);
+        assertThrows(UnsupportedOperationException.class, () -> fileVectorStore.lexicalSearch("apples", 3));
+        fileVectorStore.withLexicalIndex(); // Indexes the existing lines, skipping the malformed one
+        fileVectorStore.addDocuments(Arrays.asList(doc2, doc3));
+
+        List<Document> results = fileVectorStore.lexicalSearch("bananas and grapes", 3);
+        assertEquals(List.of(doc2.getId(), doc3.getId()), results.stream().map(Document::getId).collect(Collectors.toList()));
+        assertArrayEquals(doc2.getEmbeddingVector(), results.get(0).getEmbeddingVector());
+
+        fileVectorStore.deleteDocuments(List.of(doc2.getId()));
+        assertEquals(List.of(doc3.getId()), fileVectorStore.lexicalSearch("bananas grapes", 3).stream().map(Document::getId).collect(Collectors.toList()));
+        fileVectorStore.clear();
+        assertTrue(fileVectorStore.lexicalSearch("grapes", 3).isEmpty());
+    }
+
+    @Test
+    void lexicalSearch_binary_followsAppendsDeletesCompactionAndReopen() throws IOException {
+        try (FileVectorStore store = new FileVectorStore(tempDir.toString(), "binary", 3, FileVectorStore.StorageFormat.BINARY)) {
+            store.withAutoCompaction(2.0, 1);
+            store.addDocument(doc1);
+            store.withLexicalIndex();
+            store.addDocuments(Arrays.asList(doc2, doc3));
+            assertEquals(List.of(doc2.getId()), store.lexicalSearch("Bananas?", 3).stream().map(Document::getId).collect(Collectors.toList()));
+
+            store.deleteDocuments(List.of(doc1.getId()));
+            assertTrue(store.lexicalSearch("apples", 3).isEmpty());
+            store.compact();
+            List<Document> results = store.lexicalSearch("content about grapes", 3);
+            assertEquals(doc3.getId(), results.get(0).getId());
+            assertEquals(2, results.size());
+            assertArrayEquals(doc3.getEmbeddingVector(), results.get(0).getEmbeddingVector());
+        }
+        try (FileVectorStore reopened = new FileVectorStore(tempDir.toString(), "binary", 3, FileVectorStore.StorageFormat.BINARY)) {
+            assertFalse(reopened.isLexicalIndexEnabled());
+            assertEquals(List.of(doc3.getId()), reopened.withLexicalIndex().lexicalSearch("grapes", 3).stream().map(Document::getId).collect(Collectors.toList()));
+        }
+    }
+
+    @Test
+    void similaritySearchBatch_jsonlAndBinary_matchIndividualSearches() throws IOException {
+        List<List<Double>> queries = List.of(Arrays.asList(0.8, 0.1, 0.1), Arrays.asList(0.1, 0.1, 0.8), Arrays.asList(0.3, 0.3, 0.3));
+        try (FileVectorStore binary = new FileVectorStore(tempDir.toString(), "binary", 3, FileVectorStore.StorageFormat.BINARY)) {
+            for (FileVectorStore store : List.of(fileVectorStore, binary)) {
+                store.addDocuments(Arrays.asList(doc1, doc2, doc3));
+
+                List<List<Document>> batch = store.similaritySearchBatch(queries, 2);
+
+                assertEquals(queries.size(), batch.size());
+                for (int q = 0; q < queries.size(); q++) {
+                    List<Document> single = store.similaritySearch(queries.get(q), 2);
+                    assertEquals(single.stream().map(Document::getId).collect(Collectors.toList()),
+                                 batch.get(q).stream().map(Document::getId).collect(Collectors.toList()));
+                    // Documents ranked for several queries carry the score for this query.
+                    for (int i = 0; i < single.size(); i++) {
+                        assertEquals(single.get(i).getScore(), batch.get(q).get(i).getScore(), 1e-6);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void writeAheadLog_concurrentWriters_shareGroupCommits() throws Exception {
+        int threads = 8, addsPerThread = 50;
+
+        Path walDir = tempDir.resolve("wal");
+        try (FileVectorStore store = new FileVectorStore(walDir.toString(), testFileName, 3).withWriteAheadLog()) {
+            addConcurrently(store, threads, addsPerThread, "wal");
+            WriteAheadLog log = store.getWriteAheadLog();
+            assertTrue(log.getGroupCommits() > 0 && log.getGroupCommits() < threads * addsPerThread,
+                       "Expected grouped commits but got " + log.getGroupCommits());
+
+            // Logged documents are searchable before they are checkpointed
+            assertTrue(Files.readAllLines(walDir.resolve(testFileName)).isEmpty());
+            assertEquals(threads * addsPerThread, store.similaritySearch(doc1.getEmbedding(), 1000).size());
+        }
+        // Closing checkpoints the log into the file and removes it
+        assertEquals(threads * addsPerThread, Files.readAllLines(walDir.resolve(testFileName)).size());
+        assertFalse(Files.exists(walDir.resolve(testFileName + FileVectorStore.WAL_SUFFIX)));
+    }
+
+    private void addConcurrently(FileVectorStore store, int threads, int addsPerThread, String prefix) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                futures.add(pool.submit(() -> {
+                    for (int i = 0; i < addsPerThread; i++) {
+                        Document doc = new Document("Document " + i + " of writer " + thread);
+                        doc.setId(prefix + "-" + thread + "-" + i);
+                        doc.setEmbedding(Arrays.asList(0.1 * thread, 0.5, 0.01 * i));
+                        store.addDocument(doc);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void writeAheadLog_checkpointsAtConfiguredSizeAndBeforeRewrites() throws IOException {
+        try (FileVectorStore store = fileVectorStore.withWriteAheadLog(WriteAheadLog.Options.DEFAULT.withCheckpointBytes(1))) {
+            store.addDocuments(Arrays.asList(doc1, doc2));
+            assertEquals(2, Files.readAllLines(testStoreFile).size()); // Checkpointed by the add itself
+            assertEquals(0, store.getWriteAheadLog().getRecordCount());
+        }
+
+        FileVectorStore store = new FileVectorStore(tempDir.toString(), testFileName, 3).withWriteAheadLog().withLexicalIndex();
+        store.addDocument(doc3);
+        assertEquals(2, Files.readAllLines(testStoreFile).size());
+        assertEquals(List.of(doc3.getId()), store.lexicalSearch("grapes", 3).stream().map(Document::getId).collect(Collectors.toList()));
+        assertEquals(3, Files.readAllLines(testStoreFile).size()); // Lexical search checkpoints first
+
+        store.addDocument(doc3);
+        store.deleteDocuments(List.of(doc1.getId()));
+        assertEquals(List.of(doc2.getId(), doc3.getId(), doc3.getId()),
+                     Files.readAllLines(testStoreFile).stream().map(this::idOf).collect(Collectors.toList()));
+        store.addDocument(doc1);
+        store.clear(); // Drops logged documents as well
+        assertTrue(store.similaritySearch(doc1.getEmbedding(), 5).isEmpty());
+        assertTrue(store.lexicalSearch("apples", 5).isEmpty());
+        store.close();
+        try (FileVectorStore binary = new FileVectorStore(tempDir.toString(), "binary", 3, FileVectorStore.StorageFormat.BINARY)) {
+            assertThrows(UnsupportedOperationException.class, binary::withWriteAheadLog);
+        }
+    }
+
+    private String idOf(String line) {
+        try {
+            return objectMapper.readTree(line).get("id").asText();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Test
+    void writeAheadLog_leftByCrash_isReplayedOnOpen() throws IOException {
+        fileVectorStore.addDocument(doc1);
+        long base = Files.size(testStoreFile);
+        // A crash after logging two documents, midway through checkpointing them: one line and half of the next
+        try (WriteAheadLog log = WriteAheadLog.open(tempDir.resolve(testFileName + FileVectorStore.WAL_SUFFIX), WriteAheadLog.Options.DEFAULT, base)) {
+            log.append(List.of(objectMapper.writeValueAsBytes(doc2), objectMapper.writeValueAsBytes(doc3))).join();
+        }
+        String doc3Line = objectMapper.writeValueAsString(doc3);
+        Files.writeString(testStoreFile, objectMapper.writeValueAsString(doc2) + "\n" + doc3Line.substring(0, 20), StandardOpenOption.APPEND);
+
+        FileVectorStore reopened = new FileVectorStore(tempDir.toString(), testFileName, 3);
+
+        assertFalse(Files.exists(tempDir.resolve(testFileName + FileVectorStore.WAL_SUFFIX)));
+        assertEquals(List.of(doc1.getId(), doc2.getId(), doc3.getId()),
+                     Files.readAllLines(testStoreFile).stream().map(this::idOf).collect(Collectors.toList()));
+        assertEquals(3, reopened.similaritySearch(doc1.getEmbedding(), 5).size());
+    }
+
+    @Test
+    void constructor_jsonlTornLastLine_isTruncatedOrCompleted() throws IOException {
+        fileVectorStore.addDocument(doc1);
+        Files.writeString(testStoreFile, objectMapper.writeValueAsString(doc2).substring(0, 25), StandardOpenOption.APPEND);
+        new FileVectorStore(tempDir.toString(), testFileName, 3).addDocument(doc3);
+        assertEquals(List.of(doc1.getId(), doc3.getId()), Files.readAllLines(testStoreFile).stream().map(this::idOf).collect(Collectors.toList()));
+
+        // A complete last document that only misses its newline is kept
+        Files.writeString(testStoreFile, objectMapper.writeValueAsString(doc2), StandardOpenOption.APPEND);
+        new FileVectorStore(tempDir.toString(), testFileName, 3).addDocument(doc1);
+        assertEquals(List.of(doc1.getId(), doc3.getId(), doc2.getId(), doc1.getId()),
+                     Files.readAllLines(testStoreFile).stream().map(this::idOf).collect(Collectors.toList()));
+    }
+
+    @Test
+    void embeddingEncoding_compactLinesAreSmallerAndMixWithLegacyOnes() throws IOException {
+        fileVectorStore.addDocument(doc1); // Legacy array
+        fileVectorStore.withEmbeddingEncoding(EmbeddingEncoding.FLOAT32_BASE64).addDocument(doc2);
+        fileVectorStore.withEmbeddingEncoding(EmbeddingEncoding.FLOAT16_BASE64).addDocument(doc3);
+        assertEquals(EmbeddingEncoding.FLOAT16_BASE64, fileVectorStore.getEmbeddingEncoding());
+        List<String> lines = Files.readAllLines(testStoreFile);
+        assertTrue(lines.get(0).contains("\"embedding\":["));
+        assertTrue(lines.get(1).contains("\"embedding\":\"f32:"));
+        assertTrue(lines.get(2).contains("\"embedding\":\"f16:"));
+
+        List<Document> results = fileVectorStore.similaritySearch(Arrays.asList(0.8, 0.1, 0.1), 3);
+        assertEquals(List.of(doc2.getId(), doc1.getId(), doc3.getId()), ids(results));
+        assertArrayEquals(doc2.getEmbeddingVector(), results.get(0).getEmbeddingVector()); // float32 is exact
+
+        // A rewrite keeps existing lines as they are
+        fileVectorStore.deleteDocuments(List.of(doc3.getId()));
+        assertEquals(lines.subList(0, 2), Files.readAllLines(testStoreFile));
+
+        List<Document> docs = randomDocuments(200, 768, 13);
+        Path legacyFile = tempDir.resolve("legacy.jsonl");
+        Path compactFile = tempDir.resolve("compact.jsonl");
+        try (FileVectorStore legacy = new FileVectorStore(tempDir.toString(), "legacy.jsonl", 3);
+             FileVectorStore compact = new FileVectorStore(tempDir.toString(), "compact.jsonl", 3)) {
+            legacy.addDocuments(docs);
+            compact.withEmbeddingEncoding(EmbeddingEncoding.FLOAT16_BASE64).importFromJsonl(legacyFile);
+            assertTrue(Files.size(compactFile) * 3 < Files.size(legacyFile)); // Metadata and ids take the rest
+            float[] query = docs.get(17).getEmbeddingVector();
+            assertEquals(ids(legacy.similaritySearchVector(query, 5)).get(0), ids(compact.similaritySearchVector(query, 5)).get(0));
+        }
+    }
+
+    private static List<Document> randomDocuments(int count, int dimension, long seed) {
+        Random random = new Random(seed);
+        List<Document> docs = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Document doc = new Document("Document number " + i + (i % 2 == 0 ? " is even" : " is odd"));
+            doc.setId("doc-" + i);
+            doc.addMetadata("parity", i % 2 == 0 ? "even" : "odd");
+            float[] embedding = new float[dimension];
+            for (int d = 0; d < dimension; d++) {
+                embedding[d] = (float) random.nextGaussian();
+            }
+            doc.setEmbeddingVector(embedding);
+            docs.add(doc);
+        }
+        return docs;
+    }
+
+    private static List<String> ids(List<Document> docs) {
+        return docs.stream().map(Document::getId).collect(Collectors.toList());
+    }
+
+    @Test
+    void segmentedFormat_sealsAndMergesSegments_andMatchesSingleSegmentSearch() throws IOException {
+        List<Document> docs = randomDocuments(50, 8, 7);
+        float[][] queries = randomDocuments(5, 8, 11).stream().map(Document::getEmbeddingVector).toArray(float[][]::new);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try (FileVectorStore single = new FileVectorStore(tempDir.toString(), "single", 3, FileVectorStore.StorageFormat.BINARY);
+             FileVectorStore segmented = new FileVectorStore(tempDir.toString(), "segmented", 3, FileVectorStore.StorageFormat.SEGMENTED)) {
+            segmented.withSegmentPolicy(10, 3).withParallelSearch(1, pool);
+            single.addDocuments(docs);
+            for (int i = 0; i < docs.size(); i += 5) {
+                segmented.addDocuments(docs.subList(i, i + 5));
+                segmented.pendingCompaction().join(); // Merges run in the background between adds
+            }
+            // 5 sealed segments of 10: three were merged into one of 30, leaving it, 2 of 10 and the empty active one
+            assertEquals(4, segmented.getSegmentCount());
+            assertEquals(tempDir.resolve("segmented.segments"), segmented.getFilePath());
+
+            for (float[] query : queries) {
+                assertEquals(ids(single.similaritySearchVector(query, 7)), ids(segmented.similaritySearchVector(query, 7)));
+                MetadataFilter even = MetadataFilter.eq("parity", "even");
+                assertEquals(ids(single.similaritySearchVector(query, 4, even)), ids(segmented.similaritySearchVector(query, 4, even)));
+            }
+            List<List<Document>> batch = segmented.similaritySearchBatchVector(Arrays.asList(queries), 6);
+            for (int q = 0; q < queries.length; q++) {
+                assertEquals(ids(single.similaritySearchVector(queries[q], 6)), ids(batch.get(q)));
+                assertEquals(single.similaritySearchVector(queries[q], 1).get(0).getScore(), batch.get(q).get(0).getScore(), 1e-6);
+            }
+        } finally {
+            pool.shutdown();
+        }
+        try (FileVectorStore reopened = new FileVectorStore(tempDir.toString(), "segmented", 3, FileVectorStore.StorageFormat.SEGMENTED)) {
+            assertEquals(4, reopened.getSegmentCount());
+            assertEquals(50, reopened.similaritySearchVector(queries[0], 100).size());
+        }
+    }
+
+    @Test
+    void segmentedFormat_deletesAndUpsertsAcrossSegments() throws IOException {
+        Document newDoc1 = new Document("Alpha, revised.");
+        newDoc1.setId(doc1.getId());
+        newDoc1.setEmbedding(Arrays.asList(0.1, 0.1, 0.8));
+        try (FileVectorStore store = new FileVectorStore(tempDir.toString(), "segmented", 3, FileVectorStore.StorageFormat.SEGMENTED)) {
+            store.withSegmentPolicy(1, 4).withAutoCompaction(2.0, 1).withLexicalIndex();
+            store.addDocuments(Arrays.asList(doc1, doc2));
+            store.addDocument(doc3);
+            assertEquals(3, store.getSegmentCount()); // Sealed after each add
+
+            store.upsertDocuments(List.of(newDoc1));
+            store.deleteDocuments(List.of(doc2.getId()));
+            Document wrongDimension = new Document("Wrong dimension");
+            wrongDimension.setEmbedding(Arrays.asList(0.1, 0.2));
+            assertThrows(VectorStoreException.class, () -> store.addDocument(wrongDimension)); // Checked against sealed segments
+
+            assertEquals(List.of(doc3.getId(), doc1.getId()), ids(store.similaritySearch(Arrays.asList(0.1, 0.1, 0.8), 5)));
+            assertEquals(List.of(doc1.getId()), ids(store.lexicalSearch("alpha revised", 5)));
+
+            // The sealed segment of doc1 and doc2 has no live document left and is dropped in the background
+            store.pendingCompaction().join();
+            assertEquals(0, store.getDeletedCount());
+            assertEquals(3, store.getSegmentCount());
+            assertEquals(List.of(doc3.getId(), doc1.getId()), ids(store.similaritySearch(Arrays.asList(0.1, 0.1, 0.8), 5)));
+        }
+        try (FileVectorStore reopened = new FileVectorStore(tempDir.toString(), "segmented", 3, FileVectorStore.StorageFormat.SEGMENTED)) {
+            assertEquals("Alpha, revised.", reopened.similaritySearch(Arrays.asList(0.1, 0.1, 0.8), 5).get(1).getContent());
+            reopened.clear();
+            assertEquals(1, reopened.getSegmentCount());
+            assertTrue(reopened.similaritySearch(Arrays.asList(0.1, 0.1, 0.8), 5).isEmpty());
+        }
+    }
+
+    @Test
+    void segmentedFormat_unlistedSegmentsLeftByCrash_areDeletedOnOpen() throws IOException {
+        try (FileVectorStore store = new FileVectorStore(tempDir.toString(), "segmented", 3, FileVectorStore.StorageFormat.SEGMENTED)) {
+            store.withSegmentPolicy(2, 4).addDocuments(Arrays.asList(doc1, doc2, doc3));
+        }
+        // A merged segment written before the crash but never listed
+        Files.copy(tempDir.resolve("segmented-000001.vec"), tempDir.resolve("segmented-000007.vec"));
+        Files.copy(tempDir.resolve("segmented-000001.meta"), tempDir.resolve("segmented-000007.meta"));
+        try (FileVectorStore reopened = new FileVectorStore(tempDir.toString(), "segmented", 3, FileVectorStore.StorageFormat.SEGMENTED)) {
+            assertFalse(Files.exists(tempDir.resolve("segmented-000007.vec")));
+            assertFalse(Files.exists(tempDir.resolve("segmented-000007.meta")));
+            assertEquals(3, reopened.similaritySearch(doc1.getEmbedding(), 5).size());
+            reopened.withSegmentPolicy(1, 4).addDocument(doc1); // New segments are numbered past the deleted one
+        }
+        assertTrue(Files.exists(tempDir.resolve("segmented-000008.vec")));
+    }
 }
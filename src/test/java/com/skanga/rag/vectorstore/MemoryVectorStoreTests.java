@@ -1,12 +1,26 @@
 package com.skanga.rag.vectorstore;
 
 import com.skanga.rag.Document;
+import com.skanga.rag.vectorstore.filter.MetadataFilter;
+import com.skanga.rag.vectorstore.search.BinaryQuantizer;
+import com.skanga.rag.vectorstore.search.ScalarQuantizer;
+import com.skanga.rag.vectorstore.search.VectorKernels;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 import static org.junit.jupiter.api.Assertions.*;
 
 class MemoryVectorStoreTests {
@@ -14,6 +28,9 @@ class MemoryVectorStoreTests {
     private MemoryVectorStore vectorStore;
     private Document doc1, doc2, doc3, doc4;
 
+    @TempDir
+    Path tempDir;
+
     @BeforeEach
     void setUp() {
         vectorStore = new MemoryVectorStore(3); // Default topK for store, not directly used by search k
@@ -124,6 +141,32 @@ class MemoryVectorStoreTests {
 
     }
 
+    @Test
+    void similaritySearchVector_matchesListBasedSearch() {
+        vectorStore.addDocuments(Arrays.asList(doc1, doc2, doc3));
+
+        List<Document> results = vectorStore.similaritySearchVector(new float[]{0.15f, 0.25f, 0.6f}, 2);
+
+        assertEquals(2, results.size());
+        assertEquals("doc1", results.get(0).getId());
+        assertEquals("doc3", results.get(1).getId());
+        assertEquals(0.989f, results.get(0).getScore(), 0.01f);
+    }
+
+    @Test
+    void withVectorKernels_scalarKernels_produceSameRanking() {
+        vectorStore.addDocuments(Arrays.asList(doc1, doc2, doc3));
+        List<String> defaultIds = vectorStore.similaritySearchVector(new float[]{0.15f, 0.25f, 0.6f}, 3)
+                .stream().map(Document::getId).toList();
+
+        vectorStore.withVectorKernels(VectorKernels.scalar());
+        List<Document> results = vectorStore.similaritySearchVector(new float[]{0.15f, 0.25f, 0.6f}, 3);
+
+        assertSame(VectorKernels.scalar(), vectorStore.getVectorKernels());
+        assertEquals(defaultIds, results.stream().map(Document::getId).toList());
+        assertEquals(0.989f, results.get(0).getScore(), 0.01f);
+    }
+
     @Test
     void similaritySearch_kIsLargerThanStoredDocuments_returnsAllStoredDocuments() {
         vectorStore.addDocuments(Arrays.asList(doc1, doc2));
@@ -169,6 +212,696 @@ class MemoryVectorStoreTests {
         assertEquals(doc1.getId(), results.get(0).getId());
     }
 
+    @Test
+    void withHnswIndex_indexesExistingAndNewDocuments() {
+        vectorStore.addDocuments(Arrays.asList(doc1, doc2));
+        vectorStore.withHnswIndex(4, 16, 16);
+        vectorStore.addDocument(doc3);
+
+        assertTrue(vectorStore.isHnswIndexEnabled());
+        List<Document> results = vectorStore.similaritySearch(Arrays.asList(0.15, 0.25, 0.6), 2);
+
+        assertEquals(2, results.size());
+        assertEquals("doc1", results.get(0).getId());
+        assertEquals("doc3", results.get(1).getId());
+        assertEquals(0.989f, results.get(0).getScore(), 0.01f);
+    }
+
+    @Test
+    void withHnswIndex_mismatchedDimension_isRejectedOnAdd() {
+        vectorStore.withHnswIndex();
+        vectorStore.addDocument(doc1);
+        Document mismatchedDoc = new Document("Mismatched dim");
+        mismatchedDoc.setEmbedding(Arrays.asList(0.1, 0.2));
+
+        assertThrows(VectorStoreException.class, () -> vectorStore.addDocument(mismatchedDoc));
+        assertEquals(1, vectorStore.getAllDocuments().size());
+    }
+
+    @Test
+    void measureRecall_hnswOnRandomData_isHigh() {
+        Random random = new Random(11);
+        vectorStore.withHnswIndex(16, 100, 100);
+        for (int i = 0; i < 500; i++) {
+            Document doc = new Document("Random document " + i);
+            doc.setEmbeddingVector(randomVector(random, 8));
+            vectorStore.addDocument(doc);
+        }
+        List<float[]> queries = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            queries.add(randomVector(random, 8));
+        }
+
+        double recall = vectorStore.measureRecall(queries, 5);
+
+        assertTrue(recall >= 0.9, "Recall@5 should be high for a small graph with large ef: " + recall);
+    }
+
+    @Test
+    void measureRecall_withoutIndex_returnsOne() {
+        vectorStore.addDocuments(Arrays.asList(doc1, doc2));
+        assertEquals(1.0, vectorStore.measureRecall(List.of(new float[]{0.1f, 0.2f, 0.3f}), 1));
+    }
+
+    /** A vector scattered around a center. */
+    private static float[] nearby(Random random, float[] center) {
+        float[] vector = randomVector(random, center.length);
+        for (int i = 0; i < vector.length; i++) {
+            vector[i] = center[i] + 0.5f * vector[i];
+        }
+        return vector;
+    }
+
+    private static float[] randomVector(Random random, int dimension) {
+        float[] vector = new float[dimension];
+        for (int i = 0; i < dimension; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+
+    @Test
+    void withNormalizedVectors_scoresMatchCosineSemantics() {
+        MemoryVectorStore plainStore = new MemoryVectorStore();
+        plainStore.addDocuments(Arrays.asList(doc1, doc2));
+        float[] query = {0.15f, 0.25f, 0.6f};
+        List<Float> expectedScores = plainStore.similaritySearchVector(query, 3).stream().map(Document::getScore).toList();
+
+        vectorStore.addDocument(doc1);
+        vectorStore.withNormalizedVectors(); // Normalizes existing documents
+        vectorStore.addDocument(doc2);       // and new ones
+        List<Document> results = vectorStore.similaritySearchVector(query, 3);
+
+        assertTrue(vectorStore.isNormalizedVectorsEnabled());
+        assertEquals(List.of("doc1", "doc2"), results.stream().map(Document::getId).toList());
+        for (int i = 0; i < results.size(); i++) {
+            assertEquals(expectedScores.get(i), results.get(i).getScore(), 1e-6f);
+        }
+        assertEquals(List.of(0.1, 0.2, 0.7), doc1.getEmbedding()); // Stored embedding is not normalized in place
+    }
+
+    @Test
+    void withNormalizedVectors_zeroVectors_scoreZero() {
+        Document zeroDoc = new Document("All zeros");
+        zeroDoc.setEmbeddingVector(new float[3]);
+        vectorStore.withNormalizedVectors().addDocuments(Arrays.asList(doc1, zeroDoc));
+
+        List<Document> results = vectorStore.similaritySearchVector(new float[]{0.1f, 0.2f, 0.7f}, 2);
+        assertSame(zeroDoc, results.get(1));
+        assertEquals(0.0f, zeroDoc.getScore(), 0.0f); // Distance 1.0, as for cosineDistance
+
+        results = vectorStore.similaritySearchVector(new float[3], 2);
+        assertEquals(0.0f, results.get(0).getScore(), 0.0f);
+        assertEquals(0.0f, results.get(1).getScore(), 0.0f);
+    }
+
+    @Test
+    void withNormalizedVectors_andHnswIndex_findsNearestDocument() {
+        vectorStore.withHnswIndex().addDocuments(Arrays.asList(doc1, doc2, doc3));
+        vectorStore.withNormalizedVectors(); // Rebuilds the index with cached norms
+
+        List<Document> results = vectorStore.similaritySearchVector(new float[]{0.7f, 0.2f, 0.1f}, 1);
+        assertEquals("doc2", results.get(0).getId());
+        assertEquals(1.0f, results.get(0).getScore(), 1e-6f);
+    }
+
+    @Test
+    void withParallelSearch_matchesSequentialSearch() {
+        Random random = new Random(5);
+        List<Document> docs = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            Document doc = new Document("doc " + i);
+            doc.setEmbeddingVector(randomVector(random, 16));
+            docs.add(doc);
+        }
+        vectorStore.addDocuments(docs);
+        float[] query = randomVector(random, 16);
+
+        vectorStore.withParallelSearch(Integer.MAX_VALUE);
+        List<String> sequentialIds = vectorStore.similaritySearchVector(query, 10).stream().map(Document::getId).toList();
+        ForkJoinPool pool = new ForkJoinPool(3);
+        try {
+            vectorStore.withParallelSearch(1, pool);
+            List<String> parallelIds = vectorStore.similaritySearchVector(query, 10).stream().map(Document::getId).toList();
+            assertEquals(sequentialIds, parallelIds);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void withParallelSearch_nonPositiveThreshold_throwsIllegalArgumentException() {
+        assertThrows(IllegalArgumentException.class, () -> vectorStore.withParallelSearch(0));
+    }
+
+    @Test
+    void deleteDocuments_removesFromSearchAndListing() {
+        vectorStore.addDocuments(Arrays.asList(doc1, doc2, doc3));
+
+        vectorStore.deleteDocuments(List.of("doc1", "unknown"));
+
+        assertEquals(List.of(doc2, doc3), vectorStore.getAllDocuments());
+        List<String> ids = vectorStore.similaritySearchVector(new float[]{0.1f, 0.2f, 0.7f}, 3).stream().map(Document::getId).toList();
+        assertEquals(List.of("doc3", "doc2"), ids);
+        assertEquals(1, vectorStore.getDeletedCount());
+    }
+
+    @Test
+    void deleteDocuments_allDocuments_searchReturnsEmptyList() {
+        vectorStore.addDocuments(Arrays.asList(doc1, doc2));
+        vectorStore.deleteDocuments(List.of("doc1", "doc2"));
+        assertTrue(vectorStore.similaritySearchVector(new float[]{0.1f, 0.2f, 0.7f}, 2).isEmpty());
+    }
+
+    @Test
+    void upsertDocuments_replacesExistingAndAddsNew() {
+        vectorStore.addDocuments(Arrays.asList(doc1, doc2));
+        Document newDoc1 = new Document("Apples, revised.");
+        newDoc1.setId("doc1");
+        newDoc1.setEmbedding(Arrays.asList(0.7, 0.2, 0.1));
+
+        vectorStore.upsertDocuments(Arrays.asList(newDoc1, doc3));
+
+        assertEquals(List.of(doc2, newDoc1, doc3), vectorStore.getAllDocuments());
+        List<Document> results = vectorStore.similaritySearchVector(new float[]{0.7f, 0.2f, 0.1f}, 2);
+        assertEquals(List.of("doc2", "doc1"), results.stream().map(Document::getId).toList());
+        assertSame(newDoc1, results.get(1));
+    }
+
+    @Test
+    void upsertDocuments_repeatedIdInList_lastOneWins() {
+        Document first = new Document("first");
+        first.setId("same");
+        first.setEmbedding(Arrays.asList(1.0, 0.0, 0.0));
+        Document second = new Document("second");
+        second.setId("same");
+        second.setEmbedding(Arrays.asList(0.0, 1.0, 0.0));
+
+        vectorStore.upsertDocuments(Arrays.asList(first, second));
+
+        assertEquals(List.of(second), vectorStore.getAllDocuments());
+    }
+
+    @Test
+    void deleteDocuments_withHnswIndex_tombstonedNodesAreNotReturned() {
+        Random random = new Random(3);
+        vectorStore.withHnswIndex(8, 50, 50);
+        List<Document> docs = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            Document doc = new Document("doc " + i);
+            doc.setId("id" + i);
+            doc.setEmbeddingVector(randomVector(random, 8));
+            docs.add(doc);
+        }
+        vectorStore.addDocuments(docs);
+        float[] query = docs.get(42).getEmbeddingVector();
+        assertEquals("id42", vectorStore.similaritySearchVector(query, 1).get(0).getId());
+
+        vectorStore.deleteDocuments(List.of("id42"));
+
+        List<Document> results = vectorStore.similaritySearchVector(query, 10);
+        assertEquals(10, results.size());
+        assertTrue(results.stream().noneMatch(doc -> doc.getId().equals("id42")));
+    }
+
+    @Test
+    void compact_reclaimsDeletedDocumentsAndKeepsResults() {
+        vectorStore.withHnswIndex().withNormalizedVectors().addDocuments(Arrays.asList(doc1, doc2, doc3));
+        vectorStore.deleteDocuments(List.of("doc2"));
+        float[] query = {0.7f, 0.2f, 0.1f};
+        List<String> before = vectorStore.similaritySearchVector(query, 3).stream().map(Document::getId).toList();
+
+        assertEquals(1, vectorStore.compact());
+
+        assertEquals(0, vectorStore.getDeletedCount());
+        assertEquals(List.of(doc1, doc3), vectorStore.getAllDocuments());
+        assertEquals(before, vectorStore.similaritySearchVector(query, 3).stream().map(Document::getId).toList());
+        // The ID index survives compaction: deletes still find the moved documents.
+        vectorStore.deleteDocuments(List.of("doc3"));
+        assertEquals(List.of(doc1), vectorStore.getAllDocuments());
+    }
+
+    @Test
+    void withAutoCompaction_compactsInBackgroundOnceThresholdIsReached() {
+        vectorStore.withAutoCompaction(0.5, 2).addDocuments(Arrays.asList(doc1, doc2, doc3));
+
+        vectorStore.deleteDocuments(List.of("doc1"));
+        vectorStore.pendingCompaction().join();
+        assertEquals(1, vectorStore.getDeletedCount()); // Below both thresholds
+
+        vectorStore.deleteDocuments(List.of("doc2"));
+        vectorStore.pendingCompaction().join();
+        assertEquals(0, vectorStore.getDeletedCount());
+        assertEquals(List.of(doc3), vectorStore.getAllDocuments());
+    }
+
+    @Test
+    void withAutoCompaction_nonPositiveArguments_throwIllegalArgumentException() {
+        assertThrows(IllegalArgumentException.class, () -> vectorStore.withAutoCompaction(0.0, 1));
+        assertThrows(IllegalArgumentException.class, () -> vectorStore.withAutoCompaction(0.5, 0));
+    }
+
+    @Test
+    void similaritySearchVector_withFilter_ranksOnlyMatchingDocuments() {
+        doc1.addMetadata("category", "fruit");
+        doc1.addMetadata("year", 2021);
+        doc2.addMetadata("category", "fruit");
+        doc2.addMetadata("year", 2023);
+        doc3.addMetadata("category", "recipe");
+        doc3.addMetadata("year", 2023L);
+        vectorStore.addDocuments(Arrays.asList(doc1, doc2, doc3));
+        float[] query = {0.3f, 0.3f, 0.4f}; // Nearest to doc3
+
+        List<Document> fruit = vectorStore.similaritySearchVector(query, 3, MetadataFilter.eq("category", "fruit"));
+        assertEquals(List.of("doc1", "doc2"), fruit.stream().map(Document::getId).toList());
+
+        List<Document> recent = vectorStore.similaritySearchVector(query, 3, MetadataFilter.range("year", 2022, null));
+        assertEquals(List.of("doc3", "doc2"), recent.stream().map(Document::getId).toList());
+
+        MetadataFilter both = MetadataFilter.and(MetadataFilter.in("category", "fruit", "vegetable"), MetadataFilter.eq("year", 2023.0));
+        assertEquals(List.of(doc2), vectorStore.similaritySearchVector(query, 3, both));
+        assertTrue(vectorStore.similaritySearchVector(query, 3, MetadataFilter.eq("category", "none")).isEmpty());
+        assertEquals(3, vectorStore.similaritySearchVector(query, 3, null).size());
+    }
+
+    @Test
+    void similaritySearchVector_withFilterAndHnswIndex_matchesFilteredExactSearch() {
+        Random random = new Random(11);
+        MemoryVectorStore exactStore = new MemoryVectorStore();
+        vectorStore.withHnswIndex(8, 100, 40);
+        for (int i = 0; i < 2000; i++) {
+            Document doc = new Document("doc " + i);
+            doc.setId("id" + i);
+            doc.setEmbeddingVector(randomVector(random, 16));
+            doc.addMetadata("bucket", i % 4);
+            doc.addMetadata("shard", i % 200);
+            vectorStore.addDocument(doc);
+            exactStore.addDocument(doc);
+        }
+        // 1500 candidates: filtered graph search. 10 candidates: scanned exactly (10² <= efSearch * 2M * size).
+        for (MetadataFilter filter : List.of(MetadataFilter.range("bucket", 0, 2), MetadataFilter.eq("shard", 7))) {
+            int hits = 0;
+            for (int q = 0; q < 20; q++) {
+                float[] query = randomVector(random, 16);
+                List<Document> approximate = vectorStore.similaritySearchVector(query, 5, filter);
+                List<String> exact = exactStore.similaritySearchVector(query, 5, filter).stream().map(Document::getId).toList();
+                assertEquals(5, approximate.size());
+                for (Document doc : approximate) {
+                    assertTrue(filter.test(doc.getMetadata()));
+                    if (exact.contains(doc.getId())) {
+                        hits++;
+                    }
+                }
+            }
+            assertTrue(hits >= 90, "Filtered recall too low for " + filter + ": " + hits + "/100");
+        }
+    }
+
+    @Test
+    void similaritySearchVector_withFilter_skipsDeletedDocumentsAndSurvivesCompaction() {
+        doc1.addMetadata("tag", "keep");
+        doc2.addMetadata("tag", "keep");
+        doc3.addMetadata("tag", "other");
+        vectorStore.addDocuments(Arrays.asList(doc1, doc2, doc3));
+        MetadataFilter keep = MetadataFilter.eq("tag", "keep");
+
+        vectorStore.deleteDocuments(List.of("doc1"));
+        assertEquals(List.of(doc2), vectorStore.similaritySearchVector(new float[]{0.1f, 0.2f, 0.7f}, 3, keep));
+
+        vectorStore.compact();
+        assertEquals(List.of(doc2), vectorStore.similaritySearchVector(new float[]{0.1f, 0.2f, 0.7f}, 3, keep));
+        vectorStore.clear();
+        assertTrue(vectorStore.similaritySearchVector(new float[]{0.1f, 0.2f, 0.7f}, 3, keep).isEmpty());
+    }
+
+    @Test
+    void similaritySearchBatchVector_matchesIndividualSearches() {
+        Random random = new Random(17);
+        List<Document> docs = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            Document doc = new Document("doc " + i);
+            doc.setId("id" + i);
+            doc.setEmbeddingVector(randomVector(random, 24));
+            docs.add(doc);
+        }
+        vectorStore.addDocuments(docs);
+        vectorStore.deleteDocuments(List.of("id3", "id4"));
+        List<float[]> queries = new ArrayList<>();
+        for (int q = 0; q < 37; q++) {
+            queries.add(randomVector(random, 24));
+        }
+
+        for (boolean normalized : new boolean[]{false, true}) {
+            MemoryVectorStore store = normalized ? vectorStore.withNormalizedVectors() : vectorStore;
+            List<List<Document>> batch = store.similaritySearchBatchVector(queries, 5);
+            assertEquals(queries.size(), batch.size());
+            for (int q = 0; q < queries.size(); q++) {
+                List<Document> batchResults = batch.get(q);
+                List<Document> single = store.similaritySearchVector(queries.get(q), 5);
+                assertEquals(single.stream().map(Document::getId).toList(), batchResults.stream().map(Document::getId).toList());
+                for (int i = 0; i < single.size(); i++) {
+                    assertEquals(single.get(i).getScore(), batchResults.get(i).getScore(), 1e-5);
+                }
+            }
+        }
+    }
+
+    @Test
+    void similaritySearchBatch_sameDocumentForSeveralQueries_eachResultKeepsItsOwnScore() {
+        vectorStore.addDocuments(Arrays.asList(doc1, doc2, doc3));
+
+        List<List<Document>> results = vectorStore.similaritySearchBatch(
+                List.of(Arrays.asList(0.1, 0.2, 0.7), Arrays.asList(0.7, 0.2, 0.1)), 3);
+
+        assertEquals(List.of("doc1", "doc3", "doc2"), results.get(0).stream().map(Document::getId).toList());
+        assertEquals(List.of("doc2", "doc3", "doc1"), results.get(1).stream().map(Document::getId).toList());
+        assertEquals(1.0f, results.get(0).get(0).getScore(), 1e-5);
+        assertEquals(1.0f, results.get(1).get(0).getScore(), 1e-5);
+        assertTrue(results.get(0).get(2).getScore() < 1.0f); // doc2 ranked last for the first query
+    }
+
+    @Test
+    void similaritySearchBatchVector_withHnswIndexAndEdgeCases() {
+        vectorStore.withHnswIndex().addDocuments(Arrays.asList(doc1, doc2, doc3));
+        List<List<Document>> results = vectorStore.similaritySearchBatchVector(
+                List.of(new float[]{0.1f, 0.2f, 0.7f}, new float[]{0.7f, 0.2f, 0.1f}), 1);
+        assertEquals("doc1", results.get(0).get(0).getId());
+        assertEquals("doc2", results.get(1).get(0).getId());
+
+        assertTrue(vectorStore.similaritySearchBatchVector(List.of(), 3).isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> vectorStore.similaritySearchBatchVector(List.of(new float[3]), 0));
+        assertThrows(VectorStoreException.class,
+                () -> vectorStore.similaritySearchBatchVector(List.of(new float[3], new float[4]), 1));
+    }
+
+    @Test
+    void withScalarQuantization_reportsRecallAndReturnsFullPrecisionScores() {
+        Random random = new Random(23);
+        MemoryVectorStore exactStore = new MemoryVectorStore();
+        for (int i = 0; i < 3000; i++) {
+            Document doc = new Document("doc " + i);
+            doc.setId("id" + i);
+            doc.setEmbeddingVector(randomVector(random, 32));
+            vectorStore.addDocument(doc);
+            exactStore.addDocument(doc);
+        }
+        vectorStore.withScalarQuantization(MemoryVectorStore.DEFAULT_OVERSAMPLING);
+        assertTrue(vectorStore.isScalarQuantizationEnabled());
+        List<float[]> queries = new ArrayList<>();
+        for (int q = 0; q < 20; q++) {
+            queries.add(randomVector(random, 32));
+        }
+
+        assertTrue(vectorStore.measureRecall(queries, 10) >= 0.95);
+        for (float[] query : queries) {
+            List<Document> quantized = vectorStore.similaritySearchVector(query, 10);
+            List<Document> exact = exactStore.similaritySearchVector(query, 10);
+            // Shortlisted documents are re-scored with full precision, so shared results have identical scores.
+            for (Document doc : quantized) {
+                exact.stream().filter(e -> e.getId().equals(doc.getId()))
+                        .forEach(e -> assertEquals(e.getScore(), doc.getScore(), 1e-6));
+            }
+        }
+        assertEquals(1.0, new MemoryVectorStore().measureRecall(queries, 10));
+    }
+
+    @Test
+    void withScalarQuantization_embeddingsOnDisk_searchDeleteCompactAndClear() throws Exception {
+        List<float[]> calibration = List.of(new float[]{0f, 0f, 0f}, new float[]{1f, 1f, 1f});
+        vectorStore.withScalarQuantization(ScalarQuantizer.calibrate(calibration), 2, tempDir);
+        vectorStore.addDocuments(Arrays.asList(doc1, doc2, doc3));
+
+        List<Document> results = vectorStore.similaritySearchVector(new float[]{0.1f, 0.2f, 0.7f}, 3);
+        assertEquals(List.of("doc1", "doc3", "doc2"), results.stream().map(Document::getId).toList());
+        assertArrayEquals(doc1.getEmbeddingVector(), results.get(0).getEmbeddingVector());
+        assertEquals(1.0f, results.get(0).getScore(), 1e-6);
+        Document listed = vectorStore.getAllDocuments().stream().filter(d -> d.getId().equals("doc2")).findFirst().orElseThrow();
+        assertArrayEquals(doc2.getEmbeddingVector(), listed.getEmbeddingVector());
+
+        vectorStore.deleteDocuments(List.of("doc1"));
+        assertEquals(1, vectorStore.compact());
+        assertEquals(List.of("doc3", "doc2"),
+                vectorStore.similaritySearchVector(new float[]{0.1f, 0.2f, 0.7f}, 3).stream().map(Document::getId).toList());
+        Document wrongDimension = new Document("wrong dimension");
+        wrongDimension.setEmbeddingVector(new float[]{1f, 2f});
+        assertThrows(VectorStoreException.class, () -> vectorStore.addDocument(wrongDimension));
+        assertThrows(VectorStoreException.class, () -> vectorStore.similaritySearchVector(new float[]{1f, 2f}, 1));
+
+        vectorStore.clear();
+        assertTrue(vectorStore.getAllDocuments().isEmpty());
+        vectorStore.addDocument(doc1);
+        assertEquals("doc1", vectorStore.similaritySearchVector(new float[]{0.1f, 0.2f, 0.7f}, 1).get(0).getId());
+
+        vectorStore.close();
+        assertEquals(0, Files.list(tempDir).count());
+    }
+
+    @Test
+    void withBinaryQuantization_hammingPrefilterKeepsRecallAndExactScores() {
+        Random random = new Random(29);
+        // Clustered vectors, as real embeddings are; isotropic noise is the worst case for sign bits.
+        List<float[]> centers = new ArrayList<>();
+        for (int c = 0; c < 10; c++) {
+            centers.add(randomVector(random, 256));
+        }
+        MemoryVectorStore exactStore = new MemoryVectorStore();
+        for (int i = 0; i < 3000; i++) {
+            Document doc = new Document("doc " + i);
+            doc.setId("id" + i);
+            doc.setEmbeddingVector(nearby(random, centers.get(i % centers.size())));
+            doc.addMetadata("even", i % 2 == 0);
+            vectorStore.addDocument(doc);
+            exactStore.addDocument(doc);
+        }
+        vectorStore.withScalarQuantization(4).withBinaryQuantization(MemoryVectorStore.DEFAULT_BINARY_OVERSAMPLING);
+        assertTrue(vectorStore.isBinaryQuantizationEnabled());
+        assertFalse(vectorStore.isScalarQuantizationEnabled());
+        List<float[]> queries = new ArrayList<>();
+        for (int q = 0; q < 20; q++) {
+            queries.add(nearby(random, centers.get(q % centers.size())));
+        }
+
+        assertTrue(vectorStore.measureRecall(queries, 10) >= 0.9);
+        MetadataFilter even = MetadataFilter.eq("even", true);
+        for (float[] query : queries) {
+            List<Document> binary = vectorStore.similaritySearchVector(query, 5, even);
+            assertEquals(5, binary.size());
+            List<Document> exact = exactStore.similaritySearchVector(query, 50, even);
+            for (Document doc : binary) {
+                assertTrue((Boolean) doc.getMetadata().get("even"));
+                exact.stream().filter(e -> e.getId().equals(doc.getId()))
+                        .forEach(e -> assertEquals(e.getScore(), doc.getScore(), 1e-6));
+            }
+        }
+
+        vectorStore.deleteDocuments(List.of("id0", "id2"));
+        vectorStore.compact();
+        vectorStore.recalibrateQuantization();
+        assertEquals(2998, vectorStore.getAllDocuments().size());
+        assertThrows(VectorStoreException.class, () -> vectorStore.withBinaryQuantization(BinaryQuantizer.signs(8), 20, null));
+    }
+
+    @Test
+    void withMatryoshkaSearch_prefixFirstPassKeepsRecallAndExactScores() {
+        Random random = new Random(31);
+        // Variance decaying over the dimensions, as in Matryoshka-trained embeddings.
+        List<float[]> centers = new ArrayList<>();
+        for (int c = 0; c < 10; c++) {
+            centers.add(randomVector(random, 128));
+        }
+        MemoryVectorStore exactStore = new MemoryVectorStore();
+        for (int i = 0; i < 2000; i++) {
+            Document doc = new Document("doc " + i);
+            doc.setId("id" + i);
+            doc.setEmbeddingVector(decaying(nearby(random, centers.get(i % centers.size()))));
+            vectorStore.addDocument(doc);
+            exactStore.addDocument(doc);
+        }
+        vectorStore.withMatryoshkaSearch(32, MemoryVectorStore.DEFAULT_MATRYOSHKA_OVERSAMPLING);
+        assertTrue(vectorStore.isMatryoshkaSearchEnabled());
+        assertFalse(vectorStore.isScalarQuantizationEnabled());
+        List<float[]> queries = new ArrayList<>();
+        for (int q = 0; q < 20; q++) {
+            queries.add(decaying(nearby(random, centers.get(q % centers.size()))));
+        }
+
+        assertTrue(vectorStore.measureRecall(queries, 10) >= 0.9);
+        for (float[] query : queries) {
+            List<Document> prefixed = vectorStore.similaritySearchVector(query, 5);
+            List<Document> exact = exactStore.similaritySearchVector(query, 50);
+            for (Document doc : prefixed) {
+                exact.stream().filter(e -> e.getId().equals(doc.getId()))
+                        .forEach(e -> assertEquals(e.getScore(), doc.getScore(), 1e-6));
+            }
+        }
+
+        vectorStore.deleteDocuments(List.of("id0"));
+        vectorStore.compact();
+        Document added = new Document("added");
+        added.setId("added");
+        added.setEmbeddingVector(queries.get(0));
+        vectorStore.addDocument(added);
+        assertEquals("added", vectorStore.similaritySearchVector(queries.get(0), 1).get(0).getId());
+        assertThrows(VectorStoreException.class, () -> vectorStore.similaritySearchVector(new float[32], 1));
+        assertThrows(IllegalArgumentException.class, () -> vectorStore.withMatryoshkaSearch(128, 10));
+        assertThrows(IllegalStateException.class, () -> new MemoryVectorStore().withMatryoshkaSearch(32, 10));
+    }
+
+    /** Scales dimension {@code i} by {@code 1 / sqrt(1 + i)}, so the leading dimensions dominate. */
+    private static float[] decaying(float[] vector) {
+        for (int i = 0; i < vector.length; i++) {
+            vector[i] /= (float) Math.sqrt(1 + i);
+        }
+        return vector;
+    }
+
+    @Test
+    void withScalarQuantization_invalidConfigurations_throw() {
+        assertThrows(IllegalStateException.class, () -> vectorStore.withScalarQuantization(4));
+        vectorStore.addDocument(doc1);
+        assertThrows(IllegalArgumentException.class, () -> vectorStore.withScalarQuantization(0));
+        assertThrows(IllegalStateException.class, () -> new MemoryVectorStore().withHnswIndex().withScalarQuantization(
+                ScalarQuantizer.calibrate(List.of(new float[]{1f, 2f, 3f})), 4));
+        assertThrows(VectorStoreException.class, () -> vectorStore.withScalarQuantization(
+                ScalarQuantizer.calibrate(List.of(new float[]{1f, 2f})), 4));
+
+        vectorStore.withScalarQuantization(4);
+        assertThrows(IllegalStateException.class, () -> vectorStore.withHnswIndex());
+        assertThrows(IllegalStateException.class, () -> vectorStore.withNormalizedVectors());
+        vectorStore.addDocument(doc2);
+        vectorStore.recalibrateQuantization();
+        assertEquals("doc2", vectorStore.similaritySearchVector(new float[]{0.7f, 0.2f, 0.1f}, 1).get(0).getId());
+    }
+
+    @Test
+    void lexicalSearch_findsExactIdentifiersAcrossDeleteCompactAndClear() {
+        assertThrows(UnsupportedOperationException.class, () -> vectorStore.lexicalSearch("apple", 3));
+        Document errorDoc = new Document("Error ERR-4021 means the upload quota is exhausted.");
+        errorDoc.setId("err");
+        errorDoc.setEmbedding(Arrays.asList(0.3, 0.3, 0.4));
+        vectorStore.addDocuments(Arrays.asList(doc1, doc2));
+        vectorStore.withLexicalIndex().withAutoCompaction(2.0, 1); // Indexes the documents already stored
+        vectorStore.addDocuments(Arrays.asList(doc3, errorDoc));
+        assertTrue(vectorStore.isLexicalIndexEnabled());
+
+        List<Document> results = vectorStore.lexicalSearch("what does err-4021 mean?", 3);
+        assertEquals("err", results.get(0).getId());
+        assertTrue(results.get(0).getScore() > 0.0f);
+        assertNotSame(errorDoc, results.get(0), "Lexical results are copies of the stored documents");
+        assertEquals(0.0f, errorDoc.getScore());
+
+        vectorStore.deleteDocuments(List.of("err"));
+        assertTrue(vectorStore.lexicalSearch("ERR-4021", 3).isEmpty());
+        vectorStore.upsertDocuments(List.of(errorDoc));
+        vectorStore.compact();
+        assertEquals(List.of("err"), vectorStore.lexicalSearch("ERR-4021", 3).stream().map(Document::getId).collect(Collectors.toList()));
+
+        vectorStore.clear();
+        assertTrue(vectorStore.lexicalSearch("ERR-4021", 3).isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> vectorStore.lexicalSearch("ERR-4021", 0));
+    }
+
+    @Test
+    void snapshotAndRestore_roundTripLiveDocumentsIntoAnIndexedStore() throws Exception {
+        doc1.addMetadata("lang", "en");
+        doc1.addMetadata("year", 2024);
+        doc1.setSourceName("fruit.txt");
+        vectorStore.addDocuments(Arrays.asList(doc1, doc2, doc3));
+        vectorStore.deleteDocuments(List.of("doc2"));
+        Path snapshot = tempDir.resolve("store.snapshot");
+        vectorStore.snapshot(snapshot);
+
+        MemoryVectorStore restored = new MemoryVectorStore().withHnswIndex().withLexicalIndex();
+        restored.addDocument(doc2); // Replaced by the restore
+        restored.restore(snapshot);
+
+        List<Document> documents = restored.getAllDocuments();
+        assertEquals(List.of("doc1", "doc3"), documents.stream().map(Document::getId).collect(Collectors.toList()));
+        Document first = documents.get(0);
+        assertEquals(doc1.getContent(), first.getContent());
+        assertEquals("fruit.txt", first.getSourceName());
+        assertEquals("en", first.getMetadata().get("lang"));
+        assertEquals(2024, first.getMetadata().get("year"));
+        assertArrayEquals(doc1.getEmbeddingVector(), first.getEmbeddingVector());
+        assertEquals("doc1", restored.similaritySearchVector(new float[]{0.1f, 0.2f, 0.7f}, 1, MetadataFilter.eq("lang", "en")).get(0).getId());
+        assertEquals("doc3", restored.lexicalSearch("cherries", 1).get(0).getId());
+        assertFalse(Files.exists(tempDir.resolve("store.snapshot.tmp")));
+    }
+
+    @Test
+    void restore_rejectsCorruptedAndTruncatedSnapshotsWithoutChangingTheStore() throws Exception {
+        vectorStore.addDocuments(Arrays.asList(doc1, doc2, doc3));
+        Path snapshot = tempDir.resolve("store.snapshot");
+        vectorStore.snapshot(snapshot);
+        byte[] bytes = Files.readAllBytes(snapshot);
+
+        MemoryVectorStore target = new MemoryVectorStore();
+        target.addDocument(doc4WithEmbedding());
+        for (int offset : new int[]{MemoryStoreSnapshot.HEADER_BYTES + 5, bytes.length - 3, 9}) {
+            byte[] corrupted = bytes.clone();
+            corrupted[offset] ^= 0x10;
+            Files.write(snapshot, corrupted);
+            assertThrows(VectorStoreException.class, () -> target.restore(snapshot), "Flipped byte at " + offset);
+        }
+        Files.write(snapshot, Arrays.copyOf(bytes, bytes.length - 10));
+        assertThrows(VectorStoreException.class, () -> target.restore(snapshot));
+        assertThrows(VectorStoreException.class, () -> target.restore(tempDir.resolve("missing.snapshot")));
+        assertEquals(List.of("doc4"), target.getAllDocuments().stream().map(Document::getId).collect(Collectors.toList()));
+
+        Files.write(snapshot, bytes);
+        target.restore(snapshot);
+        assertEquals(3, target.getAllDocuments().size());
+    }
+
+    @Test
+    void snapshot_readsEmbeddingsBackFromDisk_andRestoreChecksTheQuantizedDimension() throws Exception {
+        vectorStore.addDocuments(Arrays.asList(doc1, doc2, doc3));
+        vectorStore.withScalarQuantization(null, 2, tempDir);
+        Path snapshot = tempDir.resolve("quantized.snapshot");
+        vectorStore.snapshot(snapshot);
+
+        MemoryVectorStore plain = new MemoryVectorStore();
+        plain.restore(snapshot);
+        assertArrayEquals(doc2.getEmbeddingVector(), plain.getAllDocuments().get(1).getEmbeddingVector());
+
+        Document wide = new Document("Four dimensions");
+        wide.setEmbeddingVector(new float[]{1f, 0f, 0f, 0f});
+        MemoryVectorStore other = new MemoryVectorStore();
+        other.addDocument(wide);
+        other.snapshot(snapshot);
+        assertThrows(VectorStoreException.class, () -> vectorStore.restore(snapshot));
+        assertEquals(3, vectorStore.getAllDocuments().size());
+        vectorStore.close();
+    }
+
+    @Test
+    void asyncMethods_runOnTheConfiguredExecutor() throws Exception {
+        AtomicInteger tasks = new AtomicInteger();
+        Executor counting = runnable -> {
+            tasks.incrementAndGet();
+            new Thread(runnable).start();
+        };
+        vectorStore.withAsyncExecutor(counting);
+        assertSame(counting, vectorStore.asyncExecutor());
+
+        vectorStore.addDocumentsAsync(Arrays.asList(doc1, doc2, doc3)).get(5, TimeUnit.SECONDS);
+        List<Double> query = Arrays.asList(0.1, 0.2, 0.7);
+        List<Document> results = vectorStore.similaritySearchAsync(query, 2).get(5, TimeUnit.SECONDS);
+        assertEquals(2, tasks.get());
+        assertEquals(vectorStore.similaritySearch(query, 2).stream().map(Document::getId).collect(Collectors.toList()),
+                     results.stream().map(Document::getId).collect(Collectors.toList()));
+
+        ExecutionException e = assertThrows(ExecutionException.class,
+                () -> vectorStore.similaritySearchAsync(query, 0).get(5, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof IllegalArgumentException);
+        assertThrows(NullPointerException.class, () -> vectorStore.withAsyncExecutor(null));
+    }
+
+    private Document doc4WithEmbedding() {
+        doc4.setEmbedding(Arrays.asList(0.5, 0.5, 0.0));
+        return doc4;
+    }
+
     @Test
     void clear_emptiesTheStore() {
         vectorStore.addDocuments(Arrays.asList(doc1, doc2));
@@ -0,0 +1,262 @@
+package com.skanga.rag.vectorstore;
+
+import com.skanga.rag.Document;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShardedVectorStoreTests {
+
+    private static Document doc(String id, float... embedding) {
+        Document doc = new Document("Content of " + id);
+        doc.setId(id);
+        doc.setEmbeddingVector(embedding);
+        return doc;
+    }
+
+    private static List<String> ids(List<Document> documents) {
+        return documents.stream().map(Document::getId).collect(Collectors.toList());
+    }
+
+    private static List<Document> randomDocuments(int count, int dimension, long seed) {
+        Random random = new Random(seed);
+        List<Document> documents = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            float[] vector = new float[dimension];
+            for (int d = 0; d < dimension; d++) {
+                vector[d] = random.nextFloat() * 2 - 1;
+            }
+            documents.add(doc("id" + i, vector));
+        }
+        return documents;
+    }
+
+    /** A shard that answers searches with a fixed list, after waiting for a latch. */
+    private static class StubShard implements VectorStore {
+        private final List<Document> answer;
+        private final CountDownLatch release;
+        private final RuntimeException failure;
+
+        StubShard(List<Document> answer, CountDownLatch release, RuntimeException failure) {
+            this.answer = answer;
+            this.release = release;
+            this.failure = failure;
+        }
+
+        @Override
+        public void addDocument(Document document) {}
+
+        @Override
+        public void addDocuments(List<Document> documents) {}
+
+        @Override
+        public List<Document> similaritySearch(List<Double> queryEmbedding, int k) {
+            if (release != null) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            return answer;
+        }
+
+        @Override
+        public Executor asyncExecutor() {
+            // A thread per call, so a shard blocked on its latch cannot starve the others.
+            return runnable -> new Thread(runnable).start();
+        }
+    }
+
+    @Test
+    void similaritySearch_matchesSingleStoreAcrossShards() {
+        List<Document> documents = randomDocuments(600, 8, 7);
+        MemoryVectorStore single = new MemoryVectorStore();
+        single.addDocuments(documents);
+        List<MemoryVectorStore> shards = List.of(new MemoryVectorStore(), new MemoryVectorStore(), new MemoryVectorStore());
+        ShardedVectorStore sharded = new ShardedVectorStore(shards);
+        sharded.addDocuments(documents);
+
+        for (MemoryVectorStore shard : shards) {
+            int size = shard.getAllDocuments().size();
+            assertTrue(size > 150 && size < 250, "Shard holds " + size + " of 600 documents");
+        }
+        List<float[]> queries = randomDocuments(5, 8, 11).stream().map(Document::getEmbeddingVector).collect(Collectors.toList());
+        for (float[] query : queries) {
+            assertEquals(ids(single.similaritySearchVector(query, 10)), ids(sharded.similaritySearchVector(query, 10)));
+        }
+        List<List<Document>> batch = sharded.similaritySearchBatchVector(queries, 4);
+        for (int q = 0; q < queries.size(); q++) {
+            assertEquals(ids(single.similaritySearchVector(queries.get(q), 4)), ids(batch.get(q)));
+        }
+    }
+
+    @Test
+    void deleteAndUpsert_areRoutedToTheShardOfEachId() {
+        List<MemoryVectorStore> shards = List.of(new MemoryVectorStore(), new MemoryVectorStore());
+        ShardedVectorStore sharded = new ShardedVectorStore(shards);
+        sharded.addDocuments(List.of(doc("a", 1f, 0f), doc("b", 0f, 1f), doc("c", 1f, 1f)));
+        int shardOfA = sharded.shardIndex("a");
+        assertEquals(shardOfA, new ShardedVectorStore(List.of(new MemoryVectorStore(), new MemoryVectorStore())).shardIndex("a"));
+        assertTrue(ids(shards.get(shardOfA).getAllDocuments()).contains("a"));
+
+        sharded.upsertDocuments(List.of(doc("a", 0f, 1f)));
+        sharded.deleteDocuments(List.of("b"));
+
+        assertEquals(1, shards.get(shardOfA).getAllDocuments().stream().filter(d -> d.getId().equals("a")).count());
+        assertEquals(List.of("a", "c"), ids(sharded.similaritySearchVector(new float[]{0f, 1f}, 5)));
+    }
+
+    @Test
+    void lexicalSearch_mergesShardsByScore() {
+        List<MemoryVectorStore> shards = List.of(new MemoryVectorStore().withLexicalIndex(), new MemoryVectorStore().withLexicalIndex());
+        ShardedVectorStore sharded = new ShardedVectorStore(shards);
+        List<Document> documents = randomDocuments(20, 2, 3);
+        documents.get(7).setContent("Error ERR-4021: quota exhausted");
+        sharded.addDocuments(documents);
+
+        assertEquals("id7", sharded.lexicalSearch("ERR-4021", 3).get(0).getId());
+    }
+
+    @Test
+    void similaritySearch_slowShard_isLeftOutAfterTimeoutUnlessAllShardsAreRequired() {
+        CountDownLatch release = new CountDownLatch(1);
+        Document fast = doc("fast", 1f);
+        fast.setScore(0.5f);
+        try {
+            ShardedVectorStore sharded = new ShardedVectorStore(List.of(
+                    new StubShard(List.of(fast), null, null),
+                    new StubShard(List.of(), release, null)))
+                    .withShardTimeout(Duration.ofMillis(50));
+
+            long start = System.nanoTime();
+            assertEquals(List.of("fast"), ids(sharded.similaritySearch(List.of(1.0), 3)));
+            assertTrue(System.nanoTime() - start < Duration.ofSeconds(5).toNanos());
+            assertEquals(1, sharded.getSkippedShardCount());
+
+            sharded.withRequireAllShards(true);
+            VectorStoreException e = assertThrows(VectorStoreException.class, () -> sharded.similaritySearch(List.of(1.0), 3));
+            assertTrue(e.getMessage().contains("Shard 1"));
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    void similaritySearch_timedOutShardCallIsInterruptedAndClosedStoreStopsSearching() throws Exception {
+        CountDownLatch interrupted = new CountDownLatch(1);
+        VectorStore hung = new StubShard(List.of(), null, null) {
+            @Override
+            public List<Document> similaritySearch(List<Double> queryEmbedding, int k) {
+                try {
+                    new CountDownLatch(1).await();
+                } catch (InterruptedException e) {
+                    interrupted.countDown();
+                }
+                return List.of();
+            }
+        };
+        Document fast = doc("fast", 1f);
+        ShardedVectorStore sharded = new ShardedVectorStore(List.of(new StubShard(List.of(fast), null, null), hung))
+                .withShardTimeout(Duration.ofMillis(50));
+
+        assertEquals(List.of("fast"), ids(sharded.similaritySearch(List.of(1.0), 3)));
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS), "The timed-out shard call is interrupted");
+
+        sharded.close();
+        assertThrows(VectorStoreException.class, () -> sharded.similaritySearch(List.of(1.0), 3));
+    }
+
+    @Test
+    void similaritySearch_failingShards_degradeUntilNoneAnswers() {
+        Document a = doc("a", 1f);
+        a.setScore(0.9f);
+        ShardedVectorStore sharded = new ShardedVectorStore(List.of(
+                new StubShard(null, null, new VectorStoreException("down")),
+                new StubShard(List.of(a), null, null)));
+        assertEquals(List.of("a"), ids(sharded.similaritySearch(List.of(1.0), 3)));
+
+        ShardedVectorStore allDown = new ShardedVectorStore(List.of(new StubShard(null, null, new IllegalStateException("down"))));
+        VectorStoreException e = assertThrows(VectorStoreException.class, () -> allDown.similaritySearch(List.of(1.0), 3));
+        assertTrue(e.getCause() instanceof IllegalStateException);
+    }
+
+    @Test
+    void asyncSearchAndAdd_matchSynchronousResults() throws Exception {
+        List<Document> documents = randomDocuments(300, 8, 5);
+        MemoryVectorStore single = new MemoryVectorStore();
+        single.addDocuments(documents);
+        List<MemoryVectorStore> shards = List.of(new MemoryVectorStore(), new MemoryVectorStore());
+        ShardedVectorStore sharded = new ShardedVectorStore(shards);
+        sharded.addDocumentsAsync(documents).get(10, TimeUnit.SECONDS);
+
+        assertEquals(300, shards.get(0).getAllDocuments().size() + shards.get(1).getAllDocuments().size());
+        List<Double> query = new ArrayList<>();
+        for (float value : randomDocuments(1, 8, 13).get(0).getEmbeddingVector()) {
+            query.add((double) value);
+        }
+        assertEquals(ids(single.similaritySearch(query, 7)), ids(sharded.similaritySearchAsync(query, 7).get(10, TimeUnit.SECONDS)));
+        assertTrue(sharded.addDocumentsAsync(List.of()).isDone());
+    }
+
+    @Test
+    void similaritySearchAsync_slowShardTimesOutAndFailuresSurfaceInTheFuture() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        Document fast = doc("fast", 1f);
+        fast.setScore(0.5f);
+        try {
+            ShardedVectorStore sharded = new ShardedVectorStore(List.of(
+                    new StubShard(List.of(fast), null, null),
+                    new StubShard(List.of(), release, null)))
+                    .withShardTimeout(Duration.ofMillis(50));
+            assertEquals(List.of("fast"), ids(sharded.similaritySearchAsync(List.of(1.0), 3).get(5, TimeUnit.SECONDS)));
+            assertEquals(1, sharded.getSkippedShardCount());
+
+            sharded.withRequireAllShards(true);
+            CompletableFuture<List<Document>> future = sharded.similaritySearchAsync(List.of(1.0), 3);
+            ExecutionException e = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+            assertTrue(e.getCause() instanceof VectorStoreException);
+            assertTrue(e.getCause().getMessage().contains("Shard 1"));
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    void merge_takesHighestScoresAndBreaksTiesByShard() {
+        Document a = doc("a", 1f), b = doc("b", 1f), c = doc("c", 1f), d = doc("d", 1f);
+        a.setScore(0.9f);
+        b.setScore(0.5f);
+        c.setScore(0.7f);
+        d.setScore(0.5f);
+        List<List<Document>> perShard = new ArrayList<>();
+        perShard.add(List.of(a, b));
+        perShard.add(null);
+        perShard.add(List.of(c, d));
+
+        assertEquals(List.of("a", "c", "b"), ids(ShardedVectorStore.merge(perShard, 3)));
+        assertEquals(List.of("a", "c", "b", "d"), ids(ShardedVectorStore.merge(perShard, 10)));
+    }
+
+    @Test
+    void invalidArguments_throw() {
+        assertThrows(IllegalArgumentException.class, () -> new ShardedVectorStore(List.of()));
+        ShardedVectorStore sharded = new ShardedVectorStore(List.of(new MemoryVectorStore()));
+        assertThrows(IllegalArgumentException.class, () -> sharded.withShardTimeout(Duration.ZERO));
+        assertThrows(IllegalArgumentException.class, () -> sharded.similaritySearchVector(new float[]{1f}, 0));
+    }
+}
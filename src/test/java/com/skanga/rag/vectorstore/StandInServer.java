@@ -0,0 +1,168 @@
+package com.skanga.rag.vectorstore;
+
+import com.skanga.rag.Document;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A local HTTP server standing in for a remote vector database in tests of the HTTP-based stores.
+ * Requests are answered by a {@link Handler} on a small pool of daemon threads, so several batches can be
+ * in flight at once; {@link #close()} stops the server and its pool.
+ */
+public final class StandInServer implements AutoCloseable {
+
+    /** Answers one request. */
+    @FunctionalInterface
+    public interface Handler {
+        Response handle(String path, String body, Headers headers) throws IOException;
+    }
+
+    /** The status and JSON body of an answer. */
+    public record Response(int status, String body) {}
+
+    /** Counts the items of a successful upsert body. */
+    @FunctionalInterface
+    public interface ItemCounter {
+        int count(String body) throws IOException;
+    }
+
+    /** Builds the body of a query answer. */
+    @FunctionalInterface
+    public interface Answer {
+        String body() throws IOException;
+    }
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    private StandInServer(HttpServer server, ExecutorService executor) {
+        this.server = server;
+        this.executor = executor;
+    }
+
+    /**
+     * Starts a server on a free local port.
+     * @param context The path prefix the handler serves, e.g. "/api/v1".
+     */
+    public static StandInServer start(String context, Handler handler) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        ExecutorService executor = Executors.newFixedThreadPool(8, runnable -> {
+            Thread thread = new Thread(runnable);
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.createContext(context, exchange -> {
+            String requestBody = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+            Response response = handler.handle(exchange.getRequestURI().getPath(), requestBody, exchange.getRequestHeaders());
+            byte[] bytes = response.body().getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(response.status(), bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        });
+        server.start();
+        return new StandInServer(server, executor);
+    }
+
+    /** @return The server's base URL, e.g. "http://127.0.0.1:52114". */
+    public String url() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    /** Stops the server and shuts down its pool, which {@link HttpServer#stop(int)} leaves running. */
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    /** What a stand-in server has seen, and how it should answer. */
+    public static final class Record {
+        public final AtomicInteger upserts = new AtomicInteger();
+        public final AtomicInteger upsertedItems = new AtomicInteger();
+        public final AtomicInteger largestUpsert = new AtomicInteger();
+        public final AtomicInteger inFlight = new AtomicInteger();
+        public final AtomicInteger maxInFlight = new AtomicInteger();
+        public final AtomicInteger queriesInFlight = new AtomicInteger();
+        public final AtomicInteger maxQueriesInFlight = new AtomicInteger();
+        /** Statuses for the next upserts, before they get the success status. */
+        public final Deque<Integer> upsertStatuses = new ConcurrentLinkedDeque<>();
+        public final List<String> upsertBodies = new CopyOnWriteArrayList<>();
+        public final List<String> deleteBodies = new CopyOnWriteArrayList<>();
+        public final List<String> queryBodies = new CopyOnWriteArrayList<>();
+        public volatile long queryDelayMillis = 0;
+
+        /**
+         * Records an upsert that takes 20 ms, counting the upserts in flight and, if it succeeds, its items.
+         * @return The next queued status, or the success status.
+         */
+        public int upsert(String body, int successStatus, ItemCounter items) throws IOException {
+            upsertBodies.add(body);
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                sleep(20);
+                Integer queued = upsertStatuses.poll();
+                int status = (queued != null) ? queued : successStatus;
+                if (status == successStatus) {
+                    int count = items.count(body);
+                    upsertedItems.addAndGet(count);
+                    largestUpsert.accumulateAndGet(count, Math::max);
+                }
+                upserts.incrementAndGet();
+                return status;
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        }
+
+        /**
+         * Records a query that takes {@link #queryDelayMillis}, counting the queries in flight.
+         * @return The answer's body.
+         */
+        public String query(String body, Answer answer) throws IOException {
+            queryBodies.add(body);
+            maxQueriesInFlight.accumulateAndGet(queriesInFlight.incrementAndGet(), Math::max);
+            try {
+                sleep(queryDelayMillis);
+                return answer.body();
+            } finally {
+                queriesInFlight.decrementAndGet();
+            }
+        }
+    }
+
+    /** @return Documents "doc-0", "doc-1", ... with 8-dimension embeddings. */
+    public static List<Document> embeddedDocuments(int count) {
+        List<Document> documents = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Document document = new Document("Content " + i);
+            document.setId("doc-" + i);
+            document.setEmbedding(List.of(0.1 * (i % 7), 0.2, 0.3, 0.4, 0.5, 0.6, 0.7, 0.8));
+            documents.add(document);
+        }
+        return documents;
+    }
+
+    /** Sleeps, preserving the interrupt status. */
+    public static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
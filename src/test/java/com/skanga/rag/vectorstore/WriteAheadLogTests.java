@@ -0,0 +1,154 @@
+package com.skanga.rag.vectorstore;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WriteAheadLogTests {
+
+    @TempDir
+    Path tempDir;
+
+    private static List<byte[]> records(String... payloads) {
+        List<byte[]> records = new ArrayList<>();
+        for (String payload : payloads) {
+            records.add(payload.getBytes(StandardCharsets.UTF_8));
+        }
+        return records;
+    }
+
+    private static List<String> read(WriteAheadLog log) throws IOException {
+        List<String> payloads = new ArrayList<>();
+        log.forEach(payload -> payloads.add(new String(payload, StandardCharsets.UTF_8)));
+        return payloads;
+    }
+
+    @Test
+    void append_recordsSurviveReopen() throws IOException {
+        Path path = tempDir.resolve("log.wal");
+        try (WriteAheadLog log = WriteAheadLog.open(path, WriteAheadLog.Options.DEFAULT, 42)) {
+            log.append(records("one", "two")).join();
+            log.append(records("three")).join();
+            assertEquals(3, log.getRecordCount());
+            assertEquals(List.of("one", "two", "three"), read(log));
+        }
+        try (WriteAheadLog log = WriteAheadLog.open(path, WriteAheadLog.Options.DEFAULT, 0)) {
+            assertEquals(42, log.getBase()); // The header's base, not the initial one
+            assertEquals(List.of("one", "two", "three"), read(log));
+        }
+    }
+
+    @Test
+    void open_truncatesTornAndCorruptTails() throws IOException {
+        Path path = tempDir.resolve("log.wal");
+        long intact;
+        try (WriteAheadLog log = WriteAheadLog.open(path, WriteAheadLog.Options.DEFAULT, 0)) {
+            log.append(records("kept", "also kept")).join();
+            intact = log.getSizeBytes();
+            log.append(records("torn")).join();
+        }
+        // A record cut short by a crash
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.truncate(Files.size(path) - 2);
+        }
+        try (WriteAheadLog log = WriteAheadLog.open(path, WriteAheadLog.Options.DEFAULT, 0)) {
+            assertEquals(List.of("kept", "also kept"), read(log));
+            assertEquals(WriteAheadLog.HEADER_BYTES + intact, Files.size(path));
+            log.append(records("after")).join();
+        }
+        // A record whose payload no longer matches its checksum
+        byte[] bytes = Files.readAllBytes(path);
+        bytes[bytes.length - 1] ^= 0x01;
+        Files.write(path, bytes);
+        try (WriteAheadLog log = WriteAheadLog.open(path, WriteAheadLog.Options.DEFAULT, 0)) {
+            assertEquals(List.of("kept", "also kept"), read(log));
+        }
+    }
+
+    @Test
+    void open_rejectsOtherFiles() throws IOException {
+        Path path = tempDir.resolve("other.wal");
+        Files.write(path, "not a write-ahead log at all".getBytes(StandardCharsets.UTF_8));
+        assertThrows(IOException.class, () -> WriteAheadLog.open(path, WriteAheadLog.Options.DEFAULT, 0));
+    }
+
+    @Test
+    void append_concurrentAppendsShareGroupCommits() throws IOException {
+        WriteAheadLog.Options options = WriteAheadLog.Options.DEFAULT.withGroupCommitDelay(Duration.ofMillis(20));
+        try (WriteAheadLog log = WriteAheadLog.open(tempDir.resolve("log.wal"), options, 0)) {
+            List<CompletableFuture<Void>> appends = new ArrayList<>();
+            for (int i = 0; i < 50; i++) {
+                appends.add(log.append(records("record " + i)));
+            }
+            CompletableFuture.allOf(appends.toArray(new CompletableFuture[0])).join();
+            assertEquals(50, log.getRecordCount());
+            assertTrue(log.getGroupCommits() < 50, "Expected grouped commits but got " + log.getGroupCommits());
+            assertEquals(log.getGroupCommits(), log.getSyncs()); // COMMIT mode syncs once per group
+            assertEquals("record 0", read(log).get(0));
+        }
+    }
+
+    @Test
+    void syncMode_none_leavesSyncingToCheckpointsAndClose() throws IOException {
+        WriteAheadLog.Options options = WriteAheadLog.Options.DEFAULT.withSyncMode(WriteAheadLog.SyncMode.NONE);
+        try (WriteAheadLog log = WriteAheadLog.open(tempDir.resolve("log.wal"), options, 0)) {
+            log.append(records("a")).join();
+            log.append(records("b")).join();
+            assertEquals(0, log.getSyncs());
+            log.sync().join();
+            assertEquals(1, log.getSyncs());
+        }
+    }
+
+    @Test
+    void checkpoint_appliesRecordsAndRecordsNewBase() throws IOException {
+        Path path = tempDir.resolve("log.wal");
+        List<String> applied = new ArrayList<>();
+        try (WriteAheadLog log = WriteAheadLog.open(path, WriteAheadLog.Options.DEFAULT, 10)) {
+            log.append(records("x", "y")).join();
+            assertEquals(2, (int) log.checkpoint(payloads -> {
+                payloads.forEach(payload -> applied.add(new String(payload, StandardCharsets.UTF_8)));
+                return 99;
+            }).join());
+            assertEquals(List.of("x", "y"), applied);
+            assertEquals(0, log.getRecordCount());
+            assertEquals(99, log.getBase());
+            assertEquals(0, log.getSizeBytes());
+
+            // A failing action leaves the records in place
+            log.append(records("z")).join();
+            CompletionException failure = assertThrows(CompletionException.class,
+                    () -> log.checkpoint(payloads -> { throw new IOException("disk full"); }).join());
+            assertTrue(failure.getCause() instanceof IOException);
+            assertEquals(List.of("z"), read(log));
+            assertEquals(99, log.getBase());
+
+            log.reset(7).join();
+            assertEquals(0, log.getRecordCount());
+        }
+        try (WriteAheadLog log = WriteAheadLog.open(path, WriteAheadLog.Options.DEFAULT, 0)) {
+            assertEquals(7, log.getBase());
+            assertEquals(0, log.getRecordCount());
+        }
+    }
+
+    @Test
+    void append_afterClose_fails() throws IOException {
+        WriteAheadLog log = WriteAheadLog.open(tempDir.resolve("log.wal"), WriteAheadLog.Options.DEFAULT, 0);
+        log.close();
+        assertThrows(CompletionException.class, () -> log.append(records("late")).join());
+    }
+}
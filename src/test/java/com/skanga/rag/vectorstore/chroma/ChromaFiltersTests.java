@@ -0,0 +1,44 @@
+package com.skanga.rag.vectorstore.chroma;
+
+import com.skanga.rag.vectorstore.filter.MetadataFilter;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChromaFiltersTests {
+
+    @Test
+    void toWhere_translatesComparisons() {
+        assertEquals(Map.of("lang", Map.of("$eq", "en")), ChromaFilters.toWhere(MetadataFilter.eq("lang", "en")));
+        assertEquals(Map.of("page", Map.of("$in", List.of(1, 2))), ChromaFilters.toWhere(MetadataFilter.in("page", 1, 2)));
+        assertEquals(Map.of("page", Map.of("$gte", 3L)), ChromaFilters.toWhere(MetadataFilter.range("page", 3, null)));
+        assertEquals(Map.of("$and", List.of(Map.of("score", Map.of("$gte", 0.5)), Map.of("score", Map.of("$lte", 2L)))),
+                     ChromaFilters.toWhere(MetadataFilter.range("score", 0.5, 2)));
+    }
+
+    @Test
+    void toWhere_translatesTimestampsToEpochMillis() {
+        Instant instant = Instant.parse("2024-01-01T00:00:00Z");
+        assertEquals(Map.of("modified", Map.of("$lte", instant.toEpochMilli())),
+                     ChromaFilters.toWhere(MetadataFilter.range("modified", null, instant)));
+        assertEquals(Map.of("modified", Map.of("$eq", instant.toEpochMilli())),
+                     ChromaFilters.toWhere(MetadataFilter.eq("modified", instant)));
+    }
+
+    @Test
+    void toWhere_combinesWithAndOr() {
+        MetadataFilter filter = MetadataFilter.or(
+                MetadataFilter.and(MetadataFilter.eq("lang", "en"), MetadataFilter.eq("draft", false)),
+                MetadataFilter.eq("pinned", true));
+        assertEquals(Map.of("$or", List.of(
+                             Map.of("$and", List.of(Map.of("lang", Map.of("$eq", "en")), Map.of("draft", Map.of("$eq", false)))),
+                             Map.of("pinned", Map.of("$eq", true)))),
+                     ChromaFilters.toWhere(filter));
+        // Chroma rejects $and/$or with a single operand
+        assertEquals(Map.of("lang", Map.of("$eq", "en")), ChromaFilters.toWhere(MetadataFilter.and(MetadataFilter.eq("lang", "en"))));
+    }
+}
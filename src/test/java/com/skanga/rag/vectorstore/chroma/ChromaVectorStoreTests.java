@@ -1,9 +1,14 @@
 package com.skanga.rag.vectorstore.chroma;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.skanga.rag.Document;
+import com.skanga.rag.vectorstore.BulkIngestReport;
+import com.skanga.rag.vectorstore.BulkIngester;
+import com.skanga.rag.vectorstore.StandInServer;
 import com.skanga.rag.vectorstore.VectorStoreException;
 import com.skanga.rag.vectorstore.chroma.dto.ChromaQueryResponse;
+import com.skanga.rag.vectorstore.filter.MetadataFilter;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -12,9 +17,14 @@ import java.io.IOException;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.time.Duration;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.mockito.Mockito.*;
 import static org.junit.jupiter.api.Assertions.*;
@@ -181,4 +191,186 @@ class ChromaVectorStoreTests {
         // assertTrue(ex.getErrorBody().contains("Internal Server Error"));
          assertTrue(true, "Skipping API error mock test due to HttpClient direct instantiation.");
     }
+
+    @Test
+    void deleteDocuments_emptyList_doesNotCallServer() {
+        // No Chroma server runs in unit tests, so any HTTP call would fail.
+        assertDoesNotThrow(() -> chromaVectorStore.deleteDocuments(Collections.emptyList()));
+    }
+
+    @Test
+    void deleteDocuments_nullId_throwsNullPointerException() {
+        assertThrows(NullPointerException.class, () -> chromaVectorStore.deleteDocuments(Collections.singletonList(null)));
+    }
+
+    @Test
+    void similaritySearchBatch_emptyList_doesNotCallServer() {
+        // No Chroma server runs in unit tests, so any HTTP call would fail.
+        assertTrue(chromaVectorStore.similaritySearchBatch(Collections.emptyList(), 3).isEmpty());
+    }
+
+    @Test
+    void similaritySearchBatch_emptyQueryEmbedding_throwsVectorStoreException() {
+        assertThrows(VectorStoreException.class,
+                () -> chromaVectorStore.similaritySearchBatch(List.of(List.of(0.1, 0.2), Collections.emptyList()), 3));
+    }
+
+    /** Starts a stand-in Chroma server that answers every request under the collection with a fixed status and body. */
+    private StandInServer startStandInServer(int status, String body) throws IOException {
+        return StandInServer.start("/api/v1/collections/" + testCollectionName, (path, requestBody, headers) -> new StandInServer.Response(status, body));
+    }
+
+    @Test
+    void similaritySearchAsync_mapsTheStandInServersResponse() throws Exception {
+        StandInServer server = startStandInServer(200, "{\"ids\":[[\"resDoc1\"]],\"documents\":[[\"Content 1\"]],"
+                + "\"metadatas\":[[{\"source\":\"test\"}]],\"distances\":[[0.25]]}");
+        try {
+            ChromaVectorStore store = new ChromaVectorStore(server.url(), testCollectionName);
+            List<Document> results = store.similaritySearchAsync(List.of(0.1, 0.2), 1).get(10, TimeUnit.SECONDS);
+            assertEquals(1, results.size());
+            assertEquals("resDoc1", results.get(0).getId());
+            assertEquals("Content 1", results.get(0).getContent());
+        } finally {
+            server.close();
+        }
+    }
+
+    @Test
+    void addDocumentsAsync_serverErrorOrInvalidDocument_failsTheFuture() throws Exception {
+        Document document = new Document("Content");
+        document.setEmbedding(List.of(0.1, 0.2));
+        StandInServer server = startStandInServer(500, "{\"error\":\"Internal Server Error\"}");
+        try {
+            ChromaVectorStore store = new ChromaVectorStore(server.url(), testCollectionName);
+            CompletableFuture<Void> future = store.addDocumentsAsync(List.of(document));
+            ExecutionException e = assertThrows(ExecutionException.class, () -> future.get(10, TimeUnit.SECONDS));
+            assertTrue(e.getCause() instanceof VectorStoreException);
+        } finally {
+            server.close();
+        }
+
+        Document noEmbedding = new Document("Content without embedding");
+        CompletableFuture<Void> invalid = chromaVectorStore.addDocumentsAsync(List.of(noEmbedding));
+        assertTrue(invalid.isCompletedExceptionally());
+        assertTrue(chromaVectorStore.addDocumentsAsync(Collections.emptyList()).isDone());
+        assertThrows(IllegalArgumentException.class, () -> chromaVectorStore.similaritySearchAsync(List.of(0.1), 0));
+    }
+
+    /**
+     * Starts a stand-in Chroma server that reports a {@code max_batch_size}, answers upserts after a delay while
+     * counting them and the requests in flight, and records query bodies. Upserts get the record's queued
+     * statuses first, then 201.
+     */
+    private StandInServer startRecordingServer(int maxBatchSize, StandInServer.Record record) throws IOException {
+        return StandInServer.start("/api/v1", (path, requestBody, headers) -> {
+            if (path.endsWith("/pre-flight-checks")) {
+                return new StandInServer.Response(200, "{\"max_batch_size\":" + maxBatchSize + "}");
+            } else if (path.endsWith("/upsert")) {
+                int status = record.upsert(requestBody, 201, body -> objectMapper.readTree(body).get("ids").size());
+                return new StandInServer.Response(status, "{}");
+            } else if (path.endsWith("/query")) {
+                return new StandInServer.Response(200, record.query(requestBody,
+                        () -> "{\"ids\":[[\"a\"]],\"documents\":[[\"A\"]],\"metadatas\":[[{\"lang\":\"en\"}]],\"distances\":[[0.1]]}"));
+            }
+            return new StandInServer.Response(200, "{}");
+        });
+    }
+
+    @Test
+    void addDocuments_largeCall_isSplitAtTheServersMaxBatchSizeWithSeveralBatchesInFlight() throws Exception {
+        StandInServer.Record record = new StandInServer.Record();
+        StandInServer server = startRecordingServer(250, record);
+        try {
+            ChromaVectorStore store = new ChromaVectorStore(server.url(), testCollectionName)
+                    .withBulkIngester(new BulkIngester().withMaxInFlight(4));
+            store.addDocuments(StandInServer.embeddedDocuments(2000));
+
+            assertEquals(8, record.upserts.get());
+            assertEquals(2000, record.upsertedItems.get());
+            assertTrue(record.maxInFlight.get() > 1 && record.maxInFlight.get() <= 4, "in flight: " + record.maxInFlight.get());
+            BulkIngestReport report = store.getLastBulkReport();
+            assertEquals(2000, report.succeededDocuments());
+            assertTrue(report.documentsPerSecond() > 0);
+        } finally {
+            server.close();
+        }
+    }
+
+    @Test
+    void addDocuments_unavailableServer_retriesTheRejectedBatch() throws Exception {
+        StandInServer.Record record = new StandInServer.Record();
+        record.upsertStatuses.add(503);
+        StandInServer server = startRecordingServer(1000, record);
+        try {
+            ChromaVectorStore store = new ChromaVectorStore(server.url(), testCollectionName)
+                    .withBulkIngester(new BulkIngester().withRetries(2, Duration.ofMillis(1)));
+            store.addDocuments(StandInServer.embeddedDocuments(10));
+
+            assertEquals(2, record.upserts.get());
+            assertEquals(10, record.upsertedItems.get());
+            assertEquals(10, store.getLastBulkReport().retriedDocuments());
+        } finally {
+            server.close();
+        }
+    }
+
+    @Test
+    void addDocuments_failedPreFlightCheck_isAskedAgainOnTheNextWrite() throws Exception {
+        AtomicInteger preFlightChecks = new AtomicInteger();
+        StandInServer.Record record = new StandInServer.Record();
+        StandInServer server = StandInServer.start("/api/v1", (path, requestBody, headers) -> {
+            if (path.endsWith("/pre-flight-checks")) {
+                return (preFlightChecks.incrementAndGet() == 1)
+                        ? new StandInServer.Response(503, "{}")
+                        : new StandInServer.Response(200, "{\"max_batch_size\":5}");
+            }
+            return new StandInServer.Response(record.upsert(requestBody, 201, body -> objectMapper.readTree(body).get("ids").size()), "{}");
+        });
+        try {
+            ChromaVectorStore store = new ChromaVectorStore(server.url(), testCollectionName);
+            store.addDocuments(StandInServer.embeddedDocuments(10));
+            assertEquals(1, record.upserts.get(), "No server limit is known after the failed lookup");
+
+            store.addDocuments(StandInServer.embeddedDocuments(10));
+            store.addDocuments(StandInServer.embeddedDocuments(10));
+            assertEquals(5, record.upserts.get(), "Later writes are split at the server's limit");
+            assertEquals(2, preFlightChecks.get(), "The successful answer is kept");
+        } finally {
+            server.close();
+        }
+    }
+
+    @Test
+    void similaritySearch_withFilter_sendsWhereAndLeavesOutEmbeddings() throws Exception {
+        StandInServer.Record record = new StandInServer.Record();
+        StandInServer server = startRecordingServer(1000, record);
+        try {
+            ChromaVectorStore store = new ChromaVectorStore(server.url(), testCollectionName);
+            List<Document> results = store.similaritySearchVector(new float[]{0.1f, 0.2f}, 3, MetadataFilter.eq("lang", "en"));
+            store.withEmbeddingsInResults(true).similaritySearch(List.of(0.1, 0.2), 3);
+
+            assertEquals("a", results.get(0).getId());
+            JsonNode filtered = objectMapper.readTree(record.queryBodies.get(0));
+            assertEquals("[[0.1,0.2]]", filtered.get("query_embeddings").toString());
+            assertEquals("en", filtered.get("where").get("lang").get("$eq").asText());
+            assertFalse(filtered.get("include").toString().contains("embeddings"));
+            JsonNode unfiltered = objectMapper.readTree(record.queryBodies.get(1));
+            assertNull(unfiltered.get("where"));
+            assertTrue(unfiltered.get("include").toString().contains("embeddings"));
+        } finally {
+            server.close();
+        }
+    }
+
+    @Test
+    void queryResponse_perQueryHelpers_returnEachQuerysResults() {
+        ChromaQueryResponse response = new ChromaQueryResponse(
+                List.of(List.of("a"), List.of("b", "c")), null, null, null, List.of(List.of(0.1), List.of(0.2, 0.3)));
+
+        assertEquals(List.of("b", "c"), response.getIdsForQuery(1));
+        assertEquals(List.of(0.2, 0.3), response.getDistancesForQuery(1));
+        assertEquals(List.of("a"), response.getIdsForFirstQuery());
+        assertTrue(response.getDocumentsForQuery(1).isEmpty());
+        assertTrue(response.getIdsForQuery(2).isEmpty());
+    }
 }
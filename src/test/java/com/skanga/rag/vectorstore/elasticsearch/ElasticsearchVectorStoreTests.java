@@ -1,22 +1,39 @@
 package com.skanga.rag.vectorstore.elasticsearch;
 
 import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.ErrorCause;
+import co.elastic.clients.elasticsearch._types.KnnSearch;
+import co.elastic.clients.elasticsearch._types.query_dsl.Query;
 import co.elastic.clients.elasticsearch.core.BulkRequest;
 import co.elastic.clients.elasticsearch.core.BulkResponse;
+import co.elastic.clients.elasticsearch.core.MsearchRequest;
+import co.elastic.clients.elasticsearch.core.MsearchResponse;
 import co.elastic.clients.elasticsearch.core.SearchRequest;
 import co.elastic.clients.elasticsearch.core.SearchResponse;
 import co.elastic.clients.elasticsearch.core.bulk.BulkResponseItem;
+import co.elastic.clients.elasticsearch.core.msearch.MultiSearchItem;
+import co.elastic.clients.elasticsearch.core.msearch.MultiSearchResponseItem;
 import co.elastic.clients.elasticsearch.core.search.Hit;
 import co.elastic.clients.elasticsearch.core.search.HitsMetadata;
+import co.elastic.clients.elasticsearch.indices.ElasticsearchIndicesClient;
+import co.elastic.clients.elasticsearch.indices.ExistsRequest;
+import co.elastic.clients.json.jackson.JacksonJsonpMapper;
+import co.elastic.clients.transport.ElasticsearchTransport;
+import co.elastic.clients.transport.endpoints.BooleanResponse;
 import com.skanga.rag.Document;
+import com.skanga.rag.vectorstore.BulkIngester;
 import com.skanga.rag.vectorstore.VectorStoreException;
+import com.skanga.rag.vectorstore.filter.MetadataFilter;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.function.Executable;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.io.IOException;
+import java.time.Duration;
 import java.util.*;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -30,13 +47,30 @@ class ElasticsearchVectorStoreTests {
     @Mock
     private ElasticsearchClient elasticsearchClient;
 
+    @Mock
+    private ElasticsearchTransport transport;
+
+    @Mock
+    private ElasticsearchIndicesClient indicesClient;
+
     private ElasticsearchVectorStore vectorStore;
     private static final String TEST_INDEX = "test_index";
     private static final int DEFAULT_TOP_K = 5;
 
     @BeforeEach
     void setUp() {
+        // The constructor takes its ObjectMapper from the client's transport
+        lenient().when(elasticsearchClient._transport()).thenReturn(transport);
+        lenient().when(transport.jsonpMapper()).thenReturn(new JacksonJsonpMapper());
+        // The first write or search creates the index, so that tests only need to stub the data calls
+        lenient().when(elasticsearchClient.indices()).thenReturn(indicesClient);
+        try {
+            lenient().when(indicesClient.exists(any(ExistsRequest.class))).thenReturn(new BooleanResponse(false));
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
         vectorStore = new ElasticsearchVectorStore(elasticsearchClient, TEST_INDEX, DEFAULT_TOP_K);
+        clearInvocations(elasticsearchClient);
     }
 
     @Test
@@ -166,8 +200,8 @@ class ElasticsearchVectorStoreTests {
 
         Map<String, Object> sourceMap = new HashMap<>();
         sourceMap.put("content", "Test content");
-        sourceMap.put("source_type", "test");
-        sourceMap.put("source_name", "test.txt");
+        sourceMap.put("sourceType", "test");
+        sourceMap.put("sourceName", "test.txt");
 
         when(hit.id()).thenReturn("test-id");
         when(hit.score()).thenReturn(0.95);
@@ -258,6 +292,125 @@ class ElasticsearchVectorStoreTests {
         assertThat(exception.getMessage()).contains("Unexpected error during Elasticsearch bulk upsert");
     }
 
+    @Test
+    void addDocuments_LargeBatch_ShouldBeSentInChunks() throws Exception {
+        // Arrange
+        List<Document> documents = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            documents.add(createTestDocument("doc-" + i, "Content " + i, Arrays.asList(0.1, 0.2, 0.3)));
+        }
+        BulkResponse bulkResponse = mock(BulkResponse.class);
+        when(bulkResponse.errors()).thenReturn(false);
+        when(elasticsearchClient.bulk(any(BulkRequest.class))).thenReturn(bulkResponse);
+        vectorStore.withBulkIngester(new BulkIngester().withChunkLimits(2, Long.MAX_VALUE));
+
+        // Act
+        vectorStore.addDocuments(documents);
+
+        // Assert
+        verify(elasticsearchClient, times(3)).bulk(any(BulkRequest.class));
+        assertEquals(5, vectorStore.getLastBulkReport().succeededDocuments());
+        assertEquals(3, vectorStore.getLastBulkReport().requests());
+    }
+
+    @Test
+    void addDocuments_WithRejectedItem_ShouldRetryOnlyThatItem() throws Exception {
+        // Arrange
+        Document first = createTestDocument("doc-1", "First", Arrays.asList(0.1, 0.2, 0.3));
+        Document second = createTestDocument("doc-2", "Second", Arrays.asList(0.1, 0.2, 0.3));
+
+        BulkResponseItem accepted = mock(BulkResponseItem.class);
+        BulkResponseItem rejected = mock(BulkResponseItem.class);
+        when(rejected.error()).thenReturn(ErrorCause.of(e -> e.type("es_rejected_execution_exception").reason("queue full")));
+        when(rejected.status()).thenReturn(429);
+        BulkResponse partialResponse = mock(BulkResponse.class);
+        when(partialResponse.errors()).thenReturn(true);
+        when(partialResponse.items()).thenReturn(Arrays.asList(accepted, rejected));
+        BulkResponse retryResponse = mock(BulkResponse.class);
+        when(retryResponse.errors()).thenReturn(false);
+        when(elasticsearchClient.bulk(any(BulkRequest.class))).thenReturn(partialResponse, retryResponse);
+        vectorStore.withBulkIngester(new BulkIngester().withRetries(1, Duration.ofMillis(1)));
+
+        // Act
+        vectorStore.addDocuments(Arrays.asList(first, second));
+
+        // Assert
+        ArgumentCaptor<BulkRequest> requests = ArgumentCaptor.forClass(BulkRequest.class);
+        verify(elasticsearchClient, times(2)).bulk(requests.capture());
+        assertEquals(2, requests.getAllValues().get(0).operations().size());
+        assertEquals("doc-2", requests.getAllValues().get(1).operations().get(0).index().id());
+        assertEquals(1, vectorStore.getLastBulkReport().retriedDocuments());
+    }
+
+    @Test
+    void similaritySearch_ShouldExcludeEmbeddingFromSourceAndUseDefaultCandidates() throws Throwable {
+        // Act
+        SearchRequest request = captureSearchRequest(() -> vectorStore.similaritySearch(Arrays.asList(0.1, 0.2, 0.3), 4));
+
+        // Assert
+        KnnSearch knn = request.knn().get(0);
+        assertEquals(Integer.valueOf(50), knn.numCandidates());
+        assertNull(knn.similarity());
+        assertThat(knn.filter()).isEmpty();
+        assertEquals(List.of("embedding"), request.source().filter().excludes());
+    }
+
+    @Test
+    void similaritySearch_WithFilterAndKnnOptions_ShouldPushThemIntoTheKnnClause() throws Throwable {
+        // Arrange
+        vectorStore.withFilters(Map.of("lang", "en"));
+        MetadataFilter filter = MetadataFilter.or(
+                MetadataFilter.in("file_name", "guide.md", "faq.md"),
+                MetadataFilter.range("year", 2020, null));
+
+        // Act
+        SearchRequest request = captureSearchRequest(() -> vectorStore.similaritySearch(Arrays.asList(0.1, 0.2, 0.3), 3, filter,
+                new ElasticsearchVectorStore.KnnOptions(200, 0.7f)));
+
+        // Assert
+        KnnSearch knn = request.knn().get(0);
+        assertEquals(Integer.valueOf(200), knn.numCandidates());
+        assertEquals(Float.valueOf(0.7f), knn.similarity());
+        Query pushedDown = knn.filter().get(0);
+        List<Query> conditions = pushedDown.bool().filter();
+        assertEquals(2, conditions.size());
+        assertEquals("lang", conditions.get(0).term().field());
+        assertEquals("en", conditions.get(0).term().value().stringValue());
+        List<Query> alternatives = conditions.get(1).bool().should();
+        assertEquals("file_name", alternatives.get(0).terms().field());
+        assertEquals(2, alternatives.get(0).terms().terms().value().size());
+        assertEquals("year", alternatives.get(1).range().untyped().field());
+        assertEquals(2020L, alternatives.get(1).range().untyped().gte().to(Long.class));
+    }
+
+    @Test
+    void knnOptions_ShouldValidateAndKeepCandidatesAtLeastK() {
+        assertThrows(IllegalArgumentException.class, () -> new ElasticsearchVectorStore.KnnOptions(0, null));
+        assertThrows(IllegalArgumentException.class, () -> ElasticsearchVectorStore.KnnOptions.DEFAULT.withNumCandidates(10_001));
+        assertEquals(20, ElasticsearchVectorStore.KnnOptions.DEFAULT.withNumCandidates(10).numCandidatesFor(20));
+        assertEquals(500, ElasticsearchVectorStore.KnnOptions.DEFAULT.numCandidatesFor(100));
+    }
+
+    /** Adds a document to establish the mapping, runs a search with no hits, and returns the request sent. */
+    private SearchRequest captureSearchRequest(Executable search) throws Throwable {
+        BulkResponse bulkResponse = mock(BulkResponse.class);
+        when(bulkResponse.errors()).thenReturn(false);
+        when(elasticsearchClient.bulk(any(BulkRequest.class))).thenReturn(bulkResponse);
+        vectorStore.addDocument(createTestDocument("setup-doc", "Setup", Arrays.asList(0.1, 0.2, 0.3)));
+
+        SearchResponse<Map> searchResponse = mock(SearchResponse.class);
+        HitsMetadata<Map> hitsMetadata = mock(HitsMetadata.class);
+        when(hitsMetadata.hits()).thenReturn(Collections.emptyList());
+        when(searchResponse.hits()).thenReturn(hitsMetadata);
+        when(elasticsearchClient.search(any(SearchRequest.class), eq(Map.class))).thenReturn(searchResponse);
+
+        search.execute();
+
+        ArgumentCaptor<SearchRequest> captor = ArgumentCaptor.forClass(SearchRequest.class);
+        verify(elasticsearchClient).search(captor.capture(), eq(Map.class));
+        return captor.getValue();
+    }
+
     @Test
     void similaritySearch_WithEmptyResults_ShouldReturnEmptyList() throws Exception {
         // Arrange
@@ -374,6 +527,55 @@ class ElasticsearchVectorStoreTests {
         assertThat(result.getScore()).isEqualTo(0.0f); // Should default to 0
     }
 
+    @Test
+    @SuppressWarnings("unchecked")
+    void similaritySearchBatch_SendsOneMultiSearchAndSplitsResultsPerQuery() throws Exception {
+        BulkResponse setupBulkResponse = mock(BulkResponse.class);
+        when(setupBulkResponse.errors()).thenReturn(false);
+        when(elasticsearchClient.bulk(any(BulkRequest.class))).thenReturn(setupBulkResponse);
+        vectorStore.addDocument(createTestDocument("setup-doc", "Setup", Arrays.asList(0.1, 0.2, 0.3)));
+
+        List<MultiSearchResponseItem<Map>> items = new ArrayList<>();
+        for (String id : List.of("first-hit", "second-hit")) {
+            Hit<Map> hit = mock(Hit.class);
+            when(hit.id()).thenReturn(id);
+            when(hit.score()).thenReturn(0.9);
+            when(hit.source()).thenReturn(Map.of("content", "Content of " + id));
+            HitsMetadata<Map> hitsMetadata = mock(HitsMetadata.class);
+            when(hitsMetadata.hits()).thenReturn(List.of(hit));
+            MultiSearchItem<Map> result = mock(MultiSearchItem.class);
+            when(result.hits()).thenReturn(hitsMetadata);
+            MultiSearchResponseItem<Map> item = mock(MultiSearchResponseItem.class);
+            when(item.isFailure()).thenReturn(false);
+            when(item.result()).thenReturn(result);
+            items.add(item);
+        }
+        MsearchResponse<Map> msearchResponse = mock(MsearchResponse.class);
+        when(msearchResponse.responses()).thenReturn(items);
+        when(elasticsearchClient.msearch(any(MsearchRequest.class), eq(Map.class))).thenReturn(msearchResponse);
+
+        List<List<Document>> results = vectorStore.similaritySearchBatch(
+                List.of(Arrays.asList(0.1, 0.2, 0.3), Arrays.asList(0.3, 0.2, 0.1)), 1);
+
+        assertThat(results).hasSize(2);
+        assertThat(results.get(0).get(0).getId()).isEqualTo("first-hit");
+        assertThat(results.get(1).get(0).getId()).isEqualTo("second-hit");
+        verify(elasticsearchClient, times(1)).msearch(any(MsearchRequest.class), eq(Map.class));
+        verify(elasticsearchClient, never()).search(any(SearchRequest.class), eq(Map.class));
+    }
+
+    @Test
+    void similaritySearchBatch_WithWrongDimension_ShouldThrowBeforeSearching() throws Exception {
+        BulkResponse setupBulkResponse = mock(BulkResponse.class);
+        when(setupBulkResponse.errors()).thenReturn(false);
+        when(elasticsearchClient.bulk(any(BulkRequest.class))).thenReturn(setupBulkResponse);
+        vectorStore.addDocument(createTestDocument("setup-doc", "Setup", Arrays.asList(0.1, 0.2, 0.3)));
+
+        assertThrows(VectorStoreException.class, () ->
+                vectorStore.similaritySearchBatch(List.of(Arrays.asList(0.1, 0.2, 0.3), Arrays.asList(0.1, 0.2)), 1));
+        verify(elasticsearchClient, never()).msearch(any(MsearchRequest.class), eq(Map.class));
+    }
+
     private Document createTestDocument(String id, String content, List<Double> embedding) {
         Document document = new Document(content);
         document.setId(id);
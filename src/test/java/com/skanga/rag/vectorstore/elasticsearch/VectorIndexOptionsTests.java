@@ -0,0 +1,47 @@
+package com.skanga.rag.vectorstore.elasticsearch;
+
+import co.elastic.clients.elasticsearch._types.mapping.DenseVectorIndexOptions;
+import co.elastic.clients.elasticsearch._types.mapping.DenseVectorIndexOptionsType;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VectorIndexOptionsTests {
+
+    @Test
+    void estimateMemory_shrinksWithQuantization() {
+        long vectors = 1_000_000;
+        int dimension = 768;
+        IndexMemoryEstimate hnsw = VectorIndexOptions.of(VectorIndexOptions.Type.HNSW).estimateMemory(vectors, dimension);
+        IndexMemoryEstimate int8 = VectorIndexOptions.of(VectorIndexOptions.Type.INT8_HNSW).estimateMemory(vectors, dimension);
+        IndexMemoryEstimate int4 = VectorIndexOptions.of(VectorIndexOptions.Type.INT4_HNSW).estimateMemory(vectors, dimension);
+        IndexMemoryEstimate bbq = VectorIndexOptions.of(VectorIndexOptions.Type.BBQ_HNSW).estimateMemory(vectors, dimension);
+
+        assertEquals(3_072_000_000L, hnsw.vectorBytes());
+        assertEquals(772_000_000L, int8.vectorBytes());
+        assertEquals(388_000_000L, int4.vectorBytes());
+        assertEquals(110_000_000L, bbq.vectorBytes());
+        assertEquals(64_000_000L, int8.graphBytes()); // 4 bytes per neighbour, m = 16
+        assertEquals(int8.vectorBytes() + int8.graphBytes(), int8.totalBytes());
+        assertEquals(hnsw.rawVectorBytes(), bbq.rawVectorBytes());
+        assertTrue(int8.toString().contains("int8_hnsw"));
+        assertEquals(128_000_000L, VectorIndexOptions.of(VectorIndexOptions.Type.INT8_HNSW).withM(32).estimateMemory(vectors, dimension).graphBytes());
+    }
+
+    @Test
+    void mappingRoundTrip_keepsTypeAndGraphParameters() {
+        VectorIndexOptions options = VectorIndexOptions.of(VectorIndexOptions.Type.INT4_HNSW).withM(24).withEfConstruction(200);
+        assertEquals(options, VectorIndexOptions.fromMapping(options.toMapping()));
+        assertEquals(VectorIndexOptions.of(VectorIndexOptions.Type.HNSW),
+                     VectorIndexOptions.fromMapping(DenseVectorIndexOptions.of(o -> o.type(DenseVectorIndexOptionsType.Hnsw))));
+        assertNull(VectorIndexOptions.fromMapping(null));
+    }
+
+    @Test
+    void invalidOptions_throw() {
+        assertThrows(IllegalArgumentException.class, () -> VectorIndexOptions.of(VectorIndexOptions.Type.HNSW).withM(0));
+        assertThrows(IllegalArgumentException.class, () -> VectorIndexOptions.of(VectorIndexOptions.Type.INT4_HNSW).validateFor(385));
+        assertThrows(IllegalArgumentException.class, () -> VectorIndexOptions.of(VectorIndexOptions.Type.BBQ_HNSW).validateFor(32));
+        assertDoesNotThrow(() -> VectorIndexOptions.of(VectorIndexOptions.Type.BBQ_HNSW).validateFor(384));
+    }
+}
@@ -0,0 +1,102 @@
+package com.skanga.rag.vectorstore.filter;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MetadataIndexTests {
+
+    @Test
+    void matches_equalsAndIn_compareNumbersByValue() {
+        MetadataIndex index = new MetadataIndex();
+        index.add(0, Map.of("page", 1, "lang", "en"));
+        index.add(1, Map.of("page", 2L, "lang", "de"));
+        index.add(2, Map.of("page", 1.0, "lang", "en"));
+
+        assertEquals(bits(0, 2), index.matches(MetadataFilter.eq("page", 1L)));
+        assertEquals(bits(0, 1, 2), index.matches(MetadataFilter.in("page", 1, 2)));
+        assertEquals(bits(1), index.matches(MetadataFilter.eq("lang", "de")));
+        assertEquals(bits(), index.matches(MetadataFilter.eq("missing", "x")));
+    }
+
+    @Test
+    void matches_range_coversNumbersAndTimestamps() {
+        MetadataIndex index = new MetadataIndex();
+        index.add(0, Map.of("modified", Instant.parse("2024-01-15T10:00:00Z"), "score", 0.2));
+        index.add(1, Map.of("modified", "2024-02-01T00:00:00Z", "score", 0.9));
+        index.add(2, Map.of("modified", LocalDate.of(2023, 12, 1), "score", 0.5));
+
+        assertEquals(bits(0, 1), index.matches(MetadataFilter.range("modified", LocalDate.of(2024, 1, 1), null)));
+        assertEquals(bits(1), index.matches(MetadataFilter.range("modified", "2024-02-01T00:00:00Z", "2024-02-01T00:00:00Z")));
+        assertEquals(bits(0, 2), index.matches(MetadataFilter.range("score", null, 0.5)));
+        assertEquals(bits(), index.matches(MetadataFilter.range("score", 1.0, 0.0)));
+    }
+
+    @Test
+    void matches_collectionValues_matchOnAnyElement() {
+        MetadataIndex index = new MetadataIndex();
+        index.add(0, Map.of("tags", List.of("java", "search")));
+        index.add(1, Map.of("tags", List.of("python", "python")));
+
+        assertEquals(bits(0), index.matches(MetadataFilter.eq("tags", "search")));
+        assertEquals(bits(0, 1), index.matches(MetadataFilter.in("tags", "java", "python")));
+    }
+
+    @Test
+    void matches_randomFilters_agreeWithDirectTest() {
+        Random random = new Random(5);
+        MetadataIndex index = new MetadataIndex();
+        List<Map<String, Object>> metadata = new ArrayList<>();
+        for (int ordinal = 0; ordinal < 5000; ordinal++) {
+            Map<String, Object> fields = new HashMap<>();
+            fields.put("common", random.nextInt(3));           // Dense posting lists (bitmaps)
+            fields.put("rare", "value" + random.nextInt(2000)); // Sparse posting lists (arrays)
+            if (random.nextBoolean()) {
+                fields.put("size", random.nextInt(1000));
+            }
+            metadata.add(fields);
+            index.add(ordinal, fields);
+        }
+        List<MetadataFilter> filters = List.of(
+                MetadataFilter.eq("common", 1),
+                MetadataFilter.in("rare", "value1", "value42", "value1999"),
+                MetadataFilter.range("size", 100, 300),
+                MetadataFilter.and(MetadataFilter.eq("common", 2), MetadataFilter.range("size", null, 500)),
+                MetadataFilter.or(MetadataFilter.eq("rare", "value7"), MetadataFilter.range("size", 990, null)));
+        for (MetadataFilter filter : filters) {
+            BitSet expected = new BitSet();
+            for (int ordinal = 0; ordinal < metadata.size(); ordinal++) {
+                if (filter.test(metadata.get(ordinal))) {
+                    expected.set(ordinal);
+                }
+            }
+            assertEquals(expected, index.matches(filter), filter.toString());
+        }
+    }
+
+    @Test
+    void filters_invalidArguments_throwIllegalArgumentException() {
+        assertThrows(IllegalArgumentException.class, () -> MetadataFilter.range("size", null, null));
+        assertThrows(IllegalArgumentException.class, () -> MetadataFilter.range("size", "small", null));
+        assertThrows(IllegalArgumentException.class, () -> MetadataFilter.in("lang", List.of()));
+        assertThrows(IllegalArgumentException.class, MetadataFilter::and);
+        assertThrows(NullPointerException.class, () -> MetadataFilter.eq("lang", null));
+    }
+
+    private static BitSet bits(int... ordinals) {
+        BitSet bits = new BitSet();
+        for (int ordinal : ordinals) {
+            bits.set(ordinal);
+        }
+        return bits;
+    }
+}
@@ -0,0 +1,44 @@
+package com.skanga.rag.vectorstore.pinecone;
+
+import com.skanga.rag.vectorstore.filter.MetadataFilter;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PineconeFiltersTests {
+
+    @Test
+    void toFilter_translatesComparisons() {
+        assertEquals(Map.of("lang", Map.of("$eq", "en")), PineconeFilters.toFilter(MetadataFilter.eq("lang", "en")));
+        assertEquals(Map.of("page", Map.of("$in", List.of(1, 2))), PineconeFilters.toFilter(MetadataFilter.in("page", 1, 2)));
+        assertEquals(Map.of("page", Map.of("$gte", 3L)), PineconeFilters.toFilter(MetadataFilter.range("page", 3, null)));
+        // Pinecone allows both bounds in one field clause
+        assertEquals(Map.of("score", Map.of("$gte", 0.5, "$lte", 2L)), PineconeFilters.toFilter(MetadataFilter.range("score", 0.5, 2)));
+    }
+
+    @Test
+    void toFilter_combinesWithAndOr() {
+        MetadataFilter filter = MetadataFilter.or(
+                MetadataFilter.and(MetadataFilter.eq("lang", "en"), MetadataFilter.eq("draft", false)),
+                MetadataFilter.eq("pinned", true));
+        assertEquals(Map.of("$or", List.of(
+                             Map.of("$and", List.of(Map.of("lang", Map.of("$eq", "en")), Map.of("draft", Map.of("$eq", false)))),
+                             Map.of("pinned", Map.of("$eq", true)))),
+                     PineconeFilters.toFilter(filter));
+        assertEquals(Map.of("lang", Map.of("$eq", "en")), PineconeFilters.toFilter(MetadataFilter.and(MetadataFilter.eq("lang", "en"))));
+    }
+
+    @Test
+    void metadataValue_flattensToPineconeTypes() {
+        Instant instant = Instant.parse("2024-01-01T00:00:00Z");
+        assertEquals(instant.toEpochMilli(), PineconeFilters.metadataValue(instant));
+        assertEquals(List.of("a", "1"), PineconeFilters.metadataValue(List.of("a", 1)));
+        assertEquals("{k=v}", PineconeFilters.metadataValue(Map.of("k", "v")));
+        assertEquals(42, PineconeFilters.metadataValue(42));
+        assertNull(PineconeFilters.metadataValue(null));
+    }
+}
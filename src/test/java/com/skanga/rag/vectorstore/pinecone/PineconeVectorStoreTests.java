@@ -1,47 +1,51 @@
 package com.skanga.rag.vectorstore.pinecone;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.skanga.rag.Document;
+import com.skanga.rag.vectorstore.BulkIngestReport;
+import com.skanga.rag.vectorstore.BulkIngester;
+import com.skanga.rag.vectorstore.StandInServer;
 import com.skanga.rag.vectorstore.VectorStoreException;
+import com.skanga.rag.vectorstore.filter.MetadataFilter;
+
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import static org.junit.jupiter.api.Assertions.*;
 
-// Import hypothetical classes to make the test class compile,
-// even though they are placeholders.
-
-
 class PineconeVectorStoreTests {
 
-    private PineconeVectorStore pineconeVectorStore;
-    // private HypotheticalPineconeClient mockPineconeClient; // Would be used if injectable
+    private final ObjectMapper objectMapper = new ObjectMapper();
 
     // Test data
     private final String testApiKey = "test-pinecone-api-key";
     private final String testEnvironment = "gcp-us-west1";
-    private final String testProjectId = "test-project-id"; // May not be needed by all client versions
+    private final String testProjectId = "test-project-id";
     private final String testIndexName = "test-jmcp-index";
     private final String testNamespace = "test-namespace";
     private final int defaultTopK = 3;
 
+    private final List<String> apiKeys = new CopyOnWriteArrayList<>();
+    private StandInServer.Record record;
+    private StandInServer server;
+    private PineconeVectorStore pineconeVectorStore;
     private Document doc1;
 
     @BeforeEach
-    void setUp() {
-        // mockPineconeClient = Mockito.mock(HypotheticalPineconeClient.class);
-
-        // Initialize with placeholder client. Real tests would need a way to inject a mock client
-        // or test against a live/mocked Pinecone service.
-        // The current PineconeVectorStore constructor instantiates HypotheticalPineconeClient directly.
-        pineconeVectorStore = new PineconeVectorStore(testApiKey, testEnvironment, testProjectId, testIndexName, testNamespace, defaultTopK);
-
-        // To truly unit test interactions, we would pass mockPineconeClient to a constructor:
-        // pineconeVectorStore = new PineconeVectorStore(mockPineconeClient, testNamespace, defaultTopK);
-
+    void setUp() throws IOException {
+        record = new StandInServer.Record();
+        server = startStandInServer(record);
+        pineconeVectorStore = new PineconeVectorStore(testApiKey, server.url(), testNamespace, defaultTopK);
 
         doc1 = new Document("Pinecone test document content.");
         doc1.setId("pineconeDoc1");
@@ -51,11 +55,18 @@ class PineconeVectorStoreTests {
         doc1.addMetadata("category", "pinecone_test");
     }
 
+    @AfterEach
+    void tearDown() {
+        server.close();
+    }
+
     @Test
     void constructor_validArgs_initializes() {
-        assertNotNull(pineconeVectorStore);
-        // More assertions could be added if internal fields were accessible or through behavioral tests
-        // e.g. ensuring namespace and topK are set.
+        PineconeVectorStore store = new PineconeVectorStore(testApiKey, testEnvironment, testProjectId, testIndexName, testNamespace, defaultTopK);
+        assertNotNull(store);
+        assertEquals(testNamespace, store.getNamespace());
+        assertEquals(defaultTopK, store.getDefaultTopK());
+        assertEquals("", new PineconeVectorStore(testApiKey, "my-index.svc.pinecone.io", null, 0).getNamespace());
     }
 
     @Test
@@ -63,41 +74,27 @@ class PineconeVectorStoreTests {
         assertThrows(NullPointerException.class, () -> new PineconeVectorStore(null, testEnvironment, testProjectId, testIndexName, testNamespace, defaultTopK));
         assertThrows(NullPointerException.class, () -> new PineconeVectorStore(testApiKey, null, testProjectId, testIndexName, testNamespace, defaultTopK));
         assertThrows(NullPointerException.class, () -> new PineconeVectorStore(testApiKey, testEnvironment, testProjectId, null, testNamespace, defaultTopK));
-        // Project ID might be optional depending on Pinecone client version - current constructor requires it.
         assertThrows(NullPointerException.class, () -> new PineconeVectorStore(testApiKey, testEnvironment, null, testIndexName, testNamespace, defaultTopK));
+        assertThrows(NullPointerException.class, () -> new PineconeVectorStore(testApiKey, null, testNamespace, defaultTopK));
     }
 
-
-    // The following tests are conceptual for the *logic* within PineconeVectorStore,
-    // but cannot fully execute as unit tests against `this.pineconeClient.upsert/query`
-    // without either:
-    // 1. Refactoring PineconeVectorStore to allow injection of HypotheticalPineconeClient.
-    // 2. Using a mocking framework that can mock constructor calls (like PowerMockito).
-    // 3. Running these as integration tests against a real or local mock Pinecone.
-
     @Test
-    void addDocuments_constructsCorrectRequest() throws VectorStoreException {
-        // This test verifies the mapping from Document to HypotheticalVector
-        // It doesn't verify the client call itself due to mocking limitations.
-
-        List<Document> documents = List.of(doc1);
-
-        // If we could capture the request sent to the (mocked) client:
-        // ArgumentCaptor<HypotheticalUpsertRequest> captor = ArgumentCaptor.forClass(HypotheticalUpsertRequest.class);
-        // pineconeVectorStore.addDocuments(documents);
-        // verify(mockPineconeClient).upsert(captor.capture());
-        // HypotheticalUpsertRequest actualRequest = captor.getValue();
-        // assertEquals(testNamespace, actualRequest.namespace());
-        // assertEquals(1, actualRequest.vectors().size());
-        // HypotheticalVector sentVector = actualRequest.vectors().get(0);
-        // assertEquals(doc1.getId(), sentVector.id());
-        // assertEquals(doc1.getEmbedding(), sentVector.values());
-        // assertEquals(doc1.getContent(), sentVector.metadata().get("document_content"));
-
-        // For now, just run it to ensure no NPEs in mapping logic.
-        // It will print to console due to placeholder client.
-        assertDoesNotThrow(() -> pineconeVectorStore.addDocuments(documents));
-        System.out.println("addDocuments_constructsCorrectRequest: Conceptual test passed (no actual client call verified).");
+    void addDocuments_constructsCorrectRequest() throws Exception {
+        pineconeVectorStore.addDocuments(List.of(doc1));
+
+        assertEquals(1, record.upserts.get());
+        assertEquals(testApiKey, apiKeys.get(0));
+        JsonNode request = objectMapper.readTree(record.upsertBodies.get(0));
+        assertEquals(testNamespace, request.get("namespace").asText());
+        JsonNode vector = request.get("vectors").get(0);
+        assertEquals("pineconeDoc1", vector.get("id").asText());
+        assertEquals(3, vector.get("values").size());
+        assertEquals(0.5, vector.get("values").get(1).asDouble(), 1e-6);
+        JsonNode metadata = vector.get("metadata");
+        assertEquals("Pinecone test document content.", metadata.get("document_content").asText());
+        assertEquals("TestDB", metadata.get("source_type").asText());
+        assertEquals("PineconeSource", metadata.get("source_name").asText());
+        assertEquals("pinecone_test", metadata.get("category").asText()); // Flat, so that it can be filtered on
     }
 
     @Test
@@ -105,52 +102,151 @@ class PineconeVectorStoreTests {
         Document docNoEmbed = new Document("No embedding");
         docNoEmbed.setEmbedding(null);
         assertThrows(VectorStoreException.class, () -> pineconeVectorStore.addDocument(docNoEmbed));
+        assertEquals(0, record.upserts.get());
+    }
+
+    @Test
+    void addDocuments_largeCall_isSentInHundredVectorRequestsWithSeveralInFlight() {
+        pineconeVectorStore.withBulkIngester(new BulkIngester().withMaxInFlight(4));
+        pineconeVectorStore.addDocuments(StandInServer.embeddedDocuments(1000));
+
+        assertEquals(10, record.upserts.get());
+        assertEquals(1000, record.upsertedItems.get());
+        assertEquals(PineconeVectorStore.MAX_UPSERT_BATCH, record.largestUpsert.get());
+        assertTrue(record.maxInFlight.get() > 1 && record.maxInFlight.get() <= 4, "in flight: " + record.maxInFlight.get());
+        BulkIngestReport report = pineconeVectorStore.getLastBulkReport();
+        assertEquals(1000, report.succeededDocuments());
+        assertTrue(report.documentsPerSecond() > 0);
     }
 
+    @Test
+    void addDocuments_throttled_retriesTheRejectedRequest() {
+        record.upsertStatuses.add(429);
+        pineconeVectorStore.withBulkIngester(new BulkIngester().withRetries(2, Duration.ofMillis(1)));
+        pineconeVectorStore.addDocuments(StandInServer.embeddedDocuments(10));
+
+        assertEquals(2, record.upserts.get());
+        assertEquals(10, record.upsertedItems.get());
+        assertEquals(10, pineconeVectorStore.getLastBulkReport().retriedDocuments());
+    }
+
+    @Test
+    void addDocuments_rejectedRequest_throwsWithStatus() {
+        record.upsertStatuses.add(400);
+        VectorStoreException e = assertThrows(VectorStoreException.class, () -> pineconeVectorStore.addDocuments(List.of(doc1)));
+        assertEquals(400, e.getStatusCode());
+    }
+
+    @Test
+    void deleteDocuments_sendsIdsInBatches() throws Exception {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 2500; i++) {
+            ids.add("doc-" + i);
+        }
+        pineconeVectorStore.deleteDocuments(ids);
+
+        assertEquals(3, record.deleteBodies.size());
+        int deleted = 0;
+        for (String body : record.deleteBodies) {
+            JsonNode request = objectMapper.readTree(body);
+            assertEquals(testNamespace, request.get("namespace").asText());
+            deleted += request.get("ids").size();
+        }
+        assertEquals(2500, deleted);
+    }
 
     @Test
-    void similaritySearch_constructsCorrectRequestAndMapsResponse() throws VectorStoreException {
-        // Similar to addDocuments, this test is conceptual for request/response mapping.
-        List<Double> queryEmbedding = List.of(0.1, 0.2, 0.3);
-        int k = 2;
-
-        // If we could mock the client's query method:
-        // HypotheticalScoredVector match1 = new HypotheticalScoredVector("matchId1", 0.9f, queryEmbedding,
-        //     Map.of("document_content", "Matched content 1", "source_type", "web",
-        //            "original_metadata", Map.of("url", "http://example.com")));
-        // HypotheticalQueryResponse mockResponse = new HypotheticalQueryResponse(List.of(match1));
-        // when(mockPineconeClient.query(any(HypotheticalQueryRequest.class))).thenReturn(mockResponse);
-        // pineconeVectorStore.setPineconeClient(mockPineconeClient); // Hypothetical setter
-
-        // List<Document> results = pineconeVectorStore.similaritySearch(queryEmbedding, k);
-        // assertNotNull(results);
-        // assertEquals(1, results.size());
-        // Document resDoc = results.get(0);
-        // assertEquals("matchId1", resDoc.getId());
-        // assertEquals("Matched content 1", resDoc.getContent());
-        // assertEquals(0.9f, resDoc.getScore());
-        // assertEquals("web", resDoc.getSourceType());
-        // assertEquals("http://example.com", resDoc.getMetadata().get("url"));
-
-        // For now, run with placeholder client which returns empty matches.
-        List<Document> results = pineconeVectorStore.similaritySearch(queryEmbedding, k);
-        assertNotNull(results);
-        assertTrue(results.isEmpty(), "Placeholder client should return empty matches.");
-        System.out.println("similaritySearch_constructsCorrectRequestAndMapsResponse: Conceptual test passed (no actual client call/response verified).");
+    void similaritySearch_constructsCorrectRequestAndMapsResponse() throws Exception {
+        List<Document> results = pineconeVectorStore.similaritySearch(List.of(0.1, 0.2, 0.3), 2);
+
+        JsonNode request = objectMapper.readTree(record.queryBodies.get(0));
+        assertEquals(2, request.get("topK").asInt());
+        assertEquals(testNamespace, request.get("namespace").asText());
+        assertTrue(request.get("includeMetadata").asBoolean());
+        assertFalse(request.get("includeValues").asBoolean());
+        assertNull(request.get("filter"));
+
+        assertEquals(2, results.size());
+        Document resDoc = results.get(0);
+        assertEquals(testNamespace + "-a", resDoc.getId());
+        assertEquals("Matched content", resDoc.getContent());
+        assertEquals(0.6f, resDoc.getScore(), 1e-6);
+        assertEquals("web", resDoc.getSourceType());
+        assertEquals("http://example.com", resDoc.getMetadata().get("url"));
+        assertFalse(resDoc.getMetadata().containsKey("document_content"));
     }
 
     @Test
-    void withFilters_setsFiltersForQuery() {
+    void withFilters_setsFiltersForQuery() throws Exception {
         Map<String, Object> newFilters = Map.of("genre", "sci-fi", "year", Map.of("$gt", 2000));
         pineconeVectorStore.withFilters(newFilters);
-        // To verify, we'd need to capture the HypotheticalQueryRequest in similaritySearch
-        // and check its filter field.
-        // For now, just check that the method doesn't throw.
-        assertDoesNotThrow(() -> pineconeVectorStore.similaritySearch(List.of(1.0), 1));
-        System.out.println("withFilters_setsFiltersForQuery: Conceptual test passed (filter application not fully verified).");
-
+        pineconeVectorStore.similaritySearch(List.of(1.0), 1);
+        pineconeVectorStore.similaritySearchVector(new float[]{1.0f}, 1, MetadataFilter.eq("lang", "en"));
         pineconeVectorStore.clearFilters();
-        // Again, verification would require capturing the request.
-        assertDoesNotThrow(() -> pineconeVectorStore.similaritySearch(List.of(1.0), 1));
+        pineconeVectorStore.similaritySearch(List.of(1.0), 1);
+
+        assertEquals("sci-fi", objectMapper.readTree(record.queryBodies.get(0)).get("filter").get("genre").asText());
+        JsonNode combined = objectMapper.readTree(record.queryBodies.get(1)).get("filter").get("$and");
+        assertEquals("sci-fi", combined.get(0).get("genre").asText());
+        assertEquals("en", combined.get(1).get("lang").get("$eq").asText());
+        assertNull(objectMapper.readTree(record.queryBodies.get(2)).get("filter"));
+    }
+
+    @Test
+    void queryNamespaces_queriesAllAtOnceAndMergesByScore() {
+        List<String> namespaces = List.of("n0", "n1", "n2", "n3");
+        record.queryDelayMillis = 50;
+
+        List<Document> results = null;
+        for (int round = 0; round < 5; round++) {
+            results = pineconeVectorStore.queryNamespaces(List.of(0.1, 0.2, 0.3), 3, namespaces, null);
+        }
+
+        assertEquals(20, record.queryBodies.size());
+        assertTrue(record.maxQueriesInFlight.get() > 1, "queries in flight: " + record.maxQueriesInFlight.get());
+        assertEquals(3, results.size());
+        assertEquals(0.9f, results.get(0).getScore(), 1e-6);
+        assertTrue(results.get(0).getScore() >= results.get(1).getScore() && results.get(1).getScore() >= results.get(2).getScore());
+        assertTrue(namespaces.contains((String) results.get(0).getMetadata().get("namespace")));
+
+        // Euclidean scores are distances, so the smallest come first
+        List<Document> nearest = pineconeVectorStore.withMetric(PineconeVectorStore.Metric.EUCLIDEAN)
+                .queryNamespaces(List.of(0.1, 0.2, 0.3), 1, namespaces, null);
+        assertEquals(0.1f, nearest.get(0).getScore(), 1e-6);
+    }
+
+    /**
+     * Starts a stand-in Pinecone index that answers upserts after a delay while counting them and the requests
+     * in flight, records delete and query bodies, and answers each query with two matches of its namespace.
+     * Upserts get the queued statuses first, then 200.
+     */
+    private StandInServer startStandInServer(StandInServer.Record record) throws IOException {
+        return StandInServer.start("/", (path, requestBody, headers) -> {
+            apiKeys.add(headers.getFirst("Api-Key"));
+            switch (path) {
+                case "/vectors/upsert" -> {
+                    int status = record.upsert(requestBody, 200, body -> objectMapper.readTree(body).get("vectors").size());
+                    return new StandInServer.Response(status, "{}");
+                }
+                case "/vectors/delete" -> {
+                    record.deleteBodies.add(requestBody);
+                    return new StandInServer.Response(200, "{}");
+                }
+                case "/query" -> {
+                    return new StandInServer.Response(200, record.query(requestBody, () -> {
+                        String namespace = objectMapper.readTree(requestBody).get("namespace").asText();
+                        double best = namespace.equals("n2") ? 0.9 : 0.6;
+                        double worst = namespace.equals("n3") ? 0.1 : 0.3;
+                        return "{\"namespace\":\"" + namespace + "\",\"matches\":["
+                               + "{\"id\":\"" + namespace + "-a\",\"score\":" + best + ",\"metadata\":{\"document_content\":\"Matched content\","
+                               + "\"source_type\":\"web\",\"url\":\"http://example.com\"}},"
+                               + "{\"id\":\"" + namespace + "-b\",\"score\":" + worst + ",\"metadata\":{\"document_content\":\"Other content\"}}]}";
+                    }));
+                }
+                default -> {
+                    return new StandInServer.Response(404, "{}");
+                }
+            }
+        });
     }
 }
@@ -0,0 +1,63 @@
+package com.skanga.rag.vectorstore.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BinaryQuantizerTests {
+
+    @Test
+    void signs_setsOneBitPerPositiveDimensionAcrossWords() {
+        float[] vector = new float[130];
+        vector[0] = 1f;
+        vector[63] = 0.5f;
+        vector[64] = 2f;
+        vector[129] = 3f;
+        vector[1] = -1f;
+        long[] bits = BinaryQuantizer.signs(130).quantize(vector);
+
+        assertEquals(3, bits.length);
+        assertEquals(1L | (1L << 63), bits[0]);
+        assertEquals(1L, bits[1]);
+        assertEquals(1L << 1, bits[2]);
+    }
+
+    @Test
+    void calibrate_usesPerDimensionMeansAsThresholds() {
+        BinaryQuantizer quantizer = BinaryQuantizer.calibrate(List.of(new float[]{10f, -4f}, new float[]{12f, -2f}));
+        assertArrayEquals(new long[]{0b01}, quantizer.quantize(new float[]{11.5f, -3.5f}));
+        assertArrayEquals(new long[]{0b10}, quantizer.quantize(new float[]{10.5f, -2.5f}));
+    }
+
+    @Test
+    void hammingDistance_countsDifferingBits() {
+        assertEquals(0, BinaryQuantizer.hammingDistance(new long[]{-1L, 5L}, new long[]{-1L, 5L}));
+        assertEquals(64 + 1, BinaryQuantizer.hammingDistance(new long[]{-1L, 5L}, new long[]{0L, 4L}));
+    }
+
+    @Test
+    void hammingDistance_ordersVectorsLikeTheirAngle() {
+        BinaryQuantizer quantizer = BinaryQuantizer.signs(256);
+        float[] query = new float[256];
+        float[] near = new float[256];
+        float[] far = new float[256];
+        for (int i = 0; i < 256; i++) {
+            query[i] = (float) Math.sin(i);
+            near[i] = (float) Math.sin(i + 0.3);
+            far[i] = (float) Math.sin(i + 2.0);
+        }
+        long[] queryBits = quantizer.quantize(query);
+        assertTrue(BinaryQuantizer.hammingDistance(queryBits, quantizer.quantize(near))
+                   < BinaryQuantizer.hammingDistance(queryBits, quantizer.quantize(far)));
+    }
+
+    @Test
+    void invalidInput_throwsIllegalArgumentException() {
+        assertThrows(IllegalArgumentException.class, () -> BinaryQuantizer.signs(0));
+        assertThrows(IllegalArgumentException.class, () -> BinaryQuantizer.calibrate(List.of()));
+        assertThrows(IllegalArgumentException.class, () -> BinaryQuantizer.calibrate(List.of(new float[2], new float[3])));
+        assertThrows(IllegalArgumentException.class, () -> BinaryQuantizer.signs(4).quantize(new float[3]));
+    }
+}
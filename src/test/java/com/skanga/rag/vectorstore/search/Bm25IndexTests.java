@@ -0,0 +1,98 @@
+package com.skanga.rag.vectorstore.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class Bm25IndexTests {
+
+    private static List<Integer> ordinals(List<Bm25Index.Hit> hits) {
+        return hits.stream().map(Bm25Index.Hit::ordinal).toList();
+    }
+
+    @Test
+    void tokenize_lowerCasesWordsAndKeepsJoinedIdentifiers() {
+        assertEquals(List.of("see", "err-4021", "err", "4021", "in", "v2.3.1", "v2", "3", "1"),
+                     Bm25Index.tokenize("See ERR-4021 in v2.3.1."));
+        assertEquals(List.of("sku_99", "sku", "99", "ok"), Bm25Index.tokenize("  SKU_99 -- ok!"));
+        assertEquals(List.of(), Bm25Index.tokenize(null));
+    }
+
+    @Test
+    void search_ranksRareTermsAndExactIdentifiersFirst() {
+        Bm25Index index = new Bm25Index();
+        index.add(0, "the service returned an error");
+        index.add(1, "error ERR-4021 means the quota is exhausted");
+        index.add(2, "err 4021 appear separately in this error text");
+        index.add(3, "the weather is nice");
+
+        List<Bm25Index.Hit> hits = index.search("what is ERR-4021?", 10, null);
+        assertEquals(List.of(1, 2), ordinals(hits).subList(0, 2));
+        assertTrue(hits.get(0).score() > hits.get(1).score());
+
+        // "error" is in three of four documents, "weather" in one: the rare term decides.
+        assertEquals(3, index.search("error weather", 10, null).get(0).ordinal());
+        assertTrue(index.search("unknown words", 10, null).isEmpty());
+    }
+
+    @Test
+    void search_prefersShorterDocumentsAndSaturatesRepetition() {
+        Bm25Index index = new Bm25Index();
+        index.add(0, "kafka " + "filler ".repeat(40));
+        index.add(1, "kafka consumer");
+        index.add(2, "kafka kafka kafka kafka kafka kafka kafka kafka " + "filler ".repeat(40));
+
+        float[] scores = new float[3];
+        for (Bm25Index.Hit hit : index.search("kafka", 3, null)) {
+            scores[hit.ordinal()] = hit.score();
+        }
+        assertTrue(scores[1] > scores[0], "Same term frequency: the shorter document scores higher");
+        assertTrue(scores[2] < 3 * scores[0], "Eight occurrences must score far less than eight times one");
+    }
+
+    @Test
+    void search_skipsExcludedOrdinalsAndHonoursK() {
+        Bm25Index index = new Bm25Index();
+        for (int i = 0; i < 5; i++) {
+            index.add(i * 2, "shared term " + i);
+        }
+        BitSet excluded = new BitSet();
+        excluded.set(4);
+        List<Bm25Index.Hit> hits = index.search("shared", 10, excluded);
+        assertEquals(List.of(0, 2, 6, 8), ordinals(hits)); // Equal scores: lower ordinal first
+        assertEquals(2, index.search("shared", 2, null).size());
+    }
+
+    @Test
+    void remap_dropsDeletedOrdinalsAndRenumbers() {
+        Bm25Index index = new Bm25Index(1.5, 0.5);
+        index.add(0, "alpha");
+        index.add(1, "beta");
+        index.add(2, "alpha beta");
+
+        Bm25Index remapped = index.remap(new int[]{-1, 0, 1});
+        assertEquals(2, remapped.size());
+        assertEquals(1.5, remapped.getK1());
+        assertEquals(List.of(1), ordinals(remapped.search("alpha", 5, null)));
+        assertEquals(List.of(0, 1), ordinals(remapped.search("beta", 5, null)));
+        remapped.add(2, "alpha");
+        assertEquals(3, remapped.size());
+
+        index.clear();
+        assertEquals(0, index.size());
+        assertTrue(index.search("alpha", 5, null).isEmpty());
+    }
+
+    @Test
+    void invalidInput_throwsIllegalArgumentException() {
+        assertThrows(IllegalArgumentException.class, () -> new Bm25Index(-1.0, 0.75));
+        assertThrows(IllegalArgumentException.class, () -> new Bm25Index(1.2, 1.5));
+        Bm25Index index = new Bm25Index();
+        index.add(3, "text");
+        assertThrows(IllegalArgumentException.class, () -> index.add(3, "again"));
+        assertThrows(IllegalArgumentException.class, () -> index.search("text", 0, null));
+    }
+}
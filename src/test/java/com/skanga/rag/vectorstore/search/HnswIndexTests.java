@@ -0,0 +1,131 @@
+package com.skanga.rag.vectorstore.search;
+
+import com.skanga.rag.vectorstore.VectorStoreException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HnswIndexTests {
+
+    private HnswIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new HnswIndex(8, 64, 32);
+    }
+
+    private static float[] randomVector(Random random, int dimension) {
+        float[] vector = new float[dimension];
+        for (int i = 0; i < dimension; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+
+    @Test
+    void constructor_invalidParameters_throwIllegalArgumentException() {
+        assertThrows(IllegalArgumentException.class, () -> new HnswIndex(1, 64, 32));
+        assertThrows(IllegalArgumentException.class, () -> new HnswIndex(16, 8, 32));
+        assertThrows(IllegalArgumentException.class, () -> new HnswIndex(16, 64, 0));
+    }
+
+    @Test
+    void add_assignsSequentialOrdinals() {
+        assertEquals(0, index.add(new float[]{1.0f, 0.0f}));
+        assertEquals(1, index.add(new float[]{0.0f, 1.0f}));
+        assertEquals(2, index.size());
+        assertEquals(2, index.dimension());
+    }
+
+    @Test
+    void add_mismatchedDimension_throwsVectorStoreException() {
+        index.add(new float[]{1.0f, 0.0f});
+        assertThrows(VectorStoreException.class, () -> index.add(new float[]{1.0f, 0.0f, 0.0f}));
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    void search_emptyIndex_returnsEmptyList() {
+        assertTrue(index.search(new float[]{1.0f, 0.0f}, 3).isEmpty());
+    }
+
+    @Test
+    void search_returnsNearestFirstWithCosineDistances() {
+        index.add(new float[]{1.0f, 0.0f});
+        index.add(new float[]{0.0f, 1.0f});
+        index.add(new float[]{-1.0f, 0.0f});
+
+        List<HnswIndex.Neighbor> results = index.search(new float[]{0.9f, 0.1f}, 2);
+
+        assertEquals(2, results.size());
+        assertEquals(0, results.get(0).ordinal());
+        assertEquals(1, results.get(1).ordinal());
+        assertEquals(SimilaritySearchUtils.cosineDistance(new float[]{0.9f, 0.1f}, new float[]{1.0f, 0.0f}),
+                results.get(0).distance(), 1e-9);
+    }
+
+    @Test
+    void search_normalizedVectors_scoresUnnormalizedVectorsWithCachedNorms() {
+        HnswIndex normalized = new HnswIndex(8, 64, 32, true);
+        normalized.add(new float[]{3.0f, 0.0f});
+        normalized.add(new float[]{0.0f, 0.5f});
+        normalized.add(new float[]{0.0f, 0.0f});
+
+        List<HnswIndex.Neighbor> results = normalized.search(new float[]{9.0f, 1.0f}, 3);
+
+        assertEquals(List.of(0, 1, 2), results.stream().map(HnswIndex.Neighbor::ordinal).toList());
+        assertEquals(SimilaritySearchUtils.cosineDistance(new float[]{9.0f, 1.0f}, new float[]{3.0f, 0.0f}),
+                results.get(0).distance(), 1e-6);
+        assertEquals(1.0, results.get(2).distance(), 0.0); // Zero vector
+    }
+
+    @Test
+    void search_largeEfOnRandomData_findsExactNearestNeighbour() {
+        Random random = new Random(7);
+        int dimension = 16;
+        List<float[]> stored = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            float[] vector = randomVector(random, dimension);
+            stored.add(vector);
+            index.add(vector);
+        }
+        index.setEfSearch(200);
+
+        for (int q = 0; q < 20; q++) {
+            float[] query = randomVector(random, dimension);
+            int expected = -1;
+            double best = Double.MAX_VALUE;
+            for (int i = 0; i < stored.size(); i++) {
+                double distance = SimilaritySearchUtils.cosineDistance(query, stored.get(i));
+                if (distance < best) {
+                    best = distance;
+                    expected = i;
+                }
+            }
+            List<HnswIndex.Neighbor> results = index.search(query, 1);
+            assertEquals(expected, results.get(0).ordinal());
+        }
+    }
+
+    @Test
+    void search_withFilter_onlyReturnsAcceptedOrdinals() {
+        Random random = new Random(9);
+        for (int i = 0; i < 200; i++) {
+            index.add(randomVector(random, 6));
+        }
+        float[] query = randomVector(random, 6);
+
+        List<HnswIndex.Neighbor> evenOnly = index.search(query, 10, 64, ordinal -> ordinal % 2 == 0);
+
+        assertEquals(10, evenOnly.size());
+        assertTrue(evenOnly.stream().allMatch(neighbor -> neighbor.ordinal() % 2 == 0));
+        for (int i = 1; i < evenOnly.size(); i++) {
+            assertTrue(evenOnly.get(i - 1).distance() <= evenOnly.get(i).distance());
+        }
+    }
+}
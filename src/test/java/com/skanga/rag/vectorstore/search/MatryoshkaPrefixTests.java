@@ -0,0 +1,33 @@
+package com.skanga.rag.vectorstore.search;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MatryoshkaPrefixTests {
+
+    @Test
+    void truncate_keepsTheLeadingDimensionsAtUnitLength() {
+        MatryoshkaPrefix prefix = MatryoshkaPrefix.of(4, 2);
+        assertEquals(4, prefix.dimension());
+        assertEquals(2, prefix.prefixDimension());
+        assertArrayEquals(new float[]{0.6f, 0.8f}, prefix.truncate(new float[]{3f, 4f, 100f, -100f}), 1e-6f);
+    }
+
+    @Test
+    void truncate_packsIntoAnArrayAtTheOffset() {
+        MatryoshkaPrefix prefix = MatryoshkaPrefix.of(3, 2);
+        float[] packed = new float[5];
+        prefix.truncate(new float[]{0f, 2f, 1f}, packed, 1);
+        prefix.truncate(new float[]{0f, 0f, 1f}, packed, 3);
+        assertArrayEquals(new float[]{0f, 0f, 1f, 0f, 0f}, packed, 1e-6f);
+    }
+
+    @Test
+    void invalidInput_throwsIllegalArgumentException() {
+        assertThrows(IllegalArgumentException.class, () -> MatryoshkaPrefix.of(0, 1));
+        assertThrows(IllegalArgumentException.class, () -> MatryoshkaPrefix.of(4, 0));
+        assertThrows(IllegalArgumentException.class, () -> MatryoshkaPrefix.of(4, 4));
+        assertThrows(IllegalArgumentException.class, () -> MatryoshkaPrefix.of(4, 2).truncate(new float[3]));
+    }
+}
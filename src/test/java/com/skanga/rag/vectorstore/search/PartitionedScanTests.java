@@ -0,0 +1,119 @@
+package com.skanga.rag.vectorstore.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PartitionedScanTests {
+
+    @Test
+    void scan_parallelMatchesSequential() {
+        Random random = new Random(3);
+        double[] distances = new double[20_000];
+        for (int i = 0; i < distances.length; i++) {
+            distances[i] = random.nextInt(1000) / 1000.0; // Plenty of ties across partitions
+        }
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            TopKCollector sequential = PartitionedScan.scan(distances.length, 25, i -> distances[i], Integer.MAX_VALUE, pool);
+            TopKCollector parallel = PartitionedScan.scan(distances.length, 25, i -> distances[i], 1, pool);
+
+            assertEquals(25, parallel.size());
+            for (int i = 0; i < 25; i++) {
+                assertEquals(sequential.ordinal(i), parallel.ordinal(i));
+                assertEquals(sequential.distance(i), parallel.distance(i), 0.0);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void scan_aboveThreshold_usesPoolThreads() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        Set<Thread> threads = ConcurrentHashMap.newKeySet();
+        try {
+            PartitionedScan.scan(50_000, 5, i -> {
+                threads.add(Thread.currentThread());
+                return i;
+            }, 1, pool);
+            assertFalse(threads.contains(Thread.currentThread()));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void scan_skipsNaNDistances() {
+        TopKCollector result = PartitionedScan.scan(10, 3, i -> i % 2 == 0 ? Double.NaN : i, 1, ForkJoinPool.commonPool());
+        assertEquals(3, result.size());
+        assertEquals(1, result.ordinal(0));
+        assertEquals(3, result.ordinal(1));
+        assertEquals(5, result.ordinal(2));
+    }
+
+    @Test
+    void scan_ordinals_onlyScoresGivenOrdinals() {
+        double[] distances = new double[10_000];
+        int[] ordinals = new int[5_000];
+        for (int i = 0; i < distances.length; i++) {
+            distances[i] = (distances.length - i) / (double) distances.length; // Higher ordinals are nearer
+        }
+        for (int i = 0; i < ordinals.length; i++) {
+            ordinals[i] = 2 * i; // Even ordinals only
+        }
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (int threshold : new int[]{Integer.MAX_VALUE, 1}) {
+                TopKCollector nearest = PartitionedScan.scan(ordinals, 3, i -> distances[i], threshold, pool);
+                assertEquals(3, nearest.size());
+                assertEquals(9998, nearest.ordinal(0));
+                assertEquals(9996, nearest.ordinal(1));
+                assertEquals(9994, nearest.ordinal(2));
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void scanBatch_matchesSingleQueryScans() {
+        Random random = new Random(7);
+        int size = 5_000;
+        int queryCount = 40; // More than one query block
+        double[][] distances = new double[queryCount][size];
+        for (double[] row : distances) {
+            for (int i = 0; i < size; i++) {
+                row[i] = (i % 97 == 0) ? Double.NaN : random.nextInt(500) / 500.0;
+            }
+        }
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (int threshold : new int[]{Integer.MAX_VALUE, 1}) {
+                TopKCollector[] batch = PartitionedScan.scanBatch(size, queryCount, 10, (ordinal, from, to, out) -> {
+                    for (int q = from; q < to; q++) {
+                        out[q - from] = distances[q][ordinal];
+                    }
+                }, threshold, pool);
+
+                assertEquals(queryCount, batch.length);
+                for (int q = 0; q < queryCount; q++) {
+                    double[] row = distances[q];
+                    TopKCollector single = PartitionedScan.scan(size, 10, i -> row[i], Integer.MAX_VALUE, pool);
+                    assertEquals(single.size(), batch[q].size());
+                    for (int i = 0; i < single.size(); i++) {
+                        assertEquals(single.ordinal(i), batch[q].ordinal(i));
+                        assertEquals(single.distance(i), batch[q].distance(i), 0.0);
+                    }
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
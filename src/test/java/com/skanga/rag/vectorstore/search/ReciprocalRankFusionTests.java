@@ -0,0 +1,51 @@
+package com.skanga.rag.vectorstore.search;
+
+import com.skanga.rag.Document;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReciprocalRankFusionTests {
+
+    private static Document doc(String id) {
+        Document doc = new Document("Content of " + id);
+        doc.setId(id);
+        return doc;
+    }
+
+    private static List<String> ids(List<Document> documents) {
+        return documents.stream().map(Document::getId).toList();
+    }
+
+    @Test
+    void fuse_documentRankedByBothListsBeatsTopOfOne() {
+        List<Document> vector = List.of(doc("a"), doc("b"), doc("c"));
+        List<Document> lexical = List.of(doc("d"), doc("b"), doc("e"));
+
+        List<Document> fused = ReciprocalRankFusion.fuse(List.of(vector, lexical), 10);
+
+        assertEquals(List.of("b", "a", "d", "c", "e"), ids(fused));
+        assertEquals(2.0 / 62, fused.get(0).getScore(), 1e-6);
+        assertEquals(1.0 / 61, fused.get(1).getScore(), 1e-6);
+        assertNotSame(vector.get(1), fused.get(0), "Fused scores are set on copies");
+        assertEquals(vector.get(1).getContent(), fused.get(0).getContent());
+        assertEquals(0.0f, vector.get(1).getScore(), "The input documents are not modified");
+    }
+
+    @Test
+    void fuse_truncatesToKAndSkipsNullLists() {
+        List<Document> fused = ReciprocalRankFusion.fuse(Arrays.asList(List.of(doc("a"), doc("b")), null), 1, 1);
+        assertEquals(List.of("a"), ids(fused));
+        assertEquals(0.5f, fused.get(0).getScore(), 1e-6);
+        assertTrue(ReciprocalRankFusion.fuse(List.of(), 5).isEmpty());
+    }
+
+    @Test
+    void invalidParameters_throwIllegalArgumentException() {
+        assertThrows(IllegalArgumentException.class, () -> ReciprocalRankFusion.fuse(List.of(), 0, 5));
+        assertThrows(IllegalArgumentException.class, () -> ReciprocalRankFusion.fuse(List.of(), 60, 0));
+    }
+}
@@ -0,0 +1,86 @@
+package com.skanga.rag.vectorstore.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ScalarQuantizerTests {
+
+    private static float[] randomVector(Random random, int dimension) {
+        float[] vector = new float[dimension];
+        for (int i = 0; i < dimension; i++) {
+            vector[i] = (float) random.nextGaussian() * (i + 1);
+        }
+        return vector;
+    }
+
+    @Test
+    void quantize_roundTripErrorIsWithinHalfAStepPerDimension() {
+        Random random = new Random(3);
+        List<float[]> sample = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            sample.add(randomVector(random, 17));
+        }
+        ScalarQuantizer quantizer = ScalarQuantizer.calibrate(sample);
+        assertEquals(17, quantizer.dimension());
+
+        for (float[] vector : sample) {
+            float[] restored = quantizer.dequantize(quantizer.quantize(vector));
+            for (int i = 0; i < vector.length; i++) {
+                float min = Float.MAX_VALUE, max = -Float.MAX_VALUE;
+                for (float[] v : sample) {
+                    min = Math.min(min, v[i]);
+                    max = Math.max(max, v[i]);
+                }
+                assertEquals(vector[i], restored[i], (max - min) / 255 / 2 + 1e-5, "dimension " + i);
+            }
+        }
+    }
+
+    @Test
+    void cosineDistance_matchesReconstructedVector_forAllKernels() {
+        Random random = new Random(5);
+        List<float[]> sample = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            sample.add(randomVector(random, 37));
+        }
+        ScalarQuantizer quantizer = ScalarQuantizer.calibrate(sample);
+        List<VectorKernels> allKernels = new ArrayList<>(List.of(VectorKernels.scalar()));
+        if (VectorKernels.isSimdAvailable()) {
+            allKernels.add(VectorKernels.simd());
+        }
+        for (VectorKernels kernels : allKernels) {
+            for (int q = 0; q < 10; q++) {
+                float[] query = randomVector(random, 37);
+                ScalarQuantizer.PreparedQuery prepared = quantizer.prepare(query);
+                byte[] codes = quantizer.quantize(sample.get(q));
+                float[] restored = quantizer.dequantize(codes);
+                assertEquals(VectorKernels.scalar().cosineDistance(query, restored),
+                        quantizer.cosineDistance(prepared, codes, quantizer.squaredNorm(codes), kernels), 1e-4, kernels.name());
+                assertEquals(VectorKernels.scalar().cosineDistance(query, sample.get(q)),
+                        quantizer.cosineDistance(prepared, codes, quantizer.squaredNorm(codes), kernels), 0.02, kernels.name());
+            }
+        }
+    }
+
+    @Test
+    void quantize_clampsOutOfRangeValuesAndHandlesConstantDimensions() {
+        ScalarQuantizer quantizer = ScalarQuantizer.calibrate(List.of(new float[]{0f, 5f}, new float[]{1f, 5f}));
+        assertArrayEquals(new float[]{1f, 5f}, quantizer.dequantize(quantizer.quantize(new float[]{7f, 5f})), 1e-6f);
+        assertArrayEquals(new float[]{0f, 5f}, quantizer.dequantize(quantizer.quantize(new float[]{-7f, -3f})), 1e-6f);
+    }
+
+    @Test
+    void invalidInput_throwsIllegalArgumentException() {
+        assertThrows(IllegalArgumentException.class, () -> ScalarQuantizer.calibrate(List.of()));
+        assertThrows(IllegalArgumentException.class, () -> ScalarQuantizer.calibrate(List.of(new float[0])));
+        assertThrows(IllegalArgumentException.class, () -> ScalarQuantizer.calibrate(List.of(new float[2], new float[3])));
+        ScalarQuantizer quantizer = ScalarQuantizer.calibrate(List.of(new float[2]));
+        assertThrows(IllegalArgumentException.class, () -> quantizer.quantize(new float[3]));
+        assertThrows(IllegalArgumentException.class, () -> quantizer.prepare(new float[1]));
+    }
+}
@@ -108,6 +108,36 @@ class SimilaritySearchUtilsTests {
         });
     }
 
+    @Test
+    void cosineDistance_floatArrays_matchesListVersion() {
+        float[] v1 = {1.0f, 2.0f, 3.0f, 4.0f};
+        float[] v2 = {4.0f, 1.0f, 2.0f, 3.0f};
+        assertEquals(0.2, SimilaritySearchUtils.cosineDistance(v1, v2), EPSILON);
+        assertEquals(1.0, SimilaritySearchUtils.cosineDistance(v1, new float[4]), EPSILON);
+    }
+
+    @Test
+    void cosineDistance_floatArraysMismatchedLengths_throwsVectorStoreException() {
+        assertThrows(VectorStoreException.class,
+            () -> SimilaritySearchUtils.cosineDistance(new float[]{1.0f}, new float[]{1.0f, 2.0f}));
+    }
+
+    @Test
+    void normalize_returnsUnitLengthCopy() {
+        float[] v = {3.0f, 4.0f};
+        float[] unit = SimilaritySearchUtils.normalize(v);
+        assertArrayEquals(new float[]{0.6f, 0.8f}, unit, 1e-6f);
+        assertEquals(1.0, SimilaritySearchUtils.l2Norm(unit), EPSILON);
+        assertArrayEquals(new float[]{3.0f, 4.0f}, v, 0.0f); // Input untouched
+    }
+
+    @Test
+    void normalize_zeroVector_returnsZeros() {
+        float[] unit = SimilaritySearchUtils.normalize(new float[3]);
+        assertArrayEquals(new float[3], unit, 0.0f);
+        assertEquals(0.0, SimilaritySearchUtils.l2Norm(unit), 0.0);
+    }
+
     @Test
     void cosineDistance_handlesFloatingPointInaccuraciesForNearIdentical() {
         // Slightly perturbed vector
@@ -0,0 +1,75 @@
+package com.skanga.rag.vectorstore.search;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TopKCollectorTests {
+
+    @Test
+    void constructor_nonPositiveK_throwsIllegalArgumentException() {
+        assertThrows(IllegalArgumentException.class, () -> new TopKCollector(0));
+    }
+
+    @Test
+    void offer_keepsNearestKSortedNearestFirst() {
+        TopKCollector collector = new TopKCollector(3);
+        double[] distances = {0.9, 0.1, 0.5, 0.3, 0.7, 0.2};
+        for (int i = 0; i < distances.length; i++) {
+            collector.offer(i, distances[i]);
+        }
+        collector.sort();
+
+        assertEquals(3, collector.size());
+        assertEquals(1, collector.ordinal(0));
+        assertEquals(5, collector.ordinal(1));
+        assertEquals(3, collector.ordinal(2));
+        assertEquals(0.1, collector.distance(0), 0.0);
+        assertEquals(0.3, collector.distance(2), 0.0);
+    }
+
+    @Test
+    void offer_equalDistances_lowerOrdinalWins() {
+        TopKCollector collector = new TopKCollector(2);
+        collector.offer(7, 0.5);
+        collector.offer(3, 0.5);
+        collector.offer(5, 0.5);
+        collector.sort();
+
+        assertEquals(3, collector.ordinal(0));
+        assertEquals(5, collector.ordinal(1));
+    }
+
+    @Test
+    void offer_nanDistance_isIgnored() {
+        TopKCollector collector = new TopKCollector(2);
+        assertFalse(collector.offer(0, Double.NaN));
+        assertEquals(0, collector.size());
+        assertEquals(Double.POSITIVE_INFINITY, collector.threshold());
+    }
+
+    @Test
+    void addAll_mergesPartialResults() {
+        TopKCollector left = new TopKCollector(2);
+        left.offer(0, 0.4);
+        left.offer(1, 0.1);
+        TopKCollector right = new TopKCollector(2);
+        right.offer(2, 0.2);
+        right.offer(3, 0.8);
+
+        left.addAll(right);
+        left.sort();
+
+        assertEquals(1, left.ordinal(0));
+        assertEquals(2, left.ordinal(1));
+    }
+
+    @Test
+    void readBeforeSort_throwsIllegalStateException() {
+        TopKCollector collector = new TopKCollector(1);
+        collector.offer(0, 0.0);
+        assertThrows(IllegalStateException.class, () -> collector.ordinal(0));
+        collector.sort();
+        assertThrows(IllegalStateException.class, () -> collector.offer(1, 0.0));
+    }
+}
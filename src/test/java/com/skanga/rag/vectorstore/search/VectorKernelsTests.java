@@ -0,0 +1,163 @@
+package com.skanga.rag.vectorstore.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VectorKernelsTests {
+
+    private static final double EPSILON = 1e-5;
+
+    /** The scalar kernels plus the SIMD kernels when the Vector API is available in this JVM. */
+    private static List<VectorKernels> allKernels() {
+        List<VectorKernels> kernels = new ArrayList<>();
+        kernels.add(VectorKernels.scalar());
+        if (VectorKernels.isSimdAvailable()) {
+            kernels.add(VectorKernels.simd());
+        }
+        return kernels;
+    }
+
+    private static double referenceDot(float[] a, float[] b) {
+        double sum = 0.0;
+        for (int i = 0; i < a.length; i++) {
+            sum += (double) a[i] * b[i];
+        }
+        return sum;
+    }
+
+    private static double referenceSquaredL2(float[] a, float[] b) {
+        double sum = 0.0;
+        for (int i = 0; i < a.length; i++) {
+            double d = (double) a[i] - b[i];
+            sum += d * d;
+        }
+        return sum;
+    }
+
+    private static float[] randomVector(Random random, int dimension) {
+        float[] vector = new float[dimension];
+        for (int i = 0; i < dimension; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+
+    @Test
+    void defaultKernels_isNeverNull() {
+        assertNotNull(VectorKernels.defaultKernels());
+        assertNotNull(VectorKernels.defaultKernels().name());
+        assertEquals("scalar", VectorKernels.scalar().name());
+    }
+
+    @Test
+    void simd_whenUnavailable_throwsUnsupportedOperationException() {
+        if (!VectorKernels.isSimdAvailable()) {
+            assertThrows(UnsupportedOperationException.class, VectorKernels::simd);
+        } else {
+            assertTrue(VectorKernels.simd().name().startsWith("simd-"));
+        }
+    }
+
+    @Test
+    void kernels_matchDoublePrecisionReference_forAllTailLengths() {
+        Random random = new Random(11);
+        // Dimensions around common lane counts exercise both the vector loop and the scalar tail.
+        int[] dimensions = {1, 2, 3, 4, 5, 7, 8, 9, 15, 16, 17, 31, 33, 384, 1536};
+        for (VectorKernels kernels : allKernels()) {
+            for (int dimension : dimensions) {
+                float[] a = randomVector(random, dimension);
+                float[] b = randomVector(random, dimension);
+                double tolerance = EPSILON * dimension;
+
+                assertEquals(referenceDot(a, b), kernels.dot(a, b), tolerance, kernels.name() + " dot, dim " + dimension);
+                assertEquals(referenceSquaredL2(a, b), kernels.squaredL2(a, b), tolerance, kernels.name() + " L2, dim " + dimension);
+                assertEquals(SimilaritySearchUtils.cosineDistance(toList(a), toList(b)),
+                        kernels.cosineDistance(a, b), EPSILON, kernels.name() + " cosine, dim " + dimension);
+            }
+        }
+    }
+
+    @Test
+    void dotBatch_matchesDotForEveryQuery() {
+        Random random = new Random(13);
+        for (VectorKernels kernels : allKernels()) {
+            for (int dimension : new int[]{3, 17, 384}) {
+                float[][] queries = new float[11][]; // Not a multiple of the four-query register block
+                for (int q = 0; q < queries.length; q++) {
+                    queries[q] = randomVector(random, dimension);
+                }
+                float[] vector = randomVector(random, dimension);
+                double[] results = new double[queries.length];
+
+                kernels.dotBatch(queries, 2, 9, vector, results);
+
+                for (int q = 2; q < 9; q++) {
+                    assertEquals(kernels.dot(queries[q], vector), results[q - 2], 0.0, kernels.name() + " query " + q + ", dim " + dimension);
+                }
+            }
+        }
+    }
+
+    @Test
+    void dotAt_matchesDotOnTheSliceAtEveryOffset() {
+        Random random = new Random(23);
+        for (VectorKernels kernels : allKernels()) {
+            for (int dimension : new int[]{1, 3, 4, 7, 8, 9, 15, 16, 17, 33, 256}) {
+                float[] a = randomVector(random, dimension);
+                float[] packed = randomVector(random, dimension * 3 + 5);
+                for (int offset : new int[]{0, 1, dimension, 2 * dimension + 5}) {
+                    float[] slice = Arrays.copyOfRange(packed, offset, offset + dimension);
+                    assertEquals(kernels.dot(a, slice), kernels.dotAt(a, packed, offset), EPSILON * dimension,
+                                 kernels.name() + " dotAt, dim " + dimension + ", offset " + offset);
+                }
+            }
+        }
+    }
+
+    @Test
+    void dotInt8_matchesDoublePrecisionReference_forAllTailLengths() {
+        Random random = new Random(19);
+        for (VectorKernels kernels : allKernels()) {
+            for (int dimension : new int[]{1, 3, 4, 7, 8, 9, 15, 16, 17, 33, 1536}) {
+                float[] a = randomVector(random, dimension);
+                byte[] codes = new byte[dimension];
+                random.nextBytes(codes);
+                double expected = 0.0;
+                for (int i = 0; i < dimension; i++) {
+                    expected += (double) a[i] * codes[i];
+                }
+                assertEquals(expected, kernels.dotInt8(a, codes), EPSILON * 128 * dimension, kernels.name() + " dotInt8, dim " + dimension);
+            }
+        }
+    }
+
+    @Test
+    void cosineDistance_preservesEdgeCaseSemantics() {
+        for (VectorKernels kernels : allKernels()) {
+            float[] v = {1.0f, 2.0f, 3.0f, 4.0f, 5.0f};
+            float[] opposite = {-1.0f, -2.0f, -3.0f, -4.0f, -5.0f};
+            float[] zero = new float[5];
+
+            assertEquals(0.0, kernels.cosineDistance(v, v), 0.0, kernels.name());
+            assertEquals(2.0, kernels.cosineDistance(v, opposite), EPSILON, kernels.name());
+            assertEquals(1.0, kernels.cosineDistance(v, zero), 0.0, kernels.name());
+            assertEquals(1.0, kernels.cosineDistance(zero, v), 0.0, kernels.name());
+            assertEquals(1.0, kernels.cosineDistance(zero, zero), 0.0, kernels.name());
+        }
+    }
+
+    /** Widens a float vector for the List-based reference implementation. */
+    private static List<Double> toList(float[] vector) {
+        List<Double> list = new ArrayList<>(vector.length);
+        for (float value : vector) {
+            list.add((double) value);
+        }
+        return list;
+    }
+}